@@ -63,6 +63,15 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
      */
     protected Rectangle pickRect = null;
     protected boolean deepPick = false;
+    /**
+     * Indicates whether renderables implementing {@link AnalyticPickable} are picked from their screen geometry rather
+     * than by drawing them in pick colors. Initially <code>false</code>.
+     */
+    protected boolean analyticPickEnabled = false;
+    /** The analytic pick support reused across pick traversals while the view is unchanged. */
+    protected AnalyticPickSupport analyticPickSupport;
+    /** The nearest analytically picked object at the pick point during the current pick traversal, if any. */
+    protected PickedObject analyticTopObject;
     protected GpuResourceCache gpuResourceCache;
     protected TextRendererCache textRendererCache = new TextRendererCache();
     protected Set<String> perFrameStatisticsKeys = new HashSet<String>();
@@ -223,6 +232,29 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         return this.deepPick;
     }
 
+    /**
+     * Indicates whether analytic picking is enabled. See {@link #setAnalyticPickEnabled(boolean)}.
+     *
+     * @return true if analytic picking is enabled, otherwise false.
+     */
+    public boolean isAnalyticPickEnabled()
+    {
+        return this.analyticPickEnabled;
+    }
+
+    /**
+     * Specifies whether renderables implementing {@link AnalyticPickable} are picked from their screen geometry rather
+     * than by drawing them in pick colors. Analytically picked objects are ordered by their screen depth, but are not
+     * occluded by terrain or by objects picked by color, so an object picked by color at the pick point takes
+     * precedence as the top object.
+     *
+     * @param tf true to enable analytic picking, otherwise false.
+     */
+    public void setAnalyticPickEnabled(boolean tf)
+    {
+        this.analyticPickEnabled = tf;
+    }
+
     public SectorGeometryList getTerrain()
     {
         return this.dc.getSurfaceGeometry();
@@ -674,20 +706,40 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         else if (pol != null && pol.size() > 1)
         {
             // If there is more than one picked object, then find the picked object corresponding to the top color at
-            // the pick point, and mark it as on top
-            int colorCode = dc.getPickColorAtPoint(pickPoint);
+            // the pick point. Analytically picked objects have no pick color, so don't read the color if nothing was
+            // picked by color.
+            PickedObject top = null;
+            int colorCode = this.hasColorPickedObjects(pol) ? dc.getPickColorAtPoint(pickPoint) : 0;
             if (colorCode != 0)
             {
                 for (PickedObject po : pol)
                 {
                     if (po != null && po.getColorCode() == colorCode)
                     {
-                        po.setOnTop();
+                        top = po;
                         break; // No need to check the remaining picked objects.
                     }
                 }
             }
+
+            // The nearest analytically picked object is on top unless an object picked by color covers the pick point.
+            if (this.analyticTopObject != null && (top == null || top.isTerrain()))
+                top = this.analyticTopObject;
+
+            if (top != null)
+                top.setOnTop();
+        }
+    }
+
+    protected boolean hasColorPickedObjects(PickedObjectList pol)
+    {
+        for (PickedObject po : pol)
+        {
+            if (po != null && po.getColorCode() != 0)
+                return true;
         }
+
+        return false;
     }
 
     protected void doResolveTopPick(DrawContext dc, Rectangle pickRect)
@@ -755,6 +807,7 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         this.pickTime = System.currentTimeMillis();
         this.lastPickedObjects = null;
         this.lastObjectsInPickRect = null;
+        this.analyticTopObject = null;
 
         try
         {
@@ -778,6 +831,8 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         finally
         {
             dc.disablePickingMode();
+            dc.setAnalyticPickSupport(null);
+            this.analyticTopObject = null;
             this.pickTime = System.currentTimeMillis() - this.pickTime;
         }
     }
@@ -788,6 +843,11 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         if (dc.getPickPoint() == null && (dc.getPickRectangle() == null || dc.getPickRectangle().isEmpty()))
             return;
 
+        // Collect the screen geometry of analytically pickable renderables while picking the layers and ordered
+        // renderables, then pick against it once they've all been visited.
+        if (this.isAnalyticPickEnabled())
+            dc.setAnalyticPickSupport(this.getAnalyticPickSupport(dc));
+
         // Pick against the layers.
         this.pickLayers(dc);
 
@@ -807,6 +867,51 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
             dc.pollOrderedRenderables().pick(dc, dc.getPickPoint());
         }
         dc.setOrderedRenderingMode(false);
+
+        // Pick against the analytically pickable renderables.
+        if (dc.getAnalyticPickSupport() != null)
+        {
+            this.doAnalyticPick(dc, dc.getAnalyticPickSupport());
+            dc.setAnalyticPickSupport(null);
+        }
+    }
+
+    protected AnalyticPickSupport getAnalyticPickSupport(DrawContext dc)
+    {
+        if (this.analyticPickSupport != null && this.analyticPickSupport.getView() == dc.getView())
+            this.analyticPickSupport.clear();
+        else
+            this.analyticPickSupport = new AnalyticPickSupport(dc.getView());
+
+        return this.analyticPickSupport;
+    }
+
+    protected void doAnalyticPick(DrawContext dc, AnalyticPickSupport pickSupport)
+    {
+        if (pickSupport.getIndex().getNumObjects() == 0)
+            return;
+
+        // Leave the nearest object unmarked; the top object at the pick point is resolved against the objects picked
+        // by color in resolveTopPick.
+        if (dc.getPickPoint() != null)
+        {
+            PickedObjectList pol = pickSupport.pick(dc.getPickPoint(), false);
+            for (PickedObject po : pol)
+            {
+                dc.addPickedObject(po);
+            }
+
+            if (!pol.isEmpty())
+                this.analyticTopObject = pol.get(0);
+        }
+
+        if (dc.getPickRectangle() != null && !dc.getPickRectangle().isEmpty())
+        {
+            for (PickedObject po : pickSupport.getObjectsInPickRectangle(dc.getPickRectangle()))
+            {
+                dc.addObjectInPickRectangle(po);
+            }
+        }
     }
 
     protected void doDeepPick(DrawContext dc)
@@ -1117,12 +1222,17 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
 
     /**
      * Returns a new {@link gov.nasa.worldwind.render.SurfaceObjectTileBuilder} configured to build a composite
-     * representation of {@link gov.nasa.worldwind.render.SurfaceObject} instances.
+     * representation of {@link gov.nasa.worldwind.render.SurfaceObject} instances. This returns a {@link
+     * gov.nasa.worldwind.render.RasterizingSurfaceObjectTileBuilder} if the configuration property {@link
+     * AVKey#RASTERIZE_SURFACE_SHAPES} is true.
      *
      * @return A new {@link gov.nasa.worldwind.render.SurfaceObjectTileBuilder}.
      */
     protected SurfaceObjectTileBuilder createSurfaceObjectTileBuilder()
     {
+        if (Configuration.getBooleanValue(AVKey.RASTERIZE_SURFACE_SHAPES, false))
+            return new RasterizingSurfaceObjectTileBuilder();
+
         return new SurfaceObjectTileBuilder();
     }
 }
@@ -320,6 +320,7 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String RASTER_PIXEL = "gov.nasa.worldwind.avkey.RasterPixel";
     final String RASTER_PIXEL_IS_AREA = "gov.nasa.worldwind.avkey.RasterPixelIsArea";
     final String RASTER_PIXEL_IS_POINT = "gov.nasa.worldwind.avkey.RasterPixelIsPoint";
+    final String RASTERIZE_SURFACE_SHAPES = "gov.nasa.worldwind.avkey.RasterizeSurfaceShapes";
     final String RECTANGULAR_TESSELLATOR_MAX_LEVEL = "gov.nasa.worldwind.avkey.RectangularTessellatorMaxLevel";
     final String REPAINT = "gov.nasa.worldwind.avkey.Repaint";
     final String REPEAT_NONE = "gov.nasa.worldwind.avkey.RepeatNone";
@@ -327,6 +328,9 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String REPEAT_Y = "gov.nasa.worldwind.avkey.RepeatY";
     final String REPEAT_XY = "gov.nasa.worldwind.avkey.RepeatXY";
 
+    /** The {@link gov.nasa.worldwind.data.RasterResampler.Kernel} used when drawing a data raster onto another. */
+    final String RESAMPLING_KERNEL = "gov.nasa.worldwind.avkey.ResamplingKernel";
+
     final String RESIZE = "gov.nasa.worldwind.avkey.Resize";
     /** On window resize, scales the item to occupy a constant relative size of the viewport. */
     final String RESIZE_STRETCH = "gov.nasa.worldwind.CompassLayer.ResizeStretch";
@@ -405,6 +409,7 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String STOP = "gov.nasa.worldwind.avkey.Stop";
     final String STYLE_NAMES = "gov.nasa.worldwind.avkey.StyleNames";
     final String SURFACE_TILE_DRAW_CONTEXT = "gov.nasa.worldwind.avkey.SurfaceTileDrawContext";
+    final String SYMBOL_ICON_CACHE_SIZE = "gov.nasa.worldwind.avkey.SymbolIconCacheSize";
 
     final String TESSELLATOR_CLASS_NAME = "gov.nasa.worldwind.avkey.TessellatorClassName";
     final String TEXTURE = "gov.nasa.worldwind.avkey.Texture";
@@ -492,4 +497,47 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String WORLD_WIND_DOT_NET_LAYER_SET = "gov.nasa.worldwind.avkey.WorldWindDotNetLayerSet";
     final String WORLD_WIND_DOT_NET_PERMANENT_DIRECTORY = "gov.nasa.worldwind.avkey.WorldWindDotNetPermanentDirectory";
     final String WORLD_WINDOW_CLASS_NAME = "gov.nasa.worldwind.avkey.WorldWindowClassName";
+
+    /**
+     * Indicates whether XML event readers opened by {@link gov.nasa.worldwind.util.WWXML} read from a cursor-based
+     * {@link gov.nasa.worldwind.util.xml.CursorXMLEventReader} rather than from the XML parser's event reader.
+     */
+    final String XML_CURSOR_PARSING = "gov.nasa.worldwind.avkey.XMLCursorParsing";
+
+    /**
+     * Indicates whether {@link gov.nasa.worldwind.ogc.collada.ColladaRoot} saves the resolved meshes of COLLADA files
+     * to the file store, and reads them from there instead of from the document when the file is loaded again.
+     */
+    final String COLLADA_MESH_CACHING = "gov.nasa.worldwind.avkey.ColladaMeshCaching";
+
+    /**
+     * Indicates the memory budget, in bytes, for the KML documents loaded by network links. When the budget is
+     * exceeded, the documents that have gone longest without being drawn are unloaded by the {@link
+     * gov.nasa.worldwind.ogc.kml.KMLNetworkResourceManager}.
+     */
+    final String KML_NETWORK_RESOURCE_CACHE_SIZE = "gov.nasa.worldwind.avkey.KMLNetworkResourceCacheSize";
+
+    /**
+     * Indicates the maximum number of concurrent requests the {@link gov.nasa.worldwind.ogc.kml.KMLRefreshScheduler}
+     * sends to one host when refreshing KML network links.
+     */
+    final String KML_REFRESH_MAX_REQUESTS_PER_HOST = "gov.nasa.worldwind.avkey.KMLRefreshMaxRequestsPerHost";
+
+    /**
+     * Indicates the maximum number of tiles a {@link gov.nasa.worldwind.retrieve.BulkDownloadEngine} retrieves
+     * concurrently.
+     */
+    final String BULK_DOWNLOAD_MAX_ACTIVE_RETRIEVALS = "gov.nasa.worldwind.avkey.BulkDownloadMaxActiveRetrievals";
+
+    /**
+     * Indicates the maximum number of requests per second a {@link gov.nasa.worldwind.retrieve.BulkDownloadEngine}
+     * sends to one host. Zero indicates no limit.
+     */
+    final String BULK_DOWNLOAD_MAX_REQUESTS_PER_SECOND = "gov.nasa.worldwind.avkey.BulkDownloadMaxRequestsPerSecond";
+
+    /**
+     * Indicates the maximum number of bytes per second a {@link gov.nasa.worldwind.retrieve.BulkDownloadEngine}
+     * receives from one host. Zero indicates no limit.
+     */
+    final String BULK_DOWNLOAD_MAX_BYTES_PER_SECOND = "gov.nasa.worldwind.avkey.BulkDownloadMaxBytesPerSecond";
 }
@@ -9,7 +9,7 @@ package gov.nasa.worldwind.cache;
 import gov.nasa.worldwind.util.Logging;
 
 import java.lang.ref.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.*;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -28,6 +28,10 @@ import java.util.concurrent.locks.ReentrantLock;
  * an internal <code>MemoryMonitorThread</code>. Once the phantom reference is added to the reference queue, the entire
  * cached content will be released. This approach allows to use almost entire available heap memory to cache rasters and
  * release memory when more memory is needed to the application itself.
+ * <p/>
+ * The cache also keeps statistics of the raster compositions performed by the raster servers using it: the number of
+ * compositions, their total and maximum durations, and the number of requests served from composed tiles cached by the
+ * servers.
  */
 public class BasicRasterServerCache extends BasicMemoryCache
 {
@@ -44,6 +48,11 @@ public class BasicRasterServerCache extends BasicMemoryCache
 
     private final ReentrantLock removalLock = new ReentrantLock();
 
+    protected AtomicLong numCompositions = new AtomicLong();
+    protected AtomicLong totalCompositionTimeInNanoSeconds = new AtomicLong();
+    protected AtomicLong maxCompositionTimeInNanoSeconds = new AtomicLong();
+    protected AtomicLong numComposedTileHits = new AtomicLong();
+
     /**
      * Constructs a new cache which uses entire memory, but will immediately drop all cached entries ones there is a
      * need for more memory by anyone else.
@@ -110,6 +119,89 @@ public class BasicRasterServerCache extends BasicMemoryCache
         this.timeoutLeastRecentUseInNanoSeconds = nanoSeconds;
     }
 
+    /**
+     * Records the duration of a raster composition.
+     *
+     * @param nanoSeconds the time taken to compose the raster, in nanoseconds.
+     */
+    public void recordComposition(long nanoSeconds)
+    {
+        this.numCompositions.incrementAndGet();
+        this.totalCompositionTimeInNanoSeconds.addAndGet(nanoSeconds);
+
+        long max = this.maxCompositionTimeInNanoSeconds.get();
+        while (nanoSeconds > max && !this.maxCompositionTimeInNanoSeconds.compareAndSet(max, nanoSeconds))
+        {
+            max = this.maxCompositionTimeInNanoSeconds.get();
+        }
+    }
+
+    /** Records a request served from a cached composed tile rather than by composing a raster. */
+    public void recordComposedTileHit()
+    {
+        this.numComposedTileHits.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of raster compositions recorded since the statistics were last reset.
+     *
+     * @return the number of compositions.
+     */
+    public long getNumCompositions()
+    {
+        return this.numCompositions.get();
+    }
+
+    /**
+     * Returns the total time spent composing rasters since the statistics were last reset.
+     *
+     * @return the total composition time, in nanoseconds.
+     */
+    public long getTotalCompositionTime()
+    {
+        return this.totalCompositionTimeInNanoSeconds.get();
+    }
+
+    /**
+     * Returns the average time taken to compose a raster, or zero if no compositions have been recorded.
+     *
+     * @return the average composition time, in nanoseconds.
+     */
+    public long getAverageCompositionTime()
+    {
+        long count = this.numCompositions.get();
+        return (count > 0) ? this.totalCompositionTimeInNanoSeconds.get() / count : 0L;
+    }
+
+    /**
+     * Returns the longest time taken to compose a raster since the statistics were last reset.
+     *
+     * @return the maximum composition time, in nanoseconds.
+     */
+    public long getMaxCompositionTime()
+    {
+        return this.maxCompositionTimeInNanoSeconds.get();
+    }
+
+    /**
+     * Returns the number of requests served from cached composed tiles since the statistics were last reset.
+     *
+     * @return the number of composed tile cache hits.
+     */
+    public long getNumComposedTileHits()
+    {
+        return this.numComposedTileHits.get();
+    }
+
+    /** Resets the composition statistics to zero. */
+    public void resetStatistics()
+    {
+        this.numCompositions.set(0L);
+        this.totalCompositionTimeInNanoSeconds.set(0L);
+        this.maxCompositionTimeInNanoSeconds.set(0L);
+        this.numComposedTileHits.set(0L);
+    }
+
     protected void removeExpiredEntries()
     {
         if (this.entries.size() == 0)
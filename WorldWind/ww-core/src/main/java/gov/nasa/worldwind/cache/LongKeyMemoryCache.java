@@ -0,0 +1,591 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A memory cache keyed by primitive <code>long</code> values, intended for tiles identified by {@link PackedTileKey}s.
+ * Entries are held in parallel arrays addressed by open addressing with linear probing, so adding and finding an entry
+ * neither allocates nor boxes its key. Least recently used entries are removed when the cache fills, as they are by
+ * {@link BasicMemoryCache}.
+ * <p/>
+ * The cache also implements the object-keyed {@link MemoryCache} interface so that it can be used wherever a memory
+ * cache is. A {@link TileKey} is stored under its packed key, so the tile can be found either by the
+ * <code>TileKey</code> or by the packed key. A <code>Long</code> is stored under its value. Other keys, and tile keys
+ * that can't be packed, are assigned negative keys internally, which costs a hash map lookup. For that reason the
+ * primitive methods accept only keys that are zero or greater. Cache listeners are passed the key an entry was added
+ * with, or a <code>Long</code> if it was added with a primitive key.
+ *
+ * @version $Id$
+ */
+public class LongKeyMemoryCache implements MemoryCache
+{
+    protected static final int DEFAULT_INITIAL_SLOTS = 256;
+
+    // Entry slots. A slot is empty when its value is null.
+    protected long[] keys;
+    protected Object[] values;
+    protected Object[] keyObjects;
+    protected long[] sizes;
+    protected long[] lastUsed;
+    protected int numObjects;
+    protected long clock;
+
+    // Internal keys assigned to keys that can't be packed.
+    protected Map<Object, Long> otherKeys = new HashMap<Object, Long>();
+    protected long nextOtherKey = -2;
+
+    protected CopyOnWriteArrayList<MemoryCache.CacheListener> listeners =
+        new CopyOnWriteArrayList<MemoryCache.CacheListener>();
+    protected AtomicLong capacity = new AtomicLong();
+    protected AtomicLong currentUsedCapacity = new AtomicLong();
+    protected volatile long lowWater;
+    protected String name = "";
+
+    protected final Object lock = new Object();
+
+    /**
+     * Constructs a new cache using <code>capacity</code> for maximum size, and <code>loWater</code> for the low water.
+     *
+     * @param loWater  the low water level.
+     * @param capacity the maximum capacity.
+     */
+    public LongKeyMemoryCache(long loWater, long capacity)
+    {
+        this.capacity.set(capacity);
+        this.lowWater = loWater;
+        this.allocateSlots(DEFAULT_INITIAL_SLOTS);
+    }
+
+    /** @return the number of objects currently stored in this cache. */
+    public int getNumObjects()
+    {
+        synchronized (this.lock)
+        {
+            return this.numObjects;
+        }
+    }
+
+    /** @return the capacity of the cache. */
+    public long getCapacity()
+    {
+        return this.capacity.get();
+    }
+
+    /** @return the number of cache units that the cache currently holds. */
+    public long getUsedCapacity()
+    {
+        return this.currentUsedCapacity.get();
+    }
+
+    /** @return the amount of free space left in the cache (in cache units). */
+    public long getFreeCapacity()
+    {
+        return Math.max(this.capacity.get() - this.currentUsedCapacity.get(), 0);
+    }
+
+    public void setName(String name)
+    {
+        this.name = name != null ? name : "";
+    }
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+    public void addCacheListener(MemoryCache.CacheListener listener)
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.nullListenerAdded");
+            Logging.logger().warning(message);
+            throw new IllegalArgumentException(message);
+        }
+        this.listeners.add(listener);
+    }
+
+    public void removeCacheListener(MemoryCache.CacheListener listener)
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.nullListenerRemoved");
+            Logging.logger().warning(message);
+            throw new IllegalArgumentException(message);
+        }
+        this.listeners.remove(listener);
+    }
+
+    public void setCapacity(long newCapacity)
+    {
+        this.capacity.set(newCapacity);
+    }
+
+    public void setLowWater(long loWater)
+    {
+        if (loWater < this.capacity.get() && loWater >= 0)
+        {
+            this.lowWater = loWater;
+        }
+    }
+
+    public long getLowWater()
+    {
+        return this.lowWater;
+    }
+
+    public boolean contains(Object key)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        synchronized (this.lock)
+        {
+            long k = this.getKey(key, false);
+            return k != PackedTileKey.NONE && this.indexOf(k) >= 0;
+        }
+    }
+
+    /**
+     * Returns true if the cache contains the item stored under a primitive key. This does not mark the item as used.
+     *
+     * @param key the key, such as a packed tile key.
+     *
+     * @return true if the cache holds the item, otherwise false. Always false if the key is negative.
+     */
+    public boolean contains(long key)
+    {
+        if (key < 0)
+            return false;
+
+        synchronized (this.lock)
+        {
+            return this.indexOf(key) >= 0;
+        }
+    }
+
+    public boolean add(Object key, Object clientObject, long clientObjectSize)
+    {
+        if (key == null || !this.isAddable(clientObject, clientObjectSize))
+        {
+            this.logItemNotAdded(clientObjectSize);
+            return false;
+        }
+
+        synchronized (this.lock)
+        {
+            this.put(this.getKey(key, true), key, clientObject, clientObjectSize);
+        }
+
+        return true;
+    }
+
+    public boolean add(Object key, Cacheable clientObject)
+    {
+        return this.add(key, clientObject, clientObject.getSizeInBytes());
+    }
+
+    /**
+     * Adds an object to the cache under a primitive key. The add fails if the key is negative, if the object is null,
+     * or if the size is zero, negative or greater than the maximum capacity.
+     *
+     * @param key              the key, such as a packed tile key.
+     * @param clientObject     the object to cache.
+     * @param clientObjectSize the size of the object in cache units.
+     *
+     * @return true if the object was added, otherwise false.
+     */
+    public boolean add(long key, Object clientObject, long clientObjectSize)
+    {
+        if (key < 0 || !this.isAddable(clientObject, clientObjectSize))
+        {
+            this.logItemNotAdded(clientObjectSize);
+            return false;
+        }
+
+        synchronized (this.lock)
+        {
+            this.put(key, null, clientObject, clientObjectSize);
+        }
+
+        return true;
+    }
+
+    public boolean add(long key, Cacheable clientObject)
+    {
+        return this.add(key, clientObject, clientObject.getSizeInBytes());
+    }
+
+    public void remove(Object key)
+    {
+        if (key == null)
+        {
+            Logging.logger().finer("nullValue.KeyIsNull");
+            return;
+        }
+
+        synchronized (this.lock)
+        {
+            long k = this.getKey(key, false);
+            int index = k != PackedTileKey.NONE ? this.indexOf(k) : -1;
+            if (index >= 0)
+                this.removeAt(index);
+        }
+    }
+
+    /**
+     * Removes the object stored under a primitive key. Does nothing if there's no such object.
+     *
+     * @param key the key, such as a packed tile key.
+     */
+    public void remove(long key)
+    {
+        if (key < 0)
+            return;
+
+        synchronized (this.lock)
+        {
+            int index = this.indexOf(key);
+            if (index >= 0)
+                this.removeAt(index);
+        }
+    }
+
+    public Object getObject(Object key)
+    {
+        if (key == null)
+        {
+            Logging.logger().finer("nullValue.KeyIsNull");
+            return null;
+        }
+
+        synchronized (this.lock)
+        {
+            long k = this.getKey(key, false);
+            return k != PackedTileKey.NONE ? this.get(k) : null;
+        }
+    }
+
+    /**
+     * Returns the object stored under a primitive key, and marks it as recently used.
+     *
+     * @param key the key, such as a packed tile key.
+     *
+     * @return the object, or null if there's no object stored under the key or the key is negative.
+     */
+    public Object getObject(long key)
+    {
+        if (key < 0)
+            return null;
+
+        synchronized (this.lock)
+        {
+            return this.get(key);
+        }
+    }
+
+    /** Empties the cache. */
+    public void clear()
+    {
+        synchronized (this.lock)
+        {
+            Object[] oldValues = this.values;
+            Object[] oldKeyObjects = this.keyObjects;
+            long[] oldKeys = this.keys;
+
+            this.allocateSlots(DEFAULT_INITIAL_SLOTS);
+            this.numObjects = 0;
+            this.otherKeys.clear();
+            this.currentUsedCapacity.set(0);
+
+            for (int i = 0; i < oldValues.length; i++)
+            {
+                if (oldValues[i] != null)
+                    this.notifyRemoved(oldKeys[i], oldKeyObjects[i], oldValues[i]);
+            }
+        }
+    }
+
+    protected boolean isAddable(Object clientObject, long clientObjectSize)
+    {
+        return clientObject != null && clientObjectSize > 0 && clientObjectSize <= this.capacity.get();
+    }
+
+    protected void logItemNotAdded(long clientObjectSize)
+    {
+        String message = Logging.getMessage("BasicMemoryCache.CacheItemNotAdded");
+
+        if (clientObjectSize > this.capacity.get())
+            message += " - " + Logging.getMessage("BasicMemoryCache.ItemTooLargeForCache");
+
+        Logging.logger().warning(message);
+    }
+
+    /**
+     * Maps an object key to the primitive key it's stored under. MUST BE CALLED WITHIN SYNCHRONIZED.
+     *
+     * @param key    the object key.
+     * @param create true to assign an internal key if the key can't be packed and has none.
+     *
+     * @return the primitive key, or {@link PackedTileKey#NONE} if the key has none and <code>create</code> is false.
+     */
+    protected long getKey(Object key, boolean create)
+    {
+        if (key instanceof TileKey)
+        {
+            long k = ((TileKey) key).getPackedKey();
+            if (k != PackedTileKey.NONE)
+                return k;
+        }
+        else if (key instanceof Long && (Long) key >= 0)
+        {
+            return (Long) key;
+        }
+
+        Long k = this.otherKeys.get(key);
+        if (k == null && create)
+        {
+            k = this.nextOtherKey--;
+            this.otherKeys.put(key, k);
+        }
+
+        return k != null ? k : PackedTileKey.NONE;
+    }
+
+    protected static int hash(long key)
+    {
+        // Mix the bits so that keys differing only in their high bits, such as packed keys of the same tile in
+        // different datasets, spread across the table.
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    protected void allocateSlots(int numSlots)
+    {
+        this.keys = new long[numSlots];
+        this.values = new Object[numSlots];
+        this.keyObjects = new Object[numSlots];
+        this.sizes = new long[numSlots];
+        this.lastUsed = new long[numSlots];
+    }
+
+    protected int indexOf(long key) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        int mask = this.keys.length - 1;
+        for (int i = hash(key) & mask; this.values[i] != null; i = (i + 1) & mask)
+        {
+            if (this.keys[i] == key)
+                return i;
+        }
+
+        return -1;
+    }
+
+    protected Object get(long key) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        int index = this.indexOf(key);
+        if (index < 0)
+            return null;
+
+        this.lastUsed[index] = ++this.clock;
+        return this.values[index];
+    }
+
+    protected void put(long key, Object keyObject, Object clientObject, long clientObjectSize) // SYNCHRONIZED
+    {
+        int existing = this.indexOf(key);
+        if (existing >= 0) // replacing
+            this.removeAt(existing);
+
+        if (this.currentUsedCapacity.get() + clientObjectSize > this.capacity.get())
+            this.makeSpace(clientObjectSize);
+
+        // The removal above may have discarded the internal key assigned to an object key. Assign it again.
+        if (key < 0 && !this.otherKeys.containsKey(keyObject))
+            this.otherKeys.put(keyObject, key);
+
+        // Keep the table at most half full so that probe sequences stay short.
+        if (2 * (this.numObjects + 1) > this.keys.length)
+            this.rehash(2 * this.keys.length, Long.MIN_VALUE);
+
+        this.insert(key, keyObject, clientObject, clientObjectSize, ++this.clock);
+        this.numObjects++;
+        this.currentUsedCapacity.addAndGet(clientObjectSize);
+    }
+
+    protected void insert(long key, Object keyObject, Object clientObject, long size, long time) // SYNCHRONIZED
+    {
+        int mask = this.keys.length - 1;
+        int i = hash(key) & mask;
+        while (this.values[i] != null)
+        {
+            i = (i + 1) & mask;
+        }
+
+        this.keys[i] = key;
+        this.values[i] = clientObject;
+        this.keyObjects[i] = keyObject;
+        this.sizes[i] = size;
+        this.lastUsed[i] = time;
+    }
+
+    protected void removeAt(int index) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        long key = this.keys[index];
+        Object keyObject = this.keyObjects[index];
+        Object clientObject = this.values[index];
+
+        this.numObjects--;
+        this.currentUsedCapacity.addAndGet(-this.sizes[index]);
+
+        // Close the gap left by the entry by shifting back any later entry in the same probe sequence that can move
+        // into it, so that lookups never stop early at an empty slot.
+        int mask = this.keys.length - 1;
+        int hole = index;
+        for (int i = (hole + 1) & mask; this.values[i] != null; i = (i + 1) & mask)
+        {
+            int home = hash(this.keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask))
+            {
+                this.keys[hole] = this.keys[i];
+                this.values[hole] = this.values[i];
+                this.keyObjects[hole] = this.keyObjects[i];
+                this.sizes[hole] = this.sizes[i];
+                this.lastUsed[hole] = this.lastUsed[i];
+                hole = i;
+            }
+        }
+        this.values[hole] = null;
+        this.keyObjects[hole] = null;
+
+        this.notifyRemoved(key, keyObject, clientObject);
+    }
+
+    /**
+     * Rebuilds the slot arrays with a new number of slots, leaving out the entries last used at or before a specified
+     * time. MUST BE CALLED WITHIN SYNCHRONIZED.
+     *
+     * @param numSlots the new number of slots, a power of two.
+     * @param maxTime  the last-used time at or before which entries are removed.
+     */
+    protected void rehash(int numSlots, long maxTime)
+    {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        Object[] oldKeyObjects = this.keyObjects;
+        long[] oldSizes = this.sizes;
+        long[] oldLastUsed = this.lastUsed;
+
+        this.allocateSlots(numSlots);
+
+        for (int i = 0; i < oldValues.length; i++)
+        {
+            if (oldValues[i] == null)
+                continue;
+
+            if (oldLastUsed[i] > maxTime)
+            {
+                this.insert(oldKeys[i], oldKeyObjects[i], oldValues[i], oldSizes[i], oldLastUsed[i]);
+            }
+            else
+            {
+                this.numObjects--;
+                this.currentUsedCapacity.addAndGet(-oldSizes[i]);
+                this.notifyRemoved(oldKeys[i], oldKeyObjects[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until there's at least <code>spaceRequired</code> free and the used
+     * capacity is no more than the low water level. MUST BE CALLED WITHIN SYNCHRONIZED.
+     *
+     * @param spaceRequired the amount of space required.
+     */
+    protected void makeSpace(long spaceRequired)
+    {
+        if (spaceRequired > this.capacity.get() || spaceRequired < 0)
+            return;
+
+        long limit = Math.min(this.lowWater, this.capacity.get() - spaceRequired);
+
+        long[] times = new long[this.numObjects];
+        for (int i = 0, j = 0; i < this.values.length; i++)
+        {
+            if (this.values[i] != null)
+                times[j++] = this.lastUsed[i];
+        }
+        Arrays.sort(times);
+
+        // Find the fewest least recently used entries whose removal brings the used capacity down to the limit. Last
+        // used times are unique, so removing the entries used at or before times[n] removes exactly n + 1 entries.
+        int lo = 0;
+        int hi = times.length - 1;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (this.getUsedCapacityAfter(times[mid]) <= limit)
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+
+        if (times.length > 0)
+            this.rehash(this.keys.length, times[lo]);
+    }
+
+    protected long getUsedCapacityAfter(long maxTime) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        long used = 0;
+        for (int i = 0; i < this.values.length; i++)
+        {
+            if (this.values[i] != null && this.lastUsed[i] > maxTime)
+                used += this.sizes[i];
+        }
+
+        return used;
+    }
+
+    protected void notifyRemoved(long key, Object keyObject, Object clientObject) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        if (key < 0)
+            this.otherKeys.remove(keyObject);
+
+        if (this.listeners.isEmpty())
+            return;
+
+        Object listenerKey = keyObject != null ? keyObject : key;
+        for (MemoryCache.CacheListener listener : this.listeners)
+        {
+            try
+            {
+                listener.entryRemoved(listenerKey, clientObject);
+            }
+            catch (Exception e)
+            {
+                listener.removalException(e, listenerKey, clientObject);
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MemoryCache " + this.name + " max size = " + this.getCapacity() + " current size = "
+            + this.currentUsedCapacity.get() + " number of items: " + this.getNumObjects();
+    }
+}
@@ -0,0 +1,725 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.locks.*;
+import java.util.logging.Level;
+
+/**
+ * Stores the tiles of a {@link LevelSet} in a few large files rather than one file per tile. A tile pack is a directory
+ * holding an index file and one or more data files. Tile contents are appended to the current data file, which is
+ * closed and a new one started once it reaches the pack's maximum data file size. The index is a memory-mapped hash
+ * table from a tile's level, row and column to the location of its contents, so locating a tile reads no file and
+ * reading its contents costs one positional read.
+ * <p/>
+ * A tile pack is safe for use by multiple threads. Any number of threads may read tiles concurrently while one thread
+ * writes. A pack must not be opened by more than one process at a time; {@link #getTilePack(FileStore, LevelSet)}
+ * shares one instance per pack directory within a process.
+ * <p/>
+ * Replacing or removing a tile doesn't reclaim the space used by its previous contents. Existing trees of per-tile
+ * files are converted to packs by {@link TilePackConverter}.
+ *
+ * @version $Id$
+ */
+public class TilePack
+{
+    /** The name of a tile pack's index file. */
+    public static final String INDEX_FILE_NAME = "tiles.idx";
+    /** The suffix of a tile pack's data files. */
+    public static final String DATA_FILE_SUFFIX = ".dat";
+    /** The default maximum size of a data file, in bytes. */
+    public static final long DEFAULT_MAX_DATA_FILE_SIZE = 1L << 30;
+
+    protected static final int MAGIC = 0x57575450; // "WWTP"
+    protected static final int VERSION = 1;
+    protected static final int HEADER_SIZE = 32;
+    protected static final int SLOT_SIZE = 40;
+    protected static final int INITIAL_CAPACITY = 1024;
+    // Header field offsets.
+    protected static final int CAPACITY_OFFSET = 8;
+    protected static final int COUNT_OFFSET = 12;
+    protected static final int NUM_DATA_FILES_OFFSET = 16;
+    // Slot field offsets. A slot's level is stored plus one so that zero marks an empty slot.
+    protected static final int SLOT_LEVEL = 0;
+    protected static final int SLOT_ROW = 4;
+    protected static final int SLOT_COLUMN = 8;
+    protected static final int SLOT_DATA_FILE = 12;
+    protected static final int SLOT_POSITION = 16;
+    protected static final int SLOT_LENGTH = 24;
+    protected static final int SLOT_TIME = 32;
+
+    protected static final Map<File, TilePack> openPacks = new HashMap<File, TilePack>();
+
+    protected final File directory;
+    protected final long maxDataFileSize;
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+    protected RandomAccessFile indexFile;
+    protected MappedByteBuffer index;
+    protected int capacity;
+    protected int count;
+    protected List<FileChannel> dataFiles = new ArrayList<FileChannel>();
+    protected boolean closed;
+
+    /** The contents of a tile read from a pack. */
+    public static class Entry
+    {
+        protected final String formatSuffix;
+        protected final ByteBuffer buffer;
+        protected final long lastModified;
+
+        public Entry(String formatSuffix, ByteBuffer buffer, long lastModified)
+        {
+            this.formatSuffix = formatSuffix;
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Returns the suffix of the file the tile would have been stored in, including the leading period, such as
+         * ".png".
+         *
+         * @return the tile's format suffix.
+         */
+        public String getFormatSuffix()
+        {
+            return this.formatSuffix;
+        }
+
+        /**
+         * Returns the tile's contents.
+         *
+         * @return the tile's contents, positioned at zero.
+         */
+        public ByteBuffer getBuffer()
+        {
+            return this.buffer;
+        }
+
+        /**
+         * Returns the time the tile was written to the pack, in milliseconds since the epoch.
+         *
+         * @return the time the tile was written.
+         */
+        public long getLastModified()
+        {
+            return this.lastModified;
+        }
+    }
+
+    /**
+     * Opens the tile pack in a directory, optionally creating it if it doesn't exist.
+     *
+     * @param directory       the pack directory.
+     * @param create          true to create the pack if the directory doesn't contain one.
+     * @param maxDataFileSize the size at which a data file is closed and a new one started.
+     *
+     * @throws IllegalArgumentException if the directory is null or the maximum data file size is less than one.
+     * @throws IOException              if the pack doesn't exist and <code>create</code> is false, or the pack cannot
+     *                                  be read or created.
+     */
+    public TilePack(File directory, boolean create, long maxDataFileSize) throws IOException
+    {
+        if (directory == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (maxDataFileSize < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "maxDataFileSize=" + maxDataFileSize);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.directory = directory;
+        this.maxDataFileSize = maxDataFileSize;
+
+        File file = new File(directory, INDEX_FILE_NAME);
+        if (!file.exists())
+        {
+            if (!create)
+                throw new FileNotFoundException(Logging.getMessage("generic.FileNotFound", file));
+
+            if (!directory.exists() && !directory.mkdirs())
+                throw new IOException(Logging.getMessage("generic.CannotCreateDirectory", directory));
+        }
+
+        this.indexFile = new RandomAccessFile(file, "rw");
+        try
+        {
+            if (this.indexFile.length() == 0)
+                this.initIndex(INITIAL_CAPACITY);
+            else
+                this.readIndex();
+
+            int numDataFiles = this.index.getInt(NUM_DATA_FILES_OFFSET);
+            for (int i = 0; i < numDataFiles; i++)
+            {
+                this.dataFiles.add(new RandomAccessFile(this.getDataFile(i), "rw").getChannel());
+            }
+        }
+        catch (IOException e)
+        {
+            this.closeFiles();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the tile pack in a directory, optionally creating it if it doesn't exist. The pack's data files are limited
+     * to {@link #DEFAULT_MAX_DATA_FILE_SIZE}.
+     *
+     * @param directory the pack directory.
+     * @param create    true to create the pack if the directory doesn't contain one.
+     *
+     * @throws IllegalArgumentException if the directory is null.
+     * @throws IOException              if the pack doesn't exist and <code>create</code> is false, or the pack cannot
+     *                                  be read or created.
+     */
+    public TilePack(File directory, boolean create) throws IOException
+    {
+        this(directory, create, DEFAULT_MAX_DATA_FILE_SIZE);
+    }
+
+    /**
+     * Returns the tile pack holding a level set's tiles in a file store, if there is one. A level set's pack is in the
+     * file store directory named by the cache name of the level set's first level, the directory that also holds the
+     * level set's per-tile files. The pack is opened the first time it's requested, and the same instance is returned
+     * to all callers thereafter.
+     *
+     * @param fileStore the file store to search.
+     * @param levels    the level set.
+     *
+     * @return the level set's tile pack, or null if the file store contains no pack for the level set or the pack
+     *         cannot be opened.
+     *
+     * @throws IllegalArgumentException if either argument is null.
+     */
+    public static TilePack getTilePack(FileStore fileStore, LevelSet levels)
+    {
+        if (fileStore == null)
+        {
+            String message = Logging.getMessage("nullValue.FileStoreIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (levels == null)
+        {
+            String message = Logging.getMessage("nullValue.LevelSetIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        String cacheName = levels.getFirstLevel().getCacheName();
+        if (WWUtil.isEmpty(cacheName))
+            return null;
+
+        URL url = fileStore.findFile(cacheName + "/" + INDEX_FILE_NAME, false);
+        File file = url != null ? WWIO.convertURLToFile(url) : null;
+        if (file == null)
+            return null;
+
+        return getTilePack(file.getParentFile());
+    }
+
+    /**
+     * Returns the tile pack in a directory, opening it if it's not already open.
+     *
+     * @param directory the pack directory.
+     *
+     * @return the pack, or null if the directory contains no pack or the pack cannot be opened.
+     *
+     * @throws IllegalArgumentException if the directory is null.
+     */
+    public static TilePack getTilePack(File directory)
+    {
+        if (directory == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        synchronized (openPacks)
+        {
+            File key = directory.getAbsoluteFile();
+            TilePack pack = openPacks.get(key);
+            if (pack == null && new File(directory, INDEX_FILE_NAME).exists())
+            {
+                try
+                {
+                    pack = new TilePack(directory, false);
+                    openPacks.put(key, pack);
+                }
+                catch (IOException e)
+                {
+                    String message = Logging.getMessage("generic.CannotOpenFile", directory);
+                    Logging.logger().log(Level.SEVERE, message, e);
+                }
+            }
+
+            return pack;
+        }
+    }
+
+    /**
+     * Returns this pack's directory.
+     *
+     * @return the pack directory.
+     */
+    public File getDirectory()
+    {
+        return this.directory;
+    }
+
+    /**
+     * Returns the number of tiles in this pack.
+     *
+     * @return the number of tiles.
+     */
+    public int getTileCount()
+    {
+        this.lock.readLock().lock();
+        try
+        {
+            return this.count;
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indicates whether this pack contains a tile.
+     *
+     * @param key the tile's key.
+     *
+     * @return true if the pack contains the tile, otherwise false.
+     *
+     * @throws IllegalArgumentException if the key is null.
+     */
+    public boolean contains(TileKey key)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.TileKeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.lock.readLock().lock();
+        try
+        {
+            if (this.closed)
+                return false;
+
+            int slot = this.findSlot(key.getLevelNumber(), key.getRow(), key.getColumn());
+            return this.index.getInt(slot + SLOT_LEVEL) != 0 && this.index.getInt(slot + SLOT_LENGTH) > 0;
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads a tile's contents.
+     *
+     * @param key the tile's key.
+     *
+     * @return the tile's contents, or null if this pack doesn't contain the tile.
+     *
+     * @throws IllegalArgumentException if the key is null.
+     * @throws IOException              if an error occurs while reading the contents.
+     */
+    public Entry read(TileKey key) throws IOException
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.TileKeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        FileChannel channel;
+        long position;
+        int length;
+        long time;
+
+        this.lock.readLock().lock();
+        try
+        {
+            if (this.closed)
+                return null;
+
+            int slot = this.findSlot(key.getLevelNumber(), key.getRow(), key.getColumn());
+            if (this.index.getInt(slot + SLOT_LEVEL) == 0)
+                return null;
+
+            length = this.index.getInt(slot + SLOT_LENGTH);
+            if (length <= 0)
+                return null;
+
+            channel = this.dataFiles.get(this.index.getInt(slot + SLOT_DATA_FILE));
+            position = this.index.getLong(slot + SLOT_POSITION);
+            time = this.index.getLong(slot + SLOT_TIME);
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+
+        // Contents are never overwritten once written, so they may be read outside the lock. The record starts with
+        // the length and characters of the format suffix, followed by the tile's contents.
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException(this.getDirectory().getPath());
+        }
+        buffer.flip();
+
+        int suffixLength = buffer.get() & 0xff;
+        byte[] suffix = new byte[suffixLength];
+        buffer.get(suffix);
+
+        return new Entry(new String(suffix, "UTF-8"), buffer.slice(), time);
+    }
+
+    /**
+     * Writes a tile's contents, replacing any contents previously written for the tile. Writes are serialized; reads
+     * proceed concurrently with a write.
+     *
+     * @param key          the tile's key.
+     * @param formatSuffix the suffix of the file the tile would have been stored in, such as ".png".
+     * @param buffer       the tile's contents, from its position to its limit. The buffer's position is not changed.
+     *
+     * @throws IllegalArgumentException if any argument is null.
+     * @throws IOException              if an error occurs while writing the contents or the index.
+     */
+    public synchronized void write(TileKey key, String formatSuffix, ByteBuffer buffer) throws IOException
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.TileKeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (formatSuffix == null)
+        {
+            String message = Logging.getMessage("nullValue.StringIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (buffer == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.checkOpen();
+
+        byte[] suffix = formatSuffix.getBytes("UTF-8");
+        ByteBuffer header = ByteBuffer.allocate(1 + suffix.length);
+        header.put((byte) suffix.length).put(suffix).flip();
+        ByteBuffer contents = buffer.duplicate();
+        int length = header.remaining() + contents.remaining();
+
+        // Only this thread appends to the data files, so the contents can be written without holding the index lock.
+        int dataFileNumber = this.dataFiles.size() - 1;
+        if (dataFileNumber < 0 || this.dataFiles.get(dataFileNumber).size() + length > this.maxDataFileSize)
+            dataFileNumber = this.addDataFile();
+
+        FileChannel channel = this.dataFiles.get(dataFileNumber);
+        long position = channel.size();
+        long offset = position;
+        while (header.hasRemaining())
+        {
+            offset += channel.write(header, offset);
+        }
+        while (contents.hasRemaining())
+        {
+            offset += channel.write(contents, offset);
+        }
+
+        this.lock.writeLock().lock();
+        try
+        {
+            int slot = this.findSlot(key.getLevelNumber(), key.getRow(), key.getColumn());
+            if (this.index.getInt(slot + SLOT_LEVEL) == 0)
+            {
+                if (2 * (this.count + 1) > this.capacity)
+                {
+                    this.resizeIndex(2 * this.capacity);
+                    slot = this.findSlot(key.getLevelNumber(), key.getRow(), key.getColumn());
+                }
+
+                this.count++;
+                this.index.putInt(COUNT_OFFSET, this.count);
+            }
+
+            this.index.putInt(slot + SLOT_ROW, key.getRow());
+            this.index.putInt(slot + SLOT_COLUMN, key.getColumn());
+            this.index.putInt(slot + SLOT_DATA_FILE, dataFileNumber);
+            this.index.putLong(slot + SLOT_POSITION, position);
+            this.index.putInt(slot + SLOT_LENGTH, length);
+            this.index.putLong(slot + SLOT_TIME, System.currentTimeMillis());
+            this.index.putInt(slot + SLOT_LEVEL, key.getLevelNumber() + 1);
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a tile from this pack. Has no effect if the pack doesn't contain the tile.
+     *
+     * @param key the tile's key.
+     *
+     * @throws IllegalArgumentException if the key is null.
+     */
+    public synchronized void remove(TileKey key)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.TileKeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.lock.writeLock().lock();
+        try
+        {
+            if (this.closed)
+                return;
+
+            // The slot is kept so that lookups of tiles that collided with this one still find them. Its length of zero
+            // marks the tile as absent.
+            int slot = this.findSlot(key.getLevelNumber(), key.getRow(), key.getColumn());
+            if (this.index.getInt(slot + SLOT_LEVEL) != 0)
+                this.index.putInt(slot + SLOT_LENGTH, 0);
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes this pack's index and data to the storage device.
+     *
+     * @throws IOException if an error occurs while writing.
+     */
+    public synchronized void flush() throws IOException
+    {
+        this.checkOpen();
+
+        for (FileChannel channel : this.dataFiles)
+        {
+            channel.force(false);
+        }
+
+        this.index.force();
+    }
+
+    /**
+     * Flushes and closes this pack. Subsequent reads find no tiles, and subsequent writes fail.
+     *
+     * @throws IOException if an error occurs while flushing the pack.
+     */
+    public synchronized void close() throws IOException
+    {
+        if (this.closed)
+            return;
+
+        try
+        {
+            this.flush();
+        }
+        finally
+        {
+            this.lock.writeLock().lock();
+            try
+            {
+                this.closed = true;
+                this.closeFiles();
+            }
+            finally
+            {
+                this.lock.writeLock().unlock();
+            }
+
+            synchronized (openPacks)
+            {
+                if (openPacks.get(this.directory.getAbsoluteFile()) == this)
+                    openPacks.remove(this.directory.getAbsoluteFile());
+            }
+        }
+    }
+
+    protected void checkOpen() throws IOException
+    {
+        if (this.closed)
+            throw new IOException(Logging.getMessage("generic.CannotOpenFile", this.directory));
+    }
+
+    protected void closeFiles()
+    {
+        for (FileChannel channel : this.dataFiles)
+        {
+            WWIO.closeStream(channel, this.directory.getPath());
+        }
+
+        WWIO.closeStream(this.indexFile, this.directory.getPath());
+    }
+
+    protected File getDataFile(int number)
+    {
+        return new File(this.directory, "tiles." + number + DATA_FILE_SUFFIX);
+    }
+
+    protected int addDataFile() throws IOException
+    {
+        int number = this.dataFiles.size();
+        FileChannel channel = new RandomAccessFile(this.getDataFile(number), "rw").getChannel();
+        channel.truncate(0);
+
+        this.lock.writeLock().lock();
+        try
+        {
+            this.dataFiles.add(channel);
+            this.index.putInt(NUM_DATA_FILES_OFFSET, this.dataFiles.size());
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+
+        return number;
+    }
+
+    protected void initIndex(int capacity) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(capacity).putInt(0).putInt(0).flip();
+
+        this.indexFile.setLength(0);
+        this.indexFile.getChannel().write(header, 0);
+        this.indexFile.setLength(HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        this.mapIndex();
+    }
+
+    protected void readIndex() throws IOException
+    {
+        this.mapIndex();
+
+        if (this.index.getInt(0) != MAGIC || this.index.getInt(4) != VERSION
+            || this.indexFile.length() != HEADER_SIZE + (long) this.capacity * SLOT_SIZE)
+        {
+            throw new IOException(Logging.getMessage("generic.CannotParse", this.directory));
+        }
+    }
+
+    protected void mapIndex() throws IOException
+    {
+        this.index = this.indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, this.indexFile.length());
+        this.capacity = this.index.getInt(CAPACITY_OFFSET);
+        this.count = this.index.getInt(COUNT_OFFSET);
+    }
+
+    /**
+     * Rehashes the index into a table of a new capacity. The new table is assembled in memory and written over the
+     * index file through its channel, then the file is mapped again. Called with the write lock held.
+     *
+     * @param newCapacity the new number of slots, a power of two.
+     *
+     * @throws IOException if an error occurs while writing the index.
+     */
+    protected void resizeIndex(int newCapacity) throws IOException
+    {
+        ByteBuffer table = ByteBuffer.allocate(HEADER_SIZE + newCapacity * SLOT_SIZE);
+        for (int i = 0; i < HEADER_SIZE; i++)
+        {
+            table.put(i, this.index.get(i));
+        }
+        table.putInt(CAPACITY_OFFSET, newCapacity);
+
+        for (int i = 0; i < this.capacity; i++)
+        {
+            int slot = HEADER_SIZE + i * SLOT_SIZE;
+            int level = this.index.getInt(slot + SLOT_LEVEL);
+            if (level == 0)
+                continue;
+
+            int newSlot = findSlot(table, newCapacity, level - 1, this.index.getInt(slot + SLOT_ROW),
+                this.index.getInt(slot + SLOT_COLUMN));
+            for (int j = 0; j < SLOT_SIZE; j++)
+            {
+                table.put(newSlot + j, this.index.get(slot + j));
+            }
+        }
+
+        FileChannel channel = this.indexFile.getChannel();
+        while (table.hasRemaining())
+        {
+            channel.write(table, table.position());
+        }
+        this.mapIndex();
+    }
+
+    protected int findSlot(int level, int row, int column)
+    {
+        return findSlot(this.index, this.capacity, level, row, column);
+    }
+
+    /**
+     * Returns the position of the slot of a tile in an index table, or of the empty slot where the tile would be added
+     * if the table doesn't contain it. Collisions are resolved by linear probing.
+     *
+     * @param table    the index table.
+     * @param capacity the table's number of slots, a power of two.
+     * @param level    the tile's level number.
+     * @param row      the tile's row.
+     * @param column   the tile's column.
+     *
+     * @return the position in the table of the slot's first byte.
+     */
+    protected static int findSlot(ByteBuffer table, int capacity, int level, int row, int column)
+    {
+        int h = (level + 1) * 0x9E3779B1 ^ row * 0x85EBCA6B ^ column * 0xC2B2AE35;
+        h ^= h >>> 16;
+        h *= 0x7FEB352D;
+        h ^= h >>> 15;
+
+        int mask = capacity - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask)
+        {
+            int slot = HEADER_SIZE + i * SLOT_SIZE;
+            int slotLevel = table.getInt(slot + SLOT_LEVEL);
+            if (slotLevel == 0 || (slotLevel == level + 1 && table.getInt(slot + SLOT_ROW) == row
+                && table.getInt(slot + SLOT_COLUMN) == column))
+            {
+                return slot;
+            }
+        }
+    }
+}
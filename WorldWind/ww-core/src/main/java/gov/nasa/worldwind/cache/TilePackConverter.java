@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+
+/**
+ * Converts a level set's tree of per-tile files to a {@link TilePack}. A level set's tiles are stored in the file store
+ * directory named by its data cache name, in files named <code>level/row/row_column.suffix</code>. The converter writes
+ * every such tile to a pack in the same directory, where tiled layers and elevation models find it, and optionally
+ * deletes the converted files. Files that don't follow the tile naming are left in place.
+ * <p/>
+ * The converter may be run from the command line with the level set directories to convert as arguments. The option
+ * <code>-remove</code> deletes each tile file once it has been written to the pack.
+ *
+ * @version $Id$
+ */
+public class TilePackConverter
+{
+    /**
+     * Converts the tile files in a level set's cache directory to a tile pack in that directory. Tiles already in the
+     * pack are replaced by the contents of their files.
+     *
+     * @param directory   the level set's cache directory.
+     * @param removeFiles true to delete each tile file once it has been written to the pack.
+     *
+     * @return the number of tiles converted.
+     *
+     * @throws IllegalArgumentException if the directory is null.
+     * @throws IOException              if the pack cannot be created or written.
+     */
+    public static int convert(File directory, boolean removeFiles) throws IOException
+    {
+        if (directory == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Use the pack already open in this process if there is one, so that there's a single writer.
+        TilePack pack = TilePack.getTilePack(directory);
+        boolean close = pack == null;
+        if (pack == null)
+            pack = new TilePack(directory, true);
+
+        try
+        {
+            int count = 0;
+
+            File[] levelDirs = directory.listFiles();
+            for (File levelDir : levelDirs != null ? levelDirs : new File[0])
+            {
+                // Skip anything other than level directories, such as the pack's own files, without logging.
+                if (!levelDir.isDirectory())
+                    continue;
+
+                Integer level = parseIndex(levelDir.getName());
+                if (level == null)
+                    continue;
+
+                File[] rowDirs = levelDir.listFiles();
+                for (File rowDir : rowDirs != null ? rowDirs : new File[0])
+                {
+                    if (rowDir.isDirectory())
+                        count += convertRow(pack, directory.getName(), level, rowDir, removeFiles);
+                }
+            }
+
+            return count;
+        }
+        finally
+        {
+            if (close)
+                pack.close();
+            else
+                pack.flush();
+        }
+    }
+
+    protected static int convertRow(TilePack pack, String cacheName, int level, File rowDir, boolean removeFiles)
+        throws IOException
+    {
+        int count = 0;
+
+        File[] files = rowDir.listFiles();
+        for (File file : files != null ? files : new File[0])
+        {
+            // Tile files are named row_column followed by the format suffix, which may have more than one part, such
+            // as ".bil.gz".
+            String name = file.getName();
+            int separator = name.indexOf('_');
+            int suffix = name.indexOf('.');
+            if (!file.isFile() || separator < 0 || suffix < separator)
+                continue;
+
+            Integer row = parseIndex(name.substring(0, separator));
+            Integer column = parseIndex(name.substring(separator + 1, suffix));
+            if (row == null || column == null)
+                continue;
+
+            ByteBuffer buffer;
+            try
+            {
+                buffer = WWIO.readFileToBuffer(file);
+            }
+            catch (IOException e)
+            {
+                String message = Logging.getMessage("generic.ExceptionAttemptingToReadFile", file);
+                Logging.logger().log(Level.WARNING, message, e);
+                continue;
+            }
+
+            pack.write(new TileKey(level, row, column, cacheName), name.substring(suffix), buffer);
+            count++;
+
+            if (removeFiles && !file.delete())
+                Logging.logger().warning(Logging.getMessage("generic.CannotDeleteFile", file));
+        }
+
+        if (removeFiles)
+            rowDir.delete(); // Succeeds only if the directory is now empty.
+
+        return count;
+    }
+
+    /**
+     * Parses a level, row or column index from a file name part. Unlike {@link WWUtil#convertStringToInteger(String)}
+     * this doesn't log names that aren't indices, since a cache directory routinely holds other files.
+     *
+     * @param s the file name part.
+     *
+     * @return the index, or null if the string is not a non-negative decimal integer.
+     */
+    protected static Integer parseIndex(String s)
+    {
+        // Nine digits always fit in an int.
+        if (s.length() == 0 || s.length() > 9)
+            return null;
+
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+                return null;
+        }
+
+        return Integer.valueOf(s);
+    }
+
+    public static void main(String[] args)
+    {
+        boolean removeFiles = false;
+        for (String arg : args)
+        {
+            if ("-remove".equals(arg))
+                removeFiles = true;
+        }
+
+        for (String arg : args)
+        {
+            if (arg.startsWith("-"))
+                continue;
+
+            try
+            {
+                long start = System.currentTimeMillis();
+                int count = convert(new File(arg), removeFiles);
+                System.out.printf("Converted %d tiles in %s in %d ms\n", count, arg,
+                    System.currentTimeMillis() - start);
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+}
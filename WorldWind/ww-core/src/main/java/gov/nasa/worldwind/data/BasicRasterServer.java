@@ -19,6 +19,9 @@ import javax.xml.xpath.*;
 import java.awt.*;
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * @author Lado Garakanidze
@@ -28,6 +31,12 @@ import java.nio.ByteBuffer;
 /**
  * BasicRasterServer maintains a list of data sources and their properties in the BasicRasterServerCache and is used to
  * compose (mosaic) a data raster of the given region of interest from data sources.
+ * <p/>
+ * The data sources are indexed by their sectors, so a composition visits only the sources intersecting the region of
+ * interest. Sources whose footprints on the composed raster do not overlap are drawn concurrently on the server's
+ * executor; sources that overlap are drawn in their original order, so the composed raster is the same as if every
+ * source were drawn in sequence. Composed rasters encoded by {@link #getRasterAsByteBuffer(gov.nasa.worldwind.avlist.AVList)}
+ * are kept in a bounded cache of composed tiles, keyed by the requested sector, size and format.
  */
 public class BasicRasterServer extends WWObjectImpl implements RasterServer
 {
@@ -36,11 +45,22 @@ public class BasicRasterServer extends WWObjectImpl implements RasterServer
     protected final String XPATH_RASTER_SERVER_SOURCE = XPATH_RASTER_SERVER + "/Sources/Source";
     protected final String XPATH_RASTER_SERVER_SOURCE_SECTOR = XPATH_RASTER_SERVER_SOURCE + "/Sector";
 
+    /** The default capacity of the composed tile cache, in bytes. */
+    protected static final long DEFAULT_COMPOSED_TILE_CACHE_CAPACITY = 32L * 1024L * 1024L;
+
     protected java.util.List<DataRaster> dataRasterList = new java.util.ArrayList<DataRaster>();
+    /** Index of the data rasters' sectors. Rebuilt from the raster list when the list changes size. */
+    protected SectorIndex<DataRaster> dataRasterIndex = new SectorIndex<DataRaster>();
 
     protected DataRasterReaderFactory readerFactory;
 
-    protected static final MemoryCache cache = new BasicRasterServerCache();
+    protected static final BasicRasterServerCache cache = new BasicRasterServerCache();
+
+    /** The executor used to draw data rasters concurrently. */
+    protected ExecutorService executor;
+    /** Cache of encoded composed tiles. */
+    protected MemoryCache composedTileCache = new BasicMemoryCache((long) (0.8 * DEFAULT_COMPOSED_TILE_CACHE_CAPACITY),
+        DEFAULT_COMPOSED_TILE_CACHE_CAPACITY);
 
     /**
      * BasicRasterServer constructor reads a list of data raster sources from *.RasterServer.xml (the file that
@@ -82,6 +102,39 @@ public class BasicRasterServer extends WWObjectImpl implements RasterServer
         return cache;
     }
 
+    /**
+     * Returns the cache of encoded composed tiles.
+     *
+     * @return the composed tile cache.
+     */
+    public MemoryCache getComposedTileCache()
+    {
+        return this.composedTileCache;
+    }
+
+    /**
+     * Returns the executor used to draw data rasters concurrently.
+     *
+     * @return the server's executor.
+     */
+    public ExecutorService getExecutor()
+    {
+        if (this.executor == null)
+            this.executor = ComputeExecutor.getInstance();
+
+        return this.executor;
+    }
+
+    /**
+     * Specifies the executor used to draw data rasters concurrently.
+     *
+     * @param executor the executor to use, or null to use an executor shared with other servers.
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
     /**
      * Returns TRUE, if the DataRaster list is not empty
      *
@@ -439,6 +492,7 @@ public class BasicRasterServer extends WWObjectImpl implements RasterServer
     public DataRaster composeRaster(AVList reqParams) throws IllegalArgumentException, WWRuntimeException
     {
         DataRaster reqRaster;
+        long startTime = System.nanoTime();
 
         if (null == reqParams)
         {
@@ -510,27 +564,15 @@ public class BasicRasterServer extends WWObjectImpl implements RasterServer
                 throw new WWRuntimeException(msg);
             }
 
-            int numIntersectedRasters = 0;
-            for (DataRaster raster : this.dataRasterList)
-            {
-                Sector rasterSector = raster.getSector();
-                Sector overlap = reqSector.intersection(rasterSector);
-                // SKIP, if not intersection, or intersects only on edges
-                if (null == overlap || overlap.getDeltaLatDegrees() == 0d || overlap.getDeltaLonDegrees() == 0d)
-                {
-                    continue;
-                }
-
-                raster.drawOnTo(reqRaster);
-                numIntersectedRasters++;
-            }
-
-            if (numIntersectedRasters == 0)
+            List<DataRaster> rasters = this.getIntersectingRasters(reqSector);
+            if (rasters.isEmpty())
             {
                 String message = Logging.getMessage("generic.SectorRequestedOutsideCoverageArea", reqSector, "");
                 Logging.logger().finest(message);
                 throw new WWRuntimeException(message);
             }
+
+            this.drawRasters(rasters, reqRaster);
         }
         catch (WWRuntimeException wwe)
         {
@@ -543,10 +585,185 @@ public class BasicRasterServer extends WWObjectImpl implements RasterServer
             Logging.logger().log(java.util.logging.Level.FINE, message, t);
             throw new WWRuntimeException(message);
         }
+        finally
+        {
+            cache.recordComposition(System.nanoTime() - startTime);
+        }
 
         return reqRaster;
     }
 
+    /**
+     * Returns the data rasters that intersect a sector with a non-zero area, in the order of the raster list.
+     *
+     * @param sector the sector of interest.
+     *
+     * @return the intersecting rasters.
+     */
+    protected List<DataRaster> getIntersectingRasters(Sector sector)
+    {
+        List<DataRaster> rasters = new ArrayList<DataRaster>();
+
+        // The index is not thread safe, and compositions are requested concurrently by the retrieval threads.
+        synchronized (this.dataRasterIndex)
+        {
+            if (this.dataRasterIndex.size() != this.dataRasterList.size())
+            {
+                this.dataRasterIndex.clear();
+                for (DataRaster raster : this.dataRasterList)
+                {
+                    this.dataRasterIndex.add(raster, raster.getSector());
+                }
+            }
+
+            this.dataRasterIndex.getItemsInRegion(sector, rasters);
+        }
+
+        Iterator<DataRaster> iter = rasters.iterator();
+        while (iter.hasNext())
+        {
+            Sector overlap = sector.intersection(iter.next().getSector());
+            // SKIP, if not intersection, or intersects only on edges
+            if (null == overlap || overlap.getDeltaLatDegrees() == 0d || overlap.getDeltaLonDegrees() == 0d)
+                iter.remove();
+        }
+
+        return rasters;
+    }
+
+    /**
+     * Draws data rasters onto a canvas. The rasters are drawn in passes: each raster is drawn in the pass after the
+     * last pass containing an earlier raster whose footprint on the canvas overlaps its own, and the rasters of a pass
+     * are drawn concurrently. The result is the same as drawing the rasters one after another in list order.
+     *
+     * @param rasters the rasters to draw, in drawing order.
+     * @param canvas  the raster to draw onto.
+     *
+     * @throws Exception if drawing a raster fails.
+     */
+    protected void drawRasters(List<DataRaster> rasters, DataRaster canvas) throws Exception
+    {
+        if (rasters.size() == 1 || !this.isConcurrentDrawingSupported(canvas))
+        {
+            for (DataRaster raster : rasters)
+            {
+                raster.drawOnTo(canvas);
+            }
+            return;
+        }
+
+        List<List<DataRaster>> passes = new ArrayList<List<DataRaster>>();
+        Rectangle[] footprints = new Rectangle[rasters.size()];
+        int[] rasterPasses = new int[rasters.size()];
+
+        for (int i = 0; i < rasters.size(); i++)
+        {
+            footprints[i] = this.computeFootprint(rasters.get(i).getSector(), canvas);
+
+            int pass = 0;
+            for (int j = 0; j < i; j++)
+            {
+                if (rasterPasses[j] >= pass && footprints[j].intersects(footprints[i]))
+                    pass = rasterPasses[j] + 1;
+            }
+
+            rasterPasses[i] = pass;
+            if (pass == passes.size())
+                passes.add(new ArrayList<DataRaster>());
+            passes.get(pass).add(rasters.get(i));
+        }
+
+        for (List<DataRaster> pass : passes)
+        {
+            if (pass.size() == 1)
+            {
+                pass.get(0).drawOnTo(canvas);
+                continue;
+            }
+
+            List<Future<?>> futures = new ArrayList<Future<?>>(pass.size());
+            for (final DataRaster raster : pass)
+            {
+                final DataRaster view = this.createCanvasView(canvas);
+                futures.add(this.getExecutor().submit(new Callable<Object>()
+                {
+                    public Object call() throws Exception
+                    {
+                        raster.drawOnTo(view);
+                        return null;
+                    }
+                }));
+            }
+
+            // Wait for every raster of the pass, so no drawing is in progress when a failure is reported.
+            Throwable failure = null;
+            for (Future<?> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (ExecutionException e)
+                {
+                    failure = (failure != null) ? failure : e.getCause();
+                }
+            }
+
+            if (failure instanceof Exception)
+                throw (Exception) failure;
+            else if (failure != null)
+                throw new WWRuntimeException(failure);
+        }
+    }
+
+    protected boolean isConcurrentDrawingSupported(DataRaster canvas)
+    {
+        return canvas instanceof BufferedImageRaster || canvas instanceof ByteBufferRaster;
+    }
+
+    /**
+     * Returns a raster sharing the pixels of a canvas, through which one thread can draw onto the canvas while other
+     * threads draw onto other parts of it. Image canvases are drawn through separate graphics contexts, and elevation
+     * canvases through separate buffer positions.
+     *
+     * @param canvas the canvas to view.
+     *
+     * @return a view of the canvas.
+     */
+    protected DataRaster createCanvasView(DataRaster canvas)
+    {
+        if (canvas instanceof BufferedImageRaster)
+            return new BufferedImageRaster(canvas.getSector(), ((BufferedImageRaster) canvas).getBufferedImage());
+
+        ByteBufferRaster raster = (ByteBufferRaster) canvas;
+        return new ByteBufferRaster(raster.getWidth(), raster.getHeight(), raster.getSector(),
+            raster.getByteBuffer().duplicate(), raster);
+    }
+
+    /**
+     * Computes the canvas pixels a raster covering a sector may write to. The rectangle is expanded by two pixels on
+     * each side to allow for the resampling filter and the differing pixel conventions of image and elevation
+     * rasters.
+     *
+     * @param sector the raster's sector.
+     * @param canvas the canvas.
+     *
+     * @return the rectangle of canvas pixels the raster may write to.
+     */
+    protected Rectangle computeFootprint(Sector sector, DataRaster canvas)
+    {
+        Sector canvasSector = canvas.getSector();
+        double sx = canvas.getWidth() / canvasSector.getDeltaLonDegrees();
+        double sy = canvas.getHeight() / canvasSector.getDeltaLatDegrees();
+
+        int x0 = (int) Math.floor(sx * (sector.getMinLongitude().degrees - canvasSector.getMinLongitude().degrees));
+        int x1 = (int) Math.ceil(sx * (sector.getMaxLongitude().degrees - canvasSector.getMinLongitude().degrees));
+        int y0 = (int) Math.floor(sy * (canvasSector.getMaxLatitude().degrees - sector.getMaxLatitude().degrees));
+        int y1 = (int) Math.ceil(sy * (canvasSector.getMaxLatitude().degrees - sector.getMinLatitude().degrees));
+
+        return new Rectangle(x0 - 2, y0 - 2, x1 - x0 + 4, y1 - y0 + 4);
+    }
+
     /**
      * Composes a DataRaster of the given width and height for the specific geographic region of interest (ROI), in the
      * requested file format (AVKey.IMAGE_FORMAT) and returns as a ByteBuffer
@@ -584,42 +801,25 @@ public class BasicRasterServer extends WWObjectImpl implements RasterServer
             throw new WWRuntimeException(message);
         }
 
-        try
+        Object tileKey = this.createComposedTileKey(params, format);
+        ByteBuffer tile = (tileKey != null) ? (ByteBuffer) this.composedTileCache.getObject(tileKey) : null;
+        if (tile != null)
         {
-            DataRaster raster = this.composeRaster(params);
+            cache.recordComposedTileHit();
+            // Give each caller its own position and limit over the shared tile.
+            return tile.duplicate().order(tile.order());
+        }
 
-            if (raster instanceof BufferedImageRaster)
-            {
-                if ("image/png".equalsIgnoreCase(format))
-                {
-                    return ImageUtil.asPNG(raster);
-                }
-                else if ("image/jpeg".equalsIgnoreCase(format) || "image/jpg".equalsIgnoreCase(format))
-                {
-                    return ImageUtil.asJPEG(raster);
-                }
-                if ("image/dds".equalsIgnoreCase(format))
-                {
-                    return DDSCompressor.compressImage(((BufferedImageRaster) raster).getBufferedImage());
-                }
-                else
-                {
-                    String msg = Logging.getMessage("generic.UnknownFileFormat", format);
-                    Logging.logger().severe(msg);
-                    throw new WWRuntimeException(msg);
-                }
-            }
-            else if (raster instanceof ByteBufferRaster)
+        try
+        {
+            tile = this.composeRasterAsByteBuffer(params, format);
+            if (tile != null && tileKey != null)
             {
-                // Elevations as BIL16 or as BIL32 are stored in the simple ByteBuffer object
-                return ((ByteBufferRaster) raster).getByteBuffer();
-            }
-            else
-            {
-                String msg = Logging.getMessage("generic.UnexpectedRasterType", raster.getClass().getName());
-                Logging.logger().severe(msg);
-                throw new WWRuntimeException(msg);
+                this.composedTileCache.add(tileKey, tile, tile.capacity());
+                return tile.duplicate().order(tile.order());
             }
+
+            return tile;
         }
         catch (WWRuntimeException wwe)
         {
@@ -634,5 +834,77 @@ public class BasicRasterServer extends WWObjectImpl implements RasterServer
 
         return null;
     }
+
+    /**
+     * Returns the key of a composed tile in the composed tile cache, or null if the request cannot be identified by its
+     * sector, size and format.
+     *
+     * @param params the request parameters.
+     * @param format the requested mime type.
+     *
+     * @return the composed tile key, or null.
+     */
+    protected Object createComposedTileKey(AVList params, String format)
+    {
+        if (null == params)
+            return null;
+
+        Object sector = params.getValue(AVKey.SECTOR);
+        Object width = params.getValue(AVKey.WIDTH);
+        Object height = params.getValue(AVKey.HEIGHT);
+        if (!(sector instanceof Sector) || !(width instanceof Integer) || !(height instanceof Integer))
+            return null;
+
+        return Arrays.asList(sector, width, height, format.toLowerCase(), params.getValue(AVKey.DATA_TYPE),
+            params.getValue(AVKey.BYTE_ORDER));
+    }
+
+    /**
+     * Composes a raster for a request and encodes it in the requested format.
+     *
+     * @param params the request parameters.
+     * @param format the requested mime type.
+     *
+     * @return the encoded raster.
+     *
+     * @throws Exception if the raster cannot be composed or encoded.
+     */
+    protected ByteBuffer composeRasterAsByteBuffer(AVList params, String format) throws Exception
+    {
+        DataRaster raster = this.composeRaster(params);
+
+        if (raster instanceof BufferedImageRaster)
+        {
+            if ("image/png".equalsIgnoreCase(format))
+            {
+                return ImageUtil.asPNG(raster);
+            }
+            else if ("image/jpeg".equalsIgnoreCase(format) || "image/jpg".equalsIgnoreCase(format))
+            {
+                return ImageUtil.asJPEG(raster);
+            }
+            if ("image/dds".equalsIgnoreCase(format))
+            {
+                return DDSCompressor.compressImage(((BufferedImageRaster) raster).getBufferedImage());
+            }
+            else
+            {
+                String msg = Logging.getMessage("generic.UnknownFileFormat", format);
+                Logging.logger().severe(msg);
+                throw new WWRuntimeException(msg);
+            }
+        }
+        else if (raster instanceof ByteBufferRaster)
+        {
+            // Elevations as BIL16 or as BIL32 are stored in the simple ByteBuffer object
+            return ((ByteBufferRaster) raster).getByteBuffer();
+        }
+        else
+        {
+            String msg = Logging.getMessage("generic.UnexpectedRasterType", raster.getClass().getName());
+            Logging.logger().severe(msg);
+            throw new WWRuntimeException(msg);
+        }
+    }
 }
 
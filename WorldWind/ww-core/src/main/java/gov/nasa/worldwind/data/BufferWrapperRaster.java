@@ -212,89 +212,84 @@ public class BufferWrapperRaster extends AbstractDataRaster implements Cacheable
         if (!this.getSector().intersects(canvas.getSector()))
             return;
 
-        int thisWidth = this.getWidth();
-        int thisHeight = this.getHeight();
-        int canvasWidth = canvas.getWidth();
-        int canvasHeight = canvas.getHeight();
-        double thisTransparentValue = this.getTransparentValue();
-
-        // Compute the transform from the canvas' coordinate system to this raster's coordinate system.
-        java.awt.geom.AffineTransform canvasToThis = this.computeSourceToDestTransform(
-            canvasWidth, canvasHeight, canvas.getSector(),
-            thisWidth, thisHeight, this.getSector());
-
-        /// Compute the region of the destination raster to be be clipped by the specified clipping sector. If no
-        // clipping sector is specified, then perform no clipping. We compute the clip region for the destination
-        // raster because this region is used to limit which pixels are rasterized to the destination.
-        java.awt.Rectangle clipRect = new java.awt.Rectangle(0, 0, canvasWidth - 1, canvasHeight - 1);
-//        if (clipSector != null)
-//        {
-//            java.awt.Rectangle rect = this.computeClipRect(clipSector, canvas);
-//            clipRect = clipRect.intersection(rect);
-//        }
-
-        // Precompute the interpolation values for each transformed x- and y-coordinate.
-        InterpolantLookupTable lut = this.createLookupTable(
-            canvasWidth, canvasHeight,           // lookup table dimensions
-            0, thisWidth - 1, 0, thisHeight - 1, // lookup table xMin, xMax, yMin, yMax
-            canvasToThis);                       // lookup transform
-        // If the lookup table is null, then no values in the canvas fall within this raster's bounds. This means
-        // either the two rasters do not intersect or that this raster fits entirely between two x-coordinates or two
-        // y-coordinates (or both) in the canvas. In either case, we do not rasterize any contribution from this raster
-        // into the canvas, and simply exit.
-        if (lut == null)
-            return;
+        // Map each canvas pixel to this raster's coordinate system, and resample this raster's values at those
+        // locations. The resampler writes only the canvas columns that fall within this raster, which keeps rasters
+        // covering different columns of the same canvas rows from overwriting each other's samples when they draw
+        // concurrently.
+        RasterResampler.Mapping mapping = RasterResampler.Mapping.fromPointSamples(
+            this.getWidth(), this.getHeight(), this.getSector(),
+            canvas.getWidth(), canvas.getHeight(), canvas.getSector());
+
+        RasterResampler resampler = new RasterResampler(this.getResamplingKernel(canvas));
+        resampler.resample(new ScalarAccess(this.getBuffer(), this.getWidth()), this.getWidth(), this.getHeight(),
+            this.getTransparentValue(),
+            new ScalarAccess(canvas.getBuffer(), canvas.getWidth()), canvas.getWidth(), canvas.getHeight(), mapping);
+    }
+
+    /**
+     * Returns the kernel used to draw this raster onto a canvas. This is the canvas' {@link AVKey#RESAMPLING_KERNEL},
+     * or this raster's if the canvas does not specify one, or {@link RasterResampler.Kernel#BILINEAR} if neither
+     * does.
+     *
+     * @param canvas the raster this raster is drawn onto.
+     *
+     * @return the resampling kernel.
+     */
+    protected RasterResampler.Kernel getResamplingKernel(DataRaster canvas)
+    {
+        Object o = canvas.getValue(AVKey.RESAMPLING_KERNEL);
+        if (!(o instanceof RasterResampler.Kernel))
+            o = this.getValue(AVKey.RESAMPLING_KERNEL);
+
+        return (o instanceof RasterResampler.Kernel) ? (RasterResampler.Kernel) o : RasterResampler.Kernel.BILINEAR;
+    }
+
+    /**
+     * Reads and writes rows of a raster's buffer for the {@link RasterResampler}. Buffers backed by one of the typed
+     * NIO buffer wrappers are duplicated for concurrent access, since bulk access to a buffer moves its position.
+     */
+    protected static class ScalarAccess extends RasterResampler.ScalarAccess
+    {
+        protected BufferWrapper buffer;
+        protected int width;
 
-        // Allocate space to hold the lookup table parameters.
-        double[] xParams = new double[3];
-        double[] yParams = new double[3];
-
-        // Compute the range of x-values in this raster that are needed during rendering.
-        lut.computeRangeX(xParams);
-        int xParamMin = (int) Math.floor(xParams[0]);
-        int xParamMax = (int) Math.ceil(xParams[1]);
-        int xParamWidth = xParamMax - xParamMin + 1;
-
-        // Allocate a buffer for two rows of samples from this raster, and allocate a buffer for one row of samples
-        // from the canvas.
-        double[] thisSamples = new double[2 * xParamWidth];
-        double[] canvasSamples = new double[canvasWidth];
-        int x1, x2, y1, y2;
-        double xf, yf;
-
-        // Iterate over each canvas row, filling canvas pixels with samples from this raster.
-        for (int j = clipRect.y; j <= (clipRect.y + clipRect.height); j++)
+        public ScalarAccess(BufferWrapper buffer, int width)
         {
-            // If the interpolant lookup table has an entry for "j", then process this row.
-            if (lut.getInterpolantY(j, yParams))
-            {
-                y1 = (int) yParams[0];
-                y2 = (int) yParams[1];
-                yf = yParams[2];
-                // Read the two rows of image samples that straddle yf.
-                this.get(xParamMin, y1, xParamWidth, thisSamples, 0);
-                this.get(xParamMin, y2, xParamWidth, thisSamples, xParamWidth);
-                // Read the canvas row samples.
-                canvas.get(0, j, canvasWidth, canvasSamples, 0);
-
-                // Iterate over each canvas column, sampling canvas pixels.
-                for (int i = clipRect.x; i <= (clipRect.x + clipRect.width); i++)
-                {
-                    // If the interpolant lookup table has an entry for "i", then process this column.
-                    if (lut.getInterpolantX(i, xParams))
-                    {
-                        x1 = (int) xParams[0] - xParamMin;
-                        x2 = (int) xParams[1] - xParamMin;
-                        xf = xParams[2];
-                        // Sample this raster with the interpolated coordinates. This produces a bi-linear mix
-                        // of the four values surrounding the canvas pixel. Place the output in the canvas sample array.
-                        sample(thisSamples, x1, x2, xf, 0, 1, yf, xParamWidth, thisTransparentValue, canvasSamples, i);
-                    }
-                }
+            this.buffer = buffer;
+            this.width = width;
+        }
+
+        public void get(int x, int y, int length, double[] array, int offset)
+        {
+            this.buffer.getDouble(x + y * this.width, array, offset, length);
+        }
+
+        public void put(int x, int y, double[] array, int offset, int length)
+        {
+            this.buffer.putDouble(x + y * this.width, array, offset, length);
+        }
 
-                // Write the canvas row samples.
-                canvas.put(0, j, canvasSamples, 0, canvasWidth);
+        @Override
+        public RasterResampler.ScalarAccess duplicate()
+        {
+            java.nio.Buffer backing = this.buffer.getBackingBuffer();
+            BufferWrapper wrapper = null;
+
+            if (this.buffer instanceof BufferWrapper.ByteBufferWrapper)
+            {
+                java.nio.ByteBuffer b = (java.nio.ByteBuffer) backing;
+                wrapper = new BufferWrapper.ByteBufferWrapper(b.duplicate().order(b.order()));
             }
+            else if (this.buffer instanceof BufferWrapper.ShortBufferWrapper)
+                wrapper = new BufferWrapper.ShortBufferWrapper(((java.nio.ShortBuffer) backing).duplicate());
+            else if (this.buffer instanceof BufferWrapper.IntBufferWrapper)
+                wrapper = new BufferWrapper.IntBufferWrapper(((java.nio.IntBuffer) backing).duplicate());
+            else if (this.buffer instanceof BufferWrapper.FloatBufferWrapper)
+                wrapper = new BufferWrapper.FloatBufferWrapper(((java.nio.FloatBuffer) backing).duplicate());
+            else if (this.buffer instanceof BufferWrapper.DoubleBufferWrapper)
+                wrapper = new BufferWrapper.DoubleBufferWrapper(((java.nio.DoubleBuffer) backing).duplicate());
+
+            return (wrapper != null) ? new ScalarAccess(wrapper, this.width) : null;
         }
     }
 
@@ -268,6 +268,54 @@ public class BufferedImageRaster extends AbstractDataRaster implements Cacheable
 //        }
 //    }
 
+    /**
+     * Returns the kernel used to draw this raster onto a canvas. This is the canvas' {@link AVKey#RESAMPLING_KERNEL},
+     * or this raster's if the canvas does not specify one. Returns null if neither does, in which case this raster is
+     * drawn by Java2D.
+     *
+     * @param canvas the raster this raster is drawn onto.
+     *
+     * @return the resampling kernel, or null if none is specified.
+     */
+    protected RasterResampler.Kernel getResamplingKernel(DataRaster canvas)
+    {
+        Object o = canvas.getValue(AVKey.RESAMPLING_KERNEL);
+        if (!(o instanceof RasterResampler.Kernel))
+            o = this.getValue(AVKey.RESAMPLING_KERNEL);
+
+        return (o instanceof RasterResampler.Kernel) ? (RasterResampler.Kernel) o : null;
+    }
+
+    /**
+     * Reads and writes rows of an image for the {@link RasterResampler}. Images are accessed through their RGB methods,
+     * which keep no per-call state, so duplicates simply share the image.
+     */
+    protected static class ColorAccess extends RasterResampler.ColorAccess
+    {
+        protected BufferedImage image;
+
+        public ColorAccess(BufferedImage image)
+        {
+            this.image = image;
+        }
+
+        public void get(int x, int y, int length, int[] array, int offset)
+        {
+            this.image.getRGB(x, y, length, 1, array, offset, length);
+        }
+
+        public void put(int x, int y, int[] array, int offset, int length)
+        {
+            this.image.setRGB(x, y, length, 1, array, offset, length);
+        }
+
+        @Override
+        public RasterResampler.ColorAccess duplicate()
+        {
+            return new ColorAccess(this.image);
+        }
+    }
+
     protected void doDrawOnTo(BufferedImageRaster canvas)
     {
         Sector sector = this.getSector();
@@ -283,6 +331,21 @@ public class BufferedImageRaster extends AbstractDataRaster implements Cacheable
             return;
         }
 
+        // Draw with the requested resampling kernel, if any. Otherwise let Java2D draw this raster's image with
+        // bilinear interpolation.
+        RasterResampler.Kernel kernel = this.getResamplingKernel(canvas);
+        if (kernel != null)
+        {
+            RasterResampler.Mapping mapping = RasterResampler.Mapping.fromAreaSamples(
+                this.getWidth(), this.getHeight(), this.getSector(),
+                canvas.getWidth(), canvas.getHeight(), canvas.getSector());
+
+            new RasterResampler(kernel).resample(new ColorAccess(this.getBufferedImage()), this.getWidth(),
+                this.getHeight(), new ColorAccess(canvas.getBufferedImage()), canvas.getWidth(), canvas.getHeight(),
+                mapping);
+            return;
+        }
+
         java.awt.Graphics2D g2d = null;
         java.awt.Shape prevClip = null;
         java.awt.Composite prevComposite = null;
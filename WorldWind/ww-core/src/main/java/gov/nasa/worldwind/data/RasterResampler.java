@@ -0,0 +1,1137 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.data;
+
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.util.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Resamples the samples of one raster onto the grid of another. The resampler maps each destination pixel to a
+ * location in the source raster, computes a value from the source samples around that location with one of several
+ * {@link Kernel}s, and writes it to the destination pixel. Destination pixels that map outside the source raster are
+ * left unchanged, as are pixels whose source samples are all missing.
+ * <p/>
+ * Scalar rasters, such as elevations, are resampled as doubles. Source samples equal to the raster's missing data value
+ * are excluded, and a destination pixel is written only if the kernel has enough valid samples to compute it. Color
+ * rasters are resampled as 32-bit ARGB pixels. Their colors are filtered with premultiplied alpha, and the result is
+ * composited over the destination pixel, so transparent source pixels leave the destination unchanged.
+ * <p/>
+ * Rasters are accessed one row at a time through {@link ScalarAccess} and {@link ColorAccess} instances, and the
+ * resampler reads and writes only the destination columns that map into the source. Large destinations are divided
+ * into bands of rows that are resampled concurrently on the resampler's executor, when the accessors can provide
+ * duplicates for use by other threads.
+ *
+ * @version $Id$
+ */
+public class RasterResampler
+{
+    /** The resampling kernels. */
+    public enum Kernel
+    {
+        /** Takes the source sample nearest each destination pixel. */
+        NEAREST,
+        /** Interpolates linearly between the four source samples surrounding each destination pixel. */
+        BILINEAR,
+        /**
+         * Interpolates the sixteen source samples surrounding each destination pixel with a Catmull-Rom cubic. Falls
+         * back to bilinear interpolation where any of the sixteen samples is missing.
+         */
+        CUBIC,
+        /** Averages the source samples covered by each destination pixel. Intended for downsampling. */
+        AVERAGE,
+        /**
+         * Takes the most frequent source sample covered by each destination pixel. Intended for downsampling classified
+         * data, whose values cannot be averaged.
+         */
+        MODE
+    }
+
+    /**
+     * Maps destination pixel indices to source sample coordinates, in which source sample <code>i</code> lies at
+     * coordinate <code>i</code>. The mapping is separable: column <code>x</code> maps to <code>offsetX + x *
+     * scaleX</code>, and row <code>y</code> to <code>offsetY + y * scaleY</code>.
+     */
+    public static class Mapping
+    {
+        protected double scaleX;
+        protected double offsetX;
+        protected double scaleY;
+        protected double offsetY;
+        protected double margin;
+
+        /**
+         * Creates a mapping.
+         *
+         * @param scaleX  the source columns per destination column.
+         * @param offsetX the source coordinate of destination column 0.
+         * @param scaleY  the source rows per destination row.
+         * @param offsetY the source coordinate of destination row 0.
+         * @param margin  the distance beyond the first and last source samples that destination pixels may map to and
+         *                still be resampled. Locations within the margin take the values at the source's edges.
+         */
+        public Mapping(double scaleX, double offsetX, double scaleY, double offsetY, double margin)
+        {
+            this.scaleX = scaleX;
+            this.offsetX = offsetX;
+            this.scaleY = scaleY;
+            this.offsetY = offsetY;
+            this.margin = margin;
+        }
+
+        /**
+         * Creates the mapping between rasters whose samples are points, with the first and last samples of each row
+         * and column on the edges of the raster's sector. This is the convention of elevation rasters.
+         *
+         * @param sourceWidth  the source raster's width.
+         * @param sourceHeight the source raster's height.
+         * @param sourceSector the source raster's sector.
+         * @param destWidth    the destination raster's width.
+         * @param destHeight   the destination raster's height.
+         * @param destSector   the destination raster's sector.
+         *
+         * @return the mapping from destination pixels to source samples.
+         *
+         * @throws IllegalArgumentException if either sector is null.
+         */
+        public static Mapping fromPointSamples(int sourceWidth, int sourceHeight, Sector sourceSector,
+            int destWidth, int destHeight, Sector destSector)
+        {
+            if (sourceSector == null || destSector == null)
+            {
+                String message = Logging.getMessage("nullValue.SectorIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            // Computed as BufferWrapperRaster computes its transform from the destination's coordinates to the
+            // source's, so that both produce identical sample locations.
+            double ty = (sourceHeight - 1) * -(destSector.getMaxLatitude().degrees
+                - sourceSector.getMaxLatitude().degrees) / sourceSector.getDeltaLatDegrees();
+            double tx = (sourceWidth - 1) * (destSector.getMinLongitude().degrees
+                - sourceSector.getMinLongitude().degrees) / sourceSector.getDeltaLonDegrees();
+            double sy = ((double) (sourceHeight - 1) / (double) Math.max(1, destHeight - 1))
+                * (destSector.getDeltaLatDegrees() / sourceSector.getDeltaLatDegrees());
+            double sx = ((double) (sourceWidth - 1) / (double) Math.max(1, destWidth - 1))
+                * (destSector.getDeltaLonDegrees() / sourceSector.getDeltaLonDegrees());
+
+            return new Mapping(sx, tx, sy, ty, 0);
+        }
+
+        /**
+         * Creates the mapping between rasters whose samples are areas that tile the raster's sector. This is the
+         * convention of image rasters. Destination pixels are sampled at their centers.
+         *
+         * @param sourceWidth  the source raster's width.
+         * @param sourceHeight the source raster's height.
+         * @param sourceSector the source raster's sector.
+         * @param destWidth    the destination raster's width.
+         * @param destHeight   the destination raster's height.
+         * @param destSector   the destination raster's sector.
+         *
+         * @return the mapping from destination pixels to source samples.
+         *
+         * @throws IllegalArgumentException if either sector is null.
+         */
+        public static Mapping fromAreaSamples(int sourceWidth, int sourceHeight, Sector sourceSector,
+            int destWidth, int destHeight, Sector destSector)
+        {
+            if (sourceSector == null || destSector == null)
+            {
+                String message = Logging.getMessage("nullValue.SectorIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            double ty = sourceHeight * (sourceSector.getMaxLatitude().degrees - destSector.getMaxLatitude().degrees)
+                / sourceSector.getDeltaLatDegrees();
+            double tx = sourceWidth * (destSector.getMinLongitude().degrees - sourceSector.getMinLongitude().degrees)
+                / sourceSector.getDeltaLonDegrees();
+            double sy = ((double) sourceHeight / (double) destHeight)
+                * (destSector.getDeltaLatDegrees() / sourceSector.getDeltaLatDegrees());
+            double sx = ((double) sourceWidth / (double) destWidth)
+                * (destSector.getDeltaLonDegrees() / sourceSector.getDeltaLonDegrees());
+
+            // Shift from pixel corners to pixel centers in both rasters.
+            return new Mapping(sx, tx + 0.5 * sx - 0.5, sy, ty + 0.5 * sy - 0.5, 0.5);
+        }
+    }
+
+    /** Reads and writes rows of a scalar raster. */
+    public abstract static class ScalarAccess
+    {
+        /**
+         * Reads part of a row.
+         *
+         * @param x      the first column to read.
+         * @param y      the row to read.
+         * @param length the number of samples to read.
+         * @param array  the array in which to place the samples.
+         * @param offset the index in the array of the first sample.
+         */
+        public abstract void get(int x, int y, int length, double[] array, int offset);
+
+        /**
+         * Writes part of a row.
+         *
+         * @param x      the first column to write.
+         * @param y      the row to write.
+         * @param array  the array holding the samples.
+         * @param offset the index in the array of the first sample.
+         * @param length the number of samples to write.
+         */
+        public abstract void put(int x, int y, double[] array, int offset, int length);
+
+        /**
+         * Returns an accessor to the same raster that can be used concurrently with this one, provided the two read
+         * or write different rows. Returns null by default, which causes rasters to be resampled on one thread.
+         *
+         * @return an accessor for use by another thread, or null if the raster cannot be accessed concurrently.
+         */
+        public ScalarAccess duplicate()
+        {
+            return null;
+        }
+    }
+
+    /** Reads and writes rows of a color raster, as non-premultiplied 32-bit ARGB pixels. */
+    public abstract static class ColorAccess
+    {
+        /**
+         * Reads part of a row.
+         *
+         * @param x      the first column to read.
+         * @param y      the row to read.
+         * @param length the number of pixels to read.
+         * @param array  the array in which to place the pixels.
+         * @param offset the index in the array of the first pixel.
+         */
+        public abstract void get(int x, int y, int length, int[] array, int offset);
+
+        /**
+         * Writes part of a row.
+         *
+         * @param x      the first column to write.
+         * @param y      the row to write.
+         * @param array  the array holding the pixels.
+         * @param offset the index in the array of the first pixel.
+         * @param length the number of pixels to write.
+         */
+        public abstract void put(int x, int y, int[] array, int offset, int length);
+
+        /**
+         * Returns an accessor to the same raster that can be used concurrently with this one, provided the two read
+         * or write different rows. Returns null by default, which causes rasters to be resampled on one thread.
+         *
+         * @return an accessor for use by another thread, or null if the raster cannot be accessed concurrently.
+         */
+        public ColorAccess duplicate()
+        {
+            return null;
+        }
+    }
+
+    /** The minimum number of destination pixels worth resampling on a separate thread. */
+    protected static final int MIN_PIXELS_PER_TASK = 16384;
+    /** Tolerance for round-off error in destination pixel locations that lie on the edges of the source raster. */
+    protected static final double THRESHOLD = 1e-6;
+
+    protected Kernel kernel;
+    /** The executor used to resample bands of rows concurrently. */
+    protected ExecutorService executor;
+
+    /**
+     * Creates a resampler that uses the specified kernel and an executor shared with other resamplers.
+     *
+     * @param kernel the resampling kernel.
+     *
+     * @throws IllegalArgumentException if the kernel is null.
+     */
+    public RasterResampler(Kernel kernel)
+    {
+        this(kernel, null);
+    }
+
+    /**
+     * Creates a resampler that uses the specified kernel and executor.
+     *
+     * @param kernel   the resampling kernel.
+     * @param executor the executor used to resample bands of rows concurrently, or null to use an executor shared with
+     *                 other resamplers.
+     *
+     * @throws IllegalArgumentException if the kernel is null.
+     */
+    public RasterResampler(Kernel kernel, ExecutorService executor)
+    {
+        if (kernel == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.kernel = kernel;
+        this.executor = executor;
+    }
+
+    public Kernel getKernel()
+    {
+        return this.kernel;
+    }
+
+    /**
+     * Returns the executor used to resample bands of rows concurrently.
+     *
+     * @return the resampler's executor.
+     */
+    public ExecutorService getExecutor()
+    {
+        if (this.executor == null)
+            this.executor = ComputeExecutor.getInstance();
+
+        return this.executor;
+    }
+
+    /**
+     * Resamples a scalar raster onto another.
+     *
+     * @param source       the source raster.
+     * @param sourceWidth  the source raster's width.
+     * @param sourceHeight the source raster's height.
+     * @param missingValue the value marking missing source samples.
+     * @param dest         the destination raster.
+     * @param destWidth    the destination raster's width.
+     * @param destHeight   the destination raster's height.
+     * @param mapping      the mapping from destination pixels to source samples.
+     *
+     * @throws IllegalArgumentException if any raster or the mapping is null.
+     */
+    public void resample(final ScalarAccess source, int sourceWidth, int sourceHeight, final double missingValue,
+        final ScalarAccess dest, int destWidth, int destHeight, Mapping mapping)
+    {
+        if (source == null || dest == null)
+        {
+            String message = Logging.getMessage("nullValue.RasterIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (mapping == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        final Axis xAxis = this.computeAxis(destWidth, sourceWidth, mapping.scaleX, mapping.offsetX, mapping.margin);
+        final Axis yAxis = this.computeAxis(destHeight, sourceHeight, mapping.scaleY, mapping.offsetY, mapping.margin);
+        if (xAxis == null || yAxis == null)
+            return;
+
+        int numTasks = this.computeNumTasks(xAxis, yAxis);
+        List<ScalarAccess[]> accessors = new ArrayList<ScalarAccess[]>(numTasks);
+        accessors.add(new ScalarAccess[] {source, dest});
+        for (int i = 1; i < numTasks; i++)
+        {
+            ScalarAccess s = source.duplicate();
+            ScalarAccess d = dest.duplicate();
+            if (s == null || d == null)
+                break;
+            accessors.add(new ScalarAccess[] {s, d});
+        }
+
+        List<Runnable> tasks = new ArrayList<Runnable>(accessors.size());
+        for (int i = 0; i < accessors.size(); i++)
+        {
+            final ScalarAccess[] a = accessors.get(i);
+            final int rowMin = yAxis.destMin + i * yAxis.size() / accessors.size();
+            final int rowMax = yAxis.destMin + (i + 1) * yAxis.size() / accessors.size() - 1;
+            tasks.add(new Runnable()
+            {
+                public void run()
+                {
+                    resampleScalarRows(a[0], missingValue, a[1], xAxis, yAxis, rowMin, rowMax);
+                }
+            });
+        }
+
+        this.runTasks(tasks);
+    }
+
+    /**
+     * Resamples a color raster onto another, compositing the resampled source over the destination.
+     *
+     * @param source       the source raster.
+     * @param sourceWidth  the source raster's width.
+     * @param sourceHeight the source raster's height.
+     * @param dest         the destination raster.
+     * @param destWidth    the destination raster's width.
+     * @param destHeight   the destination raster's height.
+     * @param mapping      the mapping from destination pixels to source samples.
+     *
+     * @throws IllegalArgumentException if any raster or the mapping is null.
+     */
+    public void resample(final ColorAccess source, int sourceWidth, int sourceHeight, final ColorAccess dest,
+        int destWidth, int destHeight, Mapping mapping)
+    {
+        if (source == null || dest == null)
+        {
+            String message = Logging.getMessage("nullValue.RasterIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (mapping == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        final Axis xAxis = this.computeAxis(destWidth, sourceWidth, mapping.scaleX, mapping.offsetX, mapping.margin);
+        final Axis yAxis = this.computeAxis(destHeight, sourceHeight, mapping.scaleY, mapping.offsetY, mapping.margin);
+        if (xAxis == null || yAxis == null)
+            return;
+
+        int numTasks = this.computeNumTasks(xAxis, yAxis);
+        List<ColorAccess[]> accessors = new ArrayList<ColorAccess[]>(numTasks);
+        accessors.add(new ColorAccess[] {source, dest});
+        for (int i = 1; i < numTasks; i++)
+        {
+            ColorAccess s = source.duplicate();
+            ColorAccess d = dest.duplicate();
+            if (s == null || d == null)
+                break;
+            accessors.add(new ColorAccess[] {s, d});
+        }
+
+        List<Runnable> tasks = new ArrayList<Runnable>(accessors.size());
+        for (int i = 0; i < accessors.size(); i++)
+        {
+            final ColorAccess[] a = accessors.get(i);
+            final int rowMin = yAxis.destMin + i * yAxis.size() / accessors.size();
+            final int rowMax = yAxis.destMin + (i + 1) * yAxis.size() / accessors.size() - 1;
+            tasks.add(new Runnable()
+            {
+                public void run()
+                {
+                    resampleColorRows(a[0], a[1], xAxis, yAxis, rowMin, rowMax);
+                }
+            });
+        }
+
+        this.runTasks(tasks);
+    }
+
+    protected int computeNumTasks(Axis xAxis, Axis yAxis)
+    {
+        long numPixels = (long) xAxis.size() * yAxis.size();
+        long numTasks = Math.min(numPixels / MIN_PIXELS_PER_TASK, 2 * Runtime.getRuntime().availableProcessors());
+
+        return (int) Math.max(1, Math.min(numTasks, yAxis.size()));
+    }
+
+    /**
+     * Runs tasks on the executor and waits for them to complete. The first task runs on the calling thread.
+     *
+     * @param tasks the tasks to run.
+     */
+    protected void runTasks(List<Runnable> tasks)
+    {
+        List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+        for (int i = 1; i < tasks.size(); i++)
+        {
+            futures.add(this.getExecutor().submit(tasks.get(i)));
+        }
+
+        RuntimeException failure = null;
+        try
+        {
+            tasks.get(0).run();
+        }
+        catch (RuntimeException e)
+        {
+            failure = e;
+        }
+
+        // Wait for every task, so that no task is writing to the destination when this returns.
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                failure = (failure != null) ? failure : new WWRuntimeException(e);
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (failure == null)
+                    failure = (cause instanceof RuntimeException) ? (RuntimeException) cause
+                        : new WWRuntimeException(cause);
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    //**************************************************************//
+    //********************  Sample Locations  **********************//
+    //**************************************************************//
+
+    /**
+     * The source samples used by each destination pixel along one axis of a raster. Entries are indexed by destination
+     * pixel index minus <code>destMin</code>, and hold source indices relative to <code>sourceMin</code>.
+     */
+    protected static class Axis
+    {
+        /** The first destination index that maps into the source. */
+        protected int destMin;
+        /** The last destination index that maps into the source. */
+        protected int destMax;
+        /** The first source index used by any destination index. */
+        protected int sourceMin;
+        /** The last source index used by any destination index. */
+        protected int sourceMax;
+        /**
+         * The nearest source index for the nearest neighbor kernel, the lower source index for the interpolating
+         * kernels, or the first covered source index for the downsampling kernels.
+         */
+        protected int[] lower;
+        /** The upper source index for the interpolating kernels, or the last covered index for the downsampling kernels. */
+        protected int[] upper;
+        /** The fractional distance from the lower to the upper source index. */
+        protected double[] fraction;
+        /** The four source indices used by the cubic kernel. */
+        protected int[] taps;
+        /** The four weights of the cubic kernel. */
+        protected double[] weights;
+
+        public int size()
+        {
+            return this.destMax - this.destMin + 1;
+        }
+    }
+
+    /**
+     * Computes the source samples used by each destination pixel along one axis.
+     *
+     * @param destSize   the number of destination pixels along the axis.
+     * @param sourceSize the number of source samples along the axis.
+     * @param scale      the source samples per destination pixel.
+     * @param offset     the source coordinate of destination pixel 0.
+     * @param margin     the distance beyond the source's first and last samples that destination pixels may map to.
+     *
+     * @return the axis, or null if no destination pixel maps into the source.
+     */
+    protected Axis computeAxis(int destSize, int sourceSize, double scale, double offset, double margin)
+    {
+        int destMin = -1;
+        int destMax = -2;
+        double min = -margin;
+        double max = sourceSize - 1 + margin;
+
+        for (int i = 0; i < destSize; i++)
+        {
+            double c = offset + scale * i;
+            if (((c - min) > -THRESHOLD) && ((max - c) > -THRESHOLD))
+            {
+                if (destMin < 0)
+                    destMin = i;
+                destMax = i;
+            }
+        }
+
+        if (destMin < 0 || sourceSize < 1)
+            return null;
+
+        Axis axis = new Axis();
+        axis.destMin = destMin;
+        axis.destMax = destMax;
+        int n = axis.size();
+        axis.lower = new int[n];
+        axis.upper = new int[n];
+        axis.fraction = new double[n];
+        if (this.kernel == Kernel.CUBIC)
+        {
+            axis.taps = new int[4 * n];
+            axis.weights = new double[4 * n];
+        }
+
+        int last = sourceSize - 1;
+        double halfWidth = Math.max(0.5, 0.5 * Math.abs(scale));
+        int sourceMin = Integer.MAX_VALUE;
+        int sourceMax = Integer.MIN_VALUE;
+
+        for (int k = 0; k < n; k++)
+        {
+            double center = offset + scale * (destMin + k);
+            double c = (center < 0) ? 0 : ((center > last) ? last : center);
+
+            if (this.kernel == Kernel.NEAREST)
+            {
+                axis.lower[k] = axis.upper[k] = clamp((int) Math.floor(c + 0.5), last);
+            }
+            else if (this.kernel == Kernel.AVERAGE || this.kernel == Kernel.MODE)
+            {
+                // The source samples whose centers lie in the destination pixel's footprint.
+                int lo = (int) Math.ceil(center - halfWidth);
+                int hi = (int) Math.ceil(center + halfWidth) - 1;
+                lo = clamp(lo, last);
+                hi = clamp(hi, last);
+                if (hi < lo)
+                    lo = hi = clamp((int) Math.floor(c + 0.5), last);
+                axis.lower[k] = lo;
+                axis.upper[k] = hi;
+            }
+            else
+            {
+                double floor = Math.floor(c);
+                axis.lower[k] = (int) floor;
+                axis.upper[k] = (int) Math.ceil(c);
+                axis.fraction[k] = c - floor;
+            }
+
+            if (this.kernel == Kernel.CUBIC)
+            {
+                double t = axis.fraction[k];
+                axis.weights[4 * k] = ((-0.5 * t + 1.0) * t - 0.5) * t;
+                axis.weights[4 * k + 1] = (1.5 * t - 2.5) * t * t + 1.0;
+                axis.weights[4 * k + 2] = ((-1.5 * t + 2.0) * t + 0.5) * t;
+                axis.weights[4 * k + 3] = (0.5 * t - 0.5) * t * t;
+                for (int m = 0; m < 4; m++)
+                {
+                    axis.taps[4 * k + m] = clamp(axis.lower[k] - 1 + m, last);
+                }
+                sourceMin = Math.min(sourceMin, axis.taps[4 * k]);
+                sourceMax = Math.max(sourceMax, axis.taps[4 * k + 3]);
+            }
+
+            sourceMin = Math.min(sourceMin, axis.lower[k]);
+            sourceMax = Math.max(sourceMax, axis.upper[k]);
+        }
+
+        axis.sourceMin = sourceMin;
+        axis.sourceMax = sourceMax;
+
+        return axis;
+    }
+
+    protected static int clamp(int index, int last)
+    {
+        return (index < 0) ? 0 : ((index > last) ? last : index);
+    }
+
+    /**
+     * Returns the first source index a destination pixel uses along an axis.
+     *
+     * @param axis the axis.
+     * @param k    the destination pixel's entry in the axis.
+     *
+     * @return the first source index used.
+     */
+    protected int getFirstSource(Axis axis, int k)
+    {
+        return (this.kernel == Kernel.CUBIC) ? axis.taps[4 * k] : axis.lower[k];
+    }
+
+    /**
+     * Returns the last source index a destination pixel uses along an axis.
+     *
+     * @param axis the axis.
+     * @param k    the destination pixel's entry in the axis.
+     *
+     * @return the last source index used.
+     */
+    protected int getLastSource(Axis axis, int k)
+    {
+        return (this.kernel == Kernel.CUBIC) ? axis.taps[4 * k + 3] : axis.upper[k];
+    }
+
+    /**
+     * A window of consecutive source rows. Moving the window reads only the rows it did not already hold.
+     *
+     * @param <T> the row array type.
+     */
+    protected abstract static class RowWindow<T>
+    {
+        protected int start;
+        protected List<T> rows = new ArrayList<T>();
+        protected List<T> spareRows = new ArrayList<T>();
+
+        public void moveTo(int newStart, int newEnd)
+        {
+            int end = this.start + this.rows.size() - 1;
+            for (int y = this.start; y <= end; y++)
+            {
+                if (y < newStart || y > newEnd)
+                    this.spareRows.add(this.rows.get(y - this.start));
+            }
+
+            List<T> newRows = new ArrayList<T>(newEnd - newStart + 1);
+            for (int y = newStart; y <= newEnd; y++)
+            {
+                if (y >= this.start && y <= end)
+                {
+                    newRows.add(this.rows.get(y - this.start));
+                }
+                else
+                {
+                    T row = this.spareRows.isEmpty() ? this.createRow() : this.spareRows.remove(
+                        this.spareRows.size() - 1);
+                    this.readRow(y, row);
+                    newRows.add(row);
+                }
+            }
+
+            this.start = newStart;
+            this.rows = newRows;
+        }
+
+        public T getRow(int y)
+        {
+            return this.rows.get(y - this.start);
+        }
+
+        protected abstract T createRow();
+
+        protected abstract void readRow(int y, T row);
+    }
+
+    //**************************************************************//
+    //********************  Scalar Kernels  ************************//
+    //**************************************************************//
+
+    protected void resampleScalarRows(final ScalarAccess source, double missing, ScalarAccess dest, Axis xAxis,
+        Axis yAxis, int rowMin, int rowMax)
+    {
+        final int x0 = xAxis.sourceMin;
+        final int length = xAxis.sourceMax - xAxis.sourceMin + 1;
+        RowWindow<double[]> window = new RowWindow<double[]>()
+        {
+            protected double[] createRow()
+            {
+                return new double[length];
+            }
+
+            protected void readRow(int y, double[] row)
+            {
+                source.get(x0, y, length, row, 0);
+            }
+        };
+
+        int n = xAxis.size();
+        double[] destRow = new double[n];
+        double[][] rows = new double[4][];
+        double[] values = (this.kernel == Kernel.MODE) ? new double[16] : null;
+
+        for (int y = rowMin; y <= rowMax; y++)
+        {
+            int k = y - yAxis.destMin;
+            window.moveTo(this.getFirstSource(yAxis, k), this.getLastSource(yAxis, k));
+            dest.get(xAxis.destMin, y, n, destRow, 0);
+
+            switch (this.kernel)
+            {
+                case NEAREST:
+                    nearest(window.getRow(yAxis.lower[k]), x0, xAxis, missing, destRow);
+                    break;
+                case BILINEAR:
+                    bilinear(window.getRow(yAxis.lower[k]), window.getRow(yAxis.upper[k]), yAxis.fraction[k], x0,
+                        xAxis, missing, destRow);
+                    break;
+                case CUBIC:
+                    for (int m = 0; m < 4; m++)
+                    {
+                        rows[m] = window.getRow(yAxis.taps[4 * k + m]);
+                    }
+                    cubic(rows, yAxis, k, x0, xAxis, missing, destRow);
+                    break;
+                case AVERAGE:
+                    average(window, yAxis.lower[k], yAxis.upper[k], x0, xAxis, missing, destRow);
+                    break;
+                case MODE:
+                    values = mode(window, yAxis.lower[k], yAxis.upper[k], x0, xAxis, missing, destRow, values);
+                    break;
+            }
+
+            dest.put(xAxis.destMin, y, destRow, 0, n);
+        }
+    }
+
+    protected static void nearest(double[] row, int x0, Axis xAxis, double missing, double[] dest)
+    {
+        for (int i = 0; i < dest.length; i++)
+        {
+            double v = row[xAxis.lower[i] - x0];
+            if (v != missing)
+                dest[i] = v;
+        }
+    }
+
+    protected static void bilinear(double[] row1, double[] row2, double yf, int x0, Axis xAxis, double missing,
+        double[] dest)
+    {
+        int[] lower = xAxis.lower;
+        int[] upper = xAxis.upper;
+        double[] fraction = xAxis.fraction;
+
+        for (int i = 0; i < dest.length; i++)
+        {
+            int x1 = lower[i] - x0;
+            int x2 = upper[i] - x0;
+            double ul = row1[x1];
+            double ll = row2[x1];
+            double lr = row2[x2];
+            double ur = row1[x2];
+
+            // Write the interpolated value only if all four samples are present. The expression is that of
+            // BufferWrapperRaster.sample, so both produce identical values.
+            if ((ul != missing) && (ur != missing) && (lr != missing) && (ll != missing))
+            {
+                double xf = fraction[i];
+                dest[i] = ((1.0 - xf) * (1.0 - yf) * ul)
+                    + ((1.0 - xf) * (yf) * ll)
+                    + ((xf) * (yf) * lr)
+                    + ((xf) * (1.0 - yf) * ur);
+            }
+        }
+    }
+
+    protected static void cubic(double[][] rows, Axis yAxis, int k, int x0, Axis xAxis, double missing,
+        double[] dest)
+    {
+        double[] wy = yAxis.weights;
+        int[] taps = xAxis.taps;
+        double[] wx = xAxis.weights;
+        // The rows holding the lower and upper samples used by the bilinear fall back.
+        double[] row1 = rows[yAxis.lower[k] - yAxis.taps[4 * k]];
+        double[] row2 = rows[yAxis.upper[k] - yAxis.taps[4 * k]];
+
+        for (int i = 0; i < dest.length; i++)
+        {
+            double sum = 0;
+            boolean complete = true;
+
+            for (int m = 0; m < 4 && complete; m++)
+            {
+                double[] row = rows[m];
+                double rowSum = 0;
+                for (int t = 0; t < 4; t++)
+                {
+                    double v = row[taps[4 * i + t] - x0];
+                    if (v == missing)
+                    {
+                        complete = false;
+                        break;
+                    }
+                    rowSum += wx[4 * i + t] * v;
+                }
+                sum += wy[4 * k + m] * rowSum;
+            }
+
+            if (complete)
+            {
+                dest[i] = sum;
+                continue;
+            }
+
+            int x1 = xAxis.lower[i] - x0;
+            int x2 = xAxis.upper[i] - x0;
+            double ul = row1[x1];
+            double ll = row2[x1];
+            double lr = row2[x2];
+            double ur = row1[x2];
+            if ((ul != missing) && (ur != missing) && (lr != missing) && (ll != missing))
+            {
+                double xf = xAxis.fraction[i];
+                double yf = yAxis.fraction[k];
+                dest[i] = ((1.0 - xf) * (1.0 - yf) * ul)
+                    + ((1.0 - xf) * (yf) * ll)
+                    + ((xf) * (yf) * lr)
+                    + ((xf) * (1.0 - yf) * ur);
+            }
+        }
+    }
+
+    protected static void average(RowWindow<double[]> window, int rowMin, int rowMax, int x0, Axis xAxis,
+        double missing, double[] dest)
+    {
+        for (int i = 0; i < dest.length; i++)
+        {
+            double sum = 0;
+            int count = 0;
+
+            for (int y = rowMin; y <= rowMax; y++)
+            {
+                double[] row = window.getRow(y);
+                for (int x = xAxis.lower[i] - x0; x <= xAxis.upper[i] - x0; x++)
+                {
+                    if (row[x] != missing)
+                    {
+                        sum += row[x];
+                        count++;
+                    }
+                }
+            }
+
+            if (count > 0)
+                dest[i] = sum / count;
+        }
+    }
+
+    protected static double[] mode(RowWindow<double[]> window, int rowMin, int rowMax, int x0, Axis xAxis,
+        double missing, double[] dest, double[] values)
+    {
+        for (int i = 0; i < dest.length; i++)
+        {
+            int count = 0;
+
+            for (int y = rowMin; y <= rowMax; y++)
+            {
+                double[] row = window.getRow(y);
+                for (int x = xAxis.lower[i] - x0; x <= xAxis.upper[i] - x0; x++)
+                {
+                    if (row[x] == missing)
+                        continue;
+
+                    if (count == values.length)
+                        values = Arrays.copyOf(values, 2 * count);
+                    values[count++] = row[x];
+                }
+            }
+
+            if (count == 0)
+                continue;
+
+            // Find the longest run of equal values. Ties go to the smallest value.
+            Arrays.sort(values, 0, count);
+            double best = values[0];
+            int bestRun = 0;
+            for (int start = 0, end; start < count; start = end)
+            {
+                end = start + 1;
+                while (end < count && values[end] == values[start])
+                {
+                    end++;
+                }
+                if (end - start > bestRun)
+                {
+                    bestRun = end - start;
+                    best = values[start];
+                }
+            }
+
+            dest[i] = best;
+        }
+
+        return values;
+    }
+
+    //**************************************************************//
+    //********************  Color Kernels  *************************//
+    //**************************************************************//
+
+    protected void resampleColorRows(final ColorAccess source, ColorAccess dest, Axis xAxis, Axis yAxis, int rowMin,
+        int rowMax)
+    {
+        final int x0 = xAxis.sourceMin;
+        final int length = xAxis.sourceMax - xAxis.sourceMin + 1;
+        RowWindow<int[]> window = new RowWindow<int[]>()
+        {
+            protected int[] createRow()
+            {
+                return new int[length];
+            }
+
+            protected void readRow(int y, int[] row)
+            {
+                source.get(x0, y, length, row, 0);
+            }
+        };
+
+        int n = xAxis.size();
+        int[] destRow = new int[n];
+        double[] color = new double[4];
+        int[] values = (this.kernel == Kernel.MODE) ? new int[16] : null;
+
+        for (int y = rowMin; y <= rowMax; y++)
+        {
+            int k = y - yAxis.destMin;
+            window.moveTo(this.getFirstSource(yAxis, k), this.getLastSource(yAxis, k));
+            dest.get(xAxis.destMin, y, n, destRow, 0);
+
+            for (int i = 0; i < n; i++)
+            {
+                color[0] = color[1] = color[2] = color[3] = 0;
+
+                switch (this.kernel)
+                {
+                    case NEAREST:
+                        accumulate(window.getRow(yAxis.lower[k])[xAxis.lower[i] - x0], 1, color);
+                        break;
+                    case BILINEAR:
+                    {
+                        int[] row1 = window.getRow(yAxis.lower[k]);
+                        int[] row2 = window.getRow(yAxis.upper[k]);
+                        int x1 = xAxis.lower[i] - x0;
+                        int x2 = xAxis.upper[i] - x0;
+                        double xf = xAxis.fraction[i];
+                        double yf = yAxis.fraction[k];
+                        accumulate(row1[x1], (1 - xf) * (1 - yf), color);
+                        accumulate(row2[x1], (1 - xf) * yf, color);
+                        accumulate(row2[x2], xf * yf, color);
+                        accumulate(row1[x2], xf * (1 - yf), color);
+                        break;
+                    }
+                    case CUBIC:
+                        for (int m = 0; m < 4; m++)
+                        {
+                            int[] row = window.getRow(yAxis.taps[4 * k + m]);
+                            for (int t = 0; t < 4; t++)
+                            {
+                                accumulate(row[xAxis.taps[4 * i + t] - x0],
+                                    yAxis.weights[4 * k + m] * xAxis.weights[4 * i + t], color);
+                            }
+                        }
+                        break;
+                    case AVERAGE:
+                    {
+                        int count = (yAxis.upper[k] - yAxis.lower[k] + 1) * (xAxis.upper[i] - xAxis.lower[i] + 1);
+                        for (int yy = yAxis.lower[k]; yy <= yAxis.upper[k]; yy++)
+                        {
+                            int[] row = window.getRow(yy);
+                            for (int x = xAxis.lower[i] - x0; x <= xAxis.upper[i] - x0; x++)
+                            {
+                                accumulate(row[x], 1.0 / count, color);
+                            }
+                        }
+                        break;
+                    }
+                    case MODE:
+                        values = modeColor(window, yAxis.lower[k], yAxis.upper[k], xAxis.lower[i] - x0,
+                            xAxis.upper[i] - x0, values, color);
+                        break;
+                }
+
+                destRow[i] = composite(color, destRow[i]);
+            }
+
+            dest.put(xAxis.destMin, y, destRow, 0, n);
+        }
+    }
+
+    /**
+     * Adds a weighted pixel to a premultiplied color accumulator.
+     *
+     * @param argb   the non-premultiplied pixel.
+     * @param weight the pixel's weight.
+     * @param color  the accumulated alpha, red, green and blue, premultiplied and in the range 0 to 255.
+     */
+    protected static void accumulate(int argb, double weight, double[] color)
+    {
+        int a = argb >>> 24;
+        if (a == 0)
+            return;
+
+        double wa = weight * a;
+        color[0] += wa;
+        wa /= 255.0;
+        color[1] += wa * ((argb >> 16) & 0xFF);
+        color[2] += wa * ((argb >> 8) & 0xFF);
+        color[3] += wa * (argb & 0xFF);
+    }
+
+    protected static int[] modeColor(RowWindow<int[]> window, int rowMin, int rowMax, int xMin, int xMax,
+        int[] values, double[] color)
+    {
+        int count = 0;
+        for (int y = rowMin; y <= rowMax; y++)
+        {
+            int[] row = window.getRow(y);
+            for (int x = xMin; x <= xMax; x++)
+            {
+                if ((row[x] >>> 24) == 0) // Transparent pixels are treated as missing.
+                    continue;
+
+                if (count == values.length)
+                    values = Arrays.copyOf(values, 2 * count);
+                values[count++] = row[x];
+            }
+        }
+
+        if (count == 0)
+            return values;
+
+        Arrays.sort(values, 0, count);
+        int best = values[0];
+        int bestRun = 0;
+        for (int start = 0, end; start < count; start = end)
+        {
+            end = start + 1;
+            while (end < count && values[end] == values[start])
+            {
+                end++;
+            }
+            if (end - start > bestRun)
+            {
+                bestRun = end - start;
+                best = values[start];
+            }
+        }
+
+        accumulate(best, 1, color);
+        return values;
+    }
+
+    /**
+     * Composites a premultiplied color over a non-premultiplied pixel.
+     *
+     * @param color the premultiplied alpha, red, green and blue of the color over the pixel, in the range 0 to 255.
+     *              Values outside that range, produced by the cubic kernel, are clamped.
+     * @param argb  the pixel under the color.
+     *
+     * @return the composited pixel.
+     */
+    protected static int composite(double[] color, int argb)
+    {
+        double sa = Math.min(255, color[0]) / 255.0;
+        if (sa <= 0)
+            return argb;
+
+        if (sa >= 1)
+        {
+            return 0xFF000000 | (toByte(color[1]) << 16) | (toByte(color[2]) << 8) | toByte(color[3]);
+        }
+
+        double sr = Math.max(0, Math.min(255 * sa, color[1]));
+        double sg = Math.max(0, Math.min(255 * sa, color[2]));
+        double sb = Math.max(0, Math.min(255 * sa, color[3]));
+
+        double da = (argb >>> 24) / 255.0;
+        double f = da * (1 - sa);
+        double oa = sa + f;
+
+        int a = (int) (255 * oa + 0.5);
+        int r = (int) ((sr + f * ((argb >> 16) & 0xFF)) / oa + 0.5);
+        int g = (int) ((sg + f * ((argb >> 8) & 0xFF)) / oa + 0.5);
+        int b = (int) ((sb + f * (argb & 0xFF)) / oa + 0.5);
+
+        return (a << 24) | (Math.min(255, r) << 16) | (Math.min(255, g) << 8) | Math.min(255, b);
+    }
+
+    protected static int toByte(double value)
+    {
+        return (value <= 0) ? 0 : ((value >= 255) ? 255 : (int) (value + 0.5));
+    }
+}
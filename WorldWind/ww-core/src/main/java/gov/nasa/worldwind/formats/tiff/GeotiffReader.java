@@ -19,7 +19,7 @@ import java.awt.image.*;
 import java.io.*;
 import java.nio.*;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
+import java.util.*;
 
 /**
  * @author brownrigg
@@ -37,6 +37,9 @@ public class GeotiffReader implements Disposable
 
     private ArrayList<TiffIFDEntry[]> tiffIFDs = null;
     private ArrayList<AVList> metadata = null;
+    // Reduced resolution IFDs of each image, from highest resolution to lowest.
+    private ArrayList<ArrayList<TiffIFDEntry[]>> overviewIFDs = null;
+    private Map<TiffIFDEntry[], TIFFBlockReader> blockReaders = new IdentityHashMap<TiffIFDEntry[], TIFFBlockReader>();
 
     public GeotiffReader(String sourceFilename) throws IOException
     {
@@ -114,6 +117,374 @@ public class GeotiffReader implements Disposable
         return (values.hasKey(AVKey.HEIGHT)) ? (Integer) values.getValue(AVKey.HEIGHT) : 0;
     }
 
+    /**
+     * Returns the number of reduced resolution versions, or overviews, of an image. Overviews are stored in their own
+     * ImageFileDirectories, and are not counted by {@link #getNumImages()}.
+     *
+     * @param imageIndex the image's index.
+     *
+     * @return the number of overviews of the image.
+     *
+     * @throws IOException if an error occurs reading the file.
+     */
+    public int getNumOverviews(int imageIndex) throws IOException
+    {
+        checkImageIndex(imageIndex);
+        return this.overviewIFDs.get(imageIndex).size();
+    }
+
+    /**
+     * Returns the width of an image or one of its overviews.
+     *
+     * @param imageIndex    the image's index.
+     * @param overviewLevel 0 for the full resolution image, or 1 through {@link #getNumOverviews(int)} for an
+     *                      overview, in order of decreasing resolution.
+     *
+     * @return the width of the image at the overview level, in pixels.
+     *
+     * @throws IOException if an error occurs reading the file.
+     */
+    public int getWidth(int imageIndex, int overviewLevel) throws IOException
+    {
+        if (overviewLevel == 0)
+            return this.getWidth(imageIndex);
+
+        BaselineTiff tiff = this.extractBaselineTiff(this.getImageFileDirectory(imageIndex, overviewLevel));
+        return tiff.width;
+    }
+
+    /**
+     * Returns the height of an image or one of its overviews.
+     *
+     * @param imageIndex    the image's index.
+     * @param overviewLevel 0 for the full resolution image, or 1 through {@link #getNumOverviews(int)} for an
+     *                      overview, in order of decreasing resolution.
+     *
+     * @return the height of the image at the overview level, in pixels.
+     *
+     * @throws IOException if an error occurs reading the file.
+     */
+    public int getHeight(int imageIndex, int overviewLevel) throws IOException
+    {
+        if (overviewLevel == 0)
+            return this.getHeight(imageIndex);
+
+        BaselineTiff tiff = this.extractBaselineTiff(this.getImageFileDirectory(imageIndex, overviewLevel));
+        return tiff.height;
+    }
+
+    /**
+     * Indicates whether an image is organized as tiles rather than strips.
+     *
+     * @param imageIndex the image's index.
+     *
+     * @return true if the image is tiled, otherwise false.
+     *
+     * @throws IOException if an error occurs reading the file.
+     */
+    public boolean isTiled(int imageIndex) throws IOException
+    {
+        checkImageIndex(imageIndex);
+        return null != getByTag(this.tiffIFDs.get(imageIndex), Tiff.Tag.TILE_WIDTH);
+    }
+
+    /**
+     * Reads a rectangular window of an image or one of its overviews. Only the strips or tiles that intersect the
+     * window are read from the file, so small windows of very large images, such as cloud optimized GeoTIFFs, are read
+     * quickly. The window's coordinates are pixels at the specified overview level, with the origin at the image's
+     * upper left corner.
+     * <p/>
+     * The returned raster's metadata is the image's metadata with its width, height and sector adjusted to the window.
+     *
+     * @param imageIndex    the image's index.
+     * @param x             the window's first column.
+     * @param y             the window's first row.
+     * @param width         the window's width, in pixels.
+     * @param height        the window's height, in pixels.
+     * @param overviewLevel 0 to read the full resolution image, or 1 through {@link #getNumOverviews(int)} to read an
+     *                      overview, in order of decreasing resolution.
+     *
+     * @return the window's raster.
+     *
+     * @throws IllegalArgumentException if the image index or overview level is invalid, or if the window is not
+     *                                  entirely within the image.
+     * @throws IOException              if the image's data organization is not supported, or an error occurs reading
+     *                                  the file.
+     */
+    public DataRaster readWindow(int imageIndex, int x, int y, int width, int height, int overviewLevel)
+        throws IOException
+    {
+        TiffIFDEntry[] ifd = this.getImageFileDirectory(imageIndex, overviewLevel);
+        BaselineTiff tiff = this.extractBaselineTiff(ifd);
+
+        if (x < 0 || y < 0 || x + width > tiff.width)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "x=" + x + ", width=" + width);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (width <= 0 || height <= 0 || y + height > tiff.height)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "y=" + y + ", height=" + height);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        TIFFBlockReader blockReader = this.blockReaders.get(ifd);
+        if (null == blockReader)
+        {
+            blockReader = TIFFBlockReader.create(ifd, tiff, this.theChannel, this.tiffReader.getByteOrder());
+            this.blockReaders.put(ifd, blockReader);
+        }
+
+        byte[] data = blockReader.readWindow(x, y, width, height);
+        AVList values = this.createWindowMetadata(imageIndex, tiff, x, y, width, height);
+
+        return this.createRaster(ifd, tiff, values, data, width, height);
+    }
+
+    protected TiffIFDEntry[] getImageFileDirectory(int imageIndex, int overviewLevel) throws IOException
+    {
+        checkImageIndex(imageIndex);
+
+        if (overviewLevel < 0 || overviewLevel > this.getNumOverviews(imageIndex))
+        {
+            String message = Logging.getMessage("generic.indexOutOfRange", overviewLevel);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return (overviewLevel == 0) ? this.tiffIFDs.get(imageIndex)
+            : this.overviewIFDs.get(imageIndex).get(overviewLevel - 1);
+    }
+
+    protected BaselineTiff extractBaselineTiff(TiffIFDEntry[] ifd) throws IOException
+    {
+        BaselineTiff tiff = BaselineTiff.extract(ifd, this.tiffReader);
+        if (null == tiff)
+        {
+            String message = Logging.getMessage("GeotiffReader.BadGeotiff");
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        return tiff;
+    }
+
+    /**
+     * Creates the metadata of a window of an image. The window's sector is computed from the image's sector, or from
+     * the image's world file values if the image is projected.
+     *
+     * @param imageIndex the image's index.
+     * @param tiff       the baseline tags of the image or overview containing the window.
+     * @param x          the window's first column.
+     * @param y          the window's first row.
+     * @param width      the window's width, in pixels.
+     * @param height     the window's height, in pixels.
+     *
+     * @return the window's metadata.
+     *
+     * @throws IOException if an error occurs reading the file.
+     */
+    protected AVList createWindowMetadata(int imageIndex, BaselineTiff tiff, int x, int y, int width, int height)
+        throws IOException
+    {
+        AVList values = this.getMetadata(imageIndex);
+        int imageWidth = this.getWidth(imageIndex);
+        int imageHeight = this.getHeight(imageIndex);
+
+        values.setValue(AVKey.WIDTH, width);
+        values.setValue(AVKey.HEIGHT, height);
+
+        if (values.hasKey(WorldFile.WORLD_FILE_X_PIXEL_SIZE) && values.hasKey(WorldFile.WORLD_FILE_Y_PIXEL_SIZE)
+            && values.hasKey(WorldFile.WORLD_FILE_X_LOCATION) && values.hasKey(WorldFile.WORLD_FILE_Y_LOCATION))
+        {
+            // World file locations are pixel centers; find the image's corner, then the window's first pixel center.
+            double xPixelSize = (Double) values.getValue(WorldFile.WORLD_FILE_X_PIXEL_SIZE);
+            double yPixelSize = (Double) values.getValue(WorldFile.WORLD_FILE_Y_PIXEL_SIZE);
+            double cornerX = (Double) values.getValue(WorldFile.WORLD_FILE_X_LOCATION) - xPixelSize / 2d;
+            double cornerY = (Double) values.getValue(WorldFile.WORLD_FILE_Y_LOCATION) - yPixelSize / 2d;
+
+            xPixelSize *= (double) imageWidth / tiff.width;
+            yPixelSize *= (double) imageHeight / tiff.height;
+
+            values.setValue(WorldFile.WORLD_FILE_X_PIXEL_SIZE, xPixelSize);
+            values.setValue(WorldFile.WORLD_FILE_Y_PIXEL_SIZE, yPixelSize);
+            values.setValue(WorldFile.WORLD_FILE_X_LOCATION, cornerX + (x + 0.5) * xPixelSize);
+            values.setValue(WorldFile.WORLD_FILE_Y_LOCATION, cornerY + (y + 0.5) * yPixelSize);
+            values.setValue(AVKey.SECTOR, ImageUtil.calcBoundingBoxForUTM(values));
+        }
+        else if (values.getValue(AVKey.SECTOR) instanceof Sector)
+        {
+            Sector sector = (Sector) values.getValue(AVKey.SECTOR);
+            double dLat = sector.getDeltaLatDegrees();
+            double dLon = sector.getDeltaLonDegrees();
+
+            double minLon = sector.getMinLongitude().degrees + dLon * x / tiff.width;
+            double maxLon = sector.getMinLongitude().degrees + dLon * (x + width) / tiff.width;
+            double maxLat = sector.getMaxLatitude().degrees - dLat * y / tiff.height;
+            double minLat = sector.getMaxLatitude().degrees - dLat * (y + height) / tiff.height;
+
+            values.setValue(AVKey.SECTOR, Sector.fromDegrees(minLat, maxLat, minLon, maxLon));
+            values.setValue(AVKey.ORIGIN, LatLon.fromDegrees(maxLat, minLon));
+        }
+
+        return values;
+    }
+
+    /**
+     * Creates a raster from pixel interleaved image data, as returned by {@link TIFFBlockReader#readWindow(int, int,
+     * int, int)}.
+     *
+     * @param ifd    the ImageFileDirectory of the image or overview containing the data.
+     * @param tiff   the baseline tags of the image or overview.
+     * @param values the raster's metadata.
+     * @param data   the image data, with samples in the file's byte order.
+     * @param width  the raster's width, in pixels.
+     * @param height the raster's height, in pixels.
+     *
+     * @return the raster.
+     *
+     * @throws IOException if the image's pixel format or data type is not supported.
+     */
+    protected DataRaster createRaster(TiffIFDEntry[] ifd, BaselineTiff tiff, AVList values, byte[] data, int width,
+        int height) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(this.tiffReader.getByteOrder());
+        Object dataType = values.getValue(AVKey.DATA_TYPE);
+        int numPixels = width * height;
+        int pixelSize = data.length / numPixels;
+
+        if (values.getValue(AVKey.PIXEL_FORMAT) == AVKey.ELEVATION)
+        {
+            ByteBufferRaster raster = new ByteBufferRaster(width, height, (Sector) values.getValue(AVKey.SECTOR),
+                values);
+
+            for (int i = 0; i < numPixels; i++)
+            {
+                int index = i * pixelSize;
+                double value;
+
+                if (dataType == AVKey.INT8)
+                    value = buffer.get(index);
+                else if (dataType == AVKey.INT16)
+                    value = buffer.getShort(index);
+                else if (dataType == AVKey.INT32)
+                    value = buffer.getInt(index);
+                else if (dataType == AVKey.FLOAT32)
+                    value = buffer.getFloat(index);
+                else
+                {
+                    String message = Logging.getMessage("Geotiff.UnsupportedDataTypeRaster", tiff.toString());
+                    Logging.logger().severe(message);
+                    throw new IOException(message);
+                }
+
+                raster.setDoubleAtPosition(i / width, i % width, value);
+            }
+
+            ElevationsUtil.rectify(raster);
+
+            return raster;
+        }
+        else if (values.getValue(AVKey.PIXEL_FORMAT) == AVKey.IMAGE
+            && values.getValue(AVKey.IMAGE_COLOR_FORMAT) == AVKey.GRAYSCALE)
+        {
+            BufferedImage grayImage;
+
+            if (dataType == AVKey.INT8)
+            {
+                grayImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+                WritableRaster wrRaster = grayImage.getRaster();
+                for (int i = 0; i < numPixels; i++)
+                {
+                    wrRaster.setSample(i % width, i / width, 0, 0xFF & buffer.get(i * pixelSize));
+                }
+            }
+            else if (dataType == AVKey.INT16)
+            {
+                grayImage = new BufferedImage(width, height, BufferedImage.TYPE_USHORT_GRAY);
+                WritableRaster wrRaster = grayImage.getRaster();
+                for (int i = 0; i < numPixels; i++)
+                {
+                    wrRaster.setSample(i % width, i / width, 0, 0xFFFF & buffer.getShort(i * pixelSize));
+                }
+            }
+            else
+            {
+                String message = Logging.getMessage("Geotiff.UnsupportedDataTypeRaster", tiff.toString());
+                Logging.logger().severe(message);
+                throw new IOException(message);
+            }
+
+            grayImage = ImageUtil.toCompatibleImage(grayImage);
+            return BufferedImageRaster.wrap(grayImage, values);
+        }
+        else if (values.getValue(AVKey.PIXEL_FORMAT) == AVKey.IMAGE
+            && values.getValue(AVKey.IMAGE_COLOR_FORMAT) == AVKey.COLOR)
+        {
+            for (int bits : tiff.bitsPerSample)
+            {
+                if (bits != 8)
+                {
+                    String message = Logging.getMessage("GeotiffReader.Not8bit", bits);
+                    Logging.logger().warning(message);
+                    throw new IOException(message);
+                }
+            }
+
+            ColorModel colorModel = null;
+            if (tiff.photometric == Tiff.Photometric.Color_RGB && (tiff.samplesPerPixel == Tiff.SamplesPerPixel.RGB
+                || tiff.samplesPerPixel == Tiff.SamplesPerPixel.RGBA))
+            {
+                boolean hasAlpha = tiff.samplesPerPixel == Tiff.SamplesPerPixel.RGBA;
+                colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), tiff.bitsPerSample,
+                    hasAlpha, false, hasAlpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+            }
+            else if (tiff.photometric == Tiff.Photometric.Color_Palette
+                && tiff.samplesPerPixel == Tiff.SamplesPerPixel.MONOCHROME)
+            {
+                TiffIFDEntry entry = getByTag(ifd, Tiff.Tag.COLORMAP);
+                if (null == entry)
+                {
+                    String message = Logging.getMessage("GeotiffReader.MissingColormap");
+                    Logging.logger().severe(message);
+                    throw new IOException(message);
+                }
+
+                byte[][] cmap = this.tiffReader.readColorMap(entry);
+                colorModel = new IndexColorModel(tiff.bitsPerSample[0], cmap[0].length, cmap[0], cmap[1], cmap[2]);
+            }
+
+            if (null == colorModel)
+            {
+                String message = Logging.getMessage("Geotiff.UnsupportedDataTypeRaster", tiff.toString());
+                Logging.logger().severe(message);
+                throw new IOException(message);
+            }
+
+            int[] bandOffsets = new int[tiff.samplesPerPixel];
+            for (int i = 0; i < bandOffsets.length; i++)
+            {
+                bandOffsets[i] = i;
+            }
+
+            SampleModel sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width, height,
+                tiff.samplesPerPixel, width * tiff.samplesPerPixel, bandOffsets);
+            WritableRaster raster = Raster.createWritableRaster(sampleModel, new DataBufferByte(data, data.length),
+                new Point(0, 0));
+
+            BufferedImage colorImage = new BufferedImage(colorModel, raster, false, null);
+            colorImage = ImageUtil.toCompatibleImage(colorImage);
+            return BufferedImageRaster.wrap(colorImage, values);
+        }
+
+        String message = Logging.getMessage("Geotiff.UnsupportedDataTypeRaster", tiff.toString());
+        Logging.logger().severe(message);
+        throw new IOException(message);
+    }
+
     public DataRaster[] readDataRaster() throws IOException
     {
         int num = this.getNumImages();
@@ -179,8 +550,6 @@ public class GeotiffReader implements Disposable
         byte[][] cmap = null;
         long[] stripCounts = null;
 
-        boolean tiffDifferencing = false;
-
         TiffIFDEntry[] ifd = this.tiffIFDs.get(imageIndex);
 
         BaselineTiff tiff = BaselineTiff.extract(ifd, this.tiffReader);
@@ -224,6 +593,15 @@ public class GeotiffReader implements Disposable
             throw new IOException(msg);
         }
 
+        // Tiled and compressed images are decoded by the block reader, which handles any number of rows per strip
+        // and every sample layout. The strip readers below read uncompressed strips only.
+        TiffIFDEntry compressionEntry = getByTag(ifd, Tiff.Tag.COMPRESSION);
+        int compression = (null != compressionEntry) ? (int) compressionEntry.asLong() : Tiff.Compression.NONE;
+        if (null != getByTag(ifd, Tiff.Tag.TILE_WIDTH) || compression != Tiff.Compression.NONE)
+        {
+            return this.readWindow(imageIndex, 0, 0, tiff.width, tiff.height, 0);
+        }
+
         if (tiff.rowsPerStrip <= Tiff.Undefined)
         {
             String msg = Logging.getMessage("GeotiffReader.InvalidIFDEntryValue", tiff.rowsPerStrip,
@@ -280,33 +658,6 @@ public class GeotiffReader implements Disposable
             throw new IOException(message);
         }
 
-        TiffIFDEntry notToday = getByTag(ifd, Tiff.Tag.COMPRESSION);
-        boolean lzwCompressed = false;
-        if (notToday != null && notToday.asLong() == Tiff.Compression.LZW)
-        {
-            lzwCompressed = true;
-            TiffIFDEntry predictorEntry = getByTag(ifd, Tiff.Tag.TIFF_PREDICTOR);
-            if ((predictorEntry != null) && (predictorEntry.asLong() != 0))
-            {
-                tiffDifferencing = true;
-            }
-        }
-        else if (notToday != null && notToday.asLong() != Tiff.Compression.NONE)
-        {
-            String message = Logging.getMessage("GeotiffReader.CompressionFormatNotSupported");
-            Logging.logger().severe(message);
-            throw new IOException(message);
-        }
-
-        notToday = getByTag(ifd, Tiff.Tag.TILE_WIDTH);
-        if (notToday != null)
-        {
-            String message = Logging.getMessage("GeotiffReader.NoTiled");
-            Logging.logger().severe(message);
-            throw new IOException(message);
-        }
-
-        long offset = stripOffsets[0];
 //        int sampleFormat = (null != tiff.sampleFormat) ? tiff.sampleFormat[0] : Tiff.Undefined;
 //        int bitsPerSample = (null != tiff.bitsPerSample) ? tiff.bitsPerSample[0] : Tiff.Undefined;
 
@@ -514,18 +865,8 @@ public class GeotiffReader implements Disposable
             byte[][] imageData;
             if (tiff.planarConfig == Tiff.PlanarConfiguration.CHUNKY)
             {
-                if (lzwCompressed && (tiff.samplesPerPixel > 2))
-                {
-                    imageData = new byte[1][tiff.width * tiff.height * tiff.samplesPerPixel];
-
-                    imageData[0] = this.tiffReader.readLZWCompressed(tiff.width, tiff.height, offset,
-                        tiff.samplesPerPixel, tiffDifferencing, stripOffsets, stripCounts);
-                }
-                else
-                {
-                    imageData = this.tiffReader.readPixelInterleaved8(tiff.width, tiff.height, tiff.samplesPerPixel,
-                        stripOffsets, stripCounts);
-                }
+                imageData = this.tiffReader.readPixelInterleaved8(tiff.width, tiff.height, tiff.samplesPerPixel,
+                    stripOffsets, stripCounts);
             }
             else
             {
@@ -797,6 +1138,8 @@ public class GeotiffReader implements Disposable
         ifh.flip();
         readIFD(ifh.getShort());
 
+        this.separateOverviews();
+
         // decode any geotiff tags and structures that may be present into a manager object...
         this.repackageGeoReferencingTags();
     }
@@ -1083,6 +1426,43 @@ public class GeotiffReader implements Disposable
         }
     }
 
+    /*
+     * Separates the reduced resolution IFDs from the full resolution images. Each reduced resolution IFD is an overview
+     * of the closest preceding full resolution image, as written by GDAL and cloud optimized GeoTIFF writers.
+     * Transparency masks are ignored.
+     *
+     */
+
+    private void separateOverviews()
+    {
+        ArrayList<TiffIFDEntry[]> images = new ArrayList<TiffIFDEntry[]>();
+        ArrayList<AVList> imageMetadata = new ArrayList<AVList>();
+        this.overviewIFDs = new ArrayList<ArrayList<TiffIFDEntry[]>>();
+
+        for (int i = 0; i < this.tiffIFDs.size(); i++)
+        {
+            TiffIFDEntry[] ifd = this.tiffIFDs.get(i);
+            TiffIFDEntry entry = getByTag(ifd, Tiff.Tag.NEW_SUBFILE_TYPE);
+            long subfileType = (null != entry) ? entry.asLong() : 0;
+
+            if ((subfileType & Tiff.SubfileType.TRANSPARENCY_MASK) != 0)
+                continue;
+
+            if ((subfileType & Tiff.SubfileType.REDUCED_RESOLUTION) != 0 && images.size() > 0)
+            {
+                this.overviewIFDs.get(images.size() - 1).add(ifd);
+                continue;
+            }
+
+            images.add(ifd);
+            imageMetadata.add(this.metadata.get(i));
+            this.overviewIFDs.add(new ArrayList<TiffIFDEntry[]>());
+        }
+
+        this.tiffIFDs = images;
+        this.metadata = imageMetadata;
+    }
+
     /*
     * Returns the (first!) IFD-Entry with the given tag, or null if not found.
     *
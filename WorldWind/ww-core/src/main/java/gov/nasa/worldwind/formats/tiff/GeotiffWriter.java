@@ -14,11 +14,21 @@ import gov.nasa.worldwind.util.*;
 import java.awt.color.*;
 import java.awt.image.*;
 import java.io.*;
-import java.nio.ByteBuffer;
+import java.nio.*;
 import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
+ * Writes images and elevations as GeoTIFF files.
+ * <p/>
+ * By default images are written uncompressed, one row per strip. Configuring a tile size, a compression, or a number of
+ * overviews switches the writer to block output: the image is written as tiles (or as multi-row strips if no tile size
+ * is set), each block is compressed on a worker thread, and reduced resolution overviews are generated as the image is
+ * written. Block output reads its input a band of rows at a time, so images supplied by a {@link RasterSource} need not
+ * fit in memory. See {@link #write(gov.nasa.worldwind.formats.tiff.GeotiffWriter.RasterSource,
+ * gov.nasa.worldwind.avlist.AVList)}.
+ *
  * @author Lado Garakanidze
  * @version $Id$
  */
@@ -34,6 +44,68 @@ public class GeotiffWriter
     private static final int BufferedImage_TYPE_ELEVATION_SHORT16 = 9001;
     private static final int BufferedImage_TYPE_ELEVATION_FLOAT32 = 9002;
 
+    /** The number of rows in each strip when block output is used without tiles. */
+    protected static final int ROWS_PER_STRIP = 16;
+    protected static final long MAX_OFFSET = 0xFFFFFFFFL;
+
+    /**
+     * Supplies the rows of an image to {@link GeotiffWriter#write(gov.nasa.worldwind.formats.tiff.GeotiffWriter.RasterSource,
+     * gov.nasa.worldwind.avlist.AVList)}. Rows are requested once each, in order from top to bottom, a band at a time.
+     */
+    public interface RasterSource
+    {
+        int getWidth();
+
+        int getHeight();
+
+        /**
+         * Returns the number of samples in each pixel, e.g. 1 for grayscale images and elevations, 3 for RGB images and
+         * 4 for RGBA images.
+         *
+         * @return the number of samples per pixel.
+         */
+        int getSamplesPerPixel();
+
+        /**
+         * Returns the size of each sample: 8, 16, 32 or 64 bits.
+         *
+         * @return the number of bits per sample.
+         */
+        int getBitsPerSample();
+
+        /**
+         * Returns the format of the samples, one of the {@link Tiff.SampleFormat} values.
+         *
+         * @return the sample format.
+         */
+        int getSampleFormat();
+
+        /**
+         * Returns the color space of the samples, one of the {@link Tiff.Photometric} values.
+         *
+         * @return the photometric interpretation.
+         */
+        int getPhotometric();
+
+        /**
+         * Reads consecutive rows of the image into a buffer. Samples are pixel interleaved and are placed with the
+         * buffer's byte order.
+         *
+         * @param y       the first row to read.
+         * @param numRows the number of rows to read.
+         * @param buffer  the buffer to fill, beginning at its current position.
+         *
+         * @throws IOException if the rows cannot be read.
+         */
+        void readRows(int y, int numRows, ByteBuffer buffer) throws IOException;
+    }
+
+    protected int tileSize;
+    protected int compression = Tiff.Compression.NONE;
+    protected boolean usePredictor;
+    protected int numOverviews;
+    protected ExecutorService executor;
+
     public GeotiffWriter(String filename) throws IOException
     {
         if (null == filename || 0 == filename.trim().length())
@@ -79,6 +151,135 @@ public class GeotiffWriter
         this.theChannel = this.targetFile.getChannel();
     }
 
+    /**
+     * Returns the width and height of the tiles this writer writes.
+     *
+     * @return the tile size, in pixels, or 0 if images are written as strips.
+     */
+    public int getTileSize()
+    {
+        return this.tileSize;
+    }
+
+    /**
+     * Specifies the width and height of the tiles this writer writes. TIFF requires tile dimensions to be multiples of
+     * 16.
+     *
+     * @param tileSize the tile size, in pixels, or 0 to write strips.
+     *
+     * @throws IllegalArgumentException if the tile size is negative or not a multiple of 16.
+     */
+    public void setTileSize(int tileSize)
+    {
+        if (tileSize < 0 || tileSize % 16 != 0)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", "tileSize=" + tileSize);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.tileSize = tileSize;
+    }
+
+    public int getCompression()
+    {
+        return this.compression;
+    }
+
+    /**
+     * Specifies the compression applied to the image data.
+     *
+     * @param compression {@link Tiff.Compression#NONE}, {@link Tiff.Compression#LZW}, {@link
+     *                    Tiff.Compression#DEFLATE} or {@link Tiff.Compression#PACKBITS}.
+     *
+     * @throws IllegalArgumentException if the compression is not supported.
+     */
+    public void setCompression(int compression)
+    {
+        if (compression != Tiff.Compression.NONE && compression != Tiff.Compression.LZW
+            && compression != Tiff.Compression.DEFLATE && compression != Tiff.Compression.PACKBITS)
+        {
+            String msg = Logging.getMessage("GeotiffWriter.FeatureNotImplemented", "compression=" + compression);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.compression = compression;
+    }
+
+    public boolean isUsePredictor()
+    {
+        return this.usePredictor;
+    }
+
+    /**
+     * Specifies whether compressed images are predicted before compression, which usually improves the compression of
+     * continuous imagery and elevations. Integer samples use horizontal differencing; floating point samples use the
+     * floating point predictor.
+     *
+     * @param usePredictor true to predict compressed samples, otherwise false.
+     */
+    public void setUsePredictor(boolean usePredictor)
+    {
+        this.usePredictor = usePredictor;
+    }
+
+    public int getNumOverviews()
+    {
+        return this.numOverviews;
+    }
+
+    /**
+     * Specifies the number of reduced resolution overviews written after each image. Each overview is half the width
+     * and height of the previous one. Image overviews average the pixels they cover; elevation overviews take the
+     * upper left post, so that missing data signals are preserved. Fewer overviews are written if an overview would
+     * shrink to a single pixel.
+     *
+     * @param numOverviews the number of overviews.
+     *
+     * @throws IllegalArgumentException if the number of overviews is negative.
+     */
+    public void setNumOverviews(int numOverviews)
+    {
+        if (numOverviews < 0)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", "numOverviews=" + numOverviews);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.numOverviews = numOverviews;
+    }
+
+    /**
+     * Returns the executor that compresses blocks. If no executor has been specified, a shared pool with one thread
+     * per processor is used.
+     *
+     * @return the block compression executor.
+     */
+    public ExecutorService getExecutor()
+    {
+        if (this.executor == null)
+            this.executor = ComputeExecutor.getInstance();
+
+        return this.executor;
+    }
+
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Indicates whether images are written as compressed tiles or strips, rather than as uncompressed single rows.
+     *
+     * @return true if block output is configured, otherwise false.
+     */
+    protected boolean isBlockOutput()
+    {
+        return this.tileSize > 0 || this.compression != Tiff.Compression.NONE || this.numOverviews > 0;
+    }
+
     public void close()
     {
         try
@@ -285,14 +486,20 @@ public class GeotiffWriter
             case BufferedImage.TYPE_INT_ARGB:
             case BufferedImage.TYPE_INT_ARGB_PRE:
             {
-                this.writeColorImage(image, params);
+                if (this.isBlockOutput())
+                    this.write(this.createImageSource(image, Tiff.Photometric.Color_RGB), params);
+                else
+                    this.writeColorImage(image, params);
             }
             break;
 
             case BufferedImage.TYPE_USHORT_GRAY:
             case BufferedImage.TYPE_BYTE_GRAY:
             {
-                this.writeGrayscaleImage(image, params);
+                if (this.isBlockOutput())
+                    this.write(this.createImageSource(image, Tiff.Photometric.Grayscale_BlackIsZero), params);
+                else
+                    this.writeGrayscaleImage(image, params);
             }
             break;
 
@@ -970,6 +1177,29 @@ public class GeotiffWriter
     }
 
     private void writeIFDs(List<TiffIFDEntry> ifds) throws IOException
+    {
+        long offset = this.writeIFD(ifds, 0);
+
+        // go back and patch up the ifd offset in header...
+        this.writeFirstIFDOffset(offset);
+    }
+
+    private void writeFirstIFDOffset(long offset) throws IOException
+    {
+        ByteBuffer dataBuff = ByteBuffer.allocate(4);
+        this.theChannel.position(4);
+        putUnsignedInt(dataBuff, offset);
+        dataBuff.flip();
+        this.theChannel.write(dataBuff);
+    }
+
+    /*
+     * Writes an ImageFileDirectory at the end of the file, followed by the offset of the next IFD in the file, and
+     * returns the IFD's offset.
+     *
+     */
+
+    private long writeIFD(List<TiffIFDEntry> ifds, long nextIFDOffset) throws IOException
     {
         long offset = this.theChannel.position();
 
@@ -1006,18 +1236,13 @@ public class GeotiffWriter
         dataBuff.flip();
         this.theChannel.write(dataBuff);
 
-        // The spec requires 4 bytes of zeros at the end...
+        // The spec requires 4 bytes of zeros at the end of the last IFD...
         dataBuff.clear();
-        dataBuff.putInt(0);
+        putUnsignedInt(dataBuff, nextIFDOffset);
         dataBuff.flip();
         this.theChannel.write(dataBuff);
 
-        // go back and patch up the ifd offset in header...
-        this.theChannel.position(4);
-        dataBuff.clear();
-        putUnsignedInt(dataBuff, offset);
-        dataBuff.flip();
-        this.theChannel.write(dataBuff);
+        return offset;
     }
 
     private void putUnsignedByte(ByteBuffer buff, int value)
@@ -1162,6 +1387,13 @@ public class GeotiffWriter
             throw new IllegalArgumentException(msg);
         }
 
+        if (this.isBlockOutput())
+        {
+            this.write(this.createRasterSource(raster, samplesPerPixel, bitsPerSample / samplesPerPixel, sampleFormat,
+                photometric), raster);
+            return;
+        }
+
         int bytesPerSample = numBands * bitsPerSample / Byte.SIZE;
 
         this.writeTiffHeader();
@@ -1321,4 +1553,604 @@ public class GeotiffWriter
 
         this.writeIFDs(ifds);
     }
+
+    /**
+     * Writes an image supplied by a {@link RasterSource} using block output: tiles if a tile size is configured,
+     * otherwise strips of several rows, compressed with the configured compression and followed by the configured
+     * number of overviews. The source's rows are read a band of blocks at a time and each band is compressed in
+     * parallel by the writer's executor, so only one band of each resolution level is held in memory.
+     * <p/>
+     * The georeferencing parameters are those described for {@link #write(java.awt.image.BufferedImage,
+     * gov.nasa.worldwind.avlist.AVList)}.
+     *
+     * @param source the image's rows.
+     * @param params the georeferencing parameters, or null to write an image without GeoTIFF tags.
+     *
+     * @throws IllegalArgumentException if the source is null, has an invalid size or sample layout, or the parameters
+     *                                  are invalid.
+     * @throws IOException              if an error occurs reading the source or writing the file, or if the file
+     *                                  would exceed 4GB.
+     */
+    public void write(RasterSource source, AVList params) throws IOException
+    {
+        if (source == null)
+        {
+            String msg = Logging.getMessage("nullValue.SourceIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (width <= 0 || height <= 0)
+        {
+            String msg = Logging.getMessage("generic.InvalidImageSize", width, height);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int bitsPerSample = source.getBitsPerSample();
+        if (source.getSamplesPerPixel() <= 0 || (bitsPerSample != 8 && bitsPerSample != 16 && bitsPerSample != 32
+            && bitsPerSample != 64))
+        {
+            String msg = Logging.getMessage("GeotiffWriter.UnsupportedType",
+                source.getSamplesPerPixel() + "x" + bitsPerSample);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (null == params || 0 == params.getValues().size())
+        {
+            String reason = Logging.getMessage("nullValue.AVListIsNull");
+            Logging.logger().finest(Logging.getMessage("GeotiffWriter.GeoKeysMissing", reason));
+            params = new AVListImpl();
+        }
+        else
+        {
+            this.validateParameters(params, width, height);
+        }
+
+        int predictor = Tiff.Predictor.NONE;
+        if (this.usePredictor && this.compression != Tiff.Compression.NONE)
+        {
+            predictor = (source.getSampleFormat() == Tiff.SampleFormat.IEEEFLOAT) ? Tiff.Predictor.FLOATING_POINT
+                : Tiff.Predictor.HORIZONTAL_DIFFERENCING;
+        }
+
+        // Create the full resolution level and the overview levels. Each overview is half the size of its parent.
+        List<BlockLevel> levels = new ArrayList<BlockLevel>();
+        levels.add(new BlockLevel(width, height, source));
+        while (levels.size() <= this.numOverviews)
+        {
+            BlockLevel parent = levels.get(levels.size() - 1);
+            if (parent.width <= 1 && parent.height <= 1)
+                break;
+
+            levels.add(new BlockLevel((parent.width + 1) / 2, (parent.height + 1) / 2, source));
+        }
+
+        TIFFBlockEncoder encoder = new TIFFBlockEncoder(this.compression, predictor, source.getSamplesPerPixel(),
+            bitsPerSample / Byte.SIZE, ByteOrder.BIG_ENDIAN);
+        boolean average = !isElevation(params);
+
+        this.writeTiffHeader();
+
+        // Read the full resolution image a band at a time, and pass each band's rows down to the overviews.
+        BlockLevel image = levels.get(0);
+        for (int y = 0; y < height; y += image.blockHeight)
+        {
+            int numRows = Math.min(image.blockHeight, height - y);
+            ByteBuffer buffer = ByteBuffer.wrap(image.band).order(ByteOrder.BIG_ENDIAN);
+            buffer.limit(numRows * image.rowSize);
+            source.readRows(y, numRows, buffer);
+            image.numBandRows = numRows;
+
+            for (int row = 0; row < numRows && levels.size() > 1; row++)
+            {
+                this.addOverviewRow(levels, 1, image.band, row * image.rowSize, source, encoder, average);
+            }
+
+            this.writeBand(image, encoder);
+        }
+
+        // Every overview row has been computed once the last full resolution row is added. Write the overviews'
+        // partial last bands.
+        for (int i = 1; i < levels.size(); i++)
+        {
+            if (levels.get(i).numBandRows > 0)
+                this.writeBand(levels.get(i), encoder);
+        }
+
+        // Write the IFDs last to first, so each IFD can point to the next.
+        long nextIFDOffset = 0;
+        for (int i = levels.size() - 1; i >= 0; i--)
+        {
+            ArrayList<TiffIFDEntry> ifds = this.createBlockIFD(levels.get(i), source, predictor, i > 0);
+            if (i == 0)
+                this.appendGeoTiff(ifds, params);
+
+            nextIFDOffset = this.writeIFD(ifds, nextIFDOffset);
+        }
+
+        this.writeFirstIFDOffset(nextIFDOffset);
+    }
+
+    /*
+     * A resolution level written as blocks: either the full resolution image or one of its overviews. Holds the band of
+     * rows currently being assembled, and the offsets and sizes of the blocks written so far.
+     *
+     */
+
+    protected class BlockLevel
+    {
+        protected int width;
+        protected int height;
+        protected int pixelSize;
+        protected int rowSize;
+        protected int blockWidth;
+        protected int blockHeight;
+        protected int blocksAcross;
+        protected long[] offsets;
+        protected long[] counts;
+
+        protected byte[] band;
+        protected int numBandRows;
+        protected int numBandsWritten;
+        // An even row of the parent level, waiting for the odd row below it.
+        protected byte[] pendingRow;
+        protected int numParentRows;
+
+        public BlockLevel(int width, int height, RasterSource source)
+        {
+            this.width = width;
+            this.height = height;
+            this.pixelSize = source.getSamplesPerPixel() * source.getBitsPerSample() / Byte.SIZE;
+            this.rowSize = width * this.pixelSize;
+
+            boolean tiled = tileSize > 0;
+            this.blockWidth = tiled ? tileSize : width;
+            this.blockHeight = tiled ? tileSize : Math.min(ROWS_PER_STRIP, height);
+            this.blocksAcross = (width + this.blockWidth - 1) / this.blockWidth;
+            int blocksDown = (height + this.blockHeight - 1) / this.blockHeight;
+
+            this.offsets = new long[this.blocksAcross * blocksDown];
+            this.counts = new long[this.blocksAcross * blocksDown];
+            this.band = new byte[this.blockHeight * this.rowSize];
+        }
+
+        public boolean isTiled()
+        {
+            return tileSize > 0;
+        }
+    }
+
+    /*
+     * Adds a row of a parent level to an overview level. Every second row completes a pair, from which the overview's
+     * next row is computed; the parent's last row is paired with itself when the parent's height is odd.
+     *
+     */
+
+    private void addOverviewRow(List<BlockLevel> levels, int index, byte[] parentRow, int parentOffset,
+        RasterSource source, TIFFBlockEncoder encoder, boolean average) throws IOException
+    {
+        BlockLevel level = levels.get(index);
+        BlockLevel parent = levels.get(index - 1);
+
+        if (level.pendingRow == null)
+        {
+            level.pendingRow = new byte[parent.rowSize];
+            System.arraycopy(parentRow, parentOffset, level.pendingRow, 0, parent.rowSize);
+            level.numParentRows++;
+            if (level.numParentRows < parent.height)
+                return;
+        }
+        else
+        {
+            level.numParentRows++;
+        }
+
+        int rowOffset = level.numBandRows * level.rowSize;
+        this.reduceRows(level.pendingRow, 0, parentRow, parentOffset, parent.width, level.band, rowOffset, level.width,
+            source, average);
+        level.pendingRow = null;
+        level.numBandRows++;
+
+        if (index + 1 < levels.size())
+            this.addOverviewRow(levels, index + 1, level.band, rowOffset, source, encoder, average);
+
+        if (level.numBandRows == level.blockHeight)
+            this.writeBand(level, encoder);
+    }
+
+    /*
+     * Computes a row of an overview from two rows of its parent, either by averaging each 2x2 block of pixels or by
+     * taking each block's upper left pixel.
+     *
+     */
+
+    private void reduceRows(byte[] upper, int upperOffset, byte[] lower, int lowerOffset, int parentWidth,
+        byte[] dest, int destOffset, int width, RasterSource source, boolean average)
+    {
+        int samplesPerPixel = source.getSamplesPerPixel();
+        int bytesPerSample = source.getBitsPerSample() / Byte.SIZE;
+        int pixelSize = samplesPerPixel * bytesPerSample;
+
+        if (!average)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                System.arraycopy(upper, upperOffset + 2 * x * pixelSize, dest, destOffset + x * pixelSize, pixelSize);
+            }
+            return;
+        }
+
+        ByteBuffer a = ByteBuffer.wrap(upper);
+        ByteBuffer b = ByteBuffer.wrap(lower);
+        ByteBuffer d = ByteBuffer.wrap(dest);
+        int format = source.getSampleFormat();
+
+        for (int x = 0; x < width; x++)
+        {
+            int left = 2 * x * pixelSize;
+            int right = Math.min(2 * x + 1, parentWidth - 1) * pixelSize;
+
+            for (int s = 0; s < samplesPerPixel; s++)
+            {
+                int i = s * bytesPerSample;
+                double sum = getSample(a, upperOffset + left + i, bytesPerSample, format)
+                    + getSample(a, upperOffset + right + i, bytesPerSample, format)
+                    + getSample(b, lowerOffset + left + i, bytesPerSample, format)
+                    + getSample(b, lowerOffset + right + i, bytesPerSample, format);
+
+                putSample(d, destOffset + x * pixelSize + i, bytesPerSample, format, sum / 4d);
+            }
+        }
+    }
+
+    private static double getSample(ByteBuffer buffer, int index, int bytesPerSample, int format)
+    {
+        if (format == Tiff.SampleFormat.IEEEFLOAT)
+            return (bytesPerSample == 4) ? buffer.getFloat(index) : buffer.getDouble(index);
+
+        boolean signed = format == Tiff.SampleFormat.SIGNED;
+        switch (bytesPerSample)
+        {
+            case 1:
+                return signed ? buffer.get(index) : 0xFF & buffer.get(index);
+            case 2:
+                return signed ? buffer.getShort(index) : 0xFFFF & buffer.getShort(index);
+            case 4:
+                return signed ? buffer.getInt(index) : 0xFFFFFFFFL & buffer.getInt(index);
+            default:
+                return buffer.getLong(index);
+        }
+    }
+
+    private static void putSample(ByteBuffer buffer, int index, int bytesPerSample, int format, double value)
+    {
+        if (format == Tiff.SampleFormat.IEEEFLOAT)
+        {
+            if (bytesPerSample == 4)
+                buffer.putFloat(index, (float) value);
+            else
+                buffer.putDouble(index, value);
+            return;
+        }
+
+        long rounded = Math.round(value);
+        switch (bytesPerSample)
+        {
+            case 1:
+                buffer.put(index, (byte) rounded);
+                break;
+            case 2:
+                buffer.putShort(index, (short) rounded);
+                break;
+            case 4:
+                buffer.putInt(index, (int) rounded);
+                break;
+            default:
+                buffer.putLong(index, rounded);
+                break;
+        }
+    }
+
+    /*
+     * Splits a level's current band into blocks, compresses the blocks in parallel, and appends them to the file in
+     * order. Tiles are padded with zeros beyond the image's edges; the last strip holds only the remaining rows.
+     *
+     */
+
+    private void writeBand(BlockLevel level, final TIFFBlockEncoder encoder) throws IOException
+    {
+        List<Future<byte[]>> blocks = new ArrayList<Future<byte[]>>(level.blocksAcross);
+        for (int col = 0; col < level.blocksAcross; col++)
+        {
+            final byte[] block;
+            final int blockWidth = level.blockWidth;
+            final int blockRows;
+
+            if (level.isTiled())
+            {
+                block = new byte[level.blockHeight * level.blockWidth * level.pixelSize];
+                blockRows = level.blockHeight;
+                int x = col * level.blockWidth;
+                int length = Math.min(level.blockWidth, level.width - x) * level.pixelSize;
+                for (int row = 0; row < level.numBandRows; row++)
+                {
+                    System.arraycopy(level.band, row * level.rowSize + x * level.pixelSize, block,
+                        row * level.blockWidth * level.pixelSize, length);
+                }
+            }
+            else
+            {
+                block = new byte[level.numBandRows * level.rowSize];
+                blockRows = level.numBandRows;
+                System.arraycopy(level.band, 0, block, 0, block.length);
+            }
+
+            blocks.add(this.getExecutor().submit(new Callable<byte[]>()
+            {
+                public byte[] call() throws Exception
+                {
+                    return encoder.encode(block, blockWidth, blockRows);
+                }
+            }));
+        }
+
+        for (int col = 0; col < blocks.size(); col++)
+        {
+            byte[] data;
+            try
+            {
+                data = blocks.get(col).get();
+            }
+            catch (Exception e)
+            {
+                String msg = Logging.getMessage("GeotiffWriter.BadFile", e.getMessage());
+                Logging.logger().severe(msg);
+                throw new IOException(msg);
+            }
+
+            long offset = this.theChannel.position();
+            if (offset + data.length > MAX_OFFSET)
+            {
+                String msg = Logging.getMessage("GeotiffWriter.FeatureNotImplemented", "BigTIFF");
+                Logging.logger().severe(msg);
+                throw new IOException(msg);
+            }
+
+            int index = level.numBandsWritten * level.blocksAcross + col;
+            level.offsets[index] = offset;
+            level.counts[index] = data.length;
+            this.theChannel.write(ByteBuffer.wrap(data));
+        }
+
+        level.numBandsWritten++;
+        level.numBandRows = 0;
+    }
+
+    private ArrayList<TiffIFDEntry> createBlockIFD(BlockLevel level, RasterSource source, int predictor,
+        boolean isOverview) throws IOException
+    {
+        ArrayList<TiffIFDEntry> ifds = new ArrayList<TiffIFDEntry>(20);
+        int samplesPerPixel = source.getSamplesPerPixel();
+
+        if (isOverview)
+        {
+            ifds.add(new TiffIFDEntry(Tiff.Tag.NEW_SUBFILE_TYPE, Tiff.Type.LONG, 1,
+                Tiff.SubfileType.REDUCED_RESOLUTION));
+        }
+
+        ifds.add(new TiffIFDEntry(Tiff.Tag.IMAGE_WIDTH, Tiff.Type.LONG, 1, level.width));
+        ifds.add(new TiffIFDEntry(Tiff.Tag.IMAGE_LENGTH, Tiff.Type.LONG, 1, level.height));
+        this.addShorts(ifds, Tiff.Tag.BITS_PER_SAMPLE, samplesPerPixel, source.getBitsPerSample());
+        ifds.add(new TiffIFDEntry(Tiff.Tag.COMPRESSION, Tiff.Type.SHORT, 1, this.compression));
+        ifds.add(new TiffIFDEntry(Tiff.Tag.PHOTO_INTERPRETATION, Tiff.Type.SHORT, 1, source.getPhotometric()));
+        ifds.add(new TiffIFDEntry(Tiff.Tag.ORIENTATION, Tiff.Type.SHORT, 1, Tiff.Orientation.DEFAULT));
+        ifds.add(new TiffIFDEntry(Tiff.Tag.SAMPLES_PER_PIXEL, Tiff.Type.SHORT, 1, samplesPerPixel));
+        ifds.add(new TiffIFDEntry(Tiff.Tag.PLANAR_CONFIGURATION, Tiff.Type.SHORT, 1, Tiff.PlanarConfiguration.CHUNKY));
+        this.addShorts(ifds, Tiff.Tag.SAMPLE_FORMAT, samplesPerPixel, source.getSampleFormat());
+
+        if (predictor != Tiff.Predictor.NONE)
+            ifds.add(new TiffIFDEntry(Tiff.Tag.TIFF_PREDICTOR, Tiff.Type.SHORT, 1, predictor));
+
+        if (source.getPhotometric() == Tiff.Photometric.Color_RGB && samplesPerPixel == Tiff.SamplesPerPixel.RGBA)
+        {
+            ifds.add(new TiffIFDEntry(Tiff.Tag.EXTRA_SAMPLES, Tiff.Type.SHORT, 1,
+                Tiff.ExtraSamples.UNASSOCIATED_ALPHA));
+        }
+
+        if (level.isTiled())
+        {
+            ifds.add(new TiffIFDEntry(Tiff.Tag.TILE_WIDTH, Tiff.Type.LONG, 1, level.blockWidth));
+            ifds.add(new TiffIFDEntry(Tiff.Tag.TILE_LENGTH, Tiff.Type.LONG, 1, level.blockHeight));
+            this.addLongs(ifds, Tiff.Tag.TILE_OFFSETS, level.offsets);
+            this.addLongs(ifds, Tiff.Tag.TILE_COUNTS, level.counts);
+        }
+        else
+        {
+            ifds.add(new TiffIFDEntry(Tiff.Tag.ROWS_PER_STRIP, Tiff.Type.LONG, 1, level.blockHeight));
+            this.addLongs(ifds, Tiff.Tag.STRIP_OFFSETS, level.offsets);
+            this.addLongs(ifds, Tiff.Tag.STRIP_BYTE_COUNTS, level.counts);
+        }
+
+        return ifds;
+    }
+
+    /*
+     * Adds a SHORT entry holding the same value once per sample. Up to two values fit in the entry itself; more are
+     * written to the file.
+     *
+     */
+
+    private void addShorts(ArrayList<TiffIFDEntry> ifds, int tag, int count, int value) throws IOException
+    {
+        if (count == 1)
+        {
+            ifds.add(new TiffIFDEntry(tag, Tiff.Type.SHORT, 1, value));
+        }
+        else if (count == 2)
+        {
+            ifds.add(new TiffIFDEntry(tag, Tiff.Type.SHORT, 2, ((long) value << 16) | value));
+        }
+        else
+        {
+            short[] values = new short[count];
+            Arrays.fill(values, (short) value);
+
+            long offset = this.theChannel.position();
+            this.theChannel.write(ByteBuffer.wrap(this.getBytes(values)));
+            ifds.add(new TiffIFDEntry(tag, Tiff.Type.SHORT, count, offset));
+        }
+    }
+
+    /*
+     * Adds a LONG entry. A single value fits in the entry itself; more are written to the file.
+     *
+     */
+
+    private void addLongs(ArrayList<TiffIFDEntry> ifds, int tag, long[] values) throws IOException
+    {
+        if (values.length == 1)
+        {
+            ifds.add(new TiffIFDEntry(tag, Tiff.Type.LONG, 1, values[0]));
+            return;
+        }
+
+        ByteBuffer dataBuff = ByteBuffer.allocateDirect(values.length * INTEGER_SIZEOF);
+        for (long value : values)
+        {
+            putUnsignedInt(dataBuff, value);
+        }
+        dataBuff.flip();
+
+        long offset = this.theChannel.position();
+        this.theChannel.write(dataBuff);
+        ifds.add(new TiffIFDEntry(tag, Tiff.Type.LONG, values.length, offset));
+    }
+
+    /*
+     * Creates a raster source that reads rows from a color or grayscale image.
+     *
+     */
+
+    protected RasterSource createImageSource(final BufferedImage image, final int photometric)
+    {
+        final Raster raster = image.getRaster();
+        final int numBands = raster.getNumBands();
+        final int bitsPerSample = (image.getType() == BufferedImage.TYPE_USHORT_GRAY) ? Short.SIZE : Byte.SIZE;
+
+        return new RasterSource()
+        {
+            public int getWidth()
+            {
+                return image.getWidth();
+            }
+
+            public int getHeight()
+            {
+                return image.getHeight();
+            }
+
+            public int getSamplesPerPixel()
+            {
+                return numBands;
+            }
+
+            public int getBitsPerSample()
+            {
+                return bitsPerSample;
+            }
+
+            public int getSampleFormat()
+            {
+                return Tiff.SampleFormat.UNSIGNED;
+            }
+
+            public int getPhotometric()
+            {
+                return photometric;
+            }
+
+            public void readRows(int y, int numRows, ByteBuffer buffer)
+            {
+                int[] samples = raster.getPixels(0, y, image.getWidth(), numRows, (int[]) null);
+                for (int sample : samples)
+                {
+                    if (bitsPerSample == Short.SIZE)
+                        putUnsignedShort(buffer, sample);
+                    else
+                        putUnsignedByte(buffer, sample);
+                }
+            }
+        };
+    }
+
+    /*
+     * Creates a raster source that reads rows from a raster's buffer. RGB rasters hold one packed int per pixel.
+     *
+     */
+
+    protected RasterSource createRasterSource(final BufferWrapperRaster raster, final int samplesPerPixel,
+        final int bitsPerSample, final int sampleFormat, final int photometric)
+    {
+        final BufferWrapper srcBuffer = raster.getBuffer();
+
+        return new RasterSource()
+        {
+            public int getWidth()
+            {
+                return raster.getWidth();
+            }
+
+            public int getHeight()
+            {
+                return raster.getHeight();
+            }
+
+            public int getSamplesPerPixel()
+            {
+                return samplesPerPixel;
+            }
+
+            public int getBitsPerSample()
+            {
+                return bitsPerSample;
+            }
+
+            public int getSampleFormat()
+            {
+                return sampleFormat;
+            }
+
+            public int getPhotometric()
+            {
+                return photometric;
+            }
+
+            public void readRows(int y, int numRows, ByteBuffer buffer)
+            {
+                int start = y * raster.getWidth();
+                int end = start + numRows * raster.getWidth();
+
+                for (int i = start; i < end; i++)
+                {
+                    if (photometric == Tiff.Photometric.Color_RGB)
+                    {
+                        int color = srcBuffer.getInt(i);
+                        buffer.put((byte) (0xFF & (color >> 16)));
+                        buffer.put((byte) (0xFF & (color >> 8)));
+                        buffer.put((byte) (0xFF & color));
+                    }
+                    else if (sampleFormat == Tiff.SampleFormat.IEEEFLOAT)
+                        buffer.putFloat(srcBuffer.getFloat(i));
+                    else if (bitsPerSample == Short.SIZE)
+                        buffer.putShort(srcBuffer.getShort(i));
+                    else
+                        buffer.put(srcBuffer.getByte(i));
+                }
+            }
+        };
+    }
 }
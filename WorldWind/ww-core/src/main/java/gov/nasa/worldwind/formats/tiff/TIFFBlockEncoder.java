@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.formats.tiff;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.*;
+import java.util.zip.Deflater;
+
+/**
+ * This is a package private class that encodes TIFF strips and tiles. It is the counterpart of {@link TIFFBlockReader}:
+ * blocks hold pixel interleaved samples in the file's byte order, and are compressed with LZW, Deflate or PackBits after
+ * applying an optional predictor.
+ *
+ * @version $Id$
+ */
+class TIFFBlockEncoder
+{
+    protected int compression;
+    protected int predictor;
+    protected int samplesPerPixel;
+    protected int bytesPerSample;
+    protected ByteOrder byteOrder;
+
+    /**
+     * Creates an encoder for blocks with the specified sample layout.
+     *
+     * @param compression     the TIFF compression code.
+     * @param predictor       the TIFF predictor code.
+     * @param samplesPerPixel the number of samples in each pixel.
+     * @param bytesPerSample  the size of each sample, in bytes.
+     * @param byteOrder       the file's byte order.
+     */
+    public TIFFBlockEncoder(int compression, int predictor, int samplesPerPixel, int bytesPerSample,
+        ByteOrder byteOrder)
+    {
+        this.compression = compression;
+        this.predictor = predictor;
+        this.samplesPerPixel = samplesPerPixel;
+        this.bytesPerSample = bytesPerSample;
+        this.byteOrder = byteOrder;
+    }
+
+    /**
+     * Encodes a block. The block's contents are modified when a predictor is used.
+     *
+     * @param block the block's samples.
+     * @param width the block's width, in pixels.
+     * @param rows  the number of rows in the block.
+     *
+     * @return the encoded block.
+     */
+    public byte[] encode(byte[] block, int width, int rows)
+    {
+        if (this.compression == Tiff.Compression.NONE)
+            return block;
+
+        if (this.predictor == Tiff.Predictor.HORIZONTAL_DIFFERENCING)
+            this.applyHorizontalDifferencing(block, width, rows);
+        else if (this.predictor == Tiff.Predictor.FLOATING_POINT)
+            this.applyFloatingPointPredictor(block, width, rows);
+
+        if (this.compression == Tiff.Compression.LZW)
+            return lzwEncode(block);
+        else if (this.compression == Tiff.Compression.PACKBITS)
+            return packBitsEncode(block);
+        else
+            return deflate(block);
+    }
+
+    protected void applyHorizontalDifferencing(byte[] block, int width, int rows)
+    {
+        int rowSamples = width * this.samplesPerPixel;
+
+        if (this.bytesPerSample == 1)
+        {
+            for (int row = 0; row < rows; row++)
+            {
+                int start = row * rowSamples;
+                for (int i = start + rowSamples - 1; i >= start + this.samplesPerPixel; i--)
+                {
+                    block[i] -= block[i - this.samplesPerPixel];
+                }
+            }
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(block).order(this.byteOrder);
+        for (int row = 0; row < rows; row++)
+        {
+            int start = row * rowSamples;
+            for (int i = start + rowSamples - 1; i >= start + this.samplesPerPixel; i--)
+            {
+                int index = i * this.bytesPerSample;
+                int prev = (i - this.samplesPerPixel) * this.bytesPerSample;
+
+                if (this.bytesPerSample == 2)
+                    buffer.putShort(index, (short) (buffer.getShort(index) - buffer.getShort(prev)));
+                else if (this.bytesPerSample == 4)
+                    buffer.putInt(index, buffer.getInt(index) - buffer.getInt(prev));
+                else if (this.bytesPerSample == 8)
+                    buffer.putLong(index, buffer.getLong(index) - buffer.getLong(prev));
+            }
+        }
+    }
+
+    /**
+     * Applies the floating point predictor defined by Adobe's TIFF Technical Note 3. The bytes of each row's samples
+     * are split into planes, most significant byte first, and the planes are then differenced byte by byte.
+     *
+     * @param block the block's samples.
+     * @param width the block's width, in pixels.
+     * @param rows  the number of rows in the block.
+     */
+    protected void applyFloatingPointPredictor(byte[] block, int width, int rows)
+    {
+        int rowSamples = width * this.samplesPerPixel;
+        int rowSize = rowSamples * this.bytesPerSample;
+        boolean bigEndian = this.byteOrder == ByteOrder.BIG_ENDIAN;
+        byte[] row = new byte[rowSize];
+
+        for (int r = 0; r < rows; r++)
+        {
+            int start = r * rowSize;
+
+            for (int s = 0; s < rowSamples; s++)
+            {
+                for (int b = 0; b < this.bytesPerSample; b++)
+                {
+                    int src = start + s * this.bytesPerSample + (bigEndian ? b : this.bytesPerSample - 1 - b);
+                    row[b * rowSamples + s] = block[src];
+                }
+            }
+
+            for (int i = rowSize - 1; i >= this.samplesPerPixel; i--)
+            {
+                row[i] -= row[i - this.samplesPerPixel];
+            }
+
+            System.arraycopy(row, 0, block, start, rowSize);
+        }
+    }
+
+    /**
+     * Encodes data with TIFF LZW, using the code width changes that TIFF readers expect.
+     *
+     * @param input the data to encode.
+     *
+     * @return the encoded data.
+     */
+    protected static byte[] lzwEncode(byte[] input)
+    {
+        final int CLEAR_CODE = 256;
+        final int EOI_CODE = 257;
+
+        // The string table is a hash of (prefix code, suffix byte) to code.
+        final int HASH_SIZE = 9029; // Prime, larger than the 4096 entry table.
+        int[] hashKeys = new int[HASH_SIZE];
+        short[] hashCodes = new short[HASH_SIZE];
+
+        LZWOutput out = new LZWOutput(input.length / 2 + 16);
+        out.write(CLEAR_CODE, 9);
+
+        if (input.length == 0)
+        {
+            out.write(EOI_CODE, 9);
+            return out.toByteArray();
+        }
+
+        java.util.Arrays.fill(hashKeys, -1);
+        int nextCode = 258;
+        int codeLength = 9;
+        int prefix = input[0] & 0xFF;
+
+        for (int i = 1; i < input.length; i++)
+        {
+            int suffix = input[i] & 0xFF;
+            int key = (prefix << 8) | suffix;
+            int slot = key % HASH_SIZE;
+            while (hashKeys[slot] != -1 && hashKeys[slot] != key)
+            {
+                slot = (slot + 1) % HASH_SIZE;
+            }
+
+            if (hashKeys[slot] == key)
+            {
+                prefix = hashCodes[slot];
+                continue;
+            }
+
+            out.write(prefix, codeLength);
+            hashKeys[slot] = key;
+            hashCodes[slot] = (short) nextCode++;
+
+            // The decoder lags the encoder by one code, so the encoder widens its codes one code later than the
+            // decoder does.
+            if (nextCode == 4094)
+            {
+                out.write(CLEAR_CODE, codeLength);
+                java.util.Arrays.fill(hashKeys, -1);
+                nextCode = 258;
+                codeLength = 9;
+            }
+            else if (nextCode > (1 << codeLength) - 1)
+            {
+                codeLength++;
+            }
+
+            prefix = suffix;
+        }
+
+        out.write(prefix, codeLength);
+        nextCode++;
+        if (nextCode > (1 << codeLength) - 1 && codeLength < 12)
+            codeLength++;
+        out.write(EOI_CODE, codeLength);
+
+        return out.toByteArray();
+    }
+
+    protected static class LZWOutput extends ByteArrayOutputStream
+    {
+        protected int bitBuffer;
+        protected int bitCount;
+
+        public LZWOutput(int size)
+        {
+            super(size);
+        }
+
+        public void write(int code, int codeLength)
+        {
+            this.bitBuffer = (this.bitBuffer << codeLength) | code;
+            this.bitCount += codeLength;
+            while (this.bitCount >= 8)
+            {
+                this.write(this.bitBuffer >> (this.bitCount - 8));
+                this.bitCount -= 8;
+            }
+        }
+
+        public synchronized byte[] toByteArray()
+        {
+            if (this.bitCount > 0)
+            {
+                this.write(this.bitBuffer << (8 - this.bitCount));
+                this.bitCount = 0;
+            }
+
+            return super.toByteArray();
+        }
+    }
+
+    /**
+     * Encodes data with PackBits. Runs of three or more equal bytes are replicated; other bytes are copied literally.
+     *
+     * @param input the data to encode.
+     *
+     * @return the encoded data.
+     */
+    protected static byte[] packBitsEncode(byte[] input)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length + input.length / 128 + 1);
+
+        int i = 0;
+        while (i < input.length)
+        {
+            int run = 1;
+            while (i + run < input.length && run < 128 && input[i + run] == input[i])
+            {
+                run++;
+            }
+
+            if (run >= 3)
+            {
+                out.write(1 - run);
+                out.write(input[i]);
+                i += run;
+                continue;
+            }
+
+            // Copy bytes literally until the next run of three or more equal bytes.
+            int start = i;
+            while (i < input.length && i - start < 128)
+            {
+                if (i + 2 < input.length && input[i] == input[i + 1] && input[i] == input[i + 2])
+                    break;
+                i++;
+            }
+            out.write(i - start - 1);
+            out.write(input, start, i - start);
+        }
+
+        return out.toByteArray();
+    }
+
+    protected static byte[] deflate(byte[] input)
+    {
+        Deflater deflater = new Deflater();
+        try
+        {
+            deflater.setInput(input);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished())
+            {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+
+            return out.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,577 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.formats.tiff;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.zip.*;
+
+/**
+ * This is a package private class that reads rectangular windows of a TIFF image organized as strips or tiles. Only the
+ * strips or tiles intersecting the window are read and decoded. Data is read with positional {@link FileChannel} reads,
+ * which do not change the channel's position.
+ * <p/>
+ * Supported compressions are none, LZW, Deflate and PackBits, with or without the horizontal differencing or floating
+ * point predictor. Samples must be
+ * whole bytes, and all samples in a pixel must have the same size. Windows are returned pixel interleaved, regardless
+ * of the image's planar configuration, with samples in the file's byte order.
+ *
+ * @version $Id$
+ */
+class TIFFBlockReader
+{
+    protected FileChannel channel;
+    protected ByteOrder byteOrder;
+
+    protected int width;
+    protected int height;
+    protected int samplesPerPixel;
+    protected int bytesPerSample;
+    protected int planarConfig;
+    protected int compression;
+    protected int predictor;
+
+    protected boolean tiled;
+    protected int blockWidth;
+    protected int blockHeight;
+    protected int blocksAcross;
+    protected int blocksDown;
+    protected long[] offsets;
+    protected long[] counts;
+
+    protected TIFFBlockReader()
+    {
+    }
+
+    /**
+     * Creates a block reader for an image described by an ImageFileDirectory.
+     *
+     * @param ifd       the image's ImageFileDirectory.
+     * @param tiff      the image's baseline tags.
+     * @param channel   the channel to read the image data from.
+     * @param byteOrder the file's byte order.
+     *
+     * @return a block reader for the image.
+     *
+     * @throws IOException if the image's data organization is missing required tags or is not supported.
+     */
+    public static TIFFBlockReader create(TiffIFDEntry[] ifd, BaselineTiff tiff, FileChannel channel,
+        ByteOrder byteOrder) throws IOException
+    {
+        TIFFBlockReader reader = new TIFFBlockReader();
+        reader.channel = channel;
+        reader.byteOrder = byteOrder;
+        reader.width = tiff.width;
+        reader.height = tiff.height;
+        reader.samplesPerPixel = tiff.samplesPerPixel;
+        reader.planarConfig = (tiff.planarConfig == Tiff.PlanarConfiguration.PLANAR && tiff.samplesPerPixel > 1)
+            ? Tiff.PlanarConfiguration.PLANAR : Tiff.PlanarConfiguration.CHUNKY;
+        reader.compression = Tiff.Compression.NONE;
+        reader.predictor = Tiff.Predictor.NONE;
+
+        int bitsPerSample = (null != tiff.bitsPerSample && tiff.bitsPerSample.length > 0) ? tiff.bitsPerSample[0] : 1;
+        for (int i = 1; null != tiff.bitsPerSample && i < tiff.bitsPerSample.length; i++)
+        {
+            if (tiff.bitsPerSample[i] != bitsPerSample)
+                bitsPerSample = 0;
+        }
+
+        if (bitsPerSample <= 0 || bitsPerSample % 8 != 0)
+        {
+            String message = Logging.getMessage("GeotiffReader.InvalidIFDEntryValue", bitsPerSample,
+                "BitsPerSample", Tiff.Tag.BITS_PER_SAMPLE);
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+        reader.bytesPerSample = bitsPerSample / 8;
+
+        int tileWidth = 0;
+        int tileLength = 0;
+        for (TiffIFDEntry entry : ifd)
+        {
+            switch (entry.tag)
+            {
+                case Tiff.Tag.COMPRESSION:
+                    reader.compression = (int) entry.asLong();
+                    break;
+                case Tiff.Tag.TIFF_PREDICTOR:
+                    reader.predictor = (int) entry.asLong();
+                    break;
+                case Tiff.Tag.TILE_WIDTH:
+                    tileWidth = (int) entry.asLong();
+                    break;
+                case Tiff.Tag.TILE_LENGTH:
+                    tileLength = (int) entry.asLong();
+                    break;
+                case Tiff.Tag.TILE_OFFSETS:
+                case Tiff.Tag.STRIP_OFFSETS:
+                    reader.offsets = entry.getAsLongs();
+                    break;
+                case Tiff.Tag.TILE_COUNTS:
+                case Tiff.Tag.STRIP_BYTE_COUNTS:
+                    reader.counts = entry.getAsLongs();
+                    break;
+            }
+        }
+
+        reader.tiled = tileWidth > 0 && tileLength > 0;
+        if (reader.tiled)
+        {
+            reader.blockWidth = tileWidth;
+            reader.blockHeight = tileLength;
+        }
+        else
+        {
+            reader.blockWidth = tiff.width;
+            reader.blockHeight = (tiff.rowsPerStrip > 0 && tiff.rowsPerStrip < tiff.height) ? tiff.rowsPerStrip
+                : tiff.height;
+        }
+        reader.blocksAcross = (reader.width + reader.blockWidth - 1) / reader.blockWidth;
+        reader.blocksDown = (reader.height + reader.blockHeight - 1) / reader.blockHeight;
+
+        int numBlocks = reader.blocksAcross * reader.blocksDown
+            * (reader.planarConfig == Tiff.PlanarConfiguration.PLANAR ? reader.samplesPerPixel : 1);
+
+        if (null == reader.offsets || reader.offsets.length < numBlocks)
+        {
+            String message = Logging.getMessage("GeotiffReader.MissingRequiredTag",
+                reader.tiled ? "TileOffsets" : "StripOffsets");
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        if (null == reader.counts || reader.counts.length < numBlocks)
+        {
+            String message = Logging.getMessage("GeotiffReader.MissingRequiredTag",
+                reader.tiled ? "TileByteCounts" : "StripByteCounts");
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        if (!isSupportedCompression(reader.compression) || (reader.predictor != Tiff.Predictor.NONE
+            && reader.predictor != Tiff.Predictor.HORIZONTAL_DIFFERENCING
+            && reader.predictor != Tiff.Predictor.FLOATING_POINT))
+        {
+            String message = Logging.getMessage("GeotiffReader.CompressionFormatNotSupported");
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        return reader;
+    }
+
+    /**
+     * Indicates whether this reader can decode images with the specified compression.
+     *
+     * @param compression the TIFF compression code.
+     *
+     * @return true if the compression is supported, otherwise false.
+     */
+    public static boolean isSupportedCompression(int compression)
+    {
+        return compression == Tiff.Compression.NONE
+            || compression == Tiff.Compression.LZW
+            || compression == Tiff.Compression.DEFLATE
+            || compression == Tiff.Compression.ADOBE_DEFLATE
+            || compression == Tiff.Compression.PACKBITS;
+    }
+
+    public boolean isTiled()
+    {
+        return this.tiled;
+    }
+
+    public int getBytesPerPixel()
+    {
+        return this.samplesPerPixel * this.bytesPerSample;
+    }
+
+    /**
+     * Reads a rectangular window of the image.
+     *
+     * @param x the window's first column.
+     * @param y the window's first row.
+     * @param w the window's width, in pixels.
+     * @param h the window's height, in pixels.
+     *
+     * @return the window's pixels, in row major order with the samples of each pixel interleaved.
+     *
+     * @throws IOException if the window exceeds the image, or if an error occurs reading the image data.
+     */
+    public byte[] readWindow(int x, int y, int w, int h) throws IOException
+    {
+        if (x < 0 || y < 0 || w <= 0 || h <= 0 || x + w > this.width || y + h > this.height)
+        {
+            String message = Logging.getMessage("GeotiffReader.BadRowCol", y + h, x + w);
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        int pixelSize = this.getBytesPerPixel();
+        byte[] window = new byte[w * h * pixelSize];
+
+        boolean planar = this.planarConfig == Tiff.PlanarConfiguration.PLANAR;
+        int numPlanes = planar ? this.samplesPerPixel : 1;
+        int blockPixelSize = planar ? this.bytesPerSample : pixelSize;
+        int blocksPerPlane = this.blocksAcross * this.blocksDown;
+
+        for (int blockRow = y / this.blockHeight; blockRow <= (y + h - 1) / this.blockHeight; blockRow++)
+        {
+            for (int blockCol = x / this.blockWidth; blockCol <= (x + w - 1) / this.blockWidth; blockCol++)
+            {
+                // The intersection of the block and the window, in image coordinates.
+                int x0 = Math.max(x, blockCol * this.blockWidth);
+                int y0 = Math.max(y, blockRow * this.blockHeight);
+                int x1 = Math.min(x + w, (blockCol + 1) * this.blockWidth);
+                int y1 = Math.min(y + h, (blockRow + 1) * this.blockHeight);
+
+                for (int plane = 0; plane < numPlanes; plane++)
+                {
+                    int blockIndex = plane * blocksPerPlane + blockRow * this.blocksAcross + blockCol;
+                    byte[] block = this.readBlock(blockIndex, blockRow, blockPixelSize);
+
+                    for (int row = y0; row < y1; row++)
+                    {
+                        int src = ((row - blockRow * this.blockHeight) * this.blockWidth
+                            + (x0 - blockCol * this.blockWidth)) * blockPixelSize;
+                        int dst = ((row - y) * w + (x0 - x)) * pixelSize;
+
+                        if (!planar)
+                        {
+                            System.arraycopy(block, src, window, dst, (x1 - x0) * pixelSize);
+                            continue;
+                        }
+
+                        dst += plane * this.bytesPerSample;
+                        for (int col = x0; col < x1; col++)
+                        {
+                            System.arraycopy(block, src, window, dst, this.bytesPerSample);
+                            src += this.bytesPerSample;
+                            dst += pixelSize;
+                        }
+                    }
+                }
+            }
+        }
+
+        return window;
+    }
+
+    /**
+     * Reads and decodes a strip or tile. The returned array always holds a full block, even if the block's data in the
+     * file is truncated; missing data is left zero.
+     *
+     * @param blockIndex the index of the block's offset and byte count.
+     * @param blockRow   the row of blocks containing the block.
+     * @param pixelSize  the size of a pixel within the block, in bytes.
+     *
+     * @return the decoded block.
+     *
+     * @throws IOException if an error occurs reading or decoding the block.
+     */
+    protected byte[] readBlock(int blockIndex, int blockRow, int pixelSize) throws IOException
+    {
+        // Strips are stored without padding, so the last strip may hold fewer rows than the others. Tiles are always
+        // stored in full.
+        int rows = this.tiled ? this.blockHeight : Math.min(this.blockHeight, this.height - blockRow * this.blockHeight);
+        int rowSize = this.blockWidth * pixelSize;
+        byte[] block = new byte[this.blockWidth * this.blockHeight * pixelSize];
+
+        long count = this.counts[blockIndex];
+        if (count <= 0) // Sparse block; the block's pixels are all zero.
+            return block;
+
+        byte[] data = new byte[(int) count];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long position = this.offsets[blockIndex];
+        while (buffer.hasRemaining())
+        {
+            if (this.channel.read(buffer, position + buffer.position()) < 0)
+                break;
+        }
+
+        int length = rows * rowSize;
+        if (this.compression == Tiff.Compression.NONE)
+            System.arraycopy(data, 0, block, 0, Math.min(length, data.length));
+        else if (this.compression == Tiff.Compression.LZW)
+            lzwDecode(data, block, length);
+        else if (this.compression == Tiff.Compression.PACKBITS)
+            packBitsDecode(data, block, length);
+        else
+            inflate(data, block, length);
+
+        if (this.predictor == Tiff.Predictor.HORIZONTAL_DIFFERENCING)
+            this.undoHorizontalDifferencing(block, rows, pixelSize);
+        else if (this.predictor == Tiff.Predictor.FLOATING_POINT)
+            this.undoFloatingPointPredictor(block, rows, pixelSize);
+
+        return block;
+    }
+
+    protected void undoHorizontalDifferencing(byte[] block, int rows, int pixelSize)
+    {
+        int samples = pixelSize / this.bytesPerSample;
+        int rowSamples = this.blockWidth * samples;
+
+        if (this.bytesPerSample == 1)
+        {
+            for (int row = 0; row < rows; row++)
+            {
+                int start = row * rowSamples;
+                for (int i = start + samples; i < start + rowSamples; i++)
+                {
+                    block[i] += block[i - samples];
+                }
+            }
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(block).order(this.byteOrder);
+        for (int row = 0; row < rows; row++)
+        {
+            int start = row * rowSamples;
+            for (int i = start + samples; i < start + rowSamples; i++)
+            {
+                int index = i * this.bytesPerSample;
+                int prev = (i - samples) * this.bytesPerSample;
+
+                if (this.bytesPerSample == 2)
+                    buffer.putShort(index, (short) (buffer.getShort(index) + buffer.getShort(prev)));
+                else if (this.bytesPerSample == 4)
+                    buffer.putInt(index, buffer.getInt(index) + buffer.getInt(prev));
+                else if (this.bytesPerSample == 8)
+                    buffer.putLong(index, buffer.getLong(index) + buffer.getLong(prev));
+            }
+        }
+    }
+
+    /**
+     * Undoes the floating point predictor defined by Adobe's TIFF Technical Note 3. Each row holds the bytes of its
+     * samples split into planes, most significant byte first, with the planes differenced byte by byte.
+     *
+     * @param block     the decoded block.
+     * @param rows      the number of rows in the block.
+     * @param pixelSize the size of a pixel within the block, in bytes.
+     */
+    protected void undoFloatingPointPredictor(byte[] block, int rows, int pixelSize)
+    {
+        int samples = pixelSize / this.bytesPerSample;
+        int rowSamples = this.blockWidth * samples;
+        int rowSize = this.blockWidth * pixelSize;
+        boolean bigEndian = this.byteOrder == ByteOrder.BIG_ENDIAN;
+        byte[] row = new byte[rowSize];
+
+        for (int r = 0; r < rows; r++)
+        {
+            int start = r * rowSize;
+            for (int i = start + samples; i < start + rowSize; i++)
+            {
+                block[i] += block[i - samples];
+            }
+
+            System.arraycopy(block, start, row, 0, rowSize);
+            for (int s = 0; s < rowSamples; s++)
+            {
+                for (int b = 0; b < this.bytesPerSample; b++)
+                {
+                    int dst = start + s * this.bytesPerSample + (bigEndian ? b : this.bytesPerSample - 1 - b);
+                    block[dst] = row[b * rowSamples + s];
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes TIFF LZW data. Decoding stops at the end of information code, at the end of the input, or when the output
+     * is full.
+     *
+     * @param input  the encoded data.
+     * @param output the array to place the decoded data in.
+     * @param length the maximum number of bytes to decode.
+     *
+     * @return the number of bytes decoded.
+     */
+    protected static int lzwDecode(byte[] input, byte[] output, int length)
+    {
+        final int CLEAR_CODE = 256;
+        final int EOI_CODE = 257;
+
+        // The string table is stored as prefix links: each code's string is its prefix code's string followed by its
+        // suffix byte.
+        int[] prefix = new int[4096];
+        byte[] suffix = new byte[4096];
+        byte[] first = new byte[4096];
+        int[] lengths = new int[4096];
+        for (int i = 0; i < 256; i++)
+        {
+            prefix[i] = -1;
+            suffix[i] = (byte) i;
+            first[i] = (byte) i;
+            lengths[i] = 1;
+        }
+
+        int nextCode = 258;
+        int codeLength = 9;
+        int oldCode = -1;
+        int out = 0;
+
+        int bitBuffer = 0;
+        int bitCount = 0;
+        int in = 0;
+
+        while (out < length)
+        {
+            while (bitCount < codeLength && in < input.length)
+            {
+                bitBuffer = (bitBuffer << 8) | (input[in++] & 0xFF);
+                bitCount += 8;
+            }
+            if (bitCount < codeLength)
+                break;
+
+            int code = (bitBuffer >> (bitCount - codeLength)) & ((1 << codeLength) - 1);
+            bitCount -= codeLength;
+
+            if (code == EOI_CODE)
+                break;
+
+            if (code == CLEAR_CODE)
+            {
+                nextCode = 258;
+                codeLength = 9;
+                oldCode = -1;
+                continue;
+            }
+
+            int stringCode;
+            byte firstByte;
+            if (code < nextCode)
+            {
+                stringCode = code;
+                firstByte = first[code];
+            }
+            else if (code == nextCode && oldCode >= 0)
+            {
+                // The code is not yet in the table: its string is the previous string plus its own first byte.
+                stringCode = -1;
+                firstByte = first[oldCode];
+            }
+            else
+            {
+                break; // Corrupt data.
+            }
+
+            if (oldCode >= 0 && nextCode < 4096)
+            {
+                prefix[nextCode] = oldCode;
+                suffix[nextCode] = firstByte;
+                first[nextCode] = first[oldCode];
+                lengths[nextCode] = lengths[oldCode] + 1;
+                nextCode++;
+            }
+
+            if (stringCode < 0)
+                stringCode = nextCode - 1;
+
+            // Write the code's string, last byte first.
+            int len = lengths[stringCode];
+            int end = out + len;
+            for (int c = stringCode, i = end - 1; c >= 0; c = prefix[c], i--)
+            {
+                if (i < length)
+                    output[i] = suffix[c];
+            }
+            out = Math.min(end, length);
+            oldCode = code;
+
+            // TIFF LZW switches to a longer code one code early.
+            if (nextCode + 1 >= (1 << codeLength) && codeLength < 12)
+                codeLength++;
+        }
+
+        return out;
+    }
+
+    /**
+     * Decodes PackBits data.
+     *
+     * @param input  the encoded data.
+     * @param output the array to place the decoded data in.
+     * @param length the maximum number of bytes to decode.
+     *
+     * @return the number of bytes decoded.
+     */
+    protected static int packBitsDecode(byte[] input, byte[] output, int length)
+    {
+        int in = 0;
+        int out = 0;
+
+        while (in < input.length && out < length)
+        {
+            int n = input[in++];
+            if (n >= 0) // Copy the next n + 1 bytes literally.
+            {
+                int count = Math.min(Math.min(n + 1, input.length - in), length - out);
+                System.arraycopy(input, in, output, out, count);
+                in += n + 1;
+                out += count;
+            }
+            else if (n != -128 && in < input.length) // Repeat the next byte 1 - n times.
+            {
+                byte b = input[in++];
+                int count = Math.min(1 - n, length - out);
+                for (int i = 0; i < count; i++)
+                {
+                    output[out++] = b;
+                }
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Decodes Deflate (zlib) data.
+     *
+     * @param input  the encoded data.
+     * @param output the array to place the decoded data in.
+     * @param length the maximum number of bytes to decode.
+     *
+     * @return the number of bytes decoded.
+     *
+     * @throws IOException if the data is not valid zlib data.
+     */
+    protected static int inflate(byte[] input, byte[] output, int length) throws IOException
+    {
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(input);
+            int out = 0;
+            while (out < length && !inflater.finished())
+            {
+                int n = inflater.inflate(output, out, length - out);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                out += n;
+            }
+
+            return out;
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException(e.getMessage());
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+}
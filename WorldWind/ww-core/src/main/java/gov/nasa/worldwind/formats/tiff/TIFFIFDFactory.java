@@ -61,15 +61,27 @@ class TIFFIFDFactory
             }
             else if( count == 1 && (type == Tiff.Type.LONG || type == Tiff.Type.FLOAT))
             {
-                long value = header.getInt();
+                // LONG values are unsigned; offsets into files larger than 2GB must not be sign extended.
+                long value = getUnsignedInt( header );
                 return new TiffIFDEntry(tag, type, value );
             }
             else
             {
                 long offset = getUnsignedInt( header );
-                int size = MASK_USHORT & (int)calcSize( type, count );
+                int size = (int)calcSize( type, count );
 
-                if( size > 0L )
+                if( size > 0 && size <= 4 )
+                {
+                    // The values fit in the Value Offset itself, e.g. two SHORTs or a short ASCII string.
+                    ByteBuffer data = ByteBuffer.allocateDirect( size ).order( tiffFileOrder );
+                    header.position( 8 );
+                    header.limit( 8 + size );
+                    data.put( header );
+                    data.flip();
+
+                    return new TiffIFDEntry(tag, type, count, offset, data );
+                }
+                else if( size > 0L )
                 {
                     ByteBuffer data = ByteBuffer.allocateDirect( size ).order( tiffFileOrder );
                     savedPosition = fc.position();
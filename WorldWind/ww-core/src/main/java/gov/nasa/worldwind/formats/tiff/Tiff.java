@@ -32,6 +32,7 @@ public interface Tiff
     public interface Tag
     {
         // Baseline Tiff 6.0 tags...
+        public static final int NEW_SUBFILE_TYPE = 254;
         public static final int IMAGE_WIDTH = 256;
         public static final int IMAGE_LENGTH = 257;
         public static final int BITS_PER_SAMPLE = 258;
@@ -68,6 +69,7 @@ public interface Tiff
         public static final int TILE_COUNTS = 325;
 
         // Tiff extensions...
+        public static final int EXTRA_SAMPLES = 338;
         public static final int SAMPLE_FORMAT = 339;  // SHORT array of samplesPerPixel size
     }
 
@@ -191,7 +193,27 @@ public interface Tiff
         public static final int NONE = 1;
         public static final int LZW = 5;
         public static final int JPEG = 6;
+        public static final int DEFLATE = 8;
         public static final int PACKBITS = 32773;
+        public static final int ADOBE_DEFLATE = 32946;
+    }
+
+    public interface Predictor
+    {
+        public static final int NONE = 1;
+        // Each sample is stored as the difference from the same sample of the previous pixel in the row.
+        public static final int HORIZONTAL_DIFFERENCING = 2;
+        public static final int FLOATING_POINT = 3;
+    }
+
+    // NewSubfileType bit flags.
+    public interface SubfileType
+    {
+        // The image is a reduced resolution version of another image in the file, e.g. an overview.
+        public static final int REDUCED_RESOLUTION = 1;
+        public static final int SINGLE_PAGE = 2;
+        // The image defines a transparency mask for another image in the file.
+        public static final int TRANSPARENCY_MASK = 4;
     }
 
     public interface PlanarConfiguration
@@ -226,6 +248,13 @@ public interface Tiff
         public static final int CENTIMETER = 3;
     }
 
+    public interface ExtraSamples
+    {
+        public static final int UNSPECIFIED = 0;
+        public static final int ASSOCIATED_ALPHA = 1;
+        public static final int UNASSOCIATED_ALPHA = 2;
+    }
+
     public interface SampleFormat
     {
         public static final int UNSIGNED = 1;
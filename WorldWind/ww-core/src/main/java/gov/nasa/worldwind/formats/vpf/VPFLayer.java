@@ -7,6 +7,7 @@ package gov.nasa.worldwind.formats.vpf;
 
 import gov.nasa.worldwind.*;
 import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.layers.AbstractLayer;
 import gov.nasa.worldwind.render.*;
@@ -18,6 +19,11 @@ import java.util.concurrent.*;
 
 /**
  * Renders elements from a VPF database.
+ * <p/>
+ * The symbols of each visible coverage tile are assembled on a pool of request threads, nearest tiles first. Assembled
+ * symbols are kept in a memory cache whose capacity is specified in bytes, and the primitive data they are built from
+ * is kept in a {@link VPFPrimitiveDataCache} in the data file store, so that tiles which have left the memory cache
+ * are assembled without reading their primitive tables again.
  *
  * @author Patrick Murris
  * @version $Id$
@@ -27,6 +33,11 @@ public class VPFLayer extends AbstractLayer
     public static final String LIBRARY_CHANGED = "VPFLayer.LibraryChanged";
     public static final String COVERAGE_CHANGED = "VPFLayer.CoverageChanged";
 
+    /** The default number of threads assembling tile symbols. */
+    public static final int DEFAULT_REQUEST_THREAD_COUNT = 2;
+    /** The default capacity of the symbol memory cache, in bytes. */
+    public static final long DEFAULT_SYMBOL_CACHE_CAPACITY = 64000000L;
+
     // Reference
     protected VPFDatabase db;
     protected ArrayList<VPFLibraryRenderable> libraries;
@@ -46,6 +57,15 @@ public class VPFLayer extends AbstractLayer
     // Threaded requests
     protected Queue<Runnable> requestQ = new PriorityBlockingQueue<Runnable>(4);
     protected Queue<Disposable> disposalQ = new ConcurrentLinkedQueue<Disposable>();
+    protected int requestThreadCount = DEFAULT_REQUEST_THREAD_COUNT;
+    protected ThreadPoolExecutor requestExecutor;
+    protected ConcurrentHashMap<RequestTask, RequestTask> pendingRequests =
+        new ConcurrentHashMap<RequestTask, RequestTask>();
+
+    // Caches
+    protected MemoryCache symbolCache;
+    protected boolean persistentCacheEnabled = true;
+    protected VPFPrimitiveDataCache primitiveDataCache;
 
     // --- Inner classes ----------------------------------------------------------------------
 
@@ -88,12 +108,12 @@ public class VPFLayer extends AbstractLayer
 
             if (this.referenceCoverage != null)
             {
-                this.referenceCoverage.assembleSymbols(null);
+                this.referenceCoverage.assembleSymbols(dc, null);
             }
 
             for (VPFCoverageRenderable cr : this.coverages)
             {
-                cr.assembleSymbols((cr.coverage.isTiled() ? this.currentTiles : null));
+                cr.assembleSymbols(dc, (cr.coverage.isTiled() ? this.currentTiles : null));
             }
         }
 
@@ -170,71 +190,120 @@ public class VPFLayer extends AbstractLayer
         protected boolean enabled = false;
         protected VPFLayer layer;
         protected VPFCoverage coverage;
-        protected Map<VPFTile, VPFSymbolCollection> tileCache;
 
         public VPFCoverageRenderable(VPFLayer layer, VPFCoverage coverage)
         {
             this.layer = layer;
             this.coverage = coverage;
-            this.tileCache = Collections.synchronizedMap(new BoundedHashMap<VPFTile, VPFSymbolCollection>(6, true)
-            {
-                protected boolean removeEldestEntry(Map.Entry<VPFTile, VPFSymbolCollection> eldest)
-                {
-                    if (!super.removeEldestEntry(eldest))
-                        return false;
-
-                    dispose(eldest.getValue());
-                    return true;
-                }
-            });
         }
 
-        public void assembleSymbols(Iterable<? extends VPFTile> tiles)
+        public void assembleSymbols(DrawContext dc, Iterable<? extends VPFTile> tiles)
         {
             if (!this.enabled)
                 return;
 
             if (tiles == null)
             {
-                this.doAssembleSymbols(NULL_TILE);
+                this.doAssembleSymbols(dc, NULL_TILE);
                 return;
             }
 
             for (VPFTile tile : tiles)
             {
-                this.doAssembleSymbols(tile);
+                this.doAssembleSymbols(dc, tile);
             }
         }
 
-        protected void doAssembleSymbols(VPFTile tile)
+        protected void doAssembleSymbols(DrawContext dc, VPFTile tile)
         {
-            VPFSymbolCollection symbolCollection = this.tileCache.get(tile);
+            VPFSymbolCollection symbolCollection = (VPFSymbolCollection) this.layer.symbolCache.getObject(
+                new SymbolCacheKey(this.coverage, tile));
             if (symbolCollection != null)
             {
                 this.layer.symbols.addAll(symbolCollection.getSymbols());
             }
             else
             {
-                this.layer.requestQ.add(new RequestTask(this, tile));
+                this.layer.requestQ.add(new RequestTask(this, tile, this.computeRequestPriority(dc, tile)));
             }
         }
 
-        protected void dispose(VPFSymbolCollection renderInfo)
+        /**
+         * Computes the priority of a tile's symbol request: the distance from the eye to the tile's extent. Requests
+         * for untiled coverages have the highest priority.
+         *
+         * @param dc   the current draw context.
+         * @param tile the requested tile.
+         *
+         * @return the request priority. Lower values are requested first.
+         */
+        protected double computeRequestPriority(DrawContext dc, VPFTile tile)
+        {
+            if (tile == NULL_TILE)
+                return 0;
+
+            Extent extent = tile.getExtent(dc.getGlobe(), dc.getVerticalExaggeration());
+            return Math.max(0, dc.getView().getEyePoint().distanceTo3(extent.getCenter()) - extent.getRadius());
+        }
+    }
+
+    /** Identifies the symbols of one coverage tile in the layer's symbol cache. */
+    protected static class SymbolCacheKey
+    {
+        protected final VPFCoverage coverage;
+        protected final VPFTile tile;
+
+        public SymbolCacheKey(VPFCoverage coverage, VPFTile tile)
+        {
+            this.coverage = coverage;
+            this.tile = tile;
+        }
+
+        public boolean equals(Object o)
         {
-            this.layer.disposalQ.add(renderInfo);
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+
+            SymbolCacheKey that = (SymbolCacheKey) o;
+            return this.coverage == that.coverage && this.tile.equals(that.tile);
+        }
+
+        public int hashCode()
+        {
+            return 31 * System.identityHashCode(this.coverage) + this.tile.hashCode();
         }
     }
 
-    protected static class VPFSymbolCollection implements Disposable
+    protected static class VPFSymbolCollection implements Disposable, Cacheable
     {
         public static final VPFSymbolCollection EMPTY_SYMBOL_COLLECTION = new VPFSymbolCollection(null);
 
+        /** The estimated memory used by one symbol and its map object, excluding their geometry. */
+        protected static final long SYMBOL_SIZE_IN_BYTES = 1024;
+
         protected final ArrayList<VPFSymbol> symbols = new ArrayList<VPFSymbol>();
+        protected long sizeInBytes;
 
         public VPFSymbolCollection(Collection<? extends VPFSymbol> symbols)
+        {
+            this(symbols, 0);
+        }
+
+        /**
+         * Creates a symbol collection whose size in bytes includes the specified size of the geometry its symbols
+         * share.
+         *
+         * @param symbols      the symbols.
+         * @param geometrySize the size of the symbols' geometry, in bytes.
+         */
+        public VPFSymbolCollection(Collection<? extends VPFSymbol> symbols, long geometrySize)
         {
             if (symbols != null)
                 this.symbols.addAll(symbols);
+
+            this.sizeInBytes = geometrySize + SYMBOL_SIZE_IN_BYTES * (1 + this.symbols.size());
         }
 
         public Collection<VPFSymbol> getSymbols()
@@ -242,6 +311,11 @@ public class VPFLayer extends AbstractLayer
             return Collections.unmodifiableCollection(this.symbols);
         }
 
+        public long getSizeInBytes()
+        {
+            return this.sizeInBytes;
+        }
+
         public void dispose()
         {
             for (VPFSymbol s : this.symbols)
@@ -261,8 +335,7 @@ public class VPFLayer extends AbstractLayer
 
     protected VPFSymbolCollection loadTileSymbols(VPFCoverage coverage, VPFTile tile)
     {
-        VPFPrimitiveDataFactory primitiveDataFactory = new VPFBasicPrimitiveDataFactory(tile);
-        VPFPrimitiveData primitiveData = primitiveDataFactory.createPrimitiveData(coverage);
+        VPFPrimitiveData primitiveData = this.loadPrimitiveData(coverage, tile);
 
         // The PrimitiveDataFactory returns null when there are no primitive data tables for this coverage tile. We
         // return the constant EMPTY_SYMBOL_COLLECTION to indicate that we have successfully loaded nothing the empty
@@ -286,27 +359,66 @@ public class VPFLayer extends AbstractLayer
                 list.addAll(symbols);
         }
 
-        return new VPFSymbolCollection(list);
+        return new VPFSymbolCollection(list, primitiveData.getSizeInBytes());
+    }
+
+    /**
+     * Returns the primitive data of a coverage tile, reading it from the persistent cache when it's there and otherwise
+     * from the coverage's primitive tables. Data read from the primitive tables is added to the persistent cache.
+     *
+     * @param coverage the coverage.
+     * @param tile     the tile, or null if the coverage is not tiled.
+     *
+     * @return the tile's primitive data, or null if the tile has no primitive tables.
+     */
+    protected VPFPrimitiveData loadPrimitiveData(VPFCoverage coverage, VPFTile tile)
+    {
+        VPFPrimitiveDataCache cache = this.isPersistentCacheEnabled() ? this.getPrimitiveDataCache() : null;
+        if (cache != null)
+        {
+            VPFPrimitiveData primitiveData = cache.read(coverage, tile);
+            if (primitiveData != null)
+                return primitiveData;
+        }
+
+        VPFPrimitiveDataFactory primitiveDataFactory = new VPFBasicPrimitiveDataFactory(tile);
+        VPFPrimitiveData primitiveData = primitiveDataFactory.createPrimitiveData(coverage);
+
+        if (primitiveData != null && cache != null)
+            cache.write(coverage, tile, primitiveData);
+
+        return primitiveData;
     }
 
     protected static class RequestTask implements Runnable, Comparable<RequestTask>
     {
         protected VPFCoverageRenderable coverageRenderable;
         protected VPFTile tile;
+        protected double priority;
 
-        protected RequestTask(VPFCoverageRenderable coverageRenderable, VPFTile tile)
+        protected RequestTask(VPFCoverageRenderable coverageRenderable, VPFTile tile, double priority)
         {
             this.coverageRenderable = coverageRenderable;
             this.tile = tile;
+            this.priority = priority;
         }
 
         public void run()
         {
-            VPFSymbolCollection symbols = this.coverageRenderable.layer.loadTileSymbols(
-                this.coverageRenderable.coverage, (this.tile != NULL_TILE) ? this.tile : null);
+            VPFLayer layer = this.coverageRenderable.layer;
+            try
+            {
+                VPFSymbolCollection symbols = layer.loadTileSymbols(this.coverageRenderable.coverage,
+                    (this.tile != NULL_TILE) ? this.tile : null);
 
-            this.coverageRenderable.tileCache.put(this.tile, symbols);
-            this.coverageRenderable.layer.firePropertyChange(AVKey.LAYER, null, this.coverageRenderable.layer);
+                layer.symbolCache.add(new SymbolCacheKey(this.coverageRenderable.coverage, this.tile), symbols);
+            }
+            finally
+            {
+                layer.pendingRequests.remove(this);
+            }
+
+            layer.firePropertyChange(AVKey.LAYER, null, layer);
         }
 
         /**
@@ -325,7 +437,7 @@ public class VPFLayer extends AbstractLayer
                 throw new IllegalArgumentException(msg);
             }
 
-            return 0;
+            return Double.compare(this.priority, that.priority);
         }
 
         public boolean equals(Object o)
@@ -374,6 +486,26 @@ public class VPFLayer extends AbstractLayer
     {
         this.setName("VPF Layer");
         this.setPickEnabled(false);
+
+        this.symbolCache = new BasicMemoryCache((long) (0.8 * DEFAULT_SYMBOL_CACHE_CAPACITY),
+            DEFAULT_SYMBOL_CACHE_CAPACITY);
+        this.symbolCache.setName("VPF Symbols");
+        this.symbolCache.addCacheListener(new MemoryCache.CacheListener()
+        {
+            public void entryRemoved(Object key, Object clientObject)
+            {
+                // Symbols may still be in use by the current frame; dispose of them when the next frame begins.
+                if (clientObject instanceof Disposable)
+                    disposalQ.add((Disposable) clientObject);
+            }
+
+            public void removalException(Throwable exception, Object key, Object clientObject)
+            {
+                String message = Logging.getMessage("generic.ExceptionWhileDisposing", clientObject);
+                Logging.logger().log(java.util.logging.Level.FINE, message, exception);
+            }
+        });
+
         if (db != null)
             this.setVPFDatabase(db);
 
@@ -421,6 +553,140 @@ public class VPFLayer extends AbstractLayer
         }
     }
 
+    /**
+     * Indicates the number of threads assembling tile symbols.
+     *
+     * @return the number of request threads.
+     */
+    public int getRequestThreadCount()
+    {
+        return this.requestThreadCount;
+    }
+
+    /**
+     * Specifies the number of threads assembling tile symbols. The default is {@link #DEFAULT_REQUEST_THREAD_COUNT}.
+     *
+     * @param count the number of request threads.
+     *
+     * @throws IllegalArgumentException if the count is less than 1.
+     */
+    public void setRequestThreadCount(int count)
+    {
+        if (count < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "count < 1");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.requestThreadCount = count;
+
+        if (this.requestExecutor != null)
+        {
+            if (count > this.requestExecutor.getMaximumPoolSize())
+            {
+                this.requestExecutor.setMaximumPoolSize(count);
+                this.requestExecutor.setCorePoolSize(count);
+            }
+            else
+            {
+                this.requestExecutor.setCorePoolSize(count);
+                this.requestExecutor.setMaximumPoolSize(count);
+            }
+        }
+    }
+
+    /**
+     * Indicates the capacity of the memory cache holding assembled tile symbols.
+     *
+     * @return the symbol cache capacity, in bytes.
+     */
+    public long getSymbolCacheCapacity()
+    {
+        return this.symbolCache.getCapacity();
+    }
+
+    /**
+     * Specifies the capacity of the memory cache holding assembled tile symbols. The default is {@link
+     * #DEFAULT_SYMBOL_CACHE_CAPACITY}.
+     *
+     * @param capacity the symbol cache capacity, in bytes.
+     *
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    public void setSymbolCacheCapacity(long capacity)
+    {
+        if (capacity < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "capacity < 1");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.symbolCache.setLowWater((long) (0.8 * capacity));
+        this.symbolCache.setCapacity(capacity);
+    }
+
+    /**
+     * Indicates whether tile primitive data is read from and written to the persistent primitive data cache.
+     *
+     * @return true if the persistent cache is enabled, otherwise false.
+     */
+    public boolean isPersistentCacheEnabled()
+    {
+        return this.persistentCacheEnabled;
+    }
+
+    /**
+     * Specifies whether tile primitive data is read from and written to the persistent primitive data cache. The
+     * default is true.
+     *
+     * @param enabled true to enable the persistent cache, false to read primitive tables every time a tile is
+     *                assembled.
+     */
+    public void setPersistentCacheEnabled(boolean enabled)
+    {
+        this.persistentCacheEnabled = enabled;
+    }
+
+    /**
+     * Returns the persistent primitive data cache. If no cache has been specified, this creates a cache in the World
+     * Wind data file store.
+     *
+     * @return the persistent primitive data cache.
+     */
+    public VPFPrimitiveDataCache getPrimitiveDataCache()
+    {
+        if (this.primitiveDataCache == null)
+            this.primitiveDataCache = new VPFPrimitiveDataCache(WorldWind.getDataFileStore());
+
+        return this.primitiveDataCache;
+    }
+
+    /**
+     * Specifies the persistent primitive data cache.
+     *
+     * @param cache the persistent primitive data cache. May be null, in which case a cache in the World Wind data file
+     *              store is used.
+     */
+    public void setPrimitiveDataCache(VPFPrimitiveDataCache cache)
+    {
+        this.primitiveDataCache = cache;
+    }
+
+    public void dispose()
+    {
+        if (this.requestExecutor != null)
+        {
+            this.requestExecutor.shutdownNow();
+            this.requestExecutor = null;
+        }
+
+        this.pendingRequests.clear();
+        this.symbolCache.clear();
+        this.handleDisposal();
+    }
+
     public void setCoverageEnabled(VPFCoverage coverage, boolean enabled)
     {
         for (VPFLibraryRenderable lr : this.libraries)
@@ -526,15 +792,72 @@ public class VPFLayer extends AbstractLayer
         }
     }
 
+    /**
+     * Sends this frame's symbol requests to the request threads. A request which is already queued is given the
+     * priority of its new request, and queued requests which were not made this frame are abandoned.
+     */
     protected void sendRequests()
     {
-        Runnable task;
-        while ((task = this.requestQ.poll()) != null)
+        ThreadPoolExecutor executor = this.getRequestExecutor();
+        Set<RequestTask> requested = new HashSet<RequestTask>();
+
+        Runnable runnable;
+        while ((runnable = this.requestQ.poll()) != null)
         {
-            if (!WorldWind.getTaskService().isFull())
+            if (!(runnable instanceof RequestTask))
+            {
+                if (!WorldWind.getTaskService().isFull())
+                    WorldWind.getTaskService().addTask(runnable);
+                continue;
+            }
+
+            RequestTask task = (RequestTask) runnable;
+            requested.add(task);
+
+            RequestTask pending = this.pendingRequests.putIfAbsent(task, task);
+            if (pending == null)
             {
-                WorldWind.getTaskService().addTask(task);
+                executor.execute(task);
+            }
+            else if (pending.priority != task.priority && executor.remove(pending))
+            {
+                // Re-queue the pending request so that its position in the queue reflects its new priority.
+                pending.priority = task.priority;
+                executor.execute(pending);
             }
         }
+
+        for (Runnable queued : executor.getQueue().toArray(new Runnable[0]))
+        {
+            if (queued instanceof RequestTask && !requested.contains(queued) && executor.remove(queued))
+                this.pendingRequests.remove(queued);
+        }
+    }
+
+    /**
+     * Returns the executor running symbol requests, creating it if necessary. Its queue orders requests by priority,
+     * and its threads are daemon threads of minimum priority.
+     *
+     * @return the request executor.
+     */
+    protected ThreadPoolExecutor getRequestExecutor()
+    {
+        if (this.requestExecutor == null)
+        {
+            this.requestExecutor = new ThreadPoolExecutor(this.requestThreadCount, this.requestThreadCount,
+                2, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "VPF symbol assembly");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+            this.requestExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        return this.requestExecutor;
     }
 }
@@ -199,4 +199,49 @@ public class VPFPrimitiveData
     {
         this.primitiveStrings.put(name, strings);
     }
+
+    /**
+     * Returns the names of the primitive tables which have primitive info, coordinates or strings.
+     *
+     * @return the primitive table names.
+     */
+    public Set<String> getPrimitiveNames()
+    {
+        Set<String> names = new TreeSet<String>(this.primitiveInfo.keySet());
+        names.addAll(this.primitiveCoords.keySet());
+        names.addAll(this.primitiveStrings.keySet());
+
+        return names;
+    }
+
+    /**
+     * Returns an estimate of the memory used by this primitive data: the capacity of its coordinate buffers, the
+     * characters of its strings and a fixed amount for each primitive info.
+     *
+     * @return the estimated size in bytes.
+     */
+    public long getSizeInBytes()
+    {
+        long size = 0;
+
+        for (PrimitiveInfo[] info : this.primitiveInfo.values())
+        {
+            size += 64L * info.length;
+        }
+
+        for (VecBufferSequence coords : this.primitiveCoords.values())
+        {
+            size += coords.getVecBuffer().getBufferWrapper().getSizeInBytes() + 8L * coords.size();
+        }
+
+        for (CompoundStringBuilder strings : this.primitiveStrings.values())
+        {
+            for (int i = 0; i < strings.size(); i++)
+            {
+                size += 2L * strings.substringLength(i) + 8;
+            }
+        }
+
+        return size;
+    }
 }
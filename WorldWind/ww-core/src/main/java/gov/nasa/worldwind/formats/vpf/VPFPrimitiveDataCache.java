@@ -0,0 +1,556 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.vpf;
+
+import gov.nasa.worldwind.cache.FileStore;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.DoubleBuffer;
+import java.util.*;
+
+/**
+ * Persists the assembled primitive data of VPF coverage tiles in a {@link FileStore}, so that revisiting a tile reads
+ * one compact file instead of the coverage's node, edge, face, ring, bounding rectangle and text tables. Faces are
+ * stored with their rings already assembled from the winged-edge topology.
+ * <p/>
+ * Each file is keyed by the coverage's file path and the tile's ID, and records a stamp of the tile's primitive tables.
+ * A file whose tables have changed since it was written, or which can't be parsed, is removed and treated as missing.
+ *
+ * @version $Id$
+ */
+public class VPFPrimitiveDataCache
+{
+    protected static final int MAGIC = 0x57575650; // "WWVP"
+    protected static final int VERSION = 1;
+    protected static final String CACHE_DIRECTORY = "VPF";
+    protected static final String FILE_SUFFIX = ".vpd";
+
+    protected static final int INFO_NULL = 0;
+    protected static final int INFO_BASIC = 1;
+    protected static final int INFO_EDGE = 2;
+    protected static final int INFO_FACE = 3;
+
+    protected FileStore fileStore;
+
+    /**
+     * Creates a primitive data cache which stores its files in the specified file store.
+     *
+     * @param fileStore the file store to read and write primitive data files in.
+     *
+     * @throws IllegalArgumentException if the file store is null.
+     */
+    public VPFPrimitiveDataCache(FileStore fileStore)
+    {
+        if (fileStore == null)
+        {
+            String message = Logging.getMessage("nullValue.FileStoreIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.fileStore = fileStore;
+    }
+
+    public FileStore getFileStore()
+    {
+        return this.fileStore;
+    }
+
+    /**
+     * Reads the cached primitive data of a coverage tile.
+     *
+     * @param coverage the coverage.
+     * @param tile     the tile, or null if the coverage is not tiled.
+     *
+     * @return the primitive data, or null if the tile is not cached or its cached data is out of date.
+     *
+     * @throws IllegalArgumentException if the coverage is null.
+     */
+    public VPFPrimitiveData read(VPFCoverage coverage, VPFTile tile)
+    {
+        if (coverage == null)
+        {
+            String message = Logging.getMessage("nullValue.CoverageIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        URL url = this.fileStore.findFile(this.getCachePath(coverage, tile), false);
+        if (url == null)
+            return null;
+
+        File file = WWIO.convertURLToFile(url);
+        if (file == null)
+            return null;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException(Logging.getMessage("generic.CannotParse", file));
+
+            if (in.readLong() != this.getSourceStamp(coverage, tile))
+            {
+                in.close();
+                in = null;
+                this.fileStore.removeFile(url);
+                return null;
+            }
+
+            return this.readData(in);
+        }
+        catch (IOException e)
+        {
+            String message = Logging.getMessage("generic.ExceptionAttemptingToReadFile", file);
+            Logging.logger().log(java.util.logging.Level.WARNING, message, e);
+        }
+        finally
+        {
+            WWIO.closeStream(in, file.getPath());
+        }
+
+        this.fileStore.removeFile(url);
+        return null;
+    }
+
+    /**
+     * Writes the primitive data of a coverage tile to the cache. The data is written to a temporary file which then
+     * replaces the cached file, so readers never see a partially written file.
+     *
+     * @param coverage      the coverage.
+     * @param tile          the tile, or null if the coverage is not tiled.
+     * @param primitiveData the tile's primitive data.
+     *
+     * @throws IllegalArgumentException if the coverage or the primitive data is null.
+     */
+    public void write(VPFCoverage coverage, VPFTile tile, VPFPrimitiveData primitiveData)
+    {
+        if (coverage == null)
+        {
+            String message = Logging.getMessage("nullValue.CoverageIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (primitiveData == null)
+        {
+            String message = Logging.getMessage("VPF.NoPrimitiveData");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        File file = this.fileStore.newFile(this.getCachePath(coverage, tile));
+        if (file == null)
+            return;
+
+        File tmpFile = new File(file.getPath() + ".tmp" + Thread.currentThread().getId());
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(this.getSourceStamp(coverage, tile));
+            this.writeData(out, primitiveData);
+            out.close();
+            out = null;
+
+            if ((file.exists() && !file.delete()) || !tmpFile.renameTo(file))
+                throw new IOException(Logging.getMessage("generic.CannotCreateFile", file));
+        }
+        catch (IOException e)
+        {
+            String message = Logging.getMessage("generic.ExceptionAttemptingToWriteTo", file);
+            Logging.logger().log(java.util.logging.Level.WARNING, message, e);
+        }
+        finally
+        {
+            WWIO.closeStream(out, tmpFile.getPath());
+            if (tmpFile.exists())
+                tmpFile.delete();
+        }
+    }
+
+    /**
+     * Returns the file store path of a coverage tile's cache file. Coverages are distinguished by a hash of their file
+     * path, so that identically named coverages in different databases or libraries do not collide.
+     *
+     * @param coverage the coverage.
+     * @param tile     the tile, or null if the coverage is not tiled.
+     *
+     * @return the cache file's path.
+     */
+    protected String getCachePath(VPFCoverage coverage, VPFTile tile)
+    {
+        String pathHash = Integer.toHexString(new File(coverage.getFilePath()).getAbsolutePath().hashCode());
+        String coverageName = WWIO.replaceIllegalFileNameCharacters(
+            coverage.getLibrary().getName() + "_" + coverage.getName() + "_" + pathHash);
+
+        StringBuilder sb = new StringBuilder(CACHE_DIRECTORY);
+        sb.append(File.separator).append(coverageName).append(File.separator);
+        sb.append(tile != null ? String.valueOf(tile.getId()) : "untiled").append(FILE_SUFFIX);
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns a stamp identifying the state of the primitive tables a coverage tile's data is read from. The stamp
+     * combines the name, length and modification time of each file in the tile's primitive table directory, so it
+     * changes when any table is replaced, modified, added or removed.
+     *
+     * @param coverage the coverage.
+     * @param tile     the tile, or null if the coverage is not tiled.
+     *
+     * @return the primitive tables' stamp.
+     */
+    protected long getSourceStamp(VPFCoverage coverage, VPFTile tile)
+    {
+        File directory = new File(VPFBasicPrimitiveDataFactory.getPrimitiveTablePath(coverage, tile, ""));
+        File[] files = directory.listFiles();
+        if (files == null)
+            return 0;
+
+        // Sum the files' hashes so that the stamp doesn't depend on the order the files are listed in.
+        long stamp = files.length;
+        for (File file : files)
+        {
+            if (file.isFile())
+                stamp += (31L * file.getName().hashCode() + file.lastModified()) * 31L + file.length();
+        }
+
+        return stamp;
+    }
+
+    //**************************************************************//
+    //********************  Encoding  ******************************//
+    //**************************************************************//
+
+    protected void writeData(DataOutputStream out, VPFPrimitiveData primitiveData) throws IOException
+    {
+        Set<String> names = primitiveData.getPrimitiveNames();
+        out.writeInt(names.size());
+
+        for (String name : names)
+        {
+            out.writeUTF(name);
+            this.writeInfo(out, primitiveData.getPrimitiveInfo(name));
+            this.writeCoords(out, primitiveData.getPrimitiveCoords(name));
+            this.writeStrings(out, primitiveData.getPrimitiveStrings(name));
+        }
+    }
+
+    protected VPFPrimitiveData readData(DataInputStream in) throws IOException
+    {
+        VPFPrimitiveData primitiveData = new VPFPrimitiveData();
+
+        int numNames = in.readInt();
+        for (int i = 0; i < numNames; i++)
+        {
+            String name = in.readUTF();
+
+            VPFPrimitiveData.PrimitiveInfo[] info = this.readInfo(in);
+            if (info != null)
+                primitiveData.setPrimitiveInfo(name, info);
+
+            VecBufferSequence coords = this.readCoords(in);
+            if (coords != null)
+                primitiveData.setPrimitiveCoords(name, coords);
+
+            CompoundStringBuilder strings = this.readStrings(in);
+            if (strings != null)
+                primitiveData.setPrimitiveStrings(name, strings);
+        }
+
+        return primitiveData;
+    }
+
+    protected void writeInfo(DataOutputStream out, VPFPrimitiveData.PrimitiveInfo[] info) throws IOException
+    {
+        out.writeInt(info != null ? info.length : -1);
+        if (info == null)
+            return;
+
+        for (VPFPrimitiveData.PrimitiveInfo element : info)
+        {
+            if (element == null)
+            {
+                out.writeByte(INFO_NULL);
+                continue;
+            }
+
+            if (element instanceof VPFPrimitiveData.EdgeInfo)
+            {
+                VPFPrimitiveData.EdgeInfo edge = (VPFPrimitiveData.EdgeInfo) element;
+                out.writeByte(INFO_EDGE);
+                this.writeBounds(out, edge.getBounds());
+                out.writeInt(edge.getEdgeType());
+                out.writeInt(edge.getStartNode());
+                out.writeInt(edge.getEndNode());
+                out.writeInt(edge.getLeftFace());
+                out.writeInt(edge.getRightFace());
+                out.writeInt(edge.getLeftEdge());
+                out.writeInt(edge.getRightEdge());
+                out.writeBoolean(edge.isOnTileBoundary());
+            }
+            else if (element instanceof VPFPrimitiveData.FaceInfo)
+            {
+                VPFPrimitiveData.FaceInfo face = (VPFPrimitiveData.FaceInfo) element;
+                out.writeByte(INFO_FACE);
+                this.writeBounds(out, face.getBounds());
+                this.writeRing(out, face.getOuterRing());
+
+                VPFPrimitiveData.Ring[] innerRings = face.getInnerRings();
+                out.writeInt(innerRings != null ? innerRings.length : 0);
+                if (innerRings != null)
+                {
+                    for (VPFPrimitiveData.Ring ring : innerRings)
+                    {
+                        this.writeRing(out, ring);
+                    }
+                }
+            }
+            else
+            {
+                out.writeByte(INFO_BASIC);
+                this.writeBounds(out, element.getBounds());
+            }
+        }
+    }
+
+    protected VPFPrimitiveData.PrimitiveInfo[] readInfo(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+
+        VPFPrimitiveData.PrimitiveInfo[] info = new VPFPrimitiveData.PrimitiveInfo[length];
+        for (int i = 0; i < length; i++)
+        {
+            int type = in.readByte();
+            if (type == INFO_NULL)
+                continue;
+
+            VPFBoundingBox bounds = this.readBounds(in);
+            if (type == INFO_EDGE)
+            {
+                info[i] = new VPFPrimitiveData.EdgeInfo(in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                    in.readInt(), in.readInt(), in.readInt(), in.readBoolean(), bounds);
+            }
+            else if (type == INFO_FACE)
+            {
+                VPFPrimitiveData.Ring outerRing = this.readRing(in);
+                VPFPrimitiveData.Ring[] innerRings = new VPFPrimitiveData.Ring[in.readInt()];
+                for (int j = 0; j < innerRings.length; j++)
+                {
+                    innerRings[j] = this.readRing(in);
+                }
+
+                info[i] = new VPFPrimitiveData.FaceInfo(outerRing, innerRings, bounds);
+            }
+            else if (type == INFO_BASIC)
+            {
+                info[i] = new VPFPrimitiveData.BasicPrimitiveInfo(bounds);
+            }
+            else
+            {
+                throw new IOException(Logging.getMessage("generic.CannotParse", "type=" + type));
+            }
+        }
+
+        return info;
+    }
+
+    protected void writeBounds(DataOutputStream out, VPFBoundingBox bounds) throws IOException
+    {
+        out.writeBoolean(bounds != null);
+        if (bounds == null)
+            return;
+
+        out.writeDouble(bounds.getXmin());
+        out.writeDouble(bounds.getYmin());
+        out.writeDouble(bounds.getXmax());
+        out.writeDouble(bounds.getYmax());
+    }
+
+    protected VPFBoundingBox readBounds(DataInputStream in) throws IOException
+    {
+        if (!in.readBoolean())
+            return null;
+
+        return new VPFBoundingBox(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+    }
+
+    protected void writeRing(DataOutputStream out, VPFPrimitiveData.Ring ring) throws IOException
+    {
+        out.writeInt(ring != null ? ring.getNumEdges() : -1);
+        if (ring == null)
+            return;
+
+        for (int i = 0; i < ring.getNumEdges(); i++)
+        {
+            out.writeInt(ring.getEdgeId(i));
+            out.writeInt(ring.getEdgeOrientation(i));
+        }
+    }
+
+    protected VPFPrimitiveData.Ring readRing(DataInputStream in) throws IOException
+    {
+        int numEdges = in.readInt();
+        if (numEdges < 0)
+            return null;
+
+        int[] edgeId = new int[numEdges];
+        int[] edgeOrientation = new int[numEdges];
+        for (int i = 0; i < numEdges; i++)
+        {
+            edgeId[i] = in.readInt();
+            edgeOrientation[i] = in.readInt();
+        }
+
+        return new VPFPrimitiveData.Ring(numEdges, edgeId, edgeOrientation);
+    }
+
+    /**
+     * Writes a coordinate sequence one sub-buffer at a time. Coordinates read from single precision tables are written
+     * in single precision.
+     *
+     * @param out    the stream to write to.
+     * @param coords the coordinate sequence, or null.
+     *
+     * @throws IOException if the coordinates can't be written.
+     */
+    protected void writeCoords(DataOutputStream out, VecBufferSequence coords) throws IOException
+    {
+        out.writeInt(coords != null ? coords.size() : -1);
+        if (coords == null)
+            return;
+
+        int coordsPerVec = coords.getCoordsPerVec();
+        boolean isFloat = coords.getVecBuffer().getBufferWrapper() instanceof BufferWrapper.FloatBufferWrapper;
+        out.writeInt(coordsPerVec);
+        out.writeBoolean(isFloat);
+
+        int numVecs = 0;
+        for (int i = 0; i < coords.size(); i++)
+        {
+            numVecs += coords.subBufferSize(i);
+        }
+        out.writeInt(numVecs);
+
+        double[] vec = new double[coordsPerVec];
+        for (int i = 0; i < coords.size(); i++)
+        {
+            int size = coords.subBufferSize(i);
+            out.writeInt(size);
+            if (size == 0)
+                continue;
+
+            VecBuffer buffer = coords.subBuffer(i);
+            for (int j = 0; j < size; j++)
+            {
+                buffer.get(j, vec);
+                for (double d : vec)
+                {
+                    if (isFloat)
+                        out.writeFloat((float) d);
+                    else
+                        out.writeDouble(d);
+                }
+            }
+        }
+    }
+
+    protected VecBufferSequence readCoords(DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0)
+            return null;
+
+        int coordsPerVec = in.readInt();
+        boolean isFloat = in.readBoolean();
+        int numVecs = in.readInt();
+
+        // Read the sub-buffers into a scratch buffer, then append them to a sequence backed by a buffer of the
+        // original precision, sized to hold every sub-buffer.
+        BufferFactory factory = isFloat ? new BufferFactory.FloatBufferFactory()
+            : new BufferFactory.DoubleBufferFactory();
+        BufferWrapper buffer = factory.newBuffer(Math.max(1, numVecs) * coordsPerVec);
+        VecBufferSequence coords = new VecBufferSequence(new VecBuffer(coordsPerVec, buffer), Math.max(1, count));
+        double[] array = new double[coordsPerVec];
+        VecBuffer scratch = null;
+
+        for (int i = 0; i < count; i++)
+        {
+            int size = in.readInt();
+            if (size == 0)
+            {
+                coords.append(VecBuffer.emptyVecBuffer(coordsPerVec));
+                continue;
+            }
+
+            if (array.length < size * coordsPerVec)
+            {
+                array = new double[Math.max(size * coordsPerVec, 2 * array.length)];
+                scratch = null;
+            }
+
+            if (scratch == null)
+                scratch = new VecBuffer(coordsPerVec, new BufferWrapper.DoubleBufferWrapper(DoubleBuffer.wrap(array)));
+
+            for (int j = 0; j < size * coordsPerVec; j++)
+            {
+                array[j] = isFloat ? in.readFloat() : in.readDouble();
+            }
+
+            coords.append(scratch.getSubBuffer(0, size));
+        }
+
+        return coords;
+    }
+
+    protected void writeStrings(DataOutputStream out, CompoundStringBuilder strings) throws IOException
+    {
+        out.writeInt(strings != null ? strings.size() : -1);
+        if (strings == null)
+            return;
+
+        for (int i = 0; i < strings.size(); i++)
+        {
+            CharSequence s = strings.subSequence(i);
+            out.writeInt(s.length());
+            for (int j = 0; j < s.length(); j++)
+            {
+                out.writeChar(s.charAt(j));
+            }
+        }
+    }
+
+    protected CompoundStringBuilder readStrings(DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0)
+            return null;
+
+        CompoundStringBuilder strings = new CompoundStringBuilder(Math.max(1, count));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++)
+        {
+            int length = in.readInt();
+            sb.setLength(0);
+            for (int j = 0; j < length; j++)
+            {
+                sb.append(in.readChar());
+            }
+
+            strings.append(sb);
+        }
+
+        return strings;
+    }
+}
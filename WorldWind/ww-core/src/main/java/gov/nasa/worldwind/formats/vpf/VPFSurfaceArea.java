@@ -149,6 +149,13 @@ public class VPFSurfaceArea extends SurfacePolygon // TODO: consolidate with Sur
         // Intentionally left blank in order to override the superclass behavior with nothing.
     }
 
+    /** {@inheritDoc} Overridden to return null; VPFSurfaceArea draws its geometry directly with OpenGL. */
+    @Override
+    protected SurfaceShapeRasterizer.RasterShape createRasterShape(DrawContext dc, SurfaceTileDrawContext sdc)
+    {
+        return null;
+    }
+
     protected void drawInterior(DrawContext dc, SurfaceTileDrawContext sdc)
     {
         // Concave shape makes no assumptions about the nature or structure of the shape's vertices. The interior is
@@ -77,6 +77,13 @@ public class VPFSurfaceLine extends SurfacePolyline // TODO: consolidate with Su
         // Intentionally left blank in order to override the superclass behavior with nothing.
     }
 
+    /** {@inheritDoc} Overridden to return null; VPFSurfaceLine draws its geometry directly with OpenGL. */
+    @Override
+    protected SurfaceShapeRasterizer.RasterShape createRasterShape(DrawContext dc, SurfaceTileDrawContext sdc)
+    {
+        return null;
+    }
+
     protected void drawOutline(DrawContext dc, SurfaceTileDrawContext sdc)
     {
         this.applyOutlineState(dc, this.getActiveAttributes());
@@ -5,11 +5,13 @@
  */
 package gov.nasa.worldwind.formats.wvt;
 
+import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.util.*;
 
-import java.awt.*;
 import java.awt.image.*;
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * @author brownrigg
@@ -18,6 +20,9 @@ import java.io.*;
 
 public class WaveletCodec
 {
+    /** The minimum number of values worth reconstructing on a separate thread. */
+    protected static final int MIN_VALUES_PER_TASK = 16384;
+
     private final int type;
     private final int resolutionX;
     private final int resolutionY;
@@ -79,99 +84,336 @@ public class WaveletCodec
      *    Andrew Glassner
      *    1995, pp. 296
      *
-     * @param resolution
+     * Each level is reconstructed from the previous level's averages and this level's detail coefficients, which are
+     * read directly from the encoding. The bands, and the rows of large levels, are reconstructed concurrently.
+     *
+     * The resolution is validated before any work is done. Earlier versions did not check it: a resolution greater
+     * than the coefficients loaded by {@link #loadPartial} failed part way through with an
+     * <code>ArrayIndexOutOfBoundsException</code>, and a resolution that is not a power of two returned an undefined
+     * image. Both now throw an <code>IllegalArgumentException</code>.
+     *
+     * @param resolution the resolution of the image to reconstruct.
      * @return reconstructed image.
-     * @throws IllegalArgumentException
+     * @throws IllegalArgumentException if the resolution is not a power of two, or is greater than the resolution of
+     *                                  the encoding or of the coefficients loaded by {@link #loadPartial}.
      */
-    public BufferedImage reconstruct(int resolution) throws IllegalArgumentException {
-
-        // Allocate memory for the BufferedImage
+    public BufferedImage reconstruct(int resolution) throws IllegalArgumentException
+    {
         int numBands = this.xform.length;
-        int[][] imageData = new int[numBands][this.resolutionX * this.resolutionY];
-        byte[][] imageBytes = new byte[numBands][this.resolutionX * this.resolutionY];
+        if (resolution < 1 || !WWMath.isPowerOfTwo(resolution) || resolution > this.resolutionX
+            || resolution > this.resolutionY || (numBands > 0 && this.xform[0].length < resolution * resolution))
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "resolution=" + resolution);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
 
-        // we need working buffers as large as 1/2 the output resolution...
-        // Note how these are named after Glassner's convention...
+        // The last level is written directly to the image's bytes when the image is pixel interleaved, as the standard
+        // image types are.
+        final BufferedImage image = new BufferedImage(resolution, resolution, getBufferedImageType(this));
+        WritableRaster raster = image.getRaster();
+        boolean direct = raster.getSampleModel() instanceof ComponentSampleModel
+            && raster.getDataBuffer() instanceof DataBufferByte && numBands <= raster.getNumBands();
 
-        int res2 = (resolution/2) * (resolution/2);
-        int[][] A = new int[numBands][res2];
-        int[][] D = new int[numBands][res2];
-        int[][] V = new int[numBands][res2];
-        int[][] H = new int[numBands][res2];
+        // Each level is reconstructed from the previous level's averages into the other of two working planes per
+        // band. A level of size scale by scale is stored with a row stride of scale. The planes need not hold the last
+        // level when it's written directly to the image.
+        int planeSize = (direct && resolution > 1) ? resolution * resolution / 4 : resolution * resolution;
+        int[][] averages = new int[numBands][planeSize];
+        int[][] values = new int[numBands][planeSize];
 
         // Prime the process. Recall that the first byte of each channel is a color value, not
         // signed coefficients. So treat it as an unsigned value.
-        for (int k=0; k < numBands; k++)
-            imageData[k][0] = 0x000000ff & this.xform[k][0];
+        for (int k = 0; k < numBands; k++)
+        {
+            averages[k][0] = 0x000000ff & this.xform[k][0];
+        }
 
-        int scale = 1;
         int offset = 1;
-        do {
-            // load up our A,D,V,H component arrays...
-            int numVals = scale*scale;
-            if (numVals >= resolution*resolution) break;
-
-            int next = 0;
-            for (int j=0; j<scale; j++) {
-                for (int i=0; i<scale; i++, next++) {
-                    for (int k=0; k<numBands; k++) {
-                        A[k][next] = imageData[k][j*resolution + i];
+        for (int scale = 1; scale < resolution; scale *= 2)
+        {
+            List<Runnable> tasks = new ArrayList<Runnable>();
+            int numRowBlocks = computeNumRowBlocks(scale, numBands);
+            for (int k = 0; k < numBands; k++)
+            {
+                for (int block = 0; block < numRowBlocks; block++)
+                {
+                    final byte[] coefficients = this.xform[k];
+                    final int[] a = averages[k];
+                    final int[] v = values[k];
+                    final int level = scale;
+                    final int levelOffset = offset;
+                    final int rowMin = block * scale / numRowBlocks;
+                    final int rowMax = (block + 1) * scale / numRowBlocks;
+                    if (direct && 2 * scale == resolution)
+                    {
+                        final ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+                        final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                        final int bandOffset = sm.getBandOffsets()[k];
+                        tasks.add(new Runnable()
+                        {
+                            public void run()
+                            {
+                                reconstructRows(coefficients, levelOffset, level, a, data, bandOffset,
+                                    sm.getPixelStride(), sm.getScanlineStride(), rowMin, rowMax);
+                            }
+                        });
+                    }
+                    else
+                    {
+                        tasks.add(new Runnable()
+                        {
+                            public void run()
+                            {
+                                reconstructRows(coefficients, levelOffset, level, a, v, rowMin, rowMax);
+                            }
+                        });
                     }
                 }
             }
-            for (int i=0; i<numVals; i++, offset++) {
-                for (int k=0; k<numBands; k++) {
-                   H[k][i] = this.xform[k][offset];
+            runTasks(tasks);
+
+            int[][] tmp = averages;
+            averages = values;
+            values = tmp;
+            offset += 3 * scale * scale;
+        }
+
+        if (direct && resolution > 1)
+            return image;
+
+        // Otherwise copy the last level to the image, clamping the values to byte range.
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        int numRowBlocks = computeNumRowBlocks(resolution, 1);
+        for (int block = 0; block < numRowBlocks; block++)
+        {
+            final int[][] planes = averages;
+            final int rowMin = block * resolution / numRowBlocks;
+            final int rowMax = (block + 1) * resolution / numRowBlocks;
+            tasks.add(new Runnable()
+            {
+                public void run()
+                {
+                    copyRows(planes, image, rowMin, rowMax);
                 }
+            });
+        }
+        runTasks(tasks);
+
+        return image;
+    }
+
+    /**
+     * Reconstructs rows of the next level of one band. Each value of the current level, together with its horizontal,
+     * vertical and diagonal details, produces a 2x2 block of the next level.
+     *
+     * @param coefficients the band's encoding.
+     * @param offset       the position in the encoding of the current level's first horizontal detail.
+     * @param scale        the width and height of the current level.
+     * @param a            the current level's values, with a row stride of <code>scale</code>.
+     * @param next         the next level's values, with a row stride of <code>2 * scale</code>.
+     * @param rowMin       the first row of the current level to reconstruct.
+     * @param rowMax       one more than the last row of the current level to reconstruct.
+     */
+    protected static void reconstructRows(byte[] coefficients, int offset, int scale, int[] a, int[] next,
+        int rowMin, int rowMax)
+    {
+        int numVals = scale * scale;
+        int hOffset = offset;
+        int vOffset = offset + numVals;
+        int dOffset = offset + 2 * numVals;
+        int stride = 2 * scale;
+
+        for (int j = rowMin; j < rowMax; j++)
+        {
+            int src = j * scale;
+            int dst = 2 * j * stride;
+            for (int i = 0; i < scale; i++, src++, dst += 2)
+            {
+                int average = a[src];
+                int h = coefficients[hOffset + src];
+                int v = coefficients[vOffset + src];
+                int d = coefficients[dOffset + src];
+                next[dst] = average + h + v + d;
+                next[dst + 1] = average - h + v - d;
+                next[dst + stride] = average + h - v - d;
+                next[dst + stride + 1] = average - h - v + d;
             }
-            for (int i=0; i<numVals; i++, offset++) {
-                for (int k=0; k<numBands; k++) {
-                    V[k][i] = this.xform[k][offset];
-                }
+        }
+    }
+
+    /**
+     * Reconstructs rows of the last level of one band, clamping the values to byte range and writing them to an
+     * image's pixel-interleaved bytes.
+     *
+     * @param coefficients   the band's encoding.
+     * @param offset         the position in the encoding of the current level's first horizontal detail.
+     * @param scale          the width and height of the current level, half the width of the image.
+     * @param a              the current level's values, with a row stride of <code>scale</code>.
+     * @param data           the image's bytes.
+     * @param bandOffset     the offset of the band's first sample in the image's bytes.
+     * @param pixelStride    the distance between the samples of adjacent pixels in the image's bytes.
+     * @param scanlineStride the distance between the samples of adjacent rows in the image's bytes.
+     * @param rowMin         the first row of the current level to reconstruct.
+     * @param rowMax         one more than the last row of the current level to reconstruct.
+     */
+    protected static void reconstructRows(byte[] coefficients, int offset, int scale, int[] a, byte[] data,
+        int bandOffset, int pixelStride, int scanlineStride, int rowMin, int rowMax)
+    {
+        int numVals = scale * scale;
+        int hOffset = offset;
+        int vOffset = offset + numVals;
+        int dOffset = offset + 2 * numVals;
+
+        for (int j = rowMin; j < rowMax; j++)
+        {
+            int src = j * scale;
+            int dst = 2 * j * scanlineStride + bandOffset;
+            for (int i = 0; i < scale; i++, src++, dst += 2 * pixelStride)
+            {
+                int average = a[src];
+                int h = coefficients[hOffset + src];
+                int v = coefficients[vOffset + src];
+                int d = coefficients[dOffset + src];
+                data[dst] = clamp(average + h + v + d);
+                data[dst + pixelStride] = clamp(average - h + v - d);
+                data[dst + scanlineStride] = clamp(average + h - v - d);
+                data[dst + scanlineStride + pixelStride] = clamp(average - h - v + d);
             }
-            for (int i=0; i<numVals; i++, offset++) {
-                for (int k=0; k<numBands; k++) {
-                    D[k][i] = this.xform[k][offset];
+        }
+    }
+
+    protected static byte clamp(int value)
+    {
+        return (byte) (value < 0 ? 0 : (value > 255 ? 255 : value));
+    }
+
+    /**
+     * Copies rows of reconstructed bands to an image, clamping each value to byte range.
+     *
+     * @param planes the reconstructed bands, each with a row stride of the image width.
+     * @param image  the image to copy to.
+     * @param rowMin the first row to copy.
+     * @param rowMax one more than the last row to copy.
+     */
+    protected static void copyRows(int[][] planes, BufferedImage image, int rowMin, int rowMax)
+    {
+        WritableRaster raster = image.getRaster();
+        int width = raster.getWidth();
+        int numBands = Math.min(planes.length, raster.getNumBands());
+
+        if (raster.getSampleModel() instanceof ComponentSampleModel && raster.getDataBuffer() instanceof DataBufferByte)
+        {
+            // Write directly to the image's pixel-interleaved bytes.
+            ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+            byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+            int[] bandOffsets = sm.getBandOffsets();
+            int pixelStride = sm.getPixelStride();
+            int scanlineStride = sm.getScanlineStride();
+
+            for (int k = 0; k < numBands; k++)
+            {
+                int[] plane = planes[k];
+                for (int j = rowMin; j < rowMax; j++)
+                {
+                    int src = j * width;
+                    int dst = j * scanlineStride + bandOffsets[k];
+                    for (int i = 0; i < width; i++, src++, dst += pixelStride)
+                    {
+                        data[dst] = clamp(plane[src]);
+                    }
                 }
             }
-
-            next = 0;
-            for (int j = 0; j < scale; j++) {
-                for (int i = 0; i < scale; i++, next++) {
-                    for (int k = 0; k < numBands; k++) {
-                        int a = A[k][next] + H[k][next] + V[k][next] + D[k][next];
-                        int b = A[k][next] - H[k][next] + V[k][next] - D[k][next];
-                        int c = A[k][next] + H[k][next] - V[k][next] - D[k][next];
-                        int d = A[k][next] - H[k][next] - V[k][next] + D[k][next];
-                        imageData[k][2*j*resolution + (i*2)] =  a;
-                        imageData[k][2*j*resolution + (i*2) + 1] = b;
-                        imageData[k][2*j*resolution + resolution + (i*2)] = c;
-                        imageData[k][2*j*resolution + resolution + (i*2) + 1] = d;
+        }
+        else
+        {
+            int[] samples = new int[width];
+            for (int k = 0; k < numBands; k++)
+            {
+                for (int j = rowMin; j < rowMax; j++)
+                {
+                    for (int i = 0; i < width; i++)
+                    {
+                        int value = planes[k][j * width + i];
+                        samples[i] = value < 0 ? 0 : (value > 255 ? 255 : value);
                     }
+                    raster.setSamples(0, j, width, 1, k, samples);
                 }
             }
+        }
+    }
 
-            scale *= 2;
-        } while (scale < resolution);
+    /**
+     * Computes the number of blocks of rows a level is divided into for concurrent reconstruction. Small levels are
+     * reconstructed in one block.
+     *
+     * @param scale    the width and height of the level.
+     * @param numBands the number of bands reconstructed concurrently with the level.
+     *
+     * @return the number of blocks of rows.
+     */
+    protected static int computeNumRowBlocks(int scale, int numBands)
+    {
+        long numValues = (long) scale * scale;
+        long numBlocks = Math.min(numValues / MIN_VALUES_PER_TASK,
+            2 * Runtime.getRuntime().availableProcessors() / Math.max(1, numBands));
 
-        // Copy to bytes and clamp to byte-range...
-        for (int j = 0; j < resolution; j++) {
-            for (int i = 0; i < resolution; i++) {
-                for (int k = 0; k < numBands; k++) {
-                    imageBytes[k][j*resolution+i] = (byte) Math.max(0, Math.min(255, imageData[k][j*resolution+i]));
-                }
-            }
+        return (int) Math.max(1, Math.min(numBlocks, scale));
+    }
+
+    /**
+     * Runs tasks on the shared executor and waits for them to complete. A single task, or a set of tasks too small to
+     * be worth dispatching, runs on the calling thread.
+     *
+     * @param tasks the tasks to run.
+     */
+    protected static void runTasks(List<Runnable> tasks)
+    {
+        if (tasks.size() == 1)
+        {
+            tasks.get(0).run();
+            return;
         }
 
-        // Finally, construct a BufferedImage...
-        BandedSampleModel sm = new BandedSampleModel(DataBuffer.TYPE_BYTE, resolution, resolution, numBands);
-        DataBufferByte dataBuff = new DataBufferByte(imageBytes, imageBytes[0].length);
-        WritableRaster rast = Raster.createWritableRaster(sm, dataBuff, new Point(0, 0));
-        int imageType = getBufferedImageType(this);
-        BufferedImage image = new BufferedImage(resolution, resolution, imageType);
-        image.getRaster().setRect(rast);
+        List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+        for (int i = 1; i < tasks.size(); i++)
+        {
+            futures.add(ComputeExecutor.getInstance().submit(tasks.get(i)));
+        }
 
-        return image;
+        RuntimeException failure = null;
+        try
+        {
+            tasks.get(0).run();
+        }
+        catch (RuntimeException e)
+        {
+            failure = e;
+        }
+
+        // Wait for every task, so that no task is writing to the working planes when this returns.
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                failure = (failure != null) ? failure : new WWRuntimeException(e);
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (failure == null)
+                    failure = (cause instanceof RuntimeException) ? (RuntimeException) cause
+                        : new WWRuntimeException(cause);
+            }
+        }
+
+        if (failure != null)
+            throw failure;
     }
 
     public static java.nio.ByteBuffer save(WaveletCodec codec) throws IOException
@@ -316,6 +558,23 @@ public class WaveletCodec
         return codec;
     }
 
+    /**
+     * Reconstructs an image at the given resolution directly from an encoding held in a buffer, such as a memory
+     * mapped wavelet file. The coarse levels of each band precede its finer levels, so only the first
+     * <code>resolution * resolution</code> bytes of each band are read.
+     *
+     * @param buffer     the encoding, as written by {@link #save}.
+     * @param resolution the resolution of the image to reconstruct.
+     * @return reconstructed image.
+     * @throws IOException              if the encoding cannot be read.
+     * @throws IllegalArgumentException if the buffer is null, or if the resolution is not a power of two or is
+     *                                  greater than the resolution of the encoding.
+     */
+    public static BufferedImage reconstruct(java.nio.ByteBuffer buffer, int resolution) throws IOException
+    {
+        return loadPartial(buffer, resolution).reconstruct(resolution);
+    }
+
     /**
      * Creates a wavelet encoding from the given BufferedImage. The image must have dimensions that are
      * a power of 2. If the incoming image has at least 3 bands, the first three are assumed to be RGB channels.
@@ -662,8 +662,6 @@ public class Box implements Extent, Renderable
     /** {@inheritDoc} */
     public boolean intersects(Frustum frustum)
     {
-        // FYI: this code is identical to that in Cylinder.intersects.
-
         if (frustum == null)
         {
             String message = Logging.getMessage("nullValue.FrustumIsNull");
@@ -672,38 +670,10 @@ public class Box implements Extent, Renderable
             throw new IllegalArgumentException(message);
         }
 
-        double intersectionPoint;
-        Vec4[] endPoints = new Vec4[] {this.bottomCenter, this.topCenter};
-
-        double effectiveRadius = this.getEffectiveRadius2(frustum.getNear());
-        intersectionPoint = this.intersectsAt(frustum.getNear(), effectiveRadius, endPoints);
-        if (intersectionPoint < 0)
-            return false;
-
-        // Near and far have the same effective radius.
-        effectiveRadius = this.getEffectiveRadius2(frustum.getFar());
-        intersectionPoint = this.intersectsAt(frustum.getFar(), effectiveRadius, endPoints);
-        if (intersectionPoint < 0)
-            return false;
-
-        effectiveRadius = this.getEffectiveRadius2(frustum.getLeft());
-        intersectionPoint = this.intersectsAt(frustum.getLeft(), effectiveRadius, endPoints);
-        if (intersectionPoint < 0)
-            return false;
-
-        effectiveRadius = this.getEffectiveRadius2(frustum.getRight());
-        intersectionPoint = this.intersectsAt(frustum.getRight(), effectiveRadius, endPoints);
-        if (intersectionPoint < 0)
-            return false;
-
-        effectiveRadius = this.getEffectiveRadius2(frustum.getTop());
-        intersectionPoint = this.intersectsAt(frustum.getTop(), effectiveRadius, endPoints);
-        if (intersectionPoint < 0)
-            return false;
-
-        effectiveRadius = this.getEffectiveRadius2(frustum.getBottom());
-        intersectionPoint = this.intersectsAt(frustum.getBottom(), effectiveRadius, endPoints);
-        return intersectionPoint >= 0;
+        // Clip the box's R axis to each frustum plane using the effective radius of the S and T axes, as is done by
+        // getEffectiveRadius2 and intersectsAt, without creating intermediate vectors.
+        return VecMath.frustumIntersectsBox(frustum.getPlaneCoefficients(), this.bottomCenter, this.topCenter,
+            this.s, this.t);
     }
 
     /**
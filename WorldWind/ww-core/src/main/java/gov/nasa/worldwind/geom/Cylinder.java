@@ -524,37 +524,10 @@ public class Cylinder implements Extent, Renderable
             throw new IllegalArgumentException(message);
         }
 
-        double intersectionPoint;
-        Vec4[] endPoints = new Vec4[] {this.bottomCenter, this.topCenter};
-
-        double effectiveRadius = this.getEffectiveRadius(frustum.getNear());
-        intersectionPoint = this.intersectsAt(frustum.getNear(), effectiveRadius, endPoints);
-        if (intersectionPoint < 0)
-            return false;
-
-        // Near and far have the same effective radius.
-        intersectionPoint = this.intersectsAt(frustum.getFar(), effectiveRadius, endPoints);
-        if (intersectionPoint < 0)
-            return false;
-
-        effectiveRadius = this.getEffectiveRadius(frustum.getLeft());
-        intersectionPoint = this.intersectsAt(frustum.getLeft(), effectiveRadius, endPoints);
-        if (intersectionPoint < 0)
-            return false;
-
-        effectiveRadius = this.getEffectiveRadius(frustum.getRight());
-        intersectionPoint = this.intersectsAt(frustum.getRight(), effectiveRadius, endPoints);
-        if (intersectionPoint < 0)
-            return false;
-
-        effectiveRadius = this.getEffectiveRadius(frustum.getTop());
-        intersectionPoint = this.intersectsAt(frustum.getTop(), effectiveRadius, endPoints);
-        if (intersectionPoint < 0)
-            return false;
-
-        effectiveRadius = this.getEffectiveRadius(frustum.getBottom());
-        intersectionPoint = this.intersectsAt(frustum.getBottom(), effectiveRadius, endPoints);
-        return intersectionPoint >= 0;
+        // Clip the cylinder's axis to each frustum plane, as is done by getEffectiveRadius and intersectsAt, without
+        // creating intermediate vectors.
+        return VecMath.frustumIntersectsCylinder(frustum.getPlaneCoefficients(), this.bottomCenter, this.topCenter,
+            this.cylinderRadius);
     }
 
     /** {@inheritDoc} */
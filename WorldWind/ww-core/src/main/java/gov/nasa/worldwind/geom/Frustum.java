@@ -25,6 +25,11 @@ public class Frustum
     protected final Plane far;
     /** Holds all six frustum planes in an array in the order left, right, bottom, top, near, far. */
     protected final Plane[] allPlanes;
+    /**
+     * Holds the coefficients of all six frustum planes, four per plane, in the same order as <code>allPlanes</code>.
+     * Used by the allocation-free intersection kernels in {@link VecMath}.
+     */
+    protected final double[] planeCoefficients;
 
     /** Constructs a frustum two meters wide centered at the origin. Primarily used for testing. */
     public Frustum()
@@ -68,6 +73,12 @@ public class Frustum
         this.far = far;
 
         this.allPlanes = new Plane[] {this.left, this.right, this.bottom, this.top, this.near, this.far};
+
+        this.planeCoefficients = new double[VecMath.PLANE_STRIDE * this.allPlanes.length];
+        for (int i = 0; i < this.allPlanes.length; i++)
+        {
+            this.allPlanes[i].getVector().toArray4(this.planeCoefficients, VecMath.PLANE_STRIDE * i);
+        }
     }
 
     /**
@@ -140,6 +151,18 @@ public class Frustum
         return this.allPlanes;
     }
 
+    /**
+     * Returns the coefficients of all the planes, for use with the kernels in {@link VecMath}. The returned array must
+     * not be modified.
+     *
+     * @return an array of the normal and distance of each frustum plane, in the order left, right, bottom, top, near,
+     *         far.
+     */
+    public double[] getPlaneCoefficients()
+    {
+        return this.planeCoefficients;
+    }
+
     public boolean equals(Object obj)
     {
         if (this == obj)
@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.geom;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.awt.*;
+
+/**
+ * Allocation-free geometry kernels operating on primitive values. These complement the immutable {@link Vec4}, {@link
+ * Matrix}, {@link Plane} and {@link Frustum} classes on paths executed many times per frame, such as extent culling,
+ * where creating a new object for every intermediate result dominates the cost of the computation. Results are returned
+ * as primitives or written to caller-supplied arrays; no method creates objects.
+ * <p/>
+ * Frustum planes are passed as the array returned by {@link Frustum#getPlaneCoefficients()}: four values per plane,
+ * the plane's normal followed by its distance, for the planes in the order left, right, bottom, top, near, far. Points
+ * are inside a plane when the dot product of the plane with the point is positive.
+ *
+ * @version $Id$
+ */
+public class VecMath
+{
+    /** The number of values per plane in a plane coefficient array. */
+    public static final int PLANE_STRIDE = 4;
+    /** The number of planes in a frustum's plane coefficient array. */
+    public static final int NUM_FRUSTUM_PLANES = 6;
+
+    /**
+     * The order frustum planes are tested in by the segment clipping kernels: near, far, left, right, top, bottom. Near
+     * and far are tested first because they reject the most extents.
+     */
+    protected static final int[] CLIP_ORDER = new int[] {4, 5, 0, 1, 3, 2};
+
+    /**
+     * Computes the dot product of a plane in a plane coefficient array with a point.
+     *
+     * @param planes the plane coefficient array.
+     * @param plane  the plane's index in the array.
+     * @param x      the point's x coordinate.
+     * @param y      the point's y coordinate.
+     * @param z      the point's z coordinate.
+     *
+     * @return the point's signed distance from the plane, scaled by the length of the plane's normal.
+     */
+    public static double dotPlane(double[] planes, int plane, double x, double y, double z)
+    {
+        int i = PLANE_STRIDE * plane;
+        return planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3];
+    }
+
+    /**
+     * Indicates whether a point is inside all the planes of a frustum. Equivalent to {@link Frustum#contains(Vec4)}.
+     *
+     * @param planes the frustum's plane coefficients.
+     * @param x      the point's x coordinate.
+     * @param y      the point's y coordinate.
+     * @param z      the point's z coordinate.
+     *
+     * @return true if the point is inside the frustum, otherwise false.
+     */
+    public static boolean frustumContains(double[] planes, double x, double y, double z)
+    {
+        for (int plane = 0; plane < NUM_FRUSTUM_PLANES; plane++)
+        {
+            if (dotPlane(planes, plane, x, y, z) <= 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Indicates whether a sphere intersects a frustum. Equivalent to {@link Sphere#intersects(Frustum)}.
+     *
+     * @param planes the frustum's plane coefficients.
+     * @param x      the x coordinate of the sphere's center.
+     * @param y      the y coordinate of the sphere's center.
+     * @param z      the z coordinate of the sphere's center.
+     * @param radius the sphere's radius.
+     *
+     * @return true if the sphere intersects the frustum, otherwise false.
+     */
+    public static boolean frustumIntersectsSphere(double[] planes, double x, double y, double z, double radius)
+    {
+        for (int plane = 0; plane < NUM_FRUSTUM_PLANES; plane++)
+        {
+            if (dotPlane(planes, plane, x, y, z) <= -radius)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Indicates whether a cylinder intersects a frustum. Equivalent to {@link Cylinder#intersects(Frustum)}.
+     *
+     * @param planes       the frustum's plane coefficients.
+     * @param bottomCenter the center of the cylinder's base.
+     * @param topCenter    the center of the cylinder's top.
+     * @param radius       the cylinder's radius.
+     *
+     * @return true if the cylinder intersects the frustum, otherwise false.
+     *
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public static boolean frustumIntersectsCylinder(double[] planes, Vec4 bottomCenter, Vec4 topCenter, double radius)
+    {
+        if (planes == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (bottomCenter == null || topCenter == null)
+        {
+            String message = Logging.getMessage("nullValue.EndPointIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return intersectsSweptSegment(planes, bottomCenter, topCenter, radius, null, null);
+    }
+
+    /**
+     * Indicates whether a box intersects a frustum. Equivalent to {@link Box#intersects(Frustum)}.
+     *
+     * @param planes       the frustum's plane coefficients.
+     * @param bottomCenter the point at the bottom of the box's longest axis.
+     * @param topCenter    the point at the top of the box's longest axis.
+     * @param s            the box's next longest axis.
+     * @param t            the box's shortest axis.
+     *
+     * @return true if the box intersects the frustum, otherwise false.
+     *
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public static boolean frustumIntersectsBox(double[] planes, Vec4 bottomCenter, Vec4 topCenter, Vec4 s, Vec4 t)
+    {
+        if (planes == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (bottomCenter == null || topCenter == null || s == null || t == null)
+        {
+            String message = Logging.getMessage("nullValue.Vec4IsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return intersectsSweptSegment(planes, bottomCenter, topCenter, 0, s, t);
+    }
+
+    /**
+     * Tests a line segment swept by a disk or rectangle against a frustum, clipping the segment to each plane in turn.
+     * The extent is on the negative side of a plane when both segment end points are farther from the plane than the
+     * extent's effective radius relative to that plane. See Lengyel, 2 Ed, Section 7.2.4.
+     * <p/>
+     * The effective radius is that of a box with the axes <code>s</code> and <code>t</code> when they are non-null,
+     * and otherwise that of a cylinder with the specified radius.
+     *
+     * @param planes the frustum's plane coefficients.
+     * @param a      the segment's first end point.
+     * @param b      the segment's second end point.
+     * @param radius the cylinder radius. Ignored when the box axes are specified.
+     * @param s      the box's second axis, or null for a cylinder.
+     * @param t      the box's third axis, or null for a cylinder.
+     *
+     * @return true if the extent intersects the frustum, otherwise false.
+     */
+    protected static boolean intersectsSweptSegment(double[] planes, Vec4 a, Vec4 b, double radius, Vec4 s, Vec4 t)
+    {
+        double ax = a.x, ay = a.y, az = a.z;
+        double bx = b.x, by = b.y, bz = b.z;
+
+        // The unit axis of the cylinder, which determines its effective radius.
+        double ux = 0, uy = 0, uz = 0;
+        if (s == null)
+        {
+            double length = Math.sqrt((bx - ax) * (bx - ax) + (by - ay) * (by - ay) + (bz - az) * (bz - az));
+            if (length > 0)
+            {
+                ux = (bx - ax) / length;
+                uy = (by - ay) / length;
+                uz = (bz - az) / length;
+            }
+        }
+
+        for (int plane : CLIP_ORDER)
+        {
+            int i = PLANE_STRIDE * plane;
+            double nx = planes[i];
+            double ny = planes[i + 1];
+            double nz = planes[i + 2];
+            double d = planes[i + 3];
+
+            double effectiveRadius;
+            if (s != null)
+            {
+                effectiveRadius = 0.5 * (Math.abs(s.x * nx + s.y * ny + s.z * nz)
+                    + Math.abs(t.x * nx + t.y * ny + t.z * nz));
+            }
+            else
+            {
+                double dot = nx * ux + ny * uy + nz * uz;
+                double scale = 1d - dot * dot;
+                effectiveRadius = scale <= 0 ? 0 : radius * Math.sqrt(scale);
+            }
+
+            double dq1 = nx * ax + ny * ay + nz * az + d;
+            boolean bq1 = dq1 <= -effectiveRadius;
+            double dq2 = nx * bx + ny * by + nz * bz + d;
+            boolean bq2 = dq2 <= -effectiveRadius;
+
+            if (bq1 && bq2) // both end points beyond the effective radius; the extent is on the plane's negative side
+                return false;
+
+            if (bq1 == bq2) // both end points within the effective radius; can't draw any conclusions
+                continue;
+
+            // Truncate the segment to the part on the positive side of the plane.
+            double tc = (effectiveRadius + dq1) / (nx * (ax - bx) + ny * (ay - by) + nz * (az - bz));
+            if (tc < 0)
+                return false;
+
+            double px = ax + (bx - ax) * tc;
+            double py = ay + (by - ay) * tc;
+            double pz = az + (bz - az) * tc;
+            if (bq1)
+            {
+                ax = px;
+                ay = py;
+                az = pz;
+            }
+            else
+            {
+                bx = px;
+                by = py;
+                bz = pz;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Maps a model coordinate point to window coordinates. Equivalent to <code>gluProject</code>, but computed directly
+     * from the matrices.
+     *
+     * @param modelview  the modelview matrix.
+     * @param projection the projection matrix.
+     * @param viewport   the viewport.
+     * @param x          the point's x coordinate.
+     * @param y          the point's y coordinate.
+     * @param z          the point's z coordinate.
+     * @param result     an array in which to return the window coordinates x, y and depth.
+     * @param offset     the index in the result array at which to store the window coordinates.
+     *
+     * @return true if the point was projected, false if the projection's w coordinate is zero.
+     *
+     * @throws IllegalArgumentException if any matrix, the viewport or the result array is null.
+     */
+    public static boolean project(Matrix modelview, Matrix projection, Rectangle viewport, double x, double y,
+        double z, double[] result, int offset)
+    {
+        if (modelview == null || projection == null)
+        {
+            String message = Logging.getMessage("nullValue.MatrixIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (viewport == null)
+        {
+            String message = Logging.getMessage("nullValue.RectangleIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (result == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        Matrix m = modelview;
+        double ex = m.m11 * x + m.m12 * y + m.m13 * z + m.m14;
+        double ey = m.m21 * x + m.m22 * y + m.m23 * z + m.m24;
+        double ez = m.m31 * x + m.m32 * y + m.m33 * z + m.m34;
+        double ew = m.m41 * x + m.m42 * y + m.m43 * z + m.m44;
+
+        m = projection;
+        double cw = m.m41 * ex + m.m42 * ey + m.m43 * ez + m.m44 * ew;
+        if (cw == 0)
+            return false;
+
+        double cx = (m.m11 * ex + m.m12 * ey + m.m13 * ez + m.m14 * ew) / cw;
+        double cy = (m.m21 * ex + m.m22 * ey + m.m23 * ez + m.m24 * ew) / cw;
+        double cz = (m.m31 * ex + m.m32 * ey + m.m33 * ez + m.m34 * ew) / cw;
+
+        result[offset] = viewport.x + (cx * 0.5 + 0.5) * viewport.width;
+        result[offset + 1] = viewport.y + (cy * 0.5 + 0.5) * viewport.height;
+        result[offset + 2] = cz * 0.5 + 0.5;
+
+        return true;
+    }
+}
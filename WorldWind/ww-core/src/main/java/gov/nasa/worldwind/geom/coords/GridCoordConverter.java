@@ -0,0 +1,1702 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.geom.coords;
+
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Stateless converter between geodetic coordinates and UTM, UPS and MGRS coordinates, for converting many coordinates
+ * without creating objects. A converter holds only the constants derived from its ellipsoid, so a single instance may
+ * be shared by any number of threads. Coordinates are passed as primitive values, results are stored in caller
+ * provided arrays, and MGRS strings are written to and read from caller provided character arrays. The batch methods
+ * optionally divide their coordinates among tasks run by an executor.
+ * <p/>
+ * This class holds the Transverse Mercator, polar stereographic and MGRS computations ported from the NGA GeoTrans
+ * code. {@link TMCoordConverter}, {@link PolarCoordConverter} and {@link MGRSCoordConverter} delegate to it, so the
+ * conversions produce the same results as {@link UTMCoord}, {@link UPSCoord} and {@link MGRSCoord}. MGRS strings are
+ * parsed ignoring spaces and case. Polar MGRS strings, which have no zone, are also parsed.
+ * <p/>
+ * Latitudes and longitudes are in radians. Hemispheres are identified by {@link #NORTH} and {@link #SOUTH}.
+ *
+ * @version $Id$
+ */
+public class GridCoordConverter
+{
+    /** Identifies the northern hemisphere. */
+    public static final int NORTH = 1;
+    /** Identifies the southern hemisphere. */
+    public static final int SOUTH = -1;
+    /**
+     * The maximum number of characters in an MGRS string written by this converter, and the number of characters
+     * allotted to each string by the batch MGRS methods.
+     */
+    public static final int MAX_MGRS_LENGTH = 17;
+
+    /** A converter for the WGS84 ellipsoid. */
+    public static final GridCoordConverter WGS84 = new GridCoordConverter(UTMCoordConverter.WGS84_A,
+        UTMCoordConverter.WGS84_F);
+
+    /** The minimum number of coordinates converted by each task of a parallel batch conversion. */
+    protected static final int MIN_COORDS_PER_TASK = 4096;
+
+    protected static final double PI = 3.14159265358979323;
+    protected static final double PI_OVER_2 = PI / 2.0;
+    protected static final double PI_OVER_4 = PI / 4.0;
+    protected static final double TWO_PI = 2.0 * PI;
+    protected static final double DEG_TO_RAD = 0.017453292519943295;
+    protected static final double RAD_TO_DEG = 57.29577951308232087;
+
+    // Transverse Mercator limits.
+    protected static final double TM_MAX_LAT = (PI * 89.99) / 180.0;
+    protected static final double TM_MAX_DELTA_LONG = (PI * 90) / 180.0;
+
+    // UTM limits and projection parameters.
+    protected static final double UTM_MIN_LAT = (-82 * PI) / 180.0;
+    protected static final double UTM_MAX_LAT = (86 * PI) / 180.0;
+    protected static final double UTM_MIN_EASTING = 100000;
+    protected static final double UTM_MAX_EASTING = 900000;
+    protected static final double UTM_MIN_NORTHING = 0;
+    protected static final double UTM_MAX_NORTHING = 10000000;
+    protected static final double UTM_FALSE_EASTING = 500000;
+    protected static final double UTM_SCALE = 0.9996;
+
+    // UPS limits and projection parameters.
+    protected static final double UPS_MAX_LAT = (PI * 90) / 180.0;
+    protected static final double UPS_MIN_NORTH_LAT = 72 * PI / 180.0;
+    protected static final double UPS_MIN_SOUTH_LAT = -72 * PI / 180.0;
+    protected static final double UPS_ORIGIN_LAT = (81.114528 * PI) / 180.0;
+    protected static final double UPS_MIN_EAST_NORTH = 0;
+    protected static final double UPS_MAX_EAST_NORTH = 4000000;
+    protected static final double UPS_FALSE_EASTING = 2000000.0;
+    protected static final double UPS_FALSE_NORTHING = 2000000.0;
+
+    // MGRS limits.
+    protected static final int MGRS_MAX_PRECISION = 5;
+    protected static final double MGRS_MIN_UTM_LAT = (-80 * PI) / 180.0;
+    protected static final double MGRS_MAX_UTM_LAT = (84 * PI) / 180.0;
+    protected static final double TWOMIL = 2000000;
+    protected static final double ONEHT = 100000;
+
+    protected static final int LETTER_A = 0;
+    protected static final int LETTER_B = 1;
+    protected static final int LETTER_C = 2;
+    protected static final int LETTER_D = 3;
+    protected static final int LETTER_E = 4;
+    protected static final int LETTER_H = 7;
+    protected static final int LETTER_I = 8;
+    protected static final int LETTER_J = 9;
+    protected static final int LETTER_L = 11;
+    protected static final int LETTER_M = 12;
+    protected static final int LETTER_N = 13;
+    protected static final int LETTER_O = 14;
+    protected static final int LETTER_P = 15;
+    protected static final int LETTER_R = 17;
+    protected static final int LETTER_S = 18;
+    protected static final int LETTER_U = 20;
+    protected static final int LETTER_V = 21;
+    protected static final int LETTER_W = 22;
+    protected static final int LETTER_X = 23;
+    protected static final int LETTER_Y = 24;
+    protected static final int LETTER_Z = 25;
+
+    // Polar MGRS constants: band letter, second letter low and high values, third letter high value, false easting
+    // and false northing.
+    protected static final int[][] UPS_CONSTANTS = {
+        {LETTER_A, LETTER_J, LETTER_Z, LETTER_Z, 800000, 800000},
+        {LETTER_B, LETTER_A, LETTER_R, LETTER_Z, 2000000, 800000},
+        {LETTER_Y, LETTER_J, LETTER_Z, LETTER_P, 800000, 1300000},
+        {LETTER_Z, LETTER_A, LETTER_J, LETTER_P, 2000000, 1300000}};
+
+    // Latitude band constants: band letter, minimum northing, north and south latitudes in degrees, and northing
+    // offset.
+    protected static final double[][] LATITUDE_BANDS = {
+        {2, 1100000.0, -72.0, -80.5, 0.0},
+        {3, 2000000.0, -64.0, -72.0, 2000000.0},
+        {4, 2800000.0, -56.0, -64.0, 2000000.0},
+        {5, 3700000.0, -48.0, -56.0, 2000000.0},
+        {6, 4600000.0, -40.0, -48.0, 4000000.0},
+        {7, 5500000.0, -32.0, -40.0, 4000000.0},
+        {9, 6400000.0, -24.0, -32.0, 6000000.0},
+        {10, 7300000.0, -16.0, -24.0, 6000000.0},
+        {11, 8200000.0, -8.0, -16.0, 8000000.0},
+        {12, 9100000.0, 0.0, -8.0, 8000000.0},
+        {13, 0.0, 8.0, 0.0, 0.0},
+        {15, 800000.0, 16.0, 8.0, 0.0},
+        {16, 1700000.0, 24.0, 16.0, 0.0},
+        {17, 2600000.0, 32.0, 24.0, 2000000.0},
+        {18, 3500000.0, 40.0, 32.0, 2000000.0},
+        {19, 4400000.0, 48.0, 40.0, 4000000.0},
+        {20, 5300000.0, 56.0, 48.0, 4000000.0},
+        {21, 6200000.0, 64.0, 56.0, 6000000.0},
+        {22, 7000000.0, 72.0, 64.0, 6000000.0},
+        {23, 7900000.0, 84.5, 72.0, 6000000.0}};
+
+    protected static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    protected interface RangeTask
+    {
+        void run(int start, int end);
+    }
+
+    protected final double a;
+    protected final double f;
+
+    // Transverse Mercator ellipsoid constants.
+    protected final double tmEs;
+    protected final double tmEbs;
+    protected final double tmAp;
+    protected final double tmBp;
+    protected final double tmCp;
+    protected final double tmDp;
+    protected final double tmEp;
+    protected final double tmDeltaEasting;
+    protected final double tmDeltaNorthing;
+
+    // Polar stereographic ellipsoid constants.
+    protected final double polarEs;
+    protected final double polarEsOver2;
+
+    // Polar stereographic projections at the UPS latitude of true scale, configured as UPSCoordConverter configures
+    // them: without a false easting and northing when converting to UPS, and with the UPS false easting and northing
+    // when converting from UPS, which determines the accepted easting and northing range.
+    protected final PolarProjection upsNorthForward;
+    protected final PolarProjection upsSouthForward;
+    protected final PolarProjection upsNorthInverse;
+    protected final PolarProjection upsSouthInverse;
+
+    /**
+     * Creates a converter for a globe's ellipsoid.
+     *
+     * @param globe the globe. May be null, in which case the converter uses the WGS84 ellipsoid.
+     *
+     * @throws IllegalArgumentException if the globe's ellipsoid can't be used for UTM, such as a sphere.
+     */
+    public GridCoordConverter(Globe globe)
+    {
+        this(globe != null ? globe.getEquatorialRadius() : UTMCoordConverter.WGS84_A,
+            globe != null ? (globe.getEquatorialRadius() - globe.getPolarRadius()) / globe.getEquatorialRadius()
+                : UTMCoordConverter.WGS84_F);
+    }
+
+    /**
+     * Creates a converter for an ellipsoid.
+     *
+     * @param a the ellipsoid's semi-major axis, in meters.
+     * @param f the ellipsoid's flattening.
+     *
+     * @throws IllegalArgumentException if the semi-major axis isn't positive or the inverse flattening isn't between
+     *                                  250 and 350.
+     */
+    public GridCoordConverter(double a, double f)
+    {
+        double invF = 1 / f;
+        if (a <= 0 || invF < 250 || invF > 350)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", a + ", " + f);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.a = a;
+        this.f = f;
+
+        // Transverse Mercator constants.
+        this.tmEs = 2 * f - f * f;
+        this.tmEbs = (1 / (1 - this.tmEs)) - 1;
+        double b = a * (1 - f);
+        double tn = (a - b) / (a + b);
+        double tn2 = tn * tn;
+        double tn3 = tn2 * tn;
+        double tn4 = tn3 * tn;
+        double tn5 = tn4 * tn;
+        this.tmAp = a * (1.e0 - tn + 5.e0 * (tn2 - tn3) / 4.e0 + 81.e0 * (tn4 - tn5) / 64.e0);
+        this.tmBp = 3.e0 * a * (tn - tn2 + 7.e0 * (tn3 - tn4) / 8.e0 + 55.e0 * tn5 / 64.e0) / 2.e0;
+        this.tmCp = 15.e0 * a * (tn2 - tn3 + 3.e0 * (tn4 - tn5) / 4.e0) / 16.0;
+        this.tmDp = 35.e0 * a * (tn3 - tn4 + 11.e0 * tn5 / 16.e0) / 48.e0;
+        this.tmEp = 315.e0 * a * (tn4 - tn5) / 512.e0;
+
+        double[] result = new double[2];
+        // The accepted easting and northing range, from the projection of the maximum latitude and longitude with no
+        // false origin.
+        this.tmForward(TM_MAX_LAT, TM_MAX_DELTA_LONG, 0, 0, 0, 0, 1, result, 0);
+        this.tmDeltaNorthing = result[1];
+        this.tmForward(0, TM_MAX_DELTA_LONG, 0, 0, 0, 0, 1, result, 0);
+        this.tmDeltaEasting = result[0];
+
+        // Polar stereographic constants.
+        this.polarEs = Math.sqrt(2 * f - f * f);
+        this.polarEsOver2 = this.polarEs / 2.0;
+
+        this.upsNorthForward = this.createPolarProjection(UPS_ORIGIN_LAT, 0, 0, 0);
+        this.upsSouthForward = this.createPolarProjection(-UPS_ORIGIN_LAT, 0, 0, 0);
+        this.upsNorthInverse = this.createPolarProjection(UPS_ORIGIN_LAT, 0, UPS_FALSE_EASTING, UPS_FALSE_NORTHING);
+        this.upsSouthInverse = this.createPolarProjection(-UPS_ORIGIN_LAT, 0, UPS_FALSE_EASTING, UPS_FALSE_NORTHING);
+    }
+
+    /**
+     * Returns a converter for an ellipsoid. The converter is {@link #WGS84} if the ellipsoid is WGS84, and a new
+     * converter otherwise.
+     *
+     * @param a the ellipsoid's semi-major axis, in meters.
+     * @param f the ellipsoid's flattening.
+     *
+     * @return a converter for the ellipsoid.
+     *
+     * @throws IllegalArgumentException if the semi-major axis isn't positive or the inverse flattening isn't between
+     *                                  250 and 350.
+     */
+    public static GridCoordConverter fromEllipsoid(double a, double f)
+    {
+        return a == WGS84.a && f == WGS84.f ? WGS84 : new GridCoordConverter(a, f);
+    }
+
+    /**
+     * Returns the semi-major axis of this converter's ellipsoid.
+     *
+     * @return the semi-major axis, in meters.
+     */
+    public double getA()
+    {
+        return this.a;
+    }
+
+    /**
+     * Returns the flattening of this converter's ellipsoid.
+     *
+     * @return the flattening.
+     */
+    public double getF()
+    {
+        return this.f;
+    }
+
+    //**************************************************************//
+    //********************  UTM  ***********************************//
+    //**************************************************************//
+
+    /**
+     * Converts a geodetic location to UTM. The UTM hemisphere is {@link #SOUTH} for negative latitudes and {@link
+     * #NORTH} otherwise.
+     *
+     * @param latitude  the latitude, in radians.
+     * @param longitude the longitude, in radians.
+     * @param result    the array in which to store the easting and northing, in meters.
+     * @param offset    the index in the result array at which to store the easting. The northing follows it.
+     *
+     * @return the UTM zone, from 1 to 60, or 0 if the location can't be converted to UTM.
+     */
+    public int geodeticToUTM(double latitude, double longitude, double[] result, int offset)
+    {
+        if ((latitude < UTM_MIN_LAT) || (latitude > UTM_MAX_LAT))
+            return 0;
+        if ((longitude < -PI) || (longitude > (2 * PI)))
+            return 0;
+
+        if (longitude < 0)
+            longitude += (2 * PI) + 1.0e-10;
+        long latDegrees = (long) (latitude * 180.0 / PI);
+        long lonDegrees = (long) (longitude * 180.0 / PI);
+
+        long zone;
+        if (longitude < PI)
+            zone = (long) (31 + ((longitude * 180.0 / PI) / 6.0));
+        else
+            zone = (long) (((longitude * 180.0 / PI) / 6.0) - 29);
+        if (zone > 60)
+            zone = 1;
+
+        // UTM special cases.
+        if ((latDegrees > 55) && (latDegrees < 64) && (lonDegrees > -1) && (lonDegrees < 3))
+            zone = 31;
+        if ((latDegrees > 55) && (latDegrees < 64) && (lonDegrees > 2) && (lonDegrees < 12))
+            zone = 32;
+        if ((latDegrees > 71) && (lonDegrees > -1) && (lonDegrees < 9))
+            zone = 31;
+        if ((latDegrees > 71) && (lonDegrees > 8) && (lonDegrees < 21))
+            zone = 33;
+        if ((latDegrees > 71) && (lonDegrees > 20) && (lonDegrees < 33))
+            zone = 35;
+        if ((latDegrees > 71) && (lonDegrees > 32) && (lonDegrees < 42))
+            zone = 37;
+
+        double falseNorthing = latitude < 0 ? 10000000 : 0;
+        long error = this.tmForward(latitude, longitude, 0, getCentralMeridian(zone), UTM_FALSE_EASTING,
+            falseNorthing, UTM_SCALE, result, offset);
+        if (error != TMCoordConverter.TRANMERC_NO_ERROR && error != TMCoordConverter.TRANMERC_LON_WARNING)
+            return 0;
+
+        double easting = result[offset];
+        double northing = result[offset + 1];
+        if ((easting < UTM_MIN_EASTING) || (easting > UTM_MAX_EASTING))
+            return 0;
+        if ((northing < UTM_MIN_NORTHING) || (northing > UTM_MAX_NORTHING))
+            return 0;
+
+        return (int) zone;
+    }
+
+    /**
+     * Converts a UTM coordinate to a geodetic location.
+     *
+     * @param zone       the UTM zone, from 1 to 60.
+     * @param hemisphere the hemisphere, either {@link #NORTH} or {@link #SOUTH}.
+     * @param easting    the easting, in meters.
+     * @param northing   the northing, in meters.
+     * @param result     the array in which to store the latitude and longitude, in radians.
+     * @param offset     the index in the result array at which to store the latitude. The longitude follows it.
+     *
+     * @return true if the coordinate was converted, otherwise false.
+     */
+    public boolean utmToGeodetic(int zone, int hemisphere, double easting, double northing, double[] result,
+        int offset)
+    {
+        if ((zone < 1) || (zone > 60))
+            return false;
+        if (hemisphere != NORTH && hemisphere != SOUTH)
+            return false;
+        if ((northing < UTM_MIN_NORTHING) || (northing > UTM_MAX_NORTHING))
+            return false;
+
+        double falseNorthing = hemisphere == SOUTH ? 10000000 : 0;
+        long error = this.tmInverse(easting, northing, 0, getCentralMeridian(zone), UTM_FALSE_EASTING, falseNorthing,
+            UTM_SCALE, result, offset);
+        if (error != TMCoordConverter.TRANMERC_NO_ERROR && error != TMCoordConverter.TRANMERC_LON_WARNING)
+            return false;
+
+        double latitude = result[offset];
+        return (latitude >= UTM_MIN_LAT) && (latitude <= UTM_MAX_LAT);
+    }
+
+    protected static double getCentralMeridian(long zone)
+    {
+        if (zone >= 31)
+            return (6 * zone - 183) * PI / 180.0;
+        else
+            return (6 * zone + 177) * PI / 180.0;
+    }
+
+    //**************************************************************//
+    //********************  UPS  ***********************************//
+    //**************************************************************//
+
+    /**
+     * Converts a geodetic location to UPS.
+     *
+     * @param latitude  the latitude, in radians.
+     * @param longitude the longitude, in radians.
+     * @param result    the array in which to store the easting and northing, in meters.
+     * @param offset    the index in the result array at which to store the easting. The northing follows it.
+     *
+     * @return the UPS hemisphere, either {@link #NORTH} or {@link #SOUTH}, or 0 if the location can't be converted to
+     *         UPS.
+     */
+    public int geodeticToUPS(double latitude, double longitude, double[] result, int offset)
+    {
+        if ((latitude < -UPS_MAX_LAT) || (latitude > UPS_MAX_LAT))
+            return 0;
+        if ((latitude < 0) && (latitude > UPS_MIN_SOUTH_LAT))
+            return 0;
+        if ((latitude >= 0) && (latitude < UPS_MIN_NORTH_LAT))
+            return 0;
+        if ((longitude < -PI) || (longitude > (2 * PI)))
+            return 0;
+
+        boolean south = latitude < 0;
+        if (this.polarForward(south ? this.upsSouthForward : this.upsNorthForward, latitude, longitude, result, offset)
+            != PolarCoordConverter.POLAR_NO_ERROR)
+            return 0;
+
+        // UPSCoordConverter negates the polar stereographic northing in the southern hemisphere.
+        result[offset] = UPS_FALSE_EASTING + result[offset];
+        result[offset + 1] = south ? UPS_FALSE_NORTHING - result[offset + 1] : UPS_FALSE_NORTHING + result[offset + 1];
+        return south ? SOUTH : NORTH;
+    }
+
+    /**
+     * Converts a UPS coordinate to a geodetic location.
+     *
+     * @param hemisphere the hemisphere, either {@link #NORTH} or {@link #SOUTH}.
+     * @param easting    the easting, in meters.
+     * @param northing   the northing, in meters.
+     * @param result     the array in which to store the latitude and longitude, in radians.
+     * @param offset     the index in the result array at which to store the latitude. The longitude follows it.
+     *
+     * @return true if the coordinate was converted, otherwise false.
+     */
+    public boolean upsToGeodetic(int hemisphere, double easting, double northing, double[] result, int offset)
+    {
+        if (hemisphere != NORTH && hemisphere != SOUTH)
+            return false;
+        if ((easting < UPS_MIN_EAST_NORTH) || (easting > UPS_MAX_EAST_NORTH))
+            return false;
+        if ((northing < UPS_MIN_EAST_NORTH) || (northing > UPS_MAX_EAST_NORTH))
+            return false;
+
+        if (this.polarInverse(hemisphere == SOUTH ? this.upsSouthInverse : this.upsNorthInverse, easting, northing,
+            result, offset) != PolarCoordConverter.POLAR_NO_ERROR)
+            return false;
+
+        double latitude = result[offset];
+        if ((latitude < 0) && (latitude > UPS_MIN_SOUTH_LAT))
+            return false;
+        if ((latitude >= 0) && (latitude < UPS_MIN_NORTH_LAT))
+            return false;
+
+        return true;
+    }
+
+    //**************************************************************//
+    //********************  MGRS  **********************************//
+    //**************************************************************//
+
+    /**
+     * Converts a geodetic location to an MGRS string, written in the form produced by {@link MGRSCoord}: the zone,
+     * band and square letters, then the easting and northing digits, each preceded by a space. Polar coordinates have
+     * two spaces in place of the zone.
+     *
+     * @param latitude  the latitude, in radians.
+     * @param longitude the longitude, in radians.
+     * @param precision the number of easting and northing digits, from 1 to 5.
+     * @param chars     the array in which to write the string. Must have room for <code>7 + 2 * precision</code>
+     *                  characters, which is at most {@link #MAX_MGRS_LENGTH}.
+     * @param offset    the index in the array at which to write the string.
+     *
+     * @return the number of characters written, or -1 if the location can't be converted.
+     */
+    public int geodeticToMGRS(double latitude, double longitude, int precision, char[] chars, int offset)
+    {
+        return this.geodeticToMGRS(latitude, longitude, precision, chars, offset, new double[2]);
+    }
+
+    protected int geodeticToMGRS(double latitude, double longitude, int precision, char[] chars, int offset,
+        double[] result)
+    {
+        if ((latitude < -PI_OVER_2) || (latitude > PI_OVER_2))
+            return -1;
+        if ((longitude < -PI) || (longitude > (2 * PI)))
+            return -1;
+        // GeoTrans can't write strings without digits, so neither does this converter.
+        if ((precision < 1) || (precision > MGRS_MAX_PRECISION))
+            return -1;
+
+        if ((latitude < MGRS_MIN_UTM_LAT) || (latitude > MGRS_MAX_UTM_LAT))
+        {
+            int hemisphere = this.geodeticToUPS(latitude, longitude, result, 0);
+            if (hemisphere == 0)
+                return -1;
+
+            return upsToMGRS(hemisphere, result[0], result[1], precision, chars, offset);
+        }
+        else
+        {
+            int zone = this.geodeticToUTM(latitude, longitude, result, 0);
+            if (zone == 0)
+                return -1;
+
+            return utmToMGRS(zone, latitude, result[0], result[1], precision, chars, offset);
+        }
+    }
+
+    /**
+     * Converts an MGRS string to a geodetic location. Spaces are ignored and letters may be in either case. Characters
+     * following the northing digits are ignored.
+     *
+     * @param mgrs   the characters containing the string.
+     * @param start  the index of the string's first character.
+     * @param end    the index following the string's last character.
+     * @param result the array in which to store the latitude and longitude, in radians.
+     * @param offset the index in the result array at which to store the latitude. The longitude follows it.
+     *
+     * @return true if the string was converted, otherwise false.
+     *
+     * @throws IllegalArgumentException if the characters are null.
+     */
+    public boolean mgrsToGeodetic(CharSequence mgrs, int start, int end, double[] result, int offset)
+    {
+        if (mgrs == null)
+        {
+            String message = Logging.getMessage("nullValue.StringIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Zone.
+        int i = skipSpaces(mgrs, start, end);
+        int zone = 0;
+        int numDigits = 0;
+        for (char c; i < end && (c = mgrs.charAt(i)) >= '0' && c <= '9'; i = skipSpaces(mgrs, i + 1, end))
+        {
+            zone = 10 * zone + (c - '0');
+            if (++numDigits > 2)
+                return false;
+        }
+        if (numDigits > 0 && (zone < 1 || zone > 60))
+            return false;
+
+        // Latitude band and 100,000 meter square letters.
+        int band = -1;
+        int letter1 = -1;
+        int letter2 = -1;
+        for (int n = 0; n < 4; n++, i = skipSpaces(mgrs, i + 1, end))
+        {
+            int letter = i < end ? getLetter(mgrs.charAt(i)) : -1;
+            if (n == 3)
+            {
+                if (letter >= 0 || (i < end && Character.isLetter(mgrs.charAt(i))))
+                    return false; // More than three letters.
+                break;
+            }
+
+            if (letter < 0 || letter == LETTER_I || letter == LETTER_O)
+                return false;
+
+            if (n == 0)
+                band = letter;
+            else if (n == 1)
+                letter1 = letter;
+            else
+                letter2 = letter;
+        }
+
+        // Easting and northing.
+        long digits = 0;
+        numDigits = 0;
+        for (char c; i < end && (c = mgrs.charAt(i)) >= '0' && c <= '9'; i = skipSpaces(mgrs, i + 1, end))
+        {
+            digits = 10 * digits + (c - '0');
+            if (++numDigits > 10)
+                return false;
+        }
+        if (numDigits % 2 != 0)
+            return false;
+
+        int precision = numDigits / 2;
+        long divisor = 1;
+        for (int n = 0; n < precision; n++)
+        {
+            divisor *= 10;
+        }
+        double multiplier = Math.pow(10.0, 5 - precision);
+        long easting = (long) ((digits / divisor) * multiplier);
+        long northing = (long) ((digits % divisor) * multiplier);
+
+        if (zone > 0)
+            return this.mgrsToUTMGeodetic(zone, band, letter1, letter2, easting, northing, result, offset);
+        else
+            return this.mgrsToUPSGeodetic(band, letter1, letter2, easting, northing, result, offset);
+    }
+
+    protected boolean mgrsToUTMGeodetic(int zone, int band, int letter1, int letter2, double easting,
+        double northing, double[] result, int offset)
+    {
+        if ((band == LETTER_X) && ((zone == 32) || (zone == 34) || (zone == 36)))
+            return false;
+
+        int hemisphere = band < LETTER_N ? SOUTH : NORTH;
+
+        int setNumber = getSetNumber(zone);
+        int ltr2LowValue = getLetter2LowValue(setNumber);
+        int ltr2HighValue = getLetter2HighValue(setNumber);
+        double falseNorthing = getFalseNorthing(setNumber);
+
+        if ((letter1 < ltr2LowValue) || (letter1 > ltr2HighValue) || (letter2 > LETTER_V))
+            return false;
+
+        double gridNorthing = (double) (letter2) * ONEHT;
+        double gridEasting = (double) ((letter1) - ltr2LowValue + 1) * ONEHT;
+        if ((ltr2LowValue == LETTER_J) && (letter1 > LETTER_O))
+            gridEasting = gridEasting - ONEHT;
+        if (letter2 > LETTER_O)
+            gridNorthing = gridNorthing - ONEHT;
+        if (letter2 > LETTER_I)
+            gridNorthing = gridNorthing - ONEHT;
+        if (gridNorthing >= TWOMIL)
+            gridNorthing = gridNorthing - TWOMIL;
+
+        int bandIndex = getLatitudeBandIndex(band);
+        if (bandIndex < 0)
+            return false;
+
+        gridNorthing = gridNorthing - falseNorthing;
+        if (gridNorthing < 0.0)
+            gridNorthing += TWOMIL;
+        gridNorthing += LATITUDE_BANDS[bandIndex][4];
+        if (gridNorthing < LATITUDE_BANDS[bandIndex][1])
+            gridNorthing += TWOMIL;
+
+        // Locations outside the latitude band are accepted, as GeoTrans accepts them with a warning.
+        return this.utmToGeodetic(zone, hemisphere, gridEasting + easting, gridNorthing + northing,
+            result, offset);
+    }
+
+    protected boolean mgrsToUPSGeodetic(int band, int letter1, int letter2, double easting, double northing,
+        double[] result, int offset)
+    {
+        int index;
+        int hemisphere;
+        if (band == LETTER_Y || band == LETTER_Z)
+        {
+            hemisphere = NORTH;
+            index = band - 22;
+        }
+        else if (band == LETTER_A || band == LETTER_B)
+        {
+            hemisphere = SOUTH;
+            index = band;
+        }
+        else
+        {
+            return false;
+        }
+
+        int ltr2LowValue = UPS_CONSTANTS[index][1];
+        int ltr2HighValue = UPS_CONSTANTS[index][2];
+        int ltr3HighValue = UPS_CONSTANTS[index][3];
+        double falseEasting = UPS_CONSTANTS[index][4];
+        double falseNorthing = UPS_CONSTANTS[index][5];
+
+        if ((letter1 < ltr2LowValue) || (letter1 > ltr2HighValue)
+            || ((letter1 == LETTER_D) || (letter1 == LETTER_E) || (letter1 == LETTER_M) || (letter1 == LETTER_N)
+            || (letter1 == LETTER_V) || (letter1 == LETTER_W))
+            || (letter2 > ltr3HighValue))
+            return false;
+
+        double gridNorthing = (double) letter2 * ONEHT + falseNorthing;
+        if (letter2 > LETTER_I)
+            gridNorthing = gridNorthing - ONEHT;
+        if (letter2 > LETTER_O)
+            gridNorthing = gridNorthing - ONEHT;
+
+        double gridEasting = (double) ((letter1) - ltr2LowValue) * ONEHT + falseEasting;
+        if (ltr2LowValue != LETTER_A)
+        {
+            if (letter1 > LETTER_L)
+                gridEasting = gridEasting - 300000.0;
+            if (letter1 > LETTER_U)
+                gridEasting = gridEasting - 200000.0;
+        }
+        else
+        {
+            if (letter1 > LETTER_C)
+                gridEasting = gridEasting - 200000.0;
+            if (letter1 > LETTER_I)
+                gridEasting = gridEasting - ONEHT;
+            if (letter1 > LETTER_L)
+                gridEasting = gridEasting - 300000.0;
+        }
+
+        return this.upsToGeodetic(hemisphere, gridEasting + easting, gridNorthing + northing, result, offset);
+    }
+
+    protected static int upsToMGRS(int hemisphere, double easting, double northing, int precision, char[] chars,
+        int offset)
+    {
+        if ((easting < UPS_MIN_EAST_NORTH) || (easting > UPS_MAX_EAST_NORTH))
+            return -1;
+        if ((northing < UPS_MIN_EAST_NORTH) || (northing > UPS_MAX_EAST_NORTH))
+            return -1;
+
+        double divisor = Math.pow(10.0, (5 - precision));
+        easting = roundMGRS(easting / divisor) * divisor;
+        northing = roundMGRS(northing / divisor) * divisor;
+
+        int letter0;
+        int index;
+        if (hemisphere == NORTH)
+        {
+            letter0 = easting >= TWOMIL ? LETTER_Z : LETTER_Y;
+            index = letter0 - 22;
+        }
+        else
+        {
+            letter0 = easting >= TWOMIL ? LETTER_B : LETTER_A;
+            index = letter0;
+        }
+
+        int ltr2LowValue = UPS_CONSTANTS[index][1];
+        double falseEasting = UPS_CONSTANTS[index][4];
+        double falseNorthing = UPS_CONSTANTS[index][5];
+
+        int letter2 = (int) ((northing - falseNorthing) / ONEHT);
+        if (letter2 > LETTER_H)
+            letter2 = letter2 + 1;
+        if (letter2 > LETTER_N)
+            letter2 = letter2 + 1;
+
+        int letter1 = ltr2LowValue + ((int) ((easting - falseEasting) / ONEHT));
+        if (easting < TWOMIL)
+        {
+            if (letter1 > LETTER_L)
+                letter1 = letter1 + 3;
+            if (letter1 > LETTER_U)
+                letter1 = letter1 + 2;
+        }
+        else
+        {
+            if (letter1 > LETTER_C)
+                letter1 = letter1 + 2;
+            if (letter1 > LETTER_H)
+                letter1 = letter1 + 1;
+            if (letter1 > LETTER_L)
+                letter1 = letter1 + 3;
+        }
+
+        return makeMGRSString(0, letter0, letter1, letter2, easting, northing, precision, chars, offset);
+    }
+
+    protected static int utmToMGRS(int zone, double latitude, double easting, double northing, int precision,
+        char[] chars, int offset)
+    {
+        double divisor = Math.pow(10.0, (5 - precision));
+        easting = roundMGRS(easting / divisor) * divisor;
+        northing = roundMGRS(northing / divisor) * divisor;
+
+        int setNumber = getSetNumber(zone);
+        int ltr2LowValue = getLetter2LowValue(setNumber);
+        double falseNorthing = getFalseNorthing(setNumber);
+
+        int letter0 = getLatitudeLetter(latitude);
+        if (letter0 < 0)
+            return -1;
+
+        double gridNorthing = northing;
+        if (gridNorthing == 1.e7)
+            gridNorthing = gridNorthing - 1.0;
+        while (gridNorthing >= TWOMIL)
+        {
+            gridNorthing = gridNorthing - TWOMIL;
+        }
+        gridNorthing = gridNorthing + falseNorthing;
+        if (gridNorthing >= TWOMIL)
+            gridNorthing = gridNorthing - TWOMIL;
+
+        long letter2 = (long) (gridNorthing / ONEHT);
+        if (letter2 > LETTER_H)
+            letter2 = letter2 + 1;
+        if (letter2 > LETTER_N)
+            letter2 = letter2 + 1;
+
+        double gridEasting = easting;
+        if (((letter0 == LETTER_V) && (zone == 31)) && (gridEasting == 500000.0))
+            gridEasting = gridEasting - 1.0; // Subtract one meter.
+
+        long letter1 = ltr2LowValue + ((long) (gridEasting / ONEHT) - 1);
+        if ((ltr2LowValue == LETTER_J) && (letter1 > LETTER_N))
+            letter1 = letter1 + 1;
+
+        return makeMGRSString(zone, letter0, letter1, letter2, easting, northing, precision, chars, offset);
+    }
+
+    protected static int makeMGRSString(int zone, long letter0, long letter1, long letter2, double easting,
+        double northing, int precision, char[] chars, int offset)
+    {
+        if (letter0 < 0 || letter0 > LETTER_Z || letter1 < 0 || letter1 > LETTER_Z || letter2 < 0
+            || letter2 > LETTER_Z)
+            return -1;
+
+        int i = offset;
+        chars[i++] = zone != 0 ? (char) ('0' + zone / 10) : ' ';
+        chars[i++] = zone != 0 ? (char) ('0' + zone % 10) : ' ';
+        chars[i++] = ALPHABET.charAt((int) letter0);
+        chars[i++] = ALPHABET.charAt((int) letter1);
+        chars[i++] = ALPHABET.charAt((int) letter2);
+
+        double divisor = Math.pow(10.0, (5 - precision));
+
+        easting = easting % 100000.0;
+        if (easting >= 99999.5)
+            easting = 99999.0;
+        chars[i++] = ' ';
+        i = writeDigits((long) (easting / divisor), precision, chars, i);
+
+        northing = northing % 100000.0;
+        if (northing >= 99999.5)
+            northing = 99999.0;
+        chars[i++] = ' ';
+        i = writeDigits((long) (northing / divisor), precision, chars, i);
+
+        return i - offset;
+    }
+
+    protected static int writeDigits(long value, int numDigits, char[] chars, int offset)
+    {
+        for (int i = offset + numDigits - 1; i >= offset; i--)
+        {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+
+        return offset + numDigits;
+    }
+
+    protected static double roundMGRS(double value)
+    {
+        double ivalue = Math.floor(value);
+        double fraction = value - ivalue;
+        long ival = (long) (ivalue);
+        if ((fraction > 0.5) || ((fraction == 0.5) && (ival % 2 == 1)))
+            ival++;
+
+        return (double) ival;
+    }
+
+    protected static int getSetNumber(long zone)
+    {
+        int setNumber = (int) (zone % 6);
+        return setNumber == 0 ? 6 : setNumber;
+    }
+
+    protected static int getLetter2LowValue(int setNumber)
+    {
+        if ((setNumber == 1) || (setNumber == 4))
+            return LETTER_A;
+        else if ((setNumber == 2) || (setNumber == 5))
+            return LETTER_J;
+        else
+            return LETTER_S;
+    }
+
+    protected static int getLetter2HighValue(int setNumber)
+    {
+        if ((setNumber == 1) || (setNumber == 4))
+            return LETTER_H;
+        else if ((setNumber == 2) || (setNumber == 5))
+            return LETTER_R;
+        else
+            return LETTER_Z;
+    }
+
+    protected static double getFalseNorthing(int setNumber)
+    {
+        // The false northing at the second letter A, for the lettering pattern of WGS84 and most other ellipsoids.
+        return (setNumber % 2) == 0 ? 500000.0 : 0.0;
+    }
+
+    protected static int getLatitudeLetter(double latitude)
+    {
+        double latDegrees = latitude * RAD_TO_DEG;
+        if (latDegrees >= 72 && latDegrees < 84.5)
+            return LETTER_X;
+
+        if (latDegrees > -80.5 && latDegrees < 72)
+        {
+            double temp = ((latitude + (80.0 * DEG_TO_RAD)) / (8.0 * DEG_TO_RAD)) + 1.0e-12;
+            return (int) LATITUDE_BANDS[(int) temp][0];
+        }
+
+        return -1;
+    }
+
+    protected static int getLatitudeBandIndex(int letter)
+    {
+        if ((letter >= LETTER_C) && (letter <= LETTER_H))
+            return letter - 2;
+        else if ((letter >= LETTER_J) && (letter <= LETTER_N))
+            return letter - 3;
+        else if ((letter >= LETTER_P) && (letter <= LETTER_X))
+            return letter - 4;
+        else
+            return -1;
+    }
+
+    protected static int getLetter(char c)
+    {
+        if (c >= 'A' && c <= 'Z')
+            return c - 'A';
+        else if (c >= 'a' && c <= 'z')
+            return c - 'a';
+        else
+            return -1;
+    }
+
+    protected static int skipSpaces(CharSequence cs, int i, int end)
+    {
+        while (i < end && cs.charAt(i) == ' ')
+        {
+            i++;
+        }
+
+        return i;
+    }
+
+    //**************************************************************//
+    //********************  Batch Conversions  *********************//
+    //**************************************************************//
+
+    /**
+     * Converts geodetic locations to UTM. Locations that can't be converted have a zone of 0 and an easting and
+     * northing of NaN.
+     *
+     * @param latitudes  the locations' latitudes, in radians.
+     * @param longitudes the locations' longitudes, in radians.
+     * @param zones      the array in which to store the UTM zones.
+     * @param eastings   the array in which to store the eastings, in meters.
+     * @param northings  the array in which to store the northings, in meters.
+     * @param executor   the executor to run the conversion tasks, or null to convert on the current thread.
+     *
+     * @throws IllegalArgumentException if any array is null or shorter than the latitude array.
+     * @throws WWRuntimeException       if a task fails or the current thread is interrupted while waiting for the
+     *                                  tasks.
+     */
+    public void geodeticToUTM(final double[] latitudes, final double[] longitudes, final int[] zones,
+        final double[] eastings, final double[] northings, ExecutorService executor)
+    {
+        int count = checkArrays(latitudes, longitudes, zones, eastings, northings);
+
+        runTasks(count, new RangeTask()
+        {
+            public void run(int start, int end)
+            {
+                double[] result = new double[2];
+                for (int i = start; i < end; i++)
+                {
+                    zones[i] = geodeticToUTM(latitudes[i], longitudes[i], result, 0);
+                    eastings[i] = zones[i] != 0 ? result[0] : Double.NaN;
+                    northings[i] = zones[i] != 0 ? result[1] : Double.NaN;
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Converts UTM coordinates to geodetic locations. Coordinates that can't be converted have a latitude and longitude
+     * of NaN.
+     *
+     * @param zones       the coordinates' UTM zones.
+     * @param hemispheres the coordinates' hemispheres, each either {@link #NORTH} or {@link #SOUTH}.
+     * @param eastings    the coordinates' eastings, in meters.
+     * @param northings   the coordinates' northings, in meters.
+     * @param latitudes   the array in which to store the latitudes, in radians.
+     * @param longitudes  the array in which to store the longitudes, in radians.
+     * @param executor    the executor to run the conversion tasks, or null to convert on the current thread.
+     *
+     * @throws IllegalArgumentException if any array is null or shorter than the zone array.
+     * @throws WWRuntimeException       if a task fails or the current thread is interrupted while waiting for the
+     *                                  tasks.
+     */
+    public void utmToGeodetic(final int[] zones, final int[] hemispheres, final double[] eastings,
+        final double[] northings, final double[] latitudes, final double[] longitudes, ExecutorService executor)
+    {
+        int count = checkArrays(zones, hemispheres, eastings, northings, latitudes, longitudes);
+
+        runTasks(count, new RangeTask()
+        {
+            public void run(int start, int end)
+            {
+                double[] result = new double[2];
+                for (int i = start; i < end; i++)
+                {
+                    boolean converted = utmToGeodetic(zones[i], hemispheres[i], eastings[i], northings[i], result, 0);
+                    latitudes[i] = converted ? result[0] : Double.NaN;
+                    longitudes[i] = converted ? result[1] : Double.NaN;
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Converts geodetic locations to UPS. Locations that can't be converted have a hemisphere of 0 and an easting and
+     * northing of NaN.
+     *
+     * @param latitudes   the locations' latitudes, in radians.
+     * @param longitudes  the locations' longitudes, in radians.
+     * @param hemispheres the array in which to store the hemispheres.
+     * @param eastings    the array in which to store the eastings, in meters.
+     * @param northings   the array in which to store the northings, in meters.
+     * @param executor    the executor to run the conversion tasks, or null to convert on the current thread.
+     *
+     * @throws IllegalArgumentException if any array is null or shorter than the latitude array.
+     * @throws WWRuntimeException       if a task fails or the current thread is interrupted while waiting for the
+     *                                  tasks.
+     */
+    public void geodeticToUPS(final double[] latitudes, final double[] longitudes, final int[] hemispheres,
+        final double[] eastings, final double[] northings, ExecutorService executor)
+    {
+        int count = checkArrays(latitudes, longitudes, hemispheres, eastings, northings);
+
+        runTasks(count, new RangeTask()
+        {
+            public void run(int start, int end)
+            {
+                double[] result = new double[2];
+                for (int i = start; i < end; i++)
+                {
+                    hemispheres[i] = geodeticToUPS(latitudes[i], longitudes[i], result, 0);
+                    eastings[i] = hemispheres[i] != 0 ? result[0] : Double.NaN;
+                    northings[i] = hemispheres[i] != 0 ? result[1] : Double.NaN;
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Converts UPS coordinates to geodetic locations. Coordinates that can't be converted have a latitude and longitude
+     * of NaN.
+     *
+     * @param hemispheres the coordinates' hemispheres, each either {@link #NORTH} or {@link #SOUTH}.
+     * @param eastings    the coordinates' eastings, in meters.
+     * @param northings   the coordinates' northings, in meters.
+     * @param latitudes   the array in which to store the latitudes, in radians.
+     * @param longitudes  the array in which to store the longitudes, in radians.
+     * @param executor    the executor to run the conversion tasks, or null to convert on the current thread.
+     *
+     * @throws IllegalArgumentException if any array is null or shorter than the hemisphere array.
+     * @throws WWRuntimeException       if a task fails or the current thread is interrupted while waiting for the
+     *                                  tasks.
+     */
+    public void upsToGeodetic(final int[] hemispheres, final double[] eastings, final double[] northings,
+        final double[] latitudes, final double[] longitudes, ExecutorService executor)
+    {
+        int count = checkArrays(hemispheres, eastings, northings, latitudes, longitudes);
+
+        runTasks(count, new RangeTask()
+        {
+            public void run(int start, int end)
+            {
+                double[] result = new double[2];
+                for (int i = start; i < end; i++)
+                {
+                    boolean converted = upsToGeodetic(hemispheres[i], eastings[i], northings[i], result, 0);
+                    latitudes[i] = converted ? result[0] : Double.NaN;
+                    longitudes[i] = converted ? result[1] : Double.NaN;
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Converts geodetic locations to MGRS strings. The string for location <code>i</code> is written at index <code>i
+     * * MAX_MGRS_LENGTH</code> of the character array, and its length is stored in the length array. Locations that
+     * can't be converted have a length of -1.
+     *
+     * @param latitudes  the locations' latitudes, in radians.
+     * @param longitudes the locations' longitudes, in radians.
+     * @param precision  the number of easting and northing digits, from 1 to 5.
+     * @param chars      the array in which to write the strings. Must have room for {@link #MAX_MGRS_LENGTH}
+     *                   characters per location.
+     * @param lengths    the array in which to store the strings' lengths.
+     * @param executor   the executor to run the conversion tasks, or null to convert on the current thread.
+     *
+     * @throws IllegalArgumentException if any array is null or too short.
+     * @throws WWRuntimeException       if a task fails or the current thread is interrupted while waiting for the
+     *                                  tasks.
+     */
+    public void geodeticToMGRS(final double[] latitudes, final double[] longitudes, final int precision,
+        final char[] chars, final int[] lengths, ExecutorService executor)
+    {
+        int count = checkArrays(latitudes, longitudes, lengths, chars);
+        checkLength(count * MAX_MGRS_LENGTH, chars.length);
+
+        runTasks(count, new RangeTask()
+        {
+            public void run(int start, int end)
+            {
+                double[] result = new double[2];
+                for (int i = start; i < end; i++)
+                {
+                    lengths[i] = geodeticToMGRS(latitudes[i], longitudes[i], precision, chars, i * MAX_MGRS_LENGTH,
+                        result);
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Converts MGRS strings to geodetic locations. The string for location <code>i</code> is read from index
+     * <code>i * MAX_MGRS_LENGTH</code> of the character array, with the length in the length array, as written by
+     * {@link #geodeticToMGRS(double[], double[], int, char[], int[], java.util.concurrent.ExecutorService)}. Strings
+     * that can't be converted, including those with a negative length, have a latitude and longitude of NaN.
+     *
+     * @param chars      the strings.
+     * @param lengths    the strings' lengths, each at most {@link #MAX_MGRS_LENGTH}.
+     * @param latitudes  the array in which to store the latitudes, in radians.
+     * @param longitudes the array in which to store the longitudes, in radians.
+     * @param executor   the executor to run the conversion tasks, or null to convert on the current thread.
+     *
+     * @throws IllegalArgumentException if any array is null or too short.
+     * @throws WWRuntimeException       if a task fails or the current thread is interrupted while waiting for the
+     *                                  tasks.
+     */
+    public void mgrsToGeodetic(char[] chars, final int[] lengths, final double[] latitudes,
+        final double[] longitudes, ExecutorService executor)
+    {
+        int count = checkArrays(lengths, latitudes, longitudes, chars);
+        checkLength(count * MAX_MGRS_LENGTH, chars.length);
+
+        final CharSequence sequence = java.nio.CharBuffer.wrap(chars);
+        runTasks(count, new RangeTask()
+        {
+            public void run(int start, int end)
+            {
+                double[] result = new double[2];
+                for (int i = start; i < end; i++)
+                {
+                    int offset = i * MAX_MGRS_LENGTH;
+                    boolean converted = lengths[i] >= 0 && lengths[i] <= MAX_MGRS_LENGTH
+                        && mgrsToGeodetic(sequence, offset, offset + lengths[i], result, 0);
+                    latitudes[i] = converted ? result[0] : Double.NaN;
+                    longitudes[i] = converted ? result[1] : Double.NaN;
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Checks the arrays passed to a batch conversion.
+     *
+     * @param arrays the arrays. The first determines the number of coordinates.
+     *
+     * @return the number of coordinates.
+     *
+     * @throws IllegalArgumentException if any array is null, or if any array but the last is shorter than the first.
+     */
+    protected static int checkArrays(Object... arrays)
+    {
+        for (Object array : arrays)
+        {
+            if (array == null)
+            {
+                String message = Logging.getMessage("nullValue.ArrayIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+        }
+
+        int count = java.lang.reflect.Array.getLength(arrays[0]);
+        for (int i = 1; i < arrays.length; i++)
+        {
+            if (!(arrays[i] instanceof char[]))
+                checkLength(count, java.lang.reflect.Array.getLength(arrays[i]));
+        }
+
+        return count;
+    }
+
+    protected static void checkLength(int required, int length)
+    {
+        if (length < required)
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength", length);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    /**
+     * Runs a task over a range of coordinates, dividing the range among tasks run by an executor when there are enough
+     * coordinates. Returns after all the coordinates are converted.
+     *
+     * @param count    the number of coordinates.
+     * @param task     the task.
+     * @param executor the executor, or null to run the task on the current thread.
+     *
+     * @throws WWRuntimeException if a task fails or the current thread is interrupted while waiting for the tasks.
+     */
+    protected static void runTasks(int count, final RangeTask task, ExecutorService executor)
+    {
+        if (executor == null || count <= MIN_COORDS_PER_TASK)
+        {
+            task.run(0, count);
+            return;
+        }
+
+        int numTasks = Math.min(4 * Runtime.getRuntime().availableProcessors(),
+            (count + MIN_COORDS_PER_TASK - 1) / MIN_COORDS_PER_TASK);
+        int taskSize = (count + numTasks - 1) / numTasks;
+
+        List<Future<?>> futures = new ArrayList<Future<?>>(numTasks);
+        for (int start = 0; start < count; start += taskSize)
+        {
+            final int taskStart = start;
+            final int taskEnd = Math.min(start + taskSize, count);
+
+            futures.add(executor.submit(new Runnable()
+            {
+                public void run()
+                {
+                    task.run(taskStart, taskEnd);
+                }
+            }));
+        }
+
+        try
+        {
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new WWRuntimeException(e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new WWRuntimeException(e.getCause());
+        }
+    }
+
+    //**************************************************************//
+    //**************************************************************//
+    //********************  Projections  ***************************//
+    //**************************************************************//
+
+    /**
+     * Computes the Transverse Mercator easting and northing of a location. {@link TMCoordConverter} delegates to this
+     * method.
+     *
+     * @param latitude        the latitude, in radians.
+     * @param longitude       the longitude, in radians.
+     * @param originLatitude  the latitude of the projection's origin, in radians.
+     * @param centralMeridian the longitude of the projection's central meridian, in radians.
+     * @param falseEasting    the easting of the projection's origin, in meters.
+     * @param falseNorthing   the northing of the projection's origin, in meters.
+     * @param scale           the projection's scale factor.
+     * @param result          the array in which to store the easting and northing, in meters.
+     * @param offset          the index in the result array at which to store the easting. The northing follows it.
+     *
+     * @return the {@link TMCoordConverter} error code. The easting and northing are stored if the code is no error or
+     *         the longitude warning alone.
+     */
+    protected long tmForward(double latitude, double longitude, double originLatitude, double centralMeridian,
+        double falseEasting, double falseNorthing, double scale, double[] result, int offset)
+    {
+        if (centralMeridian > PI)
+            centralMeridian -= (2 * PI);
+
+        long error = TMCoordConverter.TRANMERC_NO_ERROR;
+        if ((latitude < -TM_MAX_LAT) || (latitude > TM_MAX_LAT))
+            error |= TMCoordConverter.TRANMERC_LAT_ERROR;
+        if (longitude > PI)
+            longitude -= (2 * PI);
+        if ((longitude < (centralMeridian - TM_MAX_DELTA_LONG)) || (longitude > (centralMeridian + TM_MAX_DELTA_LONG)))
+        {
+            double tempLong = longitude < 0 ? longitude + 2 * PI : longitude;
+            double tempOrigin = centralMeridian < 0 ? centralMeridian + 2 * PI : centralMeridian;
+            if ((tempLong < (tempOrigin - TM_MAX_DELTA_LONG)) || (tempLong > (tempOrigin + TM_MAX_DELTA_LONG)))
+                error |= TMCoordConverter.TRANMERC_LON_ERROR;
+        }
+        if (error != TMCoordConverter.TRANMERC_NO_ERROR)
+            return error;
+
+        double dlam = longitude - centralMeridian;
+
+        // Distortion results if the longitude is more than 9 degrees from the central meridian.
+        if (Math.abs(dlam) > (9.0 * PI / 180))
+            error |= TMCoordConverter.TRANMERC_LON_WARNING;
+
+        if (dlam > PI)
+            dlam -= (2 * PI);
+        if (dlam < -PI)
+            dlam += (2 * PI);
+        if (Math.abs(dlam) < 2.e-10)
+            dlam = 0.0;
+
+        double s = Math.sin(latitude);
+        double c = Math.cos(latitude);
+        double c2 = c * c;
+        double c3 = c2 * c;
+        double c5 = c3 * c2;
+        double c7 = c5 * c2;
+        double t = Math.tan(latitude);
+        double tan2 = t * t;
+        double tan3 = tan2 * t;
+        double tan4 = tan3 * t;
+        double tan5 = tan4 * t;
+        double tan6 = tan5 * t;
+        double eta = this.tmEbs * c2;
+        double eta2 = eta * eta;
+        double eta3 = eta2 * eta;
+        double eta4 = eta3 * eta;
+
+        // Radius of curvature in the prime vertical.
+        double sn = this.a / Math.sqrt(1 - this.tmEs * Math.pow(Math.sin(latitude), 2));
+
+        // True meridional distances.
+        double tmd = this.computeMeridionalDistance(latitude);
+        double tmdo = this.computeMeridionalDistance(originLatitude);
+
+        // Northing.
+        double t1 = (tmd - tmdo) * scale;
+        double t2 = sn * s * c * scale / 2.e0;
+        double t3 = sn * s * c3 * scale * (5.e0 - tan2 + 9.e0 * eta + 4.e0 * eta2) / 24.e0;
+        double t4 = sn * s * c5 * scale * (61.e0 - 58.e0 * tan2
+            + tan4 + 270.e0 * eta - 330.e0 * tan2 * eta + 445.e0 * eta2
+            + 324.e0 * eta3 - 680.e0 * tan2 * eta2 + 88.e0 * eta4
+            - 600.e0 * tan2 * eta3 - 192.e0 * tan2 * eta4) / 720.e0;
+        double t5 = sn * s * c7 * scale * (1385.e0 - 3111.e0 * tan2 + 543.e0 * tan4 - tan6) / 40320.e0;
+
+        result[offset + 1] = falseNorthing + t1 + Math.pow(dlam, 2.e0) * t2
+            + Math.pow(dlam, 4.e0) * t3 + Math.pow(dlam, 6.e0) * t4
+            + Math.pow(dlam, 8.e0) * t5;
+
+        // Easting.
+        double t6 = sn * c * scale;
+        double t7 = sn * c3 * scale * (1.e0 - tan2 + eta) / 6.e0;
+        double t8 = sn * c5 * scale * (5.e0 - 18.e0 * tan2 + tan4
+            + 14.e0 * eta - 58.e0 * tan2 * eta + 13.e0 * eta2 + 4.e0 * eta3
+            - 64.e0 * tan2 * eta2 - 24.e0 * tan2 * eta3) / 120.e0;
+        double t9 = sn * c7 * scale * (61.e0 - 479.e0 * tan2 + 179.e0 * tan4 - tan6) / 5040.e0;
+
+        result[offset] = falseEasting + dlam * t6 + Math.pow(dlam, 3.e0) * t7
+            + Math.pow(dlam, 5.e0) * t8 + Math.pow(dlam, 7.e0) * t9;
+
+        return error;
+    }
+
+    /**
+     * Computes the location of a Transverse Mercator easting and northing. {@link TMCoordConverter} delegates to this
+     * method.
+     *
+     * @param easting         the easting, in meters.
+     * @param northing        the northing, in meters.
+     * @param originLatitude  the latitude of the projection's origin, in radians.
+     * @param centralMeridian the longitude of the projection's central meridian, in radians.
+     * @param falseEasting    the easting of the projection's origin, in meters.
+     * @param falseNorthing   the northing of the projection's origin, in meters.
+     * @param scale           the projection's scale factor.
+     * @param result          the array in which to store the latitude and longitude, in radians.
+     * @param offset          the index in the result array at which to store the latitude. The longitude follows it.
+     *
+     * @return the {@link TMCoordConverter} error code. The latitude and longitude are stored unless the easting or
+     *         northing is outside the projection's range, including when the computed location is invalid.
+     */
+    protected long tmInverse(double easting, double northing, double originLatitude, double centralMeridian,
+        double falseEasting, double falseNorthing, double scale, double[] result, int offset)
+    {
+        if (centralMeridian > PI)
+            centralMeridian -= (2 * PI);
+
+        long error = TMCoordConverter.TRANMERC_NO_ERROR;
+        if ((easting < (falseEasting - this.tmDeltaEasting)) || (easting > (falseEasting + this.tmDeltaEasting)))
+            error |= TMCoordConverter.TRANMERC_EASTING_ERROR;
+        if ((northing < (falseNorthing - this.tmDeltaNorthing)) || (northing > (falseNorthing + this.tmDeltaNorthing)))
+            error |= TMCoordConverter.TRANMERC_NORTHING_ERROR;
+        if (error != TMCoordConverter.TRANMERC_NO_ERROR)
+            return error;
+
+        double tmdo = this.computeMeridionalDistance(originLatitude);
+        double tmd = tmdo + (northing - falseNorthing) / scale;
+
+        // First estimate.
+        double sr = this.a * (1.e0 - this.tmEs) / Math.pow(Math.sqrt(1.e0 - this.tmEs * Math.pow(Math.sin(0.e0), 2)),
+            3);
+        double ftphi = tmd / sr;
+
+        for (int i = 0; i < 5; i++)
+        {
+            double t10 = this.computeMeridionalDistance(ftphi);
+            sr = this.a * (1.e0 - this.tmEs) / Math.pow(Math.sqrt(1.e0 - this.tmEs * Math.pow(Math.sin(ftphi), 2)),
+                3);
+            ftphi = ftphi + (tmd - t10) / sr;
+        }
+
+        // Radii of curvature in the meridian and the prime vertical.
+        sr = this.a * (1.e0 - this.tmEs) / Math.pow(Math.sqrt(1.e0 - this.tmEs * Math.pow(Math.sin(ftphi), 2)), 3);
+        double sn = this.a / Math.sqrt(1.e0 - this.tmEs * Math.pow(Math.sin(ftphi), 2));
+
+        double c = Math.cos(ftphi);
+        double t = Math.tan(ftphi);
+        double tan2 = t * t;
+        double tan4 = tan2 * tan2;
+        double eta = this.tmEbs * Math.pow(c, 2);
+        double eta2 = eta * eta;
+        double eta3 = eta2 * eta;
+        double eta4 = eta3 * eta;
+        double de = easting - falseEasting;
+        if (Math.abs(de) < 0.0001)
+            de = 0.0;
+
+        // Latitude.
+        double t10 = t / (2.e0 * sr * sn * Math.pow(scale, 2));
+        double t11 = t * (5.e0 + 3.e0 * tan2 + eta - 4.e0 * Math.pow(eta, 2)
+            - 9.e0 * tan2 * eta) / (24.e0 * sr * Math.pow(sn, 3)
+            * Math.pow(scale, 4));
+        double t12 = t * (61.e0 + 90.e0 * tan2 + 46.e0 * eta + 45.E0 * tan4
+            - 252.e0 * tan2 * eta - 3.e0 * eta2 + 100.e0
+            * eta3 - 66.e0 * tan2 * eta2 - 90.e0 * tan4
+            * eta + 88.e0 * eta4 + 225.e0 * tan4 * eta2
+            + 84.e0 * tan2 * eta3 - 192.e0 * tan2 * eta4)
+            / (720.e0 * sr * Math.pow(sn, 5) * Math.pow(scale, 6));
+        double t13 = t * (1385.e0 + 3633.e0 * tan2 + 4095.e0 * tan4 + 1575.e0
+            * Math.pow(t, 6)) / (40320.e0 * sr * Math.pow(sn, 7) * Math.pow(scale, 8));
+        double latitude = ftphi - Math.pow(de, 2) * t10 + Math.pow(de, 4) * t11 - Math.pow(de, 6) * t12
+            + Math.pow(de, 8) * t13;
+
+        double t14 = 1.e0 / (sn * c * scale);
+        double t15 = (1.e0 + 2.e0 * tan2 + eta) / (6.e0 * Math.pow(sn, 3) * c * Math.pow(scale, 3));
+        double t16 = (5.e0 + 6.e0 * eta + 28.e0 * tan2 - 3.e0 * eta2
+            + 8.e0 * tan2 * eta + 24.e0 * tan4 - 4.e0
+            * eta3 + 4.e0 * tan2 * eta2 + 24.e0
+            * tan2 * eta3) / (120.e0 * Math.pow(sn, 5) * c
+            * Math.pow(scale, 5));
+        double t17 = (61.e0 + 662.e0 * tan2 + 1320.e0 * tan4 + 720.e0
+            * Math.pow(t, 6)) / (5040.e0 * Math.pow(sn, 7) * c
+            * Math.pow(scale, 7));
+
+        // Longitude.
+        double dlam = de * t14 - Math.pow(de, 3) * t15 + Math.pow(de, 5) * t16 - Math.pow(de, 7) * t17;
+        double longitude = centralMeridian + dlam;
+
+        if (Math.abs(latitude) > (90.0 * PI / 180.0))
+            error |= TMCoordConverter.TRANMERC_NORTHING_ERROR;
+
+        if ((longitude) > (PI))
+        {
+            longitude -= (2 * PI);
+            if (Math.abs(longitude) > PI)
+                error |= TMCoordConverter.TRANMERC_EASTING_ERROR;
+        }
+
+        // Distortion results if the longitude is more than 9 degrees from the central meridian at the equator, and
+        // becomes more significant towards the poles.
+        if (Math.abs(dlam) > (9.0 * PI / 180) * Math.cos(latitude))
+            error |= TMCoordConverter.TRANMERC_LON_WARNING;
+        if (latitude > 1.0e10)
+            error |= TMCoordConverter.TRANMERC_LON_WARNING;
+
+        result[offset] = latitude;
+        result[offset + 1] = longitude;
+        return error;
+    }
+
+    protected double computeMeridionalDistance(double latitude)
+    {
+        return this.tmAp * latitude
+            - this.tmBp * Math.sin(2.0 * latitude)
+            + this.tmCp * Math.sin(4.0 * latitude)
+            - this.tmDp * Math.sin(6.0 * latitude)
+            + this.tmEp * Math.sin(8.0 * latitude);
+    }
+
+    /**
+     * The parameters of a polar stereographic projection on a converter's ellipsoid. Projections are created by {@link
+     * GridCoordConverter#createPolarProjection(double, double, double, double)} and are immutable.
+     */
+    protected static class PolarProjection
+    {
+        /** Indicates whether the projection is of the southern hemisphere. */
+        protected final boolean south;
+        /** The longitude down from the pole, in radians, negated in the southern hemisphere. */
+        protected final double originLongitude;
+        protected final double falseEasting;
+        protected final double falseNorthing;
+        /** A location's distance from the pole is <code>rhoNumerator * t / rhoDenominator</code>. */
+        protected final double rhoNumerator;
+        protected final double rhoDenominator;
+        /** The maximum distance of an easting or northing from the false easting or northing. */
+        protected final double delta;
+
+        protected PolarProjection(GridCoordConverter converter, boolean south, double originLongitude,
+            double falseEasting, double falseNorthing, double rhoNumerator, double rhoDenominator)
+        {
+            this.south = south;
+            this.originLongitude = originLongitude;
+            this.falseEasting = falseEasting;
+            this.falseNorthing = falseNorthing;
+            this.rhoNumerator = rhoNumerator;
+            this.rhoDenominator = rhoDenominator;
+
+            // The accepted easting and northing range, from the northing of the equator as GeoTrans computes it.
+            double[] result = new double[2];
+            converter.polarForward(this, 0, originLongitude, result, 0);
+            this.delta = Math.abs(result[1] * 2) + 1.0e-2;
+        }
+    }
+
+    /**
+     * Creates a polar stereographic projection on this converter's ellipsoid. The projection is of the southern
+     * hemisphere if the latitude of true scale is negative. {@link PolarCoordConverter} delegates to this method.
+     *
+     * @param latitudeOfTrueScale   the latitude of true scale, in radians.
+     * @param longitudeDownFromPole the longitude down from the pole, in radians.
+     * @param falseEasting          the easting of the pole, in meters.
+     * @param falseNorthing         the northing of the pole, in meters.
+     *
+     * @return the projection, which may be used only with this converter.
+     */
+    protected PolarProjection createPolarProjection(double latitudeOfTrueScale, double longitudeDownFromPole,
+        double falseEasting, double falseNorthing)
+    {
+        if (longitudeDownFromPole > PI)
+            longitudeDownFromPole -= TWO_PI;
+
+        boolean south = latitudeOfTrueScale < 0;
+        double originLatitude = south ? -latitudeOfTrueScale : latitudeOfTrueScale;
+        double originLongitude = south ? -longitudeDownFromPole : longitudeDownFromPole;
+
+        if (Math.abs(Math.abs(originLatitude) - PI_OVER_2) > 1.0e-10)
+        {
+            double slat = Math.sin(originLatitude);
+            double essin = this.polarEs * slat;
+            double powEs = Math.pow((1.0 - essin) / (1.0 + essin), this.polarEsOver2);
+            double clat = Math.cos(originLatitude);
+            double mc = clat / Math.sqrt(1.0 - essin * essin);
+            double tc = Math.tan(PI_OVER_4 - originLatitude / 2.0) / powEs;
+            return new PolarProjection(this, south, originLongitude, falseEasting, falseNorthing, this.a * mc, tc);
+        }
+        else
+        {
+            double onePlusEs = 1.0 + this.polarEs;
+            double oneMinusEs = 1.0 - this.polarEs;
+            double e4 = Math.sqrt(Math.pow(onePlusEs, onePlusEs) * Math.pow(oneMinusEs, oneMinusEs));
+            return new PolarProjection(this, south, originLongitude, falseEasting, falseNorthing, 2.0 * this.a, e4);
+        }
+    }
+
+    /**
+     * Computes the polar stereographic easting and northing of a location. {@link PolarCoordConverter} delegates to
+     * this method.
+     *
+     * @param projection the projection, created by this converter.
+     * @param latitude   the latitude, in radians.
+     * @param longitude  the longitude, in radians.
+     * @param result     the array in which to store the easting and northing, in meters.
+     * @param offset     the index in the result array at which to store the easting. The northing follows it.
+     *
+     * @return the {@link PolarCoordConverter} error code. The easting and northing are stored if the code is no
+     *         error.
+     */
+    protected long polarForward(PolarProjection projection, double latitude, double longitude, double[] result,
+        int offset)
+    {
+        long error = PolarCoordConverter.POLAR_NO_ERROR;
+        if ((latitude < -PI_OVER_2) || (latitude > PI_OVER_2))
+            error |= PolarCoordConverter.POLAR_LAT_ERROR;
+        if ((latitude < 0) && !projection.south)
+            error |= PolarCoordConverter.POLAR_LAT_ERROR;
+        if ((latitude > 0) && projection.south)
+            error |= PolarCoordConverter.POLAR_LAT_ERROR;
+        if ((longitude < -PI) || (longitude > TWO_PI))
+            error |= PolarCoordConverter.POLAR_LON_ERROR;
+        if (error != PolarCoordConverter.POLAR_NO_ERROR)
+            return error;
+
+        if (Math.abs(Math.abs(latitude) - PI_OVER_2) < 1.0e-10)
+        {
+            result[offset] = 0.0;
+            result[offset + 1] = 0.0;
+            return error;
+        }
+
+        if (projection.south)
+        {
+            longitude *= -1.0;
+            latitude *= -1.0;
+        }
+
+        double dlam = longitude - projection.originLongitude;
+        if (dlam > PI)
+            dlam -= TWO_PI;
+        if (dlam < -PI)
+            dlam += TWO_PI;
+
+        double slat = Math.sin(latitude);
+        double essin = this.polarEs * slat;
+        double powEs = Math.pow((1.0 - essin) / (1.0 + essin), this.polarEsOver2);
+        double t = Math.tan(PI_OVER_4 - latitude / 2.0) / powEs;
+        double rho = projection.rhoNumerator * t / projection.rhoDenominator;
+
+        // GeoTrans computes the northing the same way in both hemispheres.
+        result[offset] = projection.south ? -(rho * Math.sin(dlam) - projection.falseEasting)
+            : rho * Math.sin(dlam) + projection.falseEasting;
+        result[offset + 1] = -rho * Math.cos(dlam) + projection.falseNorthing;
+        return error;
+    }
+
+    /**
+     * Computes the location of a polar stereographic easting and northing. {@link PolarCoordConverter} delegates to
+     * this method.
+     *
+     * @param projection the projection, created by this converter.
+     * @param easting    the easting, in meters.
+     * @param northing   the northing, in meters.
+     * @param result     the array in which to store the latitude and longitude, in radians.
+     * @param offset     the index in the result array at which to store the latitude. The longitude follows it.
+     *
+     * @return the {@link PolarCoordConverter} error code. The latitude and longitude are stored if the code is no
+     *         error.
+     */
+    protected long polarInverse(PolarProjection projection, double easting, double northing, double[] result,
+        int offset)
+    {
+        long error = PolarCoordConverter.POLAR_NO_ERROR;
+        double delta = projection.delta;
+        if (easting > projection.falseEasting + delta || easting < projection.falseEasting - delta)
+            error |= PolarCoordConverter.POLAR_EASTING_ERROR;
+        if (northing > projection.falseNorthing + delta || northing < projection.falseNorthing - delta)
+            error |= PolarCoordConverter.POLAR_NORTHING_ERROR;
+        if (error != PolarCoordConverter.POLAR_NO_ERROR)
+            return error;
+
+        double dy = northing - projection.falseNorthing;
+        double dx = easting - projection.falseEasting;
+        double rho = Math.sqrt(dx * dx + dy * dy);
+        if (rho > Math.sqrt(delta * delta + delta * delta))
+            return PolarCoordConverter.POLAR_RADIUS_ERROR;
+
+        double latitude;
+        double longitude;
+        if ((dy == 0.0) && (dx == 0.0))
+        {
+            latitude = PI_OVER_2;
+            longitude = projection.originLongitude;
+        }
+        else
+        {
+            if (projection.south)
+            {
+                dy *= -1.0;
+                dx *= -1.0;
+            }
+
+            double t = rho * projection.rhoDenominator / projection.rhoNumerator;
+            double phi = PI_OVER_2 - 2.0 * Math.atan(t);
+            double tempPhi = 0.0;
+            while (Math.abs(phi - tempPhi) > 1.0e-10)
+            {
+                tempPhi = phi;
+                double essin = this.polarEs * Math.sin(phi);
+                double powEs = Math.pow((1.0 - essin) / (1.0 + essin), this.polarEsOver2);
+                phi = PI_OVER_2 - 2.0 * Math.atan(t * powEs);
+            }
+            latitude = phi;
+            longitude = projection.originLongitude + Math.atan2(dx, -dy);
+
+            if (longitude > PI)
+                longitude -= TWO_PI;
+            else if (longitude < -PI)
+                longitude += TWO_PI;
+
+            // Force distorted values to 90 and 180 degrees.
+            if (latitude > PI_OVER_2)
+                latitude = PI_OVER_2;
+            else if (latitude < -PI_OVER_2)
+                latitude = -PI_OVER_2;
+
+            if (longitude > PI)
+                longitude = PI;
+            else if (longitude < -PI)
+                longitude = -PI;
+        }
+
+        if (projection.south)
+        {
+            latitude *= -1.0;
+            longitude *= -1.0;
+        }
+
+        result[offset] = latitude;
+        result[offset + 1] = longitude;
+        return error;
+    }
+}
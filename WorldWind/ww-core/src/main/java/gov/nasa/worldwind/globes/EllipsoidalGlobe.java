@@ -448,10 +448,23 @@ public class EllipsoidalGlobe extends WWObjectImpl implements Globe
 
         if (this.egm96 != null)
         {
-            for (int i = 0; i < elevations.length; i++)
+            // Compute the offsets for all locations in a single bulk operation.
+            int count = Math.min(elevations.length, latlons.size());
+            double[] lats = new double[count];
+            double[] lons = new double[count];
+            for (int i = 0; i < count; i++)
             {
                 LatLon latLon = latlons.get(i);
-                elevations[i] = elevations[i] + this.egm96.getOffset(latLon.getLatitude(), latLon.getLongitude());
+                lats[i] = latLon.getLatitude().degrees;
+                lons[i] = latLon.getLongitude().degrees;
+            }
+
+            double[] offsets = new double[count];
+            this.egm96.getOffsets(lats, lons, offsets);
+
+            for (int i = 0; i < count; i++)
+            {
+                elevations[i] += offsets[i];
             }
         }
 
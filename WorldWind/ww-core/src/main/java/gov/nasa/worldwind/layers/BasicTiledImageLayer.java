@@ -8,7 +8,7 @@ package gov.nasa.worldwind.layers;
 import com.jogamp.opengl.util.texture.*;
 import gov.nasa.worldwind.*;
 import gov.nasa.worldwind.avlist.*;
-import gov.nasa.worldwind.cache.FileStore;
+import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.event.BulkRetrievalListener;
 import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.formats.dds.*;
@@ -19,10 +19,12 @@ import gov.nasa.worldwind.retrieve.*;
 import gov.nasa.worldwind.util.*;
 import org.w3c.dom.*;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.*;
-import java.net.URL;
+import java.net.*;
 import java.nio.ByteBuffer;
 import java.util.Map;
 
@@ -33,6 +35,8 @@ import java.util.Map;
 public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetrievable
 {
     protected final Object fileLock = new Object();
+    protected TilePack tilePack;
+    protected boolean tilePackResolved;
 
     // Layer resource properties.
     protected static final int RESOURCE_ID_OGC_CAPABILITIES = 1;
@@ -201,6 +205,9 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
 
     protected void forceTextureLoad(TextureTile tile)
     {
+        if (this.loadTextureFromTilePack(tile))
+            return;
+
         final URL textureURL = this.getDataFileStore().findFile(tile.getPath(), true);
 
         if (textureURL != null && !this.isTextureFileExpired(tile, textureURL, this.getDataFileStore()))
@@ -241,6 +248,13 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
             if (Thread.currentThread().isInterrupted())
                 return; // the task was cancelled because it's a duplicate or for some other reason
 
+            if (this.layer.loadTextureFromTilePack(this.tile))
+            {
+                layer.getLevels().unmarkResourceAbsent(this.tile);
+                this.layer.firePropertyChange(AVKey.LAYER, null, this);
+                return;
+            }
+
             final java.net.URL textureURL = this.layer.getDataFileStore().findFile(tile.getPath(), false);
             if (textureURL != null && !this.layer.isTextureFileExpired(tile, textureURL, this.layer.getDataFileStore()))
             {
@@ -317,6 +331,136 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         return true;
     }
 
+    /**
+     * Returns the tile pack holding this layer's tiles in its data file store, if there is one. The file store is
+     * searched for a pack the first time this method is called; a pack created later is found when the layer is next
+     * created.
+     *
+     * @return this layer's tile pack, or null if its tiles are stored in individual files.
+     *
+     * @see TilePack#getTilePack(gov.nasa.worldwind.cache.FileStore, LevelSet)
+     */
+    protected synchronized TilePack getTilePack()
+    {
+        if (!this.tilePackResolved)
+        {
+            this.tilePack = TilePack.getTilePack(this.getDataFileStore(), this.getLevels());
+            this.tilePackResolved = true;
+        }
+
+        return this.tilePack;
+    }
+
+    /**
+     * Loads a tile's texture from this layer's tile pack. Expired and unreadable tiles are removed from the pack.
+     *
+     * @param tile the tile to load.
+     *
+     * @return true if the texture was loaded, false if there is no tile pack or it doesn't contain a usable tile.
+     */
+    protected boolean loadTextureFromTilePack(TextureTile tile)
+    {
+        TilePack.Entry entry = this.readTilePackEntry(tile);
+        if (entry == null)
+            return false;
+
+        TextureData textureData = this.readTexture(entry.getBuffer(), entry.getFormatSuffix(), this.getTextureFormat(),
+            this.isUseMipMaps());
+        if (textureData == null)
+        {
+            // Assume that something is wrong with the tile and remove it.
+            this.getTilePack().remove(tile.getTileKey());
+            String message = Logging.getMessage("generic.DeletedCorruptDataFile", tile.getPath());
+            Logging.logger().info(message);
+            return false;
+        }
+
+        tile.setTextureData(textureData);
+        if (tile.getLevelNumber() != 0 || !this.isRetainLevelZeroTiles())
+            this.addTileToCache(tile);
+
+        return true;
+    }
+
+    /**
+     * Reads a tile from this layer's tile pack. Expired tiles are removed from the pack.
+     *
+     * @param tile the tile to read.
+     *
+     * @return the tile's entry, or null if there is no tile pack or it doesn't contain an unexpired tile.
+     */
+    protected TilePack.Entry readTilePackEntry(TextureTile tile)
+    {
+        TilePack pack = this.getTilePack();
+        if (pack == null)
+            return null;
+
+        TilePack.Entry entry;
+        try
+        {
+            entry = pack.read(tile.getTileKey());
+        }
+        catch (IOException e)
+        {
+            String msg = Logging.getMessage("layers.TextureLayer.ExceptionAttemptingToReadTextureFile", tile.getPath());
+            Logging.logger().log(java.util.logging.Level.SEVERE, msg, e);
+            return null;
+        }
+
+        if (entry == null)
+            return null;
+
+        if (entry.getLastModified() < tile.getLevel().getExpiryTime())
+        {
+            pack.remove(tile.getTileKey());
+            String message = Logging.getMessage("generic.DataFileExpired", tile.getPath());
+            Logging.logger().fine(message);
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Reads the image from this layer's tile pack if the pack holds the tile in the requested format, otherwise from
+     * the tile's file.
+     */
+    @Override
+    protected BufferedImage requestImage(TextureTile tile, String mimeType)
+        throws URISyntaxException, InterruptedIOException, MalformedURLException
+    {
+        TilePack.Entry entry = this.readTilePackEntry(tile);
+        if (entry != null && entry.getFormatSuffix().equalsIgnoreCase(WWIO.makeSuffixForMimeType(mimeType)))
+        {
+            try
+            {
+                BufferedImage image = ImageIO.read(WWIO.getInputStreamFromByteBuffer(entry.getBuffer()));
+                if (image != null)
+                {
+                    this.levels.unmarkResourceAbsent(tile);
+                    return image;
+                }
+            }
+            catch (InterruptedIOException e)
+            {
+                throw e;
+            }
+            catch (IOException e)
+            {
+                // Fall through and remove the tile.
+            }
+
+            // Assume that something is wrong with the tile and remove it.
+            this.getTilePack().remove(tile.getTileKey());
+            String message = Logging.getMessage("generic.DeletedCorruptDataFile", tile.getPath());
+            Logging.logger().info(message);
+        }
+
+        return super.requestImage(tile, mimeType);
+    }
+
     protected boolean loadTexture(TextureTile tile, java.net.URL textureURL)
     {
         TextureData textureData;
@@ -385,6 +529,40 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         }
     }
 
+    /**
+     * Reads and returns texture data from a buffer, optionally converting it to the specified format and generating
+     * mip-maps. See {@link #readTexture(java.net.URL, String, boolean)} for the supported texture formats.
+     *
+     * @param buffer        the texture data to read.
+     * @param formatSuffix  the suffix of the file the texture data would have been stored in, such as ".png".
+     * @param textureFormat the texture data format to return.
+     * @param useMipMaps    true to generate mip-maps for the texture data or use mip maps already in the texture data,
+     *                      and false to read the texture data without generating or using mip-maps.
+     *
+     * @return TextureData the texture data from the specified buffer, in the specified format and with mip-maps.
+     */
+    protected TextureData readTexture(ByteBuffer buffer, String formatSuffix, String textureFormat, boolean useMipMaps)
+    {
+        try
+        {
+            if ("image/dds".equalsIgnoreCase(textureFormat) && !formatSuffix.toLowerCase().endsWith("dds"))
+            {
+                DXTCompressionAttributes attributes = DDSCompressor.getDefaultCompressionAttributes();
+                attributes.setBuildMipmaps(useMipMaps);
+                buffer = DDSCompressor.compressImageBuffer(buffer, attributes);
+            }
+
+            return OGLUtil.newTextureData(Configuration.getMaxCompatibleGLProfile(),
+                WWIO.getInputStreamFromByteBuffer(buffer), useMipMaps);
+        }
+        catch (Exception e)
+        {
+            String msg = Logging.getMessage("layers.TextureLayer.ExceptionAttemptingToReadTextureFile", formatSuffix);
+            Logging.logger().log(java.util.logging.Level.SEVERE, msg, e);
+            return null;
+        }
+    }
+
     protected void addTileToCache(TextureTile tile)
     {
         TextureTile.getMemoryCache().add(tile.getTileKey(), tile);
@@ -641,6 +819,29 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
             return this.getFileStore().newFile(this.tile.getPath());
         }
 
+        /**
+         * Saves the retrieved data to the layer's tile pack if the layer has one and the data is destined for the
+         * layer's own file store, otherwise saves it to a file.
+         *
+         * @param buffer the buffer to save.
+         *
+         * @return true if the buffer was saved, otherwise false.
+         *
+         * @throws IOException if an IO error occurred when attempting to save the buffer.
+         */
+        @Override
+        protected boolean saveBuffer(ByteBuffer buffer) throws IOException
+        {
+            TilePack pack = this.fileStore == null ? this.layer.getTilePack() : null;
+            if (pack == null)
+                return super.saveBuffer(buffer);
+
+            String suffix = this.tile.getLevel().getFormatSuffix();
+            pack.write(this.tile.getTileKey(), suffix != null ? suffix : "",
+                buffer != null ? buffer : this.getRetriever().getBuffer());
+            return true;
+        }
+
         @Override
         protected ByteBuffer handleSuccessfulRetrieval()
         {
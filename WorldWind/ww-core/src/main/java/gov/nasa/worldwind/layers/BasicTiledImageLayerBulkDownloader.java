@@ -6,9 +6,8 @@
 
 package gov.nasa.worldwind.layers;
 
-import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.avlist.AVKey;
-import gov.nasa.worldwind.cache.FileStore;
+import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.event.*;
 import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.retrieve.*;
@@ -35,7 +34,7 @@ public class BasicTiledImageLayerBulkDownloader extends BulkRetrievalThread
 
     protected final BasicTiledImageLayer layer;
     protected final int level;
-    protected ArrayList<TextureTile> missingTiles;
+    protected BulkDownloadEngine<TextureTile> engine;
 
     /**
      * Constructs a downloader to retrieve imagery not currently available in the World Wind file cache.
@@ -91,31 +90,40 @@ public class BasicTiledImageLayerBulkDownloader extends BulkRetrievalThread
             this.progress.setTotalCount(this.estimateMissingTilesCount(20));
             this.progress.setTotalSize(this.progress.getTotalCount() * estimateAverageTileSize());
 
-            // Determine and request missing tiles by level/region
-            for (int levelNumber = 0; levelNumber <= this.level; levelNumber++)
+            this.engine = this.createEngine();
+            this.engine.start();
+            try
             {
-                if (this.layer.getLevels().isLevelEmpty(levelNumber))
-                    continue;
-
-                int div = this.computeRegionDivisions(this.sector, levelNumber, MAX_TILE_COUNT_PER_REGION);
-                Iterator<Sector> regionsIterator = this.getRegionIterator(this.sector, div);
-                
-                Sector region;
-                while (regionsIterator.hasNext())
+                // Feed the tiles to the engine level by level and region by region. The engine checks which are
+                // missing and retrieves them, blocking here while its pipeline is full.
+                for (int levelNumber = 0; levelNumber <= this.level; levelNumber++)
                 {
-                    region = regionsIterator.next();
-                    // Determine missing tiles
-                    this.missingTiles = getMissingTilesInSector(region, levelNumber);
+                    if (this.layer.getLevels().isLevelEmpty(levelNumber))
+                        continue;
 
-                    // Submit missing tiles requests at intervals
-                    while (this.missingTiles.size() > 0)
+                    int div = this.computeRegionDivisions(this.sector, levelNumber, MAX_TILE_COUNT_PER_REGION);
+                    Iterator<Sector> regionsIterator = this.getRegionIterator(this.sector, div);
+
+                    while (regionsIterator.hasNext())
                     {
-                        submitMissingTilesRequests();
-                        if (this.missingTiles.size() > 0)
-                            Thread.sleep(RETRIEVAL_SERVICE_POLL_DELAY);
+                        TextureTile[][] tileArray = this.layer.getTilesInSector(regionsIterator.next(), levelNumber);
+                        for (TextureTile[] row : tileArray)
+                        {
+                            for (TextureTile tile : row)
+                            {
+                                this.engine.addTile(tile);
+                            }
+                        }
                     }
                 }
+
+                this.engine.finish();
             }
+            finally
+            {
+                this.engine.stop();
+            }
+
             // Set progress to 100%
             this.progress.setTotalCount(this.progress.getCurrentCount());
             this.progress.setTotalSize(this.progress.getCurrentSize());
@@ -133,47 +141,52 @@ public class BasicTiledImageLayerBulkDownloader extends BulkRetrievalThread
         }
     }
 
-//    protected int countMissingTiles() throws InterruptedException
-//    {
-//        int count = 0;
-//        for (int levelNumber = 0; levelNumber <= this.level; levelNumber++)
-//        {
-//            if (this.layer.getLevels().isLevelEmpty(levelNumber))
-//                continue;
-//
-//            count += getMissingTilesInSector(this.sector, levelNumber).size();
-//        }
-//
-//        return count;
-//    }
-
-    protected synchronized void submitMissingTilesRequests() throws InterruptedException
+    /**
+     * Creates the engine that retrieves the missing tiles. The engine's journal is kept in the layer's cache directory
+     * in the file store, so an interrupted download of the same sector and resolution resumes where it stopped.
+     *
+     * @return the bulk download engine.
+     */
+    protected BulkDownloadEngine<TextureTile> createEngine()
     {
-        RetrievalService rs = WorldWind.getRetrievalService();
-        int i = 0;
-        while (this.missingTiles.size() > i && rs.isAvailable())
+        Level firstLevel = this.layer.getLevels().getFirstLevel();
+        File directory = new File(this.fileStore.getWriteLocation(), firstLevel.getCacheName());
+        final String host = BulkDownloadEngine.getHost(firstLevel.getService());
+
+        return new BulkDownloadEngine<TextureTile>(this.progress, this.estimateAverageTileSize(),
+            BulkDownloadEngine.getJournalFile(directory, this.sector, this.resolution))
         {
-            Thread.sleep(1); // generates InterruptedException if thread has been interrupted
+            protected boolean isTileAbsent(TextureTile tile)
+            {
+                return BasicTiledImageLayerBulkDownloader.this.isTileAbsent(tile);
+            }
+
+            protected boolean isTileLocal(TextureTile tile)
+            {
+                return BasicTiledImageLayerBulkDownloader.this.isTileLocal(tile);
+            }
 
-            TextureTile tile = this.missingTiles.get(i);
+            protected void tileLocal(TextureTile tile)
+            {
+                callRetrievalListeners(new BulkRetrievalEvent(layer, BulkRetrievalEvent.RETRIEVAL_CACHED,
+                    tile.getPath()));
+            }
 
-            if (this.layer.getLevels().isResourceAbsent(tile))
+            protected void retrieveTile(TextureTile tile)
             {
-                removeAbsentTile(tile);  // tile is absent, count it off.
-                continue;
+                layer.retrieveRemoteTexture(tile, createBulkDownloadPostProcessor(tile));
             }
 
-            URL url = this.fileStore.findFile(tile.getPath(), false);
-            if (url != null)
+            protected TileKey getTileKey(TextureTile tile)
             {
-                // tile has been retrieved and is local now, count it as retrieved.
-                removeRetrievedTile(tile);
-                continue;
+                return tile.getTileKey();
             }
 
-            this.layer.retrieveRemoteTexture(tile, createBulkDownloadPostProcessor(tile));
-            i++;
-        }
+            protected String getTileHost(TextureTile tile)
+            {
+                return host;
+            }
+        };
     }
 
     protected BasicTiledImageLayer.DownloadPostProcessor createBulkDownloadPostProcessor(TextureTile tile)
@@ -192,8 +205,7 @@ public class BasicTiledImageLayerBulkDownloader extends BulkRetrievalThread
         {
             ByteBuffer buffer = super.run(retriever);
 
-            if (retriever.getState().equals(Retriever.RETRIEVER_STATE_SUCCESSFUL))
-                removeRetrievedTile(this.tile);
+            engine.retrievalCompleted(this.tile, retriever);
 
             if (hasRetrievalListeners())
                 callRetrievalListeners(retriever, this.tile);
@@ -209,35 +221,6 @@ public class BasicTiledImageLayerBulkDownloader extends BulkRetrievalThread
         super.callRetrievalListeners(new BulkRetrievalEvent(this.layer, eventType, tile.getPath()));
     }
 
-    protected synchronized void removeRetrievedTile(TextureTile tile)
-    {
-        this.missingTiles.remove(tile);
-        // Update progress
-        this.progress.setCurrentCount(this.progress.getCurrentCount() + 1);
-        this.progress.setCurrentSize(this.progress.getCurrentSize() + estimateAverageTileSize());
-        this.progress.setLastUpdateTime(System.currentTimeMillis());
-        this.normalizeProgress();
-    }
-
-    protected synchronized void removeAbsentTile(TextureTile tile)
-    {
-        this.missingTiles.remove(tile);
-        // Decrease progress expected total count and size
-        this.progress.setTotalCount(this.progress.getTotalCount() - 1);
-        this.progress.setTotalSize(this.progress.getTotalSize() - estimateAverageTileSize());
-        this.progress.setLastUpdateTime(System.currentTimeMillis());
-        this.normalizeProgress();
-    }
-
-    protected void normalizeProgress()
-    {
-        if (this.progress.getTotalCount() < this.progress.getCurrentCount())
-        {
-            this.progress.setTotalCount(this.progress.getCurrentCount());
-            this.progress.setTotalSize(this.progress.getCurrentSize());
-        }
-    }
-
     /**
      * Get the estimated size in byte of the missing imagery for the object's {@link Sector}, resolution and file store.
      * Note that the target resolution must be provided in radian latitude per texel - which is the resolution in meter
@@ -387,7 +370,8 @@ public class BasicTiledImageLayerBulkDownloader extends BulkRetrievalThread
         {
             for (TextureTile tile : row)
             {
-                Thread.sleep(1); // generates InterruptedException if thread has been interrupted
+                if (Thread.currentThread().isInterrupted())
+                    throw new InterruptedException();
 
                 if (tile == null)
                     continue;
@@ -412,6 +396,13 @@ public class BasicTiledImageLayerBulkDownloader extends BulkRetrievalThread
 
     protected boolean isTileLocal(TextureTile tile)
     {
+        if (this.fileStore == this.layer.getDataFileStore())
+        {
+            TilePack pack = this.layer.getTilePack();
+            if (pack != null && pack.contains(tile.getTileKey()))
+                return true;
+        }
+
         URL url = this.fileStore.findFile(tile.getPath(), false);
         return url != null && !this.layer.isTextureFileExpired(tile, url, fileStore);
     }
@@ -0,0 +1,861 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.layers;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.render.*;
+import gov.nasa.worldwind.terrain.BasicElevationModel;
+import gov.nasa.worldwind.util.*;
+
+import java.awt.*;
+import java.nio.DoubleBuffer;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Displays contour lines of a {@link BasicElevationModel} at any number of elevations. Contours are computed from the
+ * elevation model's own tiles rather than from the current terrain tessellation: the layer selects the elevation tiles
+ * whose resolution suits the current view, in the same way a tiled image layer selects its image tiles, and computes
+ * the contours of every contour elevation in one pass over each tile with a {@link ContourBuilder}. Each tile's
+ * contours are therefore computed once, have detail appropriate to the tile's resolution, and don't change as the
+ * terrain is refined.
+ * <p/>
+ * Tiles are computed on the World Wind task service when their elevations are in memory, and are kept in a memory
+ * cache whose capacity is in bytes. Until all of a tile's descendants are available the layer displays the tile's own
+ * contours, if available, in their place. The contours of the displayed tiles are joined across tile edges into
+ * continuous polylines, also on the task service, and are drawn as {@link SurfacePolylines}. Adjacent tiles of the
+ * same level share the elevations along their common edge and compute identical points there, so the polylines are
+ * joined exactly.
+ * <p/>
+ * Contours whose elevation is a multiple of the major contour interval are drawn with the major attributes.
+ *
+ * @version $Id$
+ * @see gov.nasa.worldwind.render.ContourLine
+ */
+public class ContourLayer extends AbstractLayer
+{
+    protected static final long DEFAULT_TILE_CACHE_CAPACITY = 32000000L;
+
+    protected BasicElevationModel elevationModel;
+    protected double[] contourElevations = new double[0];
+    protected double majorContourInterval;
+    protected ShapeAttributes attributes;
+    protected ShapeAttributes majorAttributes;
+    protected double detailHintOrigin = 2.8;
+    protected double detailHint = 0;
+
+    protected MemoryCache tileCache;
+    protected ConcurrentHashMap<TileKey, TileTask> pendingTiles = new ConcurrentHashMap<TileKey, TileTask>();
+    /** Incremented when the contour elevations change, to discard results computed for the previous elevations. */
+    protected volatile int generation;
+
+    // Frame state.
+    protected List<Tile> topLevels;
+    protected List<ContourTile> currentTiles = new ArrayList<ContourTile>();
+    protected List<ContourTile> assembledTiles = new ArrayList<ContourTile>();
+    protected volatile boolean assemblyPending;
+    protected volatile List<SurfacePolylines> renderables = new ArrayList<SurfacePolylines>();
+
+    /** The contours of one elevation tile, for each contour elevation. */
+    protected static class ContourTile implements Cacheable
+    {
+        protected final TileKey tileKey;
+        protected final Sector sector;
+        protected final int generation;
+        /** The polylines of each contour elevation, as interleaved longitudes and latitudes in degrees. */
+        protected final List<List<double[]>> contours;
+        protected final long size;
+
+        public ContourTile(TileKey tileKey, Sector sector, int generation, List<List<double[]>> contours)
+        {
+            this.tileKey = tileKey;
+            this.sector = sector;
+            this.generation = generation;
+            this.contours = contours;
+
+            long size = 64;
+            for (List<double[]> polylines : contours)
+            {
+                for (double[] p : polylines)
+                {
+                    size += 8L * p.length + 32;
+                }
+            }
+            this.size = size;
+        }
+
+        public long getSizeInBytes()
+        {
+            return this.size;
+        }
+    }
+
+    /** Computes the contours of one tile. */
+    protected static class TileTask implements Runnable
+    {
+        protected final ContourLayer layer;
+        protected final Tile tile;
+        protected final BufferWrapper elevations;
+        protected final double[] contourElevations;
+        protected final int generation;
+
+        public TileTask(ContourLayer layer, Tile tile, BufferWrapper elevations, double[] contourElevations,
+            int generation)
+        {
+            this.layer = layer;
+            this.tile = tile;
+            this.elevations = elevations;
+            this.contourElevations = contourElevations;
+            this.generation = generation;
+        }
+
+        public void run()
+        {
+            try
+            {
+                ContourTile contourTile = this.layer.computeContourTile(this.tile, this.elevations,
+                    this.contourElevations, this.generation);
+                if (contourTile != null && this.generation == this.layer.generation)
+                {
+                    this.layer.tileCache.add(contourTile.tileKey, contourTile);
+                    this.layer.firePropertyChange(AVKey.LAYER, null, this.layer);
+                }
+            }
+            catch (Exception e)
+            {
+                String message = Logging.getMessage("generic.ExceptionWhileUpdating", this.tile);
+                Logging.logger().log(java.util.logging.Level.SEVERE, message, e);
+            }
+            finally
+            {
+                this.layer.pendingTiles.remove(this.tile.getTileKey());
+            }
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (o == null || this.getClass() != o.getClass())
+                return false;
+
+            TileTask that = (TileTask) o;
+            return this.layer == that.layer && this.tile.getTileKey().equals(that.tile.getTileKey());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.tile.getTileKey().hashCode();
+        }
+    }
+
+    /** Joins the contours of the displayed tiles and creates the shapes that draw them. */
+    protected static class AssemblyTask implements Runnable
+    {
+        protected final ContourLayer layer;
+        protected final List<ContourTile> tiles;
+        protected final double[] contourElevations;
+        protected final int generation;
+
+        public AssemblyTask(ContourLayer layer, List<ContourTile> tiles, double[] contourElevations, int generation)
+        {
+            this.layer = layer;
+            this.tiles = tiles;
+            this.contourElevations = contourElevations;
+            this.generation = generation;
+        }
+
+        public void run()
+        {
+            try
+            {
+                List<SurfacePolylines> shapes = this.layer.assembleContours(this.tiles, this.contourElevations);
+                if (this.generation == this.layer.generation)
+                {
+                    this.layer.renderables = shapes;
+                    this.layer.firePropertyChange(AVKey.LAYER, null, this.layer);
+                }
+            }
+            catch (Exception e)
+            {
+                String message = Logging.getMessage("generic.ExceptionWhileUpdating", this.layer);
+                Logging.logger().log(java.util.logging.Level.SEVERE, message, e);
+            }
+            finally
+            {
+                this.layer.assemblyPending = false;
+            }
+        }
+    }
+
+    /**
+     * Creates a layer that displays contours of an elevation model. No contours are displayed until the contour
+     * elevations or the contour interval are specified.
+     *
+     * @param elevationModel the elevation model.
+     *
+     * @throws IllegalArgumentException if the elevation model is null.
+     */
+    public ContourLayer(BasicElevationModel elevationModel)
+    {
+        if (elevationModel == null)
+        {
+            String message = Logging.getMessage("nullValue.ElevationModelIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.elevationModel = elevationModel;
+
+        this.attributes = new BasicShapeAttributes();
+        this.attributes.setDrawInterior(false);
+        this.attributes.setOutlineMaterial(new Material(Color.CYAN));
+        this.attributes.setOutlineWidth(1);
+
+        this.majorAttributes = new BasicShapeAttributes(this.attributes);
+        this.majorAttributes.setOutlineWidth(2);
+
+        this.tileCache = new BasicMemoryCache((long) (0.8 * DEFAULT_TILE_CACHE_CAPACITY), DEFAULT_TILE_CACHE_CAPACITY);
+        this.tileCache.setName("Contour Tiles");
+
+        this.setPickEnabled(false);
+        this.setName("Contours");
+    }
+
+    /**
+     * Creates a layer that displays contours of an elevation model at a regular interval.
+     *
+     * @param elevationModel  the elevation model.
+     * @param contourInterval the elevation difference between contours, in meters.
+     *
+     * @throws IllegalArgumentException if the elevation model is null or the interval is not positive.
+     */
+    public ContourLayer(BasicElevationModel elevationModel, double contourInterval)
+    {
+        this(elevationModel);
+
+        this.setContourInterval(contourInterval);
+    }
+
+    public BasicElevationModel getElevationModel()
+    {
+        return this.elevationModel;
+    }
+
+    /**
+     * Returns the elevations at which contours are displayed.
+     *
+     * @return a copy of the contour elevations, in meters.
+     */
+    public double[] getContourElevations()
+    {
+        return this.contourElevations.clone();
+    }
+
+    /**
+     * Specifies the elevations at which contours are displayed. Changing the elevations discards the contours computed
+     * for the previous elevations.
+     *
+     * @param elevations the contour elevations, in meters.
+     *
+     * @throws IllegalArgumentException if the elevations are null.
+     */
+    public void setContourElevations(double[] elevations)
+    {
+        if (elevations == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (Arrays.equals(this.contourElevations, elevations))
+            return;
+
+        this.contourElevations = elevations.clone();
+        this.generation++;
+        this.tileCache.clear();
+        this.renderables = new ArrayList<SurfacePolylines>();
+        this.assembledTiles = new ArrayList<ContourTile>();
+    }
+
+    /**
+     * Specifies contours at every multiple of an interval between the elevation model's minimum and maximum
+     * elevations.
+     *
+     * @param interval the elevation difference between contours, in meters.
+     *
+     * @throws IllegalArgumentException if the interval is not positive.
+     */
+    public void setContourInterval(double interval)
+    {
+        if (!(interval > 0))
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", interval);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Compute each elevation from its multiple of the interval rather than by accumulation, so that elevations are
+        // exact multiples of the interval.
+        long first = (long) Math.ceil(this.elevationModel.getMinElevation() / interval);
+        long last = (long) Math.floor(this.elevationModel.getMaxElevation() / interval);
+        double[] elevations = new double[(int) Math.max(0, last - first + 1)];
+        for (int i = 0; i < elevations.length; i++)
+        {
+            elevations[i] = (first + i) * interval;
+        }
+
+        this.setContourElevations(elevations);
+    }
+
+    /**
+     * Returns the interval of the contours drawn with the major attributes.
+     *
+     * @return the major contour interval, in meters. Zero if no contours are major.
+     */
+    public double getMajorContourInterval()
+    {
+        return this.majorContourInterval;
+    }
+
+    /**
+     * Specifies the interval of the contours drawn with the major attributes: contours whose elevation is a multiple
+     * of this interval are major. Takes effect when the displayed contours are next assembled.
+     *
+     * @param interval the major contour interval, in meters. Zero indicates that no contours are major.
+     *
+     * @throws IllegalArgumentException if the interval is negative.
+     */
+    public void setMajorContourInterval(double interval)
+    {
+        if (interval < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", interval);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.majorContourInterval = interval;
+        this.assembledTiles = new ArrayList<ContourTile>();
+    }
+
+    /**
+     * Returns the attributes of contours that aren't major. Changes to the returned attributes affect the displayed
+     * contours.
+     *
+     * @return the contour attributes.
+     */
+    public ShapeAttributes getAttributes()
+    {
+        return this.attributes;
+    }
+
+    public void setAttributes(ShapeAttributes attributes)
+    {
+        if (attributes == null)
+        {
+            String message = Logging.getMessage("nullValue.AttributesIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.attributes = attributes;
+        this.assembledTiles = new ArrayList<ContourTile>();
+    }
+
+    /**
+     * Returns the attributes of major contours. Changes to the returned attributes affect the displayed contours.
+     *
+     * @return the major contour attributes.
+     */
+    public ShapeAttributes getMajorAttributes()
+    {
+        return this.majorAttributes;
+    }
+
+    public void setMajorAttributes(ShapeAttributes attributes)
+    {
+        if (attributes == null)
+        {
+            String message = Logging.getMessage("nullValue.AttributesIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.majorAttributes = attributes;
+        this.assembledTiles = new ArrayList<ContourTile>();
+    }
+
+    /**
+     * Indicates the layer's detail hint, which is described in {@link #setDetailHint(double)}.
+     *
+     * @return the detail hint.
+     */
+    public double getDetailHint()
+    {
+        return this.detailHint;
+    }
+
+    /**
+     * Modifies the resolution of the elevation tiles whose contours are displayed, in the same way as {@link
+     * TiledImageLayer#setDetailHint(double)}. Values greater than 0 select higher resolution tiles, and values less
+     * than 0 select lower resolution tiles. The default is 0.
+     *
+     * @param detailHint the degree to modify the selected tile resolution.
+     */
+    public void setDetailHint(double detailHint)
+    {
+        this.detailHint = detailHint;
+    }
+
+    /**
+     * Returns the capacity of the memory cache holding the contours of each tile.
+     *
+     * @return the cache capacity, in bytes.
+     */
+    public long getTileCacheCapacity()
+    {
+        return this.tileCache.getCapacity();
+    }
+
+    /**
+     * Specifies the capacity of the memory cache holding the contours of each tile.
+     *
+     * @param capacity the cache capacity, in bytes.
+     *
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    public void setTileCacheCapacity(long capacity)
+    {
+        if (capacity < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", capacity);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.tileCache.setCapacity(capacity);
+        this.tileCache.setLowWater((long) (0.8 * capacity));
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.generation++;
+        this.tileCache.clear();
+        this.renderables = new ArrayList<SurfacePolylines>();
+        this.assembledTiles = new ArrayList<ContourTile>();
+    }
+
+    @Override
+    protected void doPreRender(DrawContext dc)
+    {
+        if (this.contourElevations.length == 0)
+            return;
+
+        this.assembleTiles(dc);
+
+        // Join the contours of the displayed tiles when the displayed tiles change. The shapes assembled for the
+        // previous tiles are displayed until the new shapes are ready.
+        if (!this.assemblyPending && !this.currentTiles.equals(this.assembledTiles))
+        {
+            if (!WorldWind.getTaskService().isFull())
+            {
+                this.assemblyPending = true;
+                this.assembledTiles = new ArrayList<ContourTile>(this.currentTiles);
+                WorldWind.getTaskService().addTask(new AssemblyTask(this, this.assembledTiles,
+                    this.contourElevations, this.generation));
+            }
+        }
+
+        for (SurfacePolylines shape : this.renderables)
+        {
+            try
+            {
+                shape.preRender(dc);
+            }
+            catch (Exception e)
+            {
+                String msg = Logging.getMessage("generic.ExceptionWhilePrerenderingRenderable");
+                Logging.logger().severe(msg);
+                // continue to next renderable
+            }
+        }
+    }
+
+    @Override
+    protected void doRender(DrawContext dc)
+    {
+        for (SurfacePolylines shape : this.renderables)
+        {
+            try
+            {
+                shape.render(dc);
+            }
+            catch (Exception e)
+            {
+                String msg = Logging.getMessage("generic.ExceptionWhileRenderingRenderable");
+                Logging.logger().severe(msg);
+                // continue to next renderable
+            }
+        }
+    }
+
+    // ============== Tile Assembly ======================= //
+    // ============== Tile Assembly ======================= //
+    // ============== Tile Assembly ======================= //
+
+    protected List<Tile> getTopLevels()
+    {
+        if (this.topLevels == null)
+            this.topLevels = this.createTopLevelTiles();
+
+        return this.topLevels;
+    }
+
+    protected List<Tile> createTopLevelTiles()
+    {
+        LevelSet levels = this.elevationModel.getLevels();
+        Sector sector = levels.getSector();
+        Level level = levels.getFirstLevel();
+        Angle dLat = level.getTileDelta().getLatitude();
+        Angle dLon = level.getTileDelta().getLongitude();
+        Angle latOrigin = levels.getTileOrigin().getLatitude();
+        Angle lonOrigin = levels.getTileOrigin().getLongitude();
+
+        int firstRow = Tile.computeRow(dLat, sector.getMinLatitude(), latOrigin);
+        int firstCol = Tile.computeColumn(dLon, sector.getMinLongitude(), lonOrigin);
+        int lastRow = Tile.computeRow(dLat, sector.getMaxLatitude(), latOrigin);
+        int lastCol = Tile.computeColumn(dLon, sector.getMaxLongitude(), lonOrigin);
+
+        List<Tile> tiles = new ArrayList<Tile>((lastRow - firstRow + 1) * (lastCol - firstCol + 1));
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            for (int col = firstCol; col <= lastCol; col++)
+            {
+                tiles.add(levels.createTile(new TileKey(level.getLevelNumber(), row, col, level.getCacheName())));
+            }
+        }
+
+        return tiles;
+    }
+
+    protected void assembleTiles(DrawContext dc)
+    {
+        this.currentTiles.clear();
+
+        for (Tile tile : this.getTopLevels())
+        {
+            if (this.isTileVisible(dc, tile))
+                this.addTileOrDescendants(dc, tile, this.currentTiles);
+        }
+    }
+
+    /**
+     * Adds the contours of a tile or of its descendants to a list, whichever meet the render criteria. When the
+     * contours of some descendants are not yet available, the tile's own contours are added in place of all its
+     * descendants if they're available.
+     *
+     * @param dc     the current draw context.
+     * @param tile   the tile.
+     * @param result the list to add contour tiles to.
+     *
+     * @return true if the contours added cover the visible part of the tile, otherwise false.
+     */
+    protected boolean addTileOrDescendants(DrawContext dc, Tile tile, List<ContourTile> result)
+    {
+        LevelSet levels = this.elevationModel.getLevels();
+        ContourTile contourTile = this.getContourTile(tile.getTileKey());
+
+        if (this.meetsRenderCriteria(dc, tile))
+        {
+            // A tile without elevations has no contours of its own; its closest ancestor with contours is used.
+            if (levels.isResourceAbsent(tile))
+                return false;
+
+            if (contourTile == null)
+            {
+                this.requestContourTile(tile);
+                return false;
+            }
+
+            result.add(contourTile);
+            return true;
+        }
+
+        // Level zero tiles are requested even when they're subdivided, so they're available in place of their
+        // descendants.
+        if (contourTile == null && tile.getLevelNumber() == 0)
+            this.requestContourTile(tile);
+
+        int start = result.size();
+        boolean complete = true;
+        for (Tile child : this.createSubTiles(tile))
+        {
+            if (levels.getSector().intersects(child.getSector()) && this.isTileVisible(dc, child))
+                complete &= this.addTileOrDescendants(dc, child, result);
+        }
+
+        if (complete || contourTile == null)
+            return complete;
+
+        result.subList(start, result.size()).clear();
+        result.add(contourTile);
+        return true;
+    }
+
+    protected Tile[] createSubTiles(Tile tile)
+    {
+        LevelSet levels = this.elevationModel.getLevels();
+        Level nextLevel = levels.getLevel(tile.getLevelNumber() + 1);
+        int row = 2 * tile.getRow();
+        int col = 2 * tile.getColumn();
+
+        Tile[] subTiles = new Tile[4];
+        subTiles[0] = levels.createTile(new TileKey(nextLevel.getLevelNumber(), row, col, nextLevel.getCacheName()));
+        subTiles[1] = levels.createTile(new TileKey(nextLevel.getLevelNumber(), row, col + 1,
+            nextLevel.getCacheName()));
+        subTiles[2] = levels.createTile(new TileKey(nextLevel.getLevelNumber(), row + 1, col,
+            nextLevel.getCacheName()));
+        subTiles[3] = levels.createTile(new TileKey(nextLevel.getLevelNumber(), row + 1, col + 1,
+            nextLevel.getCacheName()));
+
+        return subTiles;
+    }
+
+    protected boolean isTileVisible(DrawContext dc, Tile tile)
+    {
+        Extent extent = Sector.computeBoundingBox(dc.getGlobe(), dc.getVerticalExaggeration(), tile.getSector());
+        return extent.intersects(dc.getView().getFrustumInModelCoordinates()) &&
+            (dc.getVisibleSector() == null || dc.getVisibleSector().intersects(tile.getSector()));
+    }
+
+    protected boolean meetsRenderCriteria(DrawContext dc, Tile tile)
+    {
+        LevelSet levels = this.elevationModel.getLevels();
+        if (levels.isFinalLevel(tile.getLevelNumber()))
+            return true;
+
+        Level lastLevel = levels.getLastLevel(tile.getSector());
+        if (lastLevel != null && tile.getLevelNumber() >= lastLevel.getLevelNumber())
+            return true;
+
+        // Empty levels have no elevations, so their tiles are always subdivided.
+        return !tile.getLevel().isEmpty() && !this.needToSplit(dc, tile.getSector(), tile.getLevel());
+    }
+
+    protected double getDetailFactor()
+    {
+        return this.detailHintOrigin + this.getDetailHint();
+    }
+
+    protected boolean needToSplit(DrawContext dc, Sector sector, Level level)
+    {
+        Vec4[] corners = sector.computeCornerPoints(dc.getGlobe(), dc.getVerticalExaggeration());
+        Vec4 centerPoint = sector.computeCenterPoint(dc.getGlobe(), dc.getVerticalExaggeration());
+        Vec4 eyePoint = dc.getView().getEyePoint();
+
+        // Find the minimum eye distance to the sector's corners and center, and the cell height at that point.
+        double minDistance = eyePoint.distanceTo3(centerPoint);
+        double cellHeight = centerPoint.getLength3() * level.getTexelSize();
+        for (Vec4 corner : corners)
+        {
+            double d = eyePoint.distanceTo3(corner);
+            if (d < minDistance)
+            {
+                minDistance = d;
+                cellHeight = corner.getLength3() * level.getTexelSize();
+            }
+        }
+
+        // Split when the cell height becomes greater than the fraction of the eye distance given by the detail factor,
+        // as TiledImageLayer does.
+        return cellHeight > minDistance * Math.pow(10, -this.getDetailFactor());
+    }
+
+    // ============== Contour Computation ======================= //
+    // ============== Contour Computation ======================= //
+    // ============== Contour Computation ======================= //
+
+    protected ContourTile getContourTile(TileKey key)
+    {
+        ContourTile contourTile = (ContourTile) this.tileCache.getObject(key);
+        return contourTile != null && contourTile.generation == this.generation ? contourTile : null;
+    }
+
+    protected void requestContourTile(Tile tile)
+    {
+        if (this.pendingTiles.containsKey(tile.getTileKey()) || WorldWind.getTaskService().isFull())
+            return;
+
+        // The elevation model requests the tile's elevations if they're not in memory. The contours are requested
+        // again once the elevations arrive.
+        BufferWrapper elevations = this.elevationModel.getTileElevations(tile.getTileKey());
+        if (elevations == null)
+            return;
+
+        TileTask task = new TileTask(this, tile, elevations, this.contourElevations, this.generation);
+        if (this.pendingTiles.putIfAbsent(tile.getTileKey(), task) == null)
+            WorldWind.getTaskService().addTask(task);
+    }
+
+    /**
+     * Computes the contours of an elevation tile. Contour points are computed from the index of their grid post
+     * relative to the tiling origin, rather than relative to the tile's sector, so that adjacent tiles compute
+     * identical points along their common edge.
+     *
+     * @param tile              the elevation tile.
+     * @param elevations        the tile's elevations.
+     * @param contourElevations the contour elevations.
+     * @param generation        the generation of the contour elevations.
+     *
+     * @return the tile's contours, or null if the tile's elevations don't match its dimensions.
+     */
+    protected ContourTile computeContourTile(Tile tile, BufferWrapper elevations, double[] contourElevations,
+        int generation)
+    {
+        int width = tile.getWidth();
+        int height = tile.getHeight();
+        if (elevations.length() < width * height)
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength", elevations.length());
+            Logging.logger().warning(message);
+            return null;
+        }
+
+        double[] values = new double[width * height];
+        elevations.getDouble(0, values, 0, values.length);
+
+        ContourBuilder builder = new ContourBuilder(width, height, values);
+        builder.setMissingDataSignal(this.elevationModel.getMissingDataSignal());
+        List<List<double[]>> contours = builder.buildContourLines(contourElevations);
+
+        // Elevation rows start at the tile's maximum latitude. Post indices count rows north from the tiling origin's
+        // latitude and columns east from its longitude.
+        LevelSet levels = this.elevationModel.getLevels();
+        LatLon tileDelta = tile.getLevel().getTileDelta();
+        double postDeltaLat = tileDelta.getLatitude().degrees / (height - 1);
+        double postDeltaLon = tileDelta.getLongitude().degrees / (width - 1);
+        double originLat = levels.getTileOrigin().getLatitude().degrees;
+        double originLon = levels.getTileOrigin().getLongitude().degrees;
+        double firstRow = (double) (tile.getRow() + 1) * (height - 1);
+        double firstColumn = (double) tile.getColumn() * (width - 1);
+
+        for (List<double[]> polylines : contours)
+        {
+            for (double[] p : polylines)
+            {
+                for (int i = 0; i < p.length; i += 2)
+                {
+                    double lon = originLon + (firstColumn + p[i]) * postDeltaLon;
+                    double lat = originLat + (firstRow - p[i + 1]) * postDeltaLat;
+                    p[i] = lon;
+                    p[i + 1] = lat;
+                }
+            }
+        }
+
+        return new ContourTile(tile.getTileKey(), tile.getSector(), generation, contours);
+    }
+
+    /**
+     * Joins the contours of a set of tiles across tile edges and creates shapes to draw them. Each joined polyline is
+     * drawn by the shape of the tile containing its first point, so that shapes cover compact regions.
+     *
+     * @param tiles             the contour tiles.
+     * @param contourElevations the contour elevations.
+     *
+     * @return the shapes drawing the contours.
+     */
+    protected List<SurfacePolylines> assembleContours(List<ContourTile> tiles, double[] contourElevations)
+    {
+        // Polylines for each tile, minor contours first and then major contours.
+        List<List<double[]>> groups = new ArrayList<List<double[]>>(2 * tiles.size());
+        for (int i = 0; i < 2 * tiles.size(); i++)
+        {
+            groups.add(new ArrayList<double[]>());
+        }
+
+        for (int n = 0; n < contourElevations.length; n++)
+        {
+            List<double[]> polylines = new ArrayList<double[]>();
+            for (ContourTile tile : tiles)
+            {
+                polylines.addAll(tile.contours.get(n));
+            }
+
+            int offset = this.isMajorContour(contourElevations[n]) ? tiles.size() : 0;
+            for (double[] p : ContourBuilder.joinPolylines(polylines))
+            {
+                groups.get(offset + this.findTile(tiles, p[1], p[0])).add(p);
+            }
+        }
+
+        List<SurfacePolylines> shapes = new ArrayList<SurfacePolylines>();
+        for (int i = 0; i < groups.size(); i++)
+        {
+            if (!groups.get(i).isEmpty())
+                shapes.add(this.createShape(groups.get(i), i < tiles.size() ? this.attributes : this.majorAttributes));
+        }
+
+        return shapes;
+    }
+
+    protected boolean isMajorContour(double elevation)
+    {
+        return this.majorContourInterval > 0 && Math.IEEEremainder(elevation, this.majorContourInterval) == 0;
+    }
+
+    protected int findTile(List<ContourTile> tiles, double latitude, double longitude)
+    {
+        for (int i = 0; i < tiles.size(); i++)
+        {
+            if (tiles.get(i).sector.containsDegrees(latitude, longitude))
+                return i;
+        }
+
+        return 0;
+    }
+
+    protected SurfacePolylines createShape(List<double[]> polylines, ShapeAttributes attributes)
+    {
+        int size = 0;
+        double minLat = Double.MAX_VALUE;
+        double maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE;
+        double maxLon = -Double.MAX_VALUE;
+        for (double[] p : polylines)
+        {
+            size += p.length / 2;
+            for (int i = 0; i < p.length; i += 2)
+            {
+                minLon = Math.min(minLon, p[i]);
+                maxLon = Math.max(maxLon, p[i]);
+                minLat = Math.min(minLat, p[i + 1]);
+                maxLat = Math.max(maxLat, p[i + 1]);
+            }
+        }
+
+        VecBufferSequence buffer = new VecBufferSequence(
+            new VecBuffer(2, new BufferFactory.DoubleBufferFactory().newBuffer(2 * size)), polylines.size());
+        for (double[] p : polylines)
+        {
+            buffer.append(new VecBuffer(2, new BufferWrapper.DoubleBufferWrapper(DoubleBuffer.wrap(p))));
+        }
+
+        SurfacePolylines shape = new SurfacePolylines(Sector.fromDegrees(minLat, maxLat, minLon, maxLon), buffer);
+        shape.setAttributes(attributes);
+
+        return shape;
+    }
+}
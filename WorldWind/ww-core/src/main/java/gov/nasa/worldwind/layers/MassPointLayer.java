@@ -0,0 +1,549 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.layers;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.util.texture.TextureCoords;
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.pick.PickSupport;
+import gov.nasa.worldwind.render.*;
+import gov.nasa.worldwind.util.*;
+
+import javax.media.opengl.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * A layer that draws a {@link MassPointSet} as screen-aligned image sprites. Intended for sets of many thousands to
+ * millions of points, where a {@link gov.nasa.worldwind.render.PointPlacemark} or {@link
+ * gov.nasa.worldwind.render.markers.Marker} per point is too costly. Each frame the layer culls the point set to the
+ * view frustum, projects the remaining points to the screen, and draws every visible point with a single draw call from
+ * one vertex array, using a texture atlas holding the image of each style.
+ * <p/>
+ * Points refer to their style by number, the index of a {@link Style} added by {@link #addStyle(Style)}. Points with a
+ * style number that has no style are not drawn. Point altitudes are relative to the ellipsoid; points are not
+ * positioned relative to the terrain.
+ * <p/>
+ * Picking finds the nearest point under the pick point, and the points intersecting the pick rectangle, from the
+ * projected screen coordinates. Only those points are drawn in pick colors, so that terrain and other layers can
+ * occlude them. The picked object's user object is the point's ID as a <code>Long</code>.
+ * <p/>
+ * The layer synchronizes on its point set while it prepares a frame. Applications updating the point set from other
+ * threads should synchronize on the point set as well.
+ *
+ * @version $Id$
+ */
+public class MassPointLayer extends AbstractLayer
+{
+    /** The appearance of the points having one style number. */
+    public static class Style
+    {
+        protected BufferedImage image;
+        protected double scale;
+        protected Color color;
+
+        /**
+         * Creates a style.
+         *
+         * @param image the image drawn at each point. May be null, in which case a small dot is drawn.
+         * @param scale the amount to scale the image by.
+         * @param color the color the image is multiplied by. May be null, in which case the image is drawn unmodified.
+         */
+        public Style(BufferedImage image, double scale, Color color)
+        {
+            this.image = image;
+            this.scale = scale;
+            this.color = color;
+        }
+
+        public BufferedImage getImage()
+        {
+            return this.image;
+        }
+
+        public double getScale()
+        {
+            return this.scale;
+        }
+
+        public Color getColor()
+        {
+            return this.color;
+        }
+    }
+
+    protected static final int DEFAULT_DOT_SIZE = 8;
+    protected static final double DEFAULT_HIGHLIGHT_SCALE = 1.3;
+    /** The amount subtracted from point depths to bring the sprites slightly in front of their points. */
+    protected static final float DEPTH_OFFSET = 8f * 0.00048875809f;
+    /** The number of floats per vertex: x, y, z, s and t. */
+    protected static final int VERTEX_STRIDE = 5;
+
+    protected MassPointSet pointSet;
+    protected List<Style> styles = new ArrayList<Style>();
+    protected double highlightScale = DEFAULT_HIGHLIGHT_SCALE;
+    protected BufferedImage defaultImage;
+    protected TextureAtlas textureAtlas;
+
+    protected long frameTimestamp = -1;
+    protected double[] halfWidths = new double[0];
+    protected double[] halfHeights = new double[0];
+    protected FloatBuffer vertices;
+    protected ByteBuffer colors;
+    protected int[] pickCandidates = new int[16];
+    protected PickSupport pickSupport = new PickSupport();
+
+    public MassPointLayer()
+    {
+        this(new MassPointSet());
+    }
+
+    /**
+     * Creates a layer that draws a point set.
+     *
+     * @param pointSet the point set.
+     *
+     * @throws IllegalArgumentException if the point set is null.
+     */
+    public MassPointLayer(MassPointSet pointSet)
+    {
+        if (pointSet == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.pointSet = pointSet;
+    }
+
+    public MassPointSet getPointSet()
+    {
+        return this.pointSet;
+    }
+
+    /**
+     * Adds a style.
+     *
+     * @param style the style.
+     *
+     * @return the style's number, which points use to refer to the style.
+     *
+     * @throws IllegalArgumentException if the style is null.
+     */
+    public int addStyle(Style style)
+    {
+        if (style == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.styles.add(style);
+
+        return this.styles.size() - 1;
+    }
+
+    public List<Style> getStyles()
+    {
+        return Collections.unmodifiableList(this.styles);
+    }
+
+    /**
+     * Indicates the amount highlighted points are scaled by.
+     *
+     * @return the highlight scale.
+     */
+    public double getHighlightScale()
+    {
+        return this.highlightScale;
+    }
+
+    /**
+     * Specifies the amount highlighted points are scaled by.
+     *
+     * @param highlightScale the highlight scale.
+     */
+    public void setHighlightScale(double highlightScale)
+    {
+        this.highlightScale = highlightScale;
+    }
+
+    @Override
+    protected void doRender(DrawContext dc)
+    {
+        if (!this.prepare(dc))
+            return;
+
+        int numVisible = this.pointSet.getNumVisible();
+        if (numVisible == 0)
+            return;
+
+        if (!this.getTextureAtlas().bind(dc))
+            return;
+
+        int numQuads = this.fillBuffers(dc, numVisible);
+        if (numQuads > 0)
+            this.draw(dc, numQuads, true);
+    }
+
+    @Override
+    protected void doPick(DrawContext dc, Point pickPoint)
+    {
+        if (!this.prepare(dc))
+            return;
+
+        int numCandidates = this.findPickCandidates(dc, pickPoint);
+        if (numCandidates == 0)
+            return;
+
+        this.pickSupport.clearPickList();
+        this.fillPickBuffers(dc, numCandidates);
+
+        this.pickSupport.beginPicking(dc);
+        try
+        {
+            this.draw(dc, numCandidates, false);
+        }
+        finally
+        {
+            this.pickSupport.endPicking(dc);
+            this.pickSupport.resolvePick(dc, pickPoint, this);
+        }
+    }
+
+    /**
+     * Brings the point set's model coordinate points up to date, and culls and projects the point set for the current
+     * frame. This is done once per frame, so that rendering and picking share the results.
+     *
+     * @param dc the current draw context.
+     *
+     * @return true if the point set is ready to draw, otherwise false.
+     */
+    protected boolean prepare(DrawContext dc)
+    {
+        View view = dc.getView();
+        Globe globe = dc.getGlobe();
+        if (view == null || globe == null)
+            return false;
+
+        if (dc.getFrameTimeStamp() == this.frameTimestamp)
+            return true;
+
+        // Points are never hidden by a flat globe. Otherwise use a sphere slightly inside the ellipsoid, so that it
+        // never hides points on the near side of the globe.
+        double occluderRadius = (globe instanceof FlatGlobe) ? 0
+            : 0.99 * Math.min(globe.getEquatorialRadius(), globe.getPolarRadius());
+
+        synchronized (this.pointSet)
+        {
+            this.pointSet.updatePoints(globe, dc.getVerticalExaggeration());
+            this.pointSet.cull(view.getFrustumInModelCoordinates());
+            this.pointSet.project(view.getModelviewMatrix(), view.getProjectionMatrix(), view.getViewport(),
+                view.getEyePoint(), occluderRadius);
+        }
+
+        this.updateStyles();
+        this.frameTimestamp = dc.getFrameTimeStamp();
+
+        return true;
+    }
+
+    /** Adds the images of new styles to the texture atlas, and computes the screen size of each style's sprite. */
+    protected void updateStyles()
+    {
+        int numStyles = this.styles.size();
+        if (this.halfWidths.length != numStyles)
+        {
+            this.halfWidths = new double[numStyles];
+            this.halfHeights = new double[numStyles];
+        }
+
+        TextureAtlas atlas = this.getTextureAtlas();
+        for (int i = 0; i < numStyles; i++)
+        {
+            Style style = this.styles.get(i);
+            BufferedImage image = style.getImage() != null ? style.getImage() : this.getDefaultImage();
+            if (!atlas.contains(image))
+                atlas.add(image, image);
+
+            this.halfWidths[i] = style.getScale() * image.getWidth() / 2;
+            this.halfHeights[i] = style.getScale() * image.getHeight() / 2;
+        }
+    }
+
+    protected TextureAtlas getTextureAtlas()
+    {
+        if (this.textureAtlas == null)
+            this.textureAtlas = new TextureAtlas(256, 256, 2048, 2048);
+
+        return this.textureAtlas;
+    }
+
+    protected BufferedImage getDefaultImage()
+    {
+        if (this.defaultImage == null)
+        {
+            this.defaultImage = new BufferedImage(DEFAULT_DOT_SIZE, DEFAULT_DOT_SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = this.defaultImage.createGraphics();
+            try
+            {
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g.setColor(Color.WHITE);
+                g.fillOval(0, 0, DEFAULT_DOT_SIZE, DEFAULT_DOT_SIZE);
+            }
+            finally
+            {
+                g.dispose();
+            }
+        }
+
+        return this.defaultImage;
+    }
+
+    protected void ensureBufferCapacity(int numSprites)
+    {
+        int numVertices = 4 * numSprites;
+        if (this.vertices == null || this.vertices.capacity() < VERTEX_STRIDE * numVertices)
+        {
+            int capacity = Math.max(numVertices, this.vertices != null ? this.vertices.capacity() / VERTEX_STRIDE : 0);
+            capacity = Math.max(capacity, 3 * capacity / 2);
+            this.vertices = Buffers.newDirectFloatBuffer(VERTEX_STRIDE * capacity);
+            this.colors = Buffers.newDirectByteBuffer(4 * capacity);
+        }
+
+        this.vertices.clear();
+        this.colors.clear();
+    }
+
+    /**
+     * Fills the vertex and color buffers with one textured quad per visible point.
+     *
+     * @param dc         the current draw context.
+     * @param numVisible the number of visible points.
+     *
+     * @return the number of quads added. Points whose style number has no style are skipped.
+     */
+    protected int fillBuffers(DrawContext dc, int numVisible)
+    {
+        this.ensureBufferCapacity(numVisible);
+
+        int numStyles = this.styles.size();
+        TextureCoords[] texCoords = new TextureCoords[numStyles];
+        byte[] styleColors = new byte[4 * numStyles];
+        for (int i = 0; i < numStyles; i++)
+        {
+            Style style = this.styles.get(i);
+            texCoords[i] = this.getTextureAtlas().getTexCoords(
+                style.getImage() != null ? style.getImage() : this.getDefaultImage());
+
+            Color color = style.getColor() != null ? style.getColor() : Color.WHITE;
+            styleColors[4 * i] = (byte) color.getRed();
+            styleColors[4 * i + 1] = (byte) color.getGreen();
+            styleColors[4 * i + 2] = (byte) color.getBlue();
+            styleColors[4 * i + 3] = (byte) (color.getAlpha() * this.getOpacity());
+        }
+
+        MassPointSet points = this.pointSet;
+        int n = 0;
+        for (int i = 0; i < numVisible; i++)
+        {
+            int index = points.getVisibleIndex(i);
+            int style = points.getStyle(index);
+            if (style < 0 || style >= numStyles || texCoords[style] == null)
+                continue;
+
+            double scale = (points.getState(index) & MassPointSet.STATE_HIGHLIGHTED) != 0 ? this.highlightScale : 1;
+            TextureCoords tc = texCoords[style];
+            this.putQuad(points.getScreenX(i), points.getScreenY(i), points.getScreenDepth(i),
+                (float) (scale * this.halfWidths[style]), (float) (scale * this.halfHeights[style]),
+                tc.left(), tc.bottom(), tc.right(), tc.top());
+
+            for (int v = 0; v < 4; v++)
+            {
+                this.colors.put(styleColors, 4 * style, 4);
+            }
+            n++;
+        }
+
+        this.vertices.flip();
+        this.colors.flip();
+
+        return n;
+    }
+
+    /**
+     * Finds the points to draw in pick mode: the nearest point under the pick point, and the points whose sprites
+     * intersect the pick rectangle.
+     *
+     * @param dc        the current draw context.
+     * @param pickPoint the pick point, in AWT screen coordinates. May be null.
+     *
+     * @return the number of pick candidates.
+     */
+    protected int findPickCandidates(DrawContext dc, Point pickPoint)
+    {
+        MassPointSet points = this.pointSet;
+        int viewportHeight = dc.getView().getViewport().height;
+        int n = 0;
+
+        int nearest = -1;
+        if (pickPoint != null)
+        {
+            nearest = points.pick(pickPoint.x, viewportHeight - pickPoint.y - 1, this.halfWidths, this.halfHeights);
+            if (nearest >= 0)
+                this.pickCandidates[n++] = nearest;
+        }
+
+        Rectangle rect = dc.getPickRectangle();
+        if (rect == null || rect.isEmpty())
+            return n;
+
+        // Convert the rectangle from AWT coordinates to OpenGL window coordinates.
+        double minX = rect.getMinX();
+        double maxX = rect.getMaxX();
+        double minY = viewportHeight - rect.getMaxY();
+        double maxY = viewportHeight - rect.getMinY();
+
+        for (int i = 0; i < points.getNumVisible(); i++)
+        {
+            int style = points.getStyle(points.getVisibleIndex(i));
+            if (i == nearest || style < 0 || style >= this.halfWidths.length)
+                continue;
+
+            float x = points.getScreenX(i);
+            float y = points.getScreenY(i);
+            if (x + this.halfWidths[style] < minX || x - this.halfWidths[style] > maxX
+                || y + this.halfHeights[style] < minY || y - this.halfHeights[style] > maxY)
+                continue;
+
+            if (n == this.pickCandidates.length)
+                this.pickCandidates = Arrays.copyOf(this.pickCandidates, 2 * n);
+            this.pickCandidates[n++] = i;
+        }
+
+        return n;
+    }
+
+    /**
+     * Fills the vertex and color buffers with one quad per pick candidate, each in a unique pick color, and registers
+     * the candidates with the pick support.
+     *
+     * @param dc            the current draw context.
+     * @param numCandidates the number of pick candidates.
+     */
+    protected void fillPickBuffers(DrawContext dc, int numCandidates)
+    {
+        this.ensureBufferCapacity(numCandidates);
+
+        MassPointSet points = this.pointSet;
+        for (int c = 0; c < numCandidates; c++)
+        {
+            int i = this.pickCandidates[c];
+            int index = points.getVisibleIndex(i);
+            int style = points.getStyle(index);
+
+            this.putQuad(points.getScreenX(i), points.getScreenY(i), points.getScreenDepth(i),
+                (float) this.halfWidths[style], (float) this.halfHeights[style], 0, 0, 0, 0);
+
+            Color color = dc.getUniquePickColor();
+            for (int v = 0; v < 4; v++)
+            {
+                this.colors.put((byte) color.getRed()).put((byte) color.getGreen()).put((byte) color.getBlue())
+                    .put((byte) 255);
+            }
+
+            this.pickSupport.addPickableObject(color.getRGB(), points.getId(index),
+                Position.fromDegrees(points.getLatitude(index), points.getLongitude(index),
+                    points.getAltitude(index)));
+        }
+
+        this.vertices.flip();
+        this.colors.flip();
+    }
+
+    protected void putQuad(float x, float y, float depth, float halfWidth, float halfHeight, float s0, float t0,
+        float s1, float t1)
+    {
+        // The orthographic projection maps z = 1 to depth 0 and z = -1 to depth 1.
+        float z = 1 - 2 * Math.max(0, depth - DEPTH_OFFSET);
+        this.vertices.put(x - halfWidth).put(y - halfHeight).put(z).put(s0).put(t0);
+        this.vertices.put(x + halfWidth).put(y - halfHeight).put(z).put(s1).put(t0);
+        this.vertices.put(x + halfWidth).put(y + halfHeight).put(z).put(s1).put(t1);
+        this.vertices.put(x - halfWidth).put(y + halfHeight).put(z).put(s0).put(t1);
+    }
+
+    /**
+     * Draws the quads in the vertex and color buffers in screen coordinates.
+     *
+     * @param dc       the current draw context.
+     * @param numQuads the number of quads to draw.
+     * @param textured true to texture the quads with the bound texture atlas, false to draw them in solid colors.
+     */
+    protected void draw(DrawContext dc, int numQuads, boolean textured)
+    {
+        GL2 gl = dc.getGL().getGL2(); // GL initialization checks for GL2 compatibility.
+        Rectangle viewport = dc.getView().getViewport();
+        OGLStackHandler osh = new OGLStackHandler();
+
+        osh.pushAttrib(gl, GL2.GL_DEPTH_BUFFER_BIT | GL2.GL_COLOR_BUFFER_BIT | GL2.GL_ENABLE_BIT
+            | GL2.GL_TRANSFORM_BIT);
+        osh.pushClientAttrib(gl, GL2.GL_CLIENT_VERTEX_ARRAY_BIT);
+        try
+        {
+            osh.pushProjectionIdentity(gl);
+            gl.glOrtho(0d, viewport.width, 0d, viewport.height, -1d, 1d);
+            osh.pushModelviewIdentity(gl);
+
+            // Apply the depth buffer but don't change it (for screen-space shapes).
+            if (!dc.isDeepPickingEnabled())
+                gl.glEnable(GL.GL_DEPTH_TEST);
+            gl.glDepthMask(false);
+            gl.glDepthFunc(GL.GL_LEQUAL);
+
+            gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+            gl.glVertexPointer(3, GL.GL_FLOAT, 4 * VERTEX_STRIDE, this.vertices.position(0));
+            gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
+            gl.glColorPointer(4, GL.GL_UNSIGNED_BYTE, 0, this.colors);
+
+            if (textured)
+            {
+                gl.glEnable(GL.GL_TEXTURE_2D);
+                gl.glEnable(GL.GL_BLEND);
+                OGLUtil.applyBlending(gl, false);
+
+                // Suppress any fully transparent image pixels.
+                gl.glEnable(GL2.GL_ALPHA_TEST);
+                gl.glAlphaFunc(GL2.GL_GREATER, 0.001f);
+
+                gl.glEnableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+                gl.glTexCoordPointer(2, GL.GL_FLOAT, 4 * VERTEX_STRIDE, this.vertices.position(3));
+            }
+
+            gl.glDrawArrays(GL2.GL_QUADS, 0, 4 * numQuads);
+        }
+        finally
+        {
+            this.vertices.position(0);
+            if (textured)
+                gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+            osh.pop(gl);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return Logging.getMessage("layers.MassPointLayer.Name");
+    }
+}
@@ -8,12 +8,12 @@ package gov.nasa.worldwind.layers;
 import gov.nasa.worldwind.*;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.event.*;
-import gov.nasa.worldwind.pick.PickSupport;
+import gov.nasa.worldwind.pick.*;
 import gov.nasa.worldwind.render.*;
 import gov.nasa.worldwind.util.Logging;
 
 import javax.media.opengl.GL2;
-import java.util.Collection;
+import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
@@ -389,6 +389,15 @@ public class RenderableLayer extends AbstractLayer
 
     protected void doPick(DrawContext dc, Iterable<? extends Renderable> renderables, java.awt.Point pickPoint)
     {
+        // Analytically pickable renderables describe their geometry to the scene controller's analytic pick support
+        // rather than drawing in pick colors. Only the remaining renderables are picked by color.
+        if (dc.getAnalyticPickSupport() != null)
+        {
+            renderables = this.addAnalyticPickGeometry(dc, renderables);
+            if (!renderables.iterator().hasNext())
+                return;
+        }
+
         GL2 gl = dc.getGL().getGL2(); // GL initialization checks for GL2 compatibility.
         this.pickSupport.clearPickList();
         this.pickSupport.beginPicking(dc);
@@ -440,6 +449,53 @@ public class RenderableLayer extends AbstractLayer
         }
     }
 
+    /**
+     * Adds the pickable geometry of the {@link AnalyticPickable} renderables to the draw context's analytic pick
+     * support, and returns the renderables that must be picked by color.
+     *
+     * @param dc          the current draw context.
+     * @param renderables the renderables to pick.
+     *
+     * @return the renderables that are not analytically pickable.
+     */
+    protected Iterable<? extends Renderable> addAnalyticPickGeometry(DrawContext dc,
+        Iterable<? extends Renderable> renderables)
+    {
+        AnalyticPickSupport analyticPickSupport = dc.getAnalyticPickSupport();
+        ArrayList<Renderable> colorPicked = new ArrayList<Renderable>();
+
+        analyticPickSupport.setCurrentLayer(this);
+        try
+        {
+            for (Renderable renderable : renderables)
+            {
+                if (renderable instanceof AnalyticPickable)
+                {
+                    try
+                    {
+                        ((AnalyticPickable) renderable).addAnalyticPickGeometry(dc, analyticPickSupport);
+                    }
+                    catch (Exception e)
+                    {
+                        String msg = Logging.getMessage("generic.ExceptionWhilePickingRenderable");
+                        Logging.logger().severe(msg);
+                        Logging.logger().log(java.util.logging.Level.FINER, msg, e); // show exception for this level
+                    }
+                }
+                else if (renderable != null)
+                {
+                    colorPicked.add(renderable);
+                }
+            }
+        }
+        finally
+        {
+            analyticPickSupport.setCurrentLayer(null);
+        }
+
+        return colorPicked;
+    }
+
     protected void doRender(DrawContext dc, Iterable<? extends Renderable> renderables)
     {
         for (Renderable renderable : renderables)
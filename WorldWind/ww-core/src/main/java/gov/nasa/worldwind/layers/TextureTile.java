@@ -44,7 +44,7 @@ public class TextureTile extends Tile implements SurfaceTile
         if (!WorldWind.getMemoryCacheSet().containsCache(TextureTile.class.getName()))
         {
             long size = Configuration.getLongValue(AVKey.TEXTURE_IMAGE_CACHE_SIZE, 3000000L);
-            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache cache = new LongKeyMemoryCache((long) (0.85 * size), size);
             cache.setName("Texture Tiles");
             WorldWind.getMemoryCacheSet().addCache(TextureTile.class.getName(), cache);
         }
@@ -248,29 +248,25 @@ public class TextureTile extends Tile implements SurfaceTile
 
         TextureTile[] subTiles = new TextureTile[4];
 
-        TileKey key = this.createSubTileKey(nextLevel, 2 * row, 2 * col);
-        TextureTile subTile = this.getTileFromMemoryCache(key);
+        TextureTile subTile = this.getTileFromMemoryCache(nextLevel, 2 * row, 2 * col);
         if (subTile != null)
             subTiles[0] = subTile;
         else
             subTiles[0] = this.createSubTile(new Sector(p0, p1, t0, t1), nextLevel, 2 * row, 2 * col);
 
-        key = this.createSubTileKey(nextLevel, 2 * row, 2 * col + 1);
-        subTile = this.getTileFromMemoryCache(key);
+        subTile = this.getTileFromMemoryCache(nextLevel, 2 * row, 2 * col + 1);
         if (subTile != null)
             subTiles[1] = subTile;
         else
             subTiles[1] = this.createSubTile(new Sector(p0, p1, t1, t2), nextLevel, 2 * row, 2 * col + 1);
 
-        key = this.createSubTileKey(nextLevel, 2 * row + 1, 2 * col);
-        subTile = this.getTileFromMemoryCache(key);
+        subTile = this.getTileFromMemoryCache(nextLevel, 2 * row + 1, 2 * col);
         if (subTile != null)
             subTiles[2] = subTile;
         else
             subTiles[2] = this.createSubTile(new Sector(p1, p2, t0, t1), nextLevel, 2 * row + 1, 2 * col);
 
-        key = this.createSubTileKey(nextLevel, 2 * row + 1, 2 * col + 1);
-        subTile = this.getTileFromMemoryCache(key);
+        subTile = this.getTileFromMemoryCache(nextLevel, 2 * row + 1, 2 * col + 1);
         if (subTile != null)
             subTiles[3] = subTile;
         else
@@ -318,6 +314,30 @@ public class TextureTile extends Tile implements SurfaceTile
         return (TextureTile) getMemoryCache().getObject(tileKey);
     }
 
+    /**
+     * Returns the tile at a level, row and column if it's in the memory cache. When the memory cache is keyed by packed
+     * tile keys this finds the tile without allocating a tile key. Otherwise it looks up the key returned by {@link
+     * #createSubTileKey(gov.nasa.worldwind.util.Level, int, int)}.
+     *
+     * @param level the tile's level.
+     * @param row   the tile's row.
+     * @param col   the tile's column.
+     *
+     * @return the tile, or null if it's not in the memory cache.
+     */
+    protected TextureTile getTileFromMemoryCache(Level level, int row, int col)
+    {
+        MemoryCache cache = getMemoryCache();
+        if (cache instanceof LongKeyMemoryCache)
+        {
+            long key = PackedTileKey.pack(level.getCacheName(), level.getLevelNumber(), row, col);
+            if (key != PackedTileKey.NONE)
+                return (TextureTile) ((LongKeyMemoryCache) cache).getObject(key);
+        }
+
+        return this.getTileFromMemoryCache(this.createSubTileKey(level, row, col));
+    }
+
     protected void updateMemoryCache()
     {
         if (this.getTileFromMemoryCache(this.getTileKey()) != null)
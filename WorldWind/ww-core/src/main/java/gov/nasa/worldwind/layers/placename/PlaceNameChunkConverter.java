@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.layers.placename;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+
+/**
+ * Converts the GML place name chunks already in a file store to the binary form described by {@link
+ * PlaceNameChunkFormat}, so that {@link PlaceNameLayer} maps them without parsing them the first time they're drawn.
+ * Each binary chunk is written next to its GML chunk, which is left in place. GML chunks whose binary chunk is already
+ * up to date are skipped.
+ * <p/>
+ * The converter may be run from the command line with the place name cache directories to convert as arguments, such
+ * as the <code>Earth/PlaceNames</code> directory of the file store.
+ *
+ * @version $Id$
+ */
+public class PlaceNameChunkConverter
+{
+    /**
+     * Converts the GML place name chunks in a directory and its subdirectories.
+     *
+     * @param directory the directory to convert.
+     *
+     * @return the number of chunks converted.
+     *
+     * @throws IllegalArgumentException if the directory is null.
+     */
+    public static int convert(File directory)
+    {
+        if (directory == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int count = 0;
+
+        File[] files = directory.listFiles();
+        for (File file : files != null ? files : new File[0])
+        {
+            if (file.isDirectory())
+            {
+                count += convert(file);
+                continue;
+            }
+
+            if (!file.getName().endsWith(PlaceNameChunkFormat.GML_SUFFIX))
+                continue;
+
+            File binaryFile = new File(PlaceNameChunkFormat.getBinaryPath(file.getPath()));
+            if (binaryFile.exists() && binaryFile.lastModified() >= file.lastModified())
+                continue;
+
+            if (convertFile(file, binaryFile))
+                count++;
+        }
+
+        return count;
+    }
+
+    protected static boolean convertFile(File file, File binaryFile)
+    {
+        ByteBuffer buffer;
+        try
+        {
+            buffer = PlaceNameLayer.readTileBuffer(file.toURI().toURL());
+        }
+        catch (IOException e)
+        {
+            buffer = null;
+        }
+
+        if (buffer == null)
+        {
+            Logging.logger().warning(Logging.getMessage("generic.ExceptionAttemptingToReadFile", file));
+            return false;
+        }
+
+        try
+        {
+            PlaceNameChunkFormat.writeFile(buffer, binaryFile);
+            return true;
+        }
+        catch (IOException e)
+        {
+            String message = Logging.getMessage("generic.ExceptionAttemptingToWriteTo", binaryFile);
+            Logging.logger().log(Level.WARNING, message, e);
+            return false;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        for (String arg : args)
+        {
+            long start = System.currentTimeMillis();
+            int count = convert(new File(arg));
+            System.out.printf("Converted %d place name chunks in %s in %d ms\n", count, arg,
+                System.currentTimeMillis() - start);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.layers.placename;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes and reads the compact binary form of a place name chunk. {@link PlaceNameLayer} converts each downloaded GML
+ * chunk to this form once, stores it in the file store next to the GML file, and memory-maps it on subsequent loads so
+ * that the chunk's names and positions are read directly from the mapped file.
+ * <p/>
+ * The form is a 20 byte header followed by the chunk's arrays, all in big-endian byte order: <ul> <li>header: magic
+ * number, version, flags, entry count and text length in bytes, each an int</li> <li>positions: latitude and longitude
+ * in degrees for each entry, as floats</li> <li>text offsets: the byte offset of each entry's name in the text, plus
+ * the text length, as ints</li> <li>ranks: an int for each entry, present only if the {@link #HAS_RANK} flag is
+ * set</li> <li>populations: an int for each entry, present only if the {@link #HAS_POPULATION} flag is set</li>
+ * <li>text: the entries' names in UTF-8</li> </ul>
+ *
+ * @version $Id$
+ */
+public class PlaceNameChunkFormat
+{
+    public static final int MAGIC = 0x5757504E; // "WWPN"
+    public static final int VERSION = 1;
+    public static final int HAS_RANK = 0x1;
+    public static final int HAS_POPULATION = 0x2;
+    public static final int HEADER_SIZE = 20;
+    public static final String BINARY_SUFFIX = ".wwpn";
+    public static final String GML_SUFFIX = ".xml.gz";
+
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Encodes place name entries in the binary chunk form.
+     *
+     * @param positions   the latitude and longitude in degrees of each entry, interleaved. Must contain at least two
+     *                    values per name.
+     * @param names       the name of each entry.
+     * @param ranks       the rank of each entry. May be null, in which case the chunk has no ranks.
+     * @param populations the population of each entry. May be null, in which case the chunk has no populations.
+     *
+     * @return a buffer containing the encoded chunk, positioned at zero.
+     *
+     * @throws IllegalArgumentException if the positions or names are null, or if an array is too short for the number
+     *                                  of names.
+     */
+    public static ByteBuffer encode(double[] positions, CharSequence[] names, int[] ranks, int[] populations)
+    {
+        if (positions == null || names == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int numEntries = names.length;
+        if (positions.length < 2 * numEntries || (ranks != null && ranks.length < numEntries)
+            || (populations != null && populations.length < numEntries))
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength", positions.length);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        byte[][] text = new byte[numEntries][];
+        int textLength = 0;
+        for (int i = 0; i < numEntries; i++)
+        {
+            text[i] = names[i].toString().getBytes(UTF8);
+            textLength += text[i].length;
+        }
+
+        int flags = (ranks != null ? HAS_RANK : 0) | (populations != null ? HAS_POPULATION : 0);
+        ByteBuffer buffer = ByteBuffer.allocate(computeSize(flags, numEntries, textLength));
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(numEntries).putInt(textLength);
+
+        for (int i = 0; i < 2 * numEntries; i++)
+        {
+            buffer.putFloat((float) positions[i]);
+        }
+
+        int offset = 0;
+        for (int i = 0; i < numEntries; i++)
+        {
+            buffer.putInt(offset);
+            offset += text[i].length;
+        }
+        buffer.putInt(offset);
+
+        for (int i = 0; ranks != null && i < numEntries; i++)
+        {
+            buffer.putInt(ranks[i]);
+        }
+
+        for (int i = 0; populations != null && i < numEntries; i++)
+        {
+            buffer.putInt(populations[i]);
+        }
+
+        for (byte[] bytes : text)
+        {
+            buffer.put(bytes);
+        }
+
+        buffer.rewind();
+        return buffer;
+    }
+
+    protected static int computeSize(int flags, int numEntries, int textLength)
+    {
+        int size = HEADER_SIZE + 4 * (2 * numEntries) + 4 * (numEntries + 1) + textLength;
+        if ((flags & HAS_RANK) != 0)
+            size += 4 * numEntries;
+        if ((flags & HAS_POPULATION) != 0)
+            size += 4 * numEntries;
+
+        return size;
+    }
+
+    /**
+     * Indicates whether a buffer holds a complete chunk in this version of the binary form.
+     *
+     * @param buffer the buffer to test.
+     *
+     * @return true if the buffer's header is valid and its size matches the header, otherwise false.
+     */
+    public static boolean isValid(ByteBuffer buffer)
+    {
+        if (buffer == null || buffer.capacity() < HEADER_SIZE)
+            return false;
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            return false;
+
+        int numEntries = getNumEntries(buffer);
+        int textLength = buffer.getInt(16);
+        if (numEntries < 0 || textLength < 0)
+            return false;
+
+        return buffer.capacity() == computeSize(getFlags(buffer), numEntries, textLength)
+            && buffer.getInt(getTextOffsetsPosition(buffer) + 4 * numEntries) == textLength;
+    }
+
+    public static int getFlags(ByteBuffer buffer)
+    {
+        return buffer.getInt(8);
+    }
+
+    public static int getNumEntries(ByteBuffer buffer)
+    {
+        return buffer.getInt(12);
+    }
+
+    /**
+     * Returns a view of a chunk's positions: the latitude and longitude in degrees of each entry, interleaved.
+     *
+     * @param buffer the chunk.
+     *
+     * @return the chunk's positions.
+     */
+    public static FloatBuffer getPositions(ByteBuffer buffer)
+    {
+        return slice(buffer, HEADER_SIZE, 4 * 2 * getNumEntries(buffer)).asFloatBuffer();
+    }
+
+    /**
+     * Returns a view of a chunk's text offsets: the byte offset of each entry's name within the text, followed by the
+     * text length.
+     *
+     * @param buffer the chunk.
+     *
+     * @return the chunk's text offsets.
+     */
+    public static IntBuffer getTextOffsets(ByteBuffer buffer)
+    {
+        return slice(buffer, getTextOffsetsPosition(buffer), 4 * (getNumEntries(buffer) + 1)).asIntBuffer();
+    }
+
+    /**
+     * Returns a view of a chunk's ranks.
+     *
+     * @param buffer the chunk.
+     *
+     * @return the chunk's ranks, or null if the chunk has none.
+     */
+    public static IntBuffer getRanks(ByteBuffer buffer)
+    {
+        if ((getFlags(buffer) & HAS_RANK) == 0)
+            return null;
+
+        int numEntries = getNumEntries(buffer);
+        return slice(buffer, getTextOffsetsPosition(buffer) + 4 * (numEntries + 1), 4 * numEntries).asIntBuffer();
+    }
+
+    /**
+     * Returns a view of a chunk's populations.
+     *
+     * @param buffer the chunk.
+     *
+     * @return the chunk's populations, or null if the chunk has none.
+     */
+    public static IntBuffer getPopulations(ByteBuffer buffer)
+    {
+        int flags = getFlags(buffer);
+        if ((flags & HAS_POPULATION) == 0)
+            return null;
+
+        int numEntries = getNumEntries(buffer);
+        int position = getTextOffsetsPosition(buffer) + 4 * (numEntries + 1);
+        if ((flags & HAS_RANK) != 0)
+            position += 4 * numEntries;
+
+        return slice(buffer, position, 4 * numEntries).asIntBuffer();
+    }
+
+    /**
+     * Returns a view of a chunk's UTF-8 text, which holds every entry's name.
+     *
+     * @param buffer the chunk.
+     *
+     * @return the chunk's text.
+     */
+    public static ByteBuffer getText(ByteBuffer buffer)
+    {
+        int textLength = buffer.getInt(16);
+        return slice(buffer, buffer.capacity() - textLength, textLength);
+    }
+
+    /**
+     * Decodes an entry's name from a chunk's text. Names that are entirely ASCII, which most are, are copied directly
+     * rather than passed through the UTF-8 decoder.
+     *
+     * @param text  the chunk's text, as returned by {@link #getText(java.nio.ByteBuffer)}.
+     * @param begin the byte offset of the name's first byte.
+     * @param end   the byte offset following the name's last byte.
+     *
+     * @return the entry's name.
+     */
+    public static String decodeText(ByteBuffer text, int begin, int end)
+    {
+        byte[] bytes = new byte[end - begin];
+        boolean ascii = true;
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = text.get(begin + i);
+            ascii &= bytes[i] >= 0;
+        }
+
+        if (!ascii)
+            return new String(bytes, UTF8);
+
+        char[] chars = new char[bytes.length];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            chars[i] = (char) bytes[i];
+        }
+
+        return new String(chars);
+    }
+
+    protected static int getTextOffsetsPosition(ByteBuffer buffer)
+    {
+        return HEADER_SIZE + 4 * 2 * getNumEntries(buffer);
+    }
+
+    protected static ByteBuffer slice(ByteBuffer buffer, int position, int length)
+    {
+        // Work on a duplicate so that the chunk's position and limit are unaffected and views may be created by
+        // several threads. Sliced buffers are big-endian, which is the byte order of the binary form.
+        ByteBuffer dup = buffer.duplicate();
+        dup.limit(position + length);
+        dup.position(position);
+        return dup.slice();
+    }
+
+    /**
+     * Memory-maps a binary chunk file.
+     *
+     * @param file the file to map.
+     *
+     * @return a read-only buffer mapping the file.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     * @throws IOException              if the file cannot be mapped or doesn't contain a valid chunk.
+     */
+    public static ByteBuffer readFile(File file) throws IOException
+    {
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        ByteBuffer buffer = WWIO.mapFile(file);
+        if (!isValid(buffer))
+            throw new IOException(Logging.getMessage("generic.ExceptionAttemptingToReadFile", file));
+
+        return buffer;
+    }
+
+    /**
+     * Writes a chunk to a file. The chunk is written to a temporary file in the same directory that is then renamed,
+     * so that a partially written file is never found by readers.
+     *
+     * @param buffer the chunk to write.
+     * @param file   the file to write to. Any existing file is replaced.
+     *
+     * @throws IllegalArgumentException if the buffer or the file is null.
+     * @throws IOException              if the file cannot be written.
+     */
+    public static void writeFile(ByteBuffer buffer, File file) throws IOException
+    {
+        if (buffer == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        if (!WWIO.saveBuffer(buffer.duplicate(), tempFile, false))
+            throw new IOException(Logging.getMessage("generic.ExceptionAttemptingToWriteTo", file));
+
+        // File.renameTo doesn't replace an existing file on every platform.
+        if (file.exists() && !file.delete() || !tempFile.renameTo(file))
+        {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw new IOException(Logging.getMessage("generic.ExceptionAttemptingToWriteTo", file));
+        }
+    }
+
+    /**
+     * Returns the path of the binary chunk corresponding to a GML chunk.
+     *
+     * @param gmlPath the path of the GML chunk.
+     *
+     * @return the path of the binary chunk.
+     *
+     * @throws IllegalArgumentException if the path is null.
+     */
+    public static String getBinaryPath(String gmlPath)
+    {
+        if (gmlPath == null)
+        {
+            String message = Logging.getMessage("nullValue.PathIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (gmlPath.endsWith(GML_SUFFIX))
+            gmlPath = gmlPath.substring(0, gmlPath.length() - GML_SUFFIX.length());
+
+        return gmlPath + BINARY_SUFFIX;
+    }
+}
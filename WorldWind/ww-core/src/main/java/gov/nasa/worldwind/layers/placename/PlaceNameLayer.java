@@ -453,40 +453,48 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
     // ============== Place Name Data Structures ======================= //
     // ============== Place Name Data Structures ======================= //
 
+    /**
+     * A chunk of place names in the binary form described by {@link PlaceNameChunkFormat}. The chunk reads names,
+     * positions, and the optional ranks and populations directly from the chunk's buffer, which is usually a mapped
+     * file, rather than copying them to arrays.
+     */
     protected static class PlaceNameChunk implements Cacheable
     {
         protected final PlaceNameService placeNameService;
-        protected final CharBuffer textArray;
-        protected final int[] textIndexArray;
-        protected final double[] latlonArray;
+        protected final ByteBuffer buffer;
+        protected final FloatBuffer positionArray;
+        protected final IntBuffer textOffsetArray;
+        protected final ByteBuffer textArray;
+        protected final IntBuffer rankArray;
+        protected final IntBuffer populationArray;
         protected final int numEntries;
         protected final long estimatedMemorySize;
 
-        protected PlaceNameChunk(PlaceNameService service, CharBuffer text, int[] textIndices,
-            double[] positions, int numEntries)
+        protected PlaceNameChunk(PlaceNameService service, ByteBuffer buffer)
         {
             this.placeNameService = service;
-            this.textArray = text;
-            this.textIndexArray = textIndices;
-            this.latlonArray = positions;
-            this.numEntries = numEntries;
+            this.buffer = buffer;
+            this.positionArray = PlaceNameChunkFormat.getPositions(buffer);
+            this.textOffsetArray = PlaceNameChunkFormat.getTextOffsets(buffer);
+            this.textArray = PlaceNameChunkFormat.getText(buffer);
+            this.rankArray = PlaceNameChunkFormat.getRanks(buffer);
+            this.populationArray = PlaceNameChunkFormat.getPopulations(buffer);
+            this.numEntries = PlaceNameChunkFormat.getNumEntries(buffer);
             this.estimatedMemorySize = this.computeEstimatedMemorySize();
         }
 
         protected long computeEstimatedMemorySize()
         {
-            long result = 0;
-            if (!textArray.isDirect())
-                result += (Character.SIZE / 8) * textArray.capacity();
-            result += (Integer.SIZE / 8) * textIndexArray.length;
-            result += (Double.SIZE / 8) * latlonArray.length;
-            return result;
+            // Count mapped chunks too. Their pages are resident once the chunk has been drawn, and counting them keeps
+            // the number of chunks held by the memory cache bounded.
+            return this.buffer.capacity();
         }
 
         protected Position getPosition(int index)
         {
             int latlonIndex = 2 * index;
-            return Position.fromDegrees(latlonArray[latlonIndex], latlonArray[latlonIndex + 1], 0);
+            return Position.fromDegrees(this.positionArray.get(latlonIndex), this.positionArray.get(latlonIndex + 1),
+                0);
         }
 
         protected PlaceNameService getPlaceNameService()
@@ -496,14 +504,28 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
 
         protected CharSequence getText(int index)
         {
-            int beginIndex = textIndexArray[index];
-            int endIndex = (index + 1 < numEntries) ? textIndexArray[index + 1] : textArray.length();
+            return PlaceNameChunkFormat.decodeText(this.textArray, this.textOffsetArray.get(index),
+                this.textOffsetArray.get(index + 1));
+        }
+
+        protected boolean hasRank()
+        {
+            return this.rankArray != null;
+        }
+
+        protected int getRank(int index)
+        {
+            return this.rankArray != null ? this.rankArray.get(index) : 0;
+        }
 
-            // Cast the textArray CharBuffer to a CharSequence before calling subSequence. Java 7 broke interface
-            // compatibility on this method by changing the return type to a CharBuffer. Compiling
-            // CharBuffer.subSequence on Java 7 results in a NoSuchMethodError on Java 6. We cast to a CharSequence in
-            // order to ensure that this code works on both Java 6 and Java 7 when compiled with Java 7.
-            return ((CharSequence) this.textArray).subSequence(beginIndex, endIndex);
+        protected boolean hasPopulation()
+        {
+            return this.populationArray != null;
+        }
+
+        protected int getPopulation(int index)
+        {
+            return this.populationArray != null ? this.populationArray.get(index) : 0;
         }
 
         public long getSizeInBytes()
@@ -810,21 +832,44 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
         }
     }
 
+    /**
+     * Loads a tile's place names from its GML file in the file store. The first load converts the GML to the binary
+     * form described by {@link PlaceNameChunkFormat} and stores it next to the GML file; later loads map the binary
+     * file instead of parsing the GML. The GML file is kept so that the file store still reports the tile as present.
+     *
+     * @param tile the tile to load.
+     * @param url  the location of the tile's GML file.
+     *
+     * @return true if the tile was loaded, otherwise false.
+     */
     protected boolean loadTile(Tile tile, java.net.URL url)
     {
+        String binaryPath = PlaceNameChunkFormat.getBinaryPath(tile.getFileCachePath());
+        java.net.URL binaryURL = this.getDataFileStore().findFile(binaryPath, false);
+
         if (WWIO.isFileOutOfDate(url, this.placeNameServiceSet.getExpiryTime()))
         {
             // The file has expired. Delete it then request download of newer.
             this.getDataFileStore().removeFile(url);
+            if (binaryURL != null)
+                this.getDataFileStore().removeFile(binaryURL);
             String message = Logging.getMessage("generic.DataFileExpired", url);
             Logging.logger().fine(message);
             return false;
         }
 
-        PlaceNameChunk tileData;
+        PlaceNameChunk tileData = null;
         synchronized (this.fileLock)
         {
-            tileData = readTileData(tile, url);
+            if (binaryURL != null && !isOlder(binaryURL, url))
+            {
+                tileData = readBinaryTileData(tile, binaryURL);
+                if (tileData == null)
+                    this.getDataFileStore().removeFile(binaryURL);
+            }
+
+            if (tileData == null)
+                tileData = this.convertTileData(tile, url, binaryPath);
         }
 
         if (tileData == null)
@@ -843,7 +888,80 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
         return true;
     }
 
+    protected static boolean isOlder(java.net.URL url, java.net.URL otherURL)
+    {
+        File file = WWIO.convertURLToFile(url);
+        File otherFile = WWIO.convertURLToFile(otherURL);
+        return file != null && otherFile != null && file.lastModified() < otherFile.lastModified();
+    }
+
+    /**
+     * Parses a tile's GML file and writes its binary form to the file store. The returned chunk maps the written file,
+     * or holds the binary form in memory if it can't be written.
+     *
+     * @param tile       the tile to convert.
+     * @param url        the location of the tile's GML file.
+     * @param binaryPath the file store path of the tile's binary file.
+     *
+     * @return the tile's place names, or null if the GML file can't be read.
+     */
+    protected PlaceNameChunk convertTileData(Tile tile, java.net.URL url, String binaryPath)
+    {
+        ByteBuffer buffer = readTileBuffer(url);
+        if (buffer == null)
+            return null;
+
+        File file = this.getDataFileStore().newFile(binaryPath);
+        if (file != null)
+        {
+            try
+            {
+                PlaceNameChunkFormat.writeFile(buffer, file);
+                buffer = PlaceNameChunkFormat.readFile(file);
+            }
+            catch (IOException e)
+            {
+                Logging.logger().log(Level.FINE, Logging.getMessage("generic.ExceptionAttemptingToWriteTo", file), e);
+            }
+        }
+
+        return new PlaceNameChunk(tile.getPlaceNameService(), buffer);
+    }
+
+    protected static PlaceNameChunk readBinaryTileData(Tile tile, java.net.URL url)
+    {
+        File file = WWIO.convertURLToFile(url);
+        if (file == null)
+            return null;
+
+        try
+        {
+            return new PlaceNameChunk(tile.getPlaceNameService(), PlaceNameChunkFormat.readFile(file));
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.FINE,
+                Logging.getMessage("layers.PlaceNameLayer.ExceptionAttemptingToReadFile", url.toString()), e);
+        }
+
+        return null;
+    }
+
     protected static PlaceNameChunk readTileData(Tile tile, java.net.URL url)
+    {
+        ByteBuffer buffer = readTileBuffer(url);
+        return buffer != null ? new PlaceNameChunk(tile.getPlaceNameService(), buffer) : null;
+    }
+
+    /**
+     * Parses a GML place name file and encodes its entries in the binary form described by {@link
+     * PlaceNameChunkFormat}.
+     *
+     * @param url the location of the gzipped GML file.
+     *
+     * @return a buffer holding the encoded entries, or null if the file can't be read.
+     */
+    protected static ByteBuffer readTileBuffer(java.net.URL url)
     {
         java.io.InputStream is = null;
 
@@ -858,7 +976,7 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
 
             GMLPlaceNameSAXHandler handler = new GMLPlaceNameSAXHandler();
             javax.xml.parsers.SAXParserFactory.newInstance().newSAXParser().parse(is, handler);
-            return handler.createPlaceNameChunk(tile.getPlaceNameService());
+            return handler.encodePlaceNameChunk();
         }
         catch (Exception e)
         {
@@ -883,13 +1001,6 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
         return null;
     }
 
-    protected static CharBuffer newCharBuffer(int numElements)
-    {
-        ByteBuffer bb = ByteBuffer.allocateDirect((Character.SIZE / 8) * numElements);
-        bb.order(ByteOrder.nativeOrder());
-        return bb.asCharBuffer();
-    }
-
     protected static class GMLPlaceNameSAXHandler extends org.xml.sax.helpers.DefaultHandler
     {
         protected static final String GML_FEATURE_MEMBER = "gml:featureMember";
@@ -912,11 +1023,20 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
 
         protected PlaceNameChunk createPlaceNameChunk(PlaceNameService service)
         {
-            int numChars = this.textArray.length();
-            CharBuffer textBuffer = newCharBuffer(numChars);
-            textBuffer.put(this.textArray.toString());
-            textBuffer.rewind();
-            return new PlaceNameChunk(service, textBuffer, this.textIndexArray, this.latlonArray, this.numEntries);
+            return new PlaceNameChunk(service, this.encodePlaceNameChunk());
+        }
+
+        protected ByteBuffer encodePlaceNameChunk()
+        {
+            // The GML place name services provide only names and positions, so the chunk has no ranks or populations.
+            String[] names = new String[this.numEntries];
+            for (int i = 0; i < this.numEntries; i++)
+            {
+                int endIndex = (i + 1 < this.numEntries) ? this.textIndexArray[i + 1] : this.textArray.length();
+                names[i] = this.textArray.substring(this.textIndexArray[i], endIndex);
+            }
+
+            return PlaceNameChunkFormat.encode(this.latlonArray, names, null, null);
         }
 
         protected void beginEntry()
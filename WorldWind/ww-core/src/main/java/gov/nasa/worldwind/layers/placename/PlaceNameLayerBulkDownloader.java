@@ -6,13 +6,13 @@
 
 package gov.nasa.worldwind.layers.placename;
 
-import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.cache.FileStore;
 import gov.nasa.worldwind.event.*;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.retrieve.*;
-import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.*;
 
+import java.io.File;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.*;
@@ -32,8 +32,7 @@ public class PlaceNameLayerBulkDownloader extends BulkRetrievalThread
     protected int MAX_TILE_COUNT_PER_REGION = 200;
 
     protected final PlaceNameLayer layer;
-    protected ArrayList<PlaceNameLayer.Tile> missingTiles;
-    protected long pollDelay = RETRIEVAL_SERVICE_POLL_DELAY;
+    protected BulkDownloadEngine<PlaceNameLayer.Tile> engine;
 
     /**
      * Constructs a downloader to retrieve placenames not currently available in the World Wind file cache.
@@ -86,22 +85,25 @@ public class PlaceNameLayerBulkDownloader extends BulkRetrievalThread
     {
         try
         {
-            // Cycle though placenameservices and find missing tiles
-            this.missingTiles = new ArrayList<PlaceNameLayer.Tile>();
-            ArrayList<PlaceNameLayer.Tile> allMissingTiles = this.getMissingTilesInSector(this.sector);
-
-            this.progress.setTotalCount(allMissingTiles.size());
-            // Submit missing tiles requests at 10 sec intervals
-            while (allMissingTiles.size() > 0)
+            ArrayList<PlaceNameLayer.Tile> tiles = this.getTilesInSector(this.sector);
+            this.progress.setTotalCount(tiles.size());
+            this.progress.setTotalSize(tiles.size() * AVG_TILE_SIZE);
+
+            // The engine checks which tiles are missing and retrieves them, blocking here while its pipeline is full.
+            this.engine = this.createEngine();
+            this.engine.start();
+            try
             {
-                transferMissingTiles(allMissingTiles, missingTiles, MAX_TILE_COUNT_PER_REGION);
-
-                while (missingTiles.size() > 0)
+                for (PlaceNameLayer.Tile tile : tiles)
                 {
-                    submitMissingTilesRequests();
-                    if (missingTiles.size() > 0)
-                        Thread.sleep(this.pollDelay);
+                    this.engine.addTile(tile);
                 }
+
+                this.engine.finish();
+            }
+            finally
+            {
+                this.engine.stop();
             }
         }
         catch (InterruptedException e)
@@ -117,37 +119,66 @@ public class PlaceNameLayerBulkDownloader extends BulkRetrievalThread
         }
     }
 
-    protected void transferMissingTiles(ArrayList<PlaceNameLayer.Tile> source,
-        ArrayList<PlaceNameLayer.Tile> destination, int maxCount)
+    /**
+     * Creates the engine that retrieves the missing tiles. A tile's journal key is formed from the index of its place
+     * name service and its row and column. The journal is kept in the first service's cache directory in the file
+     * store, so an interrupted download of the same sector and resolution resumes where it stopped.
+     *
+     * @return the bulk download engine.
+     */
+    protected BulkDownloadEngine<PlaceNameLayer.Tile> createEngine()
     {
-        int i = 0;
-        while (i < maxCount && source.size() > 0)
+        final Map<PlaceNameService, Integer> serviceIndices = new HashMap<PlaceNameService, Integer>();
+        int serviceCount = this.layer.getPlaceNameServiceSet().getServiceCount();
+        for (int i = 0; i < serviceCount; i++)
         {
-            destination.add(source.remove(0));
-            i++;
+            serviceIndices.put(this.layer.getPlaceNameServiceSet().getService(i), i);
         }
-    }
 
-    protected synchronized void submitMissingTilesRequests() throws InterruptedException
-    {
-        RetrievalService rs = WorldWind.getRetrievalService();
-        int i = 0;
-        while (this.missingTiles.size() > i && rs.isAvailable())
+        File journalFile = null;
+        if (serviceCount > 0)
+        {
+            File directory = new File(this.fileStore.getWriteLocation(),
+                this.layer.getPlaceNameServiceSet().getService(0).getFileCachePath());
+            journalFile = BulkDownloadEngine.getJournalFile(directory, this.sector, this.resolution);
+        }
+
+        return new BulkDownloadEngine<PlaceNameLayer.Tile>(this.progress, AVG_TILE_SIZE, journalFile)
         {
-            Thread.sleep(1); // generates InterruptedException if thread has been interrupted
+            protected boolean isTileAbsent(PlaceNameLayer.Tile tile)
+            {
+                return tile.getPlaceNameService().isResourceAbsent(
+                    tile.getPlaceNameService().getTileNumber(tile.row, tile.column));
+            }
 
-            PlaceNameLayer.Tile tile = this.missingTiles.get(i);
-            if (this.isTileLocalOrAbsent(tile))
+            protected boolean isTileLocal(PlaceNameLayer.Tile tile)
             {
-                // No need to request that tile anymore
-                this.missingTiles.remove(i);
+                return fileStore.findFile(tile.getFileCachePath(), false) != null;
             }
-            else
+
+            protected void tileLocal(PlaceNameLayer.Tile tile)
             {
-                this.layer.downloadTile(tile, new BulkDownloadPostProcessor(this.layer, tile, this.fileStore));
-                i++;
+                // The progress counts every tile in the sector, so remove local tiles from the total.
+                this.tileAbsent();
             }
-        }
+
+            protected void retrieveTile(PlaceNameLayer.Tile tile)
+            {
+                layer.downloadTile(tile, new BulkDownloadPostProcessor(layer, tile, fileStore));
+            }
+
+            protected TileKey getTileKey(PlaceNameLayer.Tile tile)
+            {
+                Integer index = serviceIndices.get(tile.getPlaceNameService());
+                return new TileKey(index != null ? index : 0, tile.row, tile.column,
+                    tile.getPlaceNameService().getFileCachePath());
+            }
+
+            protected String getTileHost(PlaceNameLayer.Tile tile)
+            {
+                return getHost(tile.getPlaceNameService().getService());
+            }
+        };
     }
 
     protected class BulkDownloadPostProcessor extends PlaceNameLayer.DownloadPostProcessor
@@ -161,8 +192,7 @@ public class PlaceNameLayerBulkDownloader extends BulkRetrievalThread
         {
             ByteBuffer buffer = super.run(retriever);
 
-            if (retriever.getState().equals(Retriever.RETRIEVER_STATE_SUCCESSFUL))
-                removeRetrievedTile(this.tile);
+            engine.retrievalCompleted(this.tile, retriever);
 
             if (hasRetrievalListeners())
                 callRetrievalListeners(retriever, this.tile);
@@ -178,17 +208,6 @@ public class PlaceNameLayerBulkDownloader extends BulkRetrievalThread
         super.callRetrievalListeners(new BulkRetrievalEvent(this.layer, eventType, tile.getFileCachePath()));
     }
 
-    protected synchronized void removeRetrievedTile(PlaceNameLayer.Tile tile)
-    {
-        this.missingTiles.remove(tile);
-        this.progress.setCurrentCount(this.progress.getCurrentCount() + 1);
-        this.progress.setCurrentSize(this.progress.getCurrentSize() + AVG_TILE_SIZE);
-        this.progress.setLastUpdateTime(System.currentTimeMillis());
-        // Estimate total size
-        this.progress.setTotalSize(
-            this.progress.getCurrentSize() / this.progress.getCurrentCount() * this.progress.getTotalCount());
-    }
-
     protected long getEstimatedMissingDataSize()
     {
         int tileCount;
@@ -233,6 +252,18 @@ public class PlaceNameLayerBulkDownloader extends BulkRetrievalThread
     protected ArrayList<PlaceNameLayer.Tile> getMissingTilesInSector(Sector sector) throws InterruptedException
     {
         ArrayList<PlaceNameLayer.Tile> allMissingTiles = new ArrayList<PlaceNameLayer.Tile>();
+        for (PlaceNameLayer.Tile tile : this.getTilesInSector(sector))
+        {
+            if (!this.isTileLocalOrAbsent(tile))
+                allMissingTiles.add(tile);
+        }
+
+        return allMissingTiles;
+    }
+
+    protected ArrayList<PlaceNameLayer.Tile> getTilesInSector(Sector sector)
+    {
+        ArrayList<PlaceNameLayer.Tile> tiles = new ArrayList<PlaceNameLayer.Tile>();
         int serviceCount = this.layer.getPlaceNameServiceSet().getServiceCount();
         for (int i = 0; i < serviceCount; i++)
         {
@@ -252,13 +283,13 @@ public class PlaceNameLayerBulkDownloader extends BulkRetrievalThread
 
                 for (PlaceNameLayer.Tile tile : baseTiles)
                 {
-                    if ((tile.getSector().intersects(sector)) && (!this.isTileLocalOrAbsent(tile)))
-                        allMissingTiles.add(tile);
+                    if (tile.getSector().intersects(sector))
+                        tiles.add(tile);
                 }
             }
         }
 
-        return allMissingTiles;
+        return tiles;
     }
 
     protected List<PlaceNameLayer.NavigationTile> navTilesVisible(PlaceNameLayer.NavigationTile tile, Sector sector)
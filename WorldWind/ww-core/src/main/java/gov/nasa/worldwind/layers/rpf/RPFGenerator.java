@@ -468,15 +468,16 @@ class RPFGenerator
                     // Lazily load the wavelet up to "preload resolution".
                     if (frame.codec == null)
                     {
-                        java.nio.ByteBuffer buffer = WWIO.readFileToBuffer(frame.waveletFile);
+                        // Map the file, so that only the preloaded levels at the start of each band are read.
+                        java.nio.ByteBuffer buffer = WWIO.mapFile(frame.waveletFile);
                         frame.codec = WaveletCodec.loadPartial(buffer, RPFGenerator.this.preloadRes);
                     }
                     codec = frame.codec;
                 }
                 else
                 {
-                    // Read wavelet file.
-                    java.nio.ByteBuffer buffer = WWIO.readFileToBuffer(frame.waveletFile);
+                    // Map the wavelet file, so that only the levels up to the requested resolution are read.
+                    java.nio.ByteBuffer buffer = WWIO.mapFile(frame.waveletFile);
                     codec = WaveletCodec.loadPartial(buffer, resolution);
                 }
 
@@ -7,7 +7,10 @@
 package gov.nasa.worldwind.ogc.collada;
 
 import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.xml.XMLEventParserContext;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
 import java.nio.FloatBuffer;
 import java.util.*;
 
@@ -32,6 +35,11 @@ public abstract class ColladaAbstractGeometry extends ColladaAbstractObject
 
     /** Inputs for the geometry. Inputs provide the geometry with vertices, texture coordinates, etc. */
     protected List<ColladaInput> inputs = new ArrayList<ColladaInput>();
+    /**
+     * Position of this geometry among the geometries of its document. Identifies the geometry's data in the document's
+     * {@link ColladaCompiledMeshes}.
+     */
+    protected int geometryIndex = -1;
 
     /**
      * Indicates the number of vertices per shape in the geometry.
@@ -60,6 +68,17 @@ public abstract class ColladaAbstractGeometry extends ColladaAbstractObject
         return this.inputs;
     }
 
+    /** {@inheritDoc} Overridden to add this geometry to its document's geometries. */
+    @Override
+    public Object parse(XMLEventParserContext ctx, XMLEvent event, Object... args) throws XMLStreamException
+    {
+        ColladaRoot root = this.getRoot();
+        if (root != null)
+            this.geometryIndex = root.addGeometry(this);
+
+        return super.parse(ctx, event, args);
+    }
+
     /**
      * Indicates the number of shapes (lines or triangles) in the geometry.
      *
@@ -116,7 +135,8 @@ public abstract class ColladaAbstractGeometry extends ColladaAbstractObject
     }
 
     /**
-     * Retrieve numbers from an accessor.
+     * Retrieve numbers from an accessor. If the document's meshes were read from its compiled form, the numbers are
+     * copied from the compiled data instead.
      *
      * @param buffer          Buffer to receive floats.
      * @param accessor        Accessor that will provide floats.
@@ -143,8 +163,22 @@ public abstract class ColladaAbstractGeometry extends ColladaAbstractObject
             throw new IllegalArgumentException(msg);
         }
 
+        ColladaRoot root = this.getRoot();
+        ColladaCompiledMeshes compiledMeshes = root != null ? root.getCompiledMeshes() : null;
+        if (compiledMeshes != null)
+        {
+            FloatBuffer compiled = compiledMeshes.getBuffer(this.geometryIndex, semantic);
+            if (compiled != null && compiled.remaining() == indexCount * floatsPerVertex)
+            {
+                buffer.put(compiled);
+                return;
+            }
+        }
+
         int[] indices = this.getIndices(semantic);
         float[] vertexCoords = accessor.getFloats();
+        if (indices == null || vertexCoords == null)
+            return;
 
         for (int i : indices)
         {
@@ -172,6 +206,8 @@ public abstract class ColladaAbstractGeometry extends ColladaAbstractObject
         int offset = input.getOffset();
 
         int[] intData = primitives.getIndices();
+        if (intData == null)
+            return null;
 
         int[] result = new int[this.getCount() * vertsPerShape];
         int ri = 0;
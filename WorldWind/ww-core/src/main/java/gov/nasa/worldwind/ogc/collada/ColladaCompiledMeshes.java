@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.ogc.collada;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.*;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * The resolved vertex data of the geometries in a COLLADA document, in a binary form that can be saved to a file and
+ * memory mapped when the document is loaded again. For each <i>triangles</i> and <i>lines</i> element, identified by
+ * its position in the document, the compiled form holds the vertex coordinates, normals and texture coordinates of
+ * every vertex of every shape, in the order in which {@link ColladaAbstractGeometry#getVertices(java.nio.FloatBuffer)}
+ * and its companion methods return them. The <i>p</i> indices are applied during compilation, so the compiled data is
+ * the same data that {@link gov.nasa.worldwind.ogc.collada.impl.ColladaMeshShape} copies into its vertex buffer.
+ * <p/>
+ * The file holds a header followed by the floats of each buffer. The header begins with a magic number that also
+ * identifies the byte order in which the file was written, followed by the format version, the number of geometries,
+ * the number of buffers, a CRC-32 checksum of the remainder of the file, and for each buffer the geometry's position,
+ * the input semantic, and the buffer's location in the file. The checksum is verified when the file is read, so that a
+ * damaged file is detected before the document is parsed.
+ *
+ * @version $Id$
+ * @see ColladaRoot#parse(Object...)
+ */
+public class ColladaCompiledMeshes
+{
+    /** Identifies a compiled meshes file. Also identifies the file's byte order. */
+    protected static final int MAGIC_NUMBER = 0x57574D43;
+    /** The version of the file format. Files of other versions are not read. */
+    protected static final int VERSION = 2;
+    /** The position of the checksum in the header. The checksum covers the remainder of the file. */
+    protected static final int CHECKSUM_OFFSET = 16;
+    /** The file store directory holding compiled meshes. */
+    protected static final String CACHE_DIRECTORY = "Collada/Compiled";
+
+    /** The number of geometries in the compiled document. */
+    protected int geometryCount;
+    /** The buffers of each geometry input, keyed by the geometry's position and the input's semantic. */
+    protected Map<String, FloatBuffer> buffers = new LinkedHashMap<String, FloatBuffer>();
+
+    protected ColladaCompiledMeshes(int geometryCount)
+    {
+        this.geometryCount = geometryCount;
+    }
+
+    /**
+     * Indicates the file store path of the compiled meshes for a document. The path identifies both the document and
+     * the version of the document, so that compiled meshes are not used after the document changes.
+     *
+     * @param source           the location of the document.
+     * @param modificationTime the document's modification time, in milliseconds since the epoch.
+     *
+     * @return the path for the document's compiled meshes.
+     *
+     * @throws IllegalArgumentException if the source is null.
+     */
+    public static String getCachePath(URL source, long modificationTime)
+    {
+        if (source == null)
+        {
+            String message = Logging.getMessage("nullValue.URLIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        String name = WWIO.replaceIllegalFileNameCharacters(WWIO.getFilename(source.getPath()));
+        return CACHE_DIRECTORY + "/" + name + "-" + Integer.toHexString(source.toString().hashCode()) + "-"
+            + Long.toHexString(modificationTime) + ".bin";
+    }
+
+    /**
+     * Compiles the vertex data of a document's geometries. The vertex data of every input that provides vertex
+     * coordinates, normals or texture coordinates is resolved.
+     *
+     * @param geometries the document's geometries, in document order.
+     *
+     * @return the compiled meshes, or null if a geometry's vertex coordinates cannot be resolved.
+     *
+     * @throws IllegalArgumentException if the geometry list is null.
+     */
+    public static ColladaCompiledMeshes compile(List<ColladaAbstractGeometry> geometries)
+    {
+        if (geometries == null)
+        {
+            String message = Logging.getMessage("nullValue.ListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        ColladaCompiledMeshes meshes = new ColladaCompiledMeshes(geometries.size());
+
+        for (int i = 0; i < geometries.size(); i++)
+        {
+            ColladaAbstractGeometry geometry = geometries.get(i);
+            int vertexCount = geometry.getCount() * geometry.getVerticesPerShape();
+
+            for (ColladaInput input : geometry.getInputs())
+            {
+                String semantic = input.getSemantic();
+                if (semantic == null || meshes.getBuffer(i, semantic) != null)
+                    continue;
+
+                ColladaAccessor accessor;
+                int floatsPerVertex;
+                if ("VERTEX".equals(semantic))
+                {
+                    accessor = geometry.getVertexAccessor();
+                    floatsPerVertex = ColladaAbstractGeometry.COORDS_PER_VERTEX;
+                }
+                else if ("NORMAL".equals(semantic))
+                {
+                    accessor = geometry.getNormalAccessor();
+                    floatsPerVertex = ColladaAbstractGeometry.COORDS_PER_VERTEX;
+                }
+                else if (semantic.startsWith(ColladaAbstractGeometry.DEFAULT_TEX_COORD_SEMANTIC))
+                {
+                    accessor = geometry.getTexCoordAccessor(semantic);
+                    floatsPerVertex = ColladaAbstractGeometry.TEX_COORDS_PER_VERTEX;
+                }
+                else
+                {
+                    continue;
+                }
+
+                if (accessor == null || accessor.getFloats() == null)
+                    continue;
+
+                FloatBuffer buffer = FloatBuffer.allocate(vertexCount * floatsPerVertex);
+                geometry.getFloatFromAccessor(buffer, accessor, semantic, floatsPerVertex);
+                buffer.flip();
+                meshes.buffers.put(makeKey(i, semantic), buffer);
+            }
+
+            if (meshes.getBuffer(i, "VERTEX") == null)
+                return null;
+        }
+
+        return meshes;
+    }
+
+    /**
+     * Reads compiled meshes from a file. The file is memory mapped, and the buffers returned by {@link
+     * #getBuffer(int, String)} are views of the mapped file.
+     *
+     * @param file the file to read.
+     *
+     * @return the compiled meshes.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     * @throws IOException              if the file cannot be read, is not a compiled meshes file of this version, or
+     *                                  is damaged.
+     */
+    public static ColladaCompiledMeshes read(File file) throws IOException
+    {
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        ByteBuffer mapped = WWIO.mapFile(file);
+        try
+        {
+            mapped.order(ByteOrder.BIG_ENDIAN);
+            int magic = mapped.getInt();
+            if (magic == Integer.reverseBytes(MAGIC_NUMBER))
+                mapped.order(ByteOrder.LITTLE_ENDIAN);
+            else if (magic != MAGIC_NUMBER)
+                throw new IOException(Logging.getMessage("generic.InvalidDataSource", file.getPath()));
+
+            if (mapped.getInt() != VERSION)
+                throw new IOException(Logging.getMessage("generic.InvalidDataSource", file.getPath()));
+
+            ColladaCompiledMeshes meshes = new ColladaCompiledMeshes(mapped.getInt());
+
+            int bufferCount = mapped.getInt();
+            int checksum = mapped.getInt();
+            if (checksum != computeChecksum(mapped))
+                throw new IOException(Logging.getMessage("generic.InvalidDataSource", file.getPath()));
+            for (int i = 0; i < bufferCount; i++)
+            {
+                int geometryIndex = mapped.getInt();
+                char[] semantic = new char[mapped.getInt()];
+                for (int j = 0; j < semantic.length; j++)
+                {
+                    semantic[j] = mapped.getChar();
+                }
+                alignToInt(mapped);
+                int offset = mapped.getInt();
+                int floatCount = mapped.getInt();
+
+                ByteBuffer bytes = mapped.duplicate();
+                bytes.limit(offset + 4 * floatCount).position(offset);
+                FloatBuffer buffer = bytes.slice().order(mapped.order()).asFloatBuffer();
+                meshes.buffers.put(makeKey(geometryIndex, new String(semantic)), buffer);
+            }
+
+            return meshes;
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IOException(Logging.getMessage("generic.ExceptionAttemptingToReadFile", file.getPath()), e);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Thrown by a buffer position or limit outside of the file.
+            throw new IOException(Logging.getMessage("generic.ExceptionAttemptingToReadFile", file.getPath()), e);
+        }
+    }
+
+    /**
+     * Writes these compiled meshes to a file in the native byte order, so that they can be used without conversion
+     * when the file is read. The meshes are first written to a temporary file that then replaces the destination, so
+     * that a partially written file is never read.
+     *
+     * @param file the file to write.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     * @throws IOException              if the file cannot be written.
+     */
+    public void write(File file) throws IOException
+    {
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int headerSize = CHECKSUM_OFFSET + 4;
+        int dataSize = 0;
+        for (Map.Entry<String, FloatBuffer> entry : this.buffers.entrySet())
+        {
+            headerSize += 16 + align(2 * getSemantic(entry.getKey()).length());
+            dataSize += 4 * entry.getValue().remaining();
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate(headerSize + dataSize).order(ByteOrder.nativeOrder());
+        bytes.putInt(MAGIC_NUMBER).putInt(VERSION).putInt(this.geometryCount).putInt(this.buffers.size());
+        bytes.putInt(0); // The checksum, computed once the rest of the file is written.
+
+        int offset = headerSize;
+        for (Map.Entry<String, FloatBuffer> entry : this.buffers.entrySet())
+        {
+            String semantic = getSemantic(entry.getKey());
+            int floatCount = entry.getValue().remaining();
+
+            bytes.putInt(getGeometryIndex(entry.getKey())).putInt(semantic.length());
+            for (int i = 0; i < semantic.length(); i++)
+            {
+                bytes.putChar(semantic.charAt(i));
+            }
+            alignToInt(bytes);
+            bytes.putInt(offset).putInt(floatCount);
+
+            ByteBuffer data = bytes.duplicate().order(bytes.order());
+            data.position(offset);
+            data.asFloatBuffer().put(entry.getValue().duplicate());
+            offset += 4 * floatCount;
+        }
+
+        bytes.position(CHECKSUM_OFFSET + 4);
+        bytes.putInt(CHECKSUM_OFFSET, computeChecksum(bytes));
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try
+        {
+            if (!WWIO.saveBuffer(bytes, tempFile, false))
+                throw new IOException(Logging.getMessage("generic.ExceptionAttemptingToWriteTo", tempFile.getPath()));
+
+            if ((file.exists() && !file.delete()) || !tempFile.renameTo(file))
+                throw new IOException(Logging.getMessage("generic.CannotMoveFile", tempFile.getPath(), file.getPath()));
+        }
+        finally
+        {
+            if (tempFile.exists() && !tempFile.delete())
+                Logging.logger().log(Level.FINE, Logging.getMessage("generic.CannotDeleteFile", tempFile.getPath()));
+        }
+    }
+
+    /**
+     * Indicates the number of geometries in the compiled document.
+     *
+     * @return the number of geometries.
+     */
+    public int getGeometryCount()
+    {
+        return this.geometryCount;
+    }
+
+    /**
+     * Returns the compiled data of a geometry input.
+     *
+     * @param geometryIndex the position of the geometry in its document.
+     * @param semantic      the semantic of the input, for example "VERTEX" or "NORMAL".
+     *
+     * @return a new buffer containing the input's data, for every vertex of every shape of the geometry, or null if
+     *         the input was not compiled. The buffer shares its content with these compiled meshes.
+     */
+    public FloatBuffer getBuffer(int geometryIndex, String semantic)
+    {
+        FloatBuffer buffer = this.buffers.get(makeKey(geometryIndex, semantic));
+        return buffer != null ? buffer.duplicate() : null;
+    }
+
+    /**
+     * Computes the CRC-32 checksum of a buffer's remaining bytes. The buffer's position is not changed.
+     *
+     * @param buffer the buffer.
+     *
+     * @return the checksum.
+     */
+    protected static int computeChecksum(ByteBuffer buffer)
+    {
+        CRC32 crc = new CRC32();
+        ByteBuffer bytes = buffer.duplicate();
+        byte[] chunk = new byte[8192];
+        while (bytes.hasRemaining())
+        {
+            int length = Math.min(chunk.length, bytes.remaining());
+            bytes.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+
+        return (int) crc.getValue();
+    }
+
+    protected static String makeKey(int geometryIndex, String semantic)
+    {
+        return geometryIndex + "/" + semantic;
+    }
+
+    protected static int getGeometryIndex(String key)
+    {
+        return Integer.parseInt(key.substring(0, key.indexOf('/')));
+    }
+
+    protected static String getSemantic(String key)
+    {
+        return key.substring(key.indexOf('/') + 1);
+    }
+
+    protected static int align(int size)
+    {
+        return (size + 3) & ~3;
+    }
+
+    protected static void alignToInt(ByteBuffer buffer)
+    {
+        buffer.position(align(buffer.position()));
+    }
+}
@@ -6,7 +6,7 @@
 
 package gov.nasa.worldwind.ogc.collada;
 
-import gov.nasa.worldwind.util.WWUtil;
+import gov.nasa.worldwind.util.*;
 import gov.nasa.worldwind.util.xml.XMLEventParserContext;
 
 import javax.xml.stream.XMLStreamException;
@@ -22,6 +22,8 @@ public class ColladaFloatArray extends ColladaAbstractObject
 {
     /** Floats parsed from this element. */
     protected float[] floats;
+    /** Parses the element's character content as it arrives. Null when not parsing. */
+    protected NumberTokenizer tokenizer;
 
     /**
      * Construct an instance.
@@ -43,25 +45,51 @@ public class ColladaFloatArray extends ColladaAbstractObject
         return (this.floats != null) ? this.floats : new float[0];
     }
 
-    /** {@inheritDoc} Overridden to parse character content into a float[]. */
+    /**
+     * {@inheritDoc} Overridden to parse character content into a float[]. The floats are parsed as the character
+     * content arrives, rather than after all of it has been collected into a string. The content is skipped if the
+     * document's meshes have been read from their compiled form, which doesn't need the document's float arrays.
+     */
     @Override
     public Object parse(XMLEventParserContext ctx, XMLEvent event, Object... args) throws XMLStreamException
     {
         super.parse(ctx, event, args);
 
-        if (this.hasField(CHARACTERS_CONTENT))
+        if (this.tokenizer != null)
         {
-            String s = (String) this.getField(CHARACTERS_CONTENT);
-            if (!WWUtil.isEmpty(s))
-                this.floats = this.parseFloats(s);
-
-            // Don't need to keep string version of the floats
-            this.removeField(CHARACTERS_CONTENT);
+            this.floats = this.tokenizer.getFloats();
+            this.tokenizer = null;
         }
 
         return this;
     }
 
+    /** {@inheritDoc} Overridden to parse floats from the characters instead of collecting them. */
+    @Override
+    protected void doAddCharacters(XMLEventParserContext ctx, XMLEvent event, Object... args)
+    {
+        ColladaRoot root = this.getRoot();
+        if (root != null && root.getCompiledMeshes() != null)
+            return;
+
+        if (this.tokenizer == null)
+            this.tokenizer = new NumberTokenizer(false, this.getCount());
+
+        this.tokenizer.add(ctx.getCharacters(event));
+    }
+
+    /**
+     * Indicates the number of floats in the array, as specified by the element's <i>count</i> attribute.
+     *
+     * @return the number of floats, or 0 if the count is not specified or is not a valid number.
+     */
+    protected int getCount()
+    {
+        String s = (String) this.getField("count");
+        Integer count = !WWUtil.isEmpty(s) ? WWUtil.convertStringToInteger(s) : null;
+        return (count != null && count > 0) ? count : 0;
+    }
+
     /**
      * Parse a string of floats into an array.
      *
@@ -71,16 +99,8 @@ public class ColladaFloatArray extends ColladaAbstractObject
      */
     protected float[] parseFloats(String floatArrayString)
     {
-        String[] arrayOfNumbers = floatArrayString.split("\\s");
-        float[] ary = new float[arrayOfNumbers.length];
-
-        int i = 0;
-        for (String s : arrayOfNumbers)
-        {
-            if (!WWUtil.isEmpty(s))
-                ary[i++] = Float.parseFloat(s);
-        }
-
-        return ary;
+        NumberTokenizer tokenizer = new NumberTokenizer(false, 0);
+        tokenizer.add(floatArrayString);
+        return tokenizer.getFloats();
     }
 }
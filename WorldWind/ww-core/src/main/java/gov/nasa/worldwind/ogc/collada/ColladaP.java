@@ -6,7 +6,7 @@
 
 package gov.nasa.worldwind.ogc.collada;
 
-import gov.nasa.worldwind.util.WWUtil;
+import gov.nasa.worldwind.util.NumberTokenizer;
 import gov.nasa.worldwind.util.xml.XMLEventParserContext;
 
 import javax.xml.stream.XMLStreamException;
@@ -25,6 +25,8 @@ public class ColladaP extends ColladaAbstractObject
 {
     /** Indices contained in this element. */
     protected int[] indices;
+    /** Parses the element's character content as it arrives. Null when not parsing. */
+    protected NumberTokenizer tokenizer;
 
     /**
      * Construct an instance.
@@ -46,25 +48,38 @@ public class ColladaP extends ColladaAbstractObject
         return this.indices;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc} Overridden to parse character content into an int[]. The content is skipped if the document's
+     * meshes have been read from their compiled form, in which the indices have already been applied.
+     */
     @Override
     public Object parse(XMLEventParserContext ctx, XMLEvent event, Object... args) throws XMLStreamException
     {
         super.parse(ctx, event, args);
 
-        if (this.hasField(CHARACTERS_CONTENT))
+        if (this.tokenizer != null)
         {
-            String s = (String) this.getField(CHARACTERS_CONTENT);
-            if (!WWUtil.isEmpty(s))
-                this.indices = this.parseInts(s);
-
-            // Don't need to keep string version of the ints
-            this.removeField(CHARACTERS_CONTENT);
+            this.indices = this.tokenizer.getInts();
+            this.tokenizer = null;
         }
 
         return this;
     }
 
+    /** {@inheritDoc} Overridden to parse integers from the characters instead of collecting them. */
+    @Override
+    protected void doAddCharacters(XMLEventParserContext ctx, XMLEvent event, Object... args)
+    {
+        ColladaRoot root = this.getRoot();
+        if (root != null && root.getCompiledMeshes() != null)
+            return;
+
+        if (this.tokenizer == null)
+            this.tokenizer = new NumberTokenizer(true, 0);
+
+        this.tokenizer.add(ctx.getCharacters(event));
+    }
+
     /**
      * Parse an string of integers into an array.
      *
@@ -74,16 +89,8 @@ public class ColladaP extends ColladaAbstractObject
      */
     protected int[] parseInts(String intArrayString)
     {
-        String[] arrayOfNumbers = intArrayString.split("\\s");
-        int[] ints = new int[arrayOfNumbers.length];
-
-        int i = 0;
-        for (String s : arrayOfNumbers)
-        {
-            if (!WWUtil.isEmpty(s))
-                ints[i++] = Integer.parseInt(s);
-        }
-
-        return ints;
+        NumberTokenizer tokenizer = new NumberTokenizer(true, 0);
+        tokenizer.add(intArrayString);
+        return tokenizer.getInts();
     }
 }
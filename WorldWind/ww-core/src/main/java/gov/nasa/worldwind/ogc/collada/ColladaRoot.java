@@ -6,7 +6,8 @@
 
 package gov.nasa.worldwind.ogc.collada;
 
-import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.ogc.collada.impl.*;
@@ -19,6 +20,8 @@ import javax.xml.stream.*;
 import javax.xml.stream.events.XMLEvent;
 import java.io.*;
 import java.net.*;
+import java.nio.FloatBuffer;
+import java.util.*;
 
 /**
  * Parses a COLLADA document and provides access to its contents. Instructions for parsing COLLADA files and streams are
@@ -83,6 +86,15 @@ public class ColladaRoot extends ColladaAbstractObject implements ColladaRendera
     /** Resource resolver to resolve relative file paths. */
     protected ColladaResourceResolver resourceResolver;
 
+    /** Location of the document. Identifies the document's compiled meshes. Null if the location is not known. */
+    protected URL sourceURL;
+    /** Modification time of the document, in milliseconds since the epoch. 0 if the time is not known. */
+    protected long sourceModificationTime;
+    /** The document's geometries, in document order. */
+    protected List<ColladaAbstractGeometry> geometries = new ArrayList<ColladaAbstractGeometry>();
+    /** The document's meshes in their compiled form, if they were read from the file store. Otherwise null. */
+    protected ColladaCompiledMeshes compiledMeshes;
+
     /**
      * Create a new <code>ColladaRoot</code> for a {@link ColladaDoc} instance. A ColladaDoc represents COLLADA files
      * from either files or input streams.
@@ -127,6 +139,8 @@ public class ColladaRoot extends ColladaAbstractObject implements ColladaRendera
         }
 
         this.colladaDoc = new ColladaFile(docSource);
+        this.sourceURL = docSource.toURI().toURL();
+        this.sourceModificationTime = docSource.lastModified();
 
         this.initialize();
     }
@@ -152,6 +166,8 @@ public class ColladaRoot extends ColladaAbstractObject implements ColladaRendera
 
         URLConnection conn = docSource.openConnection();
         this.colladaDoc = new ColladaInputStream(conn.getInputStream(), WWIO.makeURI(docSource));
+        this.sourceURL = docSource;
+        this.sourceModificationTime = conn.getLastModified();
 
         this.initialize();
     }
@@ -693,6 +709,12 @@ public class ColladaRoot extends ColladaAbstractObject implements ColladaRendera
         try
         {
             ColladaRoot refRoot = new ColladaRoot(colladaDoc);
+            File file = WWIO.convertURLToFile(url);
+            if (file != null)
+            {
+                refRoot.sourceURL = url;
+                refRoot.sourceModificationTime = file.lastModified();
+            }
             refRoot.parse(); // also closes the URL's stream
             return refRoot;
         }
@@ -748,6 +770,12 @@ public class ColladaRoot extends ColladaAbstractObject implements ColladaRendera
     /**
      * Starts document parsing. This method initiates parsing of the COLLADA document and returns when the full document
      * has been parsed.
+     * <p/>
+     * If {@link AVKey#COLLADA_MESH_CACHING} is enabled in the {@link Configuration} and the document was created from a
+     * file or URL, the resolved meshes of the document are saved to the file store after the document is parsed. When a
+     * document of the same location and modification time is parsed again, the saved meshes are memory mapped, and the
+     * document's float arrays and indices are skipped rather than parsed. Saved meshes that don't match the parsed
+     * document are removed from the file store, and the document is parsed again from its own data.
      *
      * @param args optional arguments to pass to parsers of sub-elements.
      *
@@ -756,6 +784,47 @@ public class ColladaRoot extends ColladaAbstractObject implements ColladaRendera
      * @throws XMLStreamException if an exception occurs while attempting to read the event stream.
      */
     public ColladaRoot parse(Object... args) throws XMLStreamException
+    {
+        this.openCompiledMeshes();
+        if (!this.parseDocument(args))
+            return null;
+
+        if (this.compiledMeshes != null && !this.isCompiledMeshesValid())
+        {
+            // The compiled meshes are not of this document, so the document's float arrays and indices were skipped in
+            // favor of the wrong data. Discard the compiled meshes and parse the document again.
+            this.removeCompiledMeshes();
+            this.compiledMeshes = null;
+            this.geometries.clear();
+            this.fields = null;
+
+            try
+            {
+                this.reopen();
+            }
+            catch (IOException e)
+            {
+                throw new XMLStreamException(e);
+            }
+
+            if (!this.parseDocument(args))
+                return null;
+        }
+
+        this.compileMeshes();
+        return this;
+    }
+
+    /**
+     * Parses the document's <i>COLLADA</i> element from this root's event stream, and closes the stream.
+     *
+     * @param args optional arguments to pass to parsers of sub-elements.
+     *
+     * @return true if the document contains a <i>COLLADA</i> element, otherwise false.
+     *
+     * @throws XMLStreamException if an exception occurs while attempting to read the event stream.
+     */
+    protected boolean parseDocument(Object... args) throws XMLStreamException
     {
         ColladaParserContext ctx = this.parserContext;
 
@@ -770,7 +839,7 @@ public class ColladaRoot extends ColladaAbstractObject implements ColladaRendera
                 if (event.isStartElement() && event.asStartElement().getName().getLocalPart().equals("COLLADA"))
                 {
                     super.parse(ctx, event, args);
-                    return this;
+                    return true;
                 }
             }
         }
@@ -779,7 +848,160 @@ public class ColladaRoot extends ColladaAbstractObject implements ColladaRendera
             ctx.getEventReader().close();
             this.closeEventStream();
         }
-        return null;
+        return false;
+    }
+
+    /**
+     * Opens a new event stream for this document, so that it can be parsed again. Called only for documents with a
+     * known location. Relative references are still resolved against the original document source.
+     *
+     * @throws IOException if the document cannot be opened.
+     */
+    protected void reopen() throws IOException
+    {
+        final ColladaDoc doc = this.getColladaDoc();
+        final URL url = this.sourceURL;
+        this.colladaDoc = new ColladaDoc()
+        {
+            public InputStream getInputStream() throws IOException
+            {
+                return url.openStream();
+            }
+
+            public String getSupportFilePath(String path) throws IOException
+            {
+                return doc.getSupportFilePath(path);
+            }
+        };
+
+        this.initialize();
+    }
+
+    /**
+     * Indicates the file store path of this document's compiled meshes.
+     *
+     * @return the path of the compiled meshes, or null if mesh caching is disabled or the document's location or
+     *         modification time is not known.
+     */
+    protected String getCompiledMeshesPath()
+    {
+        if (!Configuration.getBooleanValue(AVKey.COLLADA_MESH_CACHING, false))
+            return null;
+
+        if (this.sourceURL == null || this.sourceModificationTime <= 0)
+            return null;
+
+        return ColladaCompiledMeshes.getCachePath(this.sourceURL, this.sourceModificationTime);
+    }
+
+    /**
+     * Reads this document's compiled meshes from the file store, if they are there. Called before the document is
+     * parsed.
+     */
+    protected void openCompiledMeshes()
+    {
+        String path = this.getCompiledMeshesPath();
+        if (path == null)
+            return;
+
+        URL url = WorldWind.getDataFileStore().findFile(path, false);
+        File file = (url != null) ? WWIO.convertURLToFile(url) : null;
+        if (file == null)
+            return;
+
+        try
+        {
+            this.compiledMeshes = ColladaCompiledMeshes.read(file);
+        }
+        catch (IOException e)
+        {
+            String message = Logging.getMessage("generic.ExceptionAttemptingToReadFile", file.getPath());
+            Logging.logger().log(java.util.logging.Level.WARNING, message, e);
+            WorldWind.getDataFileStore().removeFile(url);
+        }
+    }
+
+    /**
+     * Indicates whether the compiled meshes read from the file store match the parsed document: they must be of the
+     * same number of geometries, and hold the vertex coordinates of every vertex of each geometry. Called after the
+     * document is parsed.
+     *
+     * @return true if the compiled meshes match the document, otherwise false.
+     */
+    protected boolean isCompiledMeshesValid()
+    {
+        if (this.compiledMeshes.getGeometryCount() != this.geometries.size())
+            return false;
+
+        for (int i = 0; i < this.geometries.size(); i++)
+        {
+            ColladaAbstractGeometry geometry = this.geometries.get(i);
+            FloatBuffer vertices = this.compiledMeshes.getBuffer(i, "VERTEX");
+            int floatCount = geometry.getCount() * geometry.getVerticesPerShape()
+                * ColladaAbstractGeometry.COORDS_PER_VERTEX;
+            if (vertices == null || vertices.remaining() != floatCount)
+                return false;
+        }
+
+        return true;
+    }
+
+    /** Removes this document's compiled meshes from the file store, so that they are compiled again. */
+    protected void removeCompiledMeshes()
+    {
+        String path = this.getCompiledMeshesPath();
+        URL url = (path != null) ? WorldWind.getDataFileStore().findFile(path, false) : null;
+        Logging.logger().warning(Logging.getMessage("generic.InvalidDataSource", url));
+        if (url != null)
+            WorldWind.getDataFileStore().removeFile(url);
+    }
+
+    /**
+     * Compiles this document's meshes and saves them to the file store, unless they were read from there. Called after
+     * the document is parsed.
+     */
+    protected void compileMeshes()
+    {
+        String path = this.getCompiledMeshesPath();
+        if (path == null || this.compiledMeshes != null)
+            return;
+
+        try
+        {
+            ColladaCompiledMeshes meshes = ColladaCompiledMeshes.compile(this.geometries);
+            File file = (meshes != null) ? WorldWind.getDataFileStore().newFile(path) : null;
+            if (file != null)
+                meshes.write(file);
+        }
+        catch (Exception e)
+        {
+            String message = Logging.getMessage("generic.ExceptionAttemptingToWriteTo", path);
+            Logging.logger().log(java.util.logging.Level.WARNING, message, e);
+        }
+    }
+
+    /**
+     * Adds a geometry to the list of this document's geometries. Called by each geometry as it is parsed.
+     *
+     * @param geometry the geometry to add.
+     *
+     * @return the position of the geometry in the document.
+     */
+    protected int addGeometry(ColladaAbstractGeometry geometry)
+    {
+        this.geometries.add(geometry);
+        return this.geometries.size() - 1;
+    }
+
+    /**
+     * Indicates this document's meshes in their compiled form, if they were read from the file store when the document
+     * was parsed.
+     *
+     * @return the compiled meshes, or null if the meshes were not read from the file store.
+     */
+    public ColladaCompiledMeshes getCompiledMeshes()
+    {
+        return this.compiledMeshes;
     }
 
     /** Closes the event stream associated with this context's XML event reader. */
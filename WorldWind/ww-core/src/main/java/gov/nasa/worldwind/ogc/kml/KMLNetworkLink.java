@@ -15,6 +15,8 @@ import gov.nasa.worldwind.util.*;
 
 import javax.swing.*;
 import java.beans.*;
+import java.io.IOException;
+import java.net.URL;
 import java.util.concurrent.atomic.*;
 
 /**
@@ -44,6 +46,18 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
     protected AtomicLong networkResourceRetrievalTime = new AtomicLong(-1);
 
     protected AtomicLong firstRetrievalTime;
+    /** The address from which this <code>KMLNetworkLink's</code> network resource was last retrieved. */
+    protected String networkResourceAddress;
+    /**
+     * Flag that is raised when this link's network resource is unloaded to reduce memory use. The resource is retrieved
+     * again the next time this link is active.
+     */
+    protected volatile boolean networkResourceUnloaded;
+    /**
+     * The key identifying this link's network resource in the {@link KMLNetworkResourceManager}'s cache. The cache
+     * holds this key rather than this link, so it doesn't keep this link alive.
+     */
+    protected final Object networkResourceKey = new Object();
 
     /** Flag to indicate that the Link has been fetched from the hash map. */
     protected boolean linkFetched = false;
@@ -234,6 +248,7 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
             resource.removePropertyChangeListener(this);
 
         this.networkResource.set(kmlRoot);
+        this.networkResourceUnloaded = false;
         this.networkResourceRetrievalTime.set(System.currentTimeMillis());
         if (this.firstRetrievalTime == null)
             this.firstRetrievalTime = new AtomicLong(this.networkResourceRetrievalTime.get());
@@ -259,6 +274,42 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
         }
     }
 
+    /**
+     * Unloads this link's network resource to reduce memory use, and discards the parsed resource held in the session
+     * cache. The resource is retrieved again the next time this link is active. This does nothing if this link's
+     * network resource is no longer the specified resource.
+     * <p/>
+     * This is called by the {@link KMLNetworkResourceManager} when the memory budget for network resources is exceeded
+     * and this link's resource has not been drawn as recently as other resources.
+     *
+     * @param resource the network resource to unload.
+     */
+    protected void unloadNetworkResource(KMLRoot resource)
+    {
+        if (resource == null || !this.networkResource.compareAndSet(resource, null))
+            return;
+
+        resource.removePropertyChangeListener(this);
+        this.networkResourceUnloaded = true;
+
+        String address = this.networkResourceAddress;
+        if (address != null)
+        {
+            // Remove the resource from the session cache, using the same key as KMLRoot.resolveNetworkLink.
+            String path = null;
+            try
+            {
+                path = this.getRoot().getSupportFilePath(address);
+            }
+            catch (IOException e)
+            {
+                Logging.logger().fine(Logging.getMessage("generic.UnableToResolveReference", address));
+            }
+
+            WorldWind.getSessionCache().remove(path != null ? path : address);
+        }
+    }
+
     /**
      * Pre-renders the network resource referenced by this <code>KMLNetworkLink</code>. If this link must retrieve its
      * network resource, this initiates a retrieval and does nothing until the resource is retrieved and loaded. Once
@@ -277,10 +328,15 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
         super.doPreRender(tc, dc);
 
         if (this.mustRetrieveNetworkResource())
-            this.requestResource(dc);
+            this.requestResource(tc, dc);
 
-        if (this.getNetworkResource() != null)
-            this.getNetworkResource().preRender(tc, dc);
+        // The network resource may be unloaded by another thread, so use the same resource throughout.
+        KMLRoot resource = this.getNetworkResource();
+        if (resource != null)
+        {
+            KMLNetworkResourceManager.getInstance().markActive(dc, this, resource);
+            resource.preRender(tc, dc);
+        }
     }
 
     /**
@@ -295,8 +351,9 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
     {
         super.doRender(tc, dc);
 
-        if (this.getNetworkResource() != null)
-            this.getNetworkResource().render(tc, dc);
+        KMLRoot resource = this.getNetworkResource();
+        if (resource != null)
+            resource.render(tc, dc);
     }
 
     /**
@@ -316,6 +373,10 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
         if (this.invalidTarget)
             return false;
 
+        // If the resource was unloaded to reduce memory use, retrieve it again now that this link is active.
+        if (this.networkResourceUnloaded)
+            return true;
+
         // Make sure a refresh doesn't occur within the minimum refresh period, if one is specified.
         KMLNetworkLinkControl linkControl = this.getRoot().getNetworkLinkControl();
         if (linkControl != null && linkControl.getMinRefreshPeriod() != null)
@@ -340,12 +401,16 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
     }
 
     /**
-     * Thread's off a task to determine whether the resource is local or remote and then retrieves it either from disk
-     * cache or a remote server.
+     * Queues a task to determine whether the resource is local or remote and then retrieve it either from disk cache or
+     * a remote server. The task is prioritized by the screen area of this link's Region, or of the Region containing
+     * this link if it has none, so that the resources of the Regions closest to the viewer are retrieved first.
      *
+     * @param tc the current KML traversal context.
      * @param dc the current draw context.
+     *
+     * @see KMLNetworkResourceManager#sendRequests()
      */
-    protected void requestResource(DrawContext dc)
+    protected void requestResource(KMLTraversalContext tc, DrawContext dc)
     {
         if (WorldWind.getTaskService().isFull())
             return;
@@ -364,7 +429,110 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
         if (this.hasNetworkLinkControl() && this.getRoot().getNetworkLinkControl().getCookie() != null)
             address = address + this.getRoot().getNetworkLinkControl().getCookie();
 
-        WorldWind.getTaskService().addTask(new RequestTask(this, address));
+        // Refresh a resource that changes over time through the refresh scheduler, which avoids retrieving and parsing
+        // documents that have not changed.
+        if (this.getNetworkResource() != null && !this.isLinkCacheable() && this.requestRefresh(address))
+            return;
+
+        double priority = this.computeRequestPriority(tc, dc);
+        KMLNetworkResourceManager.getInstance().addRequest(new RequestTask(this, address, priority));
+    }
+
+    /**
+     * Computes the priority of this link's resource request. This is the projected screen area of this link's Region,
+     * or of the Region containing this link if it has none. Links without a Region have the highest priority.
+     *
+     * @param tc the current KML traversal context.
+     * @param dc the current draw context.
+     *
+     * @return the request priority. Larger values indicate higher priority.
+     */
+    protected double computeRequestPriority(KMLTraversalContext tc, DrawContext dc)
+    {
+        KMLRegion region = this.getRegion();
+        if (region == null)
+            region = tc.peekRegion();
+
+        return region != null ? region.getProjectedArea(dc) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Requests a refresh of this link's network resource from the {@link KMLRefreshScheduler}. The scheduler handles
+     * only HTTP addresses, and only while World Wind is online.
+     *
+     * @param address the address of the resource to retrieve.
+     *
+     * @return true if the scheduler handles this link's refresh, or false if the resource must be retrieved by {@link
+     *         #retrieveNetworkResource(String)}.
+     */
+    protected boolean requestRefresh(String address)
+    {
+        if (WorldWind.isOfflineMode())
+            return false;
+
+        // Interpret the address relative to the current document.
+        String path = null;
+        try
+        {
+            path = this.getRoot().getSupportFilePath(address);
+        }
+        catch (IOException e)
+        {
+            Logging.logger().fine(Logging.getMessage("generic.UnableToResolveReference", address));
+        }
+
+        URL url = WWIO.makeURL(path != null ? path : address);
+        if (!KMLRefreshScheduler.isHttpAddress(url))
+            return false;
+
+        KMLLink link = this.getLinkOrUrl();
+        long dueTime = link != null ? link.getUpdateTime() : System.currentTimeMillis();
+
+        // A refresh deferred after a failure is retried by the scheduler, not by retrieveNetworkResource.
+        KMLRefreshScheduler.getInstance().requestRefresh(this, url, dueTime, address);
+        return true;
+    }
+
+    /**
+     * Called by the {@link KMLRefreshScheduler} when a refresh of this link's network resource has been retrieved. If
+     * the resource changed, this calls <code>{@link #setNetworkResource(KMLRoot)}</code> to specify this link's new
+     * network resource, and sends an <code>{@link gov.nasa.worldwind.avlist.AVKey#RETRIEVAL_STATE_SUCCESSFUL}</code>
+     * property change event to this link's property change listeners. Otherwise this link keeps its current resource
+     * and marks it up to date.
+     *
+     * @param resource   the new network resource, or null if the resource has not changed since it was last
+     *                   retrieved.
+     * @param address    the address from which the resource was retrieved.
+     * @param expiration the expiration time specified by the server's HTTP headers, in milliseconds since the Epoch.
+     *                   Zero indicates that there is no expiration time.
+     */
+    protected void onRefreshRetrieved(KMLRoot resource, String address, long expiration)
+    {
+        if (resource != null)
+        {
+            this.networkResourceAddress = address;
+            this.setNetworkResource(resource);
+        }
+        else
+        {
+            this.networkResourceRetrievalTime.set(System.currentTimeMillis());
+        }
+
+        // An expiration time in the document's NetworkLinkControl has priority over the HTTP headers.
+        KMLRoot current = this.getNetworkResource();
+        KMLNetworkLinkControl linkControl = current != null ? current.getNetworkLinkControl() : null;
+        if (linkControl != null && linkControl.getExpires() != null)
+        {
+            Long time = WWUtil.parseTimeString(linkControl.getExpires());
+            expiration = time != null ? time : 0;
+        }
+
+        KMLLink link = this.getLinkOrUrl();
+        if (link != null)
+            link.setExpirationTime(expiration);
+
+        if (resource != null)
+            this.getRoot().firePropertyChange(AVKey.RETRIEVAL_STATE_SUCCESSFUL, null, KMLNetworkLink.this);
     }
 
     /**
@@ -400,6 +568,7 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
         if (o instanceof KMLRoot)
         {
             KMLRoot newRoot = (KMLRoot) o;
+            this.networkResourceAddress = address;
             this.setNetworkResource(newRoot);
 
             // Check for an expiration time set through HTTP header or NetworkLinkControl
@@ -498,17 +667,20 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
         this.linkFetched = false;
         this.link = null;
         this.invalidTarget = false;
+        this.networkResourceUnloaded = false;
 
         this.getRoot().requestRedraw(); // cause doPreRender to be called to initiate new link retrieval
     }
 
     /** Attempts to find this network link resource file locally, and if that fails attempts to find it remotely. */
-    protected static class RequestTask implements Runnable
+    protected static class RequestTask implements Runnable, Comparable<RequestTask>
     {
         /** The link associated with this request. */
         protected final KMLNetworkLink link;
         /** The resource's address. */
         protected final String address;
+        /** The request's priority. Requests with larger values are sent first. */
+        protected final double priority;
 
         /**
          * Construct a request task for a specified network link resource.
@@ -517,6 +689,18 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
          * @param address the address of the resource to request.
          */
         protected RequestTask(KMLNetworkLink link, String address)
+        {
+            this(link, address, 0);
+        }
+
+        /**
+         * Construct a request task for a specified network link resource.
+         *
+         * @param link     the network link for which to construct the request task.
+         * @param address  the address of the resource to request.
+         * @param priority the request's priority. Requests with larger values are sent first.
+         */
+        protected RequestTask(KMLNetworkLink link, String address, double priority)
         {
             if (link == null)
             {
@@ -534,6 +718,20 @@ public class KMLNetworkLink extends KMLAbstractContainer implements PropertyChan
 
             this.link = link;
             this.address = address;
+            this.priority = priority;
+        }
+
+        public int compareTo(RequestTask that)
+        {
+            if (that == null)
+            {
+                String msg = Logging.getMessage("nullValue.RequestTaskIsNull");
+                Logging.logger().severe(msg);
+                throw new IllegalArgumentException(msg);
+            }
+
+            // Sort higher priorities first.
+            return Double.compare(that.priority, this.priority);
         }
 
         public void run()
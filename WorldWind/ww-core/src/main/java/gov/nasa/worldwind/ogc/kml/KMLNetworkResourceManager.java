@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.ogc.kml;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.Logging;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.logging.Level;
+
+/**
+ * Manages the lifetime of the network resources loaded by {@link KMLNetworkLink}s. The network resources that are
+ * drawn during a frame are held in a memory cache whose capacity is the memory budget for loaded network resources,
+ * specified by {@link AVKey#KML_NETWORK_RESOURCE_CACHE_SIZE}. The memory used by a resource is estimated from the size
+ * of its KML document. When the budget is exceeded, the resources that have gone longest without being drawn are
+ * unloaded from their network links. A network link whose resource was unloaded retrieves it again when the link next
+ * becomes active. Only resources of links whose content is stored in the file store are unloaded, so retrieving them
+ * again reads the file store rather than the network.
+ * <p/>
+ * The cache holds its network links and their resources weakly, keyed by an object each link owns, so a document that
+ * is no longer used can be garbage collected along with the network links it contains. The budget of such a resource
+ * is released when it is next evicted from the cache.
+ * <p/>
+ * The manager also orders network resource retrievals. Network links queue their requests with {@link
+ * #addRequest(KMLNetworkLink.RequestTask)} during preRendering, and the requests are sent to the task service by {@link
+ * #sendRequests()} after preRendering, those of the links covering the most screen area first.
+ *
+ * @version $Id$
+ */
+public class KMLNetworkResourceManager implements MemoryCache.CacheListener
+{
+    /** The memory cache key of the network resource cache. */
+    protected static final String CACHE_KEY = KMLNetworkResourceManager.class.getName();
+    /** The name of the network resource cache. */
+    protected static final String CACHE_NAME = "KML Network Resources";
+    /** The default network resource budget, in bytes. */
+    protected static final long DEFAULT_CACHE_SIZE = 256000000L;
+    /**
+     * The ratio of the memory used by a loaded network resource to the size of its KML document. The parsed elements,
+     * the strings and the shapes created from them typically occupy several times the size of the document.
+     */
+    protected static final long DOCUMENT_SIZE_FACTOR = 4;
+    /** The smallest memory size attributed to a loaded network resource, in bytes. */
+    protected static final long MIN_RESOURCE_SIZE = 16384;
+
+    protected static KMLNetworkResourceManager instance;
+
+    /** The memory cache tracking the loaded network resources. */
+    protected final MemoryCache cache;
+    /** The frame in which network resources were last marked active. */
+    protected volatile long frameTimeStamp;
+    protected PriorityBlockingQueue<Runnable> requestQ = new PriorityBlockingQueue<Runnable>(200);
+
+    /**
+     * Returns the network resource manager shared by all KML documents.
+     *
+     * @return the network resource manager.
+     */
+    public static synchronized KMLNetworkResourceManager getInstance()
+    {
+        if (instance == null)
+            instance = new KMLNetworkResourceManager();
+
+        return instance;
+    }
+
+    protected KMLNetworkResourceManager()
+    {
+        this(getSharedCache());
+    }
+
+    /**
+     * Creates a manager that tracks network resources in a specified memory cache. The cache's capacity is the memory
+     * budget for loaded network resources.
+     *
+     * @param cache the memory cache tracking the loaded network resources.
+     *
+     * @throws IllegalArgumentException if the cache is null.
+     */
+    protected KMLNetworkResourceManager(MemoryCache cache)
+    {
+        if (cache == null)
+        {
+            String message = Logging.getMessage("nullValue.CacheIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.cache = cache;
+        this.cache.addCacheListener(this);
+    }
+
+    protected static MemoryCache getSharedCache()
+    {
+        if (!WorldWind.getMemoryCacheSet().containsCache(CACHE_KEY))
+        {
+            long size = Configuration.getLongValue(AVKey.KML_NETWORK_RESOURCE_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            cache.setName(CACHE_NAME);
+            WorldWind.getMemoryCacheSet().addCache(CACHE_KEY, cache);
+        }
+
+        return WorldWind.getMemoryCacheSet().getCache(CACHE_KEY);
+    }
+
+    protected MemoryCache getCache()
+    {
+        return this.cache;
+    }
+
+    /**
+     * Indicates that a network link's resource is drawn during the current frame. This keeps the resource loaded in
+     * preference to resources that have not been drawn as recently. Resources of links that are not cacheable are not
+     * tracked, and are never unloaded.
+     *
+     * @param dc       the current draw context.
+     * @param link     the network link.
+     * @param resource the network link's resource.
+     *
+     * @throws IllegalArgumentException if any argument is null.
+     * @see KMLNetworkLink#isLinkCacheable()
+     */
+    public void markActive(DrawContext dc, KMLNetworkLink link, KMLRoot resource)
+    {
+        if (dc == null)
+        {
+            String message = Logging.getMessage("nullValue.DrawContextIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (link == null || resource == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (!link.isLinkCacheable())
+            return;
+
+        this.frameTimeStamp = dc.getFrameTimeStamp();
+
+        MemoryCache cache = this.getCache();
+        Entry entry = (Entry) cache.getObject(link.networkResourceKey);
+        if (entry == null || entry.resource.get() != resource)
+        {
+            entry = new Entry(link, resource);
+            long size = Math.max(MIN_RESOURCE_SIZE, DOCUMENT_SIZE_FACTOR * resource.getDocumentSize());
+            cache.add(link.networkResourceKey, entry, size);
+        }
+
+        entry.activeFrameTimeStamp = dc.getFrameTimeStamp();
+    }
+
+    /**
+     * Queues a network resource retrieval. Queued retrievals are started by {@link #sendRequests()}, highest priority
+     * first.
+     *
+     * @param task the retrieval to queue.
+     *
+     * @throws IllegalArgumentException if the task is null.
+     */
+    public void addRequest(KMLNetworkLink.RequestTask task)
+    {
+        if (task == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.requestQ.add(task);
+    }
+
+    /**
+     * Sends the queued network resource retrievals to the task service, highest priority first, until the task service
+     * is full. Retrievals that are not sent are discarded, and are queued again by their network links during the next
+     * frame if they are still needed.
+     */
+    public void sendRequests()
+    {
+        Runnable task = this.requestQ.poll();
+        while (task != null)
+        {
+            if (!WorldWind.getTaskService().isFull())
+            {
+                WorldWind.getTaskService().addTask(task);
+            }
+            task = this.requestQ.poll();
+        }
+
+        this.requestQ.clear();
+    }
+
+    /**
+     * Unloads the network resource of an entry removed from the cache, unless the resource has been drawn during the
+     * current frame, has been replaced by a newer resource, or has been garbage collected.
+     *
+     * @param key          the network link's resource key.
+     * @param clientObject the removed entry.
+     */
+    public void entryRemoved(Object key, Object clientObject)
+    {
+        if (!(clientObject instanceof Entry))
+            return;
+
+        Entry entry = (Entry) clientObject;
+        if (entry.activeFrameTimeStamp == this.frameTimeStamp)
+            return;
+
+        KMLNetworkLink link = entry.link.get();
+        KMLRoot resource = entry.resource.get();
+        if (link != null && resource != null)
+            link.unloadNetworkResource(resource);
+    }
+
+    public void removalException(Throwable exception, Object key, Object clientObject)
+    {
+        String message = Logging.getMessage("generic.ExceptionWhileDisposing", clientObject);
+        Logging.logger().log(Level.SEVERE, message, exception);
+    }
+
+    /**
+     * A loaded network resource and the last frame in which it was drawn. The link and resource are held weakly, so the
+     * cache doesn't keep a document's network links alive after the document is no longer used.
+     */
+    protected static class Entry
+    {
+        protected final WeakReference<KMLNetworkLink> link;
+        protected final WeakReference<KMLRoot> resource;
+        protected long activeFrameTimeStamp;
+
+        public Entry(KMLNetworkLink link, KMLRoot resource)
+        {
+            this.link = new WeakReference<KMLNetworkLink>(link);
+            this.resource = new WeakReference<KMLRoot>(resource);
+        }
+    }
+}
@@ -0,0 +1,619 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.ogc.kml;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.retrieve.*;
+import gov.nasa.worldwind.util.Logging;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+
+/**
+ * Refreshes the network resources of {@link KMLNetworkLink}s whose documents change over time, such as links that
+ * refresh on an interval or when the view stops. Refreshes are retrieved directly from the document's HTTP server
+ * rather than through the file store, so that each refresh can be made efficient: <ul> <li>Each refresh is a
+ * conditional request. The entity tag and modification time returned by the server for the link's previous retrieval
+ * are sent in <code>If-None-Match</code> and <code>If-Modified-Since</code> headers, and a server that supports them
+ * responds without content when the document has not changed.</li> <li>The content of each retrieval is hashed. When a
+ * server returns the same content that the link already holds, the content is not parsed again.</li> <li>A refresh
+ * requested while a link's previous refresh is still waiting or in progress is coalesced with it.</li> <li>The number
+ * of concurrent retrievals from each host is limited, by default to {@link #DEFAULT_MAX_REQUESTS_PER_HOST} or the value
+ * of {@link AVKey#KML_REFRESH_MAX_REQUESTS_PER_HOST}. Refreshes waiting for a host are retrieved in the order their
+ * links became out of date.</li> </ul>
+ * <p/>
+ * The scheduler records {@link Metrics} for each link it refreshes.
+ *
+ * @version $Id$
+ * @see KMLNetworkLink#requestRefresh(String)
+ */
+public class KMLRefreshScheduler
+{
+    /** The default maximum number of concurrent retrievals from one host. */
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 2;
+    /** The time to wait after a failed retrieval before retrieving the same link again, in milliseconds. */
+    protected static final long RETRY_DELAY = 10000;
+    /** The algorithm used to detect unchanged content. */
+    protected static final String DIGEST_ALGORITHM = "MD5";
+
+    /** The outcome of a refresh. */
+    public enum Result
+    {
+        /** The server indicated that the document has not changed since it was last retrieved. */
+        NOT_MODIFIED,
+        /** The server returned the same content as it did for the last retrieval. */
+        UNCHANGED,
+        /** The server returned new content. */
+        UPDATED,
+        /** The document could not be retrieved. */
+        FAILED
+    }
+
+    protected static KMLRefreshScheduler instance;
+
+    protected final int maxRequestsPerHost;
+    protected final ExecutorService executor;
+    /** Refresh requests waiting for a connection to their host, keyed by host. */
+    protected final Map<String, Queue<Request>> waitingRequests = new HashMap<String, Queue<Request>>();
+    /** The number of retrievals in progress for each host. */
+    protected final Map<String, Integer> activeRequestCounts = new HashMap<String, Integer>();
+    /** The refresh state of each link. Links that are no longer used are discarded by the garbage collector. */
+    protected final Map<KMLNetworkLink, LinkState> linkStates = new WeakHashMap<KMLNetworkLink, LinkState>();
+    protected long requestSequence;
+
+    /**
+     * Returns the refresh scheduler shared by all KML documents.
+     *
+     * @return the refresh scheduler.
+     */
+    public static synchronized KMLRefreshScheduler getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new KMLRefreshScheduler(Configuration.getIntegerValue(AVKey.KML_REFRESH_MAX_REQUESTS_PER_HOST,
+                DEFAULT_MAX_REQUESTS_PER_HOST));
+        }
+
+        return instance;
+    }
+
+    /**
+     * Creates a refresh scheduler.
+     *
+     * @param maxRequestsPerHost the maximum number of concurrent retrievals from one host.
+     *
+     * @throws IllegalArgumentException if the maximum is less than one.
+     */
+    public KMLRefreshScheduler(int maxRequestsPerHost)
+    {
+        if (maxRequestsPerHost < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "maxRequestsPerHost < 1");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "World Wind KML Refresh");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Indicates the maximum number of concurrent retrievals from one host.
+     *
+     * @return the maximum number of concurrent retrievals from one host.
+     */
+    public int getMaxRequestsPerHost()
+    {
+        return this.maxRequestsPerHost;
+    }
+
+    /**
+     * Requests a refresh of a network link's resource. The refresh is retrieved when fewer than the maximum number of
+     * retrievals from the address's host are in progress, and its result is passed to {@link
+     * KMLNetworkLink#onRefreshRetrieved(KMLRoot, String, long)}. This does nothing if a refresh of the link is already
+     * waiting or in progress, or if the link's last refresh failed less than {@link #RETRY_DELAY} milliseconds ago. In
+     * the latter case the link keeps its current resource until the refresh is requested again after the delay.
+     *
+     * @param link     the link to refresh.
+     * @param address  the absolute HTTP address of the link's document.
+     * @param dueTime  the time at which the link's resource became out of date, in milliseconds since the Epoch.
+     *                 Waiting refreshes are retrieved earliest first.
+     * @param original the address as specified by the link, which is passed back to the link with the result.
+     *
+     * @return true if the refresh was queued or coalesced with a refresh in progress, false if it was deferred after
+     *         a failure.
+     *
+     * @throws IllegalArgumentException if the link or either address is null, or if the address is not an HTTP
+     *                                  address.
+     */
+    public boolean requestRefresh(KMLNetworkLink link, URL address, long dueTime, String original)
+    {
+        if (link == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (address == null || original == null)
+        {
+            String message = Logging.getMessage("nullValue.URLIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (!isHttpAddress(address))
+        {
+            String message = Logging.getMessage("generic.InvalidDataSource", address);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        synchronized (this)
+        {
+            LinkState state = this.linkStates.get(link);
+            if (state == null)
+            {
+                state = new LinkState();
+                this.linkStates.put(link, state);
+            }
+
+            if (state.pending)
+            {
+                state.metrics.coalescedCount++;
+                return true;
+            }
+
+            if (System.currentTimeMillis() < state.retryTime)
+                return false;
+
+            state.pending = true;
+
+            String host = address.getHost().toLowerCase();
+            Queue<Request> queue = this.waitingRequests.get(host);
+            if (queue == null)
+            {
+                queue = new PriorityQueue<Request>();
+                this.waitingRequests.put(host, queue);
+            }
+            queue.add(new Request(link, state, address, original, dueTime, this.requestSequence++));
+
+            this.dispatch(host);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the refresh metrics of a network link.
+     *
+     * @param link the link.
+     *
+     * @return a copy of the link's metrics, or null if the link has not been refreshed by this scheduler.
+     */
+    public synchronized Metrics getMetrics(KMLNetworkLink link)
+    {
+        LinkState state = this.linkStates.get(link);
+        return state != null ? new Metrics(state.metrics) : null;
+    }
+
+    /**
+     * Indicates whether an address can be refreshed by this scheduler.
+     *
+     * @param address the address to test. May be null.
+     *
+     * @return true if the address is an HTTP or HTTPS URL, otherwise false.
+     */
+    public static boolean isHttpAddress(URL address)
+    {
+        return address != null
+            && ("http".equalsIgnoreCase(address.getProtocol()) || "https".equalsIgnoreCase(address.getProtocol()));
+    }
+
+    /**
+     * Starts the waiting requests for a host until the maximum number of requests for the host are in progress. Must
+     * be called while holding this scheduler's lock.
+     *
+     * @param host the host.
+     */
+    protected void dispatch(final String host)
+    {
+        Queue<Request> queue = this.waitingRequests.get(host);
+        Integer count = this.activeRequestCounts.get(host);
+        int active = count != null ? count : 0;
+
+        while (active < this.maxRequestsPerHost && queue != null && !queue.isEmpty())
+        {
+            final Request request = queue.poll();
+            active++;
+
+            this.executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        runRequest(request);
+                    }
+                    finally
+                    {
+                        requestComplete(host);
+                    }
+                }
+            });
+        }
+
+        if (queue != null && queue.isEmpty())
+            this.waitingRequests.remove(host);
+
+        if (active > 0)
+            this.activeRequestCounts.put(host, active);
+        else
+            this.activeRequestCounts.remove(host);
+    }
+
+    protected synchronized void requestComplete(String host)
+    {
+        Integer count = this.activeRequestCounts.get(host);
+        if (count != null)
+            this.activeRequestCounts.put(host, count - 1);
+
+        this.dispatch(host);
+    }
+
+    /**
+     * Retrieves a refresh, and passes the result to the request's link. The link's resource is parsed from the
+     * retrieved content only if the content has changed.
+     *
+     * @param request the refresh to retrieve.
+     */
+    protected void runRequest(Request request)
+    {
+        Fetch fetch = null;
+        try
+        {
+            fetch = this.fetch(request.state, request.address);
+            this.handleResult(request, fetch);
+        }
+        catch (Exception e)
+        {
+            String message = Logging.getMessage("generic.UnableToResolveReference", request.address);
+            Logging.logger().log(Level.WARNING, message, e);
+            if (fetch != null)
+                fetch.result = Result.FAILED;
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                request.state.pending = false;
+                if (fetch == null || fetch.result == Result.FAILED)
+                {
+                    request.state.metrics.failureCount++;
+                    request.state.retryTime = System.currentTimeMillis() + RETRY_DELAY;
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the result of a refresh to the request's link. When the content has changed, this parses it and passes
+     * the new resource to the link. Otherwise the link's current resource is kept. The link's validators and content
+     * hash are updated only once the link holds the retrieved content, so that a retrieval whose content could not be
+     * parsed is retrieved and parsed again rather than reported unchanged.
+     *
+     * @param request the refresh request.
+     * @param fetch   the result of the retrieval.
+     *
+     * @throws Exception if the content cannot be parsed.
+     */
+    protected void handleResult(Request request, Fetch fetch) throws Exception
+    {
+        if (fetch.result == Result.NOT_MODIFIED || fetch.result == Result.UNCHANGED)
+        {
+            request.link.onRefreshRetrieved(null, request.original, fetch.expiration);
+        }
+        else if (fetch.result == Result.UPDATED)
+        {
+            KMLRoot resource = this.parseContent(request, fetch);
+            if (resource == null)
+            {
+                fetch.result = Result.FAILED;
+                return;
+            }
+
+            request.link.onRefreshRetrieved(resource, request.original, fetch.expiration);
+        }
+
+        this.updateState(request.state, fetch);
+    }
+
+    /**
+     * Parses the content of a retrieval into a new resource for the request's link.
+     *
+     * @param request the refresh request.
+     * @param fetch   the retrieval.
+     *
+     * @return the new resource, or null if the content is not a KML document.
+     *
+     * @throws Exception if the content cannot be parsed.
+     */
+    protected KMLRoot parseContent(Request request, Fetch fetch) throws Exception
+    {
+        return request.link.getRoot().parseRemoteContent(fetch.content, request.address.toString(),
+            fetch.contentType);
+    }
+
+    /**
+     * Records the validators and content hash of a retrieval whose content the link now holds. Subsequent refreshes of
+     * the same address are conditional on them.
+     *
+     * @param state the link's refresh state.
+     * @param fetch the retrieval.
+     */
+    protected synchronized void updateState(LinkState state, Fetch fetch)
+    {
+        if (fetch.contentHash == null)
+            return; // Nothing was retrieved, so the link's current validators still apply.
+
+        state.address = fetch.address;
+        state.contentHash = fetch.contentHash;
+        state.entityTag = fetch.entityTag;
+        state.lastModified = fetch.lastModified;
+    }
+
+    /**
+     * Retrieves a link's document with a conditional request, and determines whether its content has changed. The
+     * entity tag, modification time and content hash of the retrieval are returned with its result, and are recorded
+     * in the link's state by {@link #updateState(LinkState, Fetch)} once the content has been handled.
+     *
+     * @param state   the link's refresh state.
+     * @param address the address of the document.
+     *
+     * @return the result of the retrieval.
+     */
+    protected Fetch fetch(LinkState state, URL address)
+    {
+        Fetch fetch = new Fetch();
+        long startTime = System.currentTimeMillis();
+
+        try
+        {
+            HTTPRetriever retriever = new HTTPRetriever(address, null);
+
+            // The validators apply only to the address they were returned for. A link whose address changes, such as
+            // one that sends the view's bounding box, makes unconditional requests.
+            boolean sameAddress = address.toString().equals(state.address);
+            if (sameAddress)
+            {
+                retriever.setIfNoneMatch(state.entityTag);
+                retriever.setIfModifiedSince(state.lastModified);
+            }
+
+            retriever.call();
+
+            if (retriever.isNotModified())
+            {
+                fetch.result = Result.NOT_MODIFIED;
+            }
+            else if (retriever.getResponseCode() == HttpURLConnection.HTTP_OK && retriever.getBuffer() != null)
+            {
+                ByteBuffer content = retriever.getBuffer();
+                byte[] hash = computeHash(content);
+
+                fetch.result = sameAddress && Arrays.equals(hash, state.contentHash) ? Result.UNCHANGED
+                    : Result.UPDATED;
+                fetch.content = content;
+                fetch.contentType = retriever.getContentType();
+
+                fetch.address = address.toString();
+                fetch.contentHash = hash;
+                fetch.entityTag = retriever.getEntityTag();
+                fetch.lastModified = retriever.getLastModified();
+            }
+            else
+            {
+                fetch.result = Result.FAILED;
+            }
+
+            fetch.expiration = retriever.getExpirationTime();
+        }
+        catch (Exception e)
+        {
+            String message = Logging.getMessage("URLRetriever.ErrorAttemptingToRetrieve", address);
+            Logging.logger().log(Level.FINE, message, e);
+            fetch.result = Result.FAILED;
+        }
+
+        synchronized (this)
+        {
+            Metrics metrics = state.metrics;
+            metrics.requestCount++;
+            metrics.lastRequestTime = startTime;
+            metrics.lastResponseMillis = System.currentTimeMillis() - startTime;
+            if (fetch.content != null)
+                metrics.bytesReceived += fetch.content.remaining();
+            if (fetch.result == Result.NOT_MODIFIED)
+                metrics.notModifiedCount++;
+            else if (fetch.result == Result.UNCHANGED)
+                metrics.unchangedCount++;
+            else if (fetch.result == Result.UPDATED)
+                metrics.updatedCount++;
+        }
+
+        return fetch;
+    }
+
+    protected static byte[] computeHash(ByteBuffer content) throws NoSuchAlgorithmException
+    {
+        MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        digest.update(content.duplicate());
+        return digest.digest();
+    }
+
+    /** Refresh statistics for one network link. */
+    public static class Metrics
+    {
+        protected long requestCount;
+        protected long notModifiedCount;
+        protected long unchangedCount;
+        protected long updatedCount;
+        protected long failureCount;
+        protected long coalescedCount;
+        protected long bytesReceived;
+        protected long lastRequestTime;
+        protected long lastResponseMillis;
+
+        public Metrics()
+        {
+        }
+
+        public Metrics(Metrics metrics)
+        {
+            this.requestCount = metrics.requestCount;
+            this.notModifiedCount = metrics.notModifiedCount;
+            this.unchangedCount = metrics.unchangedCount;
+            this.updatedCount = metrics.updatedCount;
+            this.failureCount = metrics.failureCount;
+            this.coalescedCount = metrics.coalescedCount;
+            this.bytesReceived = metrics.bytesReceived;
+            this.lastRequestTime = metrics.lastRequestTime;
+            this.lastResponseMillis = metrics.lastResponseMillis;
+        }
+
+        /** @return the number of requests sent to the server. */
+        public long getRequestCount()
+        {
+            return this.requestCount;
+        }
+
+        /** @return the number of requests answered with <code>304 Not Modified</code>. */
+        public long getNotModifiedCount()
+        {
+            return this.notModifiedCount;
+        }
+
+        /** @return the number of requests that returned the link's current content, which was not parsed again. */
+        public long getUnchangedCount()
+        {
+            return this.unchangedCount;
+        }
+
+        /** @return the number of requests that returned new content. */
+        public long getUpdatedCount()
+        {
+            return this.updatedCount;
+        }
+
+        /** @return the number of refreshes that could not be retrieved or parsed. */
+        public long getFailureCount()
+        {
+            return this.failureCount;
+        }
+
+        /** @return the number of refresh requests coalesced with a refresh already waiting or in progress. */
+        public long getCoalescedCount()
+        {
+            return this.coalescedCount;
+        }
+
+        /** @return the number of content bytes received. */
+        public long getBytesReceived()
+        {
+            return this.bytesReceived;
+        }
+
+        /** @return the time of the most recent request, in milliseconds since the Epoch. */
+        public long getLastRequestTime()
+        {
+            return this.lastRequestTime;
+        }
+
+        /** @return the duration of the most recent request, in milliseconds. */
+        public long getLastResponseMillis()
+        {
+            return this.lastResponseMillis;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "requests " + this.requestCount + ", not modified " + this.notModifiedCount + ", unchanged "
+                + this.unchangedCount + ", updated " + this.updatedCount + ", failed " + this.failureCount
+                + ", coalesced " + this.coalescedCount + ", bytes " + this.bytesReceived;
+        }
+    }
+
+    /** The validators and content hash of a link's most recent retrieval, and the link's metrics. */
+    protected static class LinkState
+    {
+        protected String address;
+        protected String entityTag;
+        protected long lastModified;
+        protected byte[] contentHash;
+        protected boolean pending;
+        protected long retryTime;
+        protected Metrics metrics = new Metrics();
+    }
+
+    /** A refresh waiting for a connection to its host. Requests that became due earlier are retrieved first. */
+    protected static class Request implements Comparable<Request>
+    {
+        protected final KMLNetworkLink link;
+        protected final LinkState state;
+        protected final URL address;
+        protected final String original;
+        protected final long dueTime;
+        protected final long sequence;
+
+        public Request(KMLNetworkLink link, LinkState state, URL address, String original, long dueTime,
+            long sequence)
+        {
+            this.link = link;
+            this.state = state;
+            this.address = address;
+            this.original = original;
+            this.dueTime = dueTime;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(Request that)
+        {
+            if (this.dueTime != that.dueTime)
+                return this.dueTime < that.dueTime ? -1 : 1;
+
+            return this.sequence < that.sequence ? -1 : (this.sequence > that.sequence ? 1 : 0);
+        }
+    }
+
+    /** The result of retrieving a refresh. */
+    protected static class Fetch
+    {
+        protected Result result;
+        protected ByteBuffer content;
+        protected String contentType;
+        protected long expiration;
+        protected String address;
+        protected byte[] contentHash;
+        protected String entityTag;
+        protected long lastModified;
+    }
+}
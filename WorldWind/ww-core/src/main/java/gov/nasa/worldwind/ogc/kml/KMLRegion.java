@@ -418,6 +418,33 @@ public class KMLRegion extends KMLAbstractObject
         return this.getCurrentData().isActive();
     }
 
+    /**
+     * Indicates the screen area of this Region's extent, in square pixels, in the specified <code>DrawContext's</code>
+     * view. Larger Regions are closer to the viewer or cover more of the screen, and their network resources are
+     * therefore retrieved first.
+     *
+     * @param dc the current draw context.
+     *
+     * @return this Region's projected screen area. Positive infinity if the view's eye point is inside the extent, if
+     *         part of the extent is behind the eye point, or if this Region's extent is not known.
+     *
+     * @throws IllegalArgumentException if the <code>DrawContext</code> is <code>null</code>.
+     */
+    public double getProjectedArea(DrawContext dc)
+    {
+        if (dc == null)
+        {
+            String message = Logging.getMessage("nullValue.DrawContextIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.makeRegionData(dc);
+
+        Extent extent = this.getCurrentData().getExtent();
+        return extent != null ? extent.getProjectedArea(dc.getView()) : Double.POSITIVE_INFINITY;
+    }
+
     /**
      * Produces the data used to determine whether this Region is active for the specified <code>DrawContext</code>.
      * This attempts to re-use <code>RegionData</code> already been calculated this frame, or previously calculated
@@ -21,6 +21,7 @@ import javax.xml.stream.events.XMLEvent;
 import java.beans.PropertyChangeSupport;
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.zip.*;
 
@@ -41,6 +42,8 @@ public class KMLRoot extends KMLAbstractObject implements KMLRenderable
     protected InputStream eventStream;
     /** The parser context for the document. */
     protected KMLParserContext parserContext;
+    /** The number of bytes of XML read from the event stream. Determined as the document is parsed. */
+    protected long documentSize;
     /**
      * The <code>PropertyChangeSupport</code> that receives property change events this KMLRoot listens for, and sends
      * property change events to this KMLRoot's listeners. Lazily initialized in <code>getChangeSupport</code>.
@@ -435,7 +438,8 @@ public class KMLRoot extends KMLAbstractObject implements KMLRenderable
      */
     protected void initialize(boolean namespaceAware) throws IOException
     {
-        this.eventStream = this.getKMLDoc().getKMLStream();
+        InputStream stream = this.getKMLDoc().getKMLStream();
+        this.eventStream = stream != null ? new CountingInputStream(stream) : null;
         this.eventReader = this.createReader(this.eventStream, namespaceAware);
         if (this.eventReader == null)
             throw new WWRuntimeException(Logging.getMessage("XML.UnableToOpenDocument", this.getKMLDoc()));
@@ -1029,9 +1033,26 @@ public class KMLRoot extends KMLAbstractObject implements KMLRenderable
     protected KMLRoot parseCachedKMLFile(URL url, String linkBase, String contentType, boolean namespaceAware)
         throws IOException, XMLStreamException
     {
-        KMLDoc kmlDoc;
+        return this.parseKMLStream(url.openStream(), linkBase, contentType, namespaceAware);
+    }
 
-        InputStream refStream = url.openStream();
+    /**
+     * Open and parse a KML or KMZ document from a stream.
+     *
+     * @param refStream      the stream to parse. The stream is closed when parsing completes or fails.
+     * @param linkBase       the original address of the document.
+     * @param contentType    the mime type of the stream's content, either a KML or KMZ mime type.
+     * @param namespaceAware specifies whether to use a namespace aware event reader.
+     *
+     * @return A {@code KMLRoot} representing the stream's KML contents.
+     *
+     * @throws IOException        if an I/O error occurs during opening and parsing.
+     * @throws XMLStreamException if a server parsing error is encountered.
+     */
+    protected KMLRoot parseKMLStream(InputStream refStream, String linkBase, String contentType,
+        boolean namespaceAware) throws IOException, XMLStreamException
+    {
+        KMLDoc kmlDoc;
 
         if (KMLConstants.KMZ_MIME_TYPE.equals(contentType))
             kmlDoc = new KMZInputStream(refStream);
@@ -1051,6 +1072,75 @@ public class KMLRoot extends KMLAbstractObject implements KMLRenderable
         }
     }
 
+    /**
+     * Parses a KML or KMZ document held in memory, such as the content of a network link retrieved directly from its
+     * server. This first attempts to parse the document with a namespace-aware event stream, then with a
+     * namespace-unaware event stream.
+     *
+     * @param content     the document's content.
+     * @param linkBase    the address from which the content was retrieved. Relative references within the document
+     *                    are resolved against this address.
+     * @param contentType the mime type of the content. May be null, in which case the type is determined from the
+     *                    address's suffix.
+     *
+     * @return the parsed document, or null if the content is not a KML or KMZ document or cannot be parsed.
+     *
+     * @throws IllegalArgumentException if either the content or the address is null.
+     * @throws IOException              if an I/O error occurs while reading the content.
+     */
+    public KMLRoot parseRemoteContent(ByteBuffer content, String linkBase, String contentType) throws IOException
+    {
+        if (content == null)
+        {
+            String message = Logging.getMessage("nullValue.ByteBufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (linkBase == null)
+        {
+            String message = Logging.getMessage("nullValue.DocumentSourceIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Ignore any parameters following the mime type, such as the character set.
+        if (contentType != null)
+            contentType = contentType.split(";")[0].trim();
+
+        if (!this.canParseContentType(contentType))
+        {
+            String suffix = WWIO.getSuffix(linkBase.split(";")[0]); // strip of trailing garbage
+            if (!WWUtil.isEmpty(suffix))
+                contentType = WWIO.makeMimeTypeForSuffix(suffix);
+        }
+
+        if (!this.canParseContentType(contentType))
+            return null;
+
+        try
+        {
+            // Try to parse with a namespace-aware event stream.
+            return this.parseKMLStream(WWIO.getInputStreamFromByteBuffer(content.duplicate()), linkBase, contentType,
+                true);
+        }
+        catch (XMLStreamException e)
+        {
+            // Well that didn't work, so try with a namespace-unaware event stream.
+            try
+            {
+                return this.parseKMLStream(WWIO.getInputStreamFromByteBuffer(content.duplicate()), linkBase,
+                    contentType, false);
+            }
+            catch (XMLStreamException e1)
+            {
+                String message = Logging.getMessage("generic.UnableToResolveReference", linkBase);
+                Logging.logger().warning(message);
+                return null;
+            }
+        }
+    }
+
     /**
      * Starts document parsing. This method initiates parsing of the KML document and returns when the full document has
      * been parsed.
@@ -1101,6 +1191,9 @@ public class KMLRoot extends KMLAbstractObject implements KMLRenderable
     {
         try
         {
+            if (this.eventStream instanceof CountingInputStream)
+                this.documentSize = ((CountingInputStream) this.eventStream).count;
+
             this.eventStream.close();
             this.eventStream = null;
         }
@@ -1215,6 +1308,17 @@ public class KMLRoot extends KMLAbstractObject implements KMLRenderable
         this.firePropertyChange(AVKey.REPAINT, null, null);
     }
 
+    /**
+     * Indicates the size of this document's XML, which is a measure of the memory the parsed document uses. For a KMZ
+     * file this is the size of the uncompressed KML. The size is determined when the document is parsed.
+     *
+     * @return the number of bytes of XML parsed, or 0 if the document has not been parsed.
+     */
+    public long getDocumentSize()
+    {
+        return this.documentSize;
+    }
+
     public void preRender(KMLTraversalContext tc, DrawContext dc)
     {
         if (this.getFeature() != null)
@@ -1329,4 +1433,48 @@ public class KMLRoot extends KMLAbstractObject implements KMLRenderable
             this.propertyChangeSupport = new PropertyChangeSupport(this);
         return this.propertyChangeSupport;
     }
+
+    /** An input stream that counts the bytes read from the stream it wraps. */
+    protected static class CountingInputStream extends FilterInputStream
+    {
+        /** The number of bytes read. */
+        protected long count;
+
+        public CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b >= 0)
+                this.count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                this.count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = super.skip(n);
+            this.count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+    }
 }
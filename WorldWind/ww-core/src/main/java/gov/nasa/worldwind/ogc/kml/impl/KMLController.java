@@ -8,7 +8,7 @@ package gov.nasa.worldwind.ogc.kml.impl;
 
 import gov.nasa.worldwind.WWObjectImpl;
 import gov.nasa.worldwind.event.*;
-import gov.nasa.worldwind.ogc.kml.KMLRoot;
+import gov.nasa.worldwind.ogc.kml.*;
 import gov.nasa.worldwind.render.*;
 
 /**
@@ -61,6 +61,7 @@ public class KMLController extends WWObjectImpl implements PreRenderable, Render
     {
         this.initializeTraversalContext(this.getTraversalContext());
         this.kmlRoot.preRender(this.getTraversalContext(), dc);
+        KMLNetworkResourceManager.getInstance().sendRequests();
     }
 
     public void render(DrawContext dc)
@@ -0,0 +1,482 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.pick;
+
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.render.*;
+import gov.nasa.worldwind.util.Logging;
+
+import javax.media.opengl.GL;
+import java.awt.*;
+import java.nio.*;
+
+/**
+ * Picks objects by intersecting the pick point or pick rectangle with the objects' geometry on the CPU, rather than by
+ * drawing the objects in unique colors and reading the colors back from OpenGL as {@link PickSupport} does. This
+ * avoids the extra drawing pass and the frame buffer read, and does not stall the graphics pipeline.
+ * <p/>
+ * Geometry is added in model coordinates and projected to the screen using the view specified at construction, or is
+ * added directly in screen coordinates. Renderables implementing {@link AnalyticPickable} add their own geometry.
+ * Renderables that do not, but are {@link ExtentHolder}s, are represented by their extents. Points and rectangles passed
+ * to the pick methods are in AWT screen coordinates, as are the pick point and pick rectangle of the draw context.
+ * Picked objects are returned as {@link PickedObjectList}s compatible with those produced by color picking.
+ * <p/>
+ * The results reflect the geometry displayed in the most recent frame. Because depth is compared per primitive rather
+ * than per pixel, objects are ordered correctly only where their primitives do not interpenetrate.
+ *
+ * @version $Id$
+ */
+public class AnalyticPickSupport
+{
+    /** The default distance, in pixels, within which points are considered to pick geometry. */
+    protected static final double DEFAULT_PICK_TOLERANCE = 0.5;
+
+    protected View view;
+    protected Rectangle viewport;
+    protected ScreenPickIndex index = new ScreenPickIndex();
+    protected double pickTolerance = DEFAULT_PICK_TOLERANCE;
+    protected Layer currentLayer;
+    /** Scratch array of projected points, as x, y, depth triples. */
+    protected double[] coords = new double[48];
+
+    /**
+     * Creates a pick support that projects model coordinate geometry using a specified view.
+     *
+     * @param view the view to project geometry with.
+     *
+     * @throws IllegalArgumentException if the view is null.
+     */
+    public AnalyticPickSupport(View view)
+    {
+        if (view == null)
+        {
+            String msg = Logging.getMessage("nullValue.ViewIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.view = view;
+        this.viewport = view.getViewport();
+    }
+
+    public View getView()
+    {
+        return this.view;
+    }
+
+    /**
+     * Returns the index holding the screen-space pick geometry.
+     *
+     * @return the screen pick index.
+     */
+    public ScreenPickIndex getIndex()
+    {
+        return this.index;
+    }
+
+    public double getPickTolerance()
+    {
+        return this.pickTolerance;
+    }
+
+    /**
+     * Specifies the distance, in pixels, within which a pick point is considered to pick geometry.
+     *
+     * @param pickTolerance the pick tolerance.
+     *
+     * @throws IllegalArgumentException if the tolerance is negative.
+     */
+    public void setPickTolerance(double pickTolerance)
+    {
+        if (pickTolerance < 0)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", "pickTolerance < 0");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.pickTolerance = pickTolerance;
+    }
+
+    public Layer getCurrentLayer()
+    {
+        return this.currentLayer;
+    }
+
+    /**
+     * Specifies the layer reported as the parent layer of subsequently added objects.
+     *
+     * @param layer the current layer. May be null.
+     */
+    public void setCurrentLayer(Layer layer)
+    {
+        this.currentLayer = layer;
+    }
+
+    /** Removes all geometry from this pick support. */
+    public void clear()
+    {
+        this.index.clear();
+        this.viewport = this.view.getViewport();
+    }
+
+    /**
+     * Adds the pickable geometry of a collection of renderables. Renderables implementing {@link AnalyticPickable} add
+     * their own geometry; other {@link ExtentHolder}s are represented by their extents. Other renderables are ignored.
+     *
+     * @param dc          the current draw context.
+     * @param renderables the renderables to add.
+     *
+     * @throws IllegalArgumentException if either argument is null.
+     */
+    public void addRenderables(DrawContext dc, Iterable<?> renderables)
+    {
+        if (dc == null)
+        {
+            String msg = Logging.getMessage("nullValue.DrawContextIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (renderables == null)
+        {
+            String msg = Logging.getMessage("nullValue.IterableIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        for (Object renderable : renderables)
+        {
+            if (renderable instanceof AnalyticPickable)
+            {
+                ((AnalyticPickable) renderable).addAnalyticPickGeometry(dc, this);
+            }
+            else if (renderable instanceof ExtentHolder)
+            {
+                Extent extent = ((ExtentHolder) renderable).getExtent(dc.getGlobe(), dc.getVerticalExaggeration());
+                if (extent != null)
+                    this.addExtent(renderable, null, extent);
+            }
+        }
+    }
+
+    /**
+     * Adds a pickable object whose geometry is subsequently added by the <code>add</code> methods taking an object
+     * index.
+     *
+     * @param userObject the object to report when picked.
+     * @param position   the position to report for the object. May be null.
+     *
+     * @return the object's index.
+     *
+     * @throws IllegalArgumentException if the object is null.
+     */
+    public int addObject(Object userObject, Position position)
+    {
+        return this.index.addObject(userObject, position, this.currentLayer);
+    }
+
+    /**
+     * Adds an object represented by the screen-space square bounding its projected extent.
+     *
+     * @param userObject the object to report when picked.
+     * @param position   the position to report for the object. May be null.
+     * @param extent     the object's extent, in model coordinates.
+     *
+     * @throws IllegalArgumentException if the object or extent is null.
+     */
+    public void addExtent(Object userObject, Position position, Extent extent)
+    {
+        if (extent == null)
+        {
+            String msg = Logging.getMessage("nullValue.ExtentIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int object = this.addObject(userObject, position);
+
+        double distance = this.view.getEyePoint().distanceTo3(extent.getCenter());
+        if (distance <= extent.getRadius())
+        {
+            // The eye is within the extent, which covers the viewport.
+            this.index.addRectangle(object, this.viewport.getMinX(), this.viewport.getMinY(), this.viewport.getMaxX(),
+                this.viewport.getMaxY(), 0);
+            return;
+        }
+
+        Vec4 center = this.view.project(extent.getCenter());
+        if (center == null || center.z < 0 || center.z > 1)
+            return; // The extent's center is outside the depth range. Its extent is ambiguous on the screen.
+
+        double r = extent.getRadius() / this.view.computePixelSizeAtDistance(distance);
+        this.index.addRectangle(object, center.x - r, center.y - r, center.x + r, center.y + r, center.z);
+    }
+
+    /**
+     * Adds a rectangle in OpenGL screen coordinates, which have their origin at the lower left of the viewport.
+     *
+     * @param object    the index of the object the rectangle belongs to.
+     * @param rectangle the rectangle.
+     * @param depth     the rectangle's depth, in the range [0, 1].
+     *
+     * @throws IllegalArgumentException if the rectangle is null.
+     */
+    public void addScreenRectangle(int object, Rectangle rectangle, double depth)
+    {
+        if (rectangle == null)
+        {
+            String msg = Logging.getMessage("nullValue.RectangleIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.index.addRectangle(object, rectangle.getMinX(), rectangle.getMinY(), rectangle.getMaxX(),
+            rectangle.getMaxY(), depth);
+    }
+
+    /**
+     * Adds the segments of a line strip. Segments having an end point outside the view's depth range are omitted.
+     *
+     * @param object         the index of the object the line belongs to.
+     * @param points         the line's points as x, y, z coordinates relative to the reference point.
+     * @param offset         the index of the first point's x coordinate.
+     * @param stride         the number of values between the start of consecutive points.
+     * @param count          the number of points.
+     * @param referencePoint the point the coordinates are relative to. May be null to indicate the origin.
+     * @param lineWidth      the line's width, in pixels.
+     *
+     * @throws IllegalArgumentException if the points are null.
+     */
+    public void addLineStrip(int object, FloatBuffer points, int offset, int stride, int count,
+        Vec4 referencePoint, double lineWidth)
+    {
+        if (points == null)
+        {
+            String msg = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        Vec4 ref = referencePoint != null ? referencePoint : Vec4.ZERO;
+        Vec4 previous = null;
+        for (int i = 0; i < count; i++)
+        {
+            int p = offset + i * stride;
+            Vec4 current = this.view.project(
+                new Vec4(points.get(p) + ref.x, points.get(p + 1) + ref.y, points.get(p + 2) + ref.z));
+            if (current != null && (current.z < 0 || current.z > 1))
+                current = null;
+
+            if (previous != null && current != null)
+                this.index.addSegment(object, previous.x, previous.y, previous.z, current.x, current.y, current.z,
+                    lineWidth);
+
+            previous = current;
+        }
+    }
+
+    /**
+     * Adds triangles indexed into an array of points. Triangles having a vertex outside the view's depth range are
+     * omitted.
+     *
+     * @param object         the index of the object the triangles belong to.
+     * @param points         the triangles' vertices relative to the reference point.
+     * @param referencePoint the point the vertices are relative to. May be null to indicate the origin.
+     * @param primType       the primitive type: one of <code>GL.GL_TRIANGLES</code>, <code>GL.GL_TRIANGLE_STRIP</code>
+     *                       or <code>GL.GL_TRIANGLE_FAN</code>.
+     * @param indices        the vertex indices, from the buffer's position to its limit.
+     *
+     * @throws IllegalArgumentException if the points or indices are null, or the primitive type is not recognized.
+     */
+    public void addTriangles(int object, Vec4[] points, Vec4 referencePoint, int primType, IntBuffer indices)
+    {
+        if (points == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (indices == null)
+        {
+            String msg = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (primType != GL.GL_TRIANGLES && primType != GL.GL_TRIANGLE_STRIP && primType != GL.GL_TRIANGLE_FAN)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", "primType=" + primType);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.projectPoints(points, referencePoint);
+
+        int start = indices.position();
+        int n = indices.limit() - start;
+        if (primType == GL.GL_TRIANGLES)
+        {
+            for (int i = 0; i + 2 < n; i += 3)
+            {
+                this.addProjectedTriangle(object, indices.get(start + i), indices.get(start + i + 1),
+                    indices.get(start + i + 2));
+            }
+        }
+        else if (primType == GL.GL_TRIANGLE_STRIP)
+        {
+            for (int i = 0; i + 2 < n; i++)
+            {
+                this.addProjectedTriangle(object, indices.get(start + i), indices.get(start + i + 1),
+                    indices.get(start + i + 2));
+            }
+        }
+        else
+        {
+            for (int i = 1; i + 1 < n; i++)
+            {
+                this.addProjectedTriangle(object, indices.get(start), indices.get(start + i),
+                    indices.get(start + i + 1));
+            }
+        }
+    }
+
+    /**
+     * Adds the quadrilaterals joining two parallel line strips, such as the top and bottom of an extruded boundary.
+     * Quadrilaterals having a vertex outside the view's depth range are omitted.
+     *
+     * @param object         the index of the object the quadrilaterals belong to.
+     * @param top            the points of the first line strip, relative to the reference point.
+     * @param bottom         the points of the second line strip, relative to the reference point.
+     * @param count          the number of points in each strip.
+     * @param referencePoint the point the vertices are relative to. May be null to indicate the origin.
+     *
+     * @throws IllegalArgumentException if either array is null.
+     */
+    public void addQuadStrip(int object, Vec4[] top, Vec4[] bottom, int count, Vec4 referencePoint)
+    {
+        if (top == null || bottom == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        // Interleave the strips so that vertex 2i is on the top strip and 2i + 1 is below it on the bottom strip.
+        Vec4[] points = new Vec4[2 * count];
+        for (int i = 0; i < count; i++)
+        {
+            points[2 * i] = top[i];
+            points[2 * i + 1] = bottom[i];
+        }
+
+        this.projectPoints(points, referencePoint);
+
+        for (int i = 0; i + 1 < count; i++)
+        {
+            int a = 2 * i;
+            this.addProjectedTriangle(object, a, a + 1, a + 2);
+            this.addProjectedTriangle(object, a + 1, a + 3, a + 2);
+        }
+    }
+
+    /**
+     * Returns the objects at a screen point, ordered nearest first. The nearest object is marked as on top.
+     *
+     * @param pickPoint the point, in AWT screen coordinates.
+     *
+     * @return the picked objects. The list is empty if no objects are at the point.
+     *
+     * @throws IllegalArgumentException if the point is null.
+     */
+    public PickedObjectList pick(Point pickPoint)
+    {
+        return this.pick(pickPoint, true);
+    }
+
+    /**
+     * Returns the objects at a screen point, ordered nearest first, and optionally marks the nearest object as on top.
+     *
+     * @param pickPoint the point, in AWT screen coordinates.
+     * @param markTop   true to mark the nearest object as on top, otherwise false.
+     *
+     * @return the picked objects. The list is empty if no objects are at the point.
+     *
+     * @throws IllegalArgumentException if the point is null.
+     */
+    public PickedObjectList pick(Point pickPoint, boolean markTop)
+    {
+        if (pickPoint == null)
+        {
+            String msg = Logging.getMessage("nullValue.PointIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        return this.index.pick(pickPoint.x, this.viewport.height - pickPoint.y - 1, this.pickTolerance, markTop);
+    }
+
+    /**
+     * Returns the objects intersecting a screen rectangle.
+     *
+     * @param pickRect the rectangle, in AWT screen coordinates.
+     *
+     * @return the objects intersecting the rectangle. The list is empty if no objects intersect the rectangle.
+     *
+     * @throws IllegalArgumentException if the rectangle is null.
+     */
+    public PickedObjectList getObjectsInPickRectangle(Rectangle pickRect)
+    {
+        if (pickRect == null)
+        {
+            String msg = Logging.getMessage("nullValue.RectangleIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        // Convert the rectangle's top and bottom rows from AWT to OpenGL coordinates.
+        double maxY = this.viewport.height - pickRect.y - 1;
+        double minY = maxY - pickRect.height + 1;
+
+        return this.index.pickRectangle(pickRect.x, minY, pickRect.x + pickRect.width - 1, maxY);
+    }
+
+    /**
+     * Projects points to the screen, storing the results in the scratch coordinate array. Points outside the view's
+     * depth range are stored with a depth of NaN.
+     *
+     * @param points         the points to project, relative to the reference point.
+     * @param referencePoint the point the points are relative to. May be null to indicate the origin.
+     */
+    protected void projectPoints(Vec4[] points, Vec4 referencePoint)
+    {
+        if (this.coords.length < 3 * points.length)
+            this.coords = new double[3 * points.length];
+
+        for (int i = 0; i < points.length; i++)
+        {
+            Vec4 p = points[i];
+            Vec4 s = p == null ? null
+                : this.view.project(referencePoint != null ? p.add3(referencePoint) : p);
+            boolean valid = s != null && s.z >= 0 && s.z <= 1;
+            this.coords[3 * i] = valid ? s.x : 0;
+            this.coords[3 * i + 1] = valid ? s.y : 0;
+            this.coords[3 * i + 2] = valid ? s.z : Double.NaN;
+        }
+    }
+
+    protected void addProjectedTriangle(int object, int a, int b, int c)
+    {
+        if (Double.isNaN(this.coords[3 * a + 2]) || Double.isNaN(this.coords[3 * b + 2])
+            || Double.isNaN(this.coords[3 * c + 2]))
+            return;
+
+        this.index.addTriangle(object, this.coords, a, b, c);
+    }
+}
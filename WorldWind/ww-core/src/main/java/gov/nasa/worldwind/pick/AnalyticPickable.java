@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.pick;
+
+import gov.nasa.worldwind.render.DrawContext;
+
+/**
+ * An interface for renderables that can describe their pickable geometry to an {@link AnalyticPickSupport}, allowing
+ * them to be picked without drawing them in pick colors.
+ *
+ * @version $Id$
+ */
+public interface AnalyticPickable
+{
+    /**
+     * Adds this object's pickable geometry, as displayed in the most recent frame, to a pick support.
+     *
+     * @param dc          the current draw context.
+     * @param pickSupport the pick support to add the geometry to.
+     */
+    void addAnalyticPickGeometry(DrawContext dc, AnalyticPickSupport pickSupport);
+}
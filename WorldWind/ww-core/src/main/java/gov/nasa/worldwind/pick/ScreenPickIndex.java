@@ -0,0 +1,729 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.pick;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+
+/**
+ * A bounding volume hierarchy over screen-space pick geometry, used to answer point picks and rectangle picks without
+ * drawing the scene in pick colors and reading the frame buffer back from OpenGL. The index holds three kinds of
+ * primitives, each belonging to a pickable object: axis-aligned rectangles, line segments with a width, and triangles.
+ * Primitive coordinates are screen coordinates with an associated depth, for example as computed by {@link
+ * gov.nasa.worldwind.View#project(gov.nasa.worldwind.geom.Vec4)}. Smaller depths are nearer the eye.
+ * <p/>
+ * Add objects and their primitives, then query the index. The hierarchy is built by {@link #build()}, which queries
+ * call automatically when primitives have been added since the last build. The index uses no OpenGL resources.
+ * <p/>
+ * ScreenPickIndex is not thread safe.
+ *
+ * @version $Id$
+ */
+public class ScreenPickIndex
+{
+    protected static final byte RECTANGLE = 0;
+    protected static final byte SEGMENT = 1;
+    protected static final byte TRIANGLE = 2;
+    /** The maximum number of primitives in a leaf node. */
+    protected static final int MAX_LEAF_SIZE = 4;
+
+    // Pickable objects. Each primitive refers to one of these by index.
+    protected ArrayList<Object> objects = new ArrayList<Object>();
+    protected ArrayList<Position> positions = new ArrayList<Position>();
+    protected ArrayList<Layer> layers = new ArrayList<Layer>();
+
+    // Primitives in struct-of-arrays form.
+    protected int numPrimitives;
+    protected byte[] primTypes = new byte[64];
+    protected int[] primOwners = new int[64];
+    protected int[] primGeomOffsets = new int[64];
+    /** Primitive bounds as minX, minY, maxX, maxY. */
+    protected double[] primBounds = new double[256];
+    /** Primitive geometry. Rectangles and segments store x, y, depth per point; segments also store a half width. */
+    protected double[] geometry = new double[256];
+    protected int geometrySize;
+
+    // The hierarchy. Nodes are stored in depth-first order, so a node's left child immediately follows it.
+    protected int[] primIndices;
+    protected int numNodes;
+    protected double[] nodeBounds;
+    protected int[] nodeStart;
+    protected int[] nodeCount; // Primitive count for leaf nodes, 0 for interior nodes.
+    protected int[] nodeRight; // Right child for interior nodes.
+    protected boolean built;
+
+    // Per-query state. Owners are marked with the query stamp to avoid clearing per-owner arrays for each query.
+    protected int queryStamp;
+    protected int[] ownerStamps = new int[0];
+    protected double[] ownerDepths = new double[0];
+    protected int[] stack = new int[64];
+
+    /** Creates an empty index. */
+    public ScreenPickIndex()
+    {
+    }
+
+    /**
+     * Returns the number of primitives in the index.
+     *
+     * @return the number of primitives.
+     */
+    public int getNumPrimitives()
+    {
+        return this.numPrimitives;
+    }
+
+    /**
+     * Returns the number of pickable objects in the index.
+     *
+     * @return the number of pickable objects.
+     */
+    public int getNumObjects()
+    {
+        return this.objects.size();
+    }
+
+    /** Removes all objects and primitives from the index. */
+    public void clear()
+    {
+        this.objects.clear();
+        this.positions.clear();
+        this.layers.clear();
+        this.numPrimitives = 0;
+        this.geometrySize = 0;
+        this.numNodes = 0;
+        this.built = false;
+    }
+
+    /**
+     * Adds a pickable object to the index. The object's primitives are subsequently added by specifying the returned
+     * object index.
+     *
+     * @param userObject the object to report when one of its primitives is picked.
+     * @param position   the position to report for the picked object. May be null.
+     * @param layer      the layer to report as the picked object's parent layer. May be null.
+     *
+     * @return the index of the object.
+     *
+     * @throws IllegalArgumentException if the object is null.
+     */
+    public int addObject(Object userObject, Position position, Layer layer)
+    {
+        if (userObject == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.objects.add(userObject);
+        this.positions.add(position);
+        this.layers.add(layer);
+        this.built = false;
+
+        return this.objects.size() - 1;
+    }
+
+    /**
+     * Adds a screen rectangle at a constant depth.
+     *
+     * @param object the index of the object the rectangle belongs to.
+     * @param minX   the rectangle's minimum x coordinate.
+     * @param minY   the rectangle's minimum y coordinate.
+     * @param maxX   the rectangle's maximum x coordinate.
+     * @param maxY   the rectangle's maximum y coordinate.
+     * @param depth  the rectangle's depth.
+     */
+    public void addRectangle(int object, double minX, double minY, double maxX, double maxY, double depth)
+    {
+        int offset = this.addPrimitive(RECTANGLE, object, minX, minY, maxX, maxY, 1);
+        this.geometry[offset] = depth;
+    }
+
+    /**
+     * Adds a line segment with a width. The segment's depth is interpolated along its length.
+     *
+     * @param object    the index of the object the segment belongs to.
+     * @param x0        the first point's x coordinate.
+     * @param y0        the first point's y coordinate.
+     * @param z0        the first point's depth.
+     * @param x1        the second point's x coordinate.
+     * @param y1        the second point's y coordinate.
+     * @param z1        the second point's depth.
+     * @param lineWidth the segment's width, in screen units.
+     */
+    public void addSegment(int object, double x0, double y0, double z0, double x1, double y1, double z1,
+        double lineWidth)
+    {
+        double hw = 0.5 * lineWidth;
+        int offset = this.addPrimitive(SEGMENT, object, Math.min(x0, x1) - hw, Math.min(y0, y1) - hw,
+            Math.max(x0, x1) + hw, Math.max(y0, y1) + hw, 7);
+        double[] g = this.geometry;
+        g[offset] = x0;
+        g[offset + 1] = y0;
+        g[offset + 2] = z0;
+        g[offset + 3] = x1;
+        g[offset + 4] = y1;
+        g[offset + 5] = z1;
+        g[offset + 6] = hw;
+    }
+
+    /**
+     * Adds a triangle. The triangle's depth is interpolated across its surface.
+     *
+     * @param object the index of the object the triangle belongs to.
+     * @param coords the triangle's vertices as x, y, depth triples.
+     * @param a      the index of the triple defining the first vertex.
+     * @param b      the index of the triple defining the second vertex.
+     * @param c      the index of the triple defining the third vertex.
+     */
+    public void addTriangle(int object, double[] coords, int a, int b, int c)
+    {
+        a *= 3;
+        b *= 3;
+        c *= 3;
+        int offset = this.addPrimitive(TRIANGLE, object,
+            Math.min(coords[a], Math.min(coords[b], coords[c])),
+            Math.min(coords[a + 1], Math.min(coords[b + 1], coords[c + 1])),
+            Math.max(coords[a], Math.max(coords[b], coords[c])),
+            Math.max(coords[a + 1], Math.max(coords[b + 1], coords[c + 1])), 9);
+        System.arraycopy(coords, a, this.geometry, offset, 3);
+        System.arraycopy(coords, b, this.geometry, offset + 3, 3);
+        System.arraycopy(coords, c, this.geometry, offset + 6, 3);
+    }
+
+    /** Builds the hierarchy over the primitives added so far. */
+    public void build()
+    {
+        int n = this.numPrimitives;
+
+        if (this.primIndices == null || this.primIndices.length < n)
+            this.primIndices = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            this.primIndices[i] = i;
+        }
+
+        // A binary tree with leaves of at least one primitive has fewer than 2n nodes.
+        int maxNodes = Math.max(1, 2 * n);
+        if (this.nodeStart == null || this.nodeStart.length < maxNodes)
+        {
+            this.nodeBounds = new double[4 * maxNodes];
+            this.nodeStart = new int[maxNodes];
+            this.nodeCount = new int[maxNodes];
+            this.nodeRight = new int[maxNodes];
+        }
+
+        this.numNodes = 0;
+        if (n > 0)
+            this.buildNode(0, n);
+
+        int numObjects = this.objects.size();
+        if (this.ownerStamps.length < numObjects)
+        {
+            this.ownerStamps = new int[numObjects];
+            this.ownerDepths = new double[numObjects];
+            this.queryStamp = 0;
+        }
+
+        this.built = true;
+    }
+
+    /**
+     * Returns the objects having a primitive within a specified distance of a screen point, ordered nearest first. The
+     * nearest object is marked as on top. The list contains one entry per object, at the depth of the object's nearest
+     * primitive under the point.
+     *
+     * @param x         the point's x coordinate.
+     * @param y         the point's y coordinate.
+     * @param tolerance the distance from the point within which primitives are considered picked.
+     *
+     * @return the picked objects. The list is empty if no objects are picked.
+     */
+    public PickedObjectList pick(double x, double y, double tolerance)
+    {
+        return this.pick(x, y, tolerance, true);
+    }
+
+    /**
+     * Returns the objects having a primitive within a specified distance of a screen point, ordered nearest first, and
+     * optionally marks the nearest object as on top. Callers that resolve the top object against other pick sources
+     * leave it unmarked.
+     *
+     * @param x         the point's x coordinate.
+     * @param y         the point's y coordinate.
+     * @param tolerance the distance from the point within which primitives are considered picked.
+     * @param markTop   true to mark the nearest object as on top, otherwise false.
+     *
+     * @return the picked objects. The list is empty if no objects are picked.
+     */
+    public PickedObjectList pick(double x, double y, double tolerance, boolean markTop)
+    {
+        this.checkBuilt();
+
+        int stamp = this.nextQueryStamp();
+        List<Integer> hits = new ArrayList<Integer>();
+
+        int top = 0;
+        if (this.numNodes > 0)
+            this.stack[top++] = 0;
+
+        while (top > 0)
+        {
+            int node = this.stack[--top];
+            int b = 4 * node;
+            if (x < this.nodeBounds[b] - tolerance || y < this.nodeBounds[b + 1] - tolerance
+                || x > this.nodeBounds[b + 2] + tolerance || y > this.nodeBounds[b + 3] + tolerance)
+                continue;
+
+            int count = this.nodeCount[node];
+            if (count == 0)
+            {
+                top = this.push(top, this.nodeRight[node]);
+                top = this.push(top, node + 1);
+                continue;
+            }
+
+            for (int i = this.nodeStart[node]; i < this.nodeStart[node] + count; i++)
+            {
+                int prim = this.primIndices[i];
+                double depth = this.pickPrimitive(prim, x, y, tolerance);
+                if (Double.isNaN(depth))
+                    continue;
+
+                int owner = this.primOwners[prim];
+                if (this.ownerStamps[owner] != stamp)
+                {
+                    this.ownerStamps[owner] = stamp;
+                    this.ownerDepths[owner] = depth;
+                    hits.add(owner);
+                }
+                else if (depth < this.ownerDepths[owner])
+                {
+                    this.ownerDepths[owner] = depth;
+                }
+            }
+        }
+
+        final double[] depths = this.ownerDepths;
+        Collections.sort(hits, new Comparator<Integer>()
+        {
+            public int compare(Integer a, Integer b)
+            {
+                int c = Double.compare(depths[a], depths[b]);
+                return c != 0 ? c : a.compareTo(b);
+            }
+        });
+
+        PickedObjectList list = new PickedObjectList();
+        for (Integer owner : hits)
+        {
+            list.add(this.createPickedObject(owner, markTop && list.isEmpty()));
+        }
+
+        return list;
+    }
+
+    /**
+     * Returns the objects having a primitive that intersects a screen rectangle, in the order the objects were added
+     * to the index. No object is marked as on top.
+     *
+     * @param minX the rectangle's minimum x coordinate.
+     * @param minY the rectangle's minimum y coordinate.
+     * @param maxX the rectangle's maximum x coordinate.
+     * @param maxY the rectangle's maximum y coordinate.
+     *
+     * @return the objects intersecting the rectangle. The list is empty if no objects intersect the rectangle.
+     */
+    public PickedObjectList pickRectangle(double minX, double minY, double maxX, double maxY)
+    {
+        this.checkBuilt();
+
+        int stamp = this.nextQueryStamp();
+        List<Integer> hits = new ArrayList<Integer>();
+
+        int top = 0;
+        if (this.numNodes > 0)
+            this.stack[top++] = 0;
+
+        while (top > 0)
+        {
+            int node = this.stack[--top];
+            int b = 4 * node;
+            if (maxX < this.nodeBounds[b] || maxY < this.nodeBounds[b + 1]
+                || minX > this.nodeBounds[b + 2] || minY > this.nodeBounds[b + 3])
+                continue;
+
+            int count = this.nodeCount[node];
+            if (count == 0)
+            {
+                top = this.push(top, this.nodeRight[node]);
+                top = this.push(top, node + 1);
+                continue;
+            }
+
+            for (int i = this.nodeStart[node]; i < this.nodeStart[node] + count; i++)
+            {
+                int prim = this.primIndices[i];
+                int owner = this.primOwners[prim];
+                if (this.ownerStamps[owner] == stamp)
+                    continue;
+
+                if (this.intersectsPrimitive(prim, minX, minY, maxX, maxY))
+                {
+                    this.ownerStamps[owner] = stamp;
+                    hits.add(owner);
+                }
+            }
+        }
+
+        Collections.sort(hits);
+
+        PickedObjectList list = new PickedObjectList();
+        for (Integer owner : hits)
+        {
+            list.add(this.createPickedObject(owner, false));
+        }
+
+        return list;
+    }
+
+    protected PickedObject createPickedObject(int owner, boolean onTop)
+    {
+        PickedObject po = new PickedObject(0, this.objects.get(owner), this.positions.get(owner), false);
+        po.setParentLayer(this.layers.get(owner));
+        if (onTop)
+            po.setOnTop();
+
+        return po;
+    }
+
+    protected void checkBuilt()
+    {
+        if (!this.built)
+            this.build();
+    }
+
+    protected int nextQueryStamp()
+    {
+        if (++this.queryStamp == 0) // Stamps wrapped around. Clear the marks so no owner appears already visited.
+        {
+            Arrays.fill(this.ownerStamps, 0);
+            this.queryStamp = 1;
+        }
+
+        return this.queryStamp;
+    }
+
+    protected int push(int top, int node)
+    {
+        if (top == this.stack.length)
+            this.stack = Arrays.copyOf(this.stack, 2 * this.stack.length);
+
+        this.stack[top] = node;
+        return top + 1;
+    }
+
+    protected int addPrimitive(byte type, int object, double minX, double minY, double maxX, double maxY,
+        int geometryLength)
+    {
+        if (object < 0 || object >= this.objects.size())
+        {
+            String msg = Logging.getMessage("generic.indexOutOfRange", object);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int i = this.numPrimitives++;
+        if (i == this.primTypes.length)
+        {
+            int capacity = 2 * this.primTypes.length;
+            this.primTypes = Arrays.copyOf(this.primTypes, capacity);
+            this.primOwners = Arrays.copyOf(this.primOwners, capacity);
+            this.primGeomOffsets = Arrays.copyOf(this.primGeomOffsets, capacity);
+            this.primBounds = Arrays.copyOf(this.primBounds, 4 * capacity);
+        }
+
+        if (this.geometrySize + geometryLength > this.geometry.length)
+            this.geometry = Arrays.copyOf(this.geometry, Math.max(2 * this.geometry.length,
+                this.geometrySize + geometryLength));
+
+        this.primTypes[i] = type;
+        this.primOwners[i] = object;
+        this.primGeomOffsets[i] = this.geometrySize;
+        this.primBounds[4 * i] = minX;
+        this.primBounds[4 * i + 1] = minY;
+        this.primBounds[4 * i + 2] = maxX;
+        this.primBounds[4 * i + 3] = maxY;
+        this.geometrySize += geometryLength;
+        this.built = false;
+
+        return this.primGeomOffsets[i];
+    }
+
+    /**
+     * Builds the node for a range of primitives, and recursively its children. The range is split at the median of the
+     * primitives' centers along the longer axis of their bounds.
+     *
+     * @param start the first primitive index, inclusive.
+     * @param end   the last primitive index, exclusive.
+     */
+    protected void buildNode(int start, int end)
+    {
+        int node = this.numNodes++;
+        int b = 4 * node;
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        double cMinX = Double.MAX_VALUE, cMinY = Double.MAX_VALUE;
+        double cMaxX = -Double.MAX_VALUE, cMaxY = -Double.MAX_VALUE;
+        for (int i = start; i < end; i++)
+        {
+            int p = 4 * this.primIndices[i];
+            minX = Math.min(minX, this.primBounds[p]);
+            minY = Math.min(minY, this.primBounds[p + 1]);
+            maxX = Math.max(maxX, this.primBounds[p + 2]);
+            maxY = Math.max(maxY, this.primBounds[p + 3]);
+
+            double cx = this.primBounds[p] + this.primBounds[p + 2];
+            double cy = this.primBounds[p + 1] + this.primBounds[p + 3];
+            cMinX = Math.min(cMinX, cx);
+            cMinY = Math.min(cMinY, cy);
+            cMaxX = Math.max(cMaxX, cx);
+            cMaxY = Math.max(cMaxY, cy);
+        }
+
+        this.nodeBounds[b] = minX;
+        this.nodeBounds[b + 1] = minY;
+        this.nodeBounds[b + 2] = maxX;
+        this.nodeBounds[b + 3] = maxY;
+        this.nodeStart[node] = start;
+
+        // Make a leaf when the range is small, or when all primitive centers coincide and cannot be separated.
+        if (end - start <= MAX_LEAF_SIZE || (cMaxX == cMinX && cMaxY == cMinY))
+        {
+            this.nodeCount[node] = end - start;
+            return;
+        }
+
+        int axis = (cMaxX - cMinX) >= (cMaxY - cMinY) ? 0 : 1;
+        int mid = (start + end) >>> 1;
+        this.select(start, end - 1, mid, axis);
+
+        this.nodeCount[node] = 0;
+        this.buildNode(start, mid);
+        this.nodeRight[node] = this.numNodes;
+        this.buildNode(mid, end);
+    }
+
+    protected double center(int prim, int axis)
+    {
+        int p = 4 * prim + axis;
+        return this.primBounds[p] + this.primBounds[p + 2];
+    }
+
+    /** Partially orders primitive indices so that the k'th is in its sorted place along an axis (quickselect). */
+    protected void select(int lo, int hi, int k, int axis)
+    {
+        int[] idx = this.primIndices;
+        while (hi > lo)
+        {
+            double pivot = this.center(idx[(lo + hi) >>> 1], axis);
+            int i = lo;
+            int j = hi;
+            while (i <= j)
+            {
+                while (this.center(idx[i], axis) < pivot)
+                {
+                    i++;
+                }
+                while (this.center(idx[j], axis) > pivot)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    int tmp = idx[i];
+                    idx[i] = idx[j];
+                    idx[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j)
+                hi = j;
+            else if (k >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+
+    /**
+     * Tests a primitive against a point.
+     *
+     * @return the primitive's depth at the point, or NaN if the point is not within the tolerance of the primitive.
+     */
+    protected double pickPrimitive(int prim, double x, double y, double tolerance)
+    {
+        int b = 4 * prim;
+        if (x < this.primBounds[b] - tolerance || y < this.primBounds[b + 1] - tolerance
+            || x > this.primBounds[b + 2] + tolerance || y > this.primBounds[b + 3] + tolerance)
+            return Double.NaN;
+
+        double[] g = this.geometry;
+        int o = this.primGeomOffsets[prim];
+
+        switch (this.primTypes[prim])
+        {
+            case RECTANGLE:
+                return g[o]; // The bounds test above is the complete test.
+
+            case SEGMENT:
+            {
+                double dx = g[o + 3] - g[o];
+                double dy = g[o + 4] - g[o + 1];
+                double lenSq = dx * dx + dy * dy;
+                double t = lenSq > 0 ? ((x - g[o]) * dx + (y - g[o + 1]) * dy) / lenSq : 0;
+                t = t < 0 ? 0 : (t > 1 ? 1 : t);
+                double px = g[o] + t * dx - x;
+                double py = g[o + 1] + t * dy - y;
+                double limit = g[o + 6] + tolerance;
+                return px * px + py * py <= limit * limit ? g[o + 2] + t * (g[o + 5] - g[o + 2]) : Double.NaN;
+            }
+
+            default: // TRIANGLE
+            {
+                double x0 = g[o], y0 = g[o + 1], x1 = g[o + 3], y1 = g[o + 4], x2 = g[o + 6], y2 = g[o + 7];
+                double det = (y1 - y2) * (x0 - x2) + (x2 - x1) * (y0 - y2);
+                if (det == 0)
+                    return Double.NaN; // Degenerate in screen space, e.g. a face seen edge on.
+
+                double w0 = ((y1 - y2) * (x - x2) + (x2 - x1) * (y - y2)) / det;
+                double w1 = ((y2 - y0) * (x - x2) + (x0 - x2) * (y - y2)) / det;
+                double w2 = 1 - w0 - w1;
+
+                if (w0 < 0 || w1 < 0 || w2 < 0)
+                {
+                    // Outside the triangle. Accept the point if it is within the tolerance of an edge.
+                    if (tolerance <= 0 || !(distanceToSegmentSq(x, y, x0, y0, x1, y1) <= tolerance * tolerance
+                        || distanceToSegmentSq(x, y, x1, y1, x2, y2) <= tolerance * tolerance
+                        || distanceToSegmentSq(x, y, x2, y2, x0, y0) <= tolerance * tolerance))
+                        return Double.NaN;
+
+                    w0 = Math.max(0, w0);
+                    w1 = Math.max(0, w1);
+                    w2 = Math.max(0, w2);
+                    double sum = w0 + w1 + w2;
+                    w0 /= sum;
+                    w1 /= sum;
+                    w2 /= sum;
+                }
+
+                return w0 * g[o + 2] + w1 * g[o + 5] + w2 * g[o + 8];
+            }
+        }
+    }
+
+    /** Tests whether a primitive intersects a rectangle. */
+    protected boolean intersectsPrimitive(int prim, double minX, double minY, double maxX, double maxY)
+    {
+        int b = 4 * prim;
+        if (maxX < this.primBounds[b] || maxY < this.primBounds[b + 1]
+            || minX > this.primBounds[b + 2] || minY > this.primBounds[b + 3])
+            return false;
+
+        double[] g = this.geometry;
+        int o = this.primGeomOffsets[prim];
+
+        switch (this.primTypes[prim])
+        {
+            case RECTANGLE:
+                return true; // The bounds test above is the complete test.
+
+            case SEGMENT:
+            {
+                // Clip the segment against the rectangle expanded by the segment's half width (Liang-Barsky).
+                double hw = g[o + 6];
+                double x0 = g[o], y0 = g[o + 1];
+                double dx = g[o + 3] - x0, dy = g[o + 4] - y0;
+                double[] t = {0, 1};
+                return clip(-dx, x0 - (minX - hw), t) && clip(dx, (maxX + hw) - x0, t)
+                    && clip(-dy, y0 - (minY - hw), t) && clip(dy, (maxY + hw) - y0, t);
+            }
+
+            default: // TRIANGLE
+            {
+                // Separating axis test. The rectangle's axes are covered by the bounds test above, leaving the
+                // triangle's edge normals.
+                for (int e = 0; e < 3; e++)
+                {
+                    int i = o + 3 * e;
+                    int j = o + 3 * ((e + 1) % 3);
+                    int k = o + 3 * ((e + 2) % 3);
+                    double nx = g[j + 1] - g[i + 1];
+                    double ny = g[i] - g[j];
+                    double d = nx * g[i] + ny * g[i + 1];
+                    double opposite = nx * g[k] + ny * g[k + 1] - d;
+
+                    // Project the rectangle's corners onto the edge normal, and compare with the side of the edge the
+                    // triangle lies on.
+                    double r0 = nx * minX + ny * minY - d;
+                    double r1 = nx * maxX + ny * minY - d;
+                    double r2 = nx * minX + ny * maxY - d;
+                    double r3 = nx * maxX + ny * maxY - d;
+                    if (opposite >= 0 && r0 < 0 && r1 < 0 && r2 < 0 && r3 < 0)
+                        return false;
+                    if (opposite <= 0 && r0 > 0 && r1 > 0 && r2 > 0 && r3 > 0)
+                        return false;
+                }
+
+                return true;
+            }
+        }
+    }
+
+    protected static boolean clip(double p, double q, double[] t)
+    {
+        if (p == 0)
+            return q >= 0;
+
+        double r = q / p;
+        if (p < 0)
+        {
+            if (r > t[1])
+                return false;
+            if (r > t[0])
+                t[0] = r;
+        }
+        else
+        {
+            if (r < t[0])
+                return false;
+            if (r < t[1])
+                t[1] = r;
+        }
+
+        return true;
+    }
+
+    protected static double distanceToSegmentSq(double x, double y, double x0, double y0, double x1, double y1)
+    {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double lenSq = dx * dx + dy * dy;
+        double t = lenSq > 0 ? ((x - x0) * dx + (y - y0) * dy) / lenSq : 0;
+        t = t < 0 ? 0 : (t > 1 ? 1 : t);
+        double px = x0 + t * dx - x;
+        double py = y0 + t * dy - y;
+
+        return px * px + py * py;
+    }
+}
@@ -840,6 +840,20 @@ public abstract class AbstractShape extends WWObjectImpl
         }
     }
 
+    /**
+     * Indicates the width of this shape's outline when picked, the larger of the outline width and the outline pick
+     * width.
+     *
+     * @return the outline width to use when picking.
+     */
+    protected double computeOutlinePickWidth()
+    {
+        ShapeAttributes attrs = this.getActiveAttributes();
+        double width = attrs != null ? attrs.getOutlineWidth() : 1;
+
+        return Math.max(width, this.getOutlinePickWidth());
+    }
+
     public void render(DrawContext dc)
     {
         // This render method is called three times during frame generation. It's first called as a {@link Renderable}
@@ -922,6 +922,35 @@ public abstract class AbstractSurfaceShape extends AbstractSurfaceObject impleme
         return this.activeGeometry;
     }
 
+    /**
+     * Creates a snapshot of this shape's geometry and attributes as drawn into a specified surface tile, for drawing
+     * with a {@link SurfaceShapeRasterizer} instead of OpenGL. The snapshot is independent of this shape and may be
+     * rasterized on any thread. This must be called on the thread rendering the shape, after the shape's active
+     * attributes are determined during preRendering.
+     * <p/>
+     * Subclasses that override this shape's drawing methods must override this method to describe their drawing, or to
+     * return null.
+     *
+     * @param dc  the current draw context.
+     * @param sdc the context identifying the surface tile.
+     *
+     * @return a snapshot of this shape, or null if this shape cannot be drawn by a SurfaceShapeRasterizer.
+     */
+    protected SurfaceShapeRasterizer.RasterShape createRasterShape(DrawContext dc, SurfaceTileDrawContext sdc)
+    {
+        // Interior textures are applied by OpenGL's texture coordinate generation, which the rasterizer does not
+        // reproduce.
+        if (this.getActiveAttributes().getImageSource() != null && this.getActiveAttributes().isDrawInterior())
+            return null;
+
+        this.determineActiveGeometry(dc, sdc);
+
+        List<List<LatLon>> contours = new ArrayList<List<LatLon>>(this.getActiveGeometry());
+        ShapeAttributes attrs = new BasicShapeAttributes(this.getActiveAttributes());
+
+        return new SurfaceShapeRasterizer.RasterShape(contours, attrs, true);
+    }
+
     protected void drawInterior(DrawContext dc, SurfaceTileDrawContext sdc)
     {
         if (this.getActiveGeometry().isEmpty())
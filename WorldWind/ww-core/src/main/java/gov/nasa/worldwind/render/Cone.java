@@ -17,6 +17,7 @@ import javax.media.opengl.*;
 import javax.xml.stream.*;
 import java.io.IOException;
 import java.nio.*;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -263,34 +264,24 @@ public class Cone extends RigidShape
      */
     protected void makeGeometry(ShapeData shapeData)
     {
-        // attempt to retrieve a cached unit box with the same number of subdivisions
-        Object cacheKey = new Geometry.CacheKey(this.getClass(), "Cone0", this.subdivisions);
-        Geometry geom = (Geometry) this.getGeometryCache().getObject(cacheKey);
-        if (geom == null)
+        for (int piece = 0; piece < getFaceCount(); piece++)
         {
-            // if none exists, create a new one
-            makeUnitCone(this.subdivisions, shapeData.getMeshes());
-            for (int piece = 0; piece < getFaceCount(); piece++)
-            {
-                if (offsets.get(piece) == null)  // if texture offsets don't exist, set default values to 0
-                    offsets.put(piece, new OffsetsList());
-                // add the new mesh pieces to the cache
-                cacheKey = new Geometry.CacheKey(this.getClass(), "Cone" + piece, this.subdivisions);
-                this.getGeometryCache().add(cacheKey, shapeData.getMesh(piece));
-            }
+            if (offsets.get(piece) == null)  // if texture offsets don't exist, set default values to 0
+                offsets.put(piece, new OffsetsList());
         }
-        else
+
+        // attempt to retrieve the cached unit cone meshes, shared by all cones with the same subdivisions
+        Object cacheKey = new Geometry.CacheKey(this.getClass(), "Cone", this.subdivisions);
+        UnitMeshes unitMeshes = this.getUnitMeshes(shapeData, cacheKey);
+        if (unitMeshes == null)
         {
-            // otherwise, just use the one from the cache
-            for (int piece = 0; piece < getFaceCount(); piece++)
-            {
-                if (offsets.get(piece) == null)  // if texture offsets don't exist, set default values to 0
-                    offsets.put(piece, new OffsetsList());
-                cacheKey = new Geometry.CacheKey(this.getClass(), "Cone" + piece, this.subdivisions);
-                geom = (Geometry) this.getGeometryCache().getObject(cacheKey);
-                shapeData.addMesh(piece, geom);
-            }
+            // if none exist, create new ones and add them to the cache
+            List<Geometry> meshes = new ArrayList<Geometry>(getFaceCount());
+            makeUnitCone(this.subdivisions, meshes);
+            unitMeshes = this.addUnitMeshes(cacheKey, meshes);
         }
+
+        shapeData.setUnitMeshes(unitMeshes);
     }
 
     /**
@@ -16,6 +16,10 @@ import java.util.List;
 /**
  * Renders a contour line on the terrain at a given elevation. The contour line extent can be bounded by a
  * <code>Sector</code>.
+ * <p/>
+ * The contour line is computed from the current terrain geometry, and is recomputed as the terrain changes. To display
+ * contours at many elevations, use a {@link gov.nasa.worldwind.layers.ContourLayer}, which computes contours from an
+ * elevation model's tiles.
  *
  * @author Patrick Murris
  * @version $Id$
@@ -505,6 +505,23 @@ public interface DrawContext extends WWObject, Disposable
      */
     void setPickRectangle(Rectangle pickRect);
 
+    /**
+     * Returns the analytic pick support collecting pickable geometry during the current pick traversal. Layers add the
+     * geometry of {@link gov.nasa.worldwind.pick.AnalyticPickable} renderables to it instead of drawing them in pick
+     * colors.
+     *
+     * @return the current analytic pick support, or <code>null</code> if analytic picking is not enabled.
+     */
+    AnalyticPickSupport getAnalyticPickSupport();
+
+    /**
+     * Specifies the analytic pick support collecting pickable geometry during the current pick traversal. The scene
+     * controller sets it at the start of each pick traversal when analytic picking is enabled.
+     *
+     * @param pickSupport the analytic pick support, or <code>null</code> to pick all renderables by color.
+     */
+    void setAnalyticPickSupport(AnalyticPickSupport pickSupport);
+
     /**
      * Returns the GPU resource cache for this draw context. This method returns the same value as {@link
      * #getGpuResourceCache()}.
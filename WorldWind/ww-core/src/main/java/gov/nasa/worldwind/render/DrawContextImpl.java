@@ -74,6 +74,8 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
      * pick rectangle. Initially <code>null</code>.
      */
     protected Rectangle pickRect = null;
+    /** The analytic pick support for the current pick traversal, or <code>null</code> if analytic picking is off. */
+    protected AnalyticPickSupport analyticPickSupport;
     protected boolean isOrderedRenderingMode = false;
     protected boolean preRenderMode = false;
     protected Point viewportCenterScreenPoint = null;
@@ -95,38 +97,11 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
     protected ClutterFilter clutterFilter;
 //    protected Map<String, GroupingFilter> groupingFilters;
 
-    protected static class OrderedRenderableEntry
-    {
-        protected OrderedRenderable or;
-        protected double distanceFromEye;
-        protected long time;
-
-        public OrderedRenderableEntry(OrderedRenderable orderedRenderable, long insertionTime)
-        {
-            this.or = orderedRenderable;
-            this.distanceFromEye = orderedRenderable.getDistanceFromEye();
-            this.time = insertionTime;
-        }
-
-        public OrderedRenderableEntry(OrderedRenderable orderedRenderable, double distanceFromEye, long insertionTime)
-        {
-            this.or = orderedRenderable;
-            this.distanceFromEye = distanceFromEye;
-            this.time = insertionTime;
-        }
-    }
-
-    protected PriorityQueue<OrderedRenderableEntry> orderedRenderables =
-        new PriorityQueue<OrderedRenderableEntry>(100, new Comparator<OrderedRenderableEntry>()
-        {
-            public int compare(OrderedRenderableEntry orA, OrderedRenderableEntry orB)
-            {
-                double eA = orA.distanceFromEye;
-                double eB = orB.distanceFromEye;
-
-                return eA > eB ? -1 : eA == eB ? (orA.time < orB.time ? -1 : orA.time == orB.time ? 0 : 1) : 1;
-            }
-        });
+    /**
+     * The ordered renderables added during the current frame. Ordered renderables are processed back-to-front, and in
+     * the order they were submitted when their eye distances are equal.
+     */
+    protected OrderedRenderableQueue orderedRenderables = new OrderedRenderableQueue();
     // Use a standard Queue to store the ordered surface object renderables. Ordered surface renderables are processed
     // in the order they were submitted.
     protected Queue<OrderedRenderable> orderedSurfaceRenderables = new ArrayDeque<OrderedRenderable>();
@@ -381,6 +356,16 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
         this.pickRect = pickRect;
     }
 
+    public AnalyticPickSupport getAnalyticPickSupport()
+    {
+        return this.analyticPickSupport;
+    }
+
+    public void setAnalyticPickSupport(AnalyticPickSupport pickSupport)
+    {
+        this.analyticPickSupport = pickSupport;
+    }
+
     public Point getViewportCenterScreenPoint()
     {
         return viewportCenterScreenPoint;
@@ -645,7 +630,7 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
             return; // benign event
         }
 
-        this.orderedRenderables.add(new OrderedRenderableEntry(orderedRenderable, System.nanoTime()));
+        this.orderedRenderables.add(orderedRenderable);
     }
 
     /** {@inheritDoc} */
@@ -663,21 +648,17 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
         // If multiple ordered renderables are added in this way, they are drawn according to the order in which they
         // are added.
         double eyeDistance = isBehind ? Double.MAX_VALUE : orderedRenderable.getDistanceFromEye();
-        this.orderedRenderables.add(new OrderedRenderableEntry(orderedRenderable, eyeDistance, System.nanoTime()));
+        this.orderedRenderables.add(orderedRenderable, eyeDistance);
     }
 
     public OrderedRenderable peekOrderedRenderables()
     {
-        OrderedRenderableEntry ore = this.orderedRenderables.peek();
-
-        return ore != null ? ore.or : null;
+        return this.orderedRenderables.peek();
     }
 
     public OrderedRenderable pollOrderedRenderables()
     {
-        OrderedRenderableEntry ore = this.orderedRenderables.poll();
-
-        return ore != null ? ore.or : null;
+        return this.orderedRenderables.poll();
     }
 //
 //    public void applyDeclutterFilter2()
@@ -741,40 +722,12 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
         if (this.getClutterFilter() == null)
             return;
 
-        // Collect all the active declutterables.
-        ArrayList<OrderedRenderableEntry> declutterableArray = new ArrayList<OrderedRenderableEntry>();
-        for (OrderedRenderableEntry ore : this.orderedRenderables)
-        {
-            if (ore.or instanceof Declutterable && ((Declutterable) ore.or).isEnableDecluttering())
-                declutterableArray.add(ore);
-        }
-
-        // Sort the declutterables front-to-back.
-        Collections.sort(declutterableArray, new Comparator<OrderedRenderableEntry>()
-        {
-            public int compare(OrderedRenderableEntry orA, OrderedRenderableEntry orB)
-            {
-                double eA = orA.distanceFromEye;
-                double eB = orB.distanceFromEye;
-
-                return eA < eB ? -1 : eA == eB ? (orA.time < orB.time ? -1 : orA.time == orB.time ? 0 : 1) : 1;
-            }
-        });
-
-        if (declutterableArray.size() == 0)
+        // Remove the active declutterables from the ordered renderable list, sorted front-to-back. The clutter filter
+        // will add those it wants displayed back to the list, or it will add some other representation.
+        List<Declutterable> declutterables = this.orderedRenderables.removeDeclutterables();
+        if (declutterables.size() == 0)
             return;
 
-        // Prepare the declutterable list for the filter and remove eliminated ordered renderables from the renderable
-        // list. The clutter filter will add those it wants displayed back to the list, or it will add some other
-        // representation.
-        List<Declutterable> declutterables = new ArrayList<Declutterable>(declutterableArray.size());
-        for (OrderedRenderableEntry ore : declutterableArray)
-        {
-            declutterables.add((Declutterable) ore.or);
-
-            orderedRenderables.remove(ore);
-        }
-
         // Tell the filter to apply itself and draw whatever it draws.
         this.getClutterFilter().apply(this, declutterables);
     }
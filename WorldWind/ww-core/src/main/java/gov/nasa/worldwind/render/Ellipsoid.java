@@ -17,6 +17,7 @@ import javax.media.opengl.*;
 import javax.xml.stream.*;
 import java.io.IOException;
 import java.nio.*;
+import java.util.Arrays;
 
 /**
  * A general ellipsoid volume defined by a center position and the three ellipsoid axis radii. If A is the radius in the
@@ -216,22 +217,18 @@ public class Ellipsoid extends RigidShape
      */
     protected void makeGeometry(ShapeData shapeData)
     {
-        // attempt to retrieve a cached unit ellipsoid with the same number of subdivisions
+        // attempt to retrieve the cached unit sphere mesh, shared by all ellipsoids with the same subdivisions
         Object cacheKey = new Geometry.CacheKey(this.getClass(), "Sphere", this.subdivisions);
-        Geometry geom = (Geometry) this.getGeometryCache().getObject(cacheKey);
-        if (geom == null)
+        UnitMeshes unitMeshes = this.getUnitMeshes(shapeData, cacheKey);
+        if (unitMeshes == null)
         {
-            // if none exists, create a new one
-            shapeData.addMesh(0, new Geometry());
-            makeUnitSphere(this.subdivisions, shapeData.getMesh(0));
-            //this.restart(dc, geom);
-            this.getGeometryCache().add(cacheKey, shapeData.getMesh(0));
-        }
-        else
-        {
-            // otherwise, just use the one from the cache
-            shapeData.addMesh(0, geom);
+            // if none exists, create a new one and add it to the cache
+            Geometry geom = new Geometry();
+            makeUnitSphere(this.subdivisions, geom);
+            unitMeshes = this.addUnitMeshes(cacheKey, Arrays.asList(geom));
         }
+
+        shapeData.setUnitMeshes(unitMeshes);
     }
 
     /**
@@ -15,6 +15,7 @@ import gov.nasa.worldwind.geom.Box;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.ogc.kml.impl.KMLExportUtil;
+import gov.nasa.worldwind.pick.*;
 import gov.nasa.worldwind.terrain.Terrain;
 import gov.nasa.worldwind.util.*;
 
@@ -67,7 +68,7 @@ import java.util.*;
  * @author tag
  * @version $Id$
  */
-public class ExtrudedPolygon extends AbstractShape
+public class ExtrudedPolygon extends AbstractShape implements AnalyticPickable
 {
     /** The default interior color for sides. */
     protected static final Material DEFAULT_SIDES_INTERIOR_MATERIAL = Material.LIGHT_GRAY;
@@ -189,6 +190,56 @@ public class ExtrudedPolygon extends AbstractShape
         return (ShapeData) this.getCurrentData();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * ExtrudedPolygon adds the triangles of its cap and the quadrilaterals of its sides.
+     */
+    public void addAnalyticPickGeometry(DrawContext dc, AnalyticPickSupport pickSupport)
+    {
+        if (!this.isVisible())
+            return;
+
+        ShapeData shapeData = (ShapeData) this.shapeDataCache.getEntry(dc.getGlobe());
+        if (shapeData == null || shapeData.getReferencePoint() == null || shapeData.getOuterBoundaryInfo() == null
+            || shapeData.getOuterBoundaryInfo().capVertices == null)
+            return;
+
+        int object = pickSupport.addObject(this, this.getReferencePosition());
+
+        if (this.isEnableSides())
+        {
+            for (ExtrudedBoundaryInfo boundary : shapeData)
+            {
+                if (boundary.capVertices != null && boundary.baseVertices != null)
+                    pickSupport.addQuadStrip(object, boundary.capVertices, boundary.baseVertices,
+                        boundary.locations.size(), shapeData.getReferencePoint());
+            }
+        }
+
+        if (this.isEnableCap() && shapeData.cb != null && shapeData.capFillIndexBuffers != null)
+        {
+            // The cap indices address the boundaries' cap vertices as a single sequence.
+            List<Vec4> capVertices = new ArrayList<Vec4>();
+            for (ExtrudedBoundaryInfo boundary : shapeData)
+            {
+                if (boundary.capVertices == null)
+                    return;
+
+                capVertices.addAll(Arrays.asList(boundary.capVertices).subList(0, boundary.locations.size()));
+            }
+
+            Vec4[] vertices = capVertices.toArray(new Vec4[capVertices.size()]);
+            for (int i = 0; i < shapeData.cb.getPrimTypes().size(); i++)
+            {
+                IntBuffer ib = shapeData.capFillIndexBuffers.get(i).duplicate();
+                ib.rewind();
+                pickSupport.addTriangles(object, vertices, shapeData.getReferencePoint(),
+                    shapeData.cb.getPrimTypes().get(i), ib);
+            }
+        }
+    }
+
     /**
      * Holds globe-specific information for each contour of the polygon. This class is meant only to be used as a way to
      * group per-boundary information in globe-specific <code>ShapeData</code>.
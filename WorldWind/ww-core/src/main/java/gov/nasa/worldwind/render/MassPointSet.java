@@ -0,0 +1,1192 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.render;
+
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.util.*;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * A large set of points held as columns of primitive values rather than as one object per point. Each point has a
+ * caller-assigned <code>long</code> ID, a geographic position with an altitude above the ellipsoid, a style number and
+ * state flags. Points are added, moved, restyled and removed by ID in constant time, so updating a set of points takes
+ * time proportional to the number of points changed rather than to the size of the set.
+ * <p/>
+ * Determining the visible points is done in three steps, each operating on the whole set: {@link #updatePoints(Globe,
+ * double)} computes the model coordinate points of the points that moved since the last update, or of every point when
+ * the globe changes; {@link #cull(Frustum)} finds the points in a frustum; and {@link #project(Matrix, Matrix,
+ * Rectangle, Vec4, double)} projects those points to the screen. Culling uses a quadtree of model coordinate bounds
+ * over a {@value #LEAF_COLUMNS} by {@value #LEAF_ROWS} grid of geographic cells, so that cells outside the frustum are
+ * skipped and cells inside it are accepted without testing their points. Projection runs on several threads when
+ * enough points are in the frustum. The visible points are then read by index with {@link #getVisibleIndex(int)} and
+ * their screen coordinates.
+ * <p/>
+ * MassPointSet is not thread safe. {@link gov.nasa.worldwind.layers.MassPointLayer} synchronizes on its point set while
+ * it prepares a frame, so applications updating the set from other threads should synchronize on it too.
+ *
+ * @version $Id$
+ * @see gov.nasa.worldwind.layers.MassPointLayer
+ */
+public class MassPointSet
+{
+    /** State flag indicating that a point is not drawn or picked. */
+    public static final int STATE_HIDDEN = 0x1;
+    /** State flag indicating that a point is highlighted. */
+    public static final int STATE_HIGHLIGHTED = 0x2;
+    /** Internal state flag indicating that a point's model coordinate point is out of date. */
+    protected static final int STATE_MOVED = 0x40000000;
+
+    /** The number of longitude columns in the leaf cell grid. */
+    public static final int LEAF_COLUMNS = 64;
+    /** The number of latitude rows in the leaf cell grid. */
+    public static final int LEAF_ROWS = 32;
+    /** The number of quadtree levels. The top level has two nodes, one for each hemisphere of longitude. */
+    protected static final int NUM_LEVELS = 6;
+    protected static final int INITIAL_CAPACITY = 1024;
+    protected static final int MIN_POINTS_PER_TASK = 25000;
+
+    // Point columns, indexed by point index.
+    protected int size;
+    protected long[] ids;
+    protected double[] latitudes;
+    protected double[] longitudes;
+    protected double[] altitudes;
+    protected int[] styles;
+    protected int[] states;
+    protected double[] xs;
+    protected double[] ys;
+    protected double[] zs;
+    protected int[] cells;
+    protected int[] cellSlots;
+
+    /** Open addressing table from point ID to point index plus one. Zero marks an empty slot. */
+    protected long[] idKeys;
+    protected int[] idIndices;
+
+    /** The indices of the points in each leaf cell. */
+    protected int[][] cellPoints = new int[LEAF_COLUMNS * LEAF_ROWS][];
+    /** The number of points in each quadtree node, by level. Level 0 holds the leaf cells. */
+    protected int[][] nodeCounts = new int[NUM_LEVELS][];
+    /** The model coordinate bounds of each quadtree node, by level, as minimum x, y, z then maximum x, y, z. */
+    protected double[][] nodeBounds = new double[NUM_LEVELS][];
+
+    protected Globe globe;
+    protected Object globeStateKey;
+    protected double verticalExaggeration;
+    /** The indices of points marked as moved. May contain duplicates and indices of removed points. */
+    protected int[] movedIndices = new int[64];
+    protected int numMoved;
+
+    protected double[] planes = new double[24];
+    protected int[] candidates = new int[INITIAL_CAPACITY];
+    protected int numCandidates;
+    protected int[] visibleIndices = new int[INITIAL_CAPACITY];
+    protected float[] screenX = new float[INITIAL_CAPACITY];
+    protected float[] screenY = new float[INITIAL_CAPACITY];
+    protected float[] screenDepth = new float[INITIAL_CAPACITY];
+    protected int numVisible;
+
+    protected ExecutorService executor;
+    protected boolean enableParallel = true;
+
+    public MassPointSet()
+    {
+        this.allocateColumns(INITIAL_CAPACITY);
+        this.idKeys = new long[2 * INITIAL_CAPACITY];
+        this.idIndices = new int[2 * INITIAL_CAPACITY];
+
+        for (int level = 0; level < NUM_LEVELS; level++)
+        {
+            int numNodes = (LEAF_COLUMNS >> level) * (LEAF_ROWS >> level);
+            this.nodeCounts[level] = new int[numNodes];
+            this.nodeBounds[level] = new double[6 * numNodes];
+        }
+        this.clearBounds();
+    }
+
+    /**
+     * Returns the executor used to compute and project points concurrently.
+     *
+     * @return the point set's executor.
+     */
+    public ExecutorService getExecutor()
+    {
+        if (this.executor == null)
+            this.executor = ComputeExecutor.getInstance();
+
+        return this.executor;
+    }
+
+    /**
+     * Specifies the executor used to compute and project points concurrently.
+     *
+     * @param executor the executor. May be null, in which case a shared default executor is used.
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Indicates whether large numbers of points are computed and projected on several threads.
+     *
+     * @return true if parallel computation is enabled, otherwise false.
+     */
+    public boolean isEnableParallel()
+    {
+        return this.enableParallel;
+    }
+
+    /**
+     * Specifies whether large numbers of points are computed and projected on several threads.
+     *
+     * @param enableParallel true to enable parallel computation, otherwise false.
+     */
+    public void setEnableParallel(boolean enableParallel)
+    {
+        this.enableParallel = enableParallel;
+    }
+
+    //**************************************************************//
+    //********************  Points  ********************************//
+    //**************************************************************//
+
+    /**
+     * Indicates the number of points in the set.
+     *
+     * @return the number of points.
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Adds a point, or moves and restyles the point if one with the ID already exists.
+     *
+     * @param id        the point's ID.
+     * @param latitude  the point's latitude, in degrees.
+     * @param longitude the point's longitude, in degrees.
+     * @param altitude  the point's altitude above the ellipsoid, in meters.
+     * @param style     the point's style number.
+     *
+     * @return the point's index.
+     */
+    public int add(long id, double latitude, double longitude, double altitude, int style)
+    {
+        int index = this.indexOf(id);
+        if (index >= 0)
+        {
+            this.movePoint(index, latitude, longitude, altitude);
+            this.styles[index] = style;
+            return index;
+        }
+
+        if (this.size == this.ids.length)
+            this.growColumns(2 * this.size);
+
+        index = this.size++;
+        this.ids[index] = id;
+        this.latitudes[index] = latitude;
+        this.longitudes[index] = longitude;
+        this.altitudes[index] = altitude;
+        this.styles[index] = style;
+        this.states[index] = 0;
+        this.putIndex(id, index);
+        this.addToCell(index, computeCell(latitude, longitude));
+        this.markMoved(index);
+
+        return index;
+    }
+
+    /**
+     * Removes a point.
+     *
+     * @param id the point's ID.
+     *
+     * @return true if the point was removed, false if no point has the ID.
+     */
+    public boolean remove(long id)
+    {
+        int index = this.indexOf(id);
+        if (index < 0)
+            return false;
+
+        this.removeFromCell(index);
+        this.removeIndex(id);
+
+        // Move the last point into the removed point's place.
+        int last = --this.size;
+        if (index != last)
+        {
+            this.ids[index] = this.ids[last];
+            this.latitudes[index] = this.latitudes[last];
+            this.longitudes[index] = this.longitudes[last];
+            this.altitudes[index] = this.altitudes[last];
+            this.styles[index] = this.styles[last];
+            this.states[index] = this.states[last];
+            this.xs[index] = this.xs[last];
+            this.ys[index] = this.ys[last];
+            this.zs[index] = this.zs[last];
+            this.cells[index] = this.cells[last];
+            this.cellSlots[index] = this.cellSlots[last];
+            this.cellPoints[this.cells[index]][this.cellSlots[index]] = index;
+            this.putIndex(this.ids[index], index);
+
+            if ((this.states[index] & STATE_MOVED) != 0)
+                this.appendMoved(index);
+        }
+
+        return true;
+    }
+
+    /** Removes all points. */
+    public void clear()
+    {
+        this.size = 0;
+        this.numMoved = 0;
+        this.numCandidates = 0;
+        this.numVisible = 0;
+        Arrays.fill(this.idIndices, 0);
+
+        for (int[] counts : this.nodeCounts)
+        {
+            Arrays.fill(counts, 0);
+        }
+        this.clearBounds();
+    }
+
+    /**
+     * Returns the index of a point. Indices change when points are removed.
+     *
+     * @param id the point's ID.
+     *
+     * @return the point's index, or -1 if no point has the ID.
+     */
+    public int indexOf(long id)
+    {
+        int mask = this.idKeys.length - 1;
+        for (int slot = hash(id) & mask; this.idIndices[slot] != 0; slot = (slot + 1) & mask)
+        {
+            if (this.idKeys[slot] == id)
+                return this.idIndices[slot] - 1;
+        }
+
+        return -1;
+    }
+
+    public boolean contains(long id)
+    {
+        return this.indexOf(id) >= 0;
+    }
+
+    /**
+     * Moves a point.
+     *
+     * @param id        the point's ID.
+     * @param latitude  the point's new latitude, in degrees.
+     * @param longitude the point's new longitude, in degrees.
+     * @param altitude  the point's new altitude above the ellipsoid, in meters.
+     *
+     * @return true if the point was moved, false if no point has the ID.
+     */
+    public boolean setPosition(long id, double latitude, double longitude, double altitude)
+    {
+        int index = this.indexOf(id);
+        if (index < 0)
+            return false;
+
+        this.movePoint(index, latitude, longitude, altitude);
+
+        return true;
+    }
+
+    /**
+     * Moves a number of points. Only the points moved are updated, so the time taken is proportional to the number of
+     * points moved.
+     *
+     * @param ids        the IDs of the points to move.
+     * @param latitudes  the points' new latitudes, in degrees.
+     * @param longitudes the points' new longitudes, in degrees.
+     * @param altitudes  the points' new altitudes above the ellipsoid, in meters.
+     * @param count      the number of points to move, taken from the start of each array.
+     *
+     * @return the number of points moved. IDs not in the set are ignored.
+     *
+     * @throws IllegalArgumentException if any array is null or shorter than the count.
+     */
+    public int setPositions(long[] ids, double[] latitudes, double[] longitudes, double[] altitudes, int count)
+    {
+        if (ids == null || latitudes == null || longitudes == null || altitudes == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (count < 0 || ids.length < count || latitudes.length < count || longitudes.length < count
+            || altitudes.length < count)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", count);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int numMoved = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int index = this.indexOf(ids[i]);
+            if (index >= 0)
+            {
+                this.movePoint(index, latitudes[i], longitudes[i], altitudes[i]);
+                numMoved++;
+            }
+        }
+
+        return numMoved;
+    }
+
+    protected void movePoint(int index, double latitude, double longitude, double altitude)
+    {
+        this.latitudes[index] = latitude;
+        this.longitudes[index] = longitude;
+        this.altitudes[index] = altitude;
+
+        int cell = computeCell(latitude, longitude);
+        if (cell != this.cells[index])
+        {
+            this.removeFromCell(index);
+            this.addToCell(index, cell);
+        }
+
+        this.markMoved(index);
+    }
+
+    /**
+     * Specifies a point's style number.
+     *
+     * @param id    the point's ID.
+     * @param style the style number.
+     *
+     * @return true if the point's style was set, false if no point has the ID.
+     */
+    public boolean setStyle(long id, int style)
+    {
+        int index = this.indexOf(id);
+        if (index < 0)
+            return false;
+
+        this.styles[index] = style;
+
+        return true;
+    }
+
+    /**
+     * Specifies a point's state flags, a combination of {@link #STATE_HIDDEN} and {@link #STATE_HIGHLIGHTED}.
+     *
+     * @param id    the point's ID.
+     * @param state the state flags.
+     *
+     * @return true if the point's state was set, false if no point has the ID.
+     */
+    public boolean setState(long id, int state)
+    {
+        int index = this.indexOf(id);
+        if (index < 0)
+            return false;
+
+        this.states[index] = (this.states[index] & STATE_MOVED) | (state & ~STATE_MOVED);
+
+        return true;
+    }
+
+    public long getId(int index)
+    {
+        return this.ids[index];
+    }
+
+    public double getLatitude(int index)
+    {
+        return this.latitudes[index];
+    }
+
+    public double getLongitude(int index)
+    {
+        return this.longitudes[index];
+    }
+
+    public double getAltitude(int index)
+    {
+        return this.altitudes[index];
+    }
+
+    public int getStyle(int index)
+    {
+        return this.styles[index];
+    }
+
+    public int getState(int index)
+    {
+        return this.states[index] & ~STATE_MOVED;
+    }
+
+    protected void allocateColumns(int capacity)
+    {
+        this.ids = new long[capacity];
+        this.latitudes = new double[capacity];
+        this.longitudes = new double[capacity];
+        this.altitudes = new double[capacity];
+        this.styles = new int[capacity];
+        this.states = new int[capacity];
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.zs = new double[capacity];
+        this.cells = new int[capacity];
+        this.cellSlots = new int[capacity];
+    }
+
+    protected void growColumns(int capacity)
+    {
+        this.ids = Arrays.copyOf(this.ids, capacity);
+        this.latitudes = Arrays.copyOf(this.latitudes, capacity);
+        this.longitudes = Arrays.copyOf(this.longitudes, capacity);
+        this.altitudes = Arrays.copyOf(this.altitudes, capacity);
+        this.styles = Arrays.copyOf(this.styles, capacity);
+        this.states = Arrays.copyOf(this.states, capacity);
+        this.xs = Arrays.copyOf(this.xs, capacity);
+        this.ys = Arrays.copyOf(this.ys, capacity);
+        this.zs = Arrays.copyOf(this.zs, capacity);
+        this.cells = Arrays.copyOf(this.cells, capacity);
+        this.cellSlots = Arrays.copyOf(this.cellSlots, capacity);
+    }
+
+    protected void markMoved(int index)
+    {
+        if ((this.states[index] & STATE_MOVED) == 0)
+        {
+            this.states[index] |= STATE_MOVED;
+            this.appendMoved(index);
+        }
+    }
+
+    protected void appendMoved(int index)
+    {
+        if (this.numMoved == this.movedIndices.length)
+            this.movedIndices = Arrays.copyOf(this.movedIndices, 2 * this.numMoved);
+
+        this.movedIndices[this.numMoved++] = index;
+    }
+
+    //**************************************************************//
+    //********************  ID Table  ******************************//
+    //**************************************************************//
+
+    protected static int hash(long id)
+    {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    protected void putIndex(long id, int index)
+    {
+        if (2 * (this.size + 1) > this.idKeys.length)
+            this.rehash(2 * this.idKeys.length);
+
+        int mask = this.idKeys.length - 1;
+        int slot = hash(id) & mask;
+        while (this.idIndices[slot] != 0 && this.idKeys[slot] != id)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        this.idKeys[slot] = id;
+        this.idIndices[slot] = index + 1;
+    }
+
+    protected void removeIndex(long id)
+    {
+        int mask = this.idKeys.length - 1;
+        int slot = hash(id) & mask;
+        while (this.idIndices[slot] != 0 && this.idKeys[slot] != id)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        if (this.idIndices[slot] == 0)
+            return;
+
+        // Shift following entries of the probe sequence back, so that lookups don't stop at the emptied slot.
+        int empty = slot;
+        for (slot = (slot + 1) & mask; this.idIndices[slot] != 0; slot = (slot + 1) & mask)
+        {
+            int home = hash(this.idKeys[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - empty) & mask))
+            {
+                this.idKeys[empty] = this.idKeys[slot];
+                this.idIndices[empty] = this.idIndices[slot];
+                empty = slot;
+            }
+        }
+
+        this.idIndices[empty] = 0;
+    }
+
+    protected void rehash(int capacity)
+    {
+        long[] oldKeys = this.idKeys;
+        int[] oldIndices = this.idIndices;
+        this.idKeys = new long[capacity];
+        this.idIndices = new int[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldIndices[i] == 0)
+                continue;
+
+            int slot = hash(oldKeys[i]) & mask;
+            while (this.idIndices[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            this.idKeys[slot] = oldKeys[i];
+            this.idIndices[slot] = oldIndices[i];
+        }
+    }
+
+    //**************************************************************//
+    //********************  Cells  *********************************//
+    //**************************************************************//
+
+    /**
+     * Computes the leaf cell containing a location.
+     *
+     * @param latitude  the latitude, in degrees.
+     * @param longitude the longitude, in degrees.
+     *
+     * @return the index of the leaf cell, as row times {@link #LEAF_COLUMNS} plus column.
+     */
+    public static int computeCell(double latitude, double longitude)
+    {
+        int col = (int) Math.floor((longitude + 180) * LEAF_COLUMNS / 360);
+        int row = (int) Math.floor((latitude + 90) * LEAF_ROWS / 180);
+        col = Math.max(0, Math.min(LEAF_COLUMNS - 1, col));
+        row = Math.max(0, Math.min(LEAF_ROWS - 1, row));
+
+        return row * LEAF_COLUMNS + col;
+    }
+
+    protected void addToCell(int index, int cell)
+    {
+        int count = this.nodeCounts[0][cell];
+        int[] points = this.cellPoints[cell];
+        if (points == null)
+            points = this.cellPoints[cell] = new int[16];
+        else if (count == points.length)
+            points = this.cellPoints[cell] = Arrays.copyOf(points, 2 * count);
+
+        points[count] = index;
+        this.cells[index] = cell;
+        this.cellSlots[index] = count;
+        this.adjustCounts(cell, 1);
+    }
+
+    protected void removeFromCell(int index)
+    {
+        int cell = this.cells[index];
+        int last = this.nodeCounts[0][cell] - 1;
+        int[] points = this.cellPoints[cell];
+
+        int moved = points[last];
+        points[this.cellSlots[index]] = moved;
+        this.cellSlots[moved] = this.cellSlots[index];
+        this.adjustCounts(cell, -1);
+    }
+
+    protected void adjustCounts(int cell, int delta)
+    {
+        int col = cell % LEAF_COLUMNS;
+        int row = cell / LEAF_COLUMNS;
+        for (int level = 0; level < NUM_LEVELS; level++)
+        {
+            this.nodeCounts[level][(row >> level) * (LEAF_COLUMNS >> level) + (col >> level)] += delta;
+        }
+    }
+
+    protected void clearBounds()
+    {
+        for (double[] bounds : this.nodeBounds)
+        {
+            for (int i = 0; i < bounds.length; i += 6)
+            {
+                bounds[i] = bounds[i + 1] = bounds[i + 2] = Double.POSITIVE_INFINITY;
+                bounds[i + 3] = bounds[i + 4] = bounds[i + 5] = Double.NEGATIVE_INFINITY;
+            }
+        }
+    }
+
+    /**
+     * Expands the bounds of a point's cell and the cell's ancestors to include the point. Bounds are not shrunk when
+     * points leave a cell, so they remain conservative until the next full update, but never extend beyond the space
+     * of points within the cell's latitudes and longitudes.
+     *
+     * @param index the point's index.
+     */
+    protected void expandBounds(int index)
+    {
+        int col = this.cells[index] % LEAF_COLUMNS;
+        int row = this.cells[index] / LEAF_COLUMNS;
+        double x = this.xs[index];
+        double y = this.ys[index];
+        double z = this.zs[index];
+
+        for (int level = 0; level < NUM_LEVELS; level++)
+        {
+            double[] b = this.nodeBounds[level];
+            int i = 6 * ((row >> level) * (LEAF_COLUMNS >> level) + (col >> level));
+            if (x < b[i])
+                b[i] = x;
+            if (y < b[i + 1])
+                b[i + 1] = y;
+            if (z < b[i + 2])
+                b[i + 2] = z;
+            if (x > b[i + 3])
+                b[i + 3] = x;
+            if (y > b[i + 4])
+                b[i + 4] = y;
+            if (z > b[i + 5])
+                b[i + 5] = z;
+        }
+    }
+
+    //**************************************************************//
+    //********************  Model Coordinates  *********************//
+    //**************************************************************//
+
+    /**
+     * Computes the model coordinate points of the points moved or added since the last update. Every point is computed
+     * if the globe, its state or the vertical exaggeration has changed since the last update.
+     *
+     * @param globe                the globe the points are on.
+     * @param verticalExaggeration the vertical exaggeration to apply to point altitudes.
+     *
+     * @throws IllegalArgumentException if the globe is null.
+     */
+    public void updatePoints(final Globe globe, final double verticalExaggeration)
+    {
+        if (globe == null)
+        {
+            String msg = Logging.getMessage("nullValue.GlobeIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        Object stateKey = globe.getGlobeStateKey();
+        if (globe == this.globe && stateKey.equals(this.globeStateKey)
+            && verticalExaggeration == this.verticalExaggeration)
+        {
+            for (int i = 0; i < this.numMoved; i++)
+            {
+                int index = this.movedIndices[i];
+                if (index < this.size && (this.states[index] & STATE_MOVED) != 0)
+                {
+                    this.computePoint(globe, verticalExaggeration, index);
+                    this.states[index] &= ~STATE_MOVED;
+                    this.expandBounds(index);
+                }
+            }
+            this.numMoved = 0;
+            return;
+        }
+
+        this.globe = globe;
+        this.globeStateKey = stateKey;
+        this.verticalExaggeration = verticalExaggeration;
+
+        int numTasks = this.computeNumTasks(this.size);
+        List<Runnable> tasks = new ArrayList<Runnable>(numTasks);
+        for (int t = 0; t < numTasks; t++)
+        {
+            final int start = (int) ((long) t * this.size / numTasks);
+            final int end = (int) ((long) (t + 1) * this.size / numTasks);
+            tasks.add(new Runnable()
+            {
+                public void run()
+                {
+                    for (int index = start; index < end; index++)
+                    {
+                        computePoint(globe, verticalExaggeration, index);
+                    }
+                }
+            });
+        }
+        this.runTasks(tasks);
+
+        this.clearBounds();
+        for (int index = 0; index < this.size; index++)
+        {
+            this.states[index] &= ~STATE_MOVED;
+            this.expandBounds(index);
+        }
+        this.numMoved = 0;
+    }
+
+    protected void computePoint(Globe globe, double verticalExaggeration, int index)
+    {
+        Vec4 point = globe.computePointFromPosition(Angle.fromDegrees(this.latitudes[index]),
+            Angle.fromDegrees(this.longitudes[index]), this.altitudes[index] * verticalExaggeration);
+        this.xs[index] = point.x;
+        this.ys[index] = point.y;
+        this.zs[index] = point.z;
+    }
+
+    //**************************************************************//
+    //********************  Culling  *******************************//
+    //**************************************************************//
+
+    /**
+     * Finds the points in a frustum. Hidden points, and points moved or added since the last call to {@link
+     * #updatePoints(Globe, double)}, are excluded.
+     *
+     * @param frustum the frustum, in model coordinates.
+     *
+     * @return the number of points in the frustum.
+     *
+     * @throws IllegalArgumentException if the frustum is null.
+     */
+    public int cull(Frustum frustum)
+    {
+        if (frustum == null)
+        {
+            String msg = Logging.getMessage("nullValue.FrustumIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        System.arraycopy(frustum.getPlaneCoefficients(), 0, this.planes, 0, this.planes.length);
+
+        this.numCandidates = 0;
+        int topLevel = NUM_LEVELS - 1;
+        for (int row = 0; row < LEAF_ROWS >> topLevel; row++)
+        {
+            for (int col = 0; col < LEAF_COLUMNS >> topLevel; col++)
+            {
+                this.cullNode(topLevel, col, row, 0x3F);
+            }
+        }
+
+        return this.numCandidates;
+    }
+
+    /**
+     * Adds the points of a quadtree node that are in the frustum. Only the planes in the plane mask are tested, because
+     * the node's ancestors are known to be entirely inside the others.
+     *
+     * @param level     the node's level.
+     * @param col       the node's column within its level.
+     * @param row       the node's row within its level.
+     * @param planeMask the planes to test, one bit per plane.
+     */
+    protected void cullNode(int level, int col, int row, int planeMask)
+    {
+        int node = row * (LEAF_COLUMNS >> level) + col;
+        if (this.nodeCounts[level][node] == 0)
+            return;
+
+        double[] b = this.nodeBounds[level];
+        int i = 6 * node;
+        if (b[i] > b[i + 3]) // no point in the node has been computed
+            return;
+
+        for (int p = 0; p < 6; p++)
+        {
+            if ((planeMask & (1 << p)) == 0)
+                continue;
+
+            double a = this.planes[4 * p];
+            double bb = this.planes[4 * p + 1];
+            double c = this.planes[4 * p + 2];
+            double d = this.planes[4 * p + 3];
+
+            // Test the box corner farthest along the plane normal, then the nearest.
+            double far = a * (a >= 0 ? b[i + 3] : b[i]) + bb * (bb >= 0 ? b[i + 4] : b[i + 1])
+                + c * (c >= 0 ? b[i + 5] : b[i + 2]) + d;
+            if (far < 0)
+                return;
+
+            double near = a * (a >= 0 ? b[i] : b[i + 3]) + bb * (bb >= 0 ? b[i + 1] : b[i + 4])
+                + c * (c >= 0 ? b[i + 2] : b[i + 5]) + d;
+            if (near >= 0)
+                planeMask &= ~(1 << p);
+        }
+
+        if (level == 0 || planeMask == 0)
+        {
+            // Visit the node's leaf cells, testing their points against the planes the node straddles.
+            for (int r = row << level; r < (row + 1) << level; r++)
+            {
+                for (int cl = col << level; cl < (col + 1) << level; cl++)
+                {
+                    this.cullCell(r * LEAF_COLUMNS + cl, planeMask);
+                }
+            }
+            return;
+        }
+
+        this.cullNode(level - 1, 2 * col, 2 * row, planeMask);
+        this.cullNode(level - 1, 2 * col + 1, 2 * row, planeMask);
+        this.cullNode(level - 1, 2 * col, 2 * row + 1, planeMask);
+        this.cullNode(level - 1, 2 * col + 1, 2 * row + 1, planeMask);
+    }
+
+    protected void cullCell(int cell, int planeMask)
+    {
+        int count = this.nodeCounts[0][cell];
+        if (count == 0)
+            return;
+
+        if (this.numCandidates + count > this.candidates.length)
+            this.candidates = Arrays.copyOf(this.candidates, Math.max(this.numCandidates + count,
+                2 * this.candidates.length));
+
+        int[] points = this.cellPoints[cell];
+        for (int i = 0; i < count; i++)
+        {
+            int index = points[i];
+            if ((this.states[index] & (STATE_HIDDEN | STATE_MOVED)) != 0)
+                continue;
+
+            if (planeMask != 0 && !this.isInPlanes(index, planeMask))
+                continue;
+
+            this.candidates[this.numCandidates++] = index;
+        }
+    }
+
+    protected boolean isInPlanes(int index, int planeMask)
+    {
+        double x = this.xs[index];
+        double y = this.ys[index];
+        double z = this.zs[index];
+
+        for (int p = 0; p < 6; p++)
+        {
+            if ((planeMask & (1 << p)) != 0 && this.planes[4 * p] * x + this.planes[4 * p + 1] * y
+                + this.planes[4 * p + 2] * z + this.planes[4 * p + 3] < 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Indicates the number of points found by the most recent call to {@link #cull(Frustum)}.
+     *
+     * @return the number of points in the frustum.
+     */
+    public int getNumCandidates()
+    {
+        return this.numCandidates;
+    }
+
+    /**
+     * Returns the point index of a point found by the most recent call to {@link #cull(Frustum)}.
+     *
+     * @param i the point's number, from 0 to the number of points in the frustum minus one.
+     *
+     * @return the point's index.
+     */
+    public int getCandidateIndex(int i)
+    {
+        return this.candidates[i];
+    }
+
+    //**************************************************************//
+    //********************  Projection  ****************************//
+    //**************************************************************//
+
+    /**
+     * Projects the points found by the most recent call to {@link #cull(Frustum)} to the screen. Points behind the eye
+     * or outside the depth range are excluded, as are points hidden by a sphere around the globe's center when an
+     * occluder radius is specified. The occluder should be within the globe, so that it never hides visible points.
+     * Screen coordinates are OpenGL window coordinates, with the origin at the viewport's lower left, and depths range
+     * from 0 at the near clip plane to 1 at the far clip plane.
+     *
+     * @param modelview      the modelview matrix.
+     * @param projection     the projection matrix.
+     * @param viewport       the viewport.
+     * @param eyePoint       the eye point, in model coordinates.
+     * @param occluderRadius the radius of the occluding sphere, or 0 to not exclude points behind the globe.
+     *
+     * @return the number of visible points.
+     *
+     * @throws IllegalArgumentException if any matrix, the viewport or the eye point is null.
+     */
+    public int project(Matrix modelview, Matrix projection, final Rectangle viewport, final Vec4 eyePoint,
+        final double occluderRadius)
+    {
+        if (modelview == null || projection == null)
+        {
+            String msg = Logging.getMessage("nullValue.MatrixIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (viewport == null)
+        {
+            String msg = Logging.getMessage("nullValue.RectangleIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (eyePoint == null)
+        {
+            String msg = Logging.getMessage("nullValue.EyeIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.visibleIndices.length < this.numCandidates)
+        {
+            int capacity = Math.max(this.numCandidates, 2 * this.visibleIndices.length);
+            this.visibleIndices = new int[capacity];
+            this.screenX = new float[capacity];
+            this.screenY = new float[capacity];
+            this.screenDepth = new float[capacity];
+        }
+
+        final double[] m = projection.multiply(modelview).toArray(new double[16], 0, true);
+
+        int numTasks = this.computeNumTasks(this.numCandidates);
+        List<Runnable> tasks = new ArrayList<Runnable>(numTasks);
+        for (int t = 0; t < numTasks; t++)
+        {
+            final int start = (int) ((long) t * this.numCandidates / numTasks);
+            final int end = (int) ((long) (t + 1) * this.numCandidates / numTasks);
+            tasks.add(new Runnable()
+            {
+                public void run()
+                {
+                    projectCandidates(m, viewport, eyePoint, occluderRadius, start, end);
+                }
+            });
+        }
+        this.runTasks(tasks);
+
+        // Compact the visible points, which the tasks left at their candidate positions.
+        int n = 0;
+        for (int i = 0; i < this.numCandidates; i++)
+        {
+            if (this.visibleIndices[i] < 0)
+                continue;
+
+            this.visibleIndices[n] = this.visibleIndices[i];
+            this.screenX[n] = this.screenX[i];
+            this.screenY[n] = this.screenY[i];
+            this.screenDepth[n] = this.screenDepth[i];
+            n++;
+        }
+
+        return this.numVisible = n;
+    }
+
+    protected void projectCandidates(double[] m, Rectangle viewport, Vec4 eyePoint, double occluderRadius,
+        int start, int end)
+    {
+        double ex = eyePoint.x;
+        double ey = eyePoint.y;
+        double ez = eyePoint.z;
+        double r2 = occluderRadius * occluderRadius;
+
+        for (int i = start; i < end; i++)
+        {
+            int index = this.candidates[i];
+            double x = this.xs[index];
+            double y = this.ys[index];
+            double z = this.zs[index];
+            this.visibleIndices[i] = -1;
+
+            if (r2 > 0)
+            {
+                // Find the point on the segment from the eye to the point nearest the globe's center, and exclude the
+                // point if the segment passes through the occluder.
+                double dx = x - ex;
+                double dy = y - ey;
+                double dz = z - ez;
+                double dd = dx * dx + dy * dy + dz * dz;
+                double t = dd > 0 ? -(ex * dx + ey * dy + ez * dz) / dd : 0;
+                t = t < 0 ? 0 : (t > 1 ? 1 : t);
+                double cx = ex + t * dx;
+                double cy = ey + t * dy;
+                double cz = ez + t * dz;
+                if (cx * cx + cy * cy + cz * cz < r2)
+                    continue;
+            }
+
+            double w = m[12] * x + m[13] * y + m[14] * z + m[15];
+            if (w <= 0)
+                continue;
+
+            double depth = ((m[8] * x + m[9] * y + m[10] * z + m[11]) / w + 1) / 2;
+            if (depth < 0 || depth > 1)
+                continue;
+
+            this.visibleIndices[i] = index;
+            this.screenX[i] = (float) (viewport.x + ((m[0] * x + m[1] * y + m[2] * z + m[3]) / w + 1) / 2
+                * viewport.width);
+            this.screenY[i] = (float) (viewport.y + ((m[4] * x + m[5] * y + m[6] * z + m[7]) / w + 1) / 2
+                * viewport.height);
+            this.screenDepth[i] = (float) depth;
+        }
+    }
+
+    /**
+     * Indicates the number of points found visible by the most recent call to {@link #project(Matrix, Matrix,
+     * Rectangle, Vec4, double)}.
+     *
+     * @return the number of visible points.
+     */
+    public int getNumVisible()
+    {
+        return this.numVisible;
+    }
+
+    /**
+     * Returns the point index of a visible point.
+     *
+     * @param i the visible point's number, from 0 to the number of visible points minus one.
+     *
+     * @return the point's index.
+     */
+    public int getVisibleIndex(int i)
+    {
+        return this.visibleIndices[i];
+    }
+
+    public float getScreenX(int i)
+    {
+        return this.screenX[i];
+    }
+
+    public float getScreenY(int i)
+    {
+        return this.screenY[i];
+    }
+
+    public float getScreenDepth(int i)
+    {
+        return this.screenDepth[i];
+    }
+
+    /**
+     * Finds the nearest visible point whose screen rectangle contains a screen point. Each visible point's rectangle is
+     * centered on its screen coordinates, and its half width and half height are given by its style.
+     *
+     * @param x           the screen point's x coordinate, in OpenGL window coordinates.
+     * @param y           the screen point's y coordinate, in OpenGL window coordinates.
+     * @param halfWidths  the rectangle half width of each style number. Styles beyond the array have no rectangle.
+     * @param halfHeights the rectangle half height of each style number. Styles beyond the array have no rectangle.
+     *
+     * @return the visible point number of the nearest point containing the screen point, or -1 if there is none.
+     *
+     * @throws IllegalArgumentException if either array is null.
+     */
+    public int pick(double x, double y, double[] halfWidths, double[] halfHeights)
+    {
+        if (halfWidths == null || halfHeights == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int nearest = -1;
+        int numStyles = Math.min(halfWidths.length, halfHeights.length);
+        for (int i = 0; i < this.numVisible; i++)
+        {
+            int style = this.styles[this.visibleIndices[i]];
+            if (style < 0 || style >= numStyles)
+                continue;
+
+            if (Math.abs(x - this.screenX[i]) > halfWidths[style] || Math.abs(y - this.screenY[i]) > halfHeights[style])
+                continue;
+
+            if (nearest < 0 || this.screenDepth[i] < this.screenDepth[nearest])
+                nearest = i;
+        }
+
+        return nearest;
+    }
+
+    //**************************************************************//
+    //********************  Tasks  *********************************//
+    //**************************************************************//
+
+    protected int computeNumTasks(int numPoints)
+    {
+        if (!this.isEnableParallel())
+            return 1;
+
+        int numTasks = Math.min(numPoints / MIN_POINTS_PER_TASK, 2 * Runtime.getRuntime().availableProcessors());
+
+        return Math.max(1, numTasks);
+    }
+
+    /**
+     * Runs tasks on the executor and waits for them to complete. The first task runs on the calling thread.
+     *
+     * @param tasks the tasks to run.
+     */
+    protected void runTasks(List<Runnable> tasks)
+    {
+        List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+        for (int i = 1; i < tasks.size(); i++)
+        {
+            futures.add(this.getExecutor().submit(tasks.get(i)));
+        }
+
+        RuntimeException failure = null;
+        try
+        {
+            tasks.get(0).run();
+        }
+        catch (RuntimeException e)
+        {
+            failure = e;
+        }
+
+        // Wait for every task, so that no task is writing to the point columns when this returns.
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                failure = (failure != null) ? failure : new WWRuntimeException(e);
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (failure == null)
+                    failure = (cause instanceof RuntimeException) ? (RuntimeException) cause
+                        : new WWRuntimeException(cause);
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+}
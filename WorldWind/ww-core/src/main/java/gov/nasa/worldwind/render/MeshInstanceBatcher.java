@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.render;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+
+/**
+ * Groups instances of shared meshes into batches that can be drawn with a single set of mesh and attribute state.
+ * Instances are added with the key of the mesh they draw and the attributes they're drawn with, and are grouped with
+ * every other instance having an equal mesh key and equal attributes. Batches are returned in the order their first
+ * instance was added, and each batch holds its instances in the order they were added.
+ * <p/>
+ * Instances that can't be drawn out of order, such as translucent instances that must be drawn back to front, are added
+ * as unbatched instances and are returned in the order they were added. Callers should draw the batches before the
+ * unbatched instances.
+ * <p/>
+ * If a culling frustum is specified, instances whose extent doesn't intersect the frustum are discarded when they're
+ * added. The batcher doesn't use OpenGL, and is reused by calling {@link #clear()}.
+ *
+ * @param <T> the instance type.
+ *
+ * @version $Id$
+ * @see RigidShape
+ */
+public class MeshInstanceBatcher<T>
+{
+    /** The instances of one mesh that are drawn with the same attributes. */
+    public static class Batch<T>
+    {
+        protected final Object meshKey;
+        protected final Object attributes;
+        protected final List<T> instances = new ArrayList<T>();
+
+        public Batch(Object meshKey, Object attributes)
+        {
+            this.meshKey = meshKey;
+            this.attributes = attributes;
+        }
+
+        public Object getMeshKey()
+        {
+            return this.meshKey;
+        }
+
+        public Object getAttributes()
+        {
+            return this.attributes;
+        }
+
+        public List<T> getInstances()
+        {
+            return this.instances;
+        }
+    }
+
+    protected Frustum cullingFrustum;
+    /** The batches of each mesh key, keyed by attributes. */
+    protected Map<Object, Map<Object, Batch<T>>> meshBatches = new HashMap<Object, Map<Object, Batch<T>>>();
+    protected List<Batch<T>> batches = new ArrayList<Batch<T>>();
+    protected List<T> unbatched = new ArrayList<T>();
+    protected int numCulled;
+
+    /**
+     * Indicates the frustum that added instances are culled against.
+     *
+     * @return the culling frustum, or null if instances are not culled.
+     */
+    public Frustum getCullingFrustum()
+    {
+        return this.cullingFrustum;
+    }
+
+    /**
+     * Specifies the frustum that added instances are culled against. Instances already added are not affected.
+     *
+     * @param frustum the culling frustum. May be null, in which case instances are not culled.
+     */
+    public void setCullingFrustum(Frustum frustum)
+    {
+        this.cullingFrustum = frustum;
+    }
+
+    /**
+     * Adds an instance to the batch of its mesh and attributes, creating the batch if it doesn't exist.
+     *
+     * @param instance   the instance to add.
+     * @param meshKey    the key of the mesh the instance draws.
+     * @param attributes the attributes the instance is drawn with. May be null.
+     * @param extent     the instance's extent. May be null, in which case the instance is not culled.
+     *
+     * @return true if the instance was added, false if it was culled.
+     *
+     * @throws IllegalArgumentException if the instance or the mesh key is null.
+     */
+    public boolean add(T instance, Object meshKey, Object attributes, Extent extent)
+    {
+        if (instance == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (meshKey == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.isCulled(extent))
+            return false;
+
+        Map<Object, Batch<T>> attributeBatches = this.meshBatches.get(meshKey);
+        if (attributeBatches == null)
+        {
+            attributeBatches = new HashMap<Object, Batch<T>>();
+            this.meshBatches.put(meshKey, attributeBatches);
+        }
+
+        Batch<T> batch = attributeBatches.get(attributes);
+        if (batch == null)
+        {
+            batch = new Batch<T>(meshKey, attributes);
+            attributeBatches.put(attributes, batch);
+            this.batches.add(batch);
+        }
+
+        batch.instances.add(instance);
+
+        return true;
+    }
+
+    /**
+     * Adds an instance that must be drawn in the order it's added, after all batched instances.
+     *
+     * @param instance the instance to add.
+     * @param extent   the instance's extent. May be null, in which case the instance is not culled.
+     *
+     * @return true if the instance was added, false if it was culled.
+     *
+     * @throws IllegalArgumentException if the instance is null.
+     */
+    public boolean addUnbatched(T instance, Extent extent)
+    {
+        if (instance == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.isCulled(extent))
+            return false;
+
+        this.unbatched.add(instance);
+
+        return true;
+    }
+
+    protected boolean isCulled(Extent extent)
+    {
+        if (this.cullingFrustum == null || extent == null || this.cullingFrustum.intersects(extent))
+            return false;
+
+        this.numCulled++;
+
+        return true;
+    }
+
+    /**
+     * Returns the batches of the instances added since the batcher was last cleared.
+     *
+     * @return the batches, in the order their first instance was added.
+     */
+    public List<Batch<T>> getBatches()
+    {
+        return this.batches;
+    }
+
+    /**
+     * Returns the unbatched instances added since the batcher was last cleared.
+     *
+     * @return the unbatched instances, in the order they were added.
+     */
+    public List<T> getUnbatched()
+    {
+        return this.unbatched;
+    }
+
+    /**
+     * Indicates the number of instances culled since the batcher was last cleared.
+     *
+     * @return the number of culled instances.
+     */
+    public int getNumCulled()
+    {
+        return this.numCulled;
+    }
+
+    /** Removes all instances and batches. The culling frustum is retained. */
+    public void clear()
+    {
+        this.meshBatches.clear();
+        this.batches.clear();
+        this.unbatched.clear();
+        this.numCulled = 0;
+    }
+}
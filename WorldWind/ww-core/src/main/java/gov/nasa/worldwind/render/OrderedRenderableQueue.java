@@ -0,0 +1,430 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.render;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+
+/**
+ * A frame-scoped queue of {@link OrderedRenderable}s that orders its entries back-to-front by eye distance, and by
+ * insertion order among entries at the same distance. This is the same order as the priority queue formerly used by
+ * {@link DrawContextImpl}, but the queue holds its entries in reusable primitive arrays rather than allocating an entry
+ * object per renderable, and sorts them once with a stable radix sort rather than maintaining a heap.
+ * <p/>
+ * Entries may be added at any time, including while the queue is being drained. Entries added after the queue has been
+ * sorted are merged into the remaining entries the next time the queue is peeked or polled. The queue's storage grows
+ * as needed and is retained between frames; {@link #clear()} releases only the renderable references.
+ * <p/>
+ * OrderedRenderableQueue is not thread safe.
+ *
+ * @version $Id$
+ */
+public class OrderedRenderableQueue
+{
+    protected static final int DEFAULT_CAPACITY = 128;
+    /** Ranges smaller than this are sorted by insertion sort rather than radix sort. */
+    protected static final int INSERTION_SORT_THRESHOLD = 48;
+    /** Unsorted tails no larger than this are merged into the sorted entries by binary insertion. */
+    protected static final int BINARY_INSERT_THRESHOLD = 16;
+
+    /** Ordered renderables, indexed by insertion sequence within the current frame. */
+    protected OrderedRenderable[] renderables;
+    /** Sort keys, indexed by insertion sequence. Ascending key order is descending eye distance. */
+    protected long[] keys;
+    /** Insertion sequence numbers of the queued entries, in queue order between head and tail. */
+    protected int[] order;
+    /** Scratch buffer used by the radix sort. */
+    protected int[] scratch;
+    /** Digit counts used by the radix sort. */
+    protected int[] counts = new int[256];
+    /** Number of insertion sequence numbers assigned since the queue was last empty. */
+    protected int count;
+    /** Position in <code>order</code> of the next entry to poll. */
+    protected int head;
+    /** Position in <code>order</code> after the last queued entry. */
+    protected int tail;
+    /** Position in <code>order</code> after the last sorted entry. Entries from here to tail are unsorted. */
+    protected int sortedTail;
+
+    /** Creates an empty queue with the default initial capacity. */
+    public OrderedRenderableQueue()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty queue with a specified initial capacity. The queue grows beyond this capacity as needed.
+     *
+     * @param initialCapacity the number of entries the queue can hold before it must grow.
+     *
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    public OrderedRenderableQueue(int initialCapacity)
+    {
+        if (initialCapacity < 1)
+        {
+            String msg = Logging.getMessage("generic.SizeOutOfRange", initialCapacity);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.renderables = new OrderedRenderable[initialCapacity];
+        this.keys = new long[initialCapacity];
+        this.order = new int[initialCapacity];
+        this.scratch = new int[initialCapacity];
+    }
+
+    /**
+     * Returns the number of entries in the queue.
+     *
+     * @return the number of queued ordered renderables.
+     */
+    public int size()
+    {
+        return this.tail - this.head;
+    }
+
+    /**
+     * Indicates whether the queue contains no entries.
+     *
+     * @return true if the queue is empty, otherwise false.
+     */
+    public boolean isEmpty()
+    {
+        return this.tail == this.head;
+    }
+
+    /**
+     * Adds an ordered renderable to the queue, using the renderable's current eye distance as its sort key.
+     *
+     * @param orderedRenderable the ordered renderable to add.
+     *
+     * @throws IllegalArgumentException if the ordered renderable is null.
+     */
+    public void add(OrderedRenderable orderedRenderable)
+    {
+        if (orderedRenderable == null)
+        {
+            String msg = Logging.getMessage("nullValue.OrderedRenderable");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.add(orderedRenderable, orderedRenderable.getDistanceFromEye());
+    }
+
+    /**
+     * Adds an ordered renderable to the queue with a specified eye distance. Entries with larger eye distances are
+     * polled first. Entries with equal eye distances are polled in the order they were added.
+     *
+     * @param orderedRenderable the ordered renderable to add.
+     * @param distanceFromEye   the eye distance to sort the renderable by.
+     *
+     * @throws IllegalArgumentException if the ordered renderable is null.
+     */
+    public void add(OrderedRenderable orderedRenderable, double distanceFromEye)
+    {
+        if (orderedRenderable == null)
+        {
+            String msg = Logging.getMessage("nullValue.OrderedRenderable");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.ensureCapacity();
+
+        int seq = this.count++;
+        this.renderables[seq] = orderedRenderable;
+        this.keys[seq] = ~sortableBits(distanceFromEye); // invert so ascending key order is back-to-front
+        this.order[this.tail++] = seq;
+    }
+
+    /**
+     * Returns the entry farthest from the eye without removing it from the queue.
+     *
+     * @return the next ordered renderable, or null if the queue is empty.
+     */
+    public OrderedRenderable peek()
+    {
+        if (this.isEmpty())
+            return null;
+
+        this.ensureSorted();
+
+        return this.renderables[this.order[this.head]];
+    }
+
+    /**
+     * Removes and returns the entry farthest from the eye.
+     *
+     * @return the next ordered renderable, or null if the queue is empty.
+     */
+    public OrderedRenderable poll()
+    {
+        if (this.isEmpty())
+            return null;
+
+        this.ensureSorted();
+
+        int seq = this.order[this.head++];
+        OrderedRenderable or = this.renderables[seq];
+        this.renderables[seq] = null;
+
+        // Restart the insertion sequence once the queue drains so that the storage is reused from the beginning.
+        if (this.head == this.tail)
+            this.head = this.tail = this.sortedTail = this.count = 0;
+
+        return or;
+    }
+
+    /** Removes all entries from the queue. The queue's storage is retained for reuse. */
+    public void clear()
+    {
+        Arrays.fill(this.renderables, 0, this.count, null);
+        this.head = this.tail = this.sortedTail = this.count = 0;
+    }
+
+    /**
+     * Removes all queued {@link Declutterable}s that have decluttering enabled, and returns them sorted front-to-back:
+     * in ascending eye distance, and in insertion order among entries at the same distance. The relative order of the
+     * entries remaining in the queue is unchanged.
+     *
+     * @return the removed declutterables. The list is empty if the queue contains no enabled declutterables.
+     */
+    public List<Declutterable> removeDeclutterables()
+    {
+        // Collect the sequence numbers of the active declutterables, and compact the queue over the removed entries.
+        // Compaction keeps the relative order of the retained entries, so the retained part of the sorted range
+        // remains sorted.
+        int numFound = 0;
+        int numSortedRetained = 0;
+        int dst = this.head;
+        for (int i = this.head; i < this.tail; i++)
+        {
+            int seq = this.order[i];
+            OrderedRenderable or = this.renderables[seq];
+            if (or instanceof Declutterable && ((Declutterable) or).isEnableDecluttering())
+            {
+                this.scratch[numFound++] = seq;
+            }
+            else
+            {
+                if (i < this.sortedTail)
+                    numSortedRetained++;
+                this.order[dst++] = seq;
+            }
+        }
+
+        if (numFound == 0)
+            return Collections.emptyList();
+
+        this.sortedTail = this.head + numSortedRetained;
+        this.tail = dst;
+
+        // Sort the declutterables front-to-back. Sorting by sequence first makes the stable key sort break eye
+        // distance ties by insertion order.
+        int[] found = new int[numFound];
+        System.arraycopy(this.scratch, 0, found, 0, numFound);
+        Arrays.sort(found);
+        this.sort(found, 0, numFound, true);
+
+        List<Declutterable> declutterables = new ArrayList<Declutterable>(numFound);
+        for (int seq : found)
+        {
+            declutterables.add((Declutterable) this.renderables[seq]);
+            this.renderables[seq] = null;
+        }
+
+        if (this.head == this.tail)
+            this.clear();
+
+        return declutterables;
+    }
+
+    /**
+     * Converts a double to a long whose unsigned order matches the double's numeric order. Positive and negative zero
+     * map to the same value.
+     *
+     * @param value the double to convert.
+     *
+     * @return the value's order-preserving unsigned bits.
+     */
+    protected static long sortableBits(double value)
+    {
+        long bits = Double.doubleToLongBits(value == 0 ? 0d : value);
+        return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
+
+    protected void ensureCapacity()
+    {
+        if (this.count < this.renderables.length && this.tail < this.order.length)
+            return;
+
+        int newCapacity = Math.max(2 * this.renderables.length, this.count + 1);
+        this.renderables = Arrays.copyOf(this.renderables, newCapacity);
+        this.keys = Arrays.copyOf(this.keys, newCapacity);
+        this.order = Arrays.copyOf(this.order, newCapacity);
+        this.scratch = new int[newCapacity];
+    }
+
+    /**
+     * Sorts any entries added since the queue was last sorted into the queue's sorted entries. A small number of new
+     * entries are merged by binary insertion, otherwise all remaining entries are sorted again.
+     */
+    protected void ensureSorted()
+    {
+        if (this.sortedTail == this.tail)
+            return;
+
+        if (this.sortedTail < this.head)
+            this.sortedTail = this.head;
+
+        int numUnsorted = this.tail - this.sortedTail;
+        if (numUnsorted <= BINARY_INSERT_THRESHOLD && this.sortedTail > this.head)
+        {
+            for (int i = this.sortedTail; i < this.tail; i++)
+            {
+                this.binaryInsert(i);
+            }
+        }
+        else
+        {
+            this.sort(this.order, this.head, this.tail, false);
+        }
+
+        this.sortedTail = this.tail;
+    }
+
+    /**
+     * Moves the entry at a specified position into place among the sorted entries preceding it. The entry is placed
+     * after any entries with an equal key, which keeps insertion order among equal eye distances.
+     *
+     * @param pos the position of the entry to insert.
+     */
+    protected void binaryInsert(int pos)
+    {
+        int seq = this.order[pos];
+        long key = this.keys[seq];
+
+        int lo = this.head;
+        int hi = pos;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (compareUnsigned(this.keys[this.order[mid]], key) <= 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        System.arraycopy(this.order, lo, this.order, lo + 1, pos - lo);
+        this.order[lo] = seq;
+    }
+
+    /**
+     * Stably sorts a range of sequence numbers by their keys.
+     *
+     * @param seqs   the sequence numbers to sort.
+     * @param start  the first position to sort, inclusive.
+     * @param end    the last position to sort, exclusive.
+     * @param invert true to sort in descending key order (front-to-back), false to sort in ascending key order.
+     */
+    protected void sort(int[] seqs, int start, int end, boolean invert)
+    {
+        if (end - start < INSERTION_SORT_THRESHOLD)
+            this.insertionSort(seqs, start, end, invert);
+        else
+            this.radixSort(seqs, start, end, invert);
+    }
+
+    protected void insertionSort(int[] seqs, int start, int end, boolean invert)
+    {
+        long flip = invert ? -1L : 0L;
+
+        for (int i = start + 1; i < end; i++)
+        {
+            int seq = seqs[i];
+            long key = this.keys[seq] ^ flip;
+            int j = i - 1;
+            while (j >= start && compareUnsigned(this.keys[seqs[j]] ^ flip, key) > 0)
+            {
+                seqs[j + 1] = seqs[j];
+                j--;
+            }
+            seqs[j + 1] = seq;
+        }
+    }
+
+    /**
+     * Sorts a range with a least-significant-digit radix sort over 8-bit digits of the unsigned keys. Passes in which
+     * every key has the same digit are skipped, which for eye distances in a typical frame eliminates most of the
+     * passes over the sign and exponent bits.
+     *
+     * @param seqs   the sequence numbers to sort.
+     * @param start  the first position to sort, inclusive.
+     * @param end    the last position to sort, exclusive.
+     * @param invert true to sort in descending key order, false to sort in ascending key order.
+     */
+    protected void radixSort(int[] seqs, int start, int end, boolean invert)
+    {
+        int n = end - start;
+        if (this.scratch.length < n)
+            this.scratch = new int[Math.max(n, this.order.length)];
+
+        long flip = invert ? -1L : 0L;
+        int[] src = seqs;
+        int srcOffset = start;
+        int[] dst = this.scratch;
+        int dstOffset = 0;
+        int[] counts = this.counts;
+
+        for (int shift = 0; shift < 64; shift += 8)
+        {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++)
+            {
+                counts[(int) (((this.keys[src[srcOffset + i]] ^ flip) >>> shift) & 0xFF)]++;
+            }
+
+            // All keys share this digit; the pass would not change the order.
+            if (counts[(int) (((this.keys[src[srcOffset]] ^ flip) >>> shift) & 0xFF)] == n)
+                continue;
+
+            int sum = 0;
+            for (int d = 0; d < 256; d++)
+            {
+                int c = counts[d];
+                counts[d] = sum;
+                sum += c;
+            }
+
+            for (int i = 0; i < n; i++)
+            {
+                int seq = src[srcOffset + i];
+                int d = (int) (((this.keys[seq] ^ flip) >>> shift) & 0xFF);
+                dst[dstOffset + counts[d]++] = seq;
+            }
+
+            int[] tmp = src;
+            int tmpOffset = srcOffset;
+            src = dst;
+            srcOffset = dstOffset;
+            dst = tmp;
+            dstOffset = tmpOffset;
+        }
+
+        if (src != seqs)
+            System.arraycopy(src, srcOffset, seqs, start, n);
+    }
+
+    protected static int compareUnsigned(long a, long b)
+    {
+        a += Long.MIN_VALUE;
+        b += Long.MIN_VALUE;
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+}
@@ -12,7 +12,6 @@ import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.geom.Box;
-import gov.nasa.worldwind.geom.Cylinder;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.ogc.kml.impl.KMLExportUtil;
@@ -77,7 +76,7 @@ import static gov.nasa.worldwind.ogc.kml.impl.KMLExportUtil.kmlBoolean;
  * @author tag
  * @version $Id$
  */
-public class Path extends AbstractShape
+public class Path extends AbstractShape implements AnalyticPickable
 {
     /** The default interior color. */
     protected static final Material DEFAULT_INTERIOR_MATERIAL = Material.PINK;
@@ -617,6 +616,47 @@ public class Path extends AbstractShape
         return (PathData) this.getCurrentData();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Path adds the segments of its outline and, if the path is extruded and its interior drawn, the quadrilaterals
+     * forming its curtain.
+     */
+    public void addAnalyticPickGeometry(DrawContext dc, AnalyticPickSupport pickSupport)
+    {
+        if (!this.isVisible())
+            return;
+
+        PathData pathData = (PathData) this.shapeDataCache.getEntry(dc.getGlobe());
+        if (pathData == null || pathData.renderedPath == null || pathData.vertexCount < 2)
+            return;
+
+        int object = pickSupport.addObject(this, this.getReferencePosition());
+
+        int stride = pathData.hasExtrusionPoints ? 2 * pathData.vertexStride : pathData.vertexStride;
+        int count = pathData.hasExtrusionPoints ? pathData.vertexCount / 2 : pathData.vertexCount;
+        pickSupport.addLineStrip(object, pathData.renderedPath, 0, stride, count, pathData.getReferencePoint(),
+            this.computeOutlinePickWidth());
+
+        ShapeAttributes attrs = this.getActiveAttributes();
+        if (pathData.hasExtrusionPoints && attrs != null && attrs.isDrawInterior())
+        {
+            // Extruded paths interleave each path point with the corresponding point on the terrain.
+            Vec4[] top = new Vec4[count];
+            Vec4[] bottom = new Vec4[count];
+            FloatBuffer vb = pathData.renderedPath;
+            for (int i = 0; i < count; i++)
+            {
+                int k = i * stride;
+                int b = k + pathData.vertexStride;
+                top[i] = new Vec4(vb.get(k), vb.get(k + 1), vb.get(k + 2));
+                bottom[i] = new Vec4(vb.get(b), vb.get(b + 1), vb.get(b + 2));
+            }
+
+            pickSupport.addQuadStrip(object, top, bottom, count, pathData.getReferencePoint());
+        }
+    }
+
     protected Iterable<? extends Position> positions; // the positions as provided by the application
     protected int numPositions; // the number of positions in the positions field.
     protected PositionColors positionColors; // defines a color at each application-provided position.
@@ -2004,9 +2044,9 @@ public class Path extends AbstractShape
         if (f.contains(ptC))
             return true;
 
+        // Test the cylinder around the segment that contains its midpoint, without creating the cylinder.
         double r = Line.distanceToSegment(ptA, ptB, ptC);
-        Cylinder cyl = new Cylinder(ptA, ptB, r == 0 ? 1 : r);
-        return cyl.intersects(dc.getView().getFrustumInModelCoordinates());
+        return VecMath.frustumIntersectsCylinder(f.getPlaneCoefficients(), ptA, ptB, r == 0 ? 1 : r);
     }
 
     /**
@@ -44,7 +44,7 @@ import static gov.nasa.worldwind.ogc.kml.impl.KMLExportUtil.kmlBoolean;
  * @version $Id$
  */
 public class PointPlacemark extends WWObjectImpl
-    implements OrderedRenderable, Locatable, Movable, Highlightable, Exportable, Declutterable
+    implements OrderedRenderable, Locatable, Movable, Highlightable, Exportable, Declutterable, AnalyticPickable
 {
     /** The scale to use when highlighting if no highlight attributes are specified. */
     protected static final Double DEFAULT_HIGHLIGHT_SCALE = 1.3;
@@ -490,6 +490,24 @@ public class PointPlacemark extends WWObjectImpl
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * PointPlacemark adds the screen rectangle of its image, or of its point when drawn without an image, as computed
+     * for the most recent frame. As with color picking, the label is not pickable.
+     */
+    public void addAnalyticPickGeometry(DrawContext dc, AnalyticPickSupport pickSupport)
+    {
+        if (!this.isVisible() || this.screenPoint == null)
+            return;
+
+        if (this.screenPoint.z < 0 || this.screenPoint.z > 1)
+            return; // The placemark point is outside the depth range, so the placemark is not drawn.
+
+        int object = pickSupport.addObject(this, this.getPosition());
+        pickSupport.addScreenRectangle(object, this.computeImageRectangle(dc), this.screenPoint.z);
+    }
+
     public void render(DrawContext dc)
     {
         // This render method is called three times during frame generation. It's first called as a {@link Renderable}
@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.render;
+
+import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.util.*;
+
+import javax.media.opengl.GL;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * A {@link SurfaceObjectTileBuilder} that draws surface shapes into its tiles with a {@link SurfaceShapeRasterizer} on
+ * worker threads, rather than with OpenGL on the rendering thread. The rendering thread captures a snapshot of each
+ * shape's geometry and attributes for every tile that needs an update, hands the snapshots to an executor, and uploads
+ * the finished images as tile textures. The rendering thread never waits for a rasterization: a tile keeps drawing its
+ * current texture until its image is finished, and the builder requests redraws until every image has been uploaded.
+ * Tiles whose content does not change are neither rasterized nor uploaded.
+ * <p/>
+ * Tiles containing surface objects the rasterizer cannot draw, such as surface images, surface text, or shapes with
+ * interior textures, are drawn with OpenGL exactly as SurfaceObjectTileBuilder draws them. Tiles built in picking mode
+ * are always drawn with OpenGL.
+ * <p/>
+ * The builder also indexes the current surface objects by their sectors while it assembles tiles, so that sub-tiles
+ * find their intersecting objects without testing every object in their parent tile.
+ *
+ * @version $Id$
+ */
+public class RasterizingSurfaceObjectTileBuilder extends SurfaceObjectTileBuilder
+{
+    /** The delay between redraws while rasterizations are in progress, in milliseconds. */
+    protected static final int PENDING_REDRAW_DELAY = 20;
+
+    /** The executor used to rasterize tiles. */
+    protected ExecutorService executor;
+    /** The rasterizer used to draw surface shapes into tile images. */
+    protected SurfaceShapeRasterizer rasterizer = new SurfaceShapeRasterizer();
+    /** Index of the current surface objects' sectors. Populated only while tiles are assembled. */
+    protected SectorIndex<SurfaceObject> objectIndex = new SectorIndex<SurfaceObject>();
+    /** The rasterizations in progress, keyed by tile key. Each tile has at most one rasterization in progress. */
+    protected Map<Object, PendingImage> pendingImages = new HashMap<Object, PendingImage>();
+
+    /** A rasterization in progress, and the tile state it was captured from. */
+    protected static class PendingImage
+    {
+        protected final Future<BufferedImage> future;
+        protected final Object stateKey;
+
+        public PendingImage(Future<BufferedImage> future, Object stateKey)
+        {
+            this.future = future;
+            this.stateKey = stateKey;
+        }
+    }
+
+    /**
+     * Constructs a new builder with a tile width and height of <code>512</code>, with the default tile texture format,
+     * with linear filtering enabled, and with mip-mapping disabled. Tiles are rasterized by an executor shared with
+     * other builders, having one thread per available processor.
+     */
+    public RasterizingSurfaceObjectTileBuilder()
+    {
+    }
+
+    /**
+     * Constructs a new builder with the specified tile dimension, tile texture format, flags specifying if linear
+     * filtering and mip-mapping are enabled, and executor.
+     *
+     * @param tileTextureDimension the surface tile texture dimension, in pixels.
+     * @param tileTextureFormat    the surface tile OpenGL texture format, or 0 to use the default format.
+     * @param useLinearFilter      true to use linear filtering while rendering surface tiles; false to use
+     *                             nearest-neighbor filtering.
+     * @param useMipmaps           true to generate mip-maps for surface tile textures; false otherwise.
+     * @param executor             the executor used to rasterize tiles, or null to use an executor shared with other
+     *                             builders.
+     *
+     * @throws IllegalArgumentException if the tile dimension is null.
+     */
+    public RasterizingSurfaceObjectTileBuilder(Dimension tileTextureDimension, int tileTextureFormat,
+        boolean useLinearFilter, boolean useMipmaps, ExecutorService executor)
+    {
+        super(tileTextureDimension, tileTextureFormat, useLinearFilter, useMipmaps);
+
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the executor used to rasterize tiles.
+     *
+     * @return the builder's executor.
+     */
+    public ExecutorService getExecutor()
+    {
+        if (this.executor == null)
+            this.executor = ComputeExecutor.getInstance();
+
+        return this.executor;
+    }
+
+    //**************************************************************//
+    //********************  Tile Updating  *************************//
+    //**************************************************************//
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Overridden to upload the images of finished rasterizations as the tiles' textures, and to submit the tiles that
+     * need an update for rasterization on the builder's executor. A tile whose rasterization is in progress keeps its
+     * current texture. Tiles that cannot be rasterized are drawn by the superclass.
+     */
+    @Override
+    protected void updateTiles(DrawContext dc)
+    {
+        if (dc.isPickingMode())
+        {
+            super.updateTiles(dc);
+            return;
+        }
+
+        List<SurfaceObjectTile> glTiles = new ArrayList<SurfaceObjectTile>();
+        Set<Object> currentKeys = new HashSet<Object>();
+
+        for (SurfaceObjectTile tile : this.currentTiles)
+        {
+            Object tileKey = tile.getTileKey();
+            currentKeys.add(tileKey);
+
+            // Upload the tile's image if its rasterization has finished since the last frame.
+            PendingImage pending = this.pendingImages.get(tileKey);
+            if (pending != null && pending.future.isDone())
+            {
+                this.pendingImages.remove(tileKey);
+                BufferedImage image = this.getRasterImage(pending.future);
+                if (image == null)
+                {
+                    // Draw the tile with OpenGL rather than rasterize it again every frame.
+                    glTiles.add(tile);
+                    continue;
+                }
+
+                tile.lastUpdateStateKey = pending.stateKey;
+                this.uploadTileImage(dc, tile, image);
+                pending = null;
+            }
+
+            Texture texture = tile.getTexture(dc.getTextureCache());
+            Object tileStateKey = tile.getStateKey(dc);
+
+            if (texture != null && tileStateKey.equals(tile.lastUpdateStateKey))
+                continue;
+
+            // Wait for the tile's rasterization in progress rather than start another. If the tile has changed since
+            // the rasterization started, it's rasterized again once that image is uploaded.
+            if (pending != null)
+                continue;
+
+            // Snapshot the tile on this thread, since surface shapes are not thread safe, and submit the snapshot for
+            // rasterization.
+            final List<SurfaceShapeRasterizer.RasterShape> shapes = this.createRasterShapes(dc, tile);
+            if (shapes == null)
+            {
+                glTiles.add(tile);
+                continue;
+            }
+
+            final Sector sector = tile.getSector();
+            final int width = tile.getWidth();
+            final int height = tile.getHeight();
+
+            Future<BufferedImage> future = this.getExecutor().submit(new Callable<BufferedImage>()
+            {
+                public BufferedImage call() throws Exception
+                {
+                    return rasterizer.rasterize(sector, width, height, shapes);
+                }
+            });
+            this.pendingImages.put(tileKey, new PendingImage(future, tileStateKey));
+        }
+
+        // Abandon the rasterizations of tiles that are no longer in view.
+        for (Iterator<Map.Entry<Object, PendingImage>> iter = this.pendingImages.entrySet().iterator();
+            iter.hasNext(); )
+        {
+            Map.Entry<Object, PendingImage> entry = iter.next();
+            if (!currentKeys.contains(entry.getKey()))
+            {
+                entry.getValue().future.cancel(false);
+                iter.remove();
+            }
+        }
+
+        if (!glTiles.isEmpty())
+            this.updateTilesWithOpenGL(dc, glTiles);
+
+        // Draw another frame soon to upload the images still being rasterized.
+        if (!this.pendingImages.isEmpty()
+            && (dc.getRedrawRequested() == 0 || dc.getRedrawRequested() > PENDING_REDRAW_DELAY))
+        {
+            dc.setRedrawRequested(PENDING_REDRAW_DELAY);
+        }
+    }
+
+    /**
+     * Creates snapshots of the surface objects intersecting a tile, in drawing order, for the builder's rasterizer.
+     * Objects that are not visible are omitted.
+     *
+     * @param dc   the current draw context.
+     * @param tile the tile to create snapshots for.
+     *
+     * @return the tile's snapshots, or null if any of the tile's objects cannot be drawn by the rasterizer.
+     */
+    protected List<SurfaceShapeRasterizer.RasterShape> createRasterShapes(DrawContext dc, SurfaceObjectTile tile)
+    {
+        Object o = this.createSurfaceTileDrawContext(tile);
+        if (!(o instanceof SurfaceTileDrawContext))
+            return null;
+
+        SurfaceTileDrawContext sdc = (SurfaceTileDrawContext) o;
+        List<SurfaceShapeRasterizer.RasterShape> shapes = new ArrayList<SurfaceShapeRasterizer.RasterShape>();
+
+        if (tile.hasObjects())
+        {
+            for (SurfaceObject so : tile.getObjectList())
+            {
+                if (!so.isVisible())
+                    continue;
+
+                if (!(so instanceof AbstractSurfaceShape) || ((AbstractSurfaceShape) so).isDrawBoundingSectors())
+                    return null;
+
+                SurfaceShapeRasterizer.RasterShape shape = ((AbstractSurfaceShape) so).createRasterShape(dc, sdc);
+                if (shape == null)
+                    return null;
+
+                shapes.add(shape);
+            }
+        }
+
+        return shapes;
+    }
+
+    /**
+     * Draws the specified tiles with OpenGL, as {@link SurfaceObjectTileBuilder} does. Textures previously uploaded
+     * from rasterized images are discarded first, because their rows are stored in the opposite order of the rows
+     * drawn by OpenGL.
+     *
+     * @param dc    the current draw context.
+     * @param tiles the tiles to draw.
+     */
+    protected void updateTilesWithOpenGL(DrawContext dc, List<SurfaceObjectTile> tiles)
+    {
+        for (SurfaceObjectTile tile : tiles)
+        {
+            Texture texture = tile.getTexture(dc.getTextureCache());
+            if (texture != null && texture.getMustFlipVertically())
+                dc.getTextureCache().remove(tile.getTileKey());
+        }
+
+        List<SurfaceObjectTile> allTiles = this.currentTiles;
+        this.currentTiles = tiles;
+        try
+        {
+            super.updateTiles(dc);
+        }
+        finally
+        {
+            this.currentTiles = allTiles;
+        }
+    }
+
+    /**
+     * Returns the image of a finished rasterization.
+     *
+     * @param future the finished rasterization.
+     *
+     * @return the rasterized image, or null if rasterization failed or was cancelled.
+     */
+    protected BufferedImage getRasterImage(Future<BufferedImage> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            Logging.logger().log(java.util.logging.Level.SEVERE,
+                Logging.getMessage("generic.ExceptionWhileRenderingRenderable"), e.getCause());
+            return null;
+        }
+        catch (CancellationException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Uploads a rasterized image as a tile's texture. The tile's existing texture is updated in place if it was created
+     * from a rasterized image. Otherwise a new texture is created and replaces the tile's texture in the draw
+     * context's texture cache. The texture's parameters are configured as described in {@link
+     * #createTileTexture(DrawContext, int, int)}.
+     *
+     * @param dc    the current draw context.
+     * @param tile  the tile to update.
+     * @param image the tile's image, whose first row corresponds to the tile's maximum latitude.
+     */
+    protected void uploadTileImage(DrawContext dc, SurfaceObjectTile tile, BufferedImage image)
+    {
+        GL gl = dc.getGL();
+
+        Texture texture = tile.getTexture(dc.getTextureCache());
+        if (texture != null && texture.getMustFlipVertically() && texture.getWidth() == image.getWidth()
+            && texture.getHeight() == image.getHeight())
+        {
+            texture.updateImage(gl, AWTTextureIO.newTextureData(gl.getGLProfile(), image, this.isUseMipmaps()));
+        }
+        else
+        {
+            texture = AWTTextureIO.newTexture(gl.getGLProfile(), image, this.isUseMipmaps());
+            tile.setTexture(dc.getTextureCache(), texture);
+        }
+
+        // Texture.updateImage overwrites the texture parameters, so they are specified after every upload.
+        texture.bind(gl);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, this.isUseLinearFilter() ?
+            (this.isUseMipmaps() ? GL.GL_LINEAR_MIPMAP_LINEAR : GL.GL_LINEAR) : GL.GL_NEAREST);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, this.isUseLinearFilter() ?
+            GL.GL_LINEAR : GL.GL_NEAREST);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_CLAMP_TO_EDGE);
+    }
+
+    //**************************************************************//
+    //********************  Surface Tile Assembly  *****************//
+    //**************************************************************//
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Overridden to index the current surface objects by their sectors while the tiles are assembled.
+     */
+    @Override
+    protected void assembleTiles(DrawContext dc)
+    {
+        for (SurfaceObject so : this.currentSurfaceObjects)
+        {
+            List<Sector> sectors = so.getSectors(dc);
+            if (sectors != null)
+                this.objectIndex.add(so, sectors);
+        }
+
+        try
+        {
+            super.assembleTiles(dc);
+        }
+        finally
+        {
+            this.objectIndex.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Overridden to find the objects intersecting the tile with the builder's sector index, rather than by testing
+     * each of the parent's objects. Every object intersecting the tile also intersects its parent, so the objects found
+     * are those the superclass would find, in the same order.
+     */
+    @Override
+    protected void addIntersectingObjects(DrawContext dc, SurfaceObjectTile parent, SurfaceObjectTile tile)
+    {
+        if (!parent.hasObjects())
+            return;
+
+        if (!tile.getSector().intersects(parent.getObjectSector()))
+            return;
+
+        if (tile.getSector().contains(parent.getObjectSector()))
+        {
+            tile.addAllSurfaceObjects(parent.getObjectList(), parent.getObjectSector());
+            return;
+        }
+
+        for (SurfaceObject so : this.objectIndex.getItemsInRegion(tile.getSector(), null))
+        {
+            List<Sector> sectors = so.getSectors(dc);
+            if (sectors == null)
+                continue;
+
+            for (Sector s : sectors)
+            {
+                if (tile.getSector().intersects(s))
+                {
+                    tile.addSurfaceObject(so, s);
+                    break;
+                }
+            }
+        }
+    }
+}
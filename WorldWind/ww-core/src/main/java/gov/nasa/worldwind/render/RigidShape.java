@@ -41,6 +41,8 @@ public abstract class RigidShape extends AbstractShape
     {
         /** Holds the computed tessellation of the shape in model coordinates. */
         protected List<Geometry> meshes = new ArrayList<Geometry>();
+        /** The shared unit meshes the tessellation was taken from, or null if the tessellation is not shared. */
+        protected UnitMeshes unitMeshes;
         /** The GPU-resource cache keys to use for this entry's VBOs (one for eack LOD), if VBOs are used. */
         protected Map<Integer, Object> vboCacheKeys = new HashMap<Integer, Object>();
 
@@ -78,6 +80,23 @@ public abstract class RigidShape extends AbstractShape
         public void setMeshes(List<Geometry> meshes)
         {
             this.meshes = meshes;
+            this.unitMeshes = null;
+        }
+
+        public UnitMeshes getUnitMeshes()
+        {
+            return this.unitMeshes;
+        }
+
+        /**
+         * Specifies the shared unit meshes to draw. The meshes are shared with other shapes and must not be modified.
+         *
+         * @param unitMeshes the shared unit meshes.
+         */
+        public void setUnitMeshes(UnitMeshes unitMeshes)
+        {
+            this.meshes = unitMeshes.getMeshes();
+            this.unitMeshes = unitMeshes;
         }
 
         public void addMesh(Geometry mesh)
@@ -87,6 +106,12 @@ public abstract class RigidShape extends AbstractShape
 
         public void addMesh(int index, Geometry mesh)
         {
+            if (this.unitMeshes != null) // copy the shared meshes rather than modify them
+            {
+                this.meshes = new ArrayList<Geometry>(this.meshes);
+                this.unitMeshes = null;
+            }
+
             this.meshes.add(index, mesh);
         }
 
@@ -106,6 +131,47 @@ public abstract class RigidShape extends AbstractShape
         }
     }
 
+    /**
+     * The unit meshes of one shape type at one level of detail. A single instance is held in the geometry cache and is
+     * shared by every shape of the type, which differ only by the model transform applied when they're drawn. The
+     * instance also identifies the meshes' VBOs in the GPU resource cache, so that the meshes are uploaded once rather
+     * than once per shape.
+     */
+    protected static class UnitMeshes implements Cacheable
+    {
+        protected final Object cacheKey;
+        protected final List<Geometry> meshes;
+        protected final long size;
+
+        public UnitMeshes(Object cacheKey, List<Geometry> meshes)
+        {
+            this.cacheKey = cacheKey;
+            this.meshes = Collections.unmodifiableList(new ArrayList<Geometry>(meshes));
+
+            long size = 0;
+            for (Geometry mesh : meshes)
+            {
+                size += mesh.getSizeInBytes();
+            }
+            this.size = size;
+        }
+
+        public Object getCacheKey()
+        {
+            return this.cacheKey;
+        }
+
+        public List<Geometry> getMeshes()
+        {
+            return this.meshes;
+        }
+
+        public long getSizeInBytes()
+        {
+            return this.size;
+        }
+    }
+
     /**
      * Returns the current shape data cache entry.
      *
@@ -190,6 +256,9 @@ public abstract class RigidShape extends AbstractShape
     /** The shape data used for the previous intersection calculation. */
     protected ShapeData previousIntersectionShapeData;
 
+    /** Groups the shapes drawn in a batch by their unit meshes and attributes. Created when first needed. */
+    protected MeshInstanceBatcher<RigidShape> batcher;
+
     @Override
     protected void reset()
     {
@@ -707,6 +776,41 @@ public abstract class RigidShape extends AbstractShape
         return WorldWind.getMemoryCache(GEOMETRY_CACHE_KEY);
     }
 
+    /**
+     * Returns the shared unit meshes with a specified geometry cache key. The shape data's current unit meshes are
+     * returned if they have the key, so that a shape keeps using its meshes after the geometry cache evicts them.
+     *
+     * @param shapeData the current shape data.
+     * @param cacheKey  the geometry cache key of the unit meshes.
+     *
+     * @return the unit meshes, or null if they're not in the geometry cache.
+     */
+    protected UnitMeshes getUnitMeshes(ShapeData shapeData, Object cacheKey)
+    {
+        UnitMeshes unitMeshes = shapeData.getUnitMeshes();
+        if (unitMeshes != null && unitMeshes.getCacheKey().equals(cacheKey))
+            return unitMeshes;
+
+        return (UnitMeshes) this.getGeometryCache().getObject(cacheKey);
+    }
+
+    /**
+     * Adds newly created unit meshes to the geometry cache, where they're shared with every other shape that uses the
+     * same cache key.
+     *
+     * @param cacheKey the geometry cache key of the unit meshes.
+     * @param meshes   the unit meshes.
+     *
+     * @return the shared unit meshes.
+     */
+    protected UnitMeshes addUnitMeshes(Object cacheKey, List<Geometry> meshes)
+    {
+        UnitMeshes unitMeshes = new UnitMeshes(cacheKey, meshes);
+        this.getGeometryCache().add(cacheKey, unitMeshes);
+
+        return unitMeshes;
+    }
+
     @Override
     protected AbstractShapeData createCacheEntry(DrawContext dc)
     {
@@ -801,6 +905,98 @@ public abstract class RigidShape extends AbstractShape
         return this.getCurrentShapeData().getMesh(0).getBuffer(Geometry.VERTEX) != null;
     }
 
+    /**
+     * Draws the shapes of this shape's class following this one in the ordered renderable list as a batch. As in the
+     * superclass, the batch is limited to shapes of the same class because they're drawn within this shape's {@link
+     * #beginDrawing(DrawContext, int)} and {@link #endDrawing(DrawContext)}, which subclasses may override. Opaque
+     * shapes drawing shared unit meshes are grouped by meshes and active attributes, so that shapes drawing the same
+     * meshes with the same attributes are drawn consecutively. They're drawn before the remaining shapes, which are
+     * drawn in their original back-to-front order. Batch picking is performed by the superclass.
+     * <p/>
+     * The batch only reorders the shapes. Each shape is still drawn by its own {@link
+     * #doDrawOrderedRenderable(DrawContext, gov.nasa.worldwind.pick.PickSupport)}, which loads its model transform and
+     * attributes and draws its meshes from the shared VBOs.
+     * <p/>
+     * A {@link gov.nasa.worldwind.render.AbstractShape.AbstractShapeData} must be current when this method is called.
+     *
+     * @param dc the current draw context.
+     */
+    @Override
+    protected void drawBatched(DrawContext dc)
+    {
+        if (dc.isPickingMode())
+        {
+            super.drawBatched(dc);
+            return;
+        }
+
+        if (this.batcher == null)
+            this.batcher = new MeshInstanceBatcher<RigidShape>();
+
+        // The shapes were culled against the view frustum when they were added to the ordered renderable list.
+        Object nextItem = dc.peekOrderedRenderables();
+        while (nextItem != null && nextItem.getClass() == this.getClass())
+        {
+            RigidShape shape = (RigidShape) nextItem;
+            if (!shape.isEnableBatchRendering())
+                break;
+
+            dc.pollOrderedRenderables(); // take it off the queue
+
+            UnitMeshes unitMeshes = shape.getCurrentShapeData().getUnitMeshes();
+            if (unitMeshes != null && shape.isOrderIndependent())
+                this.batcher.add(shape, unitMeshes, shape.getActiveAttributes(), null);
+            else
+                this.batcher.addUnbatched(shape, null);
+
+            nextItem = dc.peekOrderedRenderables();
+        }
+
+        try
+        {
+            for (MeshInstanceBatcher.Batch<RigidShape> batch : this.batcher.getBatches())
+            {
+                for (RigidShape shape : batch.getInstances())
+                {
+                    shape.doDrawOrderedRenderable(dc, this.pickSupport);
+                }
+            }
+
+            for (RigidShape shape : this.batcher.getUnbatched())
+            {
+                shape.doDrawOrderedRenderable(dc, this.pickSupport);
+            }
+        }
+        finally
+        {
+            this.batcher.clear();
+        }
+    }
+
+    /**
+     * Indicates whether this shape may be drawn out of back-to-front order, which is true when its active attributes
+     * are opaque and it has no textures.
+     *
+     * @return true if this shape may be drawn out of order, otherwise false.
+     */
+    protected boolean isOrderIndependent()
+    {
+        ShapeAttributes attrs = this.getActiveAttributes();
+        if (attrs.isDrawInterior() && attrs.getInteriorOpacity() < 1)
+            return false;
+
+        if (attrs.isDrawOutline() && attrs.getOutlineOpacity() < 1)
+            return false;
+
+        for (WWTexture texture : this.textures.values())
+        {
+            if (texture != null)
+                return false;
+        }
+
+        return true;
+    }
+
     @Override
     protected OGLStackHandler beginDrawing(DrawContext dc, int attrMask)
     {
@@ -1384,7 +1580,8 @@ public abstract class RigidShape extends AbstractShape
     }
 
     /**
-     * Removes from the GPU resource cache the entry for the current data cache entry's VBOs.
+     * Removes from the GPU resource cache the entry for the current data cache entry's VBOs. VBOs of shared unit meshes
+     * are used by other shapes and are left in the cache.
      * <p/>
      * A {@link gov.nasa.worldwind.render.AbstractShape.AbstractShapeData} must be current when this method is called.
      *
@@ -1395,12 +1592,17 @@ public abstract class RigidShape extends AbstractShape
     {
         for (Integer key : ((ShapeData) this.getCurrentData()).vboCacheKeys.keySet())
         {
-            dc.getGpuResourceCache().remove(((ShapeData) this.getCurrentData()).getVboCacheKey(key));
+            Object vboCacheKey = ((ShapeData) this.getCurrentData()).getVboCacheKey(key);
+            if (!(vboCacheKey instanceof UnitMeshes))
+                dc.getGpuResourceCache().remove(vboCacheKey);
         }
     }
 
     /**
      * Fill this shape's vertex buffer objects. If the vertex buffer object resource IDs don't yet exist, create them.
+     * <p/>
+     * The VBOs of shared unit meshes are shared by every shape drawing the meshes, and are filled only when they're
+     * created.
      *
      * @param dc the current draw context.
      */
@@ -1410,19 +1612,26 @@ public abstract class RigidShape extends AbstractShape
         ShapeData shapeData = this.getCurrentShapeData();
         List<Geometry> meshes = shapeData.getMeshes();
 
-        // create the cacheKey for this LOD if it doesn't yet exist
-        if (shapeData.getVboCacheKey(getSubdivisions()) == null)
+        // use the shared meshes as the cacheKey for this LOD, otherwise create the cacheKey if it doesn't yet exist
+        if (shapeData.getUnitMeshes() != null)
+        {
+            shapeData.setVboCacheKey(getSubdivisions(), shapeData.getUnitMeshes());
+        }
+        else if (shapeData.getVboCacheKey(getSubdivisions()) == null)
         {
             shapeData.setVboCacheKey(getSubdivisions(), this.getClass().toString() + getSubdivisions());
         }
         int[] vboIds = (int[]) dc.getGpuResourceCache().get(shapeData.getVboCacheKey(getSubdivisions()));
+        if (vboIds != null && shapeData.getUnitMeshes() != null)
+            return; // another shape has already filled the shared VBOs
+
         if (vboIds == null)
         {
             int size = 0;
             for (int face = 0; face < getFaceCount(); face++)
             {
                 size += meshes.get(face).getBuffer(Geometry.VERTEX).limit() * Buffers.SIZEOF_FLOAT;
-                size += meshes.get(face).getBuffer(Geometry.ELEMENT).limit() * Buffers.SIZEOF_FLOAT;
+                size += meshes.get(face).getBuffer(Geometry.ELEMENT).limit() * Buffers.SIZEOF_INT;
             }
 
             vboIds = new int[2 * getFaceCount()];
@@ -1441,7 +1650,7 @@ public abstract class RigidShape extends AbstractShape
                 {
                     IntBuffer ib = (IntBuffer) meshes.get(face).getBuffer(Geometry.ELEMENT);
                     gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, vboIds[2 * face + 1]);
-                    gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, ib.limit() * Buffers.SIZEOF_FLOAT, ib.rewind(),
+                    gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, ib.limit() * Buffers.SIZEOF_INT, ib.rewind(),
                         GL.GL_DYNAMIC_DRAW);
                 }
 
@@ -178,6 +178,16 @@ public class SurfacePolyline extends AbstractSurfaceShape implements Exportable
         // Intentionally left blank; SurfacePolyline does not render an interior.
     }
 
+    /** {@inheritDoc} Overridden to omit the interior, which SurfacePolyline does not render. */
+    @Override
+    protected SurfaceShapeRasterizer.RasterShape createRasterShape(DrawContext dc, SurfaceTileDrawContext sdc)
+    {
+        SurfaceShapeRasterizer.RasterShape shape = super.createRasterShape(dc, sdc);
+
+        return shape != null
+            ? new SurfaceShapeRasterizer.RasterShape(shape.getContours(), shape.getAttributes(), false) : null;
+    }
+
     /** {@inheritDoc} Overridden to treat the shape as an open path if the polyline is not closed. */
     @Override
     protected boolean canContainPole()
@@ -162,6 +162,13 @@ public class SurfacePolylines extends AbstractSurfaceShape
         // Intentionally left blank in order to override the superclass behavior with nothing.
     }
 
+    /** {@inheritDoc} Overridden to return null; SurfacePolylines draws its geometry directly with OpenGL. */
+    @Override
+    protected SurfaceShapeRasterizer.RasterShape createRasterShape(DrawContext dc, SurfaceTileDrawContext sdc)
+    {
+        return null;
+    }
+
     protected void drawInterior(DrawContext dc, SurfaceTileDrawContext sdc)
     {
         // Intentionally left blank; SurfacePolylines does not render an interior.
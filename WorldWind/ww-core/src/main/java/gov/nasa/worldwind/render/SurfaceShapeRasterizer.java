@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.render;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.Logging;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Rasterizes surface shapes into geographic image tiles using Java2D, without OpenGL. Shapes are described by {@link
+ * RasterShape} snapshots of their geometry and attributes, which are independent of the shapes themselves and can
+ * therefore be rasterized on any thread. SurfaceShapeRasterizer is stateless and may be used by several threads
+ * simultaneously.
+ * <p/>
+ * Tiles are drawn into images of type <code>BufferedImage.TYPE_INT_ARGB_PRE</code>, whose first row corresponds to the
+ * tile's maximum latitude. The premultiplied colors match the result of drawing the shapes into a cleared texture with
+ * OpenGL as {@link SurfaceObjectTileBuilder} does. Interior image sources are not supported; shapes using them must be
+ * drawn with OpenGL.
+ *
+ * @version $Id$
+ */
+public class SurfaceShapeRasterizer
+{
+    /**
+     * A snapshot of the geometry and attributes of a surface shape as drawn into a particular tile. The geometry is a
+     * list of contours in geographic coordinates, with longitudes already adjusted for the tile's side of the dateline.
+     * The interior is the region enclosed by an odd number of contours.
+     */
+    public static class RasterShape
+    {
+        protected final List<List<LatLon>> contours;
+        protected final ShapeAttributes attributes;
+        protected final boolean drawInterior;
+
+        /**
+         * Creates a raster shape.
+         *
+         * @param contours     the shape's contours. The list is retained, not copied.
+         * @param attributes   the shape's attributes. The attributes are retained, not copied.
+         * @param drawInterior true to draw the shape's interior if the attributes specify drawing it, false to never
+         *                     draw the interior.
+         *
+         * @throws IllegalArgumentException if the contours or attributes are null.
+         */
+        public RasterShape(List<List<LatLon>> contours, ShapeAttributes attributes, boolean drawInterior)
+        {
+            if (contours == null)
+            {
+                String message = Logging.getMessage("nullValue.LocationsListIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            if (attributes == null)
+            {
+                String message = Logging.getMessage("nullValue.AttributesIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            this.contours = contours;
+            this.attributes = attributes;
+            this.drawInterior = drawInterior;
+        }
+
+        public List<List<LatLon>> getContours()
+        {
+            return this.contours;
+        }
+
+        public ShapeAttributes getAttributes()
+        {
+            return this.attributes;
+        }
+
+        public boolean isDrawInterior()
+        {
+            return this.drawInterior;
+        }
+    }
+
+    /** Creates a rasterizer. */
+    public SurfaceShapeRasterizer()
+    {
+    }
+
+    /**
+     * Rasterizes shapes into a new transparent image covering a sector.
+     *
+     * @param sector the sector the image covers.
+     * @param width  the image width, in pixels.
+     * @param height the image height, in pixels.
+     * @param shapes the shapes to draw, in drawing order.
+     *
+     * @return a new image containing the shapes.
+     *
+     * @throws IllegalArgumentException if the sector or shapes are null, or the dimensions are less than 1.
+     */
+    public BufferedImage rasterize(Sector sector, int width, int height, Iterable<? extends RasterShape> shapes)
+    {
+        if (width < 1 || height < 1)
+        {
+            String message = Logging.getMessage("generic.InvalidImageSize", width, height);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        this.rasterize(image, sector, shapes);
+
+        return image;
+    }
+
+    /**
+     * Rasterizes shapes into an existing image covering a sector. The shapes are composited over the image's current
+     * contents.
+     *
+     * @param image  the image to draw into.
+     * @param sector the sector the image covers.
+     * @param shapes the shapes to draw, in drawing order.
+     *
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public void rasterize(BufferedImage image, Sector sector, Iterable<? extends RasterShape> shapes)
+    {
+        if (image == null)
+        {
+            String message = Logging.getMessage("nullValue.ImageIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (sector == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (shapes == null)
+        {
+            String message = Logging.getMessage("nullValue.IterableIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        Graphics2D g = image.createGraphics();
+        try
+        {
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+
+            for (RasterShape shape : shapes)
+            {
+                if (shape != null)
+                    this.drawShape(g, shape, sector, image.getWidth(), image.getHeight());
+            }
+        }
+        finally
+        {
+            g.dispose();
+        }
+    }
+
+    protected void drawShape(Graphics2D g, RasterShape shape, Sector sector, int width, int height)
+    {
+        ShapeAttributes attrs = shape.getAttributes();
+
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, attrs.isEnableAntialiasing()
+            ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+
+        if (shape.isDrawInterior() && attrs.isDrawInterior() && attrs.getInteriorOpacity() > 0)
+        {
+            Path2D path = this.createPath(shape.getContours(), sector, width, height, true);
+            g.setColor(this.createColor(attrs.getInteriorMaterial(), attrs.getInteriorOpacity()));
+            g.fill(path);
+        }
+
+        if (attrs.isDrawOutline() && attrs.getOutlineOpacity() > 0 && attrs.getOutlineWidth() > 0)
+        {
+            Stroke stroke = this.createOutlineStroke(attrs);
+            if (stroke == null)
+                return;
+
+            // Outlines are drawn as open line strips, as in AbstractSurfaceShape.drawOutline.
+            Path2D path = this.createPath(shape.getContours(), sector, width, height, false);
+            g.setColor(this.createColor(attrs.getOutlineMaterial(), attrs.getOutlineOpacity()));
+            g.setStroke(stroke);
+            g.draw(path);
+        }
+    }
+
+    /**
+     * Converts contours in geographic coordinates to a path in image coordinates.
+     *
+     * @param contours the contours to convert.
+     * @param sector   the sector the image covers.
+     * @param width    the image width.
+     * @param height   the image height.
+     * @param closed   true to close each contour, false to leave them open.
+     *
+     * @return a path containing the contours.
+     */
+    protected Path2D createPath(List<List<LatLon>> contours, Sector sector, int width, int height, boolean closed)
+    {
+        double minLon = sector.getMinLongitude().degrees;
+        double maxLat = sector.getMaxLatitude().degrees;
+        double sx = width / sector.getDeltaLonDegrees();
+        double sy = height / sector.getDeltaLatDegrees();
+
+        // The even-odd rule matches the GLU_TESS_WINDING_ODD rule used to tessellate shape interiors.
+        Path2D.Double path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        for (List<LatLon> contour : contours)
+        {
+            boolean first = true;
+            for (LatLon ll : contour)
+            {
+                double x = (ll.getLongitude().degrees - minLon) * sx;
+                double y = (maxLat - ll.getLatitude().degrees) * sy;
+
+                if (first)
+                    path.moveTo(x, y);
+                else
+                    path.lineTo(x, y);
+
+                first = false;
+            }
+
+            if (closed && !first)
+                path.closePath();
+        }
+
+        return path;
+    }
+
+    protected Color createColor(Material material, double opacity)
+    {
+        Color color = material.getDiffuse();
+        int alpha = (int) (255 * opacity + 0.5);
+
+        return new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha);
+    }
+
+    /**
+     * Creates the stroke for a shape's outline. OpenGL line stipple patterns are converted to equivalent dash patterns.
+     *
+     * @param attrs the shape's attributes.
+     *
+     * @return the outline stroke, or null if the stipple pattern draws nothing.
+     */
+    protected Stroke createOutlineStroke(ShapeAttributes attrs)
+    {
+        float width = (float) attrs.getOutlineWidth();
+        int factor = attrs.getOutlineStippleFactor();
+        int pattern = attrs.getOutlineStipplePattern() & 0xFFFF;
+
+        if (factor <= 0 || pattern == 0xFFFF)
+            return new BasicStroke(width, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND);
+
+        if (pattern == 0)
+            return null;
+
+        // OpenGL applies the stipple pattern from its least significant bit, each bit covering factor pixels. Java2D
+        // dash arrays alternate on and off lengths beginning with an on length, so the pattern is rotated to begin at
+        // its first on bit, and the dash phase rotates it back into place.
+        int firstOn = Integer.numberOfTrailingZeros(pattern);
+        List<Float> runs = new ArrayList<Float>();
+        boolean on = true;
+        int runLength = 0;
+        for (int i = 0; i < 16; i++)
+        {
+            boolean bit = ((pattern >> ((firstOn + i) % 16)) & 1) != 0;
+            if (bit != on)
+            {
+                runs.add((float) (runLength * factor));
+                on = bit;
+                runLength = 0;
+            }
+            runLength++;
+        }
+        runs.add((float) (runLength * factor));
+
+        if (runs.size() % 2 != 0) // Odd run count: the pattern ends with an on run. Append an empty off run.
+            runs.add(0f);
+
+        float[] dash = new float[runs.size()];
+        for (int i = 0; i < dash.length; i++)
+        {
+            dash[i] = runs.get(i);
+        }
+
+        float phase = ((16 - firstOn) % 16) * factor;
+
+        return new BasicStroke(width, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10f, dash, phase);
+    }
+}
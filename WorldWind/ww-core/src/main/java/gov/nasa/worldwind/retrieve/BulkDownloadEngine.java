@@ -0,0 +1,646 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Retrieves the missing tiles of a bulk download through a bounded pipeline. Tiles are added to the engine as they are
+ * enumerated. The engine first determines whether each tile is already local, checking several tiles at a time on a
+ * small thread pool, and then requests the missing tiles from the retrieval service. The number of retrievals in
+ * progress is bounded, so enumeration blocks when the pipeline is full rather than polling the retrieval service.
+ * <p/>
+ * Requests to each host are limited to a maximum rate and bandwidth, specified by {@link
+ * AVKey#BULK_DOWNLOAD_MAX_REQUESTS_PER_SECOND} and {@link AVKey#BULK_DOWNLOAD_MAX_BYTES_PER_SECOND}. The number of
+ * concurrent retrievals is specified by {@link AVKey#BULK_DOWNLOAD_MAX_ACTIVE_RETRIEVALS}.
+ * <p/>
+ * The engine optionally keeps a journal of the tiles it has retrieved. When a download is interrupted and started again
+ * with the same journal, the journaled tiles are counted as local without checking the file store. The journal is
+ * deleted once a download completes without failures.
+ * <p/>
+ * Subclasses provide the tile-specific operations. Their retrieval post processors must call {@link
+ * #retrievalCompleted(Object, Retriever)} when a retrieval started by {@link #retrieveTile(Object)} ends.
+ *
+ * @param <T> the tile type.
+ *
+ * @version $Id$
+ */
+public abstract class BulkDownloadEngine<T>
+{
+    protected static final int DEFAULT_MAX_ACTIVE_RETRIEVALS = 8;
+    protected static final int NUM_CHECK_THREADS = 4;
+    protected static final int MAX_PENDING_CHECKS = 256;
+    /** The time after which a retrieval that hasn't completed no longer counts against the active retrievals. */
+    protected static final long RETRIEVAL_LEASE_TIME = 120000;
+    protected static final long LEASE_CHECK_INTERVAL = 5000;
+    protected static final Object END = new Object();
+
+    protected final Progress progress;
+    protected final long averageTileSize;
+    protected final File journalFile;
+    protected int maxActiveRetrievals;
+    protected double maxRequestsPerSecond;
+    protected long maxBytesPerSecond;
+
+    protected ExecutorService executor;
+    protected Semaphore checkPermits = new Semaphore(MAX_PENDING_CHECKS);
+    protected Semaphore retrievalPermits;
+    protected BlockingQueue<Object> missingTiles;
+    protected ConcurrentHashMap<T, Long> activeRetrievals = new ConcurrentHashMap<T, Long>();
+    protected Map<String, HostLimiter> hostLimiters = new HashMap<String, HostLimiter>();
+    protected Set<Long> journaledTiles = new HashSet<Long>();
+    protected OutputStream journal;
+    protected AtomicInteger numFailures = new AtomicInteger();
+    protected Future<?> dispatcher;
+
+    /**
+     * Limits the request rate and bandwidth used for one host. Each request is scheduled at the later of the time its
+     * predecessor's rate interval ends and the time the bytes already received have been paid for at the maximum
+     * bandwidth.
+     */
+    protected static class HostLimiter
+    {
+        protected final double maxRequestsPerSecond;
+        protected final long maxBytesPerSecond;
+        protected long nextRequestTime;
+        protected long bandwidthAvailableTime;
+
+        public HostLimiter(double maxRequestsPerSecond, long maxBytesPerSecond)
+        {
+            this.maxRequestsPerSecond = maxRequestsPerSecond;
+            this.maxBytesPerSecond = maxBytesPerSecond;
+        }
+
+        /**
+         * Blocks until a request may be sent to the host.
+         *
+         * @throws InterruptedException if the calling thread is interrupted while waiting.
+         */
+        public void acquire() throws InterruptedException
+        {
+            long start;
+            synchronized (this)
+            {
+                long now = System.nanoTime();
+                start = Math.max(now, Math.max(this.nextRequestTime, this.bandwidthAvailableTime));
+                if (this.maxRequestsPerSecond > 0)
+                    this.nextRequestTime = start + (long) (1e9 / this.maxRequestsPerSecond);
+            }
+
+            long delay = start - System.nanoTime();
+            if (delay > 0)
+                TimeUnit.NANOSECONDS.sleep(delay);
+        }
+
+        /**
+         * Accounts for bytes received from the host.
+         *
+         * @param numBytes the number of bytes received.
+         */
+        public synchronized void charge(long numBytes)
+        {
+            if (this.maxBytesPerSecond <= 0 || numBytes <= 0)
+                return;
+
+            long now = System.nanoTime();
+            this.bandwidthAvailableTime = Math.max(now, this.bandwidthAvailableTime)
+                + (long) (1e9 * numBytes / this.maxBytesPerSecond);
+        }
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param progress        the progress to update as tiles are retrieved.
+     * @param averageTileSize the estimated size of a tile, in bytes, used to adjust the progress's total size when a
+     *                        tile turns out to be absent.
+     * @param journalFile     the file in which to record retrieved tiles. May be null, in which case no journal is
+     *                        kept.
+     *
+     * @throws IllegalArgumentException if the progress is null.
+     */
+    public BulkDownloadEngine(Progress progress, long averageTileSize, File journalFile)
+    {
+        if (progress == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.progress = progress;
+        this.averageTileSize = averageTileSize;
+        this.journalFile = journalFile;
+        this.maxActiveRetrievals = Configuration.getIntegerValue(AVKey.BULK_DOWNLOAD_MAX_ACTIVE_RETRIEVALS,
+            DEFAULT_MAX_ACTIVE_RETRIEVALS);
+        this.maxRequestsPerSecond = Configuration.getDoubleValue(AVKey.BULK_DOWNLOAD_MAX_REQUESTS_PER_SECOND, 0d);
+        this.maxBytesPerSecond = Configuration.getLongValue(AVKey.BULK_DOWNLOAD_MAX_BYTES_PER_SECOND, 0L);
+    }
+
+    /**
+     * Indicates whether a tile is known to be unavailable from its server.
+     *
+     * @param tile the tile.
+     *
+     * @return true if the tile is absent, otherwise false.
+     */
+    protected abstract boolean isTileAbsent(T tile);
+
+    /**
+     * Indicates whether a tile is already in the destination file store. Called concurrently from several threads.
+     *
+     * @param tile the tile.
+     *
+     * @return true if the tile is local, otherwise false.
+     */
+    protected abstract boolean isTileLocal(T tile);
+
+    /**
+     * Starts the retrieval of a tile. The retrieval's post processor must call {@link #retrievalCompleted(Object,
+     * Retriever)} when the retrieval ends.
+     *
+     * @param tile the tile to retrieve.
+     */
+    protected abstract void retrieveTile(T tile);
+
+    /**
+     * Returns a key identifying a tile in the journal.
+     *
+     * @param tile the tile.
+     *
+     * @return the tile's key.
+     */
+    protected abstract TileKey getTileKey(T tile);
+
+    /**
+     * Returns the host a tile is retrieved from. Requests to the same host share a rate and bandwidth limit.
+     *
+     * @param tile the tile.
+     *
+     * @return the tile's host, or null if unknown.
+     */
+    protected abstract String getTileHost(T tile);
+
+    /**
+     * Called when a tile is found to be local. The default implementation does nothing.
+     *
+     * @param tile the local tile.
+     */
+    protected void tileLocal(T tile)
+    {
+    }
+
+    public int getMaxActiveRetrievals()
+    {
+        return this.maxActiveRetrievals;
+    }
+
+    public void setMaxActiveRetrievals(int maxActiveRetrievals)
+    {
+        if (maxActiveRetrievals < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", maxActiveRetrievals);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.maxActiveRetrievals = maxActiveRetrievals;
+    }
+
+    public double getMaxRequestsPerSecond()
+    {
+        return this.maxRequestsPerSecond;
+    }
+
+    /**
+     * Specifies the maximum rate of requests to one host.
+     *
+     * @param maxRequestsPerSecond the maximum number of requests per second, or zero for no limit.
+     */
+    public void setMaxRequestsPerSecond(double maxRequestsPerSecond)
+    {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    public long getMaxBytesPerSecond()
+    {
+        return this.maxBytesPerSecond;
+    }
+
+    /**
+     * Specifies the maximum bandwidth used for one host.
+     *
+     * @param maxBytesPerSecond the maximum number of bytes per second, or zero for no limit.
+     */
+    public void setMaxBytesPerSecond(long maxBytesPerSecond)
+    {
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    /**
+     * Returns the number of retrievals that have failed.
+     *
+     * @return the number of failed retrievals.
+     */
+    public int getNumFailures()
+    {
+        return this.numFailures.get();
+    }
+
+    /**
+     * Starts the engine's threads and reads its journal. Must be called before tiles are added.
+     *
+     * @throws IOException if the journal cannot be read or opened.
+     */
+    public void start() throws IOException
+    {
+        this.readJournal();
+        if (this.journalFile != null)
+        {
+            //noinspection ResultOfMethodCallIgnored
+            this.journalFile.getParentFile().mkdirs();
+            this.journal = new FileOutputStream(this.journalFile, true);
+        }
+
+        this.retrievalPermits = new Semaphore(this.maxActiveRetrievals);
+        this.missingTiles = new ArrayBlockingQueue<Object>(4 * this.maxActiveRetrievals);
+        this.executor = Executors.newFixedThreadPool(NUM_CHECK_THREADS + 1, new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                thread.setName("Bulk download");
+                return thread;
+            }
+        });
+
+        // The dispatcher occupies one of the executor's threads until the end marker follows the last missing tile.
+        this.dispatcher = this.executor.submit(new Callable<Object>()
+        {
+            public Object call() throws Exception
+            {
+                dispatchTiles();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Adds a tile to the download. The tile is retrieved if it's neither absent nor local. Blocks while the pipeline is
+     * full.
+     *
+     * @param tile the tile to add.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public void addTile(final T tile) throws InterruptedException
+    {
+        if (tile == null)
+            return;
+
+        this.checkPermits.acquire();
+        try
+        {
+            this.executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        checkTile(tile);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally
+                    {
+                        checkPermits.release();
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.checkPermits.release();
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Runs the retrievals of the missing tiles found among the tiles added to the engine, and waits until they end.
+     * Called by the thread that added the tiles, once all the tiles have been added.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public void finish() throws InterruptedException
+    {
+        // The end marker follows the last missing tile once all the checks are done.
+        this.checkPermits.acquire(MAX_PENDING_CHECKS);
+        this.checkPermits.release(MAX_PENDING_CHECKS);
+        this.missingTiles.put(END);
+
+        try
+        {
+            this.dispatcher.get();
+        }
+        catch (ExecutionException e)
+        {
+            String message = Logging.getMessage("generic.ExceptionDuringBulkRetrieval", e.getCause());
+            Logging.logger().log(Level.SEVERE, message, e.getCause());
+        }
+
+        // Wait until every retrieval has returned its permit.
+        while (!this.retrievalPermits.tryAcquire(this.maxActiveRetrievals, LEASE_CHECK_INTERVAL,
+            TimeUnit.MILLISECONDS))
+        {
+            this.expireRetrievals();
+        }
+        this.retrievalPermits.release(this.maxActiveRetrievals);
+
+        this.stop();
+
+        if (this.journalFile != null && this.numFailures.get() == 0)
+        {
+            //noinspection ResultOfMethodCallIgnored
+            this.journalFile.delete();
+        }
+    }
+
+    /** Stops the engine's threads and closes its journal. Retrievals already started continue. */
+    public void stop()
+    {
+        if (this.executor != null)
+            this.executor.shutdownNow();
+
+        synchronized (this.journaledTiles)
+        {
+            WWIO.closeStream(this.journal, this.journalFile != null ? this.journalFile.getPath() : null);
+            this.journal = null;
+        }
+    }
+
+    /**
+     * Called by a retrieval post processor when the retrieval of a tile ends, whether or not it succeeded.
+     *
+     * @param tile      the tile.
+     * @param retriever the retriever.
+     */
+    public void retrievalCompleted(T tile, Retriever retriever)
+    {
+        long numBytes = retriever != null ? retriever.getContentLengthRead() : 0;
+        this.getHostLimiter(this.getTileHost(tile)).charge(numBytes);
+
+        boolean succeeded = retriever != null && Retriever.RETRIEVER_STATE_SUCCESSFUL.equals(retriever.getState());
+        if (succeeded && this.isTileAbsent(tile))
+        {
+            this.tileAbsent();
+        }
+        else if (succeeded)
+        {
+            this.writeJournal(this.getTileKey(tile));
+
+            synchronized (this.progress)
+            {
+                this.progress.setCurrentCount(this.progress.getCurrentCount() + 1);
+                this.progress.setCurrentSize(this.progress.getCurrentSize() + numBytes);
+                this.progress.setLastUpdateTime(System.currentTimeMillis());
+                this.normalizeProgress();
+            }
+        }
+        else
+        {
+            this.numFailures.incrementAndGet();
+        }
+
+        // Release the permit last, so that finish() returns only once every completed retrieval has been recorded.
+        if (this.activeRetrievals.remove(tile) != null)
+            this.retrievalPermits.release();
+    }
+
+    protected void checkTile(T tile) throws InterruptedException
+    {
+        if (this.isTileAbsent(tile))
+        {
+            this.tileAbsent();
+            return;
+        }
+
+        boolean journaled;
+        synchronized (this.journaledTiles)
+        {
+            journaled = this.journaledTiles.contains(packKey(this.getTileKey(tile)));
+        }
+
+        if (journaled || this.isTileLocal(tile))
+        {
+            this.tileLocal(tile);
+            return;
+        }
+
+        this.missingTiles.put(tile);
+    }
+
+    protected void dispatchTiles() throws InterruptedException
+    {
+        for (Object o = this.missingTiles.take(); o != END; o = this.missingTiles.take())
+        {
+            @SuppressWarnings({"unchecked"})
+            T tile = (T) o;
+
+            while (!this.retrievalPermits.tryAcquire(LEASE_CHECK_INTERVAL, TimeUnit.MILLISECONDS))
+            {
+                this.expireRetrievals();
+            }
+
+            // The tile may have been found absent by a retrieval that ended while this one waited.
+            if (this.isTileAbsent(tile))
+            {
+                this.retrievalPermits.release();
+                this.tileAbsent();
+                continue;
+            }
+
+            this.getHostLimiter(this.getTileHost(tile)).acquire();
+
+            this.activeRetrievals.put(tile, System.currentTimeMillis());
+            try
+            {
+                this.retrieveTile(tile);
+            }
+            catch (Exception e)
+            {
+                String message = Logging.getMessage("generic.ExceptionDuringBulkRetrieval", tile);
+                Logging.logger().log(Level.SEVERE, message, e);
+                this.retrievalCompleted(tile, null);
+            }
+        }
+    }
+
+    /**
+     * Returns the permits of retrievals that have been active longer than the lease time. A retrieval that never ends,
+     * such as one the retrieval service rejected as a duplicate, then no longer blocks the pipeline.
+     */
+    protected void expireRetrievals()
+    {
+        long expiryTime = System.currentTimeMillis() - RETRIEVAL_LEASE_TIME;
+        for (Map.Entry<T, Long> entry : this.activeRetrievals.entrySet())
+        {
+            if (entry.getValue() < expiryTime && this.activeRetrievals.remove(entry.getKey(), entry.getValue()))
+            {
+                this.retrievalPermits.release();
+                this.numFailures.incrementAndGet();
+            }
+        }
+    }
+
+    protected HostLimiter getHostLimiter(String host)
+    {
+        synchronized (this.hostLimiters)
+        {
+            HostLimiter limiter = this.hostLimiters.get(host);
+            if (limiter == null)
+            {
+                limiter = new HostLimiter(this.maxRequestsPerSecond, this.maxBytesPerSecond);
+                this.hostLimiters.put(host, limiter);
+            }
+
+            return limiter;
+        }
+    }
+
+    protected void tileAbsent()
+    {
+        synchronized (this.progress)
+        {
+            this.progress.setTotalCount(this.progress.getTotalCount() - 1);
+            this.progress.setTotalSize(this.progress.getTotalSize() - this.averageTileSize);
+            this.progress.setLastUpdateTime(System.currentTimeMillis());
+            this.normalizeProgress();
+        }
+    }
+
+    protected void normalizeProgress()
+    {
+        if (this.progress.getTotalCount() < this.progress.getCurrentCount())
+        {
+            this.progress.setTotalCount(this.progress.getCurrentCount());
+            this.progress.setTotalSize(this.progress.getCurrentSize());
+        }
+    }
+
+    /**
+     * Reads the keys of the tiles retrieved by a previous download from the journal. A partial record left by an
+     * interrupted write at the end of the journal is ignored.
+     *
+     * @throws IOException if the journal cannot be read.
+     */
+    protected void readJournal() throws IOException
+    {
+        if (this.journalFile == null || !this.journalFile.exists())
+            return;
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.journalFile)));
+        try
+        {
+            long numRecords = this.journalFile.length() / 12;
+            for (long i = 0; i < numRecords; i++)
+            {
+                this.journaledTiles.add(packKey(in.readInt(), in.readInt(), in.readInt()));
+            }
+        }
+        finally
+        {
+            WWIO.closeStream(in, this.journalFile.getPath());
+        }
+    }
+
+    protected void writeJournal(TileKey key)
+    {
+        synchronized (this.journaledTiles)
+        {
+            if (this.journal == null)
+                return;
+
+            try
+            {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(12);
+                DataOutputStream record = new DataOutputStream(bytes);
+                record.writeInt(key.getLevelNumber());
+                record.writeInt(key.getRow());
+                record.writeInt(key.getColumn());
+                this.journal.write(bytes.toByteArray());
+            }
+            catch (IOException e)
+            {
+                String message = Logging.getMessage("generic.ExceptionAttemptingToWriteTo", this.journalFile);
+                Logging.logger().log(Level.SEVERE, message, e);
+                WWIO.closeStream(this.journal, this.journalFile.getPath());
+                this.journal = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the host of a service address, for use as a tile's host.
+     *
+     * @param address the service address.
+     *
+     * @return the address's host, or the address itself if it's not a URL.
+     */
+    public static String getHost(String address)
+    {
+        if (address == null)
+            return null;
+
+        try
+        {
+            return new URL(address).getHost();
+        }
+        catch (MalformedURLException e)
+        {
+            return address;
+        }
+    }
+
+    /**
+     * Returns the journal file of a bulk download of a level set's tiles, in a file store directory. The file is named
+     * for the sector and resolution of the download, so that only the same download resumes from it.
+     *
+     * @param directory  the directory, typically the level set's cache directory in the download's file store.
+     * @param sector     the sector of the download.
+     * @param resolution the resolution of the download.
+     *
+     * @return the journal file.
+     */
+    public static File getJournalFile(File directory, Sector sector, double resolution)
+    {
+        String name = sector.toString() + ";" + Double.toString(resolution);
+        return new File(directory, "bulkdownload-" + Integer.toHexString(name.hashCode()) + ".journal");
+    }
+
+    protected static long packKey(TileKey key)
+    {
+        return packKey(key.getLevelNumber(), key.getRow(), key.getColumn());
+    }
+
+    protected static long packKey(int level, int row, int column)
+    {
+        return ((long) level << 56) | ((long) (row & 0xfffffff) << 28) | (column & 0xfffffff);
+    }
+}
@@ -7,6 +7,7 @@ package gov.nasa.worldwind.retrieve;
 
 import gov.nasa.worldwind.util.Logging;
 
+import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.util.logging.Level;
@@ -19,6 +20,10 @@ public class HTTPRetriever extends URLRetriever
 {
     private int responseCode;
     private String responseMessage;
+    private String ifNoneMatch;
+    private long ifModifiedSince;
+    private String entityTag;
+    private long lastModified;
 
     public HTTPRetriever(URL url, RetrievalPostProcessor postProcessor)
     {
@@ -35,6 +40,76 @@ public class HTTPRetriever extends URLRetriever
         return this.responseMessage;
     }
 
+    /**
+     * Specifies an entity tag previously returned by the server for this retriever's URL. If specified, the request is
+     * conditional, and the server responds with <code>304 Not Modified</code> and no content if the resource's entity
+     * tag still matches.
+     *
+     * @param entityTag the entity tag to send in the <code>If-None-Match</code> header. May be null to send none.
+     */
+    public void setIfNoneMatch(String entityTag)
+    {
+        this.ifNoneMatch = entityTag;
+    }
+
+    /**
+     * Specifies a modification time previously returned by the server for this retriever's URL. If specified, the
+     * request is conditional, and the server responds with <code>304 Not Modified</code> and no content if the resource
+     * has not been modified since that time.
+     *
+     * @param time the time to send in the <code>If-Modified-Since</code> header, in milliseconds since the Epoch. Zero
+     *             to send none.
+     */
+    public void setIfModifiedSince(long time)
+    {
+        this.ifModifiedSince = time;
+    }
+
+    /**
+     * Indicates the entity tag the server returned for the resource, from the response's <code>ETag</code> header.
+     *
+     * @return the resource's entity tag, or null if the server returned none.
+     */
+    public String getEntityTag()
+    {
+        return this.entityTag;
+    }
+
+    /**
+     * Indicates the modification time the server returned for the resource, from the response's
+     * <code>Last-Modified</code> header.
+     *
+     * @return the resource's modification time, in milliseconds since the Epoch, or zero if the server returned none.
+     */
+    public long getLastModified()
+    {
+        return this.lastModified;
+    }
+
+    /**
+     * Indicates whether the server responded to a conditional request that the resource has not changed. In this case
+     * the retriever has no content.
+     *
+     * @return true if the response code is <code>304 Not Modified</code>, otherwise false.
+     */
+    public boolean isNotModified()
+    {
+        return this.responseCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    @Override
+    protected URLConnection openConnection() throws IOException
+    {
+        URLConnection connection = super.openConnection();
+
+        if (this.ifNoneMatch != null)
+            connection.setRequestProperty("If-None-Match", this.ifNoneMatch);
+        if (this.ifModifiedSince > 0)
+            connection.setIfModifiedSince(this.ifModifiedSince);
+
+        return connection;
+    }
+
     protected ByteBuffer doRead(URLConnection connection) throws Exception
     {
         if (connection == null)
@@ -48,6 +123,8 @@ public class HTTPRetriever extends URLRetriever
         this.responseCode = htpc.getResponseCode();
         this.responseMessage = htpc.getResponseMessage();
         String contentType = connection.getContentType();
+        this.entityTag = connection.getHeaderField("ETag");
+        this.lastModified = connection.getLastModified();
 
         Logging.logger().log(Level.FINE, "HTTPRetriever.ResponseInfo", new Object[] {this.responseCode,
             connection.getContentLength(), contentType != null ? contentType : "content type not returned",
@@ -276,6 +276,62 @@ public abstract class AbstractTacticalSymbol extends WWObjectImpl implements Tac
         }
     }
 
+    /**
+     * A texture that draws a symbol icon from an element of a shared texture atlas. Symbols using an icon atlas bind the
+     * same OpenGL texture for every icon in the atlas, rather than one texture per icon.
+     */
+    protected static class IconAtlasTexture implements WWTexture
+    {
+        protected IconAtlasElement element;
+
+        public IconAtlasTexture(TextureAtlas atlas, IconSource source)
+        {
+            this.element = new IconAtlasElement(atlas, source);
+        }
+
+        public Object getImageSource()
+        {
+            return this.element.getImageSource();
+        }
+
+        public boolean bind(DrawContext dc)
+        {
+            return this.element.load(dc) && this.element.getTextureAtlas().bind(dc);
+        }
+
+        public void applyInternalTransform(DrawContext dc)
+        {
+            // Atlas texture coordinates are already oriented for OpenGL.
+        }
+
+        public boolean isTextureCurrent(DrawContext dc)
+        {
+            return this.element.getTextureAtlas().contains(this.element.getImageSource());
+        }
+
+        public int getWidth(DrawContext dc)
+        {
+            Dimension size = this.element.getSize();
+            return size != null ? size.width : 0;
+        }
+
+        public int getHeight(DrawContext dc)
+        {
+            Dimension size = this.element.getSize();
+            return size != null ? size.height : 0;
+        }
+
+        public TextureCoords getTexCoords()
+        {
+            return this.element.getTexCoords();
+        }
+
+        public boolean isTextureInitializationFailed()
+        {
+            return this.element.isImageInitializationFailed();
+        }
+    }
+
     protected static class Label
     {
         protected TextRenderer renderer;
@@ -567,6 +623,11 @@ public abstract class AbstractTacticalSymbol extends WWObjectImpl implements Tac
     protected WWTexture iconTexture;
     protected WWTexture activeIconTexture;
     protected TextureAtlas glyphAtlas;
+    /**
+     * Indicates the texture atlas this symbol's icon is drawn from, or <code>null</code> to draw the icon from its own
+     * texture. Initially <code>null</code>.
+     */
+    protected TextureAtlas iconAtlas;
     protected Map<String, IconAtlasElement> glyphMap = new HashMap<String, IconAtlasElement>();
     protected long maxTimeSinceLastUsed = DEFAULT_MAX_TIME_SINCE_LAST_USED;
 
@@ -974,6 +1035,32 @@ public abstract class AbstractTacticalSymbol extends WWObjectImpl implements Tac
         this.glyphAtlas = atlas;
     }
 
+    /**
+     * Indicates the texture atlas this symbol's icon is drawn from.
+     *
+     * @return the icon atlas, or <code>null</code> if the icon is drawn from its own texture.
+     *
+     * @see #setIconAtlas(gov.nasa.worldwind.util.TextureAtlas)
+     */
+    public TextureAtlas getIconAtlas()
+    {
+        return this.iconAtlas;
+    }
+
+    /**
+     * Specifies a texture atlas to draw this symbol's icon from. Symbols sharing an atlas draw their icons from a
+     * single OpenGL texture. The atlas should be configured to evict old elements when full. Specify <code>null</code>
+     * to draw the icon from its own texture.
+     *
+     * @param atlas the icon atlas, or <code>null</code> to use a separate icon texture.
+     */
+    public void setIconAtlas(TextureAtlas atlas)
+    {
+        this.iconAtlas = atlas;
+        this.iconTexture = null; // Recreate the icon texture from the new atlas during the next layout.
+        this.reset();
+    }
+
     /** {@inheritDoc} */
     public double getDistanceFromEye()
     {
@@ -1256,7 +1343,7 @@ public abstract class AbstractTacticalSymbol extends WWObjectImpl implements Tac
         // Lazily create the symbol icon texture when either the IconRetriever, the symbol ID, or the retriever
         // parameters change.
         if (this.iconTexture == null || !this.iconTexture.getImageSource().equals(source))
-            this.iconTexture = new IconTexture(source);
+            this.iconTexture = this.createIconTexture(source);
 
         // Use the currently active icon texture until the new icon texture (if any) has successfully loaded. This
         // ensures that the old icon texture continues to display until the new icon texture is ready, and avoids
@@ -1308,6 +1395,20 @@ public abstract class AbstractTacticalSymbol extends WWObjectImpl implements Tac
         }
     }
 
+    /**
+     * Creates the texture for this symbol's icon. The texture is an element of the icon atlas if one is specified,
+     * otherwise a separate texture.
+     *
+     * @param source the icon's source.
+     *
+     * @return a new icon texture.
+     */
+    protected WWTexture createIconTexture(IconSource source)
+    {
+        TextureAtlas atlas = this.getIconAtlas();
+        return atlas != null ? new IconAtlasTexture(atlas, source) : new IconTexture(source);
+    }
+
     protected AVList assembleIconRetrieverParameters(AVList params)
     {
         if (params == null)
@@ -0,0 +1,529 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.symbology;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.util.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.*;
+import java.io.File;
+import java.net.URL;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * An {@link IconRetriever} that caches the icons composed by another retriever. Composing a tactical symbol icon reads
+ * several component images and blends them together, which is expensive relative to drawing the symbol. This retriever
+ * keeps the composed icons in two tiers: a size-bounded memory cache shared by all caching retrievers, and an optional
+ * persistent tier in the World Wind data file store that survives memory cache evictions and application restarts.
+ * <p/>
+ * Icons are keyed by the wrapped retriever, the symbol identifier, and the retrieval parameters. Two caching retrievers
+ * wrapping equal retrievers therefore share cached icons. The returned images are copies of the cached images, and may
+ * be modified by the caller.
+ * <p/>
+ * The memory cache capacity is specified by the configuration value {@link AVKey#SYMBOL_ICON_CACHE_SIZE}. Icons are
+ * written to the file store as PNG images beneath {@link #FILE_STORE_PATH}, in a directory named for {@link
+ * #FILE_STORE_VERSION}. Stored icons older than the maximum file store age are composed again, so changes to the icon
+ * set at a retrieval path eventually reach the file store.
+ *
+ * @version $Id$
+ */
+public class CachingIconRetriever implements IconRetriever
+{
+    /** The memory cache key and name of the cache of composed icons shared by all caching retrievers. */
+    public static final String ICON_CACHE_KEY = CachingIconRetriever.class.getName();
+    /** The file store directory beneath which composed icons are stored. */
+    public static final String FILE_STORE_PATH = "SymbolIcons";
+    /**
+     * The version of the stored icons. Incremented when the way icons are composed or keyed changes, so that icons
+     * stored by earlier versions are not used.
+     */
+    public static final int FILE_STORE_VERSION = 1;
+    /** The default capacity of the icon memory cache, in bytes. */
+    protected static final long DEFAULT_ICON_CACHE_SIZE = 32000000L;
+    /** The default maximum age of icons in the file store, in milliseconds. */
+    protected static final long DEFAULT_MAX_FILE_STORE_AGE = 7L * 24 * 60 * 60 * 1000;
+
+    /** Key identifying a composed icon. Retrieval parameters are copied at construction so the key is immutable. */
+    protected static class IconKey
+    {
+        protected final IconRetriever retriever;
+        protected final String symbolId;
+        protected final AVList params;
+        protected final int hashCode;
+
+        public IconKey(IconRetriever retriever, String symbolId, AVList params)
+        {
+            this.retriever = retriever;
+            this.symbolId = symbolId;
+
+            if (params != null)
+            {
+                this.params = new AVListImpl();
+                this.params.setValues(params);
+            }
+            else
+            {
+                this.params = null;
+            }
+
+            int result = this.retriever.hashCode();
+            result = 31 * result + this.symbolId.hashCode();
+            result = 31 * result + (this.params != null ? this.params.getEntries().hashCode() : 0);
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (o == null || this.getClass() != o.getClass())
+                return false;
+
+            IconKey that = (IconKey) o;
+            return this.retriever.equals(that.retriever) && this.symbolId.equals(that.symbolId)
+                && (this.params != null
+                ? that.params != null && this.params.getEntries().equals(that.params.getEntries())
+                : that.params == null);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.symbolId;
+        }
+    }
+
+    protected final IconRetriever retriever;
+    protected boolean fileStoreEnabled;
+    protected long maxFileStoreAge = DEFAULT_MAX_FILE_STORE_AGE;
+
+    /**
+     * Creates a caching retriever for icons created by a specified retriever. The persistent file store tier is
+     * enabled.
+     *
+     * @param retriever the retriever that composes icons on a cache miss.
+     *
+     * @throws IllegalArgumentException if the retriever is null.
+     */
+    public CachingIconRetriever(IconRetriever retriever)
+    {
+        this(retriever, true);
+    }
+
+    /**
+     * Creates a caching retriever for icons created by a specified retriever.
+     *
+     * @param retriever        the retriever that composes icons on a cache miss.
+     * @param fileStoreEnabled true to persist composed icons in the World Wind data file store, false to cache icons
+     *                         only in memory.
+     *
+     * @throws IllegalArgumentException if the retriever is null.
+     */
+    public CachingIconRetriever(IconRetriever retriever, boolean fileStoreEnabled)
+    {
+        if (retriever == null)
+        {
+            String msg = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.retriever = retriever;
+        this.fileStoreEnabled = fileStoreEnabled;
+    }
+
+    /**
+     * Returns the retriever that composes icons on a cache miss.
+     *
+     * @return the wrapped retriever.
+     */
+    public IconRetriever getRetriever()
+    {
+        return this.retriever;
+    }
+
+    /**
+     * Indicates whether composed icons are persisted in the World Wind data file store.
+     *
+     * @return true if the file store tier is enabled, otherwise false.
+     */
+    public boolean isFileStoreEnabled()
+    {
+        return this.fileStoreEnabled;
+    }
+
+    /**
+     * Specifies whether composed icons are persisted in the World Wind data file store.
+     *
+     * @param fileStoreEnabled true to enable the file store tier, false to cache icons only in memory.
+     */
+    public void setFileStoreEnabled(boolean fileStoreEnabled)
+    {
+        this.fileStoreEnabled = fileStoreEnabled;
+    }
+
+    /**
+     * Indicates the maximum age of icons read from the file store. See {@link #setMaxFileStoreAge(long)}.
+     *
+     * @return the maximum age of stored icons, in milliseconds.
+     */
+    public long getMaxFileStoreAge()
+    {
+        return this.maxFileStoreAge;
+    }
+
+    /**
+     * Specifies the maximum age of icons read from the file store. Stored icons written longer ago than this are
+     * removed and composed again. Initially one week.
+     *
+     * @param maxFileStoreAge the maximum age of stored icons, in milliseconds.
+     *
+     * @throws IllegalArgumentException if the age is negative.
+     */
+    public void setMaxFileStoreAge(long maxFileStoreAge)
+    {
+        if (maxFileStoreAge < 0)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", "maxFileStoreAge < 0");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.maxFileStoreAge = maxFileStoreAge;
+    }
+
+    /**
+     * Returns the icon for a symbol from the memory cache or the file store, or composes it with the wrapped retriever
+     * if neither contains it. Composed icons are added to both tiers.
+     *
+     * @param symbolId Identifier for the symbol.
+     * @param params   Parameters that affect icon retrieval.
+     *
+     * @return A copy of the icon, or null if the wrapped retriever cannot create the icon.
+     */
+    public BufferedImage createIcon(String symbolId, AVList params)
+    {
+        if (symbolId == null)
+        {
+            String msg = Logging.getMessage("nullValue.SymbolCodeIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        BufferedImage image = this.getCachedIcon(new IconKey(this.retriever, symbolId, params));
+
+        return image != null ? copyImage(image) : null;
+    }
+
+    /**
+     * Composes and caches the icons for a list of symbols in parallel, so that subsequent calls to {@link
+     * #createIcon(String, gov.nasa.worldwind.avlist.AVList)} for those symbols are satisfied from the cache. This
+     * method blocks until all icons are cached. Symbols that are already cached are skipped.
+     *
+     * @param symbolIds the identifiers of the symbols to cache.
+     * @param params    Parameters that affect icon retrieval. The same parameters are used for all symbols.
+     * @param numThreads the number of threads to compose icons on.
+     *
+     * @throws IllegalArgumentException if the symbol list is null or the thread count is less than 1.
+     */
+    public void prewarm(Iterable<String> symbolIds, AVList params, int numThreads)
+    {
+        if (symbolIds == null)
+        {
+            String msg = Logging.getMessage("nullValue.IterableIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (numThreads < 1)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", "numThreads < 1");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (String symbolId : symbolIds)
+        {
+            if (symbolId == null)
+                continue;
+
+            final IconKey key = new IconKey(this.retriever, symbolId, params);
+            if (getIconCache().contains(key))
+                continue;
+
+            tasks.add(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    return getCachedIcon(key);
+                }
+            });
+        }
+
+        if (tasks.isEmpty())
+            return;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, tasks.size()));
+        try
+        {
+            executor.invokeAll(tasks);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Composes and caches the icons for a list of symbols in parallel using one thread per available processor. See
+     * {@link #prewarm(Iterable, gov.nasa.worldwind.avlist.AVList, int)}.
+     *
+     * @param symbolIds the identifiers of the symbols to cache.
+     * @param params    Parameters that affect icon retrieval. The same parameters are used for all symbols.
+     *
+     * @throws IllegalArgumentException if the symbol list is null.
+     */
+    public void prewarm(Iterable<String> symbolIds, AVList params)
+    {
+        this.prewarm(symbolIds, params, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Indicates whether this retriever is equal to another. Caching retrievers are equal if their wrapped retrievers
+     * are equal.
+     *
+     * @param o Object to compare.
+     *
+     * @return true if the object is a CachingIconRetriever wrapping an equal retriever, otherwise false.
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+            return true;
+        if (o == null || this.getClass() != o.getClass())
+            return false;
+
+        CachingIconRetriever that = (CachingIconRetriever) o;
+        return this.retriever.equals(that.retriever);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode()
+    {
+        return this.retriever.hashCode();
+    }
+
+    protected BufferedImage getCachedIcon(IconKey key)
+    {
+        MemoryCache cache = getIconCache();
+
+        BufferedImage image = (BufferedImage) cache.getObject(key);
+        if (image != null)
+            return image;
+
+        String path = this.isFileStoreEnabled() ? this.composeFileStorePath(key) : null;
+        if (path != null)
+            image = this.readIcon(path);
+
+        if (image == null)
+        {
+            image = this.retriever.createIcon(key.symbolId, key.params);
+            if (image == null)
+                return null;
+
+            if (path != null)
+                this.writeIcon(path, image);
+        }
+
+        cache.add(key, image, sizeInBytes(image));
+        return image;
+    }
+
+    /**
+     * Composes the file store path for an icon. The path is unique to the wrapped retriever, the symbol identifier and
+     * the retrieval parameters. Returns null if the icon cannot be identified in a way that is stable across sessions,
+     * in which case the icon is cached only in memory.
+     *
+     * @param key the icon's key.
+     *
+     * @return the icon's file store path, or null if the icon must not be persisted.
+     */
+    protected String composeFileStorePath(IconKey key)
+    {
+        // Only retrievers identified by a retrieval path have an identity that persists across sessions.
+        if (!(this.retriever instanceof AbstractIconRetriever))
+            return null;
+
+        StringBuilder sb = new StringBuilder(this.retriever.getClass().getName());
+        sb.append('|').append(((AbstractIconRetriever) this.retriever).getRetrieverPath());
+        if (key.params != null)
+        {
+            // Sort the parameters so the path does not depend on the parameter list's iteration order.
+            SortedMap<String, String> sorted = new TreeMap<String, String>();
+            for (Map.Entry<String, Object> entry : key.params.getEntries())
+            {
+                String value = this.formatParameterValue(entry.getValue());
+                if (value == null)
+                    return null; // The parameter has no stable text form, so cache the icon only in memory.
+
+                sorted.put(entry.getKey(), value);
+            }
+
+            for (Map.Entry<String, String> entry : sorted.entrySet())
+            {
+                sb.append('|').append(entry.getKey()).append('=').append(entry.getValue());
+            }
+        }
+
+        return WWIO.formPath(FILE_STORE_PATH, "v" + FILE_STORE_VERSION,
+            WWIO.replaceIllegalFileNameCharacters(this.retriever.getClass().getSimpleName()),
+            WWIO.replaceIllegalFileNameCharacters(key.symbolId) + "-" + Long.toHexString(hash64(sb.toString()))
+                + ".png");
+    }
+
+    /**
+     * Formats a retrieval parameter value for a file store path. Only values whose text form is the same in every
+     * session are formatted: strings, numbers, booleans, enums and colors.
+     *
+     * @param value the parameter value. May be null.
+     *
+     * @return the value's text form, or null if the value has no stable text form.
+     */
+    protected String formatParameterValue(Object value)
+    {
+        if (value == null)
+            return "null";
+        else if (value instanceof String)
+            return "s:" + value;
+        else if (value instanceof Boolean)
+            return "b:" + value;
+        else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+            return "i:" + ((Number) value).longValue();
+        else if (value instanceof Double || value instanceof Float)
+            return "d:" + Double.toString(((Number) value).doubleValue());
+        else if (value instanceof Enum)
+            return "e:" + ((Enum) value).getDeclaringClass().getName() + "." + ((Enum) value).name();
+        else if (value instanceof Color)
+            return "c:" + Integer.toHexString(((Color) value).getRGB());
+        else
+            return null;
+    }
+
+    protected BufferedImage readIcon(String path)
+    {
+        URL url = WorldWind.getDataFileStore().findFile(path, false);
+        if (url == null)
+            return null;
+
+        if (WWIO.isFileOutOfDate(url, System.currentTimeMillis() - this.getMaxFileStoreAge()))
+        {
+            // The icon has expired. Delete it.
+            WorldWind.getDataFileStore().removeFile(url);
+            String msg = Logging.getMessage("generic.DataFileExpired", url);
+            Logging.logger().fine(msg);
+            return null;
+        }
+
+        try
+        {
+            return ImageIO.read(url);
+        }
+        catch (Exception e)
+        {
+            String msg = Logging.getMessage("generic.ExceptionAttemptingToReadImageFile", url);
+            Logging.logger().log(java.util.logging.Level.WARNING, msg, e);
+            return null;
+        }
+    }
+
+    protected void writeIcon(String path, BufferedImage image)
+    {
+        File file = WorldWind.getDataFileStore().newFile(path);
+        if (file == null)
+            return;
+
+        try
+        {
+            // Write to a temporary file and rename it, so concurrent readers never see a partially written icon.
+            File tmpFile = new File(file.getPath() + ".tmp" + Thread.currentThread().getId());
+            if (ImageIO.write(image, "png", tmpFile) && !tmpFile.renameTo(file))
+                tmpFile.delete();
+        }
+        catch (Exception e)
+        {
+            String msg = Logging.getMessage("generic.ExceptionAttemptingToWriteTo", file);
+            Logging.logger().log(java.util.logging.Level.WARNING, msg, e);
+        }
+    }
+
+    /**
+     * Returns the memory cache of composed icons shared by all caching retrievers, creating it if necessary.
+     *
+     * @return the icon memory cache.
+     */
+    protected static MemoryCache getIconCache()
+    {
+        MemoryCacheSet cacheSet = WorldWind.getMemoryCacheSet();
+        synchronized (cacheSet)
+        {
+            if (!cacheSet.containsCache(ICON_CACHE_KEY))
+            {
+                long size = Configuration.getLongValue(AVKey.SYMBOL_ICON_CACHE_SIZE, DEFAULT_ICON_CACHE_SIZE);
+                MemoryCache cache = new BasicMemoryCache((long) (0.8 * size), size);
+                cache.setName("Tactical Symbol Icons");
+                cacheSet.addCache(ICON_CACHE_KEY, cache);
+            }
+
+            return cacheSet.getCache(ICON_CACHE_KEY);
+        }
+    }
+
+    protected static long sizeInBytes(BufferedImage image)
+    {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    protected static BufferedImage copyImage(BufferedImage image)
+    {
+        ColorModel cm = image.getColorModel();
+        WritableRaster raster = image.copyData(image.getRaster().createCompatibleWritableRaster());
+        return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+    }
+
+    /** Computes a 64-bit FNV-1a hash of a string, used to form file names that are stable across sessions. */
+    protected static long hash64(String s)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++)
+        {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+
+        return h;
+    }
+}
@@ -131,10 +131,11 @@ public class MilStd2525TacticalSymbol extends AbstractTacticalSymbol
             this.modifiers.setValues(modifiers);
 
         // Configure this tactical symbol's icon retriever and modifier retriever with either the configuration value or
-        // the default value (in that order of precedence).
+        // the default value (in that order of precedence). Composed icons are cached and shared among all symbols using
+        // the same retriever path.
         String iconRetrieverPath = Configuration.getStringValue(AVKey.MIL_STD_2525_ICON_RETRIEVER_PATH,
             MilStd2525Constants.DEFAULT_ICON_RETRIEVER_PATH);
-        this.setIconRetriever(new MilStd2525IconRetriever(iconRetrieverPath));
+        this.setIconRetriever(new CachingIconRetriever(new MilStd2525IconRetriever(iconRetrieverPath)));
         this.setModifierRetriever(new MilStd2525ModifierRetriever(iconRetrieverPath));
 
         // By default, do not show the hostile indicator (the letters "ENY"). Note that this default is different from
@@ -58,6 +58,8 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
     protected String elevationDataByteOrder = AVKey.LITTLE_ENDIAN;
     protected double detailHint = 0.0;
     protected final Object fileLock = new Object();
+    protected TilePack tilePack;
+    protected boolean tilePackResolved;
     protected java.util.concurrent.ConcurrentHashMap<TileKey, ElevationTile> levelZeroTiles =
         new java.util.concurrent.ConcurrentHashMap<TileKey, ElevationTile>();
     protected MemoryCache memoryCache;
@@ -217,7 +219,7 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         else
         {
             long size = Configuration.getLongValue(AVKey.ELEVATION_TILE_CACHE_SIZE, 5000000L);
-            MemoryCache mc = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache mc = new LongKeyMemoryCache((long) (0.85 * size), size);
             mc.setName("Elevation Tiles");
             WorldWind.getMemoryCacheSet().addCache(cacheName, mc);
             return mc;
@@ -410,6 +412,13 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
                     return;
 
                 ElevationTile tile = this.elevationModel.createTile(this.tileKey);
+                if (this.elevationModel.loadElevationsFromTilePack(tile))
+                {
+                    this.elevationModel.levels.unmarkResourceAbsent(tile);
+                    this.elevationModel.firePropertyChange(AVKey.ELEVATION_MODEL, null, this);
+                    return;
+                }
+
                 final URL url = this.elevationModel.getDataFileStore().findFile(tile.getPath(), false);
                 if (url != null && !this.elevationModel.isFileExpired(tile, url,
                     this.elevationModel.getDataFileStore()))
@@ -493,6 +502,70 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         return true;
     }
 
+    /**
+     * Returns the tile pack holding this elevation model's tiles in its data file store, if there is one. The file store
+     * is searched for a pack the first time this method is called; a pack created later is found when the elevation
+     * model is next created.
+     *
+     * @return this elevation model's tile pack, or null if its tiles are stored in individual files.
+     *
+     * @see TilePack#getTilePack(FileStore, LevelSet)
+     */
+    protected synchronized TilePack getTilePack()
+    {
+        if (!this.tilePackResolved)
+        {
+            this.tilePack = TilePack.getTilePack(this.getDataFileStore(), this.getLevels());
+            this.tilePackResolved = true;
+        }
+
+        return this.tilePack;
+    }
+
+    /**
+     * Reads a tile's elevations from this elevation model's tile pack and adds the tile to the memory cache. Expired
+     * and unreadable tiles are removed from the pack.
+     *
+     * @param tile the tile to load.
+     *
+     * @return true if the elevations were loaded, false if there is no tile pack or it doesn't contain a usable tile.
+     *
+     * @throws IOException if an error occurs while reading the tile pack.
+     */
+    protected boolean loadElevationsFromTilePack(ElevationTile tile) throws IOException
+    {
+        TilePack pack = this.getTilePack();
+        if (pack == null)
+            return false;
+
+        TilePack.Entry entry = pack.read(tile.getTileKey());
+        if (entry == null)
+            return false;
+
+        if (entry.getLastModified() < tile.getLevel().getExpiryTime())
+        {
+            pack.remove(tile.getTileKey());
+            String message = Logging.getMessage("generic.DataFileExpired", tile.getPath());
+            Logging.logger().fine(message);
+            return false;
+        }
+
+        BufferWrapper elevations = this.readElevations(entry.getBuffer());
+        if (elevations == null || elevations.length() == 0)
+        {
+            // Assume that something's wrong with the tile and remove it.
+            pack.remove(tile.getTileKey());
+            String message = Logging.getMessage("generic.DeletedCorruptDataFile", tile.getPath());
+            Logging.logger().info(message);
+            return false;
+        }
+
+        tile.setElevations(elevations);
+        this.addTileToCache(tile, elevations);
+
+        return true;
+    }
+
     protected void addTileToCache(ElevationTile tile, BufferWrapper elevations)
     {
         // Level 0 tiles are held in the model itself; other levels are placed in the memory cache.
@@ -520,6 +593,62 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             return (ElevationTile) this.getMemoryCache().getObject(tileKey);
     }
 
+    /**
+     * Returns the tile at a level, row and column if it's in memory. When the memory cache is keyed by packed tile keys
+     * this finds the tile without allocating a tile key.
+     *
+     * @param level the tile's level.
+     * @param row   the tile's row.
+     * @param col   the tile's column.
+     *
+     * @return the tile, or null if it's not in memory.
+     */
+    protected ElevationTile getTileFromMemory(Level level, int row, int col)
+    {
+        MemoryCache cache = this.getMemoryCache();
+        if (level.getLevelNumber() != 0 && cache instanceof LongKeyMemoryCache)
+        {
+            long key = PackedTileKey.pack(level.getCacheName(), level.getLevelNumber(), row, col);
+            if (key != PackedTileKey.NONE)
+                return (ElevationTile) ((LongKeyMemoryCache) cache).getObject(key);
+        }
+
+        return this.getTileFromMemory(new TileKey(level.getLevelNumber(), row, col, level.getCacheName()));
+    }
+
+    /**
+     * Returns the elevations of a tile if the tile is in memory, and otherwise requests the tile. The elevations are in
+     * row-major order, starting with the row at the tile's maximum latitude, and span the tile's sector inclusively:
+     * the first and last rows and columns lie on the sector's edges, so adjacent tiles of the same level share the
+     * elevations along their common edge. Elevations equal to the model's missing data signal have no data.
+     *
+     * @param key the key of the tile.
+     *
+     * @return the tile's elevations, or null if the tile is not in memory.
+     *
+     * @throws IllegalArgumentException if the key is null.
+     */
+    public BufferWrapper getTileElevations(TileKey key)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        ElevationTile tile = this.getTileFromMemory(key);
+        if (tile == null || tile.getElevations() == null)
+        {
+            this.requestTile(key);
+            return null;
+        }
+
+        this.checkElevationExpiration(tile);
+
+        return tile.getElevations();
+    }
+
     // Read elevations from the file cache. Don't be confused by the use of a URL here: it's used so that files can
     // be read using System.getResource(URL), which will draw the data from a jar file in the classpath.
 
@@ -533,11 +662,7 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
                 byteBuffer = WWIO.readURLContentToBuffer(url);
             }
 
-            // Setup parameters to instruct BufferWrapper on how to interpret the ByteBuffer.
-            AVList bufferParams = new AVListImpl();
-            bufferParams.setValue(AVKey.DATA_TYPE, this.elevationDataType);
-            bufferParams.setValue(AVKey.BYTE_ORDER, this.elevationDataByteOrder);
-            return BufferWrapper.wrap(byteBuffer, bufferParams);
+            return this.readElevations(byteBuffer);
         }
         catch (java.io.IOException e)
         {
@@ -547,6 +672,15 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         }
     }
 
+    protected BufferWrapper readElevations(ByteBuffer byteBuffer)
+    {
+        // Setup parameters to instruct BufferWrapper on how to interpret the ByteBuffer.
+        AVList bufferParams = new AVListImpl();
+        bufferParams.setValue(AVKey.DATA_TYPE, this.elevationDataType);
+        bufferParams.setValue(AVKey.BYTE_ORDER, this.elevationDataByteOrder);
+        return BufferWrapper.wrap(byteBuffer, bufferParams);
+    }
+
     protected static ByteBuffer convertImageToElevations(ByteBuffer buffer, String contentType) throws IOException
     {
         File tempFile = File.createTempFile("wwj-", WWIO.makeSuffixForMimeType(contentType));
@@ -822,6 +956,29 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             return this.getFileStore().newFile(this.tile.getPath());
         }
 
+        /**
+         * Saves the retrieved data to the elevation model's tile pack if the model has one and the data is destined for
+         * the model's own file store, otherwise saves it to a file.
+         *
+         * @param buffer the buffer to save.
+         *
+         * @return true if the buffer was saved, otherwise false.
+         *
+         * @throws IOException if an IO error occurred when attempting to save the buffer.
+         */
+        @Override
+        protected boolean saveBuffer(ByteBuffer buffer) throws IOException
+        {
+            TilePack pack = this.fileStore == null ? this.elevationModel.getTilePack() : null;
+            if (pack == null)
+                return super.saveBuffer(buffer);
+
+            String suffix = this.tile.getLevel().getFormatSuffix();
+            pack.write(this.tile.getTileKey(), suffix != null ? suffix : "",
+                buffer != null ? buffer : this.getRetriever().getBuffer());
+            return true;
+        }
+
         @Override
         protected ByteBuffer handleSuccessfulRetrieval()
         {
@@ -994,24 +1151,25 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             return this.getMissingDataSignal();
 
         Level lastLevel = this.levels.getLastLevel(latitude, longitude);
-        final TileKey tileKey = new TileKey(latitude, longitude, this.levels, lastLevel.getLevelNumber());
-        ElevationTile tile = this.getTileFromMemory(tileKey);
+        LatLon origin = this.levels.getTileOrigin();
+        int row = Tile.computeRow(lastLevel.getTileDelta().getLatitude(), latitude, origin.getLatitude());
+        int col = Tile.computeColumn(lastLevel.getTileDelta().getLongitude(), longitude, origin.getLongitude());
+        ElevationTile tile = this.getTileFromMemory(lastLevel, row, col);
 
         if (tile == null)
         {
-            int fallbackRow = tileKey.getRow();
-            int fallbackCol = tileKey.getColumn();
-            for (int fallbackLevelNum = tileKey.getLevelNumber() - 1; fallbackLevelNum >= 0; fallbackLevelNum--)
+            int fallbackRow = row;
+            int fallbackCol = col;
+            for (int fallbackLevelNum = lastLevel.getLevelNumber() - 1; fallbackLevelNum >= 0; fallbackLevelNum--)
             {
                 fallbackRow /= 2;
                 fallbackCol /= 2;
 
-                if (this.levels.getLevel(fallbackLevelNum).isEmpty()) // everything lower res is empty
+                Level fallbackLevel = this.levels.getLevel(fallbackLevelNum);
+                if (fallbackLevel.isEmpty()) // everything lower res is empty
                     return this.getExtremeElevations(latitude, longitude)[0];
 
-                TileKey fallbackKey = new TileKey(fallbackLevelNum, fallbackRow, fallbackCol,
-                    this.levels.getLevel(fallbackLevelNum).getCacheName());
-                tile = this.getTileFromMemory(fallbackKey);
+                tile = this.getTileFromMemory(fallbackLevel, fallbackRow, fallbackCol);
                 if (tile != null)
                     break;
             }
@@ -1545,8 +1703,7 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         {
             for (int col = nwCol; col <= seCol; col++)
             {
-                TileKey key = new TileKey(targetLevel.getLevelNumber(), row, col, targetLevel.getCacheName());
-                ElevationTile tile = this.getTileFromMemory(key);
+                ElevationTile tile = this.getTileFromMemory(targetLevel, row, col);
                 if (tile != null)
                 {
                     tiles.add(tile);
@@ -1554,23 +1711,24 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
                 }
 
                 missingTargetTiles = true;
-                this.requestTile(key);
+                this.requestTile(new TileKey(targetLevel.getLevelNumber(), row, col, targetLevel.getCacheName()));
 
                 // Determine the fallback to use. Simultaneously determine a fallback to request that is
                 // the next resolution higher than the fallback chosen, if any. This will progressively
-                // refine the display until the desired resolution tile arrives.
-                TileKey fallbackToRequest = null;
-                TileKey fallbackKey;
+                // refine the display until the desired resolution tile arrives. The key of the tile to request is
+                // created only once the search ends, to avoid allocating a key for every level searched.
+                int fallbackRequestLevel = -1;
+                int fallbackRequestRow = 0;
+                int fallbackRequestCol = 0;
                 int fallbackRow = row;
                 int fallbackCol = col;
-                for (int fallbackLevelNum = key.getLevelNumber() - 1; fallbackLevelNum >= 0; fallbackLevelNum--)
+                for (int fallbackLevelNum = targetLevel.getLevelNumber() - 1; fallbackLevelNum >= 0;
+                    fallbackLevelNum--)
                 {
                     fallbackRow /= 2;
                     fallbackCol /= 2;
-                    fallbackKey = new TileKey(fallbackLevelNum, fallbackRow, fallbackCol,
-                        this.levels.getLevel(fallbackLevelNum).getCacheName());
 
-                    tile = this.getTileFromMemory(fallbackKey);
+                    tile = this.getTileFromMemory(this.levels.getLevel(fallbackLevelNum), fallbackRow, fallbackCol);
                     if (tile != null)
                     {
                         if (!tiles.contains(tile))
@@ -1583,12 +1741,16 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
                     {
                         if (fallbackLevelNum == 0)
                             missingLevelZeroTiles = true;
-                        fallbackToRequest = fallbackKey; // keep track of lowest level to request
+                        fallbackRequestLevel = fallbackLevelNum; // keep track of lowest level to request
+                        fallbackRequestRow = fallbackRow;
+                        fallbackRequestCol = fallbackCol;
                     }
                 }
 
-                if (fallbackToRequest != null)
+                if (fallbackRequestLevel >= 0)
                 {
+                    TileKey fallbackToRequest = new TileKey(fallbackRequestLevel, fallbackRequestRow,
+                        fallbackRequestCol, this.levels.getLevel(fallbackRequestLevel).getCacheName());
                     if (!requested.contains(fallbackToRequest))
                     {
                         this.requestTile(fallbackToRequest);
@@ -2534,6 +2696,10 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         if (this.getLevels().isResourceAbsent(tile))
             return true;  // tile is absent
 
+        TilePack pack = this.getTilePack();
+        if (pack != null && pack.contains(tile.getTileKey()))
+            return true;
+
         URL url = this.getDataFileStore().findFile(tile.getPath(), false);
 
         return url != null && !this.isFileExpired(tile, url, this.getDataFileStore());
@@ -6,9 +6,8 @@
 
 package gov.nasa.worldwind.terrain;
 
-import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.avlist.AVKey;
-import gov.nasa.worldwind.cache.FileStore;
+import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.event.*;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.retrieve.*;
@@ -36,7 +35,7 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
     protected final BasicElevationModel elevationModel;
     protected final int level;
 
-    protected ArrayList<Tile> missingTiles;
+    protected BulkDownloadEngine<Tile> engine;
 
     /**
      * Constructs a downloader to retrieve elevations not currently available in the World Wind file cache.
@@ -93,31 +92,40 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
             this.progress.setTotalCount(this.estimateMissingTilesCount(20));
             this.progress.setTotalSize(this.progress.getTotalCount() * estimateAverageTileSize());
 
-            // Determine and request missing tiles by level/region
-            for (int levelNumber = 0; levelNumber <= this.level; levelNumber++)
+            this.engine = this.createEngine();
+            this.engine.start();
+            try
             {
-                if (elevationModel.getLevels().isLevelEmpty(levelNumber))
-                    continue;
-
-                int div = this.computeRegionDivisions(this.sector, levelNumber, MAX_TILE_COUNT_PER_REGION);
-                Iterator<Sector> regionsIterator = this.getRegionIterator(this.sector, div);
-
-                Sector region;
-                while (regionsIterator.hasNext())
+                // Feed the tiles to the engine level by level and region by region. The engine checks which are
+                // missing and retrieves them, blocking here while its pipeline is full.
+                for (int levelNumber = 0; levelNumber <= this.level; levelNumber++)
                 {
-                    region = regionsIterator.next();
-                    // Determine missing tiles
-                    this.missingTiles = getMissingTilesInSector(region, levelNumber);
+                    if (elevationModel.getLevels().isLevelEmpty(levelNumber))
+                        continue;
+
+                    int div = this.computeRegionDivisions(this.sector, levelNumber, MAX_TILE_COUNT_PER_REGION);
+                    Iterator<Sector> regionsIterator = this.getRegionIterator(this.sector, div);
 
-                    // Submit missing tiles requests at intervals
-                    while (this.missingTiles.size() > 0)
+                    while (regionsIterator.hasNext())
                     {
-                        submitMissingTilesRequests();
-                        if (this.missingTiles.size() > 0)
-                            Thread.sleep(RETRIEVAL_SERVICE_POLL_DELAY);
+                        Tile[][] tileArray = this.getTilesInSector(regionsIterator.next(), levelNumber);
+                        for (Tile[] row : tileArray)
+                        {
+                            for (Tile tile : row)
+                            {
+                                this.engine.addTile(tile);
+                            }
+                        }
                     }
                 }
+
+                this.engine.finish();
             }
+            finally
+            {
+                this.engine.stop();
+            }
+
             // Set progress to 100%
             this.progress.setTotalCount(this.progress.getCurrentCount());
             this.progress.setTotalSize(this.progress.getCurrentSize());
@@ -135,48 +143,48 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
         }
     }
 
-//    protected int countMissingTiles() throws InterruptedException
-//    {
-//        int count = 0;
-//        for (int levelNumber = 0; levelNumber <= this.level; levelNumber++)
-//        {
-//            if (this.elevationModel.getLevels().isLevelEmpty(levelNumber))
-//                continue;
-//
-//            count += getMissingTilesInSector(this.sector, levelNumber).size();
-//        }
-//
-//        return count;
-//    }
-
-    protected synchronized void submitMissingTilesRequests() throws InterruptedException
+    /**
+     * Creates the engine that retrieves the missing tiles. The engine's journal is kept in the elevation model's cache
+     * directory in the file store, so an interrupted download of the same sector and resolution resumes where it
+     * stopped.
+     *
+     * @return the bulk download engine.
+     */
+    protected BulkDownloadEngine<Tile> createEngine()
     {
-        RetrievalService rs = WorldWind.getRetrievalService();
-        int i = 0;
-        while (this.missingTiles.size() > i && rs.isAvailable())
+        Level firstLevel = this.elevationModel.getLevels().getFirstLevel();
+        File directory = new File(this.fileStore.getWriteLocation(), firstLevel.getCacheName());
+        final String host = BulkDownloadEngine.getHost(firstLevel.getService());
+
+        return new BulkDownloadEngine<Tile>(this.progress, this.estimateAverageTileSize(),
+            BulkDownloadEngine.getJournalFile(directory, this.sector, this.resolution))
         {
-            Thread.sleep(1); // generates InterruptedException if thread has been interrupted
+            protected boolean isTileAbsent(Tile tile)
+            {
+                return elevationModel.getLevels().isResourceAbsent(tile);
+            }
 
-            Tile tile = this.missingTiles.get(i);
+            protected boolean isTileLocal(Tile tile)
+            {
+                return BasicElevationModelBulkDownloader.this.isTileLocal(tile);
+            }
 
-            if (this.elevationModel.getLevels().isResourceAbsent(tile))
+            protected void retrieveTile(Tile tile)
             {
-                removeAbsentTile(tile);  // tile is absent, count it off.
-                continue;
+                elevationModel.downloadElevations(tile,
+                    new BulkDownloadPostProcessor(tile, elevationModel, fileStore));
             }
 
-            URL url = this.fileStore.findFile(tile.getPath(), false);
-            if (url != null)
+            protected TileKey getTileKey(Tile tile)
             {
-                // tile has been retrieved and is local now, count it as retrieved.
-                removeRetrievedTile(tile);
-                continue;
+                return tile.getTileKey();
             }
 
-            this.elevationModel.downloadElevations(tile,
-                new BulkDownloadPostProcessor(tile, this.elevationModel, this.fileStore));
-            i++;
-        }
+            protected String getTileHost(Tile tile)
+            {
+                return host;
+            }
+        };
     }
 
     protected class BulkDownloadPostProcessor extends BasicElevationModel.DownloadPostProcessor
@@ -190,8 +198,7 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
         {
             ByteBuffer buffer = super.run(retriever);
 
-            if (retriever.getState().equals(Retriever.RETRIEVER_STATE_SUCCESSFUL))
-                removeRetrievedTile(this.tile);
+            engine.retrievalCompleted(this.tile, retriever);
 
             if (hasRetrievalListeners())
                 callRetrievalListeners(retriever, this.tile);
@@ -207,35 +214,6 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
         super.callRetrievalListeners(new BulkRetrievalEvent(this.elevationModel, eventType, tile.getPath()));
     }
 
-    protected synchronized void removeRetrievedTile(Tile tile)
-    {
-        this.missingTiles.remove(tile);
-        // Update progress
-        this.progress.setCurrentCount(this.progress.getCurrentCount() + 1);
-        this.progress.setCurrentSize(this.progress.getCurrentSize() + estimateAverageTileSize());
-        this.progress.setLastUpdateTime(System.currentTimeMillis());
-        this.normalizeProgress();
-    }
-
-    protected synchronized void removeAbsentTile(Tile tile)
-    {
-        this.missingTiles.remove(tile);
-        // Decrease progress expected total count and size
-        this.progress.setTotalCount(this.progress.getTotalCount() - 1);
-        this.progress.setTotalSize(this.progress.getTotalSize() - estimateAverageTileSize());
-        this.progress.setLastUpdateTime(System.currentTimeMillis());
-        this.normalizeProgress();
-    }
-
-    protected void normalizeProgress()
-    {
-        if (this.progress.getTotalCount() < this.progress.getCurrentCount())
-        {
-            this.progress.setTotalCount(this.progress.getCurrentCount());
-            this.progress.setTotalSize(this.progress.getCurrentSize());
-        }
-    }
-
     protected long getEstimatedMissingDataSize()
     {
         // Get missing tiles count estimate
@@ -496,7 +474,8 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
         {
             for (Tile tile : row)
             {
-                Thread.sleep(1); // generates InterruptedException if thread has been interrupted
+                if (Thread.currentThread().isInterrupted())
+                    throw new InterruptedException();
 
                 if (tile == null)
                     continue;
@@ -600,6 +579,18 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
         if (this.elevationModel.getLevels().isResourceAbsent(tile))
             return true;  // tile is absent
 
+        return this.isTileLocal(tile);
+    }
+
+    protected boolean isTileLocal(Tile tile)
+    {
+        if (this.fileStore == this.elevationModel.getDataFileStore())
+        {
+            TilePack pack = this.elevationModel.getTilePack();
+            if (pack != null && pack.contains(tile.getTileKey()))
+                return true;
+        }
+
         URL url = this.fileStore.findFile(tile.getPath(), false);
 
         return url != null && !this.elevationModel.isFileExpired(tile, url, this.fileStore);
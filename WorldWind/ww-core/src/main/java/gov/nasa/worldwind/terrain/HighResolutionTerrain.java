@@ -1086,10 +1086,7 @@ public class HighResolutionTerrain extends WWObjectImpl implements Terrain
         double l = createPosition(column, leftDecimal, tile.ri.density);
         double h = createPosition(row, bottomDecimal, tile.ri.density);
 
-        Vec4 result = interpolate(row, column, l, h, tile.ri);
-        result = result.add3(tile.ri.referenceCenter);
-
-        return result;
+        return interpolate(row, column, l, h, tile.ri, tile.ri.referenceCenter);
     }
 
     protected static double createPosition(int start, double decimal, int density)
@@ -1102,25 +1099,47 @@ public class HighResolutionTerrain extends WWObjectImpl implements Terrain
 
     protected static Vec4 interpolate(int row, int column, double xDec, double yDec, RenderInfo ri)
     {
-        int numVerticesPerEdge = ri.density + 1;
-
-        int bottomLeft = row * numVerticesPerEdge + column;
-
-        bottomLeft *= 3;
-
-        int numVertsTimesThree = numVerticesPerEdge * 3;
+        return interpolate(row, column, xDec, yDec, ri, null);
+    }
 
-        int i = bottomLeft;
-        Vec4 bL = new Vec4(ri.vertices[i++], ri.vertices[i++], ri.vertices[i++]);
-        Vec4 bR = new Vec4(ri.vertices[i++], ri.vertices[i++], ri.vertices[i]);
+    /**
+     * Interpolates a point within a tile's vertex grid and adds an offset to it, computing one coordinate at a time so
+     * that only the returned point is created.
+     *
+     * @param row    the row of the grid cell's bottom left vertex.
+     * @param column the column of the grid cell's bottom left vertex.
+     * @param xDec   the point's horizontal position within the cell, in [0,1].
+     * @param yDec   the point's vertical position within the cell, in [0,1].
+     * @param ri     the tile's render info.
+     * @param offset the offset to add to the interpolated point, typically the tile's reference center. May be null.
+     *
+     * @return the interpolated point plus the offset.
+     */
+    protected static Vec4 interpolate(int row, int column, double xDec, double yDec, RenderInfo ri, Vec4 offset)
+    {
+        int numVerticesPerEdge = ri.density + 1;
+        int bL = 3 * (row * numVerticesPerEdge + column);
+        int bR = bL + 3;
+        int tL = bL + 3 * numVerticesPerEdge;
+        int tR = tL + 3;
 
-        bottomLeft += numVertsTimesThree;
+        float[] v = ri.vertices;
+        double x = interpolate(v[bL], v[bR], v[tR], v[tL], xDec, yDec);
+        double y = interpolate(v[bL + 1], v[bR + 1], v[tR + 1], v[tL + 1], xDec, yDec);
+        double z = interpolate(v[bL + 2], v[bR + 2], v[tR + 2], v[tL + 2], xDec, yDec);
 
-        i = bottomLeft;
-        Vec4 tL = new Vec4(ri.vertices[i++], ri.vertices[i++], ri.vertices[i++]);
-        Vec4 tR = new Vec4(ri.vertices[i++], ri.vertices[i++], ri.vertices[i]);
+        return offset != null ? new Vec4(x + offset.x, y + offset.y, z + offset.z) : new Vec4(x, y, z);
+    }
 
-        return interpolate(bL, bR, tR, tL, xDec, yDec);
+    protected static double interpolate(double bL, double bR, double tR, double tL, double xDec, double yDec)
+    {
+        double pos = xDec + yDec;
+        if (pos == 1) // on the diagonal
+            return tL * yDec + bR * xDec;
+        else if (pos > 1) // in the "top right" half
+            return tR + (tL - tR) * (1 - xDec) + (bR - tR) * (1 - yDec);
+        else // in the "bottom left" half
+            return bL + (bR - bL) * xDec + (tL - bL) * yDec;
     }
 
     protected static Vec4 interpolate(Vec4 bL, Vec4 bR, Vec4 tR, Vec4 tL, double xDec, double yDec)
@@ -37,6 +37,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         protected final FloatBuffer texCoords;
         protected final IntBuffer indices;
         protected long time;
+        protected Object globeStateKey;
         protected Object vboCacheKey = new Object();
         protected boolean isVboBound = false;
 
@@ -399,6 +400,10 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
     protected Globe globe;
     protected int density = DEFAULT_DENSITY;
     protected long updateFrequency = 2000; // milliseconds
+    // Names this tessellator's tiles in the geometry cache, which is shared by all tessellators. Lazily initialized in
+    // getTileCacheName.
+    protected String tileCacheName;
+    protected Object currentGlobeStateKey;
 
     public SectorGeometryList tessellate(DrawContext dc)
     {
@@ -419,7 +424,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         if (!WorldWind.getMemoryCacheSet().containsCache(CACHE_ID))
         {
             long size = Configuration.getLongValue(AVKey.SECTOR_GEOMETRY_CACHE_SIZE, 10000000L);
-            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache cache = new LongKeyMemoryCache((long) (0.85 * size), size);
             cache.setName(CACHE_NAME);
             WorldWind.getMemoryCacheSet().addCache(CACHE_ID, cache);
         }
@@ -441,9 +446,18 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
 
         this.currentTiles.setSector(this.currentCoverage);
 
-        for (SectorGeometry tile : this.currentTiles)
+        // The globe's state key is the same for every tile, so get it once rather than once per tile.
+        this.currentGlobeStateKey = dc.getGlobe().getStateKey(dc);
+        try
+        {
+            for (SectorGeometry tile : this.currentTiles)
+            {
+                this.makeVerts(dc, (RectTile) tile);
+            }
+        }
+        finally
         {
-            this.makeVerts(dc, (RectTile) tile);
+            this.currentGlobeStateKey = null;
         }
 
         return this.currentTiles;
@@ -595,19 +609,78 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         return new CacheKey(dc, tile.sector, tile.density);
     }
 
+    /**
+     * Computes the packed key identifying a tile's vertices in the geometry cache. The key identifies the tile's level,
+     * row and column within this tessellator, but not the globe state or the tile's density, which are checked against
+     * the cached vertices when they're found.
+     *
+     * @param tile the tile.
+     *
+     * @return the packed key, or {@link PackedTileKey#NONE} if the tile can't be identified by a packed key.
+     */
+    protected long createPackedCacheKey(RectTile tile)
+    {
+        double deltaLat = 180d / this.numLevel0LatSubdivisions / (1L << Math.min(tile.level, 62));
+        double deltaLon = 360d / this.numLevel0LonSubdivisions / (1L << Math.min(tile.level, 62));
+        int row = (int) Math.round((tile.sector.getMinLatitude().degrees + 90d) / deltaLat);
+        int col = (int) Math.round((tile.sector.getMinLongitude().degrees + 180d) / deltaLon);
+
+        return PackedTileKey.pack(this.getTileCacheName(), tile.level, row, col);
+    }
+
+    /**
+     * Returns the name identifying this tessellator's tiles in the geometry cache. Tessellators with the same level 0
+     * subdivisions create the same tiles, so they share a name and the vertices cached for those tiles. The vertices
+     * are checked against the current globe state and tile density when they're found, as they were when the geometry
+     * cache was keyed by sector.
+     *
+     * @return this tessellator's tile cache name.
+     */
+    protected String getTileCacheName()
+    {
+        if (this.tileCacheName == null)
+            this.tileCacheName = CACHE_ID + "/" + this.numLevel0LatSubdivisions + "x" + this.numLevel0LonSubdivisions;
+
+        return this.tileCacheName;
+    }
+
     protected void makeVerts(DrawContext dc, RectTile tile)
     {
         // First see if the vertices have been previously computed and are in the cache. Since the elevation model
         // contents can change between frames, regenerate and re-cache vertices every second.
         // TODO: Go back to event-generated geometry re-computation.
         MemoryCache cache = WorldWind.getMemoryCache(CACHE_ID);
-        CacheKey cacheKey = this.createCacheKey(dc, tile);
-        tile.ri = (RenderInfo) cache.getObject(cacheKey);
+        long packedKey = cache instanceof LongKeyMemoryCache ? this.createPackedCacheKey(tile) : PackedTileKey.NONE;
+        if (packedKey == PackedTileKey.NONE)
+        {
+            CacheKey cacheKey = this.createCacheKey(dc, tile);
+            tile.ri = (RenderInfo) cache.getObject(cacheKey);
+            if (tile.ri != null && tile.ri.time >= System.currentTimeMillis() - this.getUpdateFrequency())
+                return;
+
+            if (this.buildVerts(dc, tile, this.makeTileSkirts))
+                cache.add(cacheKey, tile.ri, tile.ri.getSizeInBytes());
+
+            return;
+        }
+
+        Object globeStateKey = this.currentGlobeStateKey != null
+            ? this.currentGlobeStateKey : dc.getGlobe().getStateKey(dc);
+
+        // Vertices cached for another globe state or density are out of date. Rebuild them in place of the cached ones.
+        tile.ri = (RenderInfo) ((LongKeyMemoryCache) cache).getObject(packedKey);
+        if (tile.ri != null && (tile.ri.density != tile.density
+            || (globeStateKey != null ? !globeStateKey.equals(tile.ri.globeStateKey) : tile.ri.globeStateKey != null)))
+            tile.ri = null;
+
         if (tile.ri != null && tile.ri.time >= System.currentTimeMillis() - this.getUpdateFrequency())
             return;
 
         if (this.buildVerts(dc, tile, this.makeTileSkirts))
-            cache.add(cacheKey, tile.ri, tile.ri.getSizeInBytes());
+        {
+            tile.ri.globeStateKey = globeStateKey;
+            ((LongKeyMemoryCache) cache).add(packedKey, tile.ri, tile.ri.getSizeInBytes());
+        }
     }
 
     public boolean buildVerts(DrawContext dc, RectTile tile, boolean makeSkirts)
@@ -1629,10 +1702,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         double l = createPosition(column, leftDecimal, tile.ri.density);
         double h = createPosition(row, bottomDecimal, tile.ri.density);
 
-        Vec4 result = interpolate(row, column, l, h, tile.ri);
-        result = result.add3(tile.ri.referenceCenter);
-
-        return result;
+        return interpolate(row, column, l, h, tile.ri, tile.ri.referenceCenter);
     }
 
     /**
@@ -1671,35 +1741,61 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
      */
     protected static Vec4 interpolate(int row, int column, double xDec, double yDec, RenderInfo ri)
     {
-        row++;
-        column++;
+        return interpolate(row, column, xDec, yDec, ri, null);
+    }
 
+    /**
+     * Calculates a <code>Point</code> as {@link #interpolate(int, int, double, double, RenderInfo)} does, and adds an
+     * offset to it. The vertices are read by absolute index, so the vertex buffer's position is not changed, and the
+     * point is interpolated one coordinate at a time, so that only the returned point is created.
+     *
+     * @param row    represents the row which corresponds to a <code>yDec</code> value of 0
+     * @param column represents the column which corresponds to an <code>xDec</code> value of 0
+     * @param xDec   constrained to [0,1]
+     * @param yDec   constrained to [0,1]
+     * @param ri     the render info holding the vertices, etc.
+     * @param offset the offset to add to the interpolated point, typically the tile's reference center. May be null.
+     *
+     * @return the interpolated point plus the offset
+     */
+    protected static Vec4 interpolate(int row, int column, double xDec, double yDec, RenderInfo ri, Vec4 offset)
+    {
         int numVerticesPerEdge = ri.density + 3;
+        int bL = 3 * ((row + 1) * numVerticesPerEdge + column + 1);
+        int bR = bL + 3;
+        int tL = bL + 3 * numVerticesPerEdge;
+        int tR = tL + 3;
 
-        int bottomLeft = row * numVerticesPerEdge + column;
-
-        bottomLeft *= 3;
-
-        int numVertsTimesThree = numVerticesPerEdge * 3;
-
-//        double[] a = new double[6];
-        ri.vertices.position(bottomLeft);
-//        ri.vertices.get(a);
-//        Vec4 bL = new Vec4(a[0], a[1], a[2]);
-//        Vec4 bR = new Vec4(a[3], a[4], a[5]);
-        Vec4 bL = new Vec4(ri.vertices.get(), ri.vertices.get(), ri.vertices.get());
-        Vec4 bR = new Vec4(ri.vertices.get(), ri.vertices.get(), ri.vertices.get());
+        FloatBuffer v = ri.vertices;
+        double x = interpolate(v.get(bL), v.get(bR), v.get(tR), v.get(tL), xDec, yDec);
+        double y = interpolate(v.get(bL + 1), v.get(bR + 1), v.get(tR + 1), v.get(tL + 1), xDec, yDec);
+        double z = interpolate(v.get(bL + 2), v.get(bR + 2), v.get(tR + 2), v.get(tL + 2), xDec, yDec);
 
-        bottomLeft += numVertsTimesThree;
-
-        ri.vertices.position(bottomLeft);
-//        ri.vertices.get(a);
-//        Vec4 tL = new Vec4(a[0], a[1], a[2]);
-//        Vec4 tR = new Vec4(a[3], a[4], a[5]);
-        Vec4 tL = new Vec4(ri.vertices.get(), ri.vertices.get(), ri.vertices.get());
-        Vec4 tR = new Vec4(ri.vertices.get(), ri.vertices.get(), ri.vertices.get());
+        return offset != null ? new Vec4(x + offset.x, y + offset.y, z + offset.z) : new Vec4(x, y, z);
+    }
 
-        return interpolate(bL, bR, tR, tL, xDec, yDec);
+    /**
+     * Calculates one coordinate of the point at (xDec, yDec) in the two triangles defined by {bL, bR, tL} and {bR, tR,
+     * tL}, as {@link #interpolate(Vec4, Vec4, Vec4, Vec4, double, double)} does for all three coordinates.
+     *
+     * @param bL   the bottom left corner's coordinate
+     * @param bR   the bottom right corner's coordinate
+     * @param tR   the top right corner's coordinate
+     * @param tL   the top left corner's coordinate
+     * @param xDec how far along, [0,1] 0 = left edge, 1 = right edge
+     * @param yDec how far along, [0,1] 0 = bottom edge, 1 = top edge
+     *
+     * @return the coordinate of the point at xDec, yDec
+     */
+    protected static double interpolate(double bL, double bR, double tR, double tL, double xDec, double yDec)
+    {
+        double pos = xDec + yDec;
+        if (pos == 1) // on the diagonal
+            return tL * yDec + bR * xDec;
+        else if (pos > 1) // in the "top right" half
+            return tR + (tL - tR) * (1 - xDec) + (bR - tR) * (1 - yDec);
+        else // in the "bottom left" half
+            return bL + (bR - bL) * xDec + (tL - bL) * yDec;
     }
 
     /**
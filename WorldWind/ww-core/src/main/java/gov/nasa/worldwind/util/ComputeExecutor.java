@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import java.util.concurrent.*;
+
+/**
+ * An executor shared by the components that divide computations, such as resampling, encoding and rasterization, into
+ * concurrent tasks. It has one low priority daemon thread per processor.
+ * <p/>
+ * Components commonly run their tasks from within tasks of other components, and wait for them to complete. So that a
+ * pool whose threads are all waiting can't deadlock, a task submitted from one of this executor's own threads runs
+ * immediately on that thread.
+ *
+ * @version $Id$
+ */
+public class ComputeExecutor extends ThreadPoolExecutor
+{
+    protected static ComputeExecutor instance;
+
+    /**
+     * Returns the executor shared by all components that are not given their own executor. The executor is created
+     * when first requested.
+     *
+     * @return the shared executor.
+     */
+    public static synchronized ComputeExecutor getInstance()
+    {
+        if (instance == null)
+            instance = new ComputeExecutor(Runtime.getRuntime().availableProcessors());
+
+        return instance;
+    }
+
+    /**
+     * Creates an executor with a specified number of threads.
+     *
+     * @param numThreads the number of threads.
+     *
+     * @throws IllegalArgumentException if the number of threads is less than one.
+     */
+    public ComputeExecutor(int numThreads)
+    {
+        super(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+
+        this.setThreadFactory(new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new ComputeThread(runnable, ComputeExecutor.this);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Indicates whether the current thread is one of this executor's threads.
+     *
+     * @return true if the current thread belongs to this executor, otherwise false.
+     */
+    public boolean isExecutorThread()
+    {
+        Thread thread = Thread.currentThread();
+        return thread instanceof ComputeThread && ((ComputeThread) thread).executor == this;
+    }
+
+    /** {@inheritDoc} Runs the command on the calling thread if the calling thread is one of this executor's threads. */
+    @Override
+    public void execute(Runnable command)
+    {
+        if (command != null && this.isExecutorThread() && !this.isShutdown())
+            command.run();
+        else
+            super.execute(command);
+    }
+
+    /** A thread of a compute executor. */
+    protected static class ComputeThread extends Thread
+    {
+        protected final ComputeExecutor executor;
+
+        public ComputeThread(Runnable runnable, ComputeExecutor executor)
+        {
+            super(runnable);
+            this.executor = executor;
+        }
+    }
+}
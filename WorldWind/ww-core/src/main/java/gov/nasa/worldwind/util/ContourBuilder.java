@@ -0,0 +1,674 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import java.util.*;
+
+/**
+ * Computes contour lines of a rectangular grid of values by marching squares. All requested contour values are
+ * computed in a single pass over the grid: each cell is visited once and contributes segments to every contour value
+ * between its smallest and largest corner values. Segments are connected into polylines as they're produced, using the
+ * grid edge each segment crosses to identify its end points, so no tolerance is involved in connecting them.
+ * <p/>
+ * Polylines are returned in grid coordinates, as arrays of interleaved x and y coordinates where x is the column and y
+ * is the row. A point on the edge between two grid values lies at the linear interpolation of the contour value
+ * between them. A polyline that forms a closed ring repeats its first point at its end. Cells with a corner whose value
+ * is the missing data signal or NaN are ignored, so contours end at the edge of missing data.
+ * <p/>
+ * The point where a contour crosses a grid edge depends only on the two values at the edge's ends. Two grids that share
+ * a row or column of values therefore produce identical points along the shared edge, which {@link
+ * #joinPolylines(java.util.List)} uses to connect contours computed separately for adjacent tiles.
+ * <p/>
+ * ContourBuilder is not thread safe, but separate instances may be used concurrently.
+ *
+ * @version $Id$
+ */
+public class ContourBuilder
+{
+    // Edges crossed by a contour, in the order they're tested: top, right, bottom and left.
+    protected static final int TOP = 0;
+    protected static final int RIGHT = 1;
+    protected static final int BOTTOM = 2;
+    protected static final int LEFT = 3;
+
+    protected final int width;
+    protected final int height;
+    protected final double[] values;
+    protected double missingDataSignal = Double.NaN;
+
+    /**
+     * Creates a contour builder for a grid of values.
+     *
+     * @param width  the number of grid columns. Must be at least 2.
+     * @param height the number of grid rows. Must be at least 2.
+     * @param values the grid values in row-major order. Must have at least <code>width * height</code> values.
+     *
+     * @throws IllegalArgumentException if the values are null, if either dimension is less than 2 or if there are too
+     *                                  few values.
+     */
+    public ContourBuilder(int width, int height, double[] values)
+    {
+        if (width < 2 || height < 2)
+        {
+            String message = Logging.getMessage("generic.DimensionsTooSmall", width, height);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (values == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (values.length < width * height)
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength", values.length);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.values = values;
+    }
+
+    /**
+     * Returns the number of grid columns.
+     *
+     * @return the grid width.
+     */
+    public int getWidth()
+    {
+        return this.width;
+    }
+
+    /**
+     * Returns the number of grid rows.
+     *
+     * @return the grid height.
+     */
+    public int getHeight()
+    {
+        return this.height;
+    }
+
+    /**
+     * Returns the value that marks a grid value as missing.
+     *
+     * @return the missing data signal. NaN by default.
+     */
+    public double getMissingDataSignal()
+    {
+        return this.missingDataSignal;
+    }
+
+    /**
+     * Specifies the value that marks a grid value as missing. Cells with a missing value at any corner produce no
+     * contours. NaN values are always treated as missing.
+     *
+     * @param missingDataSignal the missing data signal.
+     */
+    public void setMissingDataSignal(double missingDataSignal)
+    {
+        this.missingDataSignal = missingDataSignal;
+    }
+
+    /**
+     * Computes the contour lines for one or more contour values in a single pass over the grid.
+     *
+     * @param contourValues the contour values, in any order.
+     *
+     * @return a list with an entry for each contour value, in the order of the specified values. Each entry is the list
+     *         of polylines for that value, each polyline an array of interleaved x and y grid coordinates.
+     *
+     * @throws IllegalArgumentException if the contour values are null.
+     */
+    public List<List<double[]>> buildContourLines(double[] contourValues)
+    {
+        if (contourValues == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Sort the contour values so the values crossing each cell can be found by a binary search. The sorted order
+        // maps back to the caller's order when the results are returned.
+        int numValues = contourValues.length;
+        double[] sortedValues = new double[numValues];
+        Integer[] order = new Integer[numValues];
+        for (int i = 0; i < numValues; i++)
+        {
+            order[i] = i;
+        }
+        final double[] unsortedValues = contourValues;
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            public int compare(Integer a, Integer b)
+            {
+                return Double.compare(unsortedValues[a], unsortedValues[b]);
+            }
+        });
+        for (int i = 0; i < numValues; i++)
+        {
+            sortedValues[i] = contourValues[order[i]];
+        }
+
+        List<Map<Integer, Chain>> openChains = new ArrayList<Map<Integer, Chain>>(numValues);
+        List<List<Chain>> chains = new ArrayList<List<Chain>>(numValues);
+        for (int i = 0; i < numValues; i++)
+        {
+            openChains.add(new HashMap<Integer, Chain>());
+            chains.add(new ArrayList<Chain>());
+        }
+
+        int[] edges = new int[4];
+        for (int j = 0; j < this.height - 1; j++)
+        {
+            for (int i = 0; i < this.width - 1; i++)
+            {
+                int k = j * this.width + i;
+                double v0 = this.values[k]; // top left
+                double v1 = this.values[k + 1]; // top right
+                double v2 = this.values[k + this.width + 1]; // bottom right
+                double v3 = this.values[k + this.width]; // bottom left
+
+                if (this.isMissing(v0) || this.isMissing(v1) || this.isMissing(v2) || this.isMissing(v3))
+                    continue;
+
+                double min = Math.min(Math.min(v0, v1), Math.min(v2, v3));
+                double max = Math.max(Math.max(v0, v1), Math.max(v2, v3));
+
+                // A contour crosses the cell when at least one corner is below its value and at least one is at or
+                // above it, which is when the value lies in (min, max].
+                for (int n = firstGreaterThan(sortedValues, min); n < numValues && sortedValues[n] <= max; n++)
+                {
+                    double value = sortedValues[n];
+                    int cellCase = (v0 >= value ? 1 : 0) | (v1 >= value ? 2 : 0) | (v2 >= value ? 4 : 0)
+                        | (v3 >= value ? 8 : 0);
+
+                    edges[TOP] = 2 * k;
+                    edges[RIGHT] = 2 * (k + 1) + 1;
+                    edges[BOTTOM] = 2 * (k + this.width);
+                    edges[LEFT] = 2 * k + 1;
+
+                    Map<Integer, Chain> open = openChains.get(n);
+                    List<Chain> done = chains.get(n);
+
+                    if (cellCase == 5 || cellCase == 10)
+                    {
+                        // A saddle: two opposite corners are above the value. The average of the corners decides
+                        // whether the above corners are connected through the cell's center.
+                        boolean centerAbove = (v0 + v1 + v2 + v3) / 4 >= value;
+                        if ((cellCase == 5) == centerAbove)
+                        {
+                            // Separate the top right and bottom left corners.
+                            addSegment(open, done, edges[TOP], edges[RIGHT]);
+                            addSegment(open, done, edges[BOTTOM], edges[LEFT]);
+                        }
+                        else
+                        {
+                            // Separate the top left and bottom right corners.
+                            addSegment(open, done, edges[LEFT], edges[TOP]);
+                            addSegment(open, done, edges[RIGHT], edges[BOTTOM]);
+                        }
+                        continue;
+                    }
+
+                    // Any other crossed cell has exactly two edges whose end points are on opposite sides of the value.
+                    int a = -1;
+                    int b = -1;
+                    for (int e = 0; e < 4; e++)
+                    {
+                        boolean start = (cellCase & (1 << e)) != 0;
+                        boolean end = (cellCase & (1 << ((e + 1) % 4))) != 0;
+                        if (start != end)
+                        {
+                            if (a < 0)
+                                a = edges[e];
+                            else
+                                b = edges[e];
+                        }
+                    }
+                    addSegment(open, done, a, b);
+                }
+            }
+        }
+
+        List<List<double[]>> results = new ArrayList<List<double[]>>(numValues);
+        for (int i = 0; i < numValues; i++)
+        {
+            results.add(null);
+        }
+
+        for (int n = 0; n < numValues; n++)
+        {
+            List<double[]> polylines = new ArrayList<double[]>();
+            for (Chain chain : chains.get(n))
+            {
+                polylines.add(this.makePolyline(chain, sortedValues[n], true));
+            }
+
+            // Each open chain is in the map under both of its ends. Emit each one once, from the end with the smaller
+            // edge ID.
+            for (Map.Entry<Integer, Chain> entry : openChains.get(n).entrySet())
+            {
+                Chain chain = entry.getValue();
+                if (entry.getKey() == Math.min(chain.first(), chain.last()))
+                    polylines.add(this.makePolyline(chain, sortedValues[n], false));
+            }
+
+            results.set(order[n], polylines);
+        }
+
+        return results;
+    }
+
+    /**
+     * Connects polylines whose end points are identical into longer polylines. Polylines are arrays of interleaved x and
+     * y coordinates, and end points are connected only when both coordinates are exactly equal. A polyline whose first
+     * and last points are equal is a closed ring and is returned as is. A chain of polylines that closes on itself is
+     * returned as a closed ring.
+     * <p/>
+     * This connects contour lines computed separately for grids that share a row or column of values, such as the
+     * elevation tiles of adjacent sectors.
+     *
+     * @param polylines the polylines to connect.
+     *
+     * @return the connected polylines.
+     *
+     * @throws IllegalArgumentException if the list of polylines is null.
+     */
+    public static List<double[]> joinPolylines(List<double[]> polylines)
+    {
+        if (polylines == null)
+        {
+            String message = Logging.getMessage("nullValue.ListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int count = polylines.size();
+
+        // Map each open end point to the polylines ending there.
+        Map<PointKey, List<Integer>> ends = new HashMap<PointKey, List<Integer>>();
+        boolean[] closed = new boolean[count];
+        for (int i = 0; i < count; i++)
+        {
+            double[] p = polylines.get(i);
+            PointKey first = new PointKey(p[0], p[1]);
+            PointKey last = new PointKey(p[p.length - 2], p[p.length - 1]);
+            closed[i] = first.equals(last);
+            if (closed[i])
+                continue;
+
+            addEnd(ends, first, i);
+            addEnd(ends, last, i);
+        }
+
+        List<double[]> joined = new ArrayList<double[]>();
+        boolean[] used = new boolean[count];
+        for (int i = 0; i < count; i++)
+        {
+            if (used[i])
+                continue;
+
+            if (closed[i])
+            {
+                used[i] = true;
+                joined.add(polylines.get(i));
+                continue;
+            }
+
+            // Walk backward from this polyline's first point to the start of its chain, or around a ring back to this
+            // polyline. A chain can't be longer than the number of polylines, which bounds the walk.
+            int start = i;
+            boolean startForward = true;
+            for (int steps = 0; steps < count; steps++)
+            {
+                double[] p = polylines.get(start);
+                PointKey back = startForward ? new PointKey(p[0], p[1])
+                    : new PointKey(p[p.length - 2], p[p.length - 1]);
+                int prev = otherEnd(ends, back, start);
+                if (prev < 0 || prev == i || used[prev])
+                    break;
+
+                double[] q = polylines.get(prev);
+                startForward = back.equals(new PointKey(q[q.length - 2], q[q.length - 1]));
+                start = prev;
+            }
+
+            // Walk forward from the chain's start, appending each polyline in the direction that continues the chain.
+            int size = 0;
+            List<double[]> parts = new ArrayList<double[]>();
+            List<Boolean> directions = new ArrayList<Boolean>();
+            int current = start;
+            boolean forward = startForward;
+            while (current >= 0 && !used[current])
+            {
+                used[current] = true;
+                double[] p = polylines.get(current);
+                parts.add(p);
+                directions.add(forward);
+                size += p.length - (parts.size() > 1 ? 2 : 0);
+
+                PointKey front = forward ? new PointKey(p[p.length - 2], p[p.length - 1])
+                    : new PointKey(p[0], p[1]);
+                current = otherEnd(ends, front, current);
+                if (current >= 0)
+                    forward = front.equals(new PointKey(polylines.get(current)[0], polylines.get(current)[1]));
+            }
+
+            if (parts.size() == 1)
+            {
+                joined.add(parts.get(0));
+                continue;
+            }
+
+            double[] polyline = new double[size];
+            int offset = 0;
+            for (int n = 0; n < parts.size(); n++)
+            {
+                double[] p = parts.get(n);
+                int skip = n > 0 ? 1 : 0; // the first point of every part after the first repeats the previous point
+                int numPoints = p.length / 2;
+                for (int m = skip; m < numPoints; m++)
+                {
+                    int index = directions.get(n) ? m : numPoints - 1 - m;
+                    polyline[offset++] = p[2 * index];
+                    polyline[offset++] = p[2 * index + 1];
+                }
+            }
+            joined.add(polyline);
+        }
+
+        return joined;
+    }
+
+    protected boolean isMissing(double value)
+    {
+        return value == this.missingDataSignal || Double.isNaN(value);
+    }
+
+    /**
+     * Returns the index of the first value greater than a specified value in a sorted array.
+     *
+     * @param sortedValues the values, in ascending order.
+     * @param value        the value to search for.
+     *
+     * @return the index of the first greater value, or the array length if there is none.
+     */
+    protected static int firstGreaterThan(double[] sortedValues, double value)
+    {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (sortedValues[mid] <= value)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        return low;
+    }
+
+    /**
+     * Adds a segment between two grid edges to the chains for one contour value. The segment extends, connects or closes
+     * the chains ending at those edges, or starts a new chain.
+     *
+     * @param open   the open chains, keyed by the edges at their ends.
+     * @param closed the closed chains.
+     * @param a      the edge at one end of the segment.
+     * @param b      the edge at the other end of the segment.
+     */
+    protected static void addSegment(Map<Integer, Chain> open, List<Chain> closed, int a, int b)
+    {
+        Chain chainA = open.remove(a);
+        Chain chainB = open.remove(b);
+
+        if (chainA == null && chainB == null)
+        {
+            Chain chain = new Chain(a, b);
+            open.put(a, chain);
+            open.put(b, chain);
+        }
+        else if (chainB == null)
+        {
+            chainA.extend(a, b);
+            open.put(b, chainA);
+        }
+        else if (chainA == null)
+        {
+            chainB.extend(b, a);
+            open.put(a, chainB);
+        }
+        else if (chainA == chainB)
+        {
+            chainA.extend(a, b);
+            closed.add(chainA);
+        }
+        else
+        {
+            // Append the shorter chain to the longer one.
+            if (chainA.size() < chainB.size())
+            {
+                Chain swap = chainA;
+                chainA = chainB;
+                chainB = swap;
+                int swapEdge = a;
+                a = b;
+                b = swapEdge;
+            }
+
+            int farEnd = chainB.first() == b ? chainB.last() : chainB.first();
+            chainA.append(a, chainB, b);
+            open.put(farEnd, chainA);
+        }
+    }
+
+    protected double[] makePolyline(Chain chain, double value, boolean closed)
+    {
+        int size = chain.size();
+        double[] polyline = new double[2 * size];
+        for (int n = 0; n < size; n++)
+        {
+            this.computeEdgePoint(chain.get(n), value, polyline, 2 * n);
+        }
+
+        if (closed)
+        {
+            // A closing segment connects the chain's last edge back to its first, so both ends hold the same edge and
+            // therefore the same point.
+            polyline[2 * size - 2] = polyline[0];
+            polyline[2 * size - 1] = polyline[1];
+        }
+
+        return polyline;
+    }
+
+    /**
+     * Computes the point where a contour crosses a grid edge. Edge IDs are twice the index of the edge's first grid
+     * value, plus one for the vertical edge below that value.
+     *
+     * @param edge   the edge ID.
+     * @param value  the contour value.
+     * @param result the array to receive the point's x and y grid coordinates.
+     * @param offset the index of the first coordinate in the result array.
+     */
+    protected void computeEdgePoint(int edge, double value, double[] result, int offset)
+    {
+        int k = edge >> 1;
+        int i = k % this.width;
+        int j = k / this.width;
+        boolean vertical = (edge & 1) != 0;
+
+        double v0 = this.values[k];
+        double v1 = this.values[vertical ? k + this.width : k + 1];
+        double t = (value - v0) / (v1 - v0);
+
+        result[offset] = vertical ? i : i + t;
+        result[offset + 1] = vertical ? j + t : j;
+    }
+
+    protected static void addEnd(Map<PointKey, List<Integer>> ends, PointKey point, int index)
+    {
+        List<Integer> list = ends.get(point);
+        if (list == null)
+        {
+            list = new ArrayList<Integer>(2);
+            ends.put(point, list);
+        }
+        list.add(index);
+    }
+
+    protected static int otherEnd(Map<PointKey, List<Integer>> ends, PointKey point, int index)
+    {
+        List<Integer> list = ends.get(point);
+        if (list == null)
+            return -1;
+
+        for (Integer i : list)
+        {
+            if (i != index)
+                return i;
+        }
+
+        return -1;
+    }
+
+    /** A sequence of grid edge IDs that can grow at either end. */
+    protected static class Chain
+    {
+        protected int[] edges = new int[16];
+        protected int head = 8;
+        protected int tail = 8;
+
+        public Chain(int a, int b)
+        {
+            this.edges[this.tail++] = a;
+            this.edges[this.tail++] = b;
+        }
+
+        public int size()
+        {
+            return this.tail - this.head;
+        }
+
+        public int get(int index)
+        {
+            return this.edges[this.head + index];
+        }
+
+        public int first()
+        {
+            return this.edges[this.head];
+        }
+
+        public int last()
+        {
+            return this.edges[this.tail - 1];
+        }
+
+        /**
+         * Adds an edge next to one of this chain's ends.
+         *
+         * @param end  the edge at the end to extend.
+         * @param edge the edge to add.
+         */
+        public void extend(int end, int edge)
+        {
+            if (this.last() == end)
+                this.addLast(edge);
+            else
+                this.addFirst(edge);
+        }
+
+        /**
+         * Appends another chain to one of this chain's ends. The other chain's edges are added starting from the edge
+         * that connects to this chain.
+         *
+         * @param end       the edge at the end of this chain to extend.
+         * @param other     the chain to append.
+         * @param otherEnd  the edge at the end of the other chain that connects to this chain.
+         */
+        public void append(int end, Chain other, int otherEnd)
+        {
+            boolean atLast = this.last() == end;
+            int size = other.size();
+            boolean forward = other.first() == otherEnd;
+            for (int n = 0; n < size; n++)
+            {
+                int edge = other.get(forward ? n : size - 1 - n);
+                if (atLast)
+                    this.addLast(edge);
+                else
+                    this.addFirst(edge);
+            }
+        }
+
+        protected void addFirst(int edge)
+        {
+            if (this.head == 0)
+                this.grow();
+            this.edges[--this.head] = edge;
+        }
+
+        protected void addLast(int edge)
+        {
+            if (this.tail == this.edges.length)
+                this.grow();
+            this.edges[this.tail++] = edge;
+        }
+
+        protected void grow()
+        {
+            // Re-center the edges in an array twice the size, leaving room to grow at both ends.
+            int size = this.size();
+            int[] newEdges = new int[2 * this.edges.length];
+            int newHead = (newEdges.length - size) / 2;
+            System.arraycopy(this.edges, this.head, newEdges, newHead, size);
+            this.edges = newEdges;
+            this.head = newHead;
+            this.tail = newHead + size;
+        }
+    }
+
+    /** A point compared by the exact values of its coordinates. */
+    protected static class PointKey
+    {
+        protected final double x;
+        protected final double y;
+
+        public PointKey(double x, double y)
+        {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (o == null || this.getClass() != o.getClass())
+                return false;
+
+            PointKey that = (PointKey) o;
+            return Double.compare(this.x, that.x) == 0 && Double.compare(this.y, that.y) == 0;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            long bits = Double.doubleToLongBits(this.x) * 31 + Double.doubleToLongBits(this.y);
+            return (int) (bits ^ (bits >>> 32));
+        }
+    }
+}
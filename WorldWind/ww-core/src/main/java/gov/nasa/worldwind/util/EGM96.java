@@ -11,6 +11,8 @@ import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.geom.Angle;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Computes EGM96 geoid offsets.
@@ -21,14 +23,26 @@ import java.io.*;
  * <p/>
  * Once constructed, the instance can be passed to {@link gov.nasa.worldwind.globes.EllipsoidalGlobe#applyEGMA96Offsets(String)}
  * to apply the offets to elevations produced by the globe.
+ * <p/>
+ * If the offsets file is a file on the local file system, it is memory mapped rather than read into the heap. Offsets
+ * are interpolated bilinearly by default, or bicubically if {@link #setUseBicubicInterpolation(boolean)} is set.
+ * Offsets for many locations are computed most efficiently by {@link #getOffsets(double[], double[], double[])}, or by
+ * {@link #getOffsets(double[], double[], double[], java.util.concurrent.ExecutorService)} to divide the locations
+ * among several threads. Other geoid grids, such as an EGM2008 grid stored in a binary file, may be used in place of
+ * the EGM96 grid by constructing an instance with a {@link GeoidGrid}.
  *
  * @author tag
  * @version $Id$
  */
 public class EGM96
 {
+    /** The minimum number of locations computed by each task of a parallel bulk computation. */
+    protected static final int MIN_LOCATIONS_PER_TASK = 4096;
+
     protected String offsetsFilePath;
     protected BufferWrapper deltas;
+    protected GeoidGrid grid;
+    protected boolean useBicubicInterpolation;
 
     /**
      * Construct an instance.
@@ -50,8 +64,77 @@ public class EGM96
         this.loadOffsetFile();
     }
 
+    /**
+     * Construct an instance that computes offsets from a specified geoid grid, such as a memory mapped EGM2008 grid.
+     *
+     * @param grid the geoid grid.
+     *
+     * @throws IllegalArgumentException if the grid is null.
+     */
+    public EGM96(GeoidGrid grid)
+    {
+        if (grid == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.grid = grid;
+    }
+
+    /**
+     * Returns the grid the offsets are computed from.
+     *
+     * @return the geoid grid, or null if the offsets file failed to load.
+     */
+    public GeoidGrid getGrid()
+    {
+        return this.grid;
+    }
+
+    /**
+     * Indicates whether offsets are interpolated bicubically from the surrounding 16 grid posts, or bilinearly from the
+     * surrounding 4 grid posts.
+     *
+     * @return true if offsets are interpolated bicubically, false if they are interpolated bilinearly.
+     */
+    public boolean isUseBicubicInterpolation()
+    {
+        return this.useBicubicInterpolation;
+    }
+
+    /**
+     * Specifies whether offsets are interpolated bicubically from the surrounding 16 grid posts, or bilinearly from the
+     * surrounding 4 grid posts. The default is bilinear interpolation.
+     *
+     * @param useBicubicInterpolation true to interpolate offsets bicubically, false to interpolate them bilinearly.
+     */
+    public void setUseBicubicInterpolation(boolean useBicubicInterpolation)
+    {
+        this.useBicubicInterpolation = useBicubicInterpolation;
+    }
+
     protected void loadOffsetFile() throws IOException
     {
+        // Map the offsets file if it's on the local file system, rather than reading it into the heap.
+        File file = new File(this.offsetsFilePath);
+        if (file.isFile())
+        {
+            try
+            {
+                this.deltas = BufferWrapper.wrap(WWIO.mapFile(file), AVKey.INT16, AVKey.BIG_ENDIAN);
+                this.grid = new GeoidGrid(this.deltas, NUM_ROWS, NUM_COLS, 0.01); // centimeters to meters
+                return;
+            }
+            catch (IOException e)
+            {
+                String msg = Logging.getMessage("generic.ExceptionAttemptingToReadFile", this.offsetsFilePath);
+                Logging.logger().log(java.util.logging.Level.SEVERE, msg, e);
+                throw e;
+            }
+        }
+
         InputStream is = WWIO.openFileOrResourceStream(this.offsetsFilePath, EGM96.class);
         if (is == null)
         {
@@ -66,6 +149,7 @@ public class EGM96
             bufferParams.setValue(AVKey.DATA_TYPE, AVKey.INT16);
             bufferParams.setValue(AVKey.BYTE_ORDER, AVKey.BIG_ENDIAN);
             this.deltas = BufferWrapper.wrap(WWIO.readStreamToBuffer(is, true), bufferParams);
+            this.grid = new GeoidGrid(this.deltas, NUM_ROWS, NUM_COLS, 0.01); // centimeters to meters
         }
         catch (IOException e)
         {
@@ -107,57 +191,110 @@ public class EGM96
 
         // Return 0 for all offsets if the file failed to load. A log message of the failure will have been generated
         // by the load method.
-        if (this.deltas == null)
+        if (this.grid == null)
             return 0;
 
-        double lat = latitude.degrees;
-        double lon = longitude.degrees >= 0 ? longitude.degrees : longitude.degrees + 360;
+        return this.grid.getValue(latitude.degrees, longitude.degrees, this.isUseBicubicInterpolation());
+    }
 
-        int topRow = (int) ((90 - lat) / INTERVAL.degrees);
-        if (lat <= -90)
-            topRow = NUM_ROWS - 2;
-        int bottomRow = topRow + 1;
+    /**
+     * Computes the offsets at multiple locations.
+     *
+     * @param latitudes  the locations' latitudes, in degrees.
+     * @param longitudes the locations' longitudes, in degrees.
+     * @param offsets    the array in which to store the offsets, in meters. Must be at least as long as the latitude
+     *                   array.
+     *
+     * @throws IllegalArgumentException if any array is null, or if the longitude or offset arrays are shorter than the
+     *                                  latitude array.
+     */
+    public void getOffsets(double[] latitudes, double[] longitudes, double[] offsets)
+    {
+        this.getOffsets(latitudes, longitudes, offsets, null);
+    }
 
-        // Note that the number of columns does not repeat the column at 0 longitude, so we must force the right
-        // column to 0 for any longitude that's less than one interval from 360, and force the left column to the
-        // last column of the grid.
-        int leftCol = (int) (lon / INTERVAL.degrees);
-        int rightCol = leftCol + 1;
-        if (lon >= 360 - INTERVAL.degrees)
+    /**
+     * Computes the offsets at multiple locations, dividing the locations among tasks run by a specified executor. This
+     * method returns after all the offsets are computed.
+     *
+     * @param latitudes  the locations' latitudes, in degrees.
+     * @param longitudes the locations' longitudes, in degrees.
+     * @param offsets    the array in which to store the offsets, in meters. Must be at least as long as the latitude
+     *                   array.
+     * @param executor   the executor to run the tasks, or null to compute the offsets on the current thread.
+     *
+     * @throws IllegalArgumentException if any array is null, or if the longitude or offset arrays are shorter than the
+     *                                  latitude array.
+     * @throws WWRuntimeException       if a task fails or the current thread is interrupted while waiting for the
+     *                                  tasks.
+     */
+    public void getOffsets(final double[] latitudes, final double[] longitudes, final double[] offsets,
+        ExecutorService executor)
+    {
+        if (latitudes == null || longitudes == null || offsets == null)
         {
-            leftCol = NUM_COLS - 1;
-            rightCol = 0;
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
         }
 
-        double latTop = 90 - topRow * INTERVAL.degrees;
-        double lonLeft = leftCol * INTERVAL.degrees;
-
-        double ul = this.gePostOffset(topRow, leftCol);
-        double ll = this.gePostOffset(bottomRow, leftCol);
-        double lr = this.gePostOffset(bottomRow, rightCol);
-        double ur = this.gePostOffset(topRow, rightCol);
+        if (longitudes.length < latitudes.length || offsets.length < latitudes.length)
+        {
+            String msg = Logging.getMessage("generic.ArrayInvalidLength", latitudes.length);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
 
-        double u = (lon - lonLeft) / INTERVAL.degrees;
-        double v = (latTop - lat) / INTERVAL.degrees;
+        if (this.grid == null)
+        {
+            Arrays.fill(offsets, 0, latitudes.length, 0);
+            return;
+        }
 
-        double pll = (1.0 - u) * (1.0 - v);
-        double plr = u * (1.0 - v);
-        double pur = u * v;
-        double pul = (1.0 - u) * v;
+        final boolean bicubic = this.isUseBicubicInterpolation();
+        int count = latitudes.length;
 
-        double offset = pll * ll + plr * lr + pur * ur + pul * ul;
+        if (executor == null || count <= MIN_LOCATIONS_PER_TASK)
+        {
+            this.grid.getValues(latitudes, longitudes, offsets, 0, count, bicubic);
+            return;
+        }
 
-        return offset / 100d; // convert centimeters to meters
-    }
+        int numTasks = Math.min(4 * Runtime.getRuntime().availableProcessors(),
+            (count + MIN_LOCATIONS_PER_TASK - 1) / MIN_LOCATIONS_PER_TASK);
+        int taskSize = (count + numTasks - 1) / numTasks;
 
-    protected double gePostOffset(int row, int col)
-    {
-        int k = row * NUM_COLS + col;
+        List<Future<?>> futures = new ArrayList<Future<?>>(numTasks);
+        for (int start = 0; start < count; start += taskSize)
+        {
+            final int offset = start;
+            final int length = Math.min(taskSize, count - start);
 
-        if (k >= this.deltas.length())
-            System.out.println(k);
+            futures.add(executor.submit(new Runnable()
+            {
+                public void run()
+                {
+                    grid.getValues(latitudes, longitudes, offsets, offset, length, bicubic);
+                }
+            }));
+        }
 
-        return this.deltas.getInt(k);
+        try
+        {
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new WWRuntimeException(e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new WWRuntimeException(e.getCause());
+        }
     }
 //
 //    public static void main(String[] args)
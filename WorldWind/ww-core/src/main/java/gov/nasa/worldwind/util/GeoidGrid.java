@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * A global grid of geoid heights, such as the EGM96 15' grid or the EGM2008 1' grid, that interpolates the height at
+ * arbitrary locations. The grid's values are held in a {@link BufferWrapper}, which may wrap a memory mapped file so
+ * that very large grids are not read into the heap. See {@link #fromFile(java.io.File, int, int, Object, Object,
+ * double)}.
+ * <p/>
+ * The grid's rows are arranged from north to south, with the first row at latitude +90 and the last row at latitude
+ * -90. Each row's columns are arranged from west to east, beginning at the prime meridian and ending one column
+ * interval west of it; the column at longitude 360 is not repeated. Grid values are multiplied by the grid's scale to
+ * convert them to meters.
+ * <p/>
+ * GeoidGrid is safe for use by multiple threads, provided the underlying buffer is not modified.
+ *
+ * @version $Id$
+ */
+public class GeoidGrid
+{
+    protected BufferWrapper values;
+    protected int numRows;
+    protected int numCols;
+    protected double scale;
+    protected double rowInterval;
+    protected double colInterval;
+
+    /**
+     * Creates a grid with the specified values and dimensions.
+     *
+     * @param values  the grid's values, in row major order beginning with the northwest corner.
+     * @param numRows the number of rows in the grid, including the rows at each pole.
+     * @param numCols the number of columns in the grid.
+     * @param scale   the factor that converts grid values to meters.
+     *
+     * @throws IllegalArgumentException if the values are null, if the number of rows or columns is less than 2, or if
+     *                                  the values buffer contains fewer than <code>numRows * numCols</code> values.
+     */
+    public GeoidGrid(BufferWrapper values, int numRows, int numCols, double scale)
+    {
+        if (values == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (numRows < 2)
+        {
+            String message = Logging.getMessage("generic.InvalidHeight", numRows);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (numCols < 2)
+        {
+            String message = Logging.getMessage("generic.InvalidWidth", numCols);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (values.length() < (long) numRows * numCols)
+        {
+            String message = Logging.getMessage("generic.BufferSize", values.length());
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.values = values;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.scale = scale;
+        this.rowInterval = 180d / (numRows - 1);
+        this.colInterval = 360d / numCols;
+    }
+
+    /**
+     * Creates a grid whose values are read directly from a memory mapped file. The file is not read into the heap; the
+     * operating system pages the file's contents in as the grid is accessed. The file contains the grid's values in row
+     * major order, without a header.
+     *
+     * @param file      the grid file.
+     * @param numRows   the number of rows in the grid, including the rows at each pole.
+     * @param numCols   the number of columns in the grid.
+     * @param dataType  the data type of the grid values, one of {@link gov.nasa.worldwind.avlist.AVKey#INT16}, {@link
+     *                  gov.nasa.worldwind.avlist.AVKey#INT32} or {@link gov.nasa.worldwind.avlist.AVKey#FLOAT32}.
+     * @param byteOrder the byte order of the grid values, either {@link gov.nasa.worldwind.avlist.AVKey#BIG_ENDIAN}
+     *                  or {@link gov.nasa.worldwind.avlist.AVKey#LITTLE_ENDIAN}.
+     * @param scale     the factor that converts grid values to meters.
+     *
+     * @return a grid backed by the mapped file.
+     *
+     * @throws IllegalArgumentException if the file or data type is null, the data type is not recognized, or the file
+     *                                  is too small for the grid dimensions.
+     * @throws IOException              if the file cannot be mapped.
+     */
+    public static GeoidGrid fromFile(File file, int numRows, int numCols, Object dataType, Object byteOrder,
+        double scale) throws IOException
+    {
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        ByteBuffer buffer = WWIO.mapFile(file);
+        BufferWrapper values = BufferWrapper.wrap(buffer, dataType, byteOrder);
+        if (values == null)
+        {
+            String message = Logging.getMessage("generic.UnrecognizedDataType", dataType);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return new GeoidGrid(values, numRows, numCols, scale);
+    }
+
+    public int getNumRows()
+    {
+        return this.numRows;
+    }
+
+    public int getNumCols()
+    {
+        return this.numCols;
+    }
+
+    public double getScale()
+    {
+        return this.scale;
+    }
+
+    /**
+     * Returns the geoid height at a grid post.
+     *
+     * @param row the post's row, with row 0 at latitude +90.
+     * @param col the post's column, with column 0 at longitude 0.
+     *
+     * @return the geoid height at the post, in meters.
+     */
+    public double getPostValue(int row, int col)
+    {
+        return this.values.getDouble(row * this.numCols + col) * this.scale;
+    }
+
+    /**
+     * Computes the geoid height at a location by interpolating the surrounding grid posts.
+     *
+     * @param latitude  the location's latitude, in degrees.
+     * @param longitude the location's longitude, in degrees.
+     * @param bicubic   true to interpolate the 16 surrounding posts bicubically, false to interpolate the 4 surrounding
+     *                  posts bilinearly.
+     *
+     * @return the geoid height at the location, in meters.
+     */
+    public double getValue(double latitude, double longitude, boolean bicubic)
+    {
+        // Compute the fractional row and column of the location. Rows are clamped to the grid, since latitudes beyond
+        // the poles are undefined. Columns wrap around the antimeridian.
+        double y = (90 - latitude) / this.rowInterval;
+        if (y < 0)
+            y = 0;
+        else if (y > this.numRows - 1)
+            y = this.numRows - 1;
+
+        double x = (longitude % 360) / this.colInterval;
+        if (x < 0)
+            x += this.numCols;
+
+        int row = (int) y;
+        if (row > this.numRows - 2)
+            row = this.numRows - 2;
+
+        int col = (int) x;
+        if (col > this.numCols - 1)
+            col = this.numCols - 1;
+
+        double v = y - row;
+        double u = x - col;
+
+        return bicubic ? this.interpolateBicubic(row, col, u, v) : this.interpolateBilinear(row, col, u, v);
+    }
+
+    /**
+     * Computes the geoid heights at a range of locations. This is equivalent to calling {@link #getValue(double,
+     * double, boolean)} for each location, and may be called by multiple threads simultaneously for different ranges
+     * of the same arrays.
+     *
+     * @param latitudes  the locations' latitudes, in degrees.
+     * @param longitudes the locations' longitudes, in degrees.
+     * @param values     the array in which to store the geoid heights, in meters.
+     * @param offset     the index of the first location.
+     * @param length     the number of locations.
+     * @param bicubic    true to interpolate bicubically, false to interpolate bilinearly.
+     *
+     * @throws IllegalArgumentException if any array is null, or the range exceeds the length of any array.
+     */
+    public void getValues(double[] latitudes, double[] longitudes, double[] values, int offset, int length,
+        boolean bicubic)
+    {
+        if (latitudes == null || longitudes == null || values == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (offset < 0 || length < 0 || offset + length > latitudes.length || offset + length > longitudes.length
+            || offset + length > values.length)
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength", offset + length);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        for (int i = offset; i < offset + length; i++)
+        {
+            values[i] = this.getValue(latitudes[i], longitudes[i], bicubic);
+        }
+    }
+
+    protected double interpolateBilinear(int row, int col, double u, double v)
+    {
+        int nextCol = (col + 1) % this.numCols;
+
+        double ul = this.getPostValue(row, col);
+        double ur = this.getPostValue(row, nextCol);
+        double ll = this.getPostValue(row + 1, col);
+        double lr = this.getPostValue(row + 1, nextCol);
+
+        return (1 - v) * ((1 - u) * ul + u * ur) + v * ((1 - u) * ll + u * lr);
+    }
+
+    /**
+     * Interpolates the 4x4 posts surrounding a location with a Catmull-Rom cubic convolution. Rows above the north pole
+     * and below the south pole are clamped to the pole rows; columns wrap around the antimeridian.
+     *
+     * @param row the row of the post north of the location.
+     * @param col the column of the post west of the location.
+     * @param u   the location's fractional distance from the western post.
+     * @param v   the location's fractional distance from the northern post.
+     *
+     * @return the interpolated geoid height, in meters.
+     */
+    protected double interpolateBicubic(int row, int col, double u, double v)
+    {
+        double result = 0;
+
+        for (int j = -1; j <= 2; j++)
+        {
+            int r = Math.max(0, Math.min(this.numRows - 1, row + j));
+
+            double rowValue = 0;
+            for (int i = -1; i <= 2; i++)
+            {
+                int c = (col + i + this.numCols) % this.numCols;
+                rowValue += cubicWeight(i - u) * this.getPostValue(r, c);
+            }
+
+            result += cubicWeight(j - v) * rowValue;
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the Catmull-Rom cubic convolution weight of a post at a specified distance from the interpolated point.
+     *
+     * @param t the distance from the point to the post, in grid intervals.
+     *
+     * @return the post's weight.
+     */
+    protected static double cubicWeight(double t)
+    {
+        t = Math.abs(t);
+
+        if (t < 1)
+            return (1.5 * t - 2.5) * t * t + 1;
+        else if (t < 2)
+            return ((-0.5 * t + 2.5) * t - 4) * t + 2;
+        else
+            return 0;
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+/**
+ * Parses whitespace separated numbers from text that arrives in pieces, such as the character events of a large XML
+ * element, without first concatenating the text or creating a string for each number. A number split across two pieces
+ * is parsed once its second part arrives. A tokenizer parses either floats or integers, as specified when it's
+ * created.
+ * <p/>
+ * Floats are parsed directly from their characters when that produces the same value as {@link Float#parseFloat}, and
+ * by <code>Float.parseFloat</code> otherwise. Text that is not a number causes a {@link NumberFormatException}, as it
+ * does with <code>Float.parseFloat</code> and {@link Integer#parseInt}.
+ *
+ * @version $Id$
+ */
+public class NumberTokenizer
+{
+    /** The largest mantissa that is exactly representable as a double. */
+    protected static final long MAX_EXACT_MANTISSA = 1L << 53;
+    /** Powers of ten that are exactly representable as doubles. */
+    protected static final double[] POWERS_OF_TEN = new double[23];
+
+    static
+    {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+        {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    protected boolean integers;
+    protected float[] floats;
+    protected int[] ints;
+    protected int size;
+    /** Characters of a number that may continue in the next piece of text. */
+    protected char[] token = new char[32];
+    protected int tokenLength;
+
+    /**
+     * Creates a tokenizer.
+     *
+     * @param integers        true to parse integers, false to parse floats.
+     * @param initialCapacity the number of numbers expected. The tokenizer grows as needed if more are added.
+     */
+    public NumberTokenizer(boolean integers, int initialCapacity)
+    {
+        if (initialCapacity < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "initialCapacity < 0");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.integers = integers;
+        if (integers)
+            this.ints = new int[initialCapacity];
+        else
+            this.floats = new float[initialCapacity];
+    }
+
+    /**
+     * Indicates the number of numbers parsed so far. A number at the end of the text added so far is not counted until
+     * whitespace follows it or {@link #getFloats()} or {@link #getInts()} is called.
+     *
+     * @return the number of numbers parsed.
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Parses the numbers in the next piece of text. A number at the end of the text is held until whitespace or the
+     * end of the text is reached.
+     *
+     * @param text the next piece of text. Null is treated as empty text.
+     *
+     * @throws NumberFormatException if a token is not a number.
+     */
+    public void add(CharSequence text)
+    {
+        if (text == null)
+            return;
+
+        for (int i = 0, length = text.length(); i < length; i++)
+        {
+            char c = text.charAt(i);
+            if (isWhitespace(c))
+            {
+                if (this.tokenLength > 0)
+                    this.endToken();
+            }
+            else
+            {
+                if (this.tokenLength == this.token.length)
+                {
+                    char[] newToken = new char[2 * this.token.length];
+                    System.arraycopy(this.token, 0, newToken, 0, this.tokenLength);
+                    this.token = newToken;
+                }
+
+                this.token[this.tokenLength++] = c;
+            }
+        }
+    }
+
+    /**
+     * Returns the floats parsed from the text added to this tokenizer, ending any number at the end of the text.
+     *
+     * @return the parsed floats, in an array of exactly the number parsed.
+     *
+     * @throws IllegalStateException if this tokenizer parses integers.
+     * @throws NumberFormatException if the last token is not a number.
+     */
+    public float[] getFloats()
+    {
+        if (this.integers)
+        {
+            String message = Logging.getMessage("generic.UnexpectedObjectType", "int");
+            Logging.logger().severe(message);
+            throw new IllegalStateException(message);
+        }
+
+        if (this.tokenLength > 0)
+            this.endToken();
+
+        if (this.floats.length != this.size)
+        {
+            float[] array = new float[this.size];
+            System.arraycopy(this.floats, 0, array, 0, this.size);
+            this.floats = array;
+        }
+
+        return this.floats;
+    }
+
+    /**
+     * Returns the integers parsed from the text added to this tokenizer, ending any number at the end of the text.
+     *
+     * @return the parsed integers, in an array of exactly the number parsed.
+     *
+     * @throws IllegalStateException if this tokenizer parses floats.
+     * @throws NumberFormatException if the last token is not a number.
+     */
+    public int[] getInts()
+    {
+        if (!this.integers)
+        {
+            String message = Logging.getMessage("generic.UnexpectedObjectType", "float");
+            Logging.logger().severe(message);
+            throw new IllegalStateException(message);
+        }
+
+        if (this.tokenLength > 0)
+            this.endToken();
+
+        if (this.ints.length != this.size)
+        {
+            int[] array = new int[this.size];
+            System.arraycopy(this.ints, 0, array, 0, this.size);
+            this.ints = array;
+        }
+
+        return this.ints;
+    }
+
+    /**
+     * Indicates whether a character separates numbers. These are the characters matched by the regular expression
+     * <code>\s</code>.
+     *
+     * @param c the character to test.
+     *
+     * @return true if the character is whitespace, otherwise false.
+     */
+    protected static boolean isWhitespace(char c)
+    {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+
+    protected void endToken()
+    {
+        if (this.integers)
+        {
+            if (this.size == this.ints.length)
+            {
+                int[] array = new int[Math.max(16, 2 * this.ints.length)];
+                System.arraycopy(this.ints, 0, array, 0, this.size);
+                this.ints = array;
+            }
+
+            this.ints[this.size++] = parseInt(this.token, this.tokenLength);
+        }
+        else
+        {
+            if (this.size == this.floats.length)
+            {
+                float[] array = new float[Math.max(16, 2 * this.floats.length)];
+                System.arraycopy(this.floats, 0, array, 0, this.size);
+                this.floats = array;
+            }
+
+            this.floats[this.size++] = parseFloat(this.token, this.tokenLength);
+        }
+
+        this.tokenLength = 0;
+    }
+
+    /**
+     * Parses a decimal integer.
+     *
+     * @param chars  the characters of the integer.
+     * @param length the number of characters.
+     *
+     * @return the integer.
+     *
+     * @throws NumberFormatException if the characters are not an integer in the range of <code>int</code>.
+     */
+    public static int parseInt(char[] chars, int length)
+    {
+        int i = 0;
+        boolean negative = false;
+        if (length > 1 && (chars[0] == '-' || chars[0] == '+'))
+        {
+            negative = chars[0] == '-';
+            i++;
+        }
+
+        // Ten digits or fewer fit in a long, after which the value is checked against the range of int.
+        if (length - i > 10)
+            return Integer.parseInt(new String(chars, 0, length));
+
+        long value = 0;
+        for (; i < length; i++)
+        {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9)
+                return Integer.parseInt(new String(chars, 0, length));
+
+            value = 10 * value + digit;
+        }
+
+        if (negative)
+            value = -value;
+
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            return Integer.parseInt(new String(chars, 0, length));
+
+        return (int) value;
+    }
+
+    /**
+     * Parses a decimal float. The result is the same as that of {@link Float#parseFloat}. Numbers of up to eighteen
+     * significant digits and small exponents are converted without creating a string. Others, and any that are not
+     * plain decimal numbers, are passed to <code>Float.parseFloat</code>.
+     *
+     * @param chars  the characters of the float.
+     * @param length the number of characters.
+     *
+     * @return the float.
+     *
+     * @throws NumberFormatException if the characters are not a float.
+     */
+    public static float parseFloat(char[] chars, int length)
+    {
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (chars[0] == '-' || chars[0] == '+'))
+        {
+            negative = chars[0] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int numSignificantDigits = 0;
+        int exponent = 0;
+        int numDigits = 0;
+
+        for (; i < length && chars[i] >= '0' && chars[i] <= '9'; i++, numDigits++)
+        {
+            if (numSignificantDigits < 18)
+            {
+                mantissa = 10 * mantissa + (chars[i] - '0');
+                if (mantissa != 0)
+                    numSignificantDigits++;
+            }
+            else
+            {
+                // Digits beyond the eighteenth make the mantissa inexact. Leave them to Float.parseFloat.
+                return Float.parseFloat(new String(chars, 0, length));
+            }
+        }
+
+        if (i < length && chars[i] == '.')
+        {
+            for (i++; i < length && chars[i] >= '0' && chars[i] <= '9'; i++, numDigits++)
+            {
+                if (numSignificantDigits < 18)
+                {
+                    mantissa = 10 * mantissa + (chars[i] - '0');
+                    if (mantissa != 0)
+                        numSignificantDigits++;
+                    exponent--;
+                }
+                else if (chars[i] != '0')
+                {
+                    return Float.parseFloat(new String(chars, 0, length));
+                }
+            }
+        }
+
+        if (numDigits == 0)
+            return Float.parseFloat(new String(chars, 0, length));
+
+        if (i < length && (chars[i] == 'e' || chars[i] == 'E'))
+        {
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && (chars[i] == '-' || chars[i] == '+'))
+            {
+                negativeExponent = chars[i] == '-';
+                i++;
+            }
+
+            int e = 0;
+            int numExponentDigits = 0;
+            for (; i < length && chars[i] >= '0' && chars[i] <= '9' && numExponentDigits < 4; i++, numExponentDigits++)
+            {
+                e = 10 * e + (chars[i] - '0');
+            }
+
+            if (numExponentDigits == 0 || i < length)
+                return Float.parseFloat(new String(chars, 0, length));
+
+            exponent += negativeExponent ? -e : e;
+        }
+
+        if (i < length)
+            return Float.parseFloat(new String(chars, 0, length));
+
+        if (mantissa == 0)
+            return negative ? -0f : 0f;
+
+        if (mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22)
+            return Float.parseFloat(new String(chars, 0, length));
+
+        // The mantissa and power of ten are exact, so the product or quotient is the correctly rounded double.
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+
+        // Rounding the double to a float is correct unless the double lies exactly half way between two floats, in
+        // which case the decimal value may lie to either side. Subnormal and overflowing floats are also left to
+        // Float.parseFloat.
+        long bits = Double.doubleToRawLongBits(value);
+        if ((bits & 0x1FFFFFFFL) == 0x10000000L || value < Float.MIN_NORMAL || value > Float.MAX_VALUE)
+            return Float.parseFloat(new String(chars, 0, length));
+
+        return negative ? -(float) value : (float) value;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Packs a tile's dataset, level, row and column into a single 64-bit <code>long</code>. A packed key identifies the
+ * same tile as the {@link TileKey} with the same level, row, column and cache name, but can be computed, compared and
+ * hashed without allocating an object, which makes it suitable for per-frame tile lookups.
+ * <p/>
+ * Cache names are mapped to small integer dataset IDs by a process-wide registry. The first time a cache name is seen
+ * it's assigned the next free ID, and it keeps that ID for the life of the process. Packed keys are never negative. The
+ * key layout, from the most significant bit, is: one zero bit, {@value #DATASET_BITS} bits of dataset ID, {@value
+ * #LEVEL_BITS} bits of level number, {@value #ROW_BITS} bits of row and {@value #COLUMN_BITS} bits of column.
+ * <p/>
+ * Tiles whose level, row or column don't fit the layout, and cache names registered after the registry is full, can't
+ * be packed. The packing methods return {@link #NONE} for them, and callers must fall back to a <code>TileKey</code>.
+ *
+ * @version $Id$
+ * @see gov.nasa.worldwind.cache.LongKeyMemoryCache
+ */
+public class PackedTileKey
+{
+    /** The value returned for tiles that can't be packed. No valid packed key has this value. */
+    public static final long NONE = -1L;
+
+    public static final int DATASET_BITS = 11;
+    public static final int LEVEL_BITS = 5;
+    public static final int ROW_BITS = 23;
+    public static final int COLUMN_BITS = 24;
+
+    /** The largest dataset ID. Dataset ID 0 is never assigned, so that no packed key is zero. */
+    public static final int MAX_DATASET_ID = (1 << DATASET_BITS) - 1;
+    public static final int MAX_LEVEL = (1 << LEVEL_BITS) - 1;
+    public static final int MAX_ROW = (1 << ROW_BITS) - 1;
+    public static final int MAX_COLUMN = (1 << COLUMN_BITS) - 1;
+
+    protected static final int ROW_SHIFT = COLUMN_BITS;
+    protected static final int LEVEL_SHIFT = ROW_SHIFT + ROW_BITS;
+    protected static final int DATASET_SHIFT = LEVEL_SHIFT + LEVEL_BITS;
+
+    protected static final ConcurrentHashMap<String, Integer> datasetIds = new ConcurrentHashMap<String, Integer>();
+    protected static final List<String> datasetNames = new ArrayList<String>(Arrays.asList((String) null));
+
+    /**
+     * Returns the dataset ID of a cache name, registering the name if it hasn't been seen before.
+     *
+     * @param cacheName the cache name.
+     *
+     * @return the cache name's dataset ID, or 0 if the name is null or the registry is full.
+     */
+    public static int getDatasetId(String cacheName)
+    {
+        if (cacheName == null)
+            return 0;
+
+        Integer id = datasetIds.get(cacheName);
+        if (id != null)
+            return id;
+
+        synchronized (datasetNames)
+        {
+            id = datasetIds.get(cacheName);
+            if (id != null)
+                return id;
+
+            if (datasetNames.size() > MAX_DATASET_ID)
+                return 0;
+
+            id = datasetNames.size();
+            datasetNames.add(cacheName);
+            datasetIds.put(cacheName, id);
+
+            return id;
+        }
+    }
+
+    /**
+     * Returns the cache name registered with a dataset ID.
+     *
+     * @param datasetId the dataset ID.
+     *
+     * @return the cache name, or null if no name is registered with the ID.
+     */
+    public static String getCacheName(int datasetId)
+    {
+        synchronized (datasetNames)
+        {
+            return datasetId > 0 && datasetId < datasetNames.size() ? datasetNames.get(datasetId) : null;
+        }
+    }
+
+    /**
+     * Packs a tile's dataset ID, level, row and column.
+     *
+     * @param datasetId the dataset ID, as returned by {@link #getDatasetId(String)}.
+     * @param level     the tile's level number.
+     * @param row       the tile's row.
+     * @param column    the tile's column.
+     *
+     * @return the packed key, or {@link #NONE} if any of the values is out of range.
+     */
+    public static long pack(int datasetId, int level, int row, int column)
+    {
+        if (datasetId <= 0 || datasetId > MAX_DATASET_ID || level < 0 || level > MAX_LEVEL
+            || row < 0 || row > MAX_ROW || column < 0 || column > MAX_COLUMN)
+            return NONE;
+
+        return ((long) datasetId << DATASET_SHIFT) | ((long) level << LEVEL_SHIFT) | ((long) row << ROW_SHIFT)
+            | column;
+    }
+
+    /**
+     * Packs a tile's cache name, level, row and column.
+     *
+     * @param cacheName the tile's cache name.
+     * @param level     the tile's level number.
+     * @param row       the tile's row.
+     * @param column    the tile's column.
+     *
+     * @return the packed key, or {@link #NONE} if the tile can't be packed.
+     */
+    public static long pack(String cacheName, int level, int row, int column)
+    {
+        return pack(getDatasetId(cacheName), level, row, column);
+    }
+
+    /**
+     * Packs a tile key.
+     *
+     * @param key the tile key.
+     *
+     * @return the packed key, or {@link #NONE} if the key can't be packed.
+     *
+     * @throws IllegalArgumentException if the key is null.
+     */
+    public static long pack(TileKey key)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        return key.getPackedKey();
+    }
+
+    /**
+     * Creates the tile key identified by a packed key.
+     *
+     * @param packedKey the packed key.
+     *
+     * @return the tile key.
+     *
+     * @throws IllegalArgumentException if the packed key is negative or its dataset ID is not registered.
+     */
+    public static TileKey toTileKey(long packedKey)
+    {
+        String cacheName = packedKey >= 0 ? getCacheName(getDatasetId(packedKey)) : null;
+        if (cacheName == null)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", packedKey);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        return new TileKey(getLevelNumber(packedKey), getRow(packedKey), getColumn(packedKey), cacheName);
+    }
+
+    public static int getDatasetId(long packedKey)
+    {
+        return (int) (packedKey >>> DATASET_SHIFT) & MAX_DATASET_ID;
+    }
+
+    public static int getLevelNumber(long packedKey)
+    {
+        return (int) (packedKey >>> LEVEL_SHIFT) & MAX_LEVEL;
+    }
+
+    public static int getRow(long packedKey)
+    {
+        return (int) (packedKey >>> ROW_SHIFT) & MAX_ROW;
+    }
+
+    public static int getColumn(long packedKey)
+    {
+        return (int) packedKey & MAX_COLUMN;
+    }
+}
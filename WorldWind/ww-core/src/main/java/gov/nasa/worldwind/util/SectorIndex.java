@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.geom.Sector;
+
+import java.util.*;
+
+/**
+ * A spatial index of items bounded by one or more sectors. The index is a packed R-tree built by sort-tile-recursive
+ * bulk loading: items are added, the tree is built once, and the tree is then queried for the items whose sectors
+ * intersect a region. Queries return each intersecting item once, in the order the items were added, which makes the
+ * index suitable for collections whose order is significant, such as a list of shapes in drawing order.
+ * <p/>
+ * Unlike {@link BasicQuadTree}, which stores items in every leaf cell they overlap, the index stores each sector once
+ * regardless of its size, so both very large and very small items are indexed efficiently.
+ * <p/>
+ * Adding items after the tree is built causes the tree to be rebuilt on the next query. SectorIndex is not thread
+ * safe.
+ *
+ * @param <T> the type of item held in the index.
+ *
+ * @version $Id$
+ */
+public class SectorIndex<T>
+{
+    /** The maximum number of entries in a tree node. */
+    protected static final int NODE_CAPACITY = 8;
+
+    protected ArrayList<T> items = new ArrayList<T>();
+
+    // Entries, one per item sector, in struct-of-arrays form. Bounds are minLat, maxLat, minLon, maxLon in degrees.
+    protected int numEntries;
+    protected int[] entryItems = new int[16];
+    protected double[] entryBounds = new double[64];
+
+    // The packed tree. Level 0 holds the entries sorted into leaves; each subsequent level holds the bounds of the
+    // groups of NODE_CAPACITY nodes in the level below it. The last level holds the single root node.
+    protected int[] sortedEntries;
+    protected List<double[]> levelBounds = new ArrayList<double[]>();
+    protected List<Integer> levelSizes = new ArrayList<Integer>();
+    protected boolean built;
+
+    // Per-query state. Items are marked with the query stamp to report each item at most once per query.
+    protected int queryStamp;
+    protected int[] itemStamps = new int[0];
+
+    /** Creates an empty index. */
+    public SectorIndex()
+    {
+    }
+
+    /**
+     * Returns the number of items in the index.
+     *
+     * @return the number of items.
+     */
+    public int size()
+    {
+        return this.items.size();
+    }
+
+    /** Removes all items from the index. */
+    public void clear()
+    {
+        this.items.clear();
+        this.numEntries = 0;
+        this.levelBounds.clear();
+        this.levelSizes.clear();
+        this.built = false;
+    }
+
+    /**
+     * Adds an item bounded by a single sector.
+     *
+     * @param item   the item to add.
+     * @param sector the sector bounding the item.
+     *
+     * @throws IllegalArgumentException if either argument is null.
+     */
+    public void add(T item, Sector sector)
+    {
+        if (sector == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.add(item, Arrays.asList(sector));
+    }
+
+    /**
+     * Adds an item bounded by one or more sectors, such as an item spanning the dateline. The item is reported at most
+     * once by a query, even when several of its sectors intersect the query region. Null sectors are ignored.
+     *
+     * @param item    the item to add.
+     * @param sectors the sectors bounding the item.
+     *
+     * @throws IllegalArgumentException if either argument is null.
+     */
+    public void add(T item, Iterable<? extends Sector> sectors)
+    {
+        if (item == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (sectors == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int itemId = this.items.size();
+        this.items.add(item);
+
+        for (Sector sector : sectors)
+        {
+            if (sector == null)
+                continue;
+
+            int i = this.numEntries++;
+            if (i == this.entryItems.length)
+            {
+                this.entryItems = Arrays.copyOf(this.entryItems, 2 * i);
+                this.entryBounds = Arrays.copyOf(this.entryBounds, 8 * i);
+            }
+
+            this.entryItems[i] = itemId;
+            this.entryBounds[4 * i] = sector.getMinLatitude().degrees;
+            this.entryBounds[4 * i + 1] = sector.getMaxLatitude().degrees;
+            this.entryBounds[4 * i + 2] = sector.getMinLongitude().degrees;
+            this.entryBounds[4 * i + 3] = sector.getMaxLongitude().degrees;
+        }
+
+        this.built = false;
+    }
+
+    /** Builds the tree over the items added so far. Queries call this automatically when the index has changed. */
+    public void build()
+    {
+        int n = this.numEntries;
+
+        this.sortedEntries = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            this.sortedEntries[i] = i;
+        }
+
+        this.levelBounds.clear();
+        this.levelSizes.clear();
+
+        if (n > 0)
+        {
+            // Sort-tile-recursive packing: sort by longitude center, cut into vertical slices, sort each slice by
+            // latitude center, and fill the leaves from the slices in order.
+            int numLeaves = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            int numSlices = (int) Math.ceil(Math.sqrt(numLeaves));
+            int sliceSize = numSlices * NODE_CAPACITY;
+
+            this.sortEntries(0, n, 2);
+            for (int start = 0; start < n; start += sliceSize)
+            {
+                this.sortEntries(start, Math.min(n, start + sliceSize), 0);
+            }
+
+            // Compute the leaf bounds, then the bounds of each successive level until a level has a single node.
+            double[] bounds = new double[4 * numLeaves];
+            for (int leaf = 0; leaf < numLeaves; leaf++)
+            {
+                initBounds(bounds, leaf);
+                for (int i = leaf * NODE_CAPACITY; i < Math.min(n, (leaf + 1) * NODE_CAPACITY); i++)
+                {
+                    unionBounds(bounds, leaf, this.entryBounds, this.sortedEntries[i]);
+                }
+            }
+            this.levelBounds.add(bounds);
+            this.levelSizes.add(numLeaves);
+
+            int size = numLeaves;
+            while (size > 1)
+            {
+                int parentSize = (size + NODE_CAPACITY - 1) / NODE_CAPACITY;
+                double[] parentBounds = new double[4 * parentSize];
+                for (int p = 0; p < parentSize; p++)
+                {
+                    initBounds(parentBounds, p);
+                    for (int c = p * NODE_CAPACITY; c < Math.min(size, (p + 1) * NODE_CAPACITY); c++)
+                    {
+                        unionBounds(parentBounds, p, bounds, c);
+                    }
+                }
+
+                this.levelBounds.add(parentBounds);
+                this.levelSizes.add(parentSize);
+                bounds = parentBounds;
+                size = parentSize;
+            }
+        }
+
+        if (this.itemStamps.length < this.items.size())
+        {
+            this.itemStamps = new int[this.items.size()];
+            this.queryStamp = 0;
+        }
+
+        this.built = true;
+    }
+
+    /**
+     * Finds the items having a sector that intersects a specified sector. Sectors sharing only an edge are considered
+     * intersecting, consistent with {@link Sector#intersects(Sector)}.
+     *
+     * @param sector   the sector of interest.
+     * @param outItems a list in which to place the items. If null, a new list is created.
+     *
+     * @return the intersecting items in the order they were added to the index. The same list passed as the
+     *         <code>outItems</code> argument is returned, or a new list if that argument is null.
+     *
+     * @throws IllegalArgumentException if the sector is null.
+     */
+    public List<T> getItemsInRegion(Sector sector, List<T> outItems)
+    {
+        if (sector == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (outItems == null)
+            outItems = new ArrayList<T>();
+
+        if (!this.built)
+            this.build();
+
+        if (this.levelBounds.isEmpty())
+            return outItems;
+
+        double[] region = {sector.getMinLatitude().degrees, sector.getMaxLatitude().degrees,
+            sector.getMinLongitude().degrees, sector.getMaxLongitude().degrees};
+
+        int stamp = this.nextQueryStamp();
+        int[] found = new int[16];
+        int numFound = 0;
+
+        // Traverse the tree top down, using an explicit stack of (level, node) pairs.
+        int[] stack = new int[2 * 16];
+        int top = 0;
+        stack[top++] = this.levelBounds.size() - 1;
+        stack[top++] = 0;
+
+        while (top > 0)
+        {
+            int node = stack[--top];
+            int level = stack[--top];
+
+            if (!intersects(this.levelBounds.get(level), node, region))
+                continue;
+
+            if (level > 0)
+            {
+                int numChildren = this.levelSizes.get(level - 1);
+                for (int c = node * NODE_CAPACITY; c < Math.min(numChildren, (node + 1) * NODE_CAPACITY); c++)
+                {
+                    if (top + 2 > stack.length)
+                        stack = Arrays.copyOf(stack, 2 * stack.length);
+                    stack[top++] = level - 1;
+                    stack[top++] = c;
+                }
+                continue;
+            }
+
+            for (int i = node * NODE_CAPACITY; i < Math.min(this.numEntries, (node + 1) * NODE_CAPACITY); i++)
+            {
+                int entry = this.sortedEntries[i];
+                int itemId = this.entryItems[entry];
+                if (this.itemStamps[itemId] == stamp || !intersects(this.entryBounds, entry, region))
+                    continue;
+
+                this.itemStamps[itemId] = stamp;
+                if (numFound == found.length)
+                    found = Arrays.copyOf(found, 2 * found.length);
+                found[numFound++] = itemId;
+            }
+        }
+
+        // Report the items in the order they were added.
+        Arrays.sort(found, 0, numFound);
+        for (int i = 0; i < numFound; i++)
+        {
+            outItems.add(this.items.get(found[i]));
+        }
+
+        return outItems;
+    }
+
+    protected int nextQueryStamp()
+    {
+        if (++this.queryStamp == 0) // Stamps wrapped around. Clear the marks so no item appears already reported.
+        {
+            Arrays.fill(this.itemStamps, 0);
+            this.queryStamp = 1;
+        }
+
+        return this.queryStamp;
+    }
+
+    /**
+     * Sorts a range of the sorted entry array by the center of the entries' bounds along one axis.
+     *
+     * @param start the first index of the range, inclusive.
+     * @param end   the last index of the range, exclusive.
+     * @param axis  0 to sort by latitude, 2 to sort by longitude.
+     */
+    protected void sortEntries(int start, int end, final int axis)
+    {
+        Integer[] range = new Integer[end - start];
+        for (int i = start; i < end; i++)
+        {
+            range[i - start] = this.sortedEntries[i];
+        }
+
+        final double[] b = this.entryBounds;
+        Arrays.sort(range, new Comparator<Integer>()
+        {
+            public int compare(Integer e1, Integer e2)
+            {
+                return Double.compare(b[4 * e1 + axis] + b[4 * e1 + axis + 1], b[4 * e2 + axis] + b[4 * e2 + axis + 1]);
+            }
+        });
+
+        for (int i = start; i < end; i++)
+        {
+            this.sortedEntries[i] = range[i - start];
+        }
+    }
+
+    protected static void initBounds(double[] bounds, int node)
+    {
+        bounds[4 * node] = Double.MAX_VALUE;
+        bounds[4 * node + 1] = -Double.MAX_VALUE;
+        bounds[4 * node + 2] = Double.MAX_VALUE;
+        bounds[4 * node + 3] = -Double.MAX_VALUE;
+    }
+
+    protected static void unionBounds(double[] bounds, int node, double[] other, int otherNode)
+    {
+        bounds[4 * node] = Math.min(bounds[4 * node], other[4 * otherNode]);
+        bounds[4 * node + 1] = Math.max(bounds[4 * node + 1], other[4 * otherNode + 1]);
+        bounds[4 * node + 2] = Math.min(bounds[4 * node + 2], other[4 * otherNode + 2]);
+        bounds[4 * node + 3] = Math.max(bounds[4 * node + 3], other[4 * otherNode + 3]);
+    }
+
+    protected static boolean intersects(double[] bounds, int node, double[] region)
+    {
+        int b = 4 * node;
+        return bounds[b] <= region[1] && bounds[b + 1] >= region[0]
+            && bounds[b + 2] <= region[3] && bounds[b + 3] >= region[2];
+    }
+}
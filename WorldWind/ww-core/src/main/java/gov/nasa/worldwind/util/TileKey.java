@@ -18,6 +18,7 @@ public class TileKey implements Comparable<TileKey>
     private final int col;
     private final String cacheName;
     private final int hash;
+    private volatile long packedKey; // computed on first use; 0 until then
 
     /**
      * @param level
@@ -127,6 +128,22 @@ public class TileKey implements Comparable<TileKey>
         return cacheName;
     }
 
+    /**
+     * Returns this key packed into a <code>long</code>. The packed key is computed on first use.
+     *
+     * @return this key's packed key, or {@link PackedTileKey#NONE} if this key can't be packed.
+     *
+     * @see PackedTileKey
+     */
+    public long getPackedKey()
+    {
+        long key = this.packedKey;
+        if (key == 0)
+            this.packedKey = key = PackedTileKey.pack(this.cacheName, this.level, this.row, this.col);
+
+        return key;
+    }
+
     private int computeHash()
     {
         int result;
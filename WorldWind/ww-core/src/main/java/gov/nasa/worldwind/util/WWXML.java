@@ -350,6 +350,9 @@ public class WWXML
             throw new IllegalArgumentException(message);
         }
 
+        if (Configuration.getBooleanValue(AVKey.XML_CURSOR_PARSING, false))
+            return openCursorEventReaderStream(inputStream, isNamespaceAware);
+
         XMLInputFactory inputFactory = XMLInputFactory.newInstance();
         inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, isNamespaceAware);
         inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
@@ -365,6 +368,46 @@ public class WWXML
         }
     }
 
+    /**
+     * Opens an XML event stream given an input stream, and a namespace-aware processing mode. The event stream reads
+     * from a cursor-based {@link XMLStreamReader} through a {@link gov.nasa.worldwind.util.xml.CursorXMLEventReader},
+     * which allocates far fewer objects than the XML parser's event reader. Event streams opened by the other methods
+     * of this class are cursor-based when the configuration value {@link AVKey#XML_CURSOR_PARSING} is true.
+     *
+     * @param inputStream      an XML document as an input stream.
+     * @param isNamespaceAware true to enable namespace-aware processing and false to disable it.
+     *
+     * @return an XMLEventReader for the stream content.
+     *
+     * @throws IllegalArgumentException if the input stream is null.
+     * @throws WWRuntimeException       if an exception or error occurs while parsing the stream. The causing exception
+     *                                  is included in this exception's {@link Throwable#initCause(Throwable)}
+     */
+    public static XMLEventReader openCursorEventReaderStream(InputStream inputStream, boolean isNamespaceAware)
+    {
+        if (inputStream == null)
+        {
+            String message = Logging.getMessage("nullValue.InputStreamIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, isNamespaceAware);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+
+        try
+        {
+            return new gov.nasa.worldwind.util.xml.CursorXMLEventReader(
+                inputFactory.createXMLStreamReader(inputStream));
+        }
+        catch (XMLStreamException e)
+        {
+            String message = Logging.getMessage("generic.ExceptionAttemptingToParseXml", inputStream);
+            throw new WWRuntimeException(message, e);
+        }
+    }
+
     /**
      * Opens an XML event stream given an input stream.
      *
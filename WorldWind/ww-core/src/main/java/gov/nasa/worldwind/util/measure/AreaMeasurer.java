@@ -10,7 +10,9 @@ import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.util.*;
 
-import java.util.List;
+import java.beans.PropertyChangeListener;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Utility class to compute approximations of projected and surface (terrain following) area on a globe.
@@ -27,6 +29,10 @@ import java.util.List;
  * grid. Cells which center is inside the path  have their area estimated and summed according to the overall slope
  * at the cell south-west corner.</p>
  *
+ * <p>Surface area can also be measured asynchronously by {@link #measureSurfaceArea(Globe, ExecutorService,
+ * PropertyChangeListener)}, which measures bands of the sampling grid in parallel. Each cell's area is estimated from
+ * the elevations at its four corners, and cells are subdivided where the terrain is rough or the path crosses them.</p>
+ *
  * @author Patrick Murris
  * @version $Id$
  * @see MeasureTool
@@ -35,6 +41,8 @@ import java.util.List;
 public class AreaMeasurer extends LengthMeasurer implements MeasurableArea
 {
     private static final double DEFAULT_AREA_SAMPLING_STEPS = 32; // sampling grid max rows or cols
+    private static final int MAX_AREA_SUBDIVISIONS = 3; // adaptive subdivisions of a sampling grid cell
+    protected static final String SURFACE_AREA_MEASUREMENT = "AreaMeasurer.SurfaceArea";
 
     private List<? extends Position> subdividedPositions;
     private Cell[][] sectorCells;
@@ -138,6 +146,52 @@ public class AreaMeasurer extends LengthMeasurer implements MeasurableArea
         return this.surfaceArea;
     }
 
+    /**
+     * Measure the terrain following surface area asynchronously. Bands of the sampling grid rows are measured in
+     * parallel by the executor, with the elevations of each band's cells queried in bulk.
+     *
+     * <p>Each cell's area is estimated from the elevations at its corners. Cells are subdivided until the area gained
+     * by a subdivision is less than the terrain tolerance, and cells the path crosses are subdivided to follow the path
+     * more closely. A cell counts toward the area if its center is inside the path. The measurement's error bound is
+     * the sum of the area gained by the last subdivision of each cell and the area of the cells the path still
+     * crosses.</p>
+     *
+     * <p>If a measurement with the current positions and settings is already complete, a completed task is returned.
+     * If one is in progress, its task is returned.</p>
+     *
+     * @param globe    the globe to draw terrain information from.
+     * @param executor the executor to measure the grid bands. May be null, in which case the area is measured on the
+     *                 current thread before this method returns.
+     * @param listener a listener to receive the measurement's progress events. May be null.
+     * @return the measurement task, whose value is -1 if the position list does not describe a closed path or is too
+     *         short.
+     * @throws IllegalArgumentException if globe is <code>null</code>.
+     * @see MeasurementTask
+     */
+    public Future<Measurement> measureSurfaceArea(Globe globe, ExecutorService executor,
+        PropertyChangeListener listener)
+    {
+        if (globe == null)
+        {
+            String message = Logging.getMessage("nullValue.GlobeIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (getBoundingSector() == null || !this.isClosedShape())
+            return MeasurementTask.fromMeasurement(new Measurement(-1, 0));
+
+        List<Object> key = this.createMeasurementKey(globe, SURFACE_AREA_MEASUREMENT);
+        key.add(this.areaTerrainSamplingSteps);
+        Future<Measurement> measurement = this.findMeasurement(key);
+        if (measurement != null)
+            return measurement;
+
+        SurfaceAreaTask task = new SurfaceAreaTask(this, key, globe, listener);
+        this.startMeasurement(key, task, executor);
+        return task;
+    }
+
     public double getProjectedArea(Globe globe)
     {
         if (globe == null)
@@ -347,6 +401,313 @@ public class AreaMeasurer extends LengthMeasurer implements MeasurableArea
         return -1;
     }
 
+    // *** Surface area - asynchronous ***
+
+    /**
+     * Computes the area of a cell from the elevations at its corners, as the area of two triangles in a frame tangent
+     * to the globe at the cell.
+     *
+     * @param width  the cell's width in meters.
+     * @param height the cell's height in meters.
+     * @param eleSW  the elevation at the cell's south-west corner.
+     * @param eleSE  the elevation at the cell's south-east corner.
+     * @param eleNW  the elevation at the cell's north-west corner.
+     * @param eleNE  the elevation at the cell's north-east corner.
+     * @return the cell's area in square meters.
+     */
+    protected static double computeCellArea(double width, double height, double eleSW, double eleSE, double eleNW,
+        double eleNE)
+    {
+        double zSE = eleSE - eleSW;
+        double zNW = eleNW - eleSW;
+        double zNE = eleNE - eleSW;
+
+        // Triangle SW, SE, NE: (width, 0, zSE) x (width, height, zNE)
+        double x = -zSE * height;
+        double y = zSE * width - width * zNE;
+        double z = width * height;
+        double area = Math.sqrt(x * x + y * y + z * z);
+
+        // Triangle SW, NE, NW: (width, height, zNE) x (0, height, zNW)
+        x = height * zNW - zNE * height;
+        y = -width * zNW;
+        area += Math.sqrt(x * x + y * y + z * z);
+
+        return area / 2;
+    }
+
+    /** A cell of the surface area sampling grid, or one of its subdivisions. */
+    protected static class SurfaceCell
+    {
+        protected final double minLat;
+        protected final double minLon;
+        protected final double deltaLat;
+        protected final double deltaLon;
+        protected final double eleSW, eleSE, eleNW, eleNE;
+        protected final boolean insideSW, insideSE, insideNW, insideNE, insideCenter;
+        protected final int depth;
+
+        public SurfaceCell(double minLat, double minLon, double deltaLat, double deltaLon, double eleSW, double eleSE,
+            double eleNW, double eleNE, boolean insideSW, boolean insideSE, boolean insideNW, boolean insideNE,
+            boolean insideCenter, int depth)
+        {
+            this.minLat = minLat;
+            this.minLon = minLon;
+            this.deltaLat = deltaLat;
+            this.deltaLon = deltaLon;
+            this.eleSW = eleSW;
+            this.eleSE = eleSE;
+            this.eleNW = eleNW;
+            this.eleNE = eleNE;
+            this.insideSW = insideSW;
+            this.insideSE = insideSE;
+            this.insideNW = insideNW;
+            this.insideNE = insideNE;
+            this.insideCenter = insideCenter;
+            this.depth = depth;
+        }
+
+        public boolean isAnyInside()
+        {
+            return this.insideSW || this.insideSE || this.insideNW || this.insideNE || this.insideCenter;
+        }
+
+        public boolean isAllInside()
+        {
+            return this.insideSW && this.insideSE && this.insideNW && this.insideNE && this.insideCenter;
+        }
+
+        public double computeArea(double radius)
+        {
+            double width = this.deltaLon * radius * Math.cos(this.minLat + this.deltaLat / 2);
+            double height = this.deltaLat * radius;
+            return computeCellArea(width, height, this.eleSW, this.eleSE, this.eleNW, this.eleNE);
+        }
+    }
+
+    /**
+     * Measures the surface area of a snapshot of a measurer's path. Each part measures a band of the sampling grid's
+     * rows.
+     */
+    protected static class SurfaceAreaTask extends MeasurementTask
+    {
+        protected final AreaMeasurer measurer;
+        protected final Object key;
+        protected final Globe globe;
+        protected final List<? extends Position> subdividedPositions;
+        protected final Sector sector;
+        protected final double tolerance;
+        protected final int latSteps;
+        protected final int lonSteps;
+
+        public SurfaceAreaTask(AreaMeasurer measurer, Object key, Globe globe, PropertyChangeListener listener)
+        {
+            this(measurer, key, globe, computeLatSteps(measurer.getBoundingSector(),
+                measurer.getAreaTerrainSamplingSteps()), listener);
+        }
+
+        protected SurfaceAreaTask(AreaMeasurer measurer, Object key, Globe globe, int latSteps,
+            PropertyChangeListener listener)
+        {
+            super(Math.min(latSteps, getMaxMeasurementParts()), listener);
+
+            this.measurer = measurer;
+            this.key = key;
+            this.globe = globe;
+            this.sector = measurer.getBoundingSector();
+            this.tolerance = measurer.getTerrainTolerance();
+            // Only the path's locations are needed to select cells, so don't follow terrain.
+            this.subdividedPositions = subdividePositions(globe, measurer.getPositions(),
+                measurer.getMaxSegmentLength(), false, measurer.getPathType());
+
+            // Sample the bounding sector with cells about the same length in side, as computeSurfaceAreaSampling does.
+            double steps = measurer.getAreaTerrainSamplingSteps();
+            double stepRadians = Math.max(this.sector.getDeltaLatRadians() / steps,
+                this.sector.getDeltaLonRadians() / steps);
+            this.latSteps = latSteps;
+            this.lonSteps = Math.max(1, (int) Math.round(this.sector.getDeltaLonRadians() / stepRadians
+                * Math.cos(this.sector.getCentroid().getLatitude().radians)));
+        }
+
+        protected static int computeLatSteps(Sector sector, double steps)
+        {
+            double stepRadians = Math.max(sector.getDeltaLatRadians() / steps, sector.getDeltaLonRadians() / steps);
+            return Math.max(1, (int) Math.round(sector.getDeltaLatRadians() / stepRadians));
+        }
+
+        protected void measurementComplete(Measurement measurement)
+        {
+            if (!this.coarseElevations)
+                this.measurer.memoizeMeasurement(this.key, measurement);
+        }
+
+        protected boolean isInside(LatLon location)
+        {
+            return WWMath.isLocationInside(location, this.subdividedPositions);
+        }
+
+        protected void measurePart(int part)
+        {
+            int firstRow = part * this.latSteps / this.numParts;
+            int lastRow = (part + 1) * this.latSteps / this.numParts;
+            int numRows = lastRow - firstRow;
+            int numCols = this.lonSteps;
+            double latStep = this.sector.getDeltaLatRadians() / this.latSteps;
+            double lonStep = this.sector.getDeltaLonRadians() / this.lonSteps;
+            double minLat = this.sector.getMinLatitude().radians + firstRow * latStep;
+            double minLon = this.sector.getMinLongitude().radians;
+
+            // Query the elevations of the band's grid points in one call.
+            List<LatLon> locations = new ArrayList<LatLon>((numRows + 1) * (numCols + 1));
+            for (int i = 0; i <= numRows; i++)
+            {
+                for (int j = 0; j <= numCols; j++)
+                {
+                    locations.add(LatLon.fromRadians(minLat + i * latStep, minLon + j * lonStep));
+                }
+            }
+            double[] elevations = new double[locations.size()];
+            if (!getElevations(this.globe, locations, latStep, elevations))
+                this.coarseElevations = true;
+
+            boolean[] inside = new boolean[locations.size()];
+            for (int k = 0; k < inside.length; k++)
+            {
+                inside[k] = this.isInside(locations.get(k));
+            }
+
+            List<SurfaceCell> cells = new ArrayList<SurfaceCell>();
+            for (int i = 0; i < numRows; i++)
+            {
+                for (int j = 0; j < numCols; j++)
+                {
+                    int sw = i * (numCols + 1) + j;
+                    int nw = sw + numCols + 1;
+                    double lat = minLat + i * latStep;
+                    double lon = minLon + j * lonStep;
+                    SurfaceCell cell = new SurfaceCell(lat, lon, latStep, lonStep, elevations[sw], elevations[sw + 1],
+                        elevations[nw], elevations[nw + 1], inside[sw], inside[sw + 1], inside[nw], inside[nw + 1],
+                        this.isInside(LatLon.fromRadians(lat + latStep / 2, lon + lonStep / 2)), 0);
+                    if (cell.isAnyInside())
+                        cells.add(cell);
+                }
+            }
+
+            double area = 0;
+            double error = 0;
+            while (!cells.isEmpty())
+            {
+                if (this.isCancelled())
+                    return;
+
+                // Query the elevations at the midpoints of every cell's edges and at its center in one call.
+                locations.clear();
+                for (SurfaceCell cell : cells)
+                {
+                    double midLat = cell.minLat + cell.deltaLat / 2;
+                    double midLon = cell.minLon + cell.deltaLon / 2;
+                    locations.add(LatLon.fromRadians(cell.minLat, midLon));
+                    locations.add(LatLon.fromRadians(midLat, cell.minLon));
+                    locations.add(LatLon.fromRadians(midLat, midLon));
+                    locations.add(LatLon.fromRadians(midLat, cell.minLon + cell.deltaLon));
+                    locations.add(LatLon.fromRadians(cell.minLat + cell.deltaLat, midLon));
+                }
+                elevations = new double[locations.size()];
+                if (!getElevations(this.globe, locations, cells.get(0).deltaLat / 2, elevations))
+                    this.coarseElevations = true;
+
+                List<SurfaceCell> nextCells = new ArrayList<SurfaceCell>();
+                SurfaceCell[] children = new SurfaceCell[4];
+                for (int k = 0; k < cells.size(); k++)
+                {
+                    SurfaceCell cell = cells.get(k);
+                    this.subdivideCell(cell, locations, elevations, 5 * k, children);
+
+                    double radius = this.globe.getRadiusAt(Angle.fromRadians(cell.minLat + cell.deltaLat / 2),
+                        Angle.fromRadians(cell.minLon + cell.deltaLon / 2));
+                    double coarse = cell.computeArea(radius);
+                    double fine = 0;
+                    double[] childAreas = new double[4];
+                    for (int c = 0; c < 4; c++)
+                    {
+                        childAreas[c] = children[c].computeArea(radius);
+                        fine += childAreas[c];
+                    }
+                    double gain = Math.abs(fine - coarse);
+                    boolean boundary = !cell.isAllInside();
+
+                    if ((gain > this.tolerance * coarse || boundary) && cell.depth + 1 < MAX_AREA_SUBDIVISIONS)
+                    {
+                        for (SurfaceCell child : children)
+                        {
+                            if (child.isAnyInside())
+                                nextCells.add(child);
+                        }
+                        continue;
+                    }
+
+                    for (int c = 0; c < 4; c++)
+                    {
+                        if (children[c].insideCenter)
+                            area += childAreas[c];
+                        // A cell the path crosses is counted entirely or not at all.
+                        if (!children[c].isAllInside())
+                            error += childAreas[c];
+                    }
+                    if (!boundary)
+                        error += gain;
+                }
+
+                cells = nextCells;
+            }
+
+            this.addResult(area, error);
+        }
+
+        /**
+         * Subdivides a cell into four children from the elevations at the midpoints of its edges and at its center.
+         *
+         * @param cell       the cell to subdivide.
+         * @param locations  the sample locations: the south, west, center, east and north midpoints.
+         * @param elevations the elevations at the sample locations.
+         * @param index      the index of the cell's first sample.
+         * @param children   an array to receive the south-west, south-east, north-west and north-east children.
+         */
+        protected void subdivideCell(SurfaceCell cell, List<LatLon> locations, double[] elevations, int index,
+            SurfaceCell[] children)
+        {
+            double eleS = elevations[index];
+            double eleW = elevations[index + 1];
+            double eleC = elevations[index + 2];
+            double eleE = elevations[index + 3];
+            double eleN = elevations[index + 4];
+            boolean insideS = this.isInside(locations.get(index));
+            boolean insideW = this.isInside(locations.get(index + 1));
+            boolean insideE = this.isInside(locations.get(index + 3));
+            boolean insideN = this.isInside(locations.get(index + 4));
+            boolean insideC = cell.insideCenter;
+
+            double dLat = cell.deltaLat / 2;
+            double dLon = cell.deltaLon / 2;
+            double midLat = cell.minLat + dLat;
+            double midLon = cell.minLon + dLon;
+            int depth = cell.depth + 1;
+
+            children[0] = new SurfaceCell(cell.minLat, cell.minLon, dLat, dLon, cell.eleSW, eleS, eleW, eleC,
+                cell.insideSW, insideS, insideW, insideC,
+                this.isInside(LatLon.fromRadians(cell.minLat + dLat / 2, cell.minLon + dLon / 2)), depth);
+            children[1] = new SurfaceCell(cell.minLat, midLon, dLat, dLon, eleS, cell.eleSE, eleC, eleE,
+                insideS, cell.insideSE, insideC, insideE,
+                this.isInside(LatLon.fromRadians(cell.minLat + dLat / 2, midLon + dLon / 2)), depth);
+            children[2] = new SurfaceCell(midLat, cell.minLon, dLat, dLon, eleW, eleC, cell.eleNW, eleN,
+                insideW, insideC, cell.insideNW, insideN,
+                this.isInside(LatLon.fromRadians(midLat + dLat / 2, cell.minLon + dLon / 2)), depth);
+            children[3] = new SurfaceCell(midLat, midLon, dLat, dLon, eleC, eleE, eleN, cell.eleNE,
+                insideC, insideE, insideN, cell.insideNE,
+                this.isInside(LatLon.fromRadians(midLat + dLat / 2, midLon + dLon / 2)), depth);
+        }
+    }
+
 // Below code is an attempt at computing the surface area using geometry.
 
 //    private static final double DEFAULT_AREA_CONVERGENCE_PERCENT = 2;   // stop sudividing when increase in area
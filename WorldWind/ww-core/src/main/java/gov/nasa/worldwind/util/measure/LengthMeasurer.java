@@ -11,8 +11,9 @@ import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.render.Polyline;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.beans.PropertyChangeListener;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Utility class to measure length along a path on a globe.
@@ -30,6 +31,11 @@ import java.util.List;
  * minimum number of samples used for the whole length can be set with setLengthTerrainSamplingSteps(). However,
  * the sampling process will keep a minimum interval of 30 meters between samples.
  *
+ * <p>The length can also be measured asynchronously by {@link #measureLength(Globe, ExecutorService,
+ * PropertyChangeListener)}, which measures the path's segments in parallel and subdivides them adaptively where the
+ * terrain is rough. Asynchronous measurements are remembered for the positions and settings they were made with, so
+ * measuring an unchanged path again, or a path in which only some segments changed, reuses earlier results.</p>
+ *
  * @author Patrick Murris
  * @version $Id$
  * @see MeasureTool
@@ -39,6 +45,11 @@ public class LengthMeasurer implements MeasurableLength
     private static final double DEFAULT_TERRAIN_SAMPLING_STEPS = 128; // number of samples when following terrain
     private static final double DEFAULT_MAX_SEGMENT_LENGTH = 100e3; // size above which segments are subdivided
     private static final double DEFAULT_MIN_SEGMENT_LENGTH = 30; // minimum length of a terrain following subdivision
+    private static final double DEFAULT_TERRAIN_TOLERANCE = 1e-3; // relative change below which terrain is smooth
+    private static final int MAX_LENGTH_SUBDIVISIONS = 6; // adaptive subdivisions of a terrain following interval
+    private static final int MAX_MEMOIZED_MEASUREMENTS = 1024;
+    protected static final String LENGTH_MEASUREMENT = "LengthMeasurer.Length";
+    protected static final String SEGMENT_MEASUREMENT = "LengthMeasurer.Segment";
 
     private List<? extends Position> positions;
     private List<? extends Position> subdividedPositions;
@@ -47,7 +58,17 @@ public class LengthMeasurer implements MeasurableLength
     private double maxSegmentLength = DEFAULT_MAX_SEGMENT_LENGTH;
     private Sector sector;
     private double lengthTerrainSamplingSteps = DEFAULT_TERRAIN_SAMPLING_STEPS;
+    private double terrainTolerance = DEFAULT_TERRAIN_TOLERANCE;
     protected double length = -1;
+    // Asynchronous measurements by key, least recently used first, and the measurements in progress.
+    protected final Map<Object, Measurement> measurements = new LinkedHashMap<Object, Measurement>(16, 0.75f, true)
+    {
+        protected boolean removeEldestEntry(Map.Entry<Object, Measurement> eldest)
+        {
+            return this.size() > MAX_MEMOIZED_MEASUREMENTS;
+        }
+    };
+    protected final Map<Object, MeasurementTask> pendingMeasurements = new HashMap<Object, MeasurementTask>();
 
     public LengthMeasurer()
     {
@@ -94,13 +115,18 @@ public class LengthMeasurer implements MeasurableLength
             throw new IllegalArgumentException(message);
         }
 
+        // A different list containing the same positions leaves the cached values valid. The same list is assumed to
+        // have been modified by the caller.
+        boolean unchanged = positions != this.positions && positions.equals(this.positions);
+
         this.positions = positions;
         if (this.positions.size() > 2)
             this.sector = Sector.boundingSector(this.positions);
         else
             this.sector = null;
 
-        clearCachedValues();
+        if (!unchanged)
+            clearCachedValues();
     }
 
     public boolean isFollowTerrain()
@@ -228,6 +254,36 @@ public class LengthMeasurer implements MeasurableLength
         }
     }
 
+    /**
+     * Get the relative change in length or area below which terrain is considered smooth enough that asynchronous
+     * measurements don't subdivide it further.
+     *
+     * @return the terrain tolerance.
+     */
+    public double getTerrainTolerance()
+    {
+        return this.terrainTolerance;
+    }
+
+    /**
+     * Set the relative change in length or area below which terrain is considered smooth enough that asynchronous
+     * measurements don't subdivide it further. Smaller tolerances sample rough terrain more densely.
+     *
+     * @param tolerance the terrain tolerance, such as 0.001 for one tenth of a percent.
+     * @throws IllegalArgumentException if tolerance is not positive.
+     */
+    public void setTerrainTolerance(double tolerance)
+    {
+        if (tolerance <= 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", tolerance);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.terrainTolerance = tolerance;
+    }
+
     /**
      * Get the path length in meter.
      *
@@ -253,6 +309,378 @@ public class LengthMeasurer implements MeasurableLength
         return this.length;
     }
 
+    /**
+     * Measure the path length asynchronously. The path's segments are measured in parallel by the executor, and are
+     * remembered so that segments whose end positions are unchanged aren't measured again.
+     *
+     * <p>If the measurer is set to follow terrain, each segment is first sampled as {@link #getLength(Globe)} samples
+     * it, then its intervals are subdivided until the length gained by a subdivision is less than the terrain
+     * tolerance, with elevations for each round of subdivision queried in bulk. The measurement's error bound is the
+     * sum of the length gained by the last subdivision of each interval. Otherwise the length is that computed by
+     * {@link #getLength(Globe)} and the error bound is zero.</p>
+     *
+     * <p>If a measurement with the current positions and settings is already complete, a completed task is returned.
+     * If one is in progress, its task is returned.</p>
+     *
+     * @param globe    the globe to draw terrain information from.
+     * @param executor the executor to measure the segments. May be null, in which case the length is measured on the
+     *                 current thread before this method returns.
+     * @param listener a listener to receive the measurement's progress events. May be null.
+     * @return the measurement task, whose value is -1 if the position list is too short.
+     * @throws IllegalArgumentException if globe is <code>null</code>.
+     * @see MeasurementTask
+     */
+    public Future<Measurement> measureLength(Globe globe, ExecutorService executor, PropertyChangeListener listener)
+    {
+        if (globe == null)
+        {
+            String message = Logging.getMessage("nullValue.GlobeIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (this.positions == null || this.positions.size() < 2)
+            return MeasurementTask.fromMeasurement(new Measurement(-1, 0));
+
+        Object key = this.createMeasurementKey(globe, LENGTH_MEASUREMENT);
+        Future<Measurement> measurement = this.findMeasurement(key);
+        if (measurement != null)
+            return measurement;
+
+        int numSegments = this.positions.size() - 1;
+        LengthTask task = new LengthTask(this, key, globe, Math.min(numSegments, getMaxMeasurementParts()), listener);
+        this.startMeasurement(key, task, executor);
+        return task;
+    }
+
+    // *** Asynchronous measurement *********************************************************************
+
+    protected static int getMaxMeasurementParts()
+    {
+        return 4 * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Creates a key identifying a measurement of the current positions with the current settings.
+     *
+     * @param globe the globe the measurement is made on.
+     * @param kind  the kind of measurement.
+     * @return a key that is equal to any other key for the same measurement.
+     */
+    protected List<Object> createMeasurementKey(Globe globe, Object kind)
+    {
+        List<Object> key = new ArrayList<Object>();
+        key.add(kind);
+        key.add(globe);
+        key.add(this.pathType);
+        key.add(this.followTerrain);
+        key.add(this.maxSegmentLength);
+        key.add(this.lengthTerrainSamplingSteps);
+        key.add(this.terrainTolerance);
+        key.add(new ArrayList<Position>(this.positions));
+        return key;
+    }
+
+    /**
+     * Returns the completed or in progress measurement for a key.
+     *
+     * @param key the measurement's key.
+     * @return the measurement's task, or null if there is no completed measurement or measurement in progress.
+     */
+    protected Future<Measurement> findMeasurement(Object key)
+    {
+        synchronized (this.measurements)
+        {
+            Measurement measurement = this.measurements.get(key);
+            if (measurement != null)
+                return MeasurementTask.fromMeasurement(measurement);
+
+            MeasurementTask task = this.pendingMeasurements.get(key);
+            return task != null && !task.isDone() ? task : null;
+        }
+    }
+
+    protected void startMeasurement(Object key, MeasurementTask task, ExecutorService executor)
+    {
+        synchronized (this.measurements)
+        {
+            // Forget measurements that were cancelled or failed.
+            Iterator<MeasurementTask> iter = this.pendingMeasurements.values().iterator();
+            while (iter.hasNext())
+            {
+                if (iter.next().isDone())
+                    iter.remove();
+            }
+
+            this.pendingMeasurements.put(key, task);
+        }
+
+        task.start(executor);
+    }
+
+    protected Measurement getMemoizedMeasurement(Object key)
+    {
+        synchronized (this.measurements)
+        {
+            return this.measurements.get(key);
+        }
+    }
+
+    protected void memoizeMeasurement(Object key, Measurement measurement)
+    {
+        synchronized (this.measurements)
+        {
+            this.measurements.put(key, measurement);
+            this.pendingMeasurements.remove(key);
+        }
+    }
+
+    /**
+     * Queries the elevations of a list of locations in a single call.
+     *
+     * @param globe      the globe to draw elevations from.
+     * @param locations  the locations.
+     * @param resolution the desired resolution of the elevations, in radians.
+     * @param elevations an array to receive the elevations, in meters.
+     * @return true if the elevations are at the desired resolution, or at the best resolution the globe's elevation
+     *         model has for the locations. False if the model returned coarser elevations because it has not yet
+     *         loaded the desired ones.
+     */
+    protected static boolean getElevations(Globe globe, List<? extends LatLon> locations, double resolution,
+        double[] elevations)
+    {
+        if (locations.size() == 0)
+            return true;
+
+        Sector sector = Sector.boundingSector(locations);
+        double actualResolution = globe.getElevations(sector, locations, resolution, elevations);
+        double bestResolution = globe.getElevationModel() != null
+            ? globe.getElevationModel().getBestResolution(sector) : 0;
+
+        return actualResolution <= Math.max(resolution, bestResolution);
+    }
+
+    /**
+     * Returns the location a fraction of the way along a segment of a path.
+     *
+     * @param pathType the type of path, one of Polyline.LINEAR, Polyline.RHUMB_LINE or Polyline.GREAT_CIRCLE.
+     * @param pos1     the segment's first location.
+     * @param pos2     the segment's last location.
+     * @param azimuth  the segment's azimuth in radians, as a rhumb line or great circle according to the path type.
+     * @param distance the segment's length in radians, as a rhumb line or great circle according to the path type.
+     * @param s        the fraction of the way along the segment.
+     * @return the location along the segment.
+     */
+    protected static LatLon computePathLocation(int pathType, LatLon pos1, LatLon pos2, double azimuth,
+        double distance, double s)
+    {
+        if (pathType == Polyline.LINEAR)
+            return LatLon.interpolate(s, pos1, pos2);
+        else if (pathType == Polyline.RHUMB_LINE)
+            return LatLon.rhumbEndPosition(pos1, azimuth, s * distance);
+        else // GREAT_CIRCLE
+            return LatLon.greatCircleEndPosition(pos1, azimuth, s * distance);
+    }
+
+    /**
+     * Measures the length of a snapshot of a measurer's path. Each part measures a contiguous run of segments.
+     */
+    protected static class LengthTask extends MeasurementTask
+    {
+        protected final LengthMeasurer measurer;
+        protected final Object key;
+        protected final Globe globe;
+        protected final List<Position> positions;
+        protected final int pathType;
+        protected final boolean followTerrain;
+        protected final double maxSegmentLength;
+        protected final double samplingSteps;
+        protected final double tolerance;
+
+        public LengthTask(LengthMeasurer measurer, Object key, Globe globe, int numParts,
+            PropertyChangeListener listener)
+        {
+            super(numParts, listener);
+
+            this.measurer = measurer;
+            this.key = key;
+            this.globe = globe;
+            this.positions = new ArrayList<Position>(measurer.getPositions());
+            this.pathType = measurer.getPathType();
+            this.followTerrain = measurer.isFollowTerrain();
+            this.maxSegmentLength = measurer.getMaxSegmentLength();
+            this.samplingSteps = measurer.getLengthTerrainSamplingSteps();
+            this.tolerance = measurer.getTerrainTolerance();
+        }
+
+        protected void measurePart(int part)
+        {
+            int numSegments = this.positions.size() - 1;
+            int first = part * numSegments / this.numParts;
+            int last = (part + 1) * numSegments / this.numParts;
+
+            boolean[] incomplete = new boolean[1];
+            for (int i = first; i < last && !this.isCancelled(); i++)
+            {
+                Position pos1 = this.positions.get(i);
+                Position pos2 = this.positions.get(i + 1);
+                Object segmentKey = Arrays.asList(SEGMENT_MEASUREMENT, this.globe, this.pathType, this.followTerrain,
+                    this.maxSegmentLength, this.samplingSteps, this.tolerance, pos1, pos2);
+
+                Measurement measurement = this.measurer.getMemoizedMeasurement(segmentKey);
+                if (measurement == null)
+                {
+                    incomplete[0] = false;
+                    measurement = this.followTerrain ? this.measureTerrainSegment(pos1, pos2, incomplete)
+                        : this.measureSegment(pos1, pos2);
+                    if (measurement == null)
+                        return; // cancelled
+
+                    if (incomplete[0])
+                        this.coarseElevations = true;
+                    else
+                        this.measurer.memoizeMeasurement(segmentKey, measurement);
+                }
+
+                this.addResult(measurement.getValue(), measurement.getErrorBound());
+            }
+        }
+
+        protected void measurementComplete(Measurement measurement)
+        {
+            if (!this.coarseElevations)
+                this.measurer.memoizeMeasurement(this.key, measurement);
+        }
+
+        protected Measurement measureSegment(Position pos1, Position pos2)
+        {
+            List<? extends Position> subdivided = subdividePositions(this.globe, Arrays.asList(pos1, pos2),
+                this.maxSegmentLength, false, this.pathType);
+
+            double length = 0;
+            Vec4 p1 = this.globe.computePointFromPosition(subdivided.get(0));
+            for (int i = 1; i < subdivided.size(); i++)
+            {
+                Vec4 p2 = this.globe.computePointFromPosition(subdivided.get(i));
+                length += p1.distanceTo3(p2);
+                p1 = p2;
+            }
+
+            return new Measurement(length, 0);
+        }
+
+        /**
+         * Measures the length of a segment following the terrain.
+         *
+         * @param pos1       the segment's first position.
+         * @param pos2       the segment's last position.
+         * @param incomplete a one element array whose element is set to true if any elevations were coarser than
+         *                   asked for.
+         * @return the segment's length, or null if the task was cancelled.
+         */
+        protected Measurement measureTerrainSegment(Position pos1, Position pos2, boolean[] incomplete)
+        {
+            double radius = this.globe.getRadiusAt(LatLon.interpolate(.5, pos1, pos2));
+            double arcLength = LatLon.greatCircleDistance(pos1, pos2).radians * radius;
+
+            double azimuth = 0;
+            double distance = 0;
+            if (this.pathType == Polyline.RHUMB_LINE)
+            {
+                azimuth = LatLon.rhumbAzimuth(pos1, pos2).radians;
+                distance = LatLon.rhumbDistance(pos1, pos2).radians;
+            }
+            else if (this.pathType != Polyline.LINEAR)
+            {
+                azimuth = LatLon.greatCircleAzimuth(pos1, pos2).radians;
+                distance = LatLon.greatCircleDistance(pos1, pos2).radians;
+            }
+
+            // Start at twice the spacing getLength uses. Every interval is subdivided at least once, which brings it to
+            // that spacing, and rough intervals are subdivided further.
+            double spacing = Math.min(Math.max(arcLength / this.samplingSteps, DEFAULT_MIN_SEGMENT_LENGTH),
+                this.maxSegmentLength);
+            int numIntervals = Math.max(1, (int) Math.ceil(arcLength / (2 * spacing)));
+
+            List<LatLon> locations = new ArrayList<LatLon>(numIntervals + 1);
+            for (int i = 0; i <= numIntervals; i++)
+            {
+                locations.add(computePathLocation(this.pathType, pos1, pos2, azimuth, distance,
+                    (double) i / numIntervals));
+            }
+
+            double[] elevations = new double[numIntervals + 1];
+            if (!getElevations(this.globe, locations, 2 * spacing / radius, elevations))
+                incomplete[0] = true;
+            double[] fractions = new double[2 * numIntervals];
+            Vec4[] points = new Vec4[2 * numIntervals];
+            for (int i = 0; i < numIntervals; i++)
+            {
+                fractions[2 * i] = (double) i / numIntervals;
+                fractions[2 * i + 1] = (double) (i + 1) / numIntervals;
+                points[2 * i] = this.globe.computePointFromPosition(locations.get(i), elevations[i]);
+                points[2 * i + 1] = this.globe.computePointFromPosition(locations.get(i + 1), elevations[i + 1]);
+            }
+
+            double length = 0;
+            double error = 0;
+            for (int depth = 0; fractions.length > 0; depth++)
+            {
+                if (this.isCancelled())
+                    return null;
+
+                // Query the elevations at the midpoints of every interval in one call.
+                int count = fractions.length / 2;
+                locations.clear();
+                for (int i = 0; i < count; i++)
+                {
+                    locations.add(computePathLocation(this.pathType, pos1, pos2, azimuth, distance,
+                        (fractions[2 * i] + fractions[2 * i + 1]) / 2));
+                }
+                elevations = new double[count];
+                if (!getElevations(this.globe, locations, spacing / (radius * (1 << depth)), elevations))
+                    incomplete[0] = true;
+
+                double[] nextFractions = new double[4 * count];
+                Vec4[] nextPoints = new Vec4[4 * count];
+                int next = 0;
+                for (int i = 0; i < count; i++)
+                {
+                    Vec4 p1 = points[2 * i];
+                    Vec4 p2 = points[2 * i + 1];
+                    Vec4 mid = this.globe.computePointFromPosition(locations.get(i), elevations[i]);
+                    double coarse = p1.distanceTo3(p2);
+                    double fine = p1.distanceTo3(mid) + mid.distanceTo3(p2);
+                    double gain = fine - coarse;
+
+                    if (gain > this.tolerance * coarse && depth < MAX_LENGTH_SUBDIVISIONS
+                        && coarse / 2 >= DEFAULT_MIN_SEGMENT_LENGTH)
+                    {
+                        double midFraction = (fractions[2 * i] + fractions[2 * i + 1]) / 2;
+                        nextFractions[next] = fractions[2 * i];
+                        nextPoints[next++] = p1;
+                        nextFractions[next] = midFraction;
+                        nextPoints[next++] = mid;
+                        nextFractions[next] = midFraction;
+                        nextPoints[next++] = mid;
+                        nextFractions[next] = fractions[2 * i + 1];
+                        nextPoints[next++] = p2;
+                    }
+                    else
+                    {
+                        length += fine;
+                        error += gain;
+                    }
+                }
+
+                fractions = Arrays.copyOf(nextFractions, next);
+                points = Arrays.copyOf(nextPoints, next);
+            }
+
+            return new Measurement(length, error);
+        }
+    }
+
     // *** Computing length *****************************************************************************
 
     protected double computeLength(Globe globe, boolean followTerrain)
@@ -15,8 +15,10 @@ import gov.nasa.worldwind.util.*;
 
 import java.awt.*;
 import java.awt.geom.*;
+import java.beans.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * A utility class to interactively draw shapes and measure distance and area across the terrain. When armed, the class
@@ -57,7 +59,13 @@ import java.util.List;
  * #EVENT_POSITION_ADD}, {@link #EVENT_POSITION_REMOVE} or {@link #EVENT_POSITION_REPLACE}, when metrics has changed
  * {@link #EVENT_METRIC_CHANGED} or when the tool is armed or disarmed {@link #EVENT_ARMED}.</p> <p/> <p>Events will
  * also be fired at the start and end of a rubber band operation during shape creation: {@link #EVENT_RUBBERBAND_START}
- * and {@link #EVENT_RUBBERBAND_STOP}.</p> <p/> <p>See {@link gov.nasa.worldwindx.examples.MeasureToolPanel} for some
+ * and {@link #EVENT_RUBBERBAND_STOP}.</p> <p/> <p><b>Asynchronous measurement</b></p> <p/> <p>Terrain following
+ * measurements of long paths and large shapes can take long enough to interrupt dragging the shape's control points.
+ * If an executor is set by calling {@link #setMeasurementExecutor(java.util.concurrent.ExecutorService)}, terrain
+ * following length and area are measured asynchronously by that executor. {@link #getLength()} and {@link #getArea()}
+ * then return the most recent completed measurement while a new one is in progress, and the annotation is updated and
+ * {@link #EVENT_METRIC_CHANGED} is fired on the event dispatch thread when the new measurement completes.</p> <p/>
+ * <p>See {@link gov.nasa.worldwindx.examples.MeasureToolPanel} for some
  * events usage.</p> <p/> <p>Several instances of this class can be used simultaneously. However, each instance should
  * be disposed of after usage by calling the {@link #dispose()} method.</p>
  *
@@ -152,6 +160,15 @@ public class MeasureTool extends AVListImpl implements Disposable
     protected Angle shapeOrientation = null;
     protected int shapeIntervals = 64;
 
+    // Asynchronous terrain following measurement
+    protected ExecutorService measurementExecutor;
+    protected AreaMeasurer areaMeasurer;
+    protected Future<Measurement> lengthMeasurement;
+    protected Future<Measurement> areaMeasurement;
+    protected double lastMeasuredLength = -1;
+    protected double lastMeasuredArea = -1;
+    protected PropertyChangeListener measurementListener;
+
     protected static class CustomRenderableLayer extends RenderableLayer implements PreRenderable, Renderable
     {
         public void render(DrawContext dc)
@@ -968,12 +985,46 @@ public class MeasureTool extends AVListImpl implements Disposable
             || control.equals(SOUTHWEST) || control.equals(NORTHWEST));
     }
 
+    /**
+     * Returns the executor used to measure terrain following length and area asynchronously.
+     *
+     * @return the measurement executor, or null if measurements are computed synchronously.
+     */
+    public ExecutorService getMeasurementExecutor()
+    {
+        return this.measurementExecutor;
+    }
+
+    /**
+     * Specifies an executor to measure terrain following length and area asynchronously. While a measurement is in
+     * progress, {@link #getLength()} and {@link #getArea()} return the most recent completed measurement, or -1 if
+     * there is none.
+     *
+     * @param executor the measurement executor. May be null, in which case measurements are computed synchronously.
+     */
+    public void setMeasurementExecutor(ExecutorService executor)
+    {
+        this.measurementExecutor = executor;
+        this.lengthMeasurement = this.replaceMeasurement(this.lengthMeasurement, null);
+        this.areaMeasurement = this.replaceMeasurement(this.areaMeasurement, null);
+        this.lastMeasuredLength = -1;
+        this.lastMeasuredArea = -1;
+    }
+
     // *** Metric accessors ***
 
     public double getLength()
     {
         Globe globe = this.wwd.getModel().getGlobe();
 
+        if (this.line != null && this.isMeasuringAsynchronously())
+        {
+            this.lengthMeasurement = this.replaceMeasurement(this.lengthMeasurement,
+                this.line.getMeasurer().measureLength(globe, this.measurementExecutor, this.getMeasurementListener()));
+            this.lastMeasuredLength = this.getMeasuredValue(this.lengthMeasurement, this.lastMeasuredLength);
+            return this.lastMeasuredLength;
+        }
+
         if (this.line != null)
             return this.line.getLength(globe);
 
@@ -987,12 +1038,119 @@ public class MeasureTool extends AVListImpl implements Disposable
     {
         Globe globe = this.wwd.getModel().getGlobe();
 
+        if (this.surfaceShape != null && this.isMeasuringAsynchronously())
+        {
+            this.areaMeasurement = this.replaceMeasurement(this.areaMeasurement,
+                this.getSurfaceShapeMeasurer(globe).measureSurfaceArea(globe, this.measurementExecutor,
+                    this.getMeasurementListener()));
+            this.lastMeasuredArea = this.getMeasuredValue(this.areaMeasurement, this.lastMeasuredArea);
+            return this.lastMeasuredArea;
+        }
+
         if (this.surfaceShape != null)
             return this.surfaceShape.getArea(globe, this.followTerrain);
 
         return -1;
     }
 
+    protected boolean isMeasuringAsynchronously()
+    {
+        return this.measurementExecutor != null && this.followTerrain;
+    }
+
+    /**
+     * Cancels a measurement in progress that is replaced by a new measurement. Measurers return the same task for
+     * an unchanged measurement, which is left running.
+     *
+     * @param oldMeasurement the current measurement. May be null.
+     * @param newMeasurement the new measurement. May be null.
+     * @return the new measurement.
+     */
+    protected Future<Measurement> replaceMeasurement(Future<Measurement> oldMeasurement,
+        Future<Measurement> newMeasurement)
+    {
+        if (oldMeasurement != null && oldMeasurement != newMeasurement)
+            oldMeasurement.cancel(false);
+
+        return newMeasurement;
+    }
+
+    protected double getMeasuredValue(Future<Measurement> measurement, double lastValue)
+    {
+        if (!measurement.isDone() || measurement.isCancelled())
+            return lastValue;
+
+        try
+        {
+            return measurement.get().getValue();
+        }
+        catch (Exception e)
+        {
+            return -1;
+        }
+    }
+
+    protected AreaMeasurer getSurfaceShapeMeasurer(Globe globe)
+    {
+        if (this.areaMeasurer == null)
+            this.areaMeasurer = new AreaMeasurer();
+
+        // Measure a closed copy of the shape's locations, as the shape measures itself. The measurer keeps its
+        // measurements when the locations are unchanged.
+        ArrayList<LatLon> locations = new ArrayList<LatLon>();
+        Iterable<? extends LatLon> iterable = this.surfaceShape.getLocations(globe);
+        if (iterable != null)
+        {
+            for (LatLon ll : iterable)
+            {
+                locations.add(ll);
+            }
+
+            if (locations.size() > 1 && !locations.get(0).equals(locations.get(locations.size() - 1)))
+                locations.add(locations.get(0));
+        }
+
+        this.areaMeasurer.setPositions(locations, 0);
+        this.areaMeasurer.setFollowTerrain(true);
+
+        return this.areaMeasurer;
+    }
+
+    protected PropertyChangeListener getMeasurementListener()
+    {
+        if (this.measurementListener == null)
+        {
+            this.measurementListener = new PropertyChangeListener()
+            {
+                public void propertyChange(PropertyChangeEvent event)
+                {
+                    if (!AVKey.PROGRESS.equals(event.getPropertyName()) || ((Double) event.getNewValue()) < 1)
+                        return;
+
+                    EventQueue.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                            measurementCompleted();
+                        }
+                    });
+                }
+            };
+        }
+
+        return this.measurementListener;
+    }
+
+    /** Called on the event dispatch thread when an asynchronous measurement completes. */
+    protected void measurementCompleted()
+    {
+        if (this.annotation.getAttributes().isVisible())
+            this.updateAnnotation(this.annotation.getPosition());
+
+        this.firePropertyChange(EVENT_METRIC_CHANGED, null, null);
+        this.wwd.redraw();
+    }
+
     public double getWidth()
     {
         if (this.shapeRectangle != null)
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util.measure;
+
+/**
+ * The result of an asynchronous measurement by a {@link LengthMeasurer} or an {@link AreaMeasurer}: the measured value
+ * and an estimate of its error.
+ *
+ * @version $Id$
+ * @see MeasurementTask
+ */
+public class Measurement
+{
+    protected final double value;
+    protected final double errorBound;
+
+    /**
+     * Creates a measurement.
+     *
+     * @param value      the measured value, in meters or square meters, or -1 if the value could not be measured.
+     * @param errorBound the estimated maximum error of the value, in the same units as the value.
+     */
+    public Measurement(double value, double errorBound)
+    {
+        this.value = value;
+        this.errorBound = errorBound;
+    }
+
+    /**
+     * Returns the measured value.
+     *
+     * @return the measured value, in meters or square meters, or -1 if the value could not be measured.
+     */
+    public double getValue()
+    {
+        return this.value;
+    }
+
+    /**
+     * Returns the estimated maximum error of the measured value. The estimate accounts for the sampling of terrain and,
+     * for areas, the cells straddling the shape's boundary. It doesn't account for the accuracy of the elevation data.
+     *
+     * @return the estimated error, in the same units as the value.
+     */
+    public double getErrorBound()
+    {
+        return this.errorBound;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.value + " +/- " + this.errorBound;
+    }
+}
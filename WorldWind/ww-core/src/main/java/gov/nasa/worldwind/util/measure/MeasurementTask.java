@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util.measure;
+
+import gov.nasa.worldwind.avlist.AVKey;
+
+import java.beans.*;
+import java.util.concurrent.*;
+
+/**
+ * An asynchronous measurement computed as independent parts, such as the segments of a path or the rows of an area's
+ * sampling grid. The parts are run by an executor, and their values and error bounds are summed into the task's {@link
+ * Measurement}. The task is a <code>Future</code>, so it can be waited for and cancelled. Cancelling the task stops
+ * its parts at their next check for cancellation.
+ * <p/>
+ * Progress is reported to an optional listener as {@link AVKey#PROGRESS} property changes whose new value is the
+ * fraction of parts completed, a <code>Double</code> between 0 and 1. The event reporting 1 is sent after the task's
+ * measurement is available. The listener is called on the threads running the parts. A part that throws an exception
+ * causes the task to fail, and {@link #get()} to throw an <code>ExecutionException</code>.
+ *
+ * @version $Id$
+ * @see LengthMeasurer#measureLength(gov.nasa.worldwind.globes.Globe, java.util.concurrent.ExecutorService,
+ *      java.beans.PropertyChangeListener)
+ * @see AreaMeasurer#measureSurfaceArea(gov.nasa.worldwind.globes.Globe, java.util.concurrent.ExecutorService,
+ *      java.beans.PropertyChangeListener)
+ */
+public abstract class MeasurementTask implements Future<Measurement>
+{
+    protected final int numParts;
+    protected final PropertyChangeListener listener;
+    protected int numPartsDone;
+    protected double value;
+    protected double errorBound;
+    protected Measurement measurement;
+    protected Throwable failure;
+    protected volatile boolean cancelled;
+    protected volatile boolean done;
+    /**
+     * Indicates whether a part was measured from elevations coarser than it asked for, because the elevation model had
+     * not yet loaded them. Such a measurement improves as the data arrives, so it should not be remembered.
+     */
+    protected volatile boolean coarseElevations;
+
+    /**
+     * Creates a task with a specified number of parts.
+     *
+     * @param numParts the number of parts. A task with no parts is complete once started, and its value is -1.
+     * @param listener the listener to receive progress events. May be null.
+     */
+    protected MeasurementTask(int numParts, PropertyChangeListener listener)
+    {
+        this.numParts = numParts;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns a task that is already complete.
+     *
+     * @param measurement the task's measurement.
+     *
+     * @return a complete task whose result is the measurement.
+     */
+    public static MeasurementTask fromMeasurement(Measurement measurement)
+    {
+        MeasurementTask task = new MeasurementTask(0, null)
+        {
+            protected void measurePart(int part)
+            {
+            }
+        };
+
+        task.measurement = measurement;
+        task.done = true;
+        return task;
+    }
+
+    /**
+     * Measures one part of the task. Implementations add the part's value and error bound by calling {@link
+     * #addResult(double, double)}, and should return early if {@link #isCancelled()} becomes true.
+     *
+     * @param part the index of the part to measure.
+     */
+    protected abstract void measurePart(int part);
+
+    /**
+     * Called once the task's measurement is available, before the final progress event. The default implementation
+     * does nothing.
+     *
+     * @param measurement the task's measurement.
+     */
+    protected void measurementComplete(Measurement measurement)
+    {
+    }
+
+    /**
+     * Starts measuring the task's parts.
+     *
+     * @param executor the executor to run the parts. May be null, in which case the parts are measured on the current
+     *                 thread before this method returns.
+     */
+    public void start(ExecutorService executor)
+    {
+        if (this.numParts == 0)
+        {
+            this.complete(new Measurement(-1, 0));
+            return;
+        }
+
+        for (int i = 0; i < this.numParts; i++)
+        {
+            final int part = i;
+            Runnable runnable = new Runnable()
+            {
+                public void run()
+                {
+                    runPart(part);
+                }
+            };
+
+            if (executor != null)
+                executor.execute(runnable);
+            else
+                runnable.run();
+        }
+    }
+
+    protected void runPart(int part)
+    {
+        Throwable partFailure = null;
+        try
+        {
+            if (!this.isCancelled())
+                this.measurePart(part);
+        }
+        catch (Throwable t)
+        {
+            partFailure = t;
+        }
+
+        int partsDone;
+        synchronized (this)
+        {
+            if (partFailure != null && this.failure == null)
+                this.failure = partFailure;
+
+            partsDone = ++this.numPartsDone;
+        }
+
+        if (partsDone < this.numParts)
+        {
+            this.firePropertyChange(AVKey.PROGRESS, (double) partsDone / this.numParts);
+            return;
+        }
+
+        this.complete(this.failure == null && !this.isCancelled() ? new Measurement(this.value, this.errorBound)
+            : null);
+    }
+
+    protected void complete(Measurement measurement)
+    {
+        synchronized (this)
+        {
+            this.measurement = measurement;
+            this.done = true;
+            this.notifyAll();
+        }
+
+        if (measurement != null)
+            this.measurementComplete(measurement);
+
+        this.firePropertyChange(AVKey.PROGRESS, 1d);
+    }
+
+    protected void firePropertyChange(String propertyName, Object newValue)
+    {
+        if (this.listener != null && !this.isCancelled())
+            this.listener.propertyChange(new PropertyChangeEvent(this, propertyName, null, newValue));
+    }
+
+    /**
+     * Adds a part's value and error bound to the task's measurement. May be called by any number of threads.
+     *
+     * @param value      the value to add.
+     * @param errorBound the error bound to add.
+     */
+    protected synchronized void addResult(double value, double errorBound)
+    {
+        this.value += value;
+        this.errorBound += errorBound;
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning)
+    {
+        synchronized (this)
+        {
+            if (this.done)
+                return false;
+
+            this.cancelled = true;
+            this.done = true;
+            this.notifyAll();
+        }
+
+        return true;
+    }
+
+    public boolean isCancelled()
+    {
+        return this.cancelled;
+    }
+
+    public boolean isDone()
+    {
+        return this.done;
+    }
+
+    public synchronized Measurement get() throws InterruptedException, ExecutionException
+    {
+        while (!this.done)
+        {
+            this.wait();
+        }
+
+        return this.getMeasurement();
+    }
+
+    public synchronized Measurement get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        while (!this.done)
+        {
+            long remaining = end - System.nanoTime();
+            if (remaining <= 0)
+                throw new TimeoutException();
+
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return this.getMeasurement();
+    }
+
+    protected Measurement getMeasurement() throws ExecutionException
+    {
+        if (this.cancelled)
+            throw new CancellationException();
+
+        if (this.failure != null)
+            throw new ExecutionException(this.failure);
+
+        return this.measurement;
+    }
+}
@@ -0,0 +1,866 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util.xml;
+
+import gov.nasa.worldwind.util.Logging;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.*;
+import javax.xml.stream.*;
+import javax.xml.stream.events.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * An {@link XMLEventReader} that reads events from an {@link XMLStreamReader} cursor rather than from the XML parser's
+ * own event reader. It delivers the same sequence of events with far less allocation, which makes parsing large
+ * documents such as KML and COLLADA files faster and easier on the garbage collector: <ul> <li>Element names are
+ * interned, so every start and end element with the same name shares one <code>QName</code>.</li> <li>End elements are
+ * shared by every element with the same name.</li> <li>Adjacent character events are coalesced into one event, read
+ * through a reusable character buffer without creating intermediate strings.</li> <li>Whitespace and short text
+ * content, such as indentation and repeated values, are interned along with their events.</li> </ul>
+ * <p/>
+ * Because end element and interned character events are shared, their locations are not known, and report line and
+ * column numbers of -1. Start elements report their locations.
+ * <p/>
+ * Instances are not thread safe.
+ *
+ * @version $Id$
+ * @see gov.nasa.worldwind.util.WWXML#openCursorEventReaderStream(java.io.InputStream, boolean)
+ */
+public class CursorXMLEventReader implements XMLEventReader
+{
+    /** The longest text content that is interned. */
+    protected static final int MAX_INTERNED_TEXT_LENGTH = 32;
+    /** The capacity of the interned text table. */
+    protected static final int TEXT_TABLE_CAPACITY = 4096;
+
+    protected XMLStreamReader reader;
+    /** True if the reader must be advanced before the next event is created from its current state. */
+    protected boolean advance;
+    protected XMLEvent peekedEvent;
+    protected XMLEventFactory eventFactory;
+
+    /** Interned element and attribute names, keyed by namespace URI and then by local name. */
+    protected Map<String, Map<String, QName>> names = new HashMap<String, Map<String, QName>>();
+    /** The shared end element events, keyed by element name. */
+    protected Map<QName, EndElement> endElements = new HashMap<QName, EndElement>();
+    /** The start elements enclosing the reader's current position. */
+    protected List<CursorStartElement> elementStack = new ArrayList<CursorStartElement>();
+    /** The buffer in which adjacent text is coalesced. */
+    protected char[] textBuffer = new char[256];
+    /** The interned character events, an open addressed hash table keyed by the events' text. */
+    protected CursorCharacters[] textTable = new CursorCharacters[TEXT_TABLE_CAPACITY];
+    protected int textTableSize;
+
+    /**
+     * Creates an event reader that reads from a specified stream reader. The stream reader must be positioned at the
+     * start of its document.
+     *
+     * @param reader the stream reader to read from.
+     *
+     * @throws IllegalArgumentException if the stream reader is null.
+     */
+    public CursorXMLEventReader(XMLStreamReader reader)
+    {
+        if (reader == null)
+        {
+            String message = Logging.getMessage("nullValue.ReaderIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.reader = reader;
+        this.eventFactory = XMLEventFactory.newInstance();
+    }
+
+    /**
+     * Returns the stream reader this event reader reads from.
+     *
+     * @return the underlying stream reader.
+     */
+    public XMLStreamReader getStreamReader()
+    {
+        return this.reader;
+    }
+
+    public boolean hasNext()
+    {
+        if (this.peekedEvent != null || !this.advance)
+            return true;
+
+        try
+        {
+            return this.reader.hasNext();
+        }
+        catch (XMLStreamException e)
+        {
+            return false;
+        }
+    }
+
+    public XMLEvent nextEvent() throws XMLStreamException
+    {
+        if (this.peekedEvent != null)
+        {
+            XMLEvent event = this.peekedEvent;
+            this.peekedEvent = null;
+            return event;
+        }
+
+        if (!this.hasNext())
+            throw new NoSuchElementException();
+
+        if (this.advance)
+            this.reader.next();
+        this.advance = true;
+
+        return this.createEvent();
+    }
+
+    public Object next()
+    {
+        try
+        {
+            return this.nextEvent();
+        }
+        catch (XMLStreamException e)
+        {
+            NoSuchElementException ex = new NoSuchElementException(e.getMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    public XMLEvent peek() throws XMLStreamException
+    {
+        if (this.peekedEvent == null && this.hasNext())
+            this.peekedEvent = this.nextEvent();
+
+        return this.peekedEvent;
+    }
+
+    public String getElementText() throws XMLStreamException
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for (XMLEvent event = this.nextEvent(); !event.isEndElement(); event = this.nextEvent())
+        {
+            if (event.isCharacters())
+                sb.append(event.asCharacters().getData());
+            else if (event.isStartElement())
+                throw new XMLStreamException(Logging.getMessage("XML.UnexpectedElement", event), event.getLocation());
+        }
+
+        return sb.toString();
+    }
+
+    public XMLEvent nextTag() throws XMLStreamException
+    {
+        while (this.hasNext())
+        {
+            XMLEvent event = this.nextEvent();
+            if (event.isStartElement() || event.isEndElement())
+                return event;
+
+            if (event.isCharacters() && !event.asCharacters().isWhiteSpace())
+                throw new XMLStreamException(Logging.getMessage("XML.UnexpectedElement", event), event.getLocation());
+        }
+
+        throw new XMLStreamException(Logging.getMessage("XML.UnexpectedElement", "EndDocument"));
+    }
+
+    public Object getProperty(String name)
+    {
+        return this.reader.getProperty(name);
+    }
+
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    public void close() throws XMLStreamException
+    {
+        this.reader.close();
+    }
+
+    //**************************************************************//
+    //********************  Event Creation  ************************//
+    //**************************************************************//
+
+    /**
+     * Creates the event for the stream reader's current state. Character events advance the stream reader to the first
+     * token after the text they coalesce.
+     *
+     * @return the event.
+     *
+     * @throws XMLStreamException if an exception occurs while reading the stream.
+     */
+    protected XMLEvent createEvent() throws XMLStreamException
+    {
+        switch (this.reader.getEventType())
+        {
+            case XMLStreamConstants.START_ELEMENT:
+                return this.createStartElement();
+            case XMLStreamConstants.END_ELEMENT:
+                return this.createEndElement();
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+                return this.createCharacters();
+            case XMLStreamConstants.START_DOCUMENT:
+                return this.reader.getCharacterEncodingScheme() != null
+                    ? this.eventFactory.createStartDocument(this.reader.getCharacterEncodingScheme(),
+                    this.reader.getVersion(), this.reader.isStandalone())
+                    : this.eventFactory.createStartDocument();
+            case XMLStreamConstants.END_DOCUMENT:
+                return this.eventFactory.createEndDocument();
+            case XMLStreamConstants.COMMENT:
+                return this.eventFactory.createComment(this.reader.getText());
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                return this.eventFactory.createProcessingInstruction(this.reader.getPITarget(),
+                    this.reader.getPIData());
+            case XMLStreamConstants.DTD:
+                return this.eventFactory.createDTD(this.reader.getText());
+            default:
+                // Unreplaced entity references and other rare tokens are delivered as their text.
+                return this.eventFactory.createCharacters(this.reader.hasText() ? this.reader.getText() : "");
+        }
+    }
+
+    protected XMLEvent createStartElement()
+    {
+        QName name = this.internName(this.reader.getNamespaceURI(), this.reader.getLocalName(),
+            this.reader.getPrefix());
+
+        CursorAttribute[] attributes = null;
+        int attributeCount = this.reader.getAttributeCount();
+        if (attributeCount > 0)
+        {
+            attributes = new CursorAttribute[attributeCount];
+            for (int i = 0; i < attributeCount; i++)
+            {
+                QName attrName = this.internName(this.reader.getAttributeNamespace(i),
+                    this.reader.getAttributeLocalName(i), this.reader.getAttributePrefix(i));
+                attributes[i] = new CursorAttribute(attrName, this.reader.getAttributeValue(i),
+                    this.reader.getAttributeType(i), this.reader.isAttributeSpecified(i));
+            }
+        }
+
+        Namespace[] namespaces = null;
+        int namespaceCount = this.reader.getNamespaceCount();
+        if (namespaceCount > 0)
+        {
+            namespaces = new Namespace[namespaceCount];
+            for (int i = 0; i < namespaceCount; i++)
+            {
+                String prefix = this.reader.getNamespacePrefix(i);
+                String uri = this.reader.getNamespaceURI(i);
+                namespaces[i] = (prefix == null || prefix.length() == 0)
+                    ? this.eventFactory.createNamespace(uri != null ? uri : XMLConstants.NULL_NS_URI)
+                    : this.eventFactory.createNamespace(prefix, uri != null ? uri : XMLConstants.NULL_NS_URI);
+            }
+        }
+
+        Location location = this.reader.getLocation();
+        CursorStartElement parent = this.elementStack.isEmpty() ? null
+            : this.elementStack.get(this.elementStack.size() - 1);
+        CursorStartElement event = new CursorStartElement(name, attributes, namespaces, parent,
+            location.getLineNumber(), location.getColumnNumber(), location.getCharacterOffset());
+        this.elementStack.add(event);
+
+        return event;
+    }
+
+    protected XMLEvent createEndElement()
+    {
+        QName name = this.internName(this.reader.getNamespaceURI(), this.reader.getLocalName(),
+            this.reader.getPrefix());
+
+        if (!this.elementStack.isEmpty())
+            this.elementStack.remove(this.elementStack.size() - 1);
+
+        EndElement event = this.endElements.get(name);
+        if (event == null || !event.getName().getPrefix().equals(name.getPrefix()))
+        {
+            event = new CursorEndElement(name);
+            this.endElements.put(name, event);
+        }
+
+        return event;
+    }
+
+    /**
+     * Creates a character event holding the text at the reader's current position and any text that immediately
+     * follows it. Leaves the reader at the first token after the text.
+     *
+     * @return the character event.
+     *
+     * @throws XMLStreamException if an exception occurs while reading the stream.
+     */
+    protected XMLEvent createCharacters() throws XMLStreamException
+    {
+        int length = 0;
+        boolean whitespace = true;
+        boolean cdata = true;
+        boolean ignorable = true;
+
+        while (true)
+        {
+            int type = this.reader.getEventType();
+            if (type != XMLStreamConstants.CHARACTERS && type != XMLStreamConstants.CDATA
+                && type != XMLStreamConstants.SPACE)
+            {
+                // The reader is positioned at the token after the text, so it must not be advanced again before that
+                // token's event is created.
+                this.advance = false;
+                break;
+            }
+
+            cdata &= (type == XMLStreamConstants.CDATA);
+            ignorable &= (type == XMLStreamConstants.SPACE);
+
+            int textLength = this.reader.getTextLength();
+            if (length + textLength > this.textBuffer.length)
+                this.textBuffer = Arrays.copyOf(this.textBuffer, Math.max(2 * this.textBuffer.length,
+                    length + textLength));
+
+            int start = this.reader.getTextStart();
+            char[] chars = this.reader.getTextCharacters();
+            System.arraycopy(chars, start, this.textBuffer, length, textLength);
+            for (int i = length; whitespace && i < length + textLength; i++)
+            {
+                char c = this.textBuffer[i];
+                whitespace = (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+            }
+            length += textLength;
+
+            if (!this.reader.hasNext())
+                break;
+            this.reader.next();
+        }
+
+        int eventType = cdata ? XMLStreamConstants.CDATA
+            : ignorable ? XMLStreamConstants.SPACE : XMLStreamConstants.CHARACTERS;
+
+        if (length > MAX_INTERNED_TEXT_LENGTH)
+            return new CursorCharacters(eventType, new String(this.textBuffer, 0, length), whitespace);
+
+        return this.internCharacters(eventType, length, whitespace);
+    }
+
+    /**
+     * Returns the interned name for a specified namespace URI, local name and prefix, creating it if necessary.
+     *
+     * @param namespaceURI the name's namespace URI. May be null.
+     * @param localName    the name's local part.
+     * @param prefix       the name's prefix. May be null.
+     *
+     * @return the interned name.
+     */
+    protected QName internName(String namespaceURI, String localName, String prefix)
+    {
+        if (namespaceURI == null)
+            namespaceURI = XMLConstants.NULL_NS_URI;
+        if (prefix == null)
+            prefix = XMLConstants.DEFAULT_NS_PREFIX;
+
+        Map<String, QName> localNames = this.names.get(namespaceURI);
+        if (localNames == null)
+        {
+            localNames = new HashMap<String, QName>();
+            this.names.put(namespaceURI, localNames);
+        }
+
+        QName name = localNames.get(localName);
+        if (name == null)
+        {
+            name = new QName(namespaceURI, localName, prefix);
+            localNames.put(localName, name);
+        }
+        else if (!name.getPrefix().equals(prefix))
+        {
+            // The same name used with a different prefix. Such names are rare, and are not interned.
+            name = new QName(namespaceURI, localName, prefix);
+        }
+
+        return name;
+    }
+
+    /**
+     * Returns the interned character event for the first <code>length</code> characters of the text buffer, creating
+     * it if necessary.
+     *
+     * @param eventType  the character event type.
+     * @param length     the number of characters in the text buffer.
+     * @param whitespace true if the text is whitespace.
+     *
+     * @return the character event.
+     */
+    protected CursorCharacters internCharacters(int eventType, int length, boolean whitespace)
+    {
+        int hash = eventType;
+        for (int i = 0; i < length; i++)
+        {
+            hash = 31 * hash + this.textBuffer[i];
+        }
+
+        int mask = this.textTable.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask)
+        {
+            CursorCharacters event = this.textTable[slot];
+            if (event == null)
+            {
+                event = new CursorCharacters(eventType, new String(this.textBuffer, 0, length), whitespace);
+
+                // Stop interning when the table is three quarters full. Documents with that many distinct short
+                // values gain little from interning.
+                if (this.textTableSize < 3 * this.textTable.length / 4)
+                {
+                    this.textTable[slot] = event;
+                    this.textTableSize++;
+                }
+
+                return event;
+            }
+
+            if (event.getEventType() == eventType && event.matches(this.textBuffer, length))
+                return event;
+        }
+    }
+
+    //**************************************************************//
+    //********************  Events  ********************************//
+    //**************************************************************//
+
+    /** The base class of the events created by this reader. */
+    protected abstract static class CursorEvent implements XMLEvent
+    {
+        /** The location of events whose location is not known. */
+        protected static final Location UNKNOWN_LOCATION = new CursorLocation(-1, -1, -1);
+
+        protected final int eventType;
+
+        protected CursorEvent(int eventType)
+        {
+            this.eventType = eventType;
+        }
+
+        public int getEventType()
+        {
+            return this.eventType;
+        }
+
+        public Location getLocation()
+        {
+            return UNKNOWN_LOCATION;
+        }
+
+        public boolean isStartElement()
+        {
+            return this.eventType == XMLStreamConstants.START_ELEMENT;
+        }
+
+        public boolean isAttribute()
+        {
+            return this.eventType == XMLStreamConstants.ATTRIBUTE;
+        }
+
+        public boolean isNamespace()
+        {
+            return this.eventType == XMLStreamConstants.NAMESPACE;
+        }
+
+        public boolean isEndElement()
+        {
+            return this.eventType == XMLStreamConstants.END_ELEMENT;
+        }
+
+        public boolean isEntityReference()
+        {
+            return false;
+        }
+
+        public boolean isProcessingInstruction()
+        {
+            return false;
+        }
+
+        public boolean isCharacters()
+        {
+            return this.eventType == XMLStreamConstants.CHARACTERS || this.eventType == XMLStreamConstants.CDATA
+                || this.eventType == XMLStreamConstants.SPACE;
+        }
+
+        public boolean isStartDocument()
+        {
+            return false;
+        }
+
+        public boolean isEndDocument()
+        {
+            return false;
+        }
+
+        public StartElement asStartElement()
+        {
+            return (StartElement) this;
+        }
+
+        public EndElement asEndElement()
+        {
+            return (EndElement) this;
+        }
+
+        public Characters asCharacters()
+        {
+            return (Characters) this;
+        }
+
+        public QName getSchemaType()
+        {
+            return null;
+        }
+
+        public void writeAsEncodedUnicode(Writer writer) throws XMLStreamException
+        {
+            try
+            {
+                writer.write(this.toString());
+            }
+            catch (IOException e)
+            {
+                throw new XMLStreamException(e);
+            }
+        }
+
+        protected static String formatName(QName name)
+        {
+            String prefix = name.getPrefix();
+            return (prefix != null && prefix.length() > 0) ? prefix + ":" + name.getLocalPart() : name.getLocalPart();
+        }
+
+        protected static void appendEscaped(StringBuilder sb, String s, boolean isAttribute)
+        {
+            for (int i = 0; i < s.length(); i++)
+            {
+                char c = s.charAt(i);
+                if (c == '<')
+                    sb.append("&lt;");
+                else if (c == '>')
+                    sb.append("&gt;");
+                else if (c == '&')
+                    sb.append("&amp;");
+                else if (c == '"' && isAttribute)
+                    sb.append("&quot;");
+                else
+                    sb.append(c);
+            }
+        }
+    }
+
+    protected static class CursorLocation implements Location
+    {
+        protected final int lineNumber;
+        protected final int columnNumber;
+        protected final int characterOffset;
+
+        public CursorLocation(int lineNumber, int columnNumber, int characterOffset)
+        {
+            this.lineNumber = lineNumber;
+            this.columnNumber = columnNumber;
+            this.characterOffset = characterOffset;
+        }
+
+        public int getLineNumber()
+        {
+            return this.lineNumber;
+        }
+
+        public int getColumnNumber()
+        {
+            return this.columnNumber;
+        }
+
+        public int getCharacterOffset()
+        {
+            return this.characterOffset;
+        }
+
+        public String getPublicId()
+        {
+            return null;
+        }
+
+        public String getSystemId()
+        {
+            return null;
+        }
+    }
+
+    protected static class CursorStartElement extends CursorEvent implements StartElement
+    {
+        protected final QName name;
+        protected final CursorAttribute[] attributes;
+        protected final Namespace[] namespaces;
+        /** The enclosing element, used to resolve namespace prefixes. */
+        protected final CursorStartElement parent;
+        protected final int lineNumber;
+        protected final int columnNumber;
+        protected final int characterOffset;
+
+        public CursorStartElement(QName name, CursorAttribute[] attributes, Namespace[] namespaces,
+            CursorStartElement parent, int lineNumber, int columnNumber, int characterOffset)
+        {
+            super(XMLStreamConstants.START_ELEMENT);
+            this.name = name;
+            this.attributes = attributes;
+            this.namespaces = namespaces;
+            this.parent = parent;
+            this.lineNumber = lineNumber;
+            this.columnNumber = columnNumber;
+            this.characterOffset = characterOffset;
+        }
+
+        public QName getName()
+        {
+            return this.name;
+        }
+
+        @Override
+        public Location getLocation()
+        {
+            return new CursorLocation(this.lineNumber, this.columnNumber, this.characterOffset);
+        }
+
+        public Iterator<Attribute> getAttributes()
+        {
+            return this.attributes != null ? Arrays.<Attribute>asList(this.attributes).iterator()
+                : Collections.<Attribute>emptyList().iterator();
+        }
+
+        public Iterator<Namespace> getNamespaces()
+        {
+            return this.namespaces != null ? Arrays.asList(this.namespaces).iterator()
+                : Collections.<Namespace>emptyList().iterator();
+        }
+
+        public Attribute getAttributeByName(QName name)
+        {
+            if (this.attributes == null || name == null)
+                return null;
+
+            for (CursorAttribute attribute : this.attributes)
+            {
+                if (attribute.getName().equals(name))
+                    return attribute;
+            }
+
+            return null;
+        }
+
+        public NamespaceContext getNamespaceContext()
+        {
+            return new NamespaceContext()
+            {
+                public String getNamespaceURI(String prefix)
+                {
+                    return CursorStartElement.this.getNamespaceURI(prefix);
+                }
+
+                public String getPrefix(String namespaceURI)
+                {
+                    for (CursorStartElement e = CursorStartElement.this; e != null; e = e.parent)
+                    {
+                        if (e.namespaces == null)
+                            continue;
+
+                        for (Namespace ns : e.namespaces)
+                        {
+                            if (ns.getNamespaceURI().equals(namespaceURI))
+                                return ns.getPrefix();
+                        }
+                    }
+
+                    return null;
+                }
+
+                public Iterator<String> getPrefixes(String namespaceURI)
+                {
+                    String prefix = this.getPrefix(namespaceURI);
+                    return prefix != null ? Collections.singletonList(prefix).iterator()
+                        : Collections.<String>emptyList().iterator();
+                }
+            };
+        }
+
+        public String getNamespaceURI(String prefix)
+        {
+            for (CursorStartElement e = this; e != null; e = e.parent)
+            {
+                if (e.namespaces == null)
+                    continue;
+
+                for (Namespace ns : e.namespaces)
+                {
+                    if (ns.getPrefix().equals(prefix))
+                        return ns.getNamespaceURI();
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder("<").append(formatName(this.name));
+            if (this.attributes != null)
+            {
+                for (CursorAttribute attribute : this.attributes)
+                {
+                    sb.append(' ').append(formatName(attribute.getName())).append("=\"");
+                    appendEscaped(sb, attribute.getValue(), true);
+                    sb.append('"');
+                }
+            }
+
+            return sb.append('>').toString();
+        }
+    }
+
+    protected static class CursorEndElement extends CursorEvent implements EndElement
+    {
+        protected final QName name;
+
+        public CursorEndElement(QName name)
+        {
+            super(XMLStreamConstants.END_ELEMENT);
+            this.name = name;
+        }
+
+        public QName getName()
+        {
+            return this.name;
+        }
+
+        public Iterator<Namespace> getNamespaces()
+        {
+            return Collections.<Namespace>emptyList().iterator();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "</" + formatName(this.name) + ">";
+        }
+    }
+
+    protected static class CursorCharacters extends CursorEvent implements Characters
+    {
+        protected final String data;
+        protected final boolean whitespace;
+
+        public CursorCharacters(int eventType, String data, boolean whitespace)
+        {
+            super(eventType);
+            this.data = data;
+            this.whitespace = whitespace;
+        }
+
+        public String getData()
+        {
+            return this.data;
+        }
+
+        public boolean isWhiteSpace()
+        {
+            return this.whitespace;
+        }
+
+        public boolean isCData()
+        {
+            return this.eventType == XMLStreamConstants.CDATA;
+        }
+
+        public boolean isIgnorableWhiteSpace()
+        {
+            return this.eventType == XMLStreamConstants.SPACE;
+        }
+
+        protected boolean matches(char[] chars, int length)
+        {
+            if (this.data.length() != length)
+                return false;
+
+            for (int i = 0; i < length; i++)
+            {
+                if (this.data.charAt(i) != chars[i])
+                    return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public String toString()
+        {
+            if (this.isCData())
+                return "<![CDATA[" + this.data + "]]>";
+
+            StringBuilder sb = new StringBuilder(this.data.length());
+            appendEscaped(sb, this.data, false);
+            return sb.toString();
+        }
+    }
+
+    protected static class CursorAttribute extends CursorEvent implements Attribute
+    {
+        protected final QName name;
+        protected final String value;
+        protected final String type;
+        protected final boolean specified;
+
+        public CursorAttribute(QName name, String value, String type, boolean specified)
+        {
+            super(XMLStreamConstants.ATTRIBUTE);
+            this.name = name;
+            this.value = value;
+            this.type = type;
+            this.specified = specified;
+        }
+
+        public QName getName()
+        {
+            return this.name;
+        }
+
+        public String getValue()
+        {
+            return this.value;
+        }
+
+        public String getDTDType()
+        {
+            return this.type;
+        }
+
+        public boolean isSpecified()
+        {
+            return this.specified;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder(formatName(this.name)).append("=\"");
+            appendEscaped(sb, this.value, true);
+            return sb.append('"').toString();
+        }
+    }
+}
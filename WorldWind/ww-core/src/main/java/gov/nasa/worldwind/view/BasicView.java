@@ -941,24 +941,11 @@ public class BasicView extends WWObjectImpl implements View
             throw new IllegalArgumentException(message);
         }
 
-        // GLU expects matrices as column-major arrays.
-        double[] modelviewArray = new double[16];
-        double[] projectionArray = new double[16];
-        modelview.toArray(modelviewArray, 0, false);
-        projection.toArray(projectionArray, 0, false);
-        // GLU expects the viewport as a four-component array.
-        int[] viewportArray = new int[] {viewport.x, viewport.y, viewport.width, viewport.height};
-
+        // Compute the projection directly from the matrices, rather than converting them to the column-major arrays
+        // GLU expects.
         double[] result = new double[3];
-        if (!this.dc.getGLU().gluProject(
-            point.x, point.y, point.z,
-            modelviewArray, 0,
-            projectionArray, 0,
-            viewportArray, 0,
-            result, 0))
-        {
+        if (!VecMath.project(modelview, projection, viewport, point.x, point.y, point.z, result, 0))
             return null;
-        }
 
         return Vec4.fromArray3(result, 0);
     }
@@ -709,26 +709,11 @@ public class ViewUtil
             throw new IllegalArgumentException(message);
         }
 
-        GLU glu = new GLUgl2();
-
-        // GLU expects matrices as column-major arrays.
-        double[] modelviewArray = new double[16];
-        double[] projectionArray = new double[16];
-        modelview.toArray(modelviewArray, 0, false);
-        projection.toArray(projectionArray, 0, false);
-        // GLU expects the viewport as a four-component array.
-        int[] viewportArray = new int[] {viewport.x, viewport.y, viewport.width, viewport.height};
-
+        // Compute the projection directly from the matrices, rather than creating a GLU and converting the matrices to
+        // the column-major arrays it expects.
         double[] result = new double[3];
-        if (!glu.gluProject(
-            modelPoint.x, modelPoint.y, modelPoint.z,
-            modelviewArray, 0,
-            projectionArray, 0,
-            viewportArray, 0,
-            result, 0))
-        {
+        if (!VecMath.project(modelview, projection, viewport, modelPoint.x, modelPoint.y, modelPoint.z, result, 0))
             return null;
-        }
 
         return Vec4.fromArray3(result, 0);
     }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwindx.performance;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.coords.*;
+
+import java.lang.management.*;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * Measures the throughput and allocation of UTM and MGRS conversions by {@link UTMCoord} and {@link MGRSCoord} versus
+ * {@link GridCoordConverter}, converting one location at a time and in batches on the current thread and on a thread
+ * per processor. Results are printed in millions of conversions per second and bytes allocated per conversion, where
+ * the virtual machine reports the bytes allocated by a thread. Allocation by the threads of parallel conversions isn't
+ * counted.
+ *
+ * @version $Id$
+ */
+public class CoordConversionThroughput
+{
+    protected static final int NUM_LOCATIONS = 1 << 20;
+    protected static final int WARMUP_ROUNDS = 3;
+
+    protected interface Operation
+    {
+        void run();
+    }
+
+    public static void main(String[] args)
+    {
+        final GridCoordConverter converter = GridCoordConverter.WGS84;
+        final double[] lats = new double[NUM_LOCATIONS];
+        final double[] lons = new double[NUM_LOCATIONS];
+        final Angle[] latAngles = new Angle[NUM_LOCATIONS];
+        final Angle[] lonAngles = new Angle[NUM_LOCATIONS];
+        final String[] mgrsStrings = new String[NUM_LOCATIONS];
+
+        // Locations within the UTM latitudes, where every conversion succeeds.
+        Random random = new Random(1);
+        for (int i = 0; i < NUM_LOCATIONS; i++)
+        {
+            latAngles[i] = Angle.fromDegrees(-79 + 162 * random.nextDouble());
+            lonAngles[i] = Angle.fromDegrees(-180 + 360 * random.nextDouble());
+            lats[i] = latAngles[i].radians;
+            lons[i] = lonAngles[i].radians;
+            mgrsStrings[i] = MGRSCoord.fromLatLon(latAngles[i], lonAngles[i]).toString();
+        }
+
+        final double[] result = new double[2];
+        final int[] zones = new int[NUM_LOCATIONS];
+        final double[] eastings = new double[NUM_LOCATIONS];
+        final double[] northings = new double[NUM_LOCATIONS];
+        final char[] chars = new char[NUM_LOCATIONS * GridCoordConverter.MAX_MGRS_LENGTH];
+        final int[] lengths = new int[NUM_LOCATIONS];
+        final double[] mgrsLats = new double[NUM_LOCATIONS];
+        final double[] mgrsLons = new double[NUM_LOCATIONS];
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try
+        {
+            System.out.printf("%-36s %14s %16s%n", "Conversion", "Mops/s", "Bytes/op");
+
+            measure("UTMCoord.fromLatLon", new Operation()
+            {
+                public void run()
+                {
+                    for (int i = 0; i < NUM_LOCATIONS; i++)
+                    {
+                        UTMCoord.fromLatLon(latAngles[i], lonAngles[i]);
+                    }
+                }
+            });
+
+            measure("GridCoordConverter.geodeticToUTM", new Operation()
+            {
+                public void run()
+                {
+                    for (int i = 0; i < NUM_LOCATIONS; i++)
+                    {
+                        converter.geodeticToUTM(lats[i], lons[i], result, 0);
+                    }
+                }
+            });
+
+            measure("UTM batch, 1 thread", new Operation()
+            {
+                public void run()
+                {
+                    converter.geodeticToUTM(lats, lons, zones, eastings, northings, null);
+                }
+            });
+
+            measure("UTM batch, parallel", new Operation()
+            {
+                public void run()
+                {
+                    converter.geodeticToUTM(lats, lons, zones, eastings, northings, executor);
+                }
+            });
+
+            measure("MGRSCoord.fromLatLon", new Operation()
+            {
+                public void run()
+                {
+                    for (int i = 0; i < NUM_LOCATIONS; i++)
+                    {
+                        MGRSCoord.fromLatLon(latAngles[i], lonAngles[i]);
+                    }
+                }
+            });
+
+            measure("MGRS batch, 1 thread", new Operation()
+            {
+                public void run()
+                {
+                    converter.geodeticToMGRS(lats, lons, 5, chars, lengths, null);
+                }
+            });
+
+            measure("MGRS batch, parallel", new Operation()
+            {
+                public void run()
+                {
+                    converter.geodeticToMGRS(lats, lons, 5, chars, lengths, executor);
+                }
+            });
+
+            measure("MGRSCoord.fromString", new Operation()
+            {
+                public void run()
+                {
+                    for (int i = 0; i < NUM_LOCATIONS; i++)
+                    {
+                        MGRSCoord.fromString(mgrsStrings[i], null);
+                    }
+                }
+            });
+
+            measure("MGRS parse batch, 1 thread", new Operation()
+            {
+                public void run()
+                {
+                    converter.mgrsToGeodetic(chars, lengths, mgrsLats, mgrsLons, null);
+                }
+            });
+
+            measure("MGRS parse batch, parallel", new Operation()
+            {
+                public void run()
+                {
+                    converter.mgrsToGeodetic(chars, lengths, mgrsLats, mgrsLons, executor);
+                }
+            });
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    protected static void measure(String name, Operation operation)
+    {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+        {
+            operation.run();
+        }
+
+        long startBytes = getAllocatedBytes();
+        long start = System.nanoTime();
+        operation.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long bytes = getAllocatedBytes() - startBytes;
+
+        System.out.printf("%-36s %14.2f %16s%n", name, NUM_LOCATIONS / seconds / 1e6,
+            startBytes >= 0 ? String.format("%.1f", (double) bytes / NUM_LOCATIONS) : "n/a");
+    }
+
+    protected static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        return -1;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwindx.performance;
+
+import gov.nasa.worldwind.geom.*;
+
+import java.awt.*;
+import java.lang.management.*;
+import java.util.Random;
+
+/**
+ * Measures the throughput and allocation of the per-frame geometry operations replaced by the {@link VecMath} kernels:
+ * path segment culling by a new {@link Cylinder} for every segment versus the cylinder kernel, {@link Box} culling, and
+ * point projection by {@link Vec4} transforms versus {@link VecMath#project}. Results are printed in millions of
+ * operations per second and bytes allocated per operation, where the virtual machine reports the bytes allocated by a
+ * thread.
+ *
+ * @version $Id$
+ */
+public class GeomKernelThroughput
+{
+    protected static final int NUM_EXTENTS = 4096;
+    protected static final int OPERATIONS = 10000000;
+    protected static final int WARMUP_ROUNDS = 3;
+
+    protected interface Operation
+    {
+        int run(int index);
+    }
+
+    public static void main(String[] args)
+    {
+        final Frustum frustum = Frustum.fromPerspective(Angle.fromDegrees(45), 1000, 800, 1, 1000);
+        final double[] planes = frustum.getPlaneCoefficients();
+        final Matrix modelview = Matrix.fromTranslation(0, 0, -500);
+        final Matrix projection = Matrix.fromPerspective(Angle.fromDegrees(45), 1000, 800, 1, 1000);
+        final Matrix modelviewProjection = projection.multiply(modelview);
+        final Rectangle viewport = new Rectangle(0, 0, 1000, 800);
+        final double[] result = new double[3];
+
+        // Segments and boxes scattered around the frustum, about a third of which are visible.
+        final Vec4[] bottoms = new Vec4[NUM_EXTENTS];
+        final Vec4[] tops = new Vec4[NUM_EXTENTS];
+        final Cylinder[] cylinders = new Cylinder[NUM_EXTENTS];
+        final Box[] boxes = new Box[NUM_EXTENTS];
+        Random random = new Random(1);
+        for (int i = 0; i < NUM_EXTENTS; i++)
+        {
+            Vec4 p = new Vec4(1000 * random.nextDouble() - 500, 1000 * random.nextDouble() - 500,
+                -1200 * random.nextDouble() + 100);
+            Vec4 d = new Vec4(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).normalize3();
+            bottoms[i] = p;
+            tops[i] = p.add3(d.multiply3(20));
+            cylinders[i] = new Cylinder(bottoms[i], tops[i], 2);
+
+            Vec4 s = d.cross3(Vec4.UNIT_Z).normalize3();
+            Vec4 t = d.cross3(s).normalize3();
+            boxes[i] = new Box(new Vec4[] {d, s, t}, d.dot3(p), d.dot3(p) + 20, s.dot3(p) - 2, s.dot3(p) + 2,
+                t.dot3(p) - 1, t.dot3(p) + 1);
+        }
+
+        System.out.printf("%-32s %14s %16s %10s%n", "Operation", "Mops/s", "Bytes/op", "Hits");
+
+        measure("new Cylinder, intersects", new Operation()
+        {
+            public int run(int index)
+            {
+                return new Cylinder(bottoms[index], tops[index], 2).intersects(frustum) ? 1 : 0;
+            }
+        });
+
+        measure("Cylinder.intersects", new Operation()
+        {
+            public int run(int index)
+            {
+                return cylinders[index].intersects(frustum) ? 1 : 0;
+            }
+        });
+
+        measure("VecMath cylinder kernel", new Operation()
+        {
+            public int run(int index)
+            {
+                return VecMath.frustumIntersectsCylinder(planes, bottoms[index], tops[index], 2) ? 1 : 0;
+            }
+        });
+
+        measure("Box.intersects", new Operation()
+        {
+            public int run(int index)
+            {
+                return boxes[index].intersects(frustum) ? 1 : 0;
+            }
+        });
+
+        measure("Vec4 projection", new Operation()
+        {
+            public int run(int index)
+            {
+                Vec4 p = bottoms[index].transformBy4(modelviewProjection);
+                if (p.w == 0)
+                    return 0;
+
+                p = p.divide3(p.w);
+                return viewport.x + (p.x * 0.5 + 0.5) * viewport.width > 0 ? 1 : 0;
+            }
+        });
+
+        measure("VecMath.project", new Operation()
+        {
+            public int run(int index)
+            {
+                Vec4 p = bottoms[index];
+                if (!VecMath.project(modelview, projection, viewport, p.x, p.y, p.z, result, 0))
+                    return 0;
+
+                return result[0] > 0 ? 1 : 0;
+            }
+        });
+    }
+
+    protected static void measure(String name, Operation operation)
+    {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+        {
+            runOperations(operation);
+        }
+
+        long startBytes = getAllocatedBytes();
+        long start = System.nanoTime();
+        int hits = runOperations(operation);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long bytes = getAllocatedBytes() - startBytes;
+
+        System.out.printf("%-32s %14.1f %16s %10d%n", name, OPERATIONS / seconds / 1e6,
+            startBytes >= 0 ? String.format("%.1f", (double) bytes / OPERATIONS) : "n/a", hits);
+    }
+
+    protected static int runOperations(Operation operation)
+    {
+        int hits = 0;
+        for (int n = 0; n < OPERATIONS; n++)
+        {
+            hits += operation.run(n % NUM_EXTENTS);
+        }
+
+        return hits;
+    }
+
+    protected static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        return -1;
+    }
+}
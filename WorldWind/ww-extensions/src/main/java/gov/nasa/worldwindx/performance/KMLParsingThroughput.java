@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwindx.performance;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.ogc.kml.KMLRoot;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.Random;
+
+/**
+ * Compares the time and garbage collection activity of parsing a large KML file with the XML parser's event reader and
+ * with the cursor-based event reader enabled by {@link AVKey#XML_CURSOR_PARSING}. The file to parse may be specified as
+ * the first argument. Otherwise a KML file of about 100 MB, holding many placemarks with line strings, is created in
+ * the temporary directory.
+ *
+ * @version $Id$
+ */
+public class KMLParsingThroughput
+{
+    protected static final long GENERATED_FILE_SIZE = 100L * 1024 * 1024;
+    protected static final int ITERATIONS = 3;
+
+    public static void main(String[] args) throws Exception
+    {
+        File file = args.length > 0 ? new File(args[0]) : createFile();
+        System.out.printf("Parsing %s, %.1f MB%n", file.getPath(), file.length() / 1024d / 1024d);
+
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            for (boolean cursor : new boolean[] {false, true})
+            {
+                Configuration.setValue(AVKey.XML_CURSOR_PARSING, Boolean.toString(cursor));
+                System.gc();
+
+                long gcCount = getCollectionCount();
+                long gcTime = getCollectionTime();
+                long start = System.nanoTime();
+
+                KMLRoot root = KMLRoot.createAndParse(file);
+
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-8s %8.2f s %8.1f MB/s %6d collections %8d ms collecting%s%n",
+                    cursor ? "cursor" : "event", seconds, file.length() / 1024d / 1024d / seconds,
+                    getCollectionCount() - gcCount, getCollectionTime() - gcTime,
+                    (root != null && root.getFeature() != null) ? "" : "  (no feature parsed)");
+            }
+        }
+
+        Configuration.removeKey(AVKey.XML_CURSOR_PARSING);
+    }
+
+    protected static File createFile() throws IOException
+    {
+        File file = File.createTempFile("KMLParsingThroughput", ".kml");
+        file.deleteOnExit();
+
+        Random random = new Random(1);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try
+        {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n<Document>\n");
+
+            long size = 0;
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; size < GENERATED_FILE_SIZE; i++)
+            {
+                sb.setLength(0);
+                sb.append("  <Placemark id=\"p").append(i).append("\">\n");
+                sb.append("    <name>Placemark ").append(i).append("</name>\n");
+                sb.append("    <styleUrl>#style").append(i % 10).append("</styleUrl>\n");
+                sb.append("    <visibility>1</visibility>\n");
+                sb.append("    <LineString>\n      <tessellate>1</tessellate>\n      <coordinates>");
+                for (int j = 0; j < 20; j++)
+                {
+                    sb.append(random.nextDouble() * 360 - 180).append(',');
+                    sb.append(random.nextDouble() * 180 - 90).append(",0 ");
+                }
+                sb.append("</coordinates>\n    </LineString>\n  </Placemark>\n");
+
+                writer.write(sb.toString());
+                size += sb.length();
+            }
+
+            writer.write("</Document>\n</kml>\n");
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        return file;
+    }
+
+    protected static long getCollectionCount()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += bean.getCollectionCount();
+        }
+
+        return count;
+    }
+
+    protected static long getCollectionTime()
+    {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            time += bean.getCollectionTime();
+        }
+
+        return time;
+    }
+}
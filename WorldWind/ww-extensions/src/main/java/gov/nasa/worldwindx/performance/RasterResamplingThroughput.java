@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwindx.performance;
+
+import gov.nasa.worldwind.data.RasterResampler;
+import gov.nasa.worldwind.geom.Sector;
+
+import java.util.concurrent.*;
+
+/**
+ * Measures the throughput of {@link RasterResampler} for each kernel, on elevation-like scalar rasters and on ARGB
+ * images, resampling on one thread and on all available processors. Results are printed in millions of destination
+ * pixels per second.
+ *
+ * @version $Id$
+ */
+public class RasterResamplingThroughput
+{
+    protected static final int SOURCE_SIZE = 1024;
+    protected static final int DEST_SIZE = 1500;
+    protected static final int WARMUP_ITERATIONS = 5;
+    protected static final int ITERATIONS = 10;
+    protected static final double MISSING = -32768;
+
+    protected static class ScalarArray extends RasterResampler.ScalarAccess
+    {
+        protected double[] values;
+        protected int width;
+        protected boolean concurrent;
+
+        public ScalarArray(double[] values, int width, boolean concurrent)
+        {
+            this.values = values;
+            this.width = width;
+            this.concurrent = concurrent;
+        }
+
+        public void get(int x, int y, int length, double[] array, int offset)
+        {
+            System.arraycopy(this.values, x + y * this.width, array, offset, length);
+        }
+
+        public void put(int x, int y, double[] array, int offset, int length)
+        {
+            System.arraycopy(array, offset, this.values, x + y * this.width, length);
+        }
+
+        @Override
+        public RasterResampler.ScalarAccess duplicate()
+        {
+            return this.concurrent ? this : null;
+        }
+    }
+
+    protected static class ColorArray extends RasterResampler.ColorAccess
+    {
+        protected int[] pixels;
+        protected int width;
+        protected boolean concurrent;
+
+        public ColorArray(int[] pixels, int width, boolean concurrent)
+        {
+            this.pixels = pixels;
+            this.width = width;
+            this.concurrent = concurrent;
+        }
+
+        public void get(int x, int y, int length, int[] array, int offset)
+        {
+            System.arraycopy(this.pixels, x + y * this.width, array, offset, length);
+        }
+
+        public void put(int x, int y, int[] array, int offset, int length)
+        {
+            System.arraycopy(array, offset, this.pixels, x + y * this.width, length);
+        }
+
+        @Override
+        public RasterResampler.ColorAccess duplicate()
+        {
+            return this.concurrent ? this : null;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        double[] scalarSource = new double[SOURCE_SIZE * SOURCE_SIZE];
+        int[] colorSource = new int[SOURCE_SIZE * SOURCE_SIZE];
+        for (int y = 0; y < SOURCE_SIZE; y++)
+        {
+            for (int x = 0; x < SOURCE_SIZE; x++)
+            {
+                int i = x + y * SOURCE_SIZE;
+                scalarSource[i] = (i % 97 == 0) ? MISSING : 1000 * Math.sin(x * 0.01) * Math.cos(y * 0.013);
+                colorSource[i] = ((x ^ y) % 13 == 0) ? 0
+                    : 0xFF000000 | ((x & 0xFF) << 16) | ((y & 0xFF) << 8) | ((x + y) & 0xFF);
+            }
+        }
+
+        double[] scalarDest = new double[DEST_SIZE * DEST_SIZE];
+        int[] colorDest = new int[DEST_SIZE * DEST_SIZE];
+        Sector sourceSector = Sector.fromDegrees(30, 40, -120, -110);
+        Sector destSector = Sector.fromDegrees(31, 38, -119, -112);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try
+        {
+            System.out.printf("%-10s %-8s %12s %12s%n", "Kernel", "Raster", "1 thread", "Parallel");
+
+            for (RasterResampler.Kernel kernel : RasterResampler.Kernel.values())
+            {
+                RasterResampler resampler = new RasterResampler(kernel, executor);
+
+                RasterResampler.Mapping mapping = RasterResampler.Mapping.fromPointSamples(SOURCE_SIZE, SOURCE_SIZE,
+                    sourceSector, DEST_SIZE, DEST_SIZE, destSector);
+                double[] rates = new double[2];
+                for (int p = 0; p < 2; p++)
+                {
+                    ScalarArray source = new ScalarArray(scalarSource, SOURCE_SIZE, p == 1);
+                    ScalarArray dest = new ScalarArray(scalarDest, DEST_SIZE, p == 1);
+                    for (int i = 0; i < WARMUP_ITERATIONS; i++)
+                    {
+                        resampler.resample(source, SOURCE_SIZE, SOURCE_SIZE, MISSING, dest, DEST_SIZE, DEST_SIZE,
+                            mapping);
+                    }
+
+                    long start = System.nanoTime();
+                    for (int i = 0; i < ITERATIONS; i++)
+                    {
+                        resampler.resample(source, SOURCE_SIZE, SOURCE_SIZE, MISSING, dest, DEST_SIZE, DEST_SIZE,
+                            mapping);
+                    }
+                    rates[p] = computeRate(start);
+                }
+                System.out.printf("%-10s %-8s %12.1f %12.1f%n", kernel, "scalar", rates[0], rates[1]);
+
+                mapping = RasterResampler.Mapping.fromAreaSamples(SOURCE_SIZE, SOURCE_SIZE, sourceSector, DEST_SIZE,
+                    DEST_SIZE, destSector);
+                for (int p = 0; p < 2; p++)
+                {
+                    ColorArray source = new ColorArray(colorSource, SOURCE_SIZE, p == 1);
+                    ColorArray dest = new ColorArray(colorDest, DEST_SIZE, p == 1);
+                    for (int i = 0; i < WARMUP_ITERATIONS; i++)
+                    {
+                        resampler.resample(source, SOURCE_SIZE, SOURCE_SIZE, dest, DEST_SIZE, DEST_SIZE, mapping);
+                    }
+
+                    long start = System.nanoTime();
+                    for (int i = 0; i < ITERATIONS; i++)
+                    {
+                        resampler.resample(source, SOURCE_SIZE, SOURCE_SIZE, dest, DEST_SIZE, DEST_SIZE, mapping);
+                    }
+                    rates[p] = computeRate(start);
+                }
+                System.out.printf("%-10s %-8s %12.1f %12.1f%n", kernel, "color", rates[0], rates[1]);
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    protected static double computeRate(long startNanos)
+    {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return (double) ITERATIONS * DEST_SIZE * DEST_SIZE / seconds / 1e6;
+    }
+}
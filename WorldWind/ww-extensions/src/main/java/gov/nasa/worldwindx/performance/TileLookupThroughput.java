@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwindx.performance;
+
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.util.*;
+
+import java.lang.management.*;
+
+/**
+ * Measures the throughput and allocation of per-frame tile lookups. Tiles are looked up the way tiled layers and
+ * elevation models look them up each frame: by a new {@link TileKey} in a {@link BasicMemoryCache}, by a new
+ * <code>TileKey</code> in a {@link LongKeyMemoryCache}, and by a {@link PackedTileKey} in a
+ * <code>LongKeyMemoryCache</code>. Half of the lookups miss. Results are printed in millions of lookups per second and
+ * bytes allocated per lookup, where the virtual machine reports the bytes allocated by a thread.
+ *
+ * @version $Id$
+ */
+public class TileLookupThroughput
+{
+    protected static final int NUM_LEVELS = 12;
+    protected static final int TILES_PER_LEVEL = 1000;
+    protected static final int LOOKUPS = 10000000;
+    protected static final int WARMUP_ROUNDS = 3;
+    protected static final String CACHE_NAME = "Earth/Test Imagery";
+
+    protected interface Lookup
+    {
+        int run(int level, int row, int col);
+    }
+
+    public static void main(String[] args)
+    {
+        final MemoryCache basicCache = new BasicMemoryCache(Long.MAX_VALUE / 2, Long.MAX_VALUE);
+        final LongKeyMemoryCache longCache = new LongKeyMemoryCache(Long.MAX_VALUE / 2, Long.MAX_VALUE);
+
+        // Cache the tiles in even columns, so that lookups of odd columns miss.
+        for (int level = 0; level < NUM_LEVELS; level++)
+        {
+            for (int i = 0; i < TILES_PER_LEVEL; i += 2)
+            {
+                TileKey key = new TileKey(level, i / 50, i, CACHE_NAME);
+                basicCache.add(key, key, 1);
+                longCache.add(key, key, 1);
+            }
+        }
+
+        final int datasetId = PackedTileKey.getDatasetId(CACHE_NAME);
+
+        System.out.printf("%-32s %14s %16s %10s%n", "Lookup", "Mlookups/s", "Bytes/lookup", "Hits");
+
+        measure("TileKey, BasicMemoryCache", new Lookup()
+        {
+            public int run(int level, int row, int col)
+            {
+                return basicCache.getObject(new TileKey(level, row, col, CACHE_NAME)) != null ? 1 : 0;
+            }
+        });
+
+        measure("TileKey, LongKeyMemoryCache", new Lookup()
+        {
+            public int run(int level, int row, int col)
+            {
+                return longCache.getObject(new TileKey(level, row, col, CACHE_NAME)) != null ? 1 : 0;
+            }
+        });
+
+        measure("Packed key, LongKeyMemoryCache", new Lookup()
+        {
+            public int run(int level, int row, int col)
+            {
+                return longCache.getObject(PackedTileKey.pack(datasetId, level, row, col)) != null ? 1 : 0;
+            }
+        });
+    }
+
+    protected static void measure(String name, Lookup lookup)
+    {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+        {
+            runLookups(lookup);
+        }
+
+        long startBytes = getAllocatedBytes();
+        long start = System.nanoTime();
+        int hits = runLookups(lookup);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long bytes = getAllocatedBytes() - startBytes;
+
+        System.out.printf("%-32s %14.1f %16s %10d%n", name, LOOKUPS / seconds / 1e6,
+            startBytes >= 0 ? String.format("%.1f", (double) bytes / LOOKUPS) : "n/a", hits);
+    }
+
+    protected static int runLookups(Lookup lookup)
+    {
+        int hits = 0;
+        for (int n = 0; n < LOOKUPS; n++)
+        {
+            int level = n % NUM_LEVELS;
+            int i = (n / NUM_LEVELS) % TILES_PER_LEVEL;
+            hits += lookup.run(level, i / 50, i);
+        }
+
+        return hits;
+    }
+
+    protected static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        return -1;
+    }
+}
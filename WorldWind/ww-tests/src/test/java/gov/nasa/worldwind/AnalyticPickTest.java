@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.layers.*;
+import gov.nasa.worldwind.pick.*;
+import gov.nasa.worldwind.render.*;
+import gov.nasa.worldwind.render.Polygon;
+import gov.nasa.worldwind.view.BasicView;
+import org.junit.*;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class AnalyticPickTest
+{
+    /** A renderable that occupies a fixed screen rectangle and fails if it's asked to draw. */
+    private static class ScreenBox implements Renderable, AnalyticPickable
+    {
+        private final Rectangle rectangle;
+        private final double depth;
+
+        public ScreenBox(int x, int y, int width, int height, double depth)
+        {
+            this.rectangle = new Rectangle(x, y, width, height);
+            this.depth = depth;
+        }
+
+        public void render(DrawContext dc)
+        {
+            fail("Analytically pickable renderable drawn in pick colors");
+        }
+
+        public void addAnalyticPickGeometry(DrawContext dc, AnalyticPickSupport pickSupport)
+        {
+            pickSupport.addScreenRectangle(pickSupport.addObject(this, null), this.rectangle, this.depth);
+        }
+    }
+
+    /**
+     * A view with a fixed viewport and eye position looking down at latitude and longitude zero, so layers are active
+     * and geometry is projected without a GL context.
+     */
+    private static class FixedView extends BasicView
+    {
+        public FixedView(Globe globe)
+        {
+            this.viewport = new Rectangle(0, 0, 100, 100);
+            this.lastEyePosition = Position.fromDegrees(0, 0, 1e6);
+            this.modelview = Matrix.fromViewLookAt(globe.computePointFromPosition(this.lastEyePosition), Vec4.ZERO,
+                Vec4.UNIT_Y);
+            this.modelviewInv = this.modelview.getInverse();
+            this.projection = Matrix.fromPerspective(this.fieldOfView, 100, 100, 1e3, 1e7);
+        }
+    }
+
+    /** A layer that records the renderables it leaves to color picking, which needs a GL context. */
+    private static class RecordingLayer extends RenderableLayer
+    {
+        private final List<Renderable> colorPicked = new ArrayList<Renderable>();
+
+        @Override
+        protected Iterable<? extends Renderable> addAnalyticPickGeometry(DrawContext dc,
+            Iterable<? extends Renderable> renderables)
+        {
+            for (Renderable renderable : super.addAnalyticPickGeometry(dc, renderables))
+            {
+                this.colorPicked.add(renderable);
+            }
+
+            return Collections.emptyList();
+        }
+    }
+
+    private BasicSceneController sceneController;
+    private DrawContext dc;
+    private RecordingLayer layer;
+    private ScreenBox near;
+    private ScreenBox far;
+    private ScreenBox corner;
+
+    @Before
+    public void setUp()
+    {
+        this.near = new ScreenBox(0, 0, 50, 50, 0.2);
+        this.far = new ScreenBox(0, 0, 50, 50, 0.5);
+        this.corner = new ScreenBox(70, 70, 10, 10, 0.5);
+
+        this.layer = new RecordingLayer();
+        this.layer.addRenderable(this.far);
+        this.layer.addRenderable(this.near);
+        this.layer.addRenderable(this.corner);
+
+        Earth earth = new Earth();
+        this.dc = new DrawContextImpl();
+        this.dc.setModel(new BasicModel(earth, new LayerList(new Layer[] {this.layer})));
+        this.dc.setView(new FixedView(earth));
+
+        this.sceneController = new BasicSceneController();
+        this.sceneController.setAnalyticPickEnabled(true);
+    }
+
+    @Test
+    /** Tests that analytic picking is disabled by default. */
+    public void testDisabledByDefault()
+    {
+        assertFalse("Analytic picking enabled by default ", new BasicSceneController().isAnalyticPickEnabled());
+    }
+
+    @Test
+    /** Tests that the scene controller's pick pass picks analytically pickable renderables at the pick point. */
+    public void testPickPoint()
+    {
+        // AWT row 74 is OpenGL row 25 in a 100 pixel high viewport.
+        this.dc.setPickPoint(new Point(25, 74));
+        this.sceneController.pick(this.dc);
+
+        PickedObjectList pol = this.sceneController.getPickedObjectList();
+        assertEquals("Picked object count incorrect ", 2, pol.size());
+        assertSame("Top object incorrect ", this.near, pol.getTopObject());
+        assertSame("Objects not ordered nearest first ", this.far, pol.get(1).getObject());
+        assertFalse("Farther object on top ", pol.get(1).isOnTop());
+        assertSame("Parent layer incorrect ", this.layer, pol.getTopPickedObject().getParentLayer());
+        assertNull("Analytic pick support retained ", this.dc.getAnalyticPickSupport());
+
+        // Picking again reuses the pick support without retaining the previous pick's geometry.
+        this.layer.removeRenderable(this.near);
+        this.dc.getPickedObjects().clear();
+        this.sceneController.pick(this.dc);
+
+        pol = this.sceneController.getPickedObjectList();
+        assertEquals("Picked object count incorrect after removal ", 1, pol.size());
+        assertSame("Top object incorrect after removal ", this.far, pol.getTopObject());
+    }
+
+    @Test
+    /** Tests that the scene controller's pick pass finds analytically pickable renderables in the pick rectangle. */
+    public void testPickRectangle()
+    {
+        // AWT rows 0 through 39 are OpenGL rows 60 through 99.
+        this.dc.setPickRectangle(new Rectangle(60, 0, 40, 40));
+        this.sceneController.pick(this.dc);
+
+        PickedObjectList pol = this.sceneController.getObjectsInPickRectangle();
+        assertEquals("Object count incorrect ", 1, pol.size());
+        assertSame("Object incorrect ", this.corner, pol.get(0).getObject());
+        assertTrue("Nothing picked at the pick point ", this.sceneController.getPickedObjectList().isEmpty());
+    }
+
+    @Test
+    /** Tests that shapes without exact pick geometry are picked by color rather than by their extents. */
+    public void testShapesWithoutGeometryColorPicked()
+    {
+        // A thin polygon south of the view's center, whose bounding sphere contains the center.
+        final List<Position> positions = Arrays.asList(Position.fromDegrees(-2, -4, 0), Position.fromDegrees(-2, 4, 0),
+            Position.fromDegrees(-1.5, 0, 0), Position.fromDegrees(-2, -4, 0));
+        final Globe globe = this.dc.getGlobe();
+        Polygon polygon = new Polygon(positions)
+        {
+            @Override
+            public Extent getExtent(Globe globe, double verticalExaggeration)
+            {
+                // The extent the polygon has once drawn, which needs a GL context.
+                Vec4[] points = new Vec4[positions.size()];
+                for (int i = 0; i < points.length; i++)
+                {
+                    points[i] = globe.computePointFromPosition(positions.get(i));
+                }
+
+                return Sphere.createBoundingSphere(points);
+            }
+        };
+        Path path = new Path(positions);
+
+        Extent extent = polygon.getExtent(globe, 1);
+        assertTrue("Polygon's extent excludes the pick point ",
+            extent.getCenter().distanceTo3(globe.computePointFromPosition(Position.ZERO)) < extent.getRadius());
+
+        this.layer.removeAllRenderables();
+        this.layer.addRenderable(polygon);
+        this.layer.addRenderable(path);
+        this.dc.setPickPoint(new Point(50, 50));
+        this.sceneController.pick(this.dc);
+
+        assertTrue("Polygon picked outside its outline ", this.sceneController.getPickedObjectList().isEmpty());
+        assertEquals("Polygon not left to color picking ", Arrays.asList(polygon), this.layer.colorPicked);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class LongKeyMemoryCacheTest
+{
+    @Test
+    /** Tests that tiles are found by tile key and by packed key, and that packed keys round trip. */
+    public void testTileKeys()
+    {
+        LongKeyMemoryCache cache = new LongKeyMemoryCache(8000, 10000);
+        for (int i = 0; i < 2000; i++)
+        {
+            assertTrue("Tile not added ", cache.add(new TileKey(i % 20, i / 3, i, "cacheA"), "A" + i, 1));
+            assertTrue("Tile not added ", cache.add(new TileKey(i % 20, i / 3, i, "cacheB"), "B" + i, 1));
+        }
+
+        // Remove enough tiles that removals shift entries within probe sequences.
+        for (int i = 0; i < 2000; i += 3)
+        {
+            cache.remove(new TileKey(i % 20, i / 3, i, "cacheA"));
+        }
+
+        assertEquals("Object count incorrect ", 4000 - 667, cache.getNumObjects());
+        assertEquals("Used capacity incorrect ", 4000 - 667, cache.getUsedCapacity());
+
+        for (int i = 0; i < 2000; i++)
+        {
+            long keyA = PackedTileKey.pack("cacheA", i % 20, i / 3, i);
+            long keyB = PackedTileKey.pack("cacheB", i % 20, i / 3, i);
+            assertEquals("Object incorrect ", i % 3 == 0 ? null : "A" + i, cache.getObject(keyA));
+            assertEquals("Object incorrect ", "B" + i, cache.getObject(new TileKey(i % 20, i / 3, i, "cacheB")));
+            assertEquals("Object incorrect ", "B" + i, cache.getObject(keyB));
+            assertEquals("Key incorrect ", new TileKey(i % 20, i / 3, i, "cacheB"), PackedTileKey.toTileKey(keyB));
+        }
+
+        assertEquals("Unpackable key packed ", PackedTileKey.NONE,
+            PackedTileKey.pack("cacheA", 0, PackedTileKey.MAX_ROW + 1, 0));
+    }
+
+    @Test
+    /** Tests that the least recently used entries are removed when the cache fills, and that listeners are notified. */
+    public void testLeastRecentlyUsedRemoval()
+    {
+        final List<Object> removed = new ArrayList<Object>();
+
+        LongKeyMemoryCache cache = new LongKeyMemoryCache(60, 100);
+        cache.addCacheListener(new MemoryCache.CacheListener()
+        {
+            public void entryRemoved(Object key, Object clientObject)
+            {
+                removed.add(key);
+            }
+
+            public void removalException(Throwable exception, Object key, Object clientObject)
+            {
+            }
+        });
+
+        for (long key = 0; key < 100; key++)
+        {
+            cache.add(key, "value", 1);
+        }
+        cache.getObject(0L);
+
+        // Adding to the full cache removes the 40 least recently used entries, keys 1 to 40.
+        cache.add("unpackable", "value", 1);
+
+        assertEquals("Object count incorrect ", 61, cache.getNumObjects());
+        assertEquals("Removed entries incorrect ", 40, removed.size());
+        assertTrue("Recently used entry removed ", cache.contains(0L));
+        assertFalse("Least recently used entry kept ", cache.contains(40L));
+        assertTrue("Entry removed ", cache.contains(41L));
+        assertTrue("Entry not added ", cache.contains("unpackable"));
+
+        cache.clear();
+        assertEquals("Object count incorrect ", 0, cache.getNumObjects());
+        assertEquals("Used capacity incorrect ", 0, cache.getUsedCapacity());
+        assertTrue("Listener not given key ", removed.contains("unpackable"));
+        assertNull("Removed entry found ", cache.getObject("unpackable"));
+    }
+}
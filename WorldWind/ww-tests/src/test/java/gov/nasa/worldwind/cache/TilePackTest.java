@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+import org.junit.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class TilePackTest
+{
+    protected File directory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.directory = File.createTempFile("TilePackTest", "");
+        this.directory.delete();
+    }
+
+    @After
+    public void tearDown()
+    {
+        deleteDirectory(this.directory);
+    }
+
+    @Test
+    /** Tests that tiles are found after the index grows, the data files roll over and the pack is reopened. */
+    public void testWriteAndRead() throws IOException
+    {
+        int numTiles = 3000;
+
+        TilePack pack = new TilePack(this.directory, true, 20000);
+        for (int i = 0; i < numTiles; i++)
+        {
+            pack.write(new TileKey(i % 10, i / 10, i, "test"), ".png", ByteBuffer.wrap(makeContents(i)));
+        }
+        pack.write(new TileKey(0, 0, 0, "test"), ".jpg", ByteBuffer.wrap(makeContents(-1)));
+        pack.remove(new TileKey(1, 0, 1, "test"));
+        pack.close();
+
+        pack = new TilePack(this.directory, false);
+        try
+        {
+            assertEquals("Tile count incorrect ", numTiles, pack.getTileCount());
+            assertTrue("Data files not rolled over ", new File(this.directory, "tiles.1.dat").exists());
+
+            for (int i = 2; i < numTiles; i++)
+            {
+                TilePack.Entry entry = pack.read(new TileKey(i % 10, i / 10, i, "test"));
+                assertNotNull("Tile not found " + i, entry);
+                assertEquals("Suffix incorrect ", ".png", entry.getFormatSuffix());
+                assertEquals("Contents incorrect ", ByteBuffer.wrap(makeContents(i)), entry.getBuffer());
+            }
+
+            TilePack.Entry entry = pack.read(new TileKey(0, 0, 0, "test"));
+            assertEquals("Replaced tile incorrect ", ".jpg", entry.getFormatSuffix());
+            assertEquals("Replaced tile incorrect ", ByteBuffer.wrap(makeContents(-1)), entry.getBuffer());
+            assertNull("Removed tile found ", pack.read(new TileKey(1, 0, 1, "test")));
+            assertFalse("Removed tile found ", pack.contains(new TileKey(1, 0, 1, "test")));
+            assertNull("Missing tile found ", pack.read(new TileKey(0, 0, 1, "test")));
+        }
+        finally
+        {
+            pack.close();
+        }
+    }
+
+    @Test
+    /** Tests conversion of a tree of tile files to a pack. */
+    public void testConvert() throws IOException
+    {
+        writeFile(new File(this.directory, "0/3/3_7.png"), makeContents(1));
+        writeFile(new File(this.directory, "5/12/12_40.bil.gz"), makeContents(2));
+        writeFile(new File(this.directory, "dataConfig.xml"), makeContents(3));
+        writeFile(new File(this.directory, "5/12/notes.txt"), makeContents(4));
+        writeFile(new File(this.directory, "thumbnails/3/3_7.png"), makeContents(5));
+        writeFile(new File(this.directory, "5/12/12_x1.png"), makeContents(6));
+
+        assertEquals("Tile count incorrect ", 2, TilePackConverter.convert(this.directory, true));
+        assertFalse("Tile file not removed ", new File(this.directory, "0/3/3_7.png").exists());
+        assertTrue("Other file removed ", new File(this.directory, "5/12/notes.txt").exists());
+        assertTrue("Non-level directory converted ", new File(this.directory, "thumbnails/3/3_7.png").exists());
+
+        TilePack pack = new TilePack(this.directory, false);
+        try
+        {
+            TilePack.Entry entry = pack.read(new TileKey(5, 12, 40, "test"));
+            assertEquals("Suffix incorrect ", ".bil.gz", entry.getFormatSuffix());
+            assertEquals("Contents incorrect ", ByteBuffer.wrap(makeContents(2)), entry.getBuffer());
+            assertTrue("Tile not found ", pack.contains(new TileKey(0, 3, 7, "test")));
+        }
+        finally
+        {
+            pack.close();
+        }
+    }
+
+    protected static byte[] makeContents(int seed)
+    {
+        byte[] bytes = new byte[50 + Math.abs(seed) % 200];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte) (seed * 31 + i);
+        }
+
+        return bytes;
+    }
+
+    protected static void writeFile(File file, byte[] bytes) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        WWIO.saveBuffer(ByteBuffer.wrap(bytes), file);
+    }
+
+    protected static void deleteDirectory(File file)
+    {
+        File[] files = file.listFiles();
+        if (files != null)
+        {
+            for (File f : files)
+            {
+                deleteDirectory(f);
+            }
+        }
+
+        file.delete();
+    }
+}
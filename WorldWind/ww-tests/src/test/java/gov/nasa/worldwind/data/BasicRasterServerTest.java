@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.data;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.geom.Sector;
+import org.junit.*;
+
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class BasicRasterServerTest
+{
+    protected static final double MISSING = -9999;
+
+    /** A server composing in-memory rasters, which draws them either concurrently or one after another. */
+    protected static class TestServer extends BasicRasterServer
+    {
+        protected boolean concurrent;
+
+        public TestServer(String pixelFormat, List<DataRaster> rasters, boolean concurrent)
+        {
+            super(rasters, null);
+
+            this.setValue(AVKey.PIXEL_FORMAT, pixelFormat);
+            this.setValue(AVKey.SECTOR, Sector.fromDegrees(0, 10, 0, 10));
+            this.dataRasterList.addAll(rasters);
+            this.concurrent = concurrent;
+        }
+
+        @Override
+        protected void init(Object o)
+        {
+            // The rasters are added by the constructor rather than read from a configuration document.
+        }
+
+        @Override
+        protected boolean isConcurrentDrawingSupported(DataRaster canvas)
+        {
+            return this.concurrent && super.isConcurrentDrawingSupported(canvas);
+        }
+    }
+
+    protected ExecutorService executor;
+
+    @Before
+    public void setUp()
+    {
+        this.executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.executor.shutdown();
+    }
+
+    @Test
+    /** Tests that elevations composed concurrently are the same as elevations composed one raster at a time. */
+    public void testElevationsConcurrentMatchesSequential()
+    {
+        List<DataRaster> rasters = createElevationRasters();
+        TestServer concurrent = new TestServer(AVKey.ELEVATION, rasters, true);
+        concurrent.setExecutor(this.executor);
+        TestServer sequential = new TestServer(AVKey.ELEVATION, rasters, false);
+
+        for (Sector sector : createRequestSectors())
+        {
+            BufferWrapperRaster expected = (BufferWrapperRaster) sequential.composeRaster(createRequest(sector));
+            BufferWrapperRaster actual = (BufferWrapperRaster) concurrent.composeRaster(createRequest(sector));
+
+            for (int row = 0; row < expected.getHeight(); row++)
+            {
+                for (int col = 0; col < expected.getWidth(); col++)
+                {
+                    assertEquals("Elevation incorrect at " + col + ", " + row + " in " + sector + " ",
+                        expected.getDoubleAtPosition(row, col), actual.getDoubleAtPosition(row, col), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    /** Tests that imagery composed concurrently is the same as imagery composed one raster at a time. */
+    public void testImagesConcurrentMatchesSequential()
+    {
+        List<DataRaster> rasters = createImageRasters();
+        TestServer concurrent = new TestServer(AVKey.IMAGE, rasters, true);
+        concurrent.setExecutor(this.executor);
+        TestServer sequential = new TestServer(AVKey.IMAGE, rasters, false);
+
+        for (Sector sector : createRequestSectors())
+        {
+            BufferedImage expected = ((BufferedImageRaster) sequential.composeRaster(createRequest(sector)))
+                .getBufferedImage();
+            BufferedImage actual = ((BufferedImageRaster) concurrent.composeRaster(createRequest(sector)))
+                .getBufferedImage();
+
+            int[] expectedPixels = expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0,
+                expected.getWidth());
+            int[] actualPixels = actual.getRGB(0, 0, actual.getWidth(), actual.getHeight(), null, 0,
+                actual.getWidth());
+            assertTrue("Pixels incorrect in " + sector + " ", Arrays.equals(expectedPixels, actualPixels));
+        }
+    }
+
+    protected static List<Sector> createRequestSectors()
+    {
+        return Arrays.asList(Sector.fromDegrees(0, 10, 0, 10), Sector.fromDegrees(1.3, 7.9, 0.6, 8.2),
+            Sector.fromDegrees(4, 6, 4, 6));
+    }
+
+    protected static AVList createRequest(Sector sector)
+    {
+        AVList params = new AVListImpl();
+        params.setValue(AVKey.WIDTH, 150);
+        params.setValue(AVKey.HEIGHT, 130);
+        params.setValue(AVKey.SECTOR, sector);
+        params.setValue(AVKey.DATA_TYPE, AVKey.FLOAT32);
+        params.setValue(AVKey.MISSING_DATA_SIGNAL, MISSING);
+        return params;
+    }
+
+    /**
+     * Returns a grid of slightly overlapping sectors, followed by sectors overlapping several grid cells, so the server
+     * draws rasters of the same canvas rows concurrently and draws overlapping rasters in later passes.
+     */
+    protected static List<Sector> createSourceSectors()
+    {
+        List<Sector> sectors = new ArrayList<Sector>();
+        for (int row = 0; row < 4; row++)
+        {
+            for (int col = 0; col < 4; col++)
+            {
+                sectors.add(Sector.fromDegrees(Math.max(0, 2.5 * row - 0.1), Math.min(10, 2.5 * row + 2.6),
+                    Math.max(0, 2.5 * col - 0.1), Math.min(10, 2.5 * col + 2.6)));
+            }
+        }
+
+        sectors.add(Sector.fromDegrees(1, 6, 3, 4));
+        sectors.add(Sector.fromDegrees(5.5, 9, 1.5, 8.5));
+        return sectors;
+    }
+
+    protected static List<DataRaster> createElevationRasters()
+    {
+        List<DataRaster> rasters = new ArrayList<DataRaster>();
+        int index = 0;
+        for (Sector sector : createSourceSectors())
+        {
+            AVList params = new AVListImpl();
+            params.setValue(AVKey.DATA_TYPE, AVKey.FLOAT32);
+            ByteBufferRaster raster = new ByteBufferRaster(37, 29, sector, params);
+            raster.setTransparentValue(MISSING);
+
+            for (int row = 0; row < 29; row++)
+            {
+                for (int col = 0; col < 37; col++)
+                {
+                    // Some samples are missing, so the rasters drawn later don't hide everything beneath them.
+                    boolean missing = (row * 37 + col + index) % 11 == 0;
+                    raster.setDoubleAtPosition(row, col, missing ? MISSING : 100 * index + row * 3 - col * 2);
+                }
+            }
+
+            rasters.add(raster);
+            index++;
+        }
+
+        return rasters;
+    }
+
+    protected static List<DataRaster> createImageRasters()
+    {
+        List<DataRaster> rasters = new ArrayList<DataRaster>();
+        int index = 0;
+        for (Sector sector : createSourceSectors())
+        {
+            BufferedImage image = new BufferedImage(41, 33, BufferedImage.TYPE_INT_ARGB);
+            for (int y = 0; y < 33; y++)
+            {
+                for (int x = 0; x < 41; x++)
+                {
+                    int alpha = ((x + y + index) % 5 == 0) ? 0x7F : 0xFF;
+                    image.setRGB(x, y, (alpha << 24) | ((17 * index) & 0xFF) << 16 | (x * 6) << 8 | (y * 7));
+                }
+            }
+
+            rasters.add(new BufferedImageRaster(sector, image));
+            index++;
+        }
+
+        return rasters;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.data;
+
+import gov.nasa.worldwind.geom.Sector;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class RasterResamplerTest
+{
+    protected static final double MISSING = -9999;
+
+    @Test
+    /** Tests that bilinear resampling of point samples matches BufferWrapperRaster's interpolation, missing values included. */
+    public void testBilinearMatchesInterpolantTable()
+    {
+        Sector sourceSector = Sector.fromDegrees(10, 20, 30, 45);
+        Sector destSector = Sector.fromDegrees(12, 23, 28, 41);
+        ScalarArray source = createSource(23, 17, true);
+        ScalarArray dest = new ScalarArray(40, 31, 1);
+        java.util.Arrays.fill(dest.values, 7);
+
+        RasterResampler.Mapping mapping = RasterResampler.Mapping.fromPointSamples(23, 17, sourceSector, 40, 31,
+            destSector);
+        new RasterResampler(RasterResampler.Kernel.BILINEAR).resample(source, 23, 17, MISSING, dest, 40, 31, mapping);
+
+        // The transform and interpolation of BufferWrapperRaster.doDrawOnTo before it used the resampler.
+        double tx = 22 * (destSector.getMinLongitude().degrees - sourceSector.getMinLongitude().degrees)
+            / sourceSector.getDeltaLonDegrees();
+        double ty = 16 * -(destSector.getMaxLatitude().degrees - sourceSector.getMaxLatitude().degrees)
+            / sourceSector.getDeltaLatDegrees();
+        double sx = (22.0 / 39.0) * (destSector.getDeltaLonDegrees() / sourceSector.getDeltaLonDegrees());
+        double sy = (16.0 / 30.0) * (destSector.getDeltaLatDegrees() / sourceSector.getDeltaLatDegrees());
+
+        for (int j = 0; j < 31; j++)
+        {
+            for (int i = 0; i < 40; i++)
+            {
+                double expected = 7;
+                double x = sx * i + tx;
+                double y = sy * j + ty;
+                if (x > -1e-6 && 22 - x > -1e-6 && y > -1e-6 && 16 - y > -1e-6)
+                {
+                    x = Math.max(0, Math.min(22, x));
+                    y = Math.max(0, Math.min(16, y));
+                    int x1 = (int) Math.floor(x), x2 = (int) Math.ceil(x);
+                    int y1 = (int) Math.floor(y), y2 = (int) Math.ceil(y);
+                    double xf = x - x1, yf = y - y1;
+                    double ul = source.get(x1, y1), ur = source.get(x2, y1);
+                    double ll = source.get(x1, y2), lr = source.get(x2, y2);
+                    if (ul != MISSING && ur != MISSING && ll != MISSING && lr != MISSING)
+                    {
+                        expected = ((1.0 - xf) * (1.0 - yf) * ul) + ((1.0 - xf) * (yf) * ll) + ((xf) * (yf) * lr)
+                            + ((xf) * (1.0 - yf) * ur);
+                    }
+                }
+
+                assertEquals("Sample incorrect at " + i + ", " + j, expected, dest.get(i, j), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    /** Tests that the average kernel averages the present samples covered by each destination pixel. */
+    public void testAverageDownsampling()
+    {
+        Sector sector = Sector.fromDegrees(0, 8, 0, 8);
+        ScalarArray source = createSource(8, 8, false);
+        source.values[8 * 2 + 3] = MISSING;
+        ScalarArray dest = new ScalarArray(4, 4, 1);
+
+        RasterResampler.Mapping mapping = RasterResampler.Mapping.fromAreaSamples(8, 8, sector, 4, 4, sector);
+        new RasterResampler(RasterResampler.Kernel.AVERAGE).resample(source, 8, 8, MISSING, dest, 4, 4, mapping);
+
+        for (int j = 0; j < 4; j++)
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                double sum = 0;
+                int count = 0;
+                for (int y = 2 * j; y < 2 * j + 2; y++)
+                {
+                    for (int x = 2 * i; x < 2 * i + 2; x++)
+                    {
+                        if (source.get(x, y) != MISSING)
+                        {
+                            sum += source.get(x, y);
+                            count++;
+                        }
+                    }
+                }
+
+                assertEquals("Average incorrect at " + i + ", " + j, sum / count, dest.get(i, j), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    /** Tests that resampling bands of rows concurrently produces the same samples as resampling on one thread. */
+    public void testConcurrentMatchesSequential()
+    {
+        Sector sourceSector = Sector.fromDegrees(0, 1, 0, 1);
+        Sector destSector = Sector.fromDegrees(0.1, 0.8, 0.05, 0.9);
+        ScalarArray source = createSource(300, 280, true);
+        RasterResampler.Mapping mapping = RasterResampler.Mapping.fromPointSamples(300, 280, sourceSector, 700, 600,
+            destSector);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            ScalarArray sequential = new ScalarArray(700, 600, 1);
+            ScalarArray concurrent = new ScalarArray(700, 600, 4);
+            RasterResampler resampler = new RasterResampler(RasterResampler.Kernel.CUBIC, executor);
+            resampler.resample(source, 300, 280, MISSING, sequential, 700, 600, mapping);
+            resampler.resample(source.concurrentCopy(), 300, 280, MISSING, concurrent, 700, 600, mapping);
+
+            assertTrue("Rows not resampled concurrently ", concurrent.numDuplicates > 0);
+            assertTrue("Samples differ ", java.util.Arrays.equals(sequential.values, concurrent.values));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    /** Tests that transparent image pixels leave the destination unchanged and opaque pixels replace it. */
+    public void testTransparentPixels()
+    {
+        final int[] source = new int[] {0x00FF0000, 0xFF00FF00, 0x80FF0000, 0x00000000};
+        final int[] dest = new int[] {0xFF0000FF, 0xFF0000FF, 0xFF0000FF, 0xFF0000FF};
+
+        Sector sector = Sector.fromDegrees(0, 2, 0, 2);
+        RasterResampler.Mapping mapping = RasterResampler.Mapping.fromAreaSamples(2, 2, sector, 2, 2, sector);
+        new RasterResampler(RasterResampler.Kernel.NEAREST).resample(new ColorArray(source, 2), 2, 2,
+            new ColorArray(dest, 2), 2, 2, mapping);
+
+        assertEquals("Transparent pixel changed destination ", 0xFF0000FF, dest[0]);
+        assertEquals("Opaque pixel did not replace destination ", 0xFF00FF00, dest[1]);
+        assertEquals("Translucent pixel blended incorrectly ", 0xFF80007F, dest[2]);
+        assertEquals("Transparent pixel changed destination ", 0xFF0000FF, dest[3]);
+    }
+
+    protected static ScalarArray createSource(int width, int height, boolean withMissingValues)
+    {
+        ScalarArray array = new ScalarArray(width, height, 1);
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                array.values[x + y * width] = (withMissingValues && (x * 7 + y * 3) % 29 == 0) ? MISSING
+                    : Math.sin(x * 0.21) * 100 + Math.cos(y * 0.17) * 50 + x + y;
+            }
+        }
+
+        return array;
+    }
+
+    protected static class ScalarArray extends RasterResampler.ScalarAccess
+    {
+        protected double[] values;
+        protected int width;
+        protected int maxDuplicates;
+        protected int numDuplicates;
+
+        public ScalarArray(int width, int height, int maxDuplicates)
+        {
+            this(new double[width * height], width, maxDuplicates);
+        }
+
+        public ScalarArray(double[] values, int width, int maxDuplicates)
+        {
+            this.values = values;
+            this.width = width;
+            this.maxDuplicates = maxDuplicates;
+        }
+
+        public ScalarArray concurrentCopy()
+        {
+            return new ScalarArray(this.values, this.width, Integer.MAX_VALUE);
+        }
+
+        public double get(int x, int y)
+        {
+            return this.values[x + y * this.width];
+        }
+
+        public void get(int x, int y, int length, double[] array, int offset)
+        {
+            System.arraycopy(this.values, x + y * this.width, array, offset, length);
+        }
+
+        public void put(int x, int y, double[] array, int offset, int length)
+        {
+            System.arraycopy(array, offset, this.values, x + y * this.width, length);
+        }
+
+        @Override
+        public RasterResampler.ScalarAccess duplicate()
+        {
+            if (this.numDuplicates + 1 >= this.maxDuplicates)
+                return null;
+
+            this.numDuplicates++;
+            return new ScalarArray(this.values, this.width, 1);
+        }
+    }
+
+    protected static class ColorArray extends RasterResampler.ColorAccess
+    {
+        protected int[] pixels;
+        protected int width;
+
+        public ColorArray(int[] pixels, int width)
+        {
+            this.pixels = pixels;
+            this.width = width;
+        }
+
+        public void get(int x, int y, int length, int[] array, int offset)
+        {
+            System.arraycopy(this.pixels, x + y * this.width, array, offset, length);
+        }
+
+        public void put(int x, int y, int[] array, int offset, int length)
+        {
+            System.arraycopy(array, offset, this.pixels, x + y * this.width, length);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.tiff;
+
+import gov.nasa.worldwind.data.*;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class GeotiffWriterTest
+{
+    @Test
+    /** Tests that a tiled, Deflate compressed image with overviews reads back through windowed reads. */
+    public void testTiledImageWithOverviews() throws IOException
+    {
+        File file = createTempFile();
+        RasterSource source = new RasterSource(70, 50, 3, 8, Tiff.SampleFormat.UNSIGNED, Tiff.Photometric.Color_RGB);
+
+        GeotiffWriter writer = new GeotiffWriter(file);
+        writer.setTileSize(32);
+        writer.setCompression(Tiff.Compression.DEFLATE);
+        writer.setUsePredictor(true);
+        writer.setNumOverviews(2);
+        writer.write(source, null);
+        writer.close();
+
+        GeotiffReader reader = new GeotiffReader(file);
+        try
+        {
+            assertEquals("Number of images incorrect ", 1, reader.getNumImages());
+            assertEquals("Number of overviews incorrect ", 2, reader.getNumOverviews(0));
+            assertTrue("Image is not tiled ", reader.isTiled(0));
+            assertEquals("Overview width incorrect ", 18, reader.getWidth(0, 2));
+            assertEquals("Overview height incorrect ", 13, reader.getHeight(0, 2));
+
+            BufferedImage window = ((BufferedImageRaster) reader.readWindow(0, 10, 5, 40, 30, 0)).getBufferedImage();
+            for (int y = 0; y < 30; y++)
+            {
+                for (int x = 0; x < 40; x++)
+                {
+                    assertEquals("Window pixel incorrect ", source.getRGB(10 + x, 5 + y), window.getRGB(x, y));
+                }
+            }
+
+            // Overview pixels average the 2x2 block of image pixels they cover.
+            BufferedImage overview = ((BufferedImageRaster) reader.readWindow(0, 3, 4, 1, 1, 1)).getBufferedImage();
+            for (int s = 0; s < 3; s++)
+            {
+                double sum = source.getSample(6, 8, s) + source.getSample(7, 8, s) + source.getSample(6, 9, s)
+                    + source.getSample(7, 9, s);
+                assertEquals("Overview sample incorrect ", (int) Math.round(sum / 4),
+                    0xFF & (overview.getRGB(0, 0) >> (16 - 8 * s)));
+            }
+        }
+        finally
+        {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    /** Tests that LZW compressed floating point strips written with the floating point predictor read back exactly. */
+    public void testFloatingPointStrips() throws IOException
+    {
+        File file = createTempFile();
+        RasterSource source = new RasterSource(37, 41, 1, 32, Tiff.SampleFormat.IEEEFLOAT,
+            Tiff.Photometric.Grayscale_BlackIsZero);
+
+        GeotiffWriter writer = new GeotiffWriter(file);
+        writer.setCompression(Tiff.Compression.LZW);
+        writer.setUsePredictor(true);
+        writer.write(source, null);
+        writer.close();
+
+        GeotiffReader reader = new GeotiffReader(file);
+        try
+        {
+            assertFalse("Image is tiled ", reader.isTiled(0));
+
+            ByteBufferRaster raster = (ByteBufferRaster) reader.readDataRaster(0);
+            for (int y = 0; y < 41; y++)
+            {
+                for (int x = 0; x < 37; x++)
+                {
+                    assertEquals("Elevation incorrect ", source.getSample(x, y, 0), raster.getDoubleAtPosition(y, x),
+                        0);
+                }
+            }
+        }
+        finally
+        {
+            reader.dispose();
+        }
+    }
+
+    protected static File createTempFile() throws IOException
+    {
+        File file = File.createTempFile("GeotiffWriterTest", ".tif");
+        file.deleteOnExit();
+        return file;
+    }
+
+    protected static class RasterSource implements GeotiffWriter.RasterSource
+    {
+        protected int width;
+        protected int height;
+        protected int samplesPerPixel;
+        protected int bitsPerSample;
+        protected int sampleFormat;
+        protected int photometric;
+
+        public RasterSource(int width, int height, int samplesPerPixel, int bitsPerSample, int sampleFormat,
+            int photometric)
+        {
+            this.width = width;
+            this.height = height;
+            this.samplesPerPixel = samplesPerPixel;
+            this.bitsPerSample = bitsPerSample;
+            this.sampleFormat = sampleFormat;
+            this.photometric = photometric;
+        }
+
+        public int getWidth()
+        {
+            return this.width;
+        }
+
+        public int getHeight()
+        {
+            return this.height;
+        }
+
+        public int getSamplesPerPixel()
+        {
+            return this.samplesPerPixel;
+        }
+
+        public int getBitsPerSample()
+        {
+            return this.bitsPerSample;
+        }
+
+        public int getSampleFormat()
+        {
+            return this.sampleFormat;
+        }
+
+        public int getPhotometric()
+        {
+            return this.photometric;
+        }
+
+        public double getSample(int x, int y, int sample)
+        {
+            if (this.sampleFormat == Tiff.SampleFormat.IEEEFLOAT)
+                return (float) (Math.sin(x * 0.3) * 1000 + y * 0.125);
+
+            return (x * 7 + y * 13 + sample * 50) % 256;
+        }
+
+        public int getRGB(int x, int y)
+        {
+            return 0xFF000000 | ((int) this.getSample(x, y, 0) << 16) | ((int) this.getSample(x, y, 1) << 8)
+                | (int) this.getSample(x, y, 2);
+        }
+
+        public void readRows(int y, int numRows, ByteBuffer buffer)
+        {
+            for (int row = y; row < y + numRows; row++)
+            {
+                for (int x = 0; x < this.width; x++)
+                {
+                    for (int s = 0; s < this.samplesPerPixel; s++)
+                    {
+                        if (this.sampleFormat == Tiff.SampleFormat.IEEEFLOAT)
+                            buffer.putFloat((float) this.getSample(x, row, s));
+                        else
+                            buffer.put((byte) this.getSample(x, row, s));
+                    }
+                }
+            }
+        }
+    }
+}
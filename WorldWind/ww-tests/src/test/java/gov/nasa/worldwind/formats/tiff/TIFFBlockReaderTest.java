@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.tiff;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class TIFFBlockReaderTest
+{
+    @Test
+    /** Tests reading a window spanning several Deflate compressed, horizontally differenced tiles. */
+    public void testTiledDeflate() throws IOException
+    {
+        int width = 40;
+        int height = 30;
+        int tileSize = 16;
+        byte[] image = createImage(width * height * 3);
+
+        List<byte[]> blocks = new ArrayList<byte[]>();
+        for (int ty = 0; ty < height; ty += tileSize)
+        {
+            for (int tx = 0; tx < width; tx += tileSize)
+            {
+                // Tiles are always stored in full, padded beyond the image's edges.
+                byte[] tile = new byte[tileSize * tileSize * 3];
+                for (int y = ty; y < Math.min(height, ty + tileSize); y++)
+                {
+                    int length = Math.min(width - tx, tileSize) * 3;
+                    System.arraycopy(image, (y * width + tx) * 3, tile, (y - ty) * tileSize * 3, length);
+                }
+                difference(tile, tileSize, tileSize, 3);
+                blocks.add(deflate(tile));
+            }
+        }
+
+        TIFFBlockReader reader = createReader(blocks, ByteOrder.BIG_ENDIAN,
+            shortEntry(Tiff.Tag.IMAGE_WIDTH, width),
+            shortEntry(Tiff.Tag.IMAGE_LENGTH, height),
+            shortEntry(Tiff.Tag.SAMPLES_PER_PIXEL, 3),
+            shortEntry(Tiff.Tag.BITS_PER_SAMPLE, 8, 8, 8),
+            shortEntry(Tiff.Tag.COMPRESSION, Tiff.Compression.DEFLATE),
+            shortEntry(Tiff.Tag.TIFF_PREDICTOR, Tiff.Predictor.HORIZONTAL_DIFFERENCING),
+            shortEntry(Tiff.Tag.TILE_WIDTH, tileSize),
+            shortEntry(Tiff.Tag.TILE_LENGTH, tileSize));
+
+        assertTrue("Reader is not tiled ", reader.isTiled());
+        assertArrayEquals("Window incorrect ", window(image, width, 3, 5, 7, 30, 20),
+            reader.readWindow(5, 7, 30, 20));
+        assertArrayEquals("Image incorrect ", image, reader.readWindow(0, 0, width, height));
+    }
+
+    @Test
+    /** Tests reading a window of PackBits compressed, planar 16-bit strips, including a short last strip. */
+    public void testPlanarPackBitsStrips() throws IOException
+    {
+        int width = 12;
+        int height = 10;
+        int rowsPerStrip = 3;
+        byte[] image = createImage(width * height * 4);
+
+        // Store each sample in its own plane of little endian strips.
+        List<byte[]> blocks = new ArrayList<byte[]>();
+        for (int sample = 0; sample < 2; sample++)
+        {
+            for (int sy = 0; sy < height; sy += rowsPerStrip)
+            {
+                int rows = Math.min(rowsPerStrip, height - sy);
+                byte[] strip = new byte[rows * width * 2];
+                for (int i = 0; i < rows * width; i++)
+                {
+                    int src = ((sy * width + i) * 2 + sample) * 2;
+                    strip[2 * i] = image[src];
+                    strip[2 * i + 1] = image[src + 1];
+                }
+                blocks.add(packBits(strip));
+            }
+        }
+
+        TIFFBlockReader reader = createReader(blocks, ByteOrder.LITTLE_ENDIAN,
+            shortEntry(Tiff.Tag.IMAGE_WIDTH, width),
+            shortEntry(Tiff.Tag.IMAGE_LENGTH, height),
+            shortEntry(Tiff.Tag.SAMPLES_PER_PIXEL, 2),
+            shortEntry(Tiff.Tag.BITS_PER_SAMPLE, 16, 16),
+            shortEntry(Tiff.Tag.PLANAR_CONFIGURATION, Tiff.PlanarConfiguration.PLANAR),
+            shortEntry(Tiff.Tag.ROWS_PER_STRIP, rowsPerStrip),
+            shortEntry(Tiff.Tag.COMPRESSION, Tiff.Compression.PACKBITS));
+
+        assertFalse("Reader is tiled ", reader.isTiled());
+        assertArrayEquals("Window incorrect ", window(image, width, 4, 3, 2, 8, 8), reader.readWindow(3, 2, 8, 8));
+    }
+
+    protected static TIFFBlockReader createReader(List<byte[]> blocks, ByteOrder byteOrder, TiffIFDEntry... entries)
+        throws IOException
+    {
+        File file = File.createTempFile("TIFFBlockReaderTest", ".tif");
+        file.deleteOnExit();
+
+        ByteBuffer offsets = ByteBuffer.allocate(4 * blocks.size()).order(byteOrder);
+        ByteBuffer counts = ByteBuffer.allocate(4 * blocks.size()).order(byteOrder);
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            int offset = 0;
+            for (byte[] block : blocks)
+            {
+                out.write(block);
+                offsets.putInt(offset);
+                counts.putInt(block.length);
+                offset += block.length;
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        boolean tiled = false;
+        for (TiffIFDEntry entry : entries)
+        {
+            tiled |= entry.tag == Tiff.Tag.TILE_WIDTH;
+        }
+
+        List<TiffIFDEntry> ifd = new ArrayList<TiffIFDEntry>(Arrays.asList(entries));
+        ifd.add(new TiffIFDEntry(tiled ? Tiff.Tag.TILE_OFFSETS : Tiff.Tag.STRIP_OFFSETS, Tiff.Type.LONG,
+            blocks.size(), 0, offsets));
+        ifd.add(new TiffIFDEntry(tiled ? Tiff.Tag.TILE_COUNTS : Tiff.Tag.STRIP_BYTE_COUNTS, Tiff.Type.LONG,
+            blocks.size(), 0, counts));
+
+        TiffIFDEntry[] array = ifd.toArray(new TiffIFDEntry[ifd.size()]);
+        FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+        BaselineTiff tiff = BaselineTiff.extract(array, new TIFFReader(channel, byteOrder));
+
+        return TIFFBlockReader.create(array, tiff, channel, byteOrder);
+    }
+
+    protected static TiffIFDEntry shortEntry(int tag, int... values)
+    {
+        // Single SHORT values are held left justified in the entry's value, as TIFFIFDFactory reads them.
+        if (values.length == 1)
+            return new TiffIFDEntry(tag, Tiff.Type.SHORT, (long) values[0] << 16);
+
+        ByteBuffer data = ByteBuffer.allocate(2 * values.length);
+        for (int value : values)
+        {
+            data.putShort((short) value);
+        }
+
+        return new TiffIFDEntry(tag, Tiff.Type.SHORT, values.length, 0, data);
+    }
+
+    protected static byte[] createImage(int length)
+    {
+        // Smoothly varying data with runs, so both compressors and the predictor have something to work with.
+        Random random = new Random(1);
+        byte[] image = new byte[length];
+        for (int i = 0; i < length; i++)
+        {
+            image[i] = (byte) ((i % 7 == 0) ? random.nextInt() : (i / 5));
+        }
+
+        return image;
+    }
+
+    protected static byte[] window(byte[] image, int width, int pixelSize, int x, int y, int w, int h)
+    {
+        byte[] window = new byte[w * h * pixelSize];
+        for (int row = 0; row < h; row++)
+        {
+            System.arraycopy(image, ((y + row) * width + x) * pixelSize, window, row * w * pixelSize, w * pixelSize);
+        }
+
+        return window;
+    }
+
+    protected static void difference(byte[] block, int width, int height, int samplesPerPixel)
+    {
+        for (int row = 0; row < height; row++)
+        {
+            int start = row * width * samplesPerPixel;
+            for (int i = start + width * samplesPerPixel - 1; i >= start + samplesPerPixel; i--)
+            {
+                block[i] -= block[i - samplesPerPixel];
+            }
+        }
+    }
+
+    protected static byte[] deflate(byte[] data)
+    {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        while (!deflater.finished())
+        {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        return out.toByteArray();
+    }
+
+    protected static byte[] packBits(byte[] data)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int i = 0;
+        while (i < data.length)
+        {
+            int run = 1;
+            while (i + run < data.length && run < 128 && data[i + run] == data[i])
+            {
+                run++;
+            }
+
+            if (run > 1)
+            {
+                out.write(1 - run);
+                out.write(data[i]);
+                i += run;
+            }
+            else
+            {
+                int n = 1;
+                while (i + n < data.length && n < 128 && data[i + n] != data[i + n - 1])
+                {
+                    n++;
+                }
+                out.write(n - 1);
+                out.write(data, i, n);
+                i += n;
+            }
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.formats.vpf;
+
+import gov.nasa.worldwind.cache.BasicDataFileStore;
+import gov.nasa.worldwind.util.*;
+import org.junit.*;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class VPFPrimitiveDataCacheTest
+{
+    @Test
+    /** Tests that primitive info, coordinates and strings are identical after they are written and read. */
+    public void testWriteAndRead() throws IOException
+    {
+        VPFPrimitiveData data = new VPFPrimitiveData();
+
+        // Node primitives in single precision. Entry 0 is the empty coordinate inserted for row ID 0.
+        VecBufferSequence nodeCoords = new VecBufferSequence(
+            new VecBuffer(2, new BufferFactory.FloatBufferFactory().newBuffer(8)));
+        nodeCoords.append(VecBuffer.emptyVecBuffer(2));
+        nodeCoords.append(makeVecBuffer(2, 10.5, 20.25));
+        data.setPrimitiveCoords(VPFConstants.NODE_PRIMITIVE_TABLE, nodeCoords);
+        data.setPrimitiveInfo(VPFConstants.NODE_PRIMITIVE_TABLE, new VPFPrimitiveData.PrimitiveInfo[] {
+            new VPFPrimitiveData.BasicPrimitiveInfo(new VPFBoundingBox(10.5, 20.25, 10.5, 20.25))});
+
+        // Edge primitives in double precision.
+        VecBufferSequence edgeCoords = new VecBufferSequence(
+            new VecBuffer(2, new BufferFactory.DoubleBufferFactory().newBuffer(16)));
+        edgeCoords.append(VecBuffer.emptyVecBuffer(2));
+        edgeCoords.append(makeVecBuffer(2, 1.1, 2.2, 3.3, 4.4));
+        edgeCoords.append(makeVecBuffer(2, 3.3, 4.4, 5.5, 6.6, 7.7, 8.8));
+        data.setPrimitiveCoords(VPFConstants.EDGE_PRIMITIVE_TABLE, edgeCoords);
+        data.setPrimitiveInfo(VPFConstants.EDGE_PRIMITIVE_TABLE, new VPFPrimitiveData.PrimitiveInfo[] {
+            new VPFPrimitiveData.EdgeInfo(1, 1, 2, 2, 3, 2, -1, false, new VPFBoundingBox(1.1, 2.2, 3.3, 4.4)),
+            new VPFPrimitiveData.EdgeInfo(1, 2, 3, 3, 2, 1, 2, true, new VPFBoundingBox(3.3, 4.4, 7.7, 8.8))});
+
+        // Face primitives. The universe face has no info.
+        data.setPrimitiveInfo(VPFConstants.FACE_PRIMITIVE_TABLE, new VPFPrimitiveData.PrimitiveInfo[] {null,
+            new VPFPrimitiveData.FaceInfo(new VPFPrimitiveData.Ring(2, new int[] {1, 2, 0}, new int[] {1, -1, 0}),
+                new VPFPrimitiveData.Ring[] {new VPFPrimitiveData.Ring(1, new int[] {2}, new int[] {1})},
+                new VPFBoundingBox(1.1, 2.2, 7.7, 8.8))});
+
+        CompoundStringBuilder strings = new CompoundStringBuilder();
+        strings.append("");
+        strings.append("Chesapeake Bay");
+        strings.append("\u00c5lesund");
+        data.setPrimitiveStrings(VPFConstants.TEXT_PRIMITIVE_TABLE, strings);
+
+        assertTrue("Size not estimated ", data.getSizeInBytes() > 0);
+
+        VPFPrimitiveDataCache cache = new VPFPrimitiveDataCache(new BasicDataFileStore(new File(".")));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        cache.writeData(new DataOutputStream(bytes), data);
+        VPFPrimitiveData copy = cache.readData(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals("Names incorrect ", data.getPrimitiveNames(), copy.getPrimitiveNames());
+
+        VecBufferSequence coords = copy.getPrimitiveCoords(VPFConstants.NODE_PRIMITIVE_TABLE);
+        assertTrue("Precision not preserved ",
+            coords.getVecBuffer().getBufferWrapper() instanceof BufferWrapper.FloatBufferWrapper);
+        assertCoordsEqual(nodeCoords, coords);
+        assertCoordsEqual(edgeCoords, copy.getPrimitiveCoords(VPFConstants.EDGE_PRIMITIVE_TABLE));
+
+        VPFPrimitiveData.EdgeInfo edge = (VPFPrimitiveData.EdgeInfo) copy.getPrimitiveInfo(
+            VPFConstants.EDGE_PRIMITIVE_TABLE, 2);
+        assertEquals("Start node incorrect ", 2, edge.getStartNode());
+        assertEquals("Left face incorrect ", 3, edge.getLeftFace());
+        assertEquals("Right edge incorrect ", 2, edge.getRightEdge());
+        assertTrue("Tile boundary flag incorrect ", edge.isOnTileBoundary());
+        assertEquals("Bounds incorrect ", 8.8, edge.getBounds().getYmax(), 0);
+
+        VPFPrimitiveData.PrimitiveInfo[] faces = copy.getPrimitiveInfo(VPFConstants.FACE_PRIMITIVE_TABLE);
+        assertNull("Universe face not null ", faces[0]);
+        VPFPrimitiveData.FaceInfo face = (VPFPrimitiveData.FaceInfo) faces[1];
+        assertEquals("Outer ring size incorrect ", 2, face.getOuterRing().getNumEdges());
+        assertEquals("Outer ring edge incorrect ", 2, face.getOuterRing().getEdgeId(1));
+        assertEquals("Outer ring orientation incorrect ", -1, face.getOuterRing().getEdgeOrientation(1));
+        assertEquals("Inner ring count incorrect ", 1, face.getInnerRings().length);
+        assertEquals("Inner ring edge incorrect ", 2, face.getInnerRings()[0].getEdgeId(0));
+
+        CompoundStringBuilder copyStrings = copy.getPrimitiveStrings(VPFConstants.TEXT_PRIMITIVE_TABLE);
+        assertEquals("String count incorrect ", strings.size(), copyStrings.size());
+        for (int i = 0; i < strings.size(); i++)
+        {
+            assertEquals("String incorrect ", strings.substring(i), copyStrings.substring(i));
+        }
+    }
+
+    private static VecBuffer makeVecBuffer(int coordsPerVec, double... coords)
+    {
+        VecBuffer buffer = new VecBuffer(coordsPerVec, new BufferFactory.DoubleBufferFactory().newBuffer(
+            coords.length));
+        buffer.putAll(0, coords, coords.length / coordsPerVec);
+        return buffer;
+    }
+
+    private static void assertCoordsEqual(VecBufferSequence expected, VecBufferSequence actual)
+    {
+        assertEquals("Sub-buffer count incorrect ", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertEquals("Sub-buffer size incorrect ", expected.subBufferSize(i), actual.subBufferSize(i));
+            for (int j = 0; j < expected.subBufferSize(i); j++)
+            {
+                double[] expectedCoords = expected.subBuffer(i).get(j, new double[2]);
+                double[] actualCoords = actual.subBuffer(i).get(j, new double[2]);
+                assertEquals("Longitude incorrect ", expectedCoords[0], actualCoords[0], 0);
+                assertEquals("Latitude incorrect ", expectedCoords[1], actualCoords[1], 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.wvt;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class WaveletCodecTest
+{
+    protected static final int HEADER_SIZE = 16;
+
+    @Test
+    /** Tests that gray, BGR and ABGR images are reconstructed as they were before reconstruction used working planes. */
+    public void testReconstructMatchesReference() throws Exception
+    {
+        int[] imageTypes = {BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR};
+        for (int imageType : imageTypes)
+        {
+            ByteBuffer encoding = WaveletCodec.save(WaveletCodec.encode(createImage(512, imageType, 1)));
+            WaveletCodec codec = WaveletCodec.load(encoding.duplicate());
+
+            for (int resolution = 1; resolution <= 512; resolution *= 2)
+            {
+                BufferedImage expected = reconstructReference(getCoefficients(encoding), resolution, imageType);
+                assertImageEquals("Type " + imageType + ", resolution " + resolution + " ", expected,
+                    codec.reconstruct(resolution));
+            }
+        }
+    }
+
+    @Test
+    /** Tests that an encoding loaded in part reconstructs the same images as the full encoding. */
+    public void testReconstructPartial() throws Exception
+    {
+        ByteBuffer encoding = WaveletCodec.save(WaveletCodec.encode(createImage(256, BufferedImage.TYPE_3BYTE_BGR,
+            2)));
+        byte[][] coefficients = getCoefficients(encoding);
+
+        WaveletCodec partial = WaveletCodec.loadPartial(encoding.duplicate(), 64);
+        for (int resolution = 1; resolution <= 64; resolution *= 2)
+        {
+            BufferedImage expected = reconstructReference(coefficients, resolution, BufferedImage.TYPE_3BYTE_BGR);
+            assertImageEquals("Partial, resolution " + resolution + " ", expected, partial.reconstruct(resolution));
+            assertImageEquals("Buffer, resolution " + resolution + " ", expected,
+                WaveletCodec.reconstruct(encoding.duplicate(), resolution));
+        }
+    }
+
+    @Test
+    /** Tests that resolutions the loaded coefficients can't reconstruct are rejected. */
+    public void testReconstructInvalidResolution() throws Exception
+    {
+        ByteBuffer encoding = WaveletCodec.save(WaveletCodec.encode(createImage(64, BufferedImage.TYPE_BYTE_GRAY,
+            3)));
+        WaveletCodec partial = WaveletCodec.loadPartial(encoding.duplicate(), 16);
+
+        int[] resolutions = {0, 12, 32, 128};
+        for (int resolution : resolutions)
+        {
+            try
+            {
+                partial.reconstruct(resolution);
+                fail("Resolution " + resolution + " reconstructed");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+    }
+
+    /** Returns an image of noise over gradients, so the reconstructed values fall outside the byte range. */
+    protected static BufferedImage createImage(int size, int imageType, long seed)
+    {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(size, size, imageType);
+        WritableRaster raster = image.getRaster();
+        for (int j = 0; j < size; j++)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                for (int k = 0; k < raster.getNumBands(); k++)
+                {
+                    int value = (i * (k + 1) + j * 3) % 256;
+                    raster.setSample(i, j, k, (random.nextInt(8) == 0) ? random.nextInt(256) : value);
+                }
+            }
+        }
+
+        return image;
+    }
+
+    /** Returns each band's coefficients from an encoding written by WaveletCodec.save. */
+    protected static byte[][] getCoefficients(ByteBuffer encoding)
+    {
+        ByteBuffer buffer = encoding.duplicate();
+        int resolutionX = buffer.getInt();
+        int resolutionY = buffer.getInt();
+        buffer.getInt(); // type
+        byte[][] coefficients = new byte[buffer.getInt()][resolutionX * resolutionY];
+        for (byte[] band : coefficients)
+        {
+            buffer.get(band);
+        }
+
+        return coefficients;
+    }
+
+    /** The reconstruction of WaveletCodec before it reconstructed levels on working planes. */
+    protected static BufferedImage reconstructReference(byte[][] xform, int resolution, int imageType)
+    {
+        int numBands = xform.length;
+        int[][] imageData = new int[numBands][resolution * resolution];
+        byte[][] imageBytes = new byte[numBands][resolution * resolution];
+
+        int res2 = (resolution / 2) * (resolution / 2);
+        int[][] A = new int[numBands][res2];
+        int[][] D = new int[numBands][res2];
+        int[][] V = new int[numBands][res2];
+        int[][] H = new int[numBands][res2];
+
+        for (int k = 0; k < numBands; k++)
+        {
+            imageData[k][0] = 0x000000ff & xform[k][0];
+        }
+
+        int scale = 1;
+        int offset = 1;
+        do
+        {
+            int numVals = scale * scale;
+            if (numVals >= resolution * resolution)
+                break;
+
+            int next = 0;
+            for (int j = 0; j < scale; j++)
+            {
+                for (int i = 0; i < scale; i++, next++)
+                {
+                    for (int k = 0; k < numBands; k++)
+                    {
+                        A[k][next] = imageData[k][j * resolution + i];
+                    }
+                }
+            }
+            for (int i = 0; i < numVals; i++, offset++)
+            {
+                for (int k = 0; k < numBands; k++)
+                {
+                    H[k][i] = xform[k][offset];
+                }
+            }
+            for (int i = 0; i < numVals; i++, offset++)
+            {
+                for (int k = 0; k < numBands; k++)
+                {
+                    V[k][i] = xform[k][offset];
+                }
+            }
+            for (int i = 0; i < numVals; i++, offset++)
+            {
+                for (int k = 0; k < numBands; k++)
+                {
+                    D[k][i] = xform[k][offset];
+                }
+            }
+
+            next = 0;
+            for (int j = 0; j < scale; j++)
+            {
+                for (int i = 0; i < scale; i++, next++)
+                {
+                    for (int k = 0; k < numBands; k++)
+                    {
+                        int a = A[k][next] + H[k][next] + V[k][next] + D[k][next];
+                        int b = A[k][next] - H[k][next] + V[k][next] - D[k][next];
+                        int c = A[k][next] + H[k][next] - V[k][next] - D[k][next];
+                        int d = A[k][next] - H[k][next] - V[k][next] + D[k][next];
+                        imageData[k][2 * j * resolution + (i * 2)] = a;
+                        imageData[k][2 * j * resolution + (i * 2) + 1] = b;
+                        imageData[k][2 * j * resolution + resolution + (i * 2)] = c;
+                        imageData[k][2 * j * resolution + resolution + (i * 2) + 1] = d;
+                    }
+                }
+            }
+
+            scale *= 2;
+        }
+        while (scale < resolution);
+
+        for (int j = 0; j < resolution; j++)
+        {
+            for (int i = 0; i < resolution; i++)
+            {
+                for (int k = 0; k < numBands; k++)
+                {
+                    imageBytes[k][j * resolution + i] = (byte) Math.max(0,
+                        Math.min(255, imageData[k][j * resolution + i]));
+                }
+            }
+        }
+
+        BandedSampleModel sm = new BandedSampleModel(DataBuffer.TYPE_BYTE, resolution, resolution, numBands);
+        DataBufferByte dataBuff = new DataBufferByte(imageBytes, imageBytes[0].length);
+        WritableRaster rast = Raster.createWritableRaster(sm, dataBuff, new Point(0, 0));
+        BufferedImage image = new BufferedImage(resolution, resolution, imageType);
+        image.getRaster().setRect(rast);
+
+        return image;
+    }
+
+    protected static void assertImageEquals(String message, BufferedImage expected, BufferedImage actual)
+    {
+        assertEquals(message + "type incorrect ", expected.getType(), actual.getType());
+        assertEquals(message + "width incorrect ", expected.getWidth(), actual.getWidth());
+        assertEquals(message + "height incorrect ", expected.getHeight(), actual.getHeight());
+
+        Raster e = expected.getRaster();
+        Raster a = actual.getRaster();
+        for (int k = 0; k < e.getNumBands(); k++)
+        {
+            int[] expectedSamples = e.getSamples(0, 0, e.getWidth(), e.getHeight(), k, (int[]) null);
+            int[] actualSamples = a.getSamples(0, 0, a.getWidth(), a.getHeight(), k, (int[]) null);
+            for (int i = 0; i < expectedSamples.length; i++)
+            {
+                if (expectedSamples[i] != actualSamples[i])
+                    fail(message + "band " + k + " incorrect at " + (i % e.getWidth()) + ", " + (i / e.getWidth()));
+            }
+        }
+    }
+}
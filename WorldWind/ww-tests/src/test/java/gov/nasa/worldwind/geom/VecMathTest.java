@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.geom;
+
+import org.junit.*;
+
+import java.awt.*;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class VecMathTest
+{
+    private Frustum frustum;
+
+    @Before
+    public void setUp()
+    {
+        // A box extending from 0 to 1.5 along the x axis and from -2 to 2 along the y and z axes.
+        this.frustum = new Frustum(
+            new Plane(0, 1, 0, 2), new Plane(0, -1, 0, 2),
+            new Plane(0, 0, 1, 2), new Plane(0, 0, -1, 2),
+            new Plane(1, 0, 0, 0), new Plane(-1, 0, 0, 1.5));
+    }
+
+    @Test
+    /** Tests that the point and sphere kernels agree with the frustum's containment test. */
+    public void testPointsAndSpheres()
+    {
+        double[] planes = this.frustum.getPlaneCoefficients();
+        assertEquals("Plane coefficient count incorrect ", 24, planes.length);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++)
+        {
+            Vec4 point = new Vec4(6 * random.nextDouble() - 3, 6 * random.nextDouble() - 3,
+                6 * random.nextDouble() - 3);
+            assertEquals("Point containment incorrect for " + point, this.frustum.contains(point),
+                VecMath.frustumContains(planes, point.x, point.y, point.z));
+        }
+
+        assertTrue("Sphere straddling a plane culled ", VecMath.frustumIntersectsSphere(planes, -0.5, 0, 0, 1));
+        assertFalse("Sphere outside not culled ", VecMath.frustumIntersectsSphere(planes, -1.5, 0, 0, 1));
+    }
+
+    @Test
+    /** Tests that cylinders and boxes inside, straddling and outside the frustum are classified correctly. */
+    public void testCylindersAndBoxes()
+    {
+        double[] planes = this.frustum.getPlaneCoefficients();
+
+        assertTrue("Cylinder inside culled ",
+            VecMath.frustumIntersectsCylinder(planes, new Vec4(0.5, 0, -1), new Vec4(0.5, 0, 1), 0.25));
+        assertTrue("Cylinder straddling the near plane culled ",
+            VecMath.frustumIntersectsCylinder(planes, new Vec4(-1, 0, 0), new Vec4(1, 0, 0), 0.25));
+        assertTrue("Cylinder touching the near plane with its side culled ",
+            VecMath.frustumIntersectsCylinder(planes, new Vec4(-0.2, 0, -1), new Vec4(-0.2, 0, 1), 0.25));
+        assertFalse("Cylinder beside the near plane not culled ",
+            VecMath.frustumIntersectsCylinder(planes, new Vec4(-0.5, 0, -1), new Vec4(-0.5, 0, 1), 0.25));
+        assertFalse("Cylinder beyond the far plane not culled ",
+            VecMath.frustumIntersectsCylinder(planes, new Vec4(2, -1, 0), new Vec4(3, 1, 0), 0.25));
+
+        Vec4 s = new Vec4(0, 1, 0);
+        Vec4 t = new Vec4(0, 0, 0.5);
+        assertTrue("Box inside culled ",
+            VecMath.frustumIntersectsBox(planes, new Vec4(0.5, 0, -1), new Vec4(0.5, 0, 1), s, t));
+        assertTrue("Box straddling the top plane culled ",
+            VecMath.frustumIntersectsBox(planes, new Vec4(0.5, 2.2, -1), new Vec4(0.5, 2.2, 1), s, t));
+        assertFalse("Box above the top plane not culled ",
+            VecMath.frustumIntersectsBox(planes, new Vec4(0.5, 3, -1), new Vec4(0.5, 3, 1), s, t));
+    }
+
+    @Test
+    /** Tests that points are projected to window coordinates as gluProject projects them. */
+    public void testProject()
+    {
+        Matrix modelview = Matrix.fromTranslation(0, 0, -10);
+        Matrix projection = Matrix.fromPerspective(Angle.fromDegrees(90), 100, 100, 1, 100);
+        Rectangle viewport = new Rectangle(0, 0, 100, 100);
+        double[] result = new double[4];
+
+        double depth = (1 + (101.0 / 99 - 200.0 / 990)) / 2;
+        assertTrue("Point not projected ", VecMath.project(modelview, projection, viewport, 0, 0, 0, result, 1));
+        assertEquals("Window x incorrect ", 50, result[1], 1e-9);
+        assertEquals("Window y incorrect ", 50, result[2], 1e-9);
+        assertEquals("Window depth incorrect ", depth, result[3], 1e-9);
+
+        assertTrue("Point not projected ", VecMath.project(modelview, projection, viewport, 10, 5, 0, result, 0));
+        assertEquals("Window x incorrect ", 100, result[0], 1e-9);
+        assertEquals("Window y incorrect ", 75, result[1], 1e-9);
+
+        assertFalse("Point in the eye plane projected ",
+            VecMath.project(modelview, projection, viewport, 0, 0, 10, result, 0));
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.geom.coords;
+
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.Angle;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class GridCoordConverterTest
+{
+    private static final GridCoordConverter CONVERTER = GridCoordConverter.WGS84;
+
+    @Test
+    /** Tests that UTM coordinates match those computed by UTMCoord in both directions. */
+    public void testUTM()
+    {
+        double[] result = new double[2];
+        for (double lat = -81.5; lat <= 85.5; lat += 0.75)
+        {
+            for (double lon = -179.9; lon <= 180; lon += 1.3)
+            {
+                Angle latitude = Angle.fromDegrees(lat);
+                Angle longitude = Angle.fromDegrees(lon);
+                UTMCoord expected = UTMCoord.fromLatLon(latitude, longitude);
+                int zone = CONVERTER.geodeticToUTM(latitude.radians, longitude.radians, result, 0);
+
+                assertEquals("Zone incorrect ", expected.getZone(), zone);
+                assertEquals("Easting incorrect ", expected.getEasting(), result[0], 0);
+                assertEquals("Northing incorrect ", expected.getNorthing(), result[1], 0);
+
+                int hemisphere = lat < 0 ? GridCoordConverter.SOUTH : GridCoordConverter.NORTH;
+                UTMCoord inverse = UTMCoord.fromUTM(zone, lat < 0 ? AVKey.SOUTH : AVKey.NORTH, result[0], result[1]);
+                assertTrue("UTM not converted ", CONVERTER.utmToGeodetic(zone, hemisphere, result[0], result[1],
+                    result, 0));
+                assertEquals("Latitude incorrect ", inverse.getLatitude().radians, result[0], 0);
+                assertEquals("Longitude incorrect ", inverse.getLongitude().radians, result[1], 0);
+            }
+        }
+
+        assertEquals("Converted invalid latitude ", 0, CONVERTER.geodeticToUTM(Math.toRadians(87), 0, result, 0));
+        assertFalse("Converted invalid zone ", CONVERTER.utmToGeodetic(61, GridCoordConverter.NORTH, 500000, 0,
+            result, 0));
+    }
+
+    @Test
+    /** Tests that UPS coordinates match those computed by UPSCoord in both directions. */
+    public void testUPS()
+    {
+        double[] result = new double[2];
+        for (double lat = 72.5; lat < 90; lat += 0.5)
+        {
+            for (double lon = -179.5; lon <= 180; lon += 4.5)
+            {
+                for (int sign = -1; sign <= 1; sign += 2)
+                {
+                    Angle latitude = Angle.fromDegrees(sign * lat);
+                    Angle longitude = Angle.fromDegrees(lon);
+                    UPSCoord expected = UPSCoord.fromLatLon(latitude, longitude);
+                    int hemisphere = CONVERTER.geodeticToUPS(latitude.radians, longitude.radians, result, 0);
+
+                    assertEquals("Hemisphere incorrect ", sign, hemisphere);
+                    assertEquals("Easting incorrect ", expected.getEasting(), result[0], 0);
+                    assertEquals("Northing incorrect ", expected.getNorthing(), result[1], 0);
+
+                    UPSCoord inverse = UPSCoord.fromUPS(expected.getHemisphere(), result[0], result[1], null);
+                    assertTrue("UPS not converted ", CONVERTER.upsToGeodetic(hemisphere, result[0], result[1],
+                        result, 0));
+                    assertEquals("Latitude incorrect ", inverse.getLatitude().radians, result[0], 0);
+                    assertEquals("Longitude incorrect ", inverse.getLongitude().radians, result[1], 0);
+                }
+            }
+        }
+
+        assertEquals("Converted invalid latitude ", 0, CONVERTER.geodeticToUPS(Math.toRadians(60), 0, result, 0));
+    }
+
+    @Test
+    /** Tests that MGRS strings match those written and read by MGRSCoord. */
+    public void testMGRS()
+    {
+        char[] chars = new char[GridCoordConverter.MAX_MGRS_LENGTH];
+        double[] result = new double[2];
+        for (double lat = -79.7; lat <= 83.5; lat += 0.9)
+        {
+            for (double lon = -179.9; lon <= 180; lon += 1.7)
+            {
+                for (int precision = 1; precision <= 5; precision += 2)
+                {
+                    Angle latitude = Angle.fromDegrees(lat);
+                    Angle longitude = Angle.fromDegrees(lon);
+                    MGRSCoord expected = MGRSCoord.fromLatLon(latitude, longitude, precision);
+                    int length = CONVERTER.geodeticToMGRS(latitude.radians, longitude.radians, precision, chars, 0);
+                    String mgrs = new String(chars, 0, length);
+                    assertEquals("MGRS incorrect ", expected.toString(), mgrs);
+
+                    MGRSCoord inverse = MGRSCoord.fromString(mgrs, null);
+                    assertTrue("MGRS not converted ", CONVERTER.mgrsToGeodetic(mgrs, 0, length, result, 0));
+                    assertEquals("Latitude incorrect ", inverse.getLatitude().radians, result[0], 0);
+                    assertEquals("Longitude incorrect ", inverse.getLongitude().radians, result[1], 0);
+                }
+            }
+        }
+
+        String mgrs = "32tlp 5626635418";
+        MGRSCoord expected = MGRSCoord.fromString(mgrs, null);
+        assertTrue("MGRS not converted ", CONVERTER.mgrsToGeodetic(mgrs, 0, mgrs.length(), result, 0));
+        assertEquals("Latitude incorrect ", expected.getLatitude().radians, result[0], 0);
+        assertEquals("Longitude incorrect ", expected.getLongitude().radians, result[1], 0);
+
+        assertFalse("Converted invalid letter ", CONVERTER.mgrsToGeodetic("32TIP5626635418", 0, 15, result, 0));
+        assertFalse("Converted odd digits ", CONVERTER.mgrsToGeodetic("32TLP5626635", 0, 12, result, 0));
+        assertFalse("Converted invalid zone ", CONVERTER.mgrsToGeodetic("61TLP5626635418", 0, 15, result, 0));
+    }
+
+    @Test
+    /** Tests that polar MGRS strings are converted back to their location, also by MGRSCoord. */
+    public void testPolarMGRS()
+    {
+        char[] chars = new char[GridCoordConverter.MAX_MGRS_LENGTH];
+        double[] result = new double[2];
+        double[] locations = {85, 10, 88.5, -120, -85, 45, -89, -170};
+        for (int i = 0; i < locations.length; i += 2)
+        {
+            double lat = Math.toRadians(locations[i]);
+            double lon = Math.toRadians(locations[i + 1]);
+            int length = CONVERTER.geodeticToMGRS(lat, lon, 5, chars, 0);
+            assertEquals("MGRS incorrect ", MGRSCoord.fromLatLon(Angle.fromRadians(lat), Angle.fromRadians(lon))
+                .toString(), new String(chars, 0, length));
+
+            assertTrue("MGRS not converted ", CONVERTER.mgrsToGeodetic(new String(chars), 0, length, result, 0));
+            // One meter is about 1.6e-7 radians of latitude.
+            assertEquals("Latitude incorrect ", lat, result[0], 2e-7);
+            assertEquals("Longitude incorrect ", lon, result[1], 2e-7 / Math.cos(lat));
+
+            MGRSCoord inverse = MGRSCoord.fromString(new String(chars, 0, length), null);
+            assertEquals("MGRSCoord latitude incorrect ", result[0], inverse.getLatitude().radians, 0);
+            assertEquals("MGRSCoord longitude incorrect ", result[1], inverse.getLongitude().radians, 0);
+        }
+    }
+
+    @Test
+    /** Tests that projections other than UTM and UPS convert locations back to themselves. */
+    public void testProjections()
+    {
+        // Stay within 9 degrees of the central meridian, where the series is accurate and converts without warning.
+        Angle origin = Angle.fromDegrees(30);
+        Angle meridian = Angle.fromDegrees(100);
+        for (double lat = -45; lat <= 60; lat += 15)
+        {
+            for (double lon = 91; lon <= 109; lon += 4.5)
+            {
+                TMCoord tm = TMCoord.fromLatLon(Angle.fromDegrees(lat), Angle.fromDegrees(lon), null, null, null,
+                    origin, meridian, 1000, 2000, 0.9996);
+                TMCoord inverse = TMCoord.fromTM(tm.getEasting(), tm.getNorthing(), null, origin, meridian, 1000,
+                    2000, 0.9996);
+                assertEquals("Latitude incorrect ", lat, inverse.getLatitude().degrees, 1e-6);
+                assertEquals("Longitude incorrect ", lon, inverse.getLongitude().degrees, 1e-6);
+            }
+        }
+
+        // True scale at the north pole, with a longitude down from the pole and a false origin.
+        PolarCoordConverter polar = new PolarCoordConverter();
+        assertEquals("Parameters invalid ", 0, polar.setPolarStereographicParameters(UTMCoordConverter.WGS84_A,
+            UTMCoordConverter.WGS84_F, Math.PI / 2, Math.toRadians(45), 1000, 2000));
+        for (double lat = 50; lat <= 89.5; lat += 5)
+        {
+            for (double lon = -170; lon <= 180; lon += 35)
+            {
+                assertEquals("Location not converted ", 0, polar.convertGeodeticToPolarStereographic(
+                    Math.toRadians(lat), Math.toRadians(lon)));
+                assertEquals("Coordinate not converted ", 0, polar.convertPolarStereographicToGeodetic(
+                    polar.getEasting(), polar.getNorthing()));
+                assertEquals("Latitude incorrect ", lat, Math.toDegrees(polar.getLatitude()), 1e-9);
+                assertEquals("Longitude incorrect ", lon, Math.toDegrees(polar.getLongitude()), 1e-9);
+            }
+        }
+
+        assertEquals("Pole not at false origin ", 0, polar.convertPolarStereographicToGeodetic(1000, 2000));
+        assertEquals("Pole latitude incorrect ", Math.PI / 2, polar.getLatitude(), 0);
+        assertTrue("Converted other hemisphere ", polar.convertGeodeticToPolarStereographic(-0.1, 0) != 0);
+    }
+
+    @Test
+    /** Tests that conversions store their results at the specified offset. */
+    public void testResultOffset()
+    {
+        double[] result = {-1, -1, 0, 0};
+        assertEquals("Zone incorrect ", 32, CONVERTER.geodeticToUTM(Math.toRadians(48), Math.toRadians(9), result,
+            2));
+        assertTrue("UTM not converted ", CONVERTER.utmToGeodetic(32, GridCoordConverter.NORTH, result[2],
+            result[3], result, 2));
+        assertEquals("Latitude incorrect ", Math.toRadians(48), result[2], 1e-9);
+        assertEquals("Longitude incorrect ", Math.toRadians(9), result[3], 1e-9);
+
+        assertEquals("Hemisphere incorrect ", GridCoordConverter.SOUTH, CONVERTER.geodeticToUPS(Math.toRadians(-85),
+            0, result, 2));
+        assertTrue("UPS not converted ", CONVERTER.upsToGeodetic(GridCoordConverter.SOUTH, result[2], result[3],
+            result, 2));
+        assertEquals("Latitude incorrect ", Math.toRadians(-85), result[2], 1e-9);
+        assertEquals("Result before offset changed ", -1, result[0], 0);
+        assertEquals("Result before offset changed ", -1, result[1], 0);
+    }
+
+    @Test
+    /** Tests that parallel batch conversions match single conversions. */
+    public void testBatch()
+    {
+        int count = 50000;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        for (int i = 0; i < count; i++)
+        {
+            lats[i] = Math.toRadians(-85 + 170.0 * i / count);
+            lons[i] = Math.toRadians(-180 + (i * 7.3) % 360);
+        }
+
+        int[] zones = new int[count];
+        double[] eastings = new double[count];
+        double[] northings = new double[count];
+        char[] chars = new char[count * GridCoordConverter.MAX_MGRS_LENGTH];
+        int[] lengths = new int[count];
+        double[] mgrsLats = new double[count];
+        double[] mgrsLons = new double[count];
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            CONVERTER.geodeticToUTM(lats, lons, zones, eastings, northings, executor);
+            CONVERTER.geodeticToMGRS(lats, lons, 5, chars, lengths, executor);
+            CONVERTER.mgrsToGeodetic(chars, lengths, mgrsLats, mgrsLons, executor);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        double[] result = new double[2];
+        char[] mgrs = new char[GridCoordConverter.MAX_MGRS_LENGTH];
+        for (int i = 0; i < count; i++)
+        {
+            int zone = CONVERTER.geodeticToUTM(lats[i], lons[i], result, 0);
+            assertEquals("Zone incorrect ", zone, zones[i]);
+            if (zone != 0)
+            {
+                assertEquals("Easting incorrect ", result[0], eastings[i], 0);
+                assertEquals("Northing incorrect ", result[1], northings[i], 0);
+            }
+            else
+            {
+                assertTrue("Easting not NaN ", Double.isNaN(eastings[i]));
+            }
+
+            int length = CONVERTER.geodeticToMGRS(lats[i], lons[i], 5, mgrs, 0);
+            assertEquals("MGRS length incorrect ", length, lengths[i]);
+            assertEquals("MGRS incorrect ", new String(mgrs, 0, length),
+                new String(chars, i * GridCoordConverter.MAX_MGRS_LENGTH, lengths[i]));
+
+            assertTrue("MGRS not converted ", CONVERTER.mgrsToGeodetic(new String(mgrs), 0, length, result, 0));
+            assertEquals("Latitude incorrect ", result[0], mgrsLats[i], 0);
+            assertEquals("Longitude incorrect ", result[1], mgrsLons[i], 0);
+        }
+    }
+}
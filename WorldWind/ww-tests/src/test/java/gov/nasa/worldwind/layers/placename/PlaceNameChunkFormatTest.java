@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.layers.placename;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class PlaceNameChunkFormatTest
+{
+    private static final double[] POSITIONS = {48.8567, 2.3508, 35.6895, 139.6917, -33.8600, 151.2094};
+    private static final String[] NAMES = {"Paris", "東京", ""};
+
+    @Test
+    /** Tests that names, positions, ranks and populations are decoded as encoded. */
+    public void testEncodeDecode()
+    {
+        int[] ranks = {1, 2, 3};
+        int[] populations = {2200000, 13000000, 4600000};
+        ByteBuffer buffer = PlaceNameChunkFormat.encode(POSITIONS, NAMES, ranks, populations);
+
+        assertTrue("Chunk invalid ", PlaceNameChunkFormat.isValid(buffer));
+        assertEquals("Entry count incorrect ", NAMES.length, PlaceNameChunkFormat.getNumEntries(buffer));
+        assertDecoded(buffer);
+
+        IntBuffer decodedRanks = PlaceNameChunkFormat.getRanks(buffer);
+        IntBuffer decodedPopulations = PlaceNameChunkFormat.getPopulations(buffer);
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            assertEquals("Rank incorrect ", ranks[i], decodedRanks.get(i));
+            assertEquals("Population incorrect ", populations[i], decodedPopulations.get(i));
+        }
+    }
+
+    @Test
+    /** Tests that a chunk without ranks and populations reports none. */
+    public void testOptionalFields()
+    {
+        ByteBuffer buffer = PlaceNameChunkFormat.encode(POSITIONS, NAMES, null, null);
+
+        assertTrue("Chunk invalid ", PlaceNameChunkFormat.isValid(buffer));
+        assertNull("Ranks not null ", PlaceNameChunkFormat.getRanks(buffer));
+        assertNull("Populations not null ", PlaceNameChunkFormat.getPopulations(buffer));
+        assertDecoded(buffer);
+    }
+
+    @Test
+    /** Tests that a chunk written to a file is mapped intact, and that a truncated file is rejected. */
+    public void testWriteAndMapFile() throws IOException
+    {
+        File file = File.createTempFile("PlaceNameChunkFormatTest", PlaceNameChunkFormat.BINARY_SUFFIX);
+        try
+        {
+            ByteBuffer buffer = PlaceNameChunkFormat.encode(POSITIONS, NAMES, null, new int[] {1, 2, 3});
+            PlaceNameChunkFormat.writeFile(buffer, file);
+
+            ByteBuffer mapped = PlaceNameChunkFormat.readFile(file);
+            assertEquals("File size incorrect ", buffer.capacity(), mapped.capacity());
+            assertDecoded(mapped);
+            assertEquals("Population incorrect ", 3, PlaceNameChunkFormat.getPopulations(mapped).get(2));
+
+            buffer.limit(buffer.capacity() - 1);
+            assertFalse("Truncated chunk valid ", PlaceNameChunkFormat.isValid(buffer.slice()));
+        }
+        finally
+        {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    /** Tests that binary chunk paths are derived from GML chunk paths. */
+    public void testBinaryPath()
+    {
+        assertEquals("Path incorrect ", "Earth/PlaceNames/US/5/5_7" + PlaceNameChunkFormat.BINARY_SUFFIX,
+            PlaceNameChunkFormat.getBinaryPath("Earth/PlaceNames/US/5/5_7.xml.gz"));
+    }
+
+    private static void assertDecoded(ByteBuffer buffer)
+    {
+        FloatBuffer positions = PlaceNameChunkFormat.getPositions(buffer);
+        IntBuffer offsets = PlaceNameChunkFormat.getTextOffsets(buffer);
+        ByteBuffer text = PlaceNameChunkFormat.getText(buffer);
+
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            assertEquals("Latitude incorrect ", POSITIONS[2 * i], positions.get(2 * i), 1e-4);
+            assertEquals("Longitude incorrect ", POSITIONS[2 * i + 1], positions.get(2 * i + 1), 1e-4);
+            assertEquals("Name incorrect ", NAMES[i],
+                PlaceNameChunkFormat.decodeText(text, offsets.get(i), offsets.get(i + 1)));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.ogc.collada;
+
+import org.junit.*;
+
+import java.io.*;
+import java.nio.FloatBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class ColladaCompiledMeshesTest
+{
+    protected static final File DUCK = new File("testData/collada/duck_triangulate.dae");
+    protected static final File CUBE = new File("testData/collada/cube_triangulate.dae");
+
+    protected List<File> files = new ArrayList<File>();
+
+    /** A root that parses with specified compiled meshes, as if they were read from the file store. */
+    protected static class MappedRoot extends ColladaRoot
+    {
+        protected ColladaCompiledMeshes meshes;
+
+        public MappedRoot(File docSource, ColladaCompiledMeshes meshes) throws IOException
+        {
+            super(docSource);
+            this.meshes = meshes;
+        }
+
+        @Override
+        protected void openCompiledMeshes()
+        {
+            this.compiledMeshes = this.meshes;
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File file : this.files)
+        {
+            file.delete();
+        }
+    }
+
+    @Test
+    /** Tests that meshes compiled, written and mapped again draw the same vertices as the parsed document. */
+    public void testRoundTrip() throws Exception
+    {
+        ColladaRoot root = parse(new ColladaRoot(DUCK));
+        List<float[]> expected = getMeshData(root);
+
+        File file = this.write(ColladaCompiledMeshes.compile(root.geometries));
+        ColladaCompiledMeshes mapped = ColladaCompiledMeshes.read(file);
+        assertEquals("Geometry count incorrect ", root.geometries.size(), mapped.getGeometryCount());
+
+        ColladaRoot mappedRoot = parse(new MappedRoot(DUCK, mapped));
+        assertSame("Compiled meshes not used ", mapped, mappedRoot.getCompiledMeshes());
+        assertMeshDataEquals(expected, getMeshData(mappedRoot));
+    }
+
+    @Test
+    /** Tests that a damaged compiled meshes file is rejected when it's read, before the document is parsed. */
+    public void testDamagedFile() throws Exception
+    {
+        File file = this.write(ColladaCompiledMeshes.compile(parse(new ColladaRoot(CUBE)).geometries));
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            raf.seek(raf.length() - 1);
+            int b = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(b ^ 0xFF);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        try
+        {
+            ColladaCompiledMeshes.read(file);
+            fail("Damaged file read");
+        }
+        catch (IOException e)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    /** Tests that a document is parsed again from its own data when the compiled meshes are of another document. */
+    public void testStaleMeshes() throws Exception
+    {
+        List<float[]> expected = getMeshData(parse(new ColladaRoot(DUCK)));
+
+        File file = this.write(ColladaCompiledMeshes.compile(parse(new ColladaRoot(CUBE)).geometries));
+        ColladaRoot root = parse(new MappedRoot(DUCK, ColladaCompiledMeshes.read(file)));
+
+        assertNull("Stale compiled meshes used ", root.getCompiledMeshes());
+        assertMeshDataEquals(expected, getMeshData(root));
+    }
+
+    protected File write(ColladaCompiledMeshes meshes) throws IOException
+    {
+        assertNotNull("Meshes not compiled ", meshes);
+
+        File file = File.createTempFile("ColladaCompiledMeshesTest", ".bin");
+        this.files.add(file);
+        meshes.write(file);
+        return file;
+    }
+
+    protected static ColladaRoot parse(ColladaRoot root) throws Exception
+    {
+        assertSame("Document not parsed ", root, root.parse());
+        return root;
+    }
+
+    /** Returns the vertices and normals of each geometry, as ColladaMeshShape copies them into its vertex buffer. */
+    protected static List<float[]> getMeshData(ColladaRoot root)
+    {
+        List<float[]> data = new ArrayList<float[]>();
+        for (ColladaAbstractGeometry geometry : root.geometries)
+        {
+            int floatCount = geometry.getCount() * geometry.getVerticesPerShape()
+                * ColladaAbstractGeometry.COORDS_PER_VERTEX;
+
+            FloatBuffer vertices = FloatBuffer.allocate(floatCount);
+            geometry.getVertices(vertices);
+            data.add(vertices.array());
+
+            FloatBuffer normals = FloatBuffer.allocate(floatCount);
+            geometry.getNormals(normals);
+            data.add(normals.array());
+        }
+
+        return data;
+    }
+
+    protected static void assertMeshDataEquals(List<float[]> expected, List<float[]> actual)
+    {
+        assertEquals("Buffer count incorrect ", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertTrue("Buffer " + i + " incorrect ", Arrays.equals(expected.get(i), actual.get(i)));
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.ogc.kml;
+
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.render.DrawContextImpl;
+import org.junit.*;
+
+import java.io.ByteArrayInputStream;
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the memory budget and request ordering of {@link KMLNetworkResourceManager}.
+ *
+ * @version $Id$
+ */
+public class KMLNetworkResourceManagerTest
+{
+    /** The memory budget of the test manager, in bytes. */
+    protected static final long BUDGET = 100000;
+
+    /** A network link that records the resources unloaded from it. */
+    protected static class TestLink extends KMLNetworkLink
+    {
+        protected final boolean cacheable;
+        protected final List<KMLRoot> unloaded = new ArrayList<KMLRoot>();
+
+        public TestLink(boolean cacheable)
+        {
+            super(KMLConstants.KML_NAMESPACE);
+            this.cacheable = cacheable;
+        }
+
+        @Override
+        public boolean isLinkCacheable()
+        {
+            return this.cacheable;
+        }
+
+        @Override
+        protected void unloadNetworkResource(KMLRoot resource)
+        {
+            this.unloaded.add(resource);
+            super.unloadNetworkResource(resource);
+        }
+    }
+
+    protected KMLNetworkResourceManager manager;
+    protected DrawContextImpl dc;
+
+    @Before
+    public void setUp()
+    {
+        this.manager = new KMLNetworkResourceManager(new BasicMemoryCache(BUDGET, BUDGET));
+        this.dc = new DrawContextImpl();
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.manager = null;
+        this.dc = null;
+    }
+
+    @Test
+    /** Tests that a document's size is the number of bytes of XML parsed. */
+    public void testDocumentSize() throws Exception
+    {
+        byte[] bytes = createDocument(5000).getBytes("UTF-8");
+        KMLRoot root = new KMLRoot(new ByteArrayInputStream(bytes), KMLConstants.KML_MIME_TYPE);
+        assertEquals("Size known before parsing ", 0, root.getDocumentSize());
+
+        root.parse();
+        assertEquals("Document size incorrect ", bytes.length, root.getDocumentSize());
+    }
+
+    @Test
+    /** Tests that the least recently drawn resources are unloaded once the budget is exceeded, by size. */
+    public void testLeastRecentlyDrawnUnloaded() throws Exception
+    {
+        // The large resources each take most of the budget, and the small ones the minimum resource size.
+        TestLink a = createLink(true, 20000);
+        TestLink b = createLink(true, 100);
+        TestLink c = createLink(true, 100);
+        TestLink d = createLink(true, 20000);
+        KMLRoot resourceA = a.getNetworkResource();
+        KMLRoot resourceC = c.getNetworkResource();
+
+        this.markActive(1, a);
+        this.markActive(2, b);
+        assertTrue("Resource unloaded within budget ", a.unloaded.isEmpty() && b.unloaded.isEmpty());
+
+        // Unloading the large resource alone makes room for the small one.
+        this.markActive(3, c);
+        assertEquals("Least recently drawn resource not unloaded ", Arrays.asList(resourceA), a.unloaded);
+        assertNull("Unloaded resource still held ", a.getNetworkResource());
+        assertTrue("Unloaded resource not retrieved again ", a.networkResourceUnloaded);
+        assertTrue("Recently drawn resource unloaded ", b.unloaded.isEmpty() && c.unloaded.isEmpty());
+        assertEquals("Budget used incorrect ", 2 * KMLNetworkResourceManager.MIN_RESOURCE_SIZE,
+            this.manager.getCache().getUsedCapacity());
+
+        // Drawing the older small resource again keeps it in preference to the newer one.
+        this.markActive(4, b);
+        this.markActive(5, d);
+        assertEquals("Least recently drawn resource not unloaded ", Arrays.asList(resourceC), c.unloaded);
+        assertTrue("Recently drawn resource unloaded ", b.unloaded.isEmpty() && d.unloaded.isEmpty());
+        assertNotNull("Recently drawn resource not held ", b.getNetworkResource());
+        assertTrue("Budget exceeded ", this.manager.getCache().getUsedCapacity() <= BUDGET);
+    }
+
+    @Test
+    /** Tests that resources drawn during the current frame are not unloaded when they're evicted. */
+    public void testActiveResourcesNotUnloaded() throws Exception
+    {
+        TestLink a = createLink(true, 20000);
+        TestLink b = createLink(true, 20000);
+
+        this.markActive(1, a);
+        this.markActive(1, b);
+        assertTrue("Resource drawn this frame unloaded ", a.unloaded.isEmpty() && b.unloaded.isEmpty());
+        assertNotNull("Resource drawn this frame not held ", a.getNetworkResource());
+    }
+
+    @Test
+    /** Tests that a link whose resource is replaced or that isn't cacheable doesn't have its resource unloaded. */
+    public void testReplacedAndUncacheableResourcesNotUnloaded() throws Exception
+    {
+        TestLink a = createLink(true, 100);
+        this.markActive(1, a);
+        KMLRoot resource = createResource(100);
+        a.setNetworkResource(resource);
+        this.markActive(2, a);
+        assertSame("Current resource unloaded ", resource, a.getNetworkResource());
+        assertEquals("Replaced resource still counted ", KMLNetworkResourceManager.MIN_RESOURCE_SIZE,
+            this.manager.getCache().getUsedCapacity());
+
+        TestLink uncacheable = createLink(false, 20000);
+        this.markActive(3, uncacheable);
+        assertEquals("Uncacheable resource tracked ", 1, this.manager.getCache().getNumObjects());
+    }
+
+    @Test
+    /** Tests that the cache doesn't keep network links or their resources from being garbage collected. */
+    public void testLinksHeldWeakly() throws Exception
+    {
+        TestLink link = createLink(true, 20000);
+        this.markActive(1, link);
+
+        WeakReference<KMLNetworkLink> linkRef = new WeakReference<KMLNetworkLink>(link);
+        WeakReference<KMLRoot> resourceRef = new WeakReference<KMLRoot>(link.getNetworkResource());
+        link = null;
+
+        for (int i = 0; i < 50 && (linkRef.get() != null || resourceRef.get() != null); i++)
+        {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertNull("Cache holds link ", linkRef.get());
+        assertNull("Cache holds resource ", resourceRef.get());
+
+        // Evicting the collected link's entry releases its budget.
+        TestLink next = createLink(true, 20000);
+        this.markActive(2, next);
+        assertEquals("Collected entry not evicted ", 1, this.manager.getCache().getNumObjects());
+        assertNotNull("Resource unloaded ", next.getNetworkResource());
+    }
+
+    @Test
+    /** Tests that queued requests are sent highest priority first. */
+    public void testRequestsOrderedByPriority() throws Exception
+    {
+        TestLink link = new TestLink(true);
+        double[] priorities = {1, 0, Double.POSITIVE_INFINITY, 250.5, 12};
+        for (double priority : priorities)
+        {
+            this.manager.addRequest(new KMLNetworkLink.RequestTask(link, "http://localhost/" + priority, priority));
+        }
+
+        double[] expected = {Double.POSITIVE_INFINITY, 250.5, 12, 1, 0};
+        for (double priority : expected)
+        {
+            KMLNetworkLink.RequestTask task = (KMLNetworkLink.RequestTask) this.manager.requestQ.poll();
+            assertEquals("Request order incorrect ", priority, task.priority, 0);
+        }
+
+        assertNull("Extra request queued ", this.manager.requestQ.poll());
+    }
+
+    protected void markActive(long frame, KMLNetworkLink link)
+    {
+        this.dc.setFrameTimeStamp(frame);
+        this.manager.markActive(this.dc, link, link.getNetworkResource());
+    }
+
+    protected static TestLink createLink(boolean cacheable, int documentSize) throws Exception
+    {
+        TestLink link = new TestLink(cacheable);
+        link.setNetworkResource(createResource(documentSize));
+        return link;
+    }
+
+    protected static KMLRoot createResource(int documentSize) throws Exception
+    {
+        KMLRoot root = new KMLRoot(new ByteArrayInputStream(createDocument(documentSize).getBytes("UTF-8")),
+            KMLConstants.KML_MIME_TYPE);
+        root.parse();
+        return root;
+    }
+
+    /** Returns a KML document of about the specified number of bytes. */
+    protected static String createDocument(int size)
+    {
+        StringBuilder sb = new StringBuilder("<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Placemark><description>");
+        while (sb.length() < size)
+        {
+            sb.append("padding ");
+        }
+
+        return sb.append("</description></Placemark></kml>").toString();
+    }
+}
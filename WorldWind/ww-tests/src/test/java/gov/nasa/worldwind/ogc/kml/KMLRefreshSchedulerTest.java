@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.ogc.kml;
+
+import com.sun.net.httpserver.*;
+import org.junit.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link KMLRefreshScheduler} against a local HTTP server.
+ *
+ * @version $Id$
+ */
+public class KMLRefreshSchedulerTest
+{
+    protected static final String DOCUMENT = "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Placemark/></kml>";
+
+    protected HttpServer server;
+    protected volatile String content = DOCUMENT;
+    protected AtomicInteger activeRequests = new AtomicInteger();
+    protected AtomicInteger maxActiveRequests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+
+        // Supports conditional requests with an entity tag derived from the content.
+        this.server.createContext("/etag", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                String tag = "\"" + Integer.toHexString(content.hashCode()) + "\"";
+                exchange.getResponseHeaders().set("ETag", tag);
+                if (tag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+                    respond(exchange, 304, null);
+                else
+                    respond(exchange, 200, content);
+            }
+        });
+
+        // Ignores conditional requests, and is slow to respond.
+        this.server.createContext("/plain", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                int active = activeRequests.incrementAndGet();
+                maxActiveRequests.set(Math.max(maxActiveRequests.get(), active));
+                try
+                {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                activeRequests.decrementAndGet();
+                respond(exchange, 200, content);
+            }
+        });
+
+        this.server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+        this.server.start();
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.server.stop(0);
+    }
+
+    @Test
+    /** Tests that unchanged content is detected from the entity tag, or from the content when there is no tag. */
+    public void testConditionalRequests() throws Exception
+    {
+        KMLRefreshScheduler scheduler = new KMLRefreshScheduler(2);
+
+        KMLRefreshScheduler.LinkState state = new KMLRefreshScheduler.LinkState();
+        URL url = this.makeURL("/etag");
+        assertEquals(KMLRefreshScheduler.Result.UPDATED, fetch(scheduler, state, url));
+        assertEquals(KMLRefreshScheduler.Result.NOT_MODIFIED, fetch(scheduler, state, url));
+        this.content = DOCUMENT.replace("<Placemark/>", "<Folder/>");
+        assertEquals(KMLRefreshScheduler.Result.UPDATED, fetch(scheduler, state, url));
+
+        state = new KMLRefreshScheduler.LinkState();
+        url = this.makeURL("/plain");
+        assertEquals(KMLRefreshScheduler.Result.UPDATED, fetch(scheduler, state, url));
+        assertEquals(KMLRefreshScheduler.Result.UNCHANGED, fetch(scheduler, state, url));
+        assertEquals("Metrics incorrect ", 2, state.metrics.getRequestCount());
+        assertEquals("Metrics incorrect ", 1, state.metrics.getUnchangedCount());
+        assertEquals("Metrics incorrect ", 2 * this.content.length(), state.metrics.getBytesReceived());
+    }
+
+    @Test
+    /** Tests that the number of concurrent requests to a host is limited, and that pending requests are coalesced. */
+    public void testRequestsPerHost() throws Exception
+    {
+        final List<KMLNetworkLink> completed = Collections.synchronizedList(new ArrayList<KMLNetworkLink>());
+        KMLRefreshScheduler scheduler = new KMLRefreshScheduler(2)
+        {
+            @Override
+            protected void handleResult(Request request, Fetch fetch)
+            {
+                completed.add(request.link);
+            }
+        };
+
+        List<KMLNetworkLink> links = new ArrayList<KMLNetworkLink>();
+        for (int i = 0; i < 6; i++)
+        {
+            KMLNetworkLink link = new KMLNetworkLink(null);
+            links.add(link);
+            assertTrue(scheduler.requestRefresh(link, this.makeURL("/plain"), i, "/plain"));
+            assertTrue(scheduler.requestRefresh(link, this.makeURL("/plain"), i, "/plain"));
+        }
+
+        for (int i = 0; i < 100 && completed.size() < links.size(); i++)
+        {
+            Thread.sleep(50);
+        }
+
+        assertEquals("Links not refreshed ", links.size(), completed.size());
+        assertTrue("Links not refreshed ", completed.containsAll(links));
+        assertEquals("Too many concurrent requests ", 2, this.maxActiveRequests.get());
+        assertEquals("Requests not coalesced ", 1, scheduler.getMetrics(links.get(0)).getCoalescedCount());
+    }
+
+    @Test
+    /** Tests that content that fails to parse is parsed again on the next refresh rather than reported unchanged. */
+    public void testRetryAfterParseFailure() throws Exception
+    {
+        final KMLRoot root = new KMLRoot(new ByteArrayInputStream(DOCUMENT.getBytes("UTF-8")),
+            KMLConstants.KML_MIME_TYPE);
+        final AtomicInteger parseCount = new AtomicInteger();
+        KMLRefreshScheduler scheduler = new KMLRefreshScheduler(2)
+        {
+            @Override
+            protected KMLRoot parseContent(Request request, Fetch fetch)
+            {
+                // The first parse fails.
+                return parseCount.incrementAndGet() > 1 ? root : null;
+            }
+        };
+
+        final List<KMLRoot> resources = Collections.synchronizedList(new ArrayList<KMLRoot>());
+        KMLNetworkLink link = new KMLNetworkLink(null)
+        {
+            @Override
+            protected void onRefreshRetrieved(KMLRoot resource, String address, long expiration)
+            {
+                resources.add(resource);
+            }
+        };
+
+        URL url = this.makeURL("/etag");
+        assertTrue(scheduler.requestRefresh(link, url, 0, "/etag"));
+        this.waitForRefresh(scheduler, link, 1);
+        assertTrue("Failed parse delivered ", resources.isEmpty());
+        assertFalse("Retried before the retry delay ", scheduler.requestRefresh(link, url, 0, "/etag"));
+
+        // Retry the unchanged document. It must be retrieved in full and parsed, not answered as not modified.
+        synchronized (scheduler)
+        {
+            scheduler.linkStates.get(link).retryTime = 0;
+        }
+        assertTrue(scheduler.requestRefresh(link, url, 0, "/etag"));
+        this.waitForRefresh(scheduler, link, 2);
+        assertEquals("Content not parsed again ", 2, parseCount.get());
+        assertEquals("Resource not delivered ", Arrays.asList(root), resources);
+
+        // Now that the link holds the content, the next refresh is answered as not modified.
+        assertTrue(scheduler.requestRefresh(link, url, 0, "/etag"));
+        this.waitForRefresh(scheduler, link, 3);
+        assertEquals("Content parsed again ", 2, parseCount.get());
+
+        KMLRefreshScheduler.Metrics metrics = scheduler.getMetrics(link);
+        assertEquals("Metrics incorrect ", 2, metrics.getUpdatedCount());
+        assertEquals("Metrics incorrect ", 1, metrics.getNotModifiedCount());
+        assertEquals("Metrics incorrect ", 1, metrics.getFailureCount());
+    }
+
+    protected void waitForRefresh(KMLRefreshScheduler scheduler, KMLNetworkLink link, int requestCount)
+        throws InterruptedException
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            synchronized (scheduler)
+            {
+                KMLRefreshScheduler.LinkState state = scheduler.linkStates.get(link);
+                if (state.metrics.getRequestCount() >= requestCount && !state.pending)
+                    return;
+            }
+
+            Thread.sleep(50);
+        }
+
+        fail("Refresh not completed");
+    }
+
+    /** Fetches a document and records its validators, as a refresh whose content is parsed successfully does. */
+    protected static KMLRefreshScheduler.Result fetch(KMLRefreshScheduler scheduler,
+        KMLRefreshScheduler.LinkState state, URL url)
+    {
+        KMLRefreshScheduler.Fetch fetch = scheduler.fetch(state, url);
+        scheduler.updateState(state, fetch);
+        return fetch.result;
+    }
+
+    protected URL makeURL(String path) throws MalformedURLException
+    {
+        return new URL("http://localhost:" + this.server.getAddress().getPort() + path);
+    }
+
+    protected static void respond(HttpExchange exchange, int code, String body) throws IOException
+    {
+        byte[] bytes = body != null ? body.getBytes("UTF-8") : null;
+        exchange.getResponseHeaders().set("Content-Type", "application/vnd.google-earth.kml+xml");
+        exchange.sendResponseHeaders(code, bytes != null ? bytes.length : -1);
+        if (bytes != null)
+            exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
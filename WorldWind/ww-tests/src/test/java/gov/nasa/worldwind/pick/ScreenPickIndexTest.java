@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.pick;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class ScreenPickIndexTest
+{
+    @Test
+    /** Tests that each primitive type is picked within its geometry and not outside it. */
+    public void testPickPrimitives()
+    {
+        ScreenPickIndex index = new ScreenPickIndex();
+        int rect = index.addObject("rect", null, null);
+        int line = index.addObject("line", null, null);
+        int tri = index.addObject("tri", null, null);
+
+        index.addRectangle(rect, 10, 10, 20, 20, 0.5);
+        index.addSegment(line, 100, 100, 0.5, 200, 100, 0.5, 4);
+        index.addTriangle(tri, new double[] {300, 300, 0.5, 400, 300, 0.5, 300, 400, 0.5}, 0, 1, 2);
+
+        assertPicked(index, 15, 15, "rect");
+        assertPicked(index, 150, 101.9, "line");
+        assertPicked(index, 320, 320, "tri");
+
+        assertPicked(index, 25, 15);
+        assertPicked(index, 150, 103);
+        assertPicked(index, 390, 390); // Inside the triangle's bounds but outside the triangle.
+    }
+
+    @Test
+    /** Tests that overlapping objects are ordered nearest first, using the depth of their nearest primitive. */
+    public void testPickDepthOrder()
+    {
+        ScreenPickIndex index = new ScreenPickIndex();
+        int far = index.addObject("far", null, null);
+        int near = index.addObject("near", null, null);
+        int split = index.addObject("split", null, null);
+
+        index.addRectangle(far, 0, 0, 100, 100, 0.9);
+        index.addRectangle(near, 0, 0, 100, 100, 0.1);
+        index.addRectangle(split, 0, 0, 100, 100, 0.95);
+        index.addRectangle(split, 40, 40, 60, 60, 0.5);
+
+        PickedObjectList list = index.pick(50, 50, 0);
+        assertEquals("Picked objects incorrect ", Arrays.asList("near", "split", "far"), getObjects(list));
+        assertTrue("Nearest object not on top ", list.get(0).isOnTop());
+        assertFalse("Farther object on top ", list.get(1).isOnTop());
+        assertEquals("Top picked object incorrect ", "near", list.getTopObject());
+
+        // A segment's depth is interpolated along its length.
+        index.clear();
+        int a = index.addObject("a", null, null);
+        int b = index.addObject("b", null, null);
+        index.addSegment(a, 0, 0, 0, 100, 0, 1, 2);
+        index.addSegment(b, 0, 0, 1, 100, 0, 0, 2);
+        assertPicked(index, 10, 0, "a", "b");
+        assertPicked(index, 90, 0, "b", "a");
+    }
+
+    @Test
+    /** Tests rectangle picking against a brute force intersection test over many objects. */
+    public void testPickRectangle()
+    {
+        Random random = new Random(1);
+        ScreenPickIndex index = new ScreenPickIndex();
+        List<double[]> rects = new ArrayList<double[]>();
+
+        for (int i = 0; i < 2000; i++)
+        {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            double[] r = {x, y, x + random.nextDouble() * 20, y + random.nextDouble() * 20};
+            rects.add(r);
+            index.addRectangle(index.addObject(i, null, null), r[0], r[1], r[2], r[3], random.nextDouble());
+        }
+
+        for (int q = 0; q < 50; q++)
+        {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            double w = random.nextDouble() * 100;
+            double h = random.nextDouble() * 100;
+
+            List<Object> expected = new ArrayList<Object>();
+            for (int i = 0; i < rects.size(); i++)
+            {
+                double[] r = rects.get(i);
+                if (r[0] <= x + w && r[1] <= y + h && r[2] >= x && r[3] >= y)
+                    expected.add(i);
+            }
+
+            PickedObjectList list = index.pickRectangle(x, y, x + w, y + h);
+            assertEquals("Objects in rectangle incorrect ", expected, getObjects(list));
+        }
+    }
+
+    @Test
+    /** Tests that segments and triangles are tested exactly against the pick rectangle, not only their bounds. */
+    public void testPickRectangleExact()
+    {
+        ScreenPickIndex index = new ScreenPickIndex();
+        int line = index.addObject("line", null, null);
+        int tri = index.addObject("tri", null, null);
+        index.addSegment(line, 0, 0, 0.5, 100, 100, 0.5, 2);
+        index.addTriangle(tri, new double[] {200, 0, 0.5, 300, 0, 0.5, 200, 100, 0.5}, 0, 1, 2);
+
+        // Rectangles within the primitives' bounds, but away from the diagonal edges.
+        assertTrue("Segment bounds picked ", index.pickRectangle(70, 0, 100, 20).isEmpty());
+        assertTrue("Triangle bounds picked ", index.pickRectangle(280, 80, 300, 100).isEmpty());
+
+        assertEquals("Segment not picked ", Arrays.<Object>asList("line"),
+            getObjects(index.pickRectangle(40, 40, 60, 60)));
+        assertEquals("Triangle not picked ", Arrays.<Object>asList("tri"),
+            getObjects(index.pickRectangle(240, 40, 260, 60)));
+    }
+
+    protected static void assertPicked(ScreenPickIndex index, double x, double y, Object... expected)
+    {
+        assertEquals("Picked objects incorrect at " + x + ", " + y, Arrays.asList(expected),
+            getObjects(index.pick(x, y, 0)));
+    }
+
+    protected static List<Object> getObjects(PickedObjectList list)
+    {
+        List<Object> objects = new ArrayList<Object>();
+        for (PickedObject po : list)
+        {
+            objects.add(po.getObject());
+        }
+
+        return objects;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.render;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import org.junit.*;
+
+import java.awt.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class MassPointSetTest
+{
+    private Globe globe;
+    private double radius;
+
+    @Before
+    public void setUp()
+    {
+        this.globe = new Earth();
+        this.radius = this.globe.getEquatorialRadius();
+    }
+
+    @Test
+    /** Tests that points are added, moved and removed by ID, and that the ID table and cells stay consistent. */
+    public void testUpdatesById()
+    {
+        MassPointSet points = new MassPointSet();
+        Random random = new Random(42);
+        int numPoints = 5000;
+        for (int id = 0; id < numPoints; id++)
+        {
+            points.add(id * 7919L, 180 * random.nextDouble() - 90, 360 * random.nextDouble() - 180, 0, 0);
+        }
+        assertEquals("Size incorrect ", numPoints, points.size());
+
+        // Adding an existing ID updates the point rather than adding another.
+        points.add(7919L, 10, 20, 30, 1);
+        assertEquals("Size incorrect after re-adding ", numPoints, points.size());
+        assertEquals("Style not updated ", 1, points.getStyle(points.indexOf(7919L)));
+
+        // Remove every third point.
+        for (int id = 0; id < numPoints; id += 3)
+        {
+            assertTrue("Point not removed ", points.remove(id * 7919L));
+        }
+        assertFalse("Missing point removed ", points.remove(0L));
+        int expectedSize = numPoints - (numPoints + 2) / 3;
+        assertEquals("Size incorrect after removal ", expectedSize, points.size());
+
+        // Move the remaining points with odd IDs, and one missing point.
+        long[] ids = new long[numPoints];
+        double[] lats = new double[numPoints];
+        double[] lons = new double[numPoints];
+        double[] alts = new double[numPoints];
+        int count = 0;
+        for (int id = 0; id < numPoints; id += 2)
+        {
+            ids[count] = id * 7919L;
+            lats[count] = -45;
+            lons[count] = id % 360 - 180;
+            alts[count] = id;
+            count++;
+        }
+        int expectedMoved = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (points.contains(ids[i]))
+                expectedMoved++;
+        }
+        assertEquals("Moved count incorrect ", expectedMoved, points.setPositions(ids, lats, lons, alts, count));
+
+        for (int id = 0; id < numPoints; id++)
+        {
+            int index = points.indexOf(id * 7919L);
+            assertEquals("Point presence incorrect ", id % 3 != 0, index >= 0);
+            if (index < 0)
+                continue;
+
+            assertEquals("ID incorrect ", id * 7919L, points.getId(index));
+            if (id % 2 == 0)
+            {
+                assertEquals("Latitude not moved ", -45, points.getLatitude(index), 0);
+                assertEquals("Altitude not moved ", id, points.getAltitude(index), 0);
+            }
+        }
+
+        // Every point is in some cell, so a frustum containing the globe finds every point once.
+        points.updatePoints(this.globe, 1);
+        assertEquals("Culled count incorrect ", expectedSize, points.cull(this.createBox(-1, 1, -1, 1, -1, 1)));
+
+        points.setState(7919L, MassPointSet.STATE_HIDDEN);
+        assertEquals("Hidden point not culled ", expectedSize - 1,
+            points.cull(this.createBox(-1, 1, -1, 1, -1, 1)));
+
+        points.clear();
+        assertEquals("Size incorrect after clear ", 0, points.size());
+        assertFalse("Point found after clear ", points.contains(7919L));
+    }
+
+    @Test
+    /** Tests that culling, moved points, horizon occlusion, projection and picking find the expected points. */
+    public void testCullAndProject()
+    {
+        MassPointSet points = new MassPointSet();
+        points.setEnableParallel(false);
+        points.add(1, 0, 0, 0, 0); // facing the eye
+        points.add(2, 0, 30, 0, 0); // right of center
+        points.add(3, 0, -30, 0, 0); // left of center
+        points.add(4, 0, 180, 0, 0); // behind the globe
+        points.updatePoints(this.globe, 1);
+
+        // Points moved since the last update are excluded until the next update.
+        points.setPosition(3, 0, -29, 0);
+        assertEquals("Culled count incorrect ", 3, points.cull(this.createBox(-1, 1, -1, 1, -1, 1)));
+        points.updatePoints(this.globe, 1);
+        assertEquals("Culled count incorrect ", 4, points.cull(this.createBox(-1, 1, -1, 1, -1, 1)));
+
+        // The right part of the globe.
+        assertEquals("Culled count incorrect ", 1, points.cull(this.createBox(0.4, 1, -1, 1, -1, 1)));
+        assertEquals("Culled point incorrect ", 2L, points.getId(points.getCandidateIndex(0)));
+
+        // Look down the z axis from three radii away, with a projection mapping the globe into clip space and nearer
+        // points to smaller depths.
+        points.cull(this.createBox(-1, 1, -1, 1, -1, 1));
+        double scale = 0.5 / this.radius;
+        Matrix projection = Matrix.fromScale(scale, scale, -scale);
+        Rectangle viewport = new Rectangle(0, 0, 100, 100);
+        Vec4 eye = new Vec4(0, 0, 3 * this.radius);
+
+        assertEquals("Visible count incorrect ", 3, points.project(Matrix.IDENTITY, projection, viewport, eye,
+            0.99 * this.radius));
+        Map<Long, Integer> visible = new HashMap<Long, Integer>();
+        for (int i = 0; i < points.getNumVisible(); i++)
+        {
+            visible.put(points.getId(points.getVisibleIndex(i)), i);
+        }
+        assertFalse("Occluded point visible ", visible.containsKey(4L));
+
+        int right = visible.get(2L);
+        assertEquals("Screen x incorrect ", 62.5, points.getScreenX(right), 1e-3);
+        assertEquals("Screen y incorrect ", 50, points.getScreenY(right), 1e-3);
+        assertEquals("Screen depth incorrect ", (1 - 0.5 * Math.cos(Math.PI / 6)) / 2, points.getScreenDepth(right),
+            1e-3);
+
+        // Without an occluder the far point is visible.
+        assertEquals("Visible count incorrect ", 4, points.project(Matrix.IDENTITY, projection, viewport, eye, 0));
+
+        // The near point covers the far point at the center of the screen.
+        double[] halfSizes = new double[] {4};
+        int picked = points.pick(50, 50, halfSizes, halfSizes);
+        assertEquals("Picked point incorrect ", 1L, points.getId(points.getVisibleIndex(picked)));
+        assertEquals("Empty location picked ", -1, points.pick(10, 10, halfSizes, halfSizes));
+    }
+
+    /**
+     * Creates a box shaped frustum in units of the globe's radius.
+     *
+     * @return a frustum whose planes face into the box.
+     */
+    private Frustum createBox(double minX, double maxX, double minY, double maxY, double minZ, double maxZ)
+    {
+        double r = 1.01 * this.radius;
+        return new Frustum(new Plane(1, 0, 0, -minX * r), new Plane(-1, 0, 0, maxX * r),
+            new Plane(0, 1, 0, -minY * r), new Plane(0, -1, 0, maxY * r),
+            new Plane(0, 0, 1, -minZ * r), new Plane(0, 0, -1, maxZ * r));
+    }
+}
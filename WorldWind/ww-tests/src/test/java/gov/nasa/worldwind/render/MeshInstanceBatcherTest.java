@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.render;
+
+import gov.nasa.worldwind.geom.*;
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class MeshInstanceBatcherTest
+{
+    @Test
+    /** Tests that instances are grouped by mesh and attributes, and that unbatched instances keep their order. */
+    public void testBatching()
+    {
+        MeshInstanceBatcher<String> batcher = new MeshInstanceBatcher<String>();
+        batcher.add("dome1", "sphere", "white", null);
+        batcher.add("mast1", "cylinder", "white", null);
+        batcher.addUnbatched("glass1", null);
+        batcher.add("dome2", "sphere", "white", null);
+        batcher.add("dome3", "sphere", "red", null);
+        batcher.addUnbatched("glass2", null);
+        batcher.add("mast2", "cylinder", "white", null);
+        batcher.add("mast3", "cylinder", null, null);
+        batcher.add("mast4", "cylinder", null, null);
+
+        List<MeshInstanceBatcher.Batch<String>> batches = batcher.getBatches();
+        assertEquals("Batch count incorrect ", 4, batches.size());
+        assertBatch(batches.get(0), "sphere", "white", "dome1", "dome2");
+        assertBatch(batches.get(1), "cylinder", "white", "mast1", "mast2");
+        assertBatch(batches.get(2), "sphere", "red", "dome3");
+        assertBatch(batches.get(3), "cylinder", null, "mast3", "mast4");
+        assertEquals("Unbatched instances incorrect ", Arrays.asList("glass1", "glass2"), batcher.getUnbatched());
+
+        batcher.clear();
+        assertTrue("Batches not cleared ", batcher.getBatches().isEmpty());
+        assertTrue("Unbatched instances not cleared ", batcher.getUnbatched().isEmpty());
+
+        batcher.add("dome4", "sphere", "white", null);
+        assertEquals("Batch count incorrect ", 1, batcher.getBatches().size());
+        assertBatch(batcher.getBatches().get(0), "sphere", "white", "dome4");
+    }
+
+    @Test
+    /** Tests that instances outside the culling frustum are discarded. */
+    public void testCulling()
+    {
+        MeshInstanceBatcher<String> batcher = new MeshInstanceBatcher<String>();
+        batcher.setCullingFrustum(new Frustum());
+
+        assertTrue("Visible instance culled ", batcher.add("inside", "sphere", "white", new Sphere(Vec4.ZERO, 0.5)));
+        assertTrue("Visible instance culled ",
+            batcher.add("overlapping", "sphere", "white", new Sphere(new Vec4(1.2, 0, 0), 0.5)));
+        assertFalse("Hidden instance not culled ",
+            batcher.add("outside", "sphere", "white", new Sphere(new Vec4(5, 0, 0), 0.5)));
+        assertFalse("Hidden instance not culled ", batcher.addUnbatched("behind", new Sphere(new Vec4(0, 0, 5), 1)));
+        assertTrue("Instance without extent culled ", batcher.add("unbounded", "sphere", "white", null));
+
+        assertEquals("Culled count incorrect ", 2, batcher.getNumCulled());
+        assertBatch(batcher.getBatches().get(0), "sphere", "white", "inside", "overlapping", "unbounded");
+        assertTrue("Culled instance added ", batcher.getUnbatched().isEmpty());
+    }
+
+    protected static void assertBatch(MeshInstanceBatcher.Batch<String> batch, Object meshKey, Object attributes,
+        String... instances)
+    {
+        assertEquals("Mesh key incorrect ", meshKey, batch.getMeshKey());
+        assertEquals("Attributes incorrect ", attributes, batch.getAttributes());
+        assertEquals("Instances incorrect ", Arrays.asList(instances), batch.getInstances());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.render;
+
+import java.awt.Point;
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class OrderedRenderableQueueTest
+{
+    protected static class TestRenderable implements Declutterable
+    {
+        protected double distance;
+        protected long sequence;
+        protected boolean enableDecluttering;
+
+        public TestRenderable(double distance, long sequence, boolean enableDecluttering)
+        {
+            this.distance = distance;
+            this.sequence = sequence;
+            this.enableDecluttering = enableDecluttering;
+        }
+
+        public double getDistanceFromEye()
+        {
+            return this.distance;
+        }
+
+        public boolean isEnableDecluttering()
+        {
+            return this.enableDecluttering;
+        }
+
+        public Rectangle2D getBounds(DrawContext dc)
+        {
+            return null;
+        }
+
+        public void pick(DrawContext dc, Point pickPoint)
+        {
+        }
+
+        public void render(DrawContext dc)
+        {
+        }
+    }
+
+    /** The order the draw context used before OrderedRenderableQueue: back-to-front, then by insertion. */
+    protected static final Comparator<TestRenderable> BACK_TO_FRONT = new Comparator<TestRenderable>()
+    {
+        public int compare(TestRenderable a, TestRenderable b)
+        {
+            return a.distance > b.distance ? -1 : a.distance == b.distance
+                ? (a.sequence < b.sequence ? -1 : a.sequence == b.sequence ? 0 : 1) : 1;
+        }
+    };
+
+    @Test
+    /** Tests that entries are polled back-to-front, and in insertion order among equal distances. */
+    public void testPollOrder()
+    {
+        Random random = new Random(1);
+        OrderedRenderableQueue queue = new OrderedRenderableQueue(1);
+        PriorityQueue<TestRenderable> expected = new PriorityQueue<TestRenderable>(100, BACK_TO_FRONT);
+
+        for (int i = 0; i < 5000; i++)
+        {
+            // Mix in many duplicate distances to exercise the insertion order tie break.
+            double distance = random.nextBoolean() ? random.nextInt(5) : random.nextDouble() * 1e7;
+            TestRenderable or = new TestRenderable(distance, i, false);
+            queue.add(or, distance);
+            expected.add(or);
+        }
+
+        assertEquals("Queue size incorrect ", expected.size(), queue.size());
+
+        while (!expected.isEmpty())
+        {
+            assertSame("Peeked renderable out of order ", expected.peek(), queue.peek());
+            assertSame("Polled renderable out of order ", expected.poll(), queue.poll());
+        }
+
+        assertTrue("Queue not empty ", queue.isEmpty());
+        assertNull("Empty queue returned a renderable ", queue.poll());
+    }
+
+    @Test
+    /** Tests that entries added while the queue is being drained are merged into the remaining entries. */
+    public void testAddWhilePolling()
+    {
+        Random random = new Random(2);
+        OrderedRenderableQueue queue = new OrderedRenderableQueue();
+        PriorityQueue<TestRenderable> expected = new PriorityQueue<TestRenderable>(100, BACK_TO_FRONT);
+        long sequence = 0;
+
+        for (int i = 0; i < 1000; i++)
+        {
+            double distance = random.nextDouble() * 1000;
+            TestRenderable or = new TestRenderable(distance, sequence++, false);
+            queue.add(or, distance);
+            expected.add(or);
+        }
+
+        // Stop adding after a fixed number of batches so that the queue drains.
+        int numBatches = 0;
+        while (!expected.isEmpty())
+        {
+            if (numBatches < 20 && random.nextInt(50) == 0)
+            {
+                numBatches++;
+                // Add both small and large batches, which are merged by insertion and by sorting respectively.
+                int numToAdd = random.nextBoolean() ? 3 : 100;
+                for (int i = 0; i < numToAdd; i++)
+                {
+                    double distance = random.nextInt(3) == 0 ? 500 : random.nextDouble() * 1000;
+                    TestRenderable or = new TestRenderable(distance, sequence++, false);
+                    queue.add(or, distance);
+                    expected.add(or);
+                }
+            }
+
+            assertSame("Polled renderable out of order ", expected.poll(), queue.poll());
+        }
+
+        assertTrue("Queue not empty ", queue.isEmpty());
+    }
+
+    @Test
+    /** Tests that declutterables are removed front-to-back and that the remaining entries keep their order. */
+    public void testRemoveDeclutterables()
+    {
+        Random random = new Random(3);
+        OrderedRenderableQueue queue = new OrderedRenderableQueue();
+        PriorityQueue<TestRenderable> expectedRemaining = new PriorityQueue<TestRenderable>(100, BACK_TO_FRONT);
+        List<TestRenderable> expectedRemoved = new ArrayList<TestRenderable>();
+
+        for (int i = 0; i < 2000; i++)
+        {
+            double distance = random.nextBoolean() ? random.nextInt(5) : random.nextDouble() * 1e5;
+            TestRenderable or = new TestRenderable(distance, i, random.nextBoolean());
+            queue.add(or, distance);
+
+            if (or.isEnableDecluttering())
+                expectedRemoved.add(or);
+            else
+                expectedRemaining.add(or);
+        }
+
+        // Declutterables are expected front-to-back, and in insertion order among equal distances.
+        Collections.sort(expectedRemoved, new Comparator<TestRenderable>()
+        {
+            public int compare(TestRenderable a, TestRenderable b)
+            {
+                return a.distance < b.distance ? -1 : a.distance == b.distance
+                    ? (a.sequence < b.sequence ? -1 : a.sequence == b.sequence ? 0 : 1) : 1;
+            }
+        });
+
+        assertEquals("Declutterables incorrect ", expectedRemoved, queue.removeDeclutterables());
+        assertEquals("Queue size incorrect ", expectedRemaining.size(), queue.size());
+
+        while (!expectedRemaining.isEmpty())
+        {
+            assertSame("Polled renderable out of order ", expectedRemaining.poll(), queue.poll());
+        }
+    }
+
+    @Test
+    /** Tests that clearing the queue discards all entries. */
+    public void testClear()
+    {
+        OrderedRenderableQueue queue = new OrderedRenderableQueue();
+        for (int i = 0; i < 100; i++)
+        {
+            queue.add(new TestRenderable(i, i, false), i);
+        }
+
+        queue.clear();
+
+        assertTrue("Queue not empty ", queue.isEmpty());
+        assertNull("Cleared queue returned a renderable ", queue.peek());
+    }
+}
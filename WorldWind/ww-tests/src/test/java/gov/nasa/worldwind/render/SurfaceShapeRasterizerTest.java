@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.render;
+
+import gov.nasa.worldwind.geom.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class SurfaceShapeRasterizerTest
+{
+    @Test
+    /** Tests that an interior with a hole is filled by the even-odd rule, with the first row at the top of the sector. */
+    public void testInteriorWithHole()
+    {
+        ShapeAttributes attrs = new BasicShapeAttributes();
+        attrs.setDrawOutline(false);
+        attrs.setInteriorMaterial(new Material(Color.RED));
+        attrs.setInteriorOpacity(1);
+        attrs.setEnableAntialiasing(false);
+
+        List<List<LatLon>> contours = new ArrayList<List<LatLon>>();
+        contours.add(rectangle(0, 8, 0, 10));
+        contours.add(rectangle(2, 6, 2, 8));
+
+        BufferedImage image = new SurfaceShapeRasterizer().rasterize(Sector.fromDegrees(0, 10, 0, 10), 10, 10,
+            Arrays.asList(new SurfaceShapeRasterizer.RasterShape(contours, attrs, true)));
+
+        assertEquals("Filled pixel incorrect ", Color.RED.getRGB(), image.getRGB(1, 5));
+        assertEquals("Hole pixel incorrect ", 0, image.getRGB(5, 5));
+        assertEquals("Pixel above shape incorrect ", 0, image.getRGB(5, 0));
+        assertEquals("Pixel below hole incorrect ", Color.RED.getRGB(), image.getRGB(5, 9));
+    }
+
+    @Test
+    /** Tests that the interior is omitted when the raster shape disables it, and that outlines are drawn. */
+    public void testOutlineOnly()
+    {
+        ShapeAttributes attrs = new BasicShapeAttributes();
+        attrs.setOutlineMaterial(new Material(Color.BLUE));
+        attrs.setOutlineOpacity(1);
+        attrs.setOutlineWidth(2);
+        attrs.setEnableAntialiasing(false);
+
+        List<List<LatLon>> contours = new ArrayList<List<LatLon>>();
+        contours.add(Arrays.asList(LatLon.fromDegrees(5, 0), LatLon.fromDegrees(5, 10)));
+
+        BufferedImage image = new SurfaceShapeRasterizer().rasterize(Sector.fromDegrees(0, 10, 0, 10), 10, 10,
+            Arrays.asList(new SurfaceShapeRasterizer.RasterShape(contours, attrs, false)));
+
+        assertEquals("Outline pixel incorrect ", Color.BLUE.getRGB(), image.getRGB(5, 4));
+        assertEquals("Pixel off outline incorrect ", 0, image.getRGB(5, 8));
+    }
+
+    protected static List<LatLon> rectangle(double minLat, double maxLat, double minLon, double maxLon)
+    {
+        return Arrays.asList(LatLon.fromDegrees(minLat, minLon), LatLon.fromDegrees(minLat, maxLon),
+            LatLon.fromDegrees(maxLat, maxLon), LatLon.fromDegrees(maxLat, minLon),
+            LatLon.fromDegrees(minLat, minLon));
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.util.TileKey;
+import org.junit.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class BulkDownloadEngineTest
+{
+    protected File journalFile;
+
+    /** Simulates retrievals that end after a delay, optionally failing some of them. */
+    protected static class TestEngine extends BulkDownloadEngine<TileKey>
+    {
+        protected final Set<TileKey> localTiles;
+        protected final Set<TileKey> failingTiles;
+        protected final List<TileKey> retrievedTiles = Collections.synchronizedList(new ArrayList<TileKey>());
+        protected final AtomicInteger numActive = new AtomicInteger();
+        protected final AtomicInteger maxActive = new AtomicInteger();
+        protected final ScheduledExecutorService server = Executors.newScheduledThreadPool(4);
+
+        public TestEngine(Progress progress, File journalFile, Set<TileKey> localTiles, Set<TileKey> failingTiles)
+        {
+            super(progress, 1000, journalFile);
+            this.localTiles = localTiles;
+            this.failingTiles = failingTiles;
+        }
+
+        protected boolean isTileAbsent(TileKey tile)
+        {
+            return tile.getLevelNumber() < 0;
+        }
+
+        protected boolean isTileLocal(TileKey tile)
+        {
+            return this.localTiles.contains(tile);
+        }
+
+        protected void retrieveTile(final TileKey tile)
+        {
+            int active = this.numActive.incrementAndGet();
+            synchronized (this.maxActive)
+            {
+                this.maxActive.set(Math.max(this.maxActive.get(), active));
+            }
+
+            this.server.schedule(new Runnable()
+            {
+                public void run()
+                {
+                    numActive.decrementAndGet();
+                    retrievedTiles.add(tile);
+                    retrievalCompleted(tile, createRetriever(failingTiles.contains(tile)
+                        ? Retriever.RETRIEVER_STATE_ERROR : Retriever.RETRIEVER_STATE_SUCCESSFUL));
+                }
+            }, 5, TimeUnit.MILLISECONDS);
+        }
+
+        protected TileKey getTileKey(TileKey tile)
+        {
+            return tile;
+        }
+
+        protected String getTileHost(TileKey tile)
+        {
+            return "localhost";
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.journalFile = File.createTempFile("BulkDownloadEngineTest", ".journal");
+        this.journalFile.delete();
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.journalFile.delete();
+    }
+
+    @Test
+    /** Tests that only missing tiles are retrieved, and no more than the maximum number at a time. */
+    public void testRetrieveMissingTiles() throws Exception
+    {
+        List<TileKey> tiles = makeTiles(100);
+        Set<TileKey> localTiles = new HashSet<TileKey>(tiles.subList(0, 30));
+
+        Progress progress = new Progress();
+        progress.setTotalCount(70);
+        TestEngine engine = new TestEngine(progress, null, localTiles, Collections.<TileKey>emptySet());
+        engine.setMaxActiveRetrievals(4);
+        this.runEngine(engine, tiles);
+
+        assertEquals("Retrieved tiles incorrect ", new HashSet<TileKey>(tiles.subList(30, 100)),
+            new HashSet<TileKey>(engine.retrievedTiles));
+        assertEquals("Tiles retrieved more than once ", 70, engine.retrievedTiles.size());
+        assertTrue("Too many active retrievals ", engine.maxActive.get() <= 4);
+        assertEquals("Progress incorrect ", 70, progress.getCurrentCount());
+        assertEquals("Progress incorrect ", 70 * 1000, progress.getCurrentSize());
+    }
+
+    @Test
+    /** Tests that a download resumes from its journal, and that the journal is deleted once the download completes. */
+    public void testResume() throws Exception
+    {
+        List<TileKey> tiles = makeTiles(50);
+        Set<TileKey> failingTiles = new HashSet<TileKey>(tiles.subList(40, 50));
+
+        TestEngine engine = new TestEngine(new Progress(), this.journalFile, Collections.<TileKey>emptySet(),
+            failingTiles);
+        this.runEngine(engine, tiles);
+        assertEquals("Failures incorrect ", 10, engine.getNumFailures());
+        assertEquals("Journal incorrect ", 40 * 12, this.journalFile.length());
+
+        engine = new TestEngine(new Progress(), this.journalFile, Collections.<TileKey>emptySet(),
+            Collections.<TileKey>emptySet());
+        this.runEngine(engine, tiles);
+        assertEquals("Retrieved tiles incorrect ", new HashSet<TileKey>(failingTiles),
+            new HashSet<TileKey>(engine.retrievedTiles));
+        assertFalse("Journal not deleted ", this.journalFile.exists());
+    }
+
+    @Test
+    /** Tests that requests to a host are limited to the maximum rate. */
+    public void testRequestRate() throws Exception
+    {
+        TestEngine engine = new TestEngine(new Progress(), null, Collections.<TileKey>emptySet(),
+            Collections.<TileKey>emptySet());
+        engine.setMaxRequestsPerSecond(100);
+
+        long start = System.currentTimeMillis();
+        this.runEngine(engine, makeTiles(21));
+        assertTrue("Request rate not limited ", System.currentTimeMillis() - start >= 190);
+    }
+
+    protected void runEngine(TestEngine engine, List<TileKey> tiles) throws Exception
+    {
+        engine.start();
+        try
+        {
+            for (TileKey tile : tiles)
+            {
+                engine.addTile(tile);
+            }
+            engine.finish();
+        }
+        finally
+        {
+            engine.stop();
+            engine.server.shutdown();
+        }
+    }
+
+    protected static List<TileKey> makeTiles(int count)
+    {
+        List<TileKey> tiles = new ArrayList<TileKey>();
+        for (int i = 0; i < count; i++)
+        {
+            tiles.add(new TileKey(i % 5, i / 5, i, "test"));
+        }
+
+        return tiles;
+    }
+
+    protected static Retriever createRetriever(final String state)
+    {
+        return (Retriever) Proxy.newProxyInstance(Retriever.class.getClassLoader(), new Class<?>[] {Retriever.class},
+            new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    if (method.getName().equals("getState"))
+                        return state;
+                    else if (method.getName().equals("getContentLengthRead"))
+                        return 1000;
+                    else
+                        return null;
+                }
+            });
+    }
+}
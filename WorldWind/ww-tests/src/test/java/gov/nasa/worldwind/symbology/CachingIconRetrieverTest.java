@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.symbology;
+
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.avlist.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URL;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class CachingIconRetrieverTest
+{
+    /** Retriever that creates a small icon for any symbol and counts the icons it creates. */
+    protected static class CountingRetriever implements IconRetriever
+    {
+        protected final String name;
+        protected final AtomicInteger count = new AtomicInteger();
+
+        public CountingRetriever(String name)
+        {
+            this.name = name;
+        }
+
+        public BufferedImage createIcon(String symbolId, AVList params)
+        {
+            this.count.incrementAndGet();
+            BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+            image.setRGB(0, 0, symbolId.hashCode());
+            return image;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof CountingRetriever && this.name.equals(((CountingRetriever) o).name);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.name.hashCode();
+        }
+    }
+
+    /** Retriever identified by a retrieval path, whose icons are persisted, that counts the icons it creates. */
+    protected static class CountingPathRetriever extends AbstractIconRetriever
+    {
+        protected final AtomicInteger count = new AtomicInteger();
+
+        public CountingPathRetriever(String retrieverPath)
+        {
+            super(retrieverPath);
+        }
+
+        public BufferedImage createIcon(String symbolId, AVList params)
+        {
+            this.count.incrementAndGet();
+            return new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+        }
+    }
+
+    @Test
+    public void testIconIsComposedOnce()
+    {
+        CountingRetriever retriever = new CountingRetriever("testIconIsComposedOnce");
+        CachingIconRetriever caching = new CachingIconRetriever(retriever, false);
+
+        BufferedImage first = caching.createIcon("SFGPU----------", null);
+        BufferedImage second = caching.createIcon("SFGPU----------", null);
+
+        assertEquals("Icon composed more than once ", 1, retriever.count.get());
+        assertNotSame("Cached image returned without copying ", first, second);
+        assertEquals("Cached icon differs ", first.getRGB(0, 0), second.getRGB(0, 0));
+
+        // A different caching retriever wrapping an equal retriever shares the cached icon.
+        new CachingIconRetriever(new CountingRetriever("testIconIsComposedOnce"), false).createIcon("SFGPU----------",
+            null);
+        assertEquals("Icon not shared between equal retrievers ", 1, retriever.count.get());
+    }
+
+    @Test
+    public void testParamsAreKeyed()
+    {
+        CountingRetriever retriever = new CountingRetriever("testParamsAreKeyed");
+        CachingIconRetriever caching = new CachingIconRetriever(retriever, false);
+
+        AVList params = new AVListImpl();
+        params.setValue(SymbologyConstants.SHOW_FILL, false);
+
+        caching.createIcon("SFGPU----------", null);
+        caching.createIcon("SFGPU----------", params);
+        assertEquals("Parameters not part of cache key ", 2, retriever.count.get());
+
+        // Changing the caller's parameter list after retrieval must not affect the cached entry.
+        params.setValue(SymbologyConstants.SHOW_FILL, true);
+        caching.createIcon("SFGPU----------", params);
+        assertEquals("Parameters not copied into cache key ", 3, retriever.count.get());
+    }
+
+    @Test
+    public void testPrewarm()
+    {
+        CountingRetriever retriever = new CountingRetriever("testPrewarm");
+        CachingIconRetriever caching = new CachingIconRetriever(retriever, false);
+
+        List<String> symbolIds = new ArrayList<String>();
+        for (int i = 0; i < 100; i++)
+        {
+            symbolIds.add(String.format("SFGPU-----%05d", i));
+        }
+
+        caching.prewarm(symbolIds, null, 4);
+        assertEquals("Prewarm did not compose each icon once ", 100, retriever.count.get());
+
+        for (String symbolId : symbolIds)
+        {
+            assertNotNull("Prewarmed icon missing ", caching.createIcon(symbolId, null));
+        }
+        assertEquals("Prewarmed icons not cached ", 100, retriever.count.get());
+    }
+
+    @Test
+    public void testFileStorePathIsStable()
+    {
+        IconRetriever retriever = new AbstractIconRetriever("http://example.com/icons")
+        {
+            public BufferedImage createIcon(String symbolId, AVList params)
+            {
+                return null;
+            }
+        };
+        CachingIconRetriever caching = new CachingIconRetriever(retriever, false);
+
+        AVList params = new AVListImpl();
+        params.setValue(SymbologyConstants.SHOW_FILL, false);
+        params.setValue(AVKey.COLOR, Color.RED);
+        AVList reordered = new AVListImpl();
+        reordered.setValue(AVKey.COLOR, new Color(255, 0, 0));
+        reordered.setValue(SymbologyConstants.SHOW_FILL, false);
+
+        String path = caching.composeFileStorePath(
+            new CachingIconRetriever.IconKey(retriever, "SFGPU----------", params));
+        assertNotNull("Path not composed ", path);
+        assertEquals("Path depends on parameter order ", path,
+            caching.composeFileStorePath(new CachingIconRetriever.IconKey(retriever, "SFGPU----------", reordered)));
+
+        // A parameter without a stable text form prevents the icon from being persisted.
+        params.setValue(AVKey.COLOR, new Object());
+        assertNull("Path composed from unstable parameter ",
+            caching.composeFileStorePath(new CachingIconRetriever.IconKey(retriever, "SFGPU----------", params)));
+    }
+
+    @Test
+    public void testExpiredStoredIconIsComposedAgain() throws Exception
+    {
+        CountingPathRetriever retriever = new CountingPathRetriever(
+            "http://example.com/testExpiredStoredIconIsComposedAgain/" + System.nanoTime());
+        CachingIconRetriever caching = new CachingIconRetriever(retriever);
+        CachingIconRetriever.IconKey key = new CachingIconRetriever.IconKey(retriever, "SFGPU----------", null);
+        String path = caching.composeFileStorePath(key);
+        assertTrue("Path not versioned ", path.contains("v" + CachingIconRetriever.FILE_STORE_VERSION));
+
+        try
+        {
+            caching.createIcon("SFGPU----------", null);
+            URL url = WorldWind.getDataFileStore().findFile(path, false);
+            assertNotNull("Icon not stored ", url);
+
+            // Evicted icons are read from the file store while the stored icon is current.
+            CachingIconRetriever.getIconCache().remove(key);
+            caching.createIcon("SFGPU----------", null);
+            assertEquals("Stored icon not used ", 1, retriever.count.get());
+
+            File file = new File(url.toURI());
+            long expired = System.currentTimeMillis() - caching.getMaxFileStoreAge() - 60000;
+            assertTrue("Icon age not set ", file.setLastModified(expired));
+
+            CachingIconRetriever.getIconCache().remove(key);
+            caching.createIcon("SFGPU----------", null);
+            assertEquals("Expired icon not composed again ", 2, retriever.count.get());
+            assertTrue("Expired icon not replaced ", file.exists() && file.lastModified() > expired);
+        }
+        finally
+        {
+            URL url = WorldWind.getDataFileStore().findFile(path, false);
+            if (url != null)
+                WorldWind.getDataFileStore().removeFile(url);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.util.PackedTileKey;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class RectangularTessellatorTest
+{
+    @Test
+    /** Tests that tessellators with the same configuration share the geometry cache's tile keys. */
+    public void testTessellatorsShareTileKeys()
+    {
+        RectangularTessellator a = new RectangularTessellator();
+        RectangularTessellator b = new RectangularTessellator();
+        assertEquals("Cache names differ ", a.getTileCacheName(), b.getTileCacheName());
+
+        // Level 2 of the default 3 x 6 level 0 tiles is 15 degrees square.
+        Sector sector = Sector.fromDegrees(-15, 0, 30, 45);
+        long key = a.createPackedCacheKey(new RectangularTessellator.RectTile(a, null, 2, 20, sector, 1));
+        assertTrue("Tile not packed ", key != PackedTileKey.NONE);
+        assertEquals("Level incorrect ", 2, PackedTileKey.getLevelNumber(key));
+        assertEquals("Row incorrect ", 5, PackedTileKey.getRow(key));
+        assertEquals("Column incorrect ", 14, PackedTileKey.getColumn(key));
+        assertEquals("Tile keys differ ", key,
+            b.createPackedCacheKey(new RectangularTessellator.RectTile(b, null, 2, 20, sector, 1)));
+
+        // Creating tessellators doesn't register more cache names.
+        int datasetId = PackedTileKey.getDatasetId(key);
+        for (int i = 0; i < 10; i++)
+        {
+            assertEquals("Cache name registered again ", datasetId,
+                PackedTileKey.getDatasetId(new RectangularTessellator().getTileCacheName()));
+        }
+    }
+
+    @Test
+    /** Tests that tessellators with different level 0 tiles don't share tile keys. */
+    public void testSubdivisionsDistinguishTileKeys()
+    {
+        RectangularTessellator a = new RectangularTessellator();
+        RectangularTessellator b = new RectangularTessellator();
+        b.numLevel0LatSubdivisions = 4;
+        b.numLevel0LonSubdivisions = 8;
+
+        assertFalse("Cache names equal ", a.getTileCacheName().equals(b.getTileCacheName()));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import org.junit.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class ComputeExecutorTest
+{
+    @Test
+    /** Tests that tasks waiting for their own subtasks complete when every thread of the executor is waiting. */
+    public void testNestedTasks() throws Exception
+    {
+        final ComputeExecutor executor = new ComputeExecutor(2);
+        try
+        {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 8; i++)
+            {
+                final int value = i;
+                futures.add(executor.submit(new Callable<Integer>()
+                {
+                    public Integer call() throws Exception
+                    {
+                        assertTrue("Task not on an executor thread ", executor.isExecutorThread());
+
+                        Future<Integer> subtask = executor.submit(new Callable<Integer>()
+                        {
+                            public Integer call()
+                            {
+                                return value * 2;
+                            }
+                        });
+
+                        return subtask.get();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++)
+            {
+                assertEquals("Result incorrect ", i * 2, (int) futures.get(i).get(10, TimeUnit.SECONDS));
+            }
+
+            assertFalse("Test thread is an executor thread ", executor.isExecutorThread());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    /** Tests that the shared executor is created once. */
+    public void testGetInstance()
+    {
+        assertSame("Shared executor differs ", ComputeExecutor.getInstance(), ComputeExecutor.getInstance());
+        assertFalse("Shared executor shut down ", ComputeExecutor.getInstance().isShutdown());
+    }
+}
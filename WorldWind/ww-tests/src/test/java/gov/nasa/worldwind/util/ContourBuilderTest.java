@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class ContourBuilderTest
+{
+    @Test
+    /** Tests that contours of a cone are closed rings at the expected distance from its apex, for every value. */
+    public void testClosedContours()
+    {
+        int size = 41;
+        double[] values = makeCone(size, size);
+        double[] contourValues = {12, 4, 8, 100};
+
+        List<List<double[]>> contours = new ContourBuilder(size, size, values).buildContourLines(contourValues);
+        assertEquals("Contour value count incorrect ", contourValues.length, contours.size());
+        assertTrue("Contour above the grid values not empty ", contours.get(3).isEmpty());
+
+        for (int n = 0; n < 3; n++)
+        {
+            assertEquals("Polyline count incorrect for " + contourValues[n], 1, contours.get(n).size());
+
+            double[] ring = contours.get(n).get(0);
+            assertTrue("Ring not closed ", ring[0] == ring[ring.length - 2] && ring[1] == ring[ring.length - 1]);
+            for (int i = 0; i < ring.length; i += 2)
+            {
+                double distance = Math.hypot(ring[i] - 20, ring[i + 1] - 20);
+                assertEquals("Distance incorrect for " + contourValues[n], contourValues[n], distance, 0.1);
+            }
+        }
+    }
+
+    @Test
+    /** Tests that cells with missing values are skipped, leaving an open polyline. */
+    public void testMissingData()
+    {
+        int size = 41;
+        double[] values = makeCone(size, size);
+        values[20 * size + 30] = -9999; // on the ring of radius 10
+
+        ContourBuilder builder = new ContourBuilder(size, size, values);
+        builder.setMissingDataSignal(-9999);
+        List<double[]> polylines = builder.buildContourLines(new double[] {10}).get(0);
+
+        assertEquals("Polyline count incorrect ", 1, polylines.size());
+        double[] line = polylines.get(0);
+        assertFalse("Polyline closed ", line[0] == line[line.length - 2] && line[1] == line[line.length - 1]);
+    }
+
+    @Test
+    /** Tests that contours computed separately for grids sharing a column are joined into the full contours. */
+    public void testJoinPolylines()
+    {
+        int width = 41;
+        int height = 41;
+        double[] values = makeCone(width, height);
+
+        // Split the grid into left and right grids that share column 20, and offset the right grid's coordinates so
+        // both are in the full grid's coordinates.
+        int leftWidth = 21;
+        int rightWidth = width - leftWidth + 1;
+        double[] left = new double[leftWidth * height];
+        double[] right = new double[rightWidth * height];
+        for (int j = 0; j < height; j++)
+        {
+            System.arraycopy(values, j * width, left, j * leftWidth, leftWidth);
+            System.arraycopy(values, j * width + leftWidth - 1, right, j * rightWidth, rightWidth);
+        }
+
+        double[] contourValues = {5, 15};
+        List<List<double[]>> leftContours = new ContourBuilder(leftWidth, height, left).buildContourLines(
+            contourValues);
+        List<List<double[]>> rightContours = new ContourBuilder(rightWidth, height, right).buildContourLines(
+            contourValues);
+        List<List<double[]>> fullContours = new ContourBuilder(width, height, values).buildContourLines(contourValues);
+
+        for (int n = 0; n < contourValues.length; n++)
+        {
+            List<double[]> pieces = new ArrayList<double[]>(leftContours.get(n));
+            for (double[] p : rightContours.get(n))
+            {
+                for (int i = 0; i < p.length; i += 2)
+                {
+                    p[i] += leftWidth - 1;
+                }
+                pieces.add(p);
+            }
+            assertEquals("Piece count incorrect ", 2, pieces.size());
+
+            List<double[]> joined = ContourBuilder.joinPolylines(pieces);
+            assertEquals("Joined count incorrect ", 1, joined.size());
+
+            double[] ring = joined.get(0);
+            double[] full = fullContours.get(n).get(0);
+            assertTrue("Joined ring not closed ",
+                ring[0] == ring[ring.length - 2] && ring[1] == ring[ring.length - 1]);
+            assertEquals("Joined point count incorrect ", full.length, ring.length);
+        }
+    }
+
+    @Test
+    /** Tests that a saddle cell connects its corners according to the average of its values. */
+    public void testSaddle()
+    {
+        double[] values = {
+            1, 0,
+            0, 1};
+
+        // The average is above the contour value, so the cell separates the top right and bottom left corners.
+        List<double[]> polylines = new ContourBuilder(2, 2, values).buildContourLines(new double[] {0.4}).get(0);
+        assertEquals("Polyline count incorrect ", 2, polylines.size());
+        assertTrue("Top right segment missing ", containsSegment(polylines, 0.6, 0, 1, 0.4));
+
+        // The average is below the contour value, so the cell separates the top left and bottom right corners.
+        polylines = new ContourBuilder(2, 2, values).buildContourLines(new double[] {0.6}).get(0);
+        assertEquals("Polyline count incorrect ", 2, polylines.size());
+        assertTrue("Top left segment missing ", containsSegment(polylines, 0, 0.4, 0.4, 0));
+    }
+
+    private static boolean containsSegment(List<double[]> polylines, double x0, double y0, double x1, double y1)
+    {
+        for (double[] p : polylines)
+        {
+            if (p.length != 4)
+                continue;
+
+            if (matches(p, 0, x0, y0) && matches(p, 2, x1, y1) || matches(p, 0, x1, y1) && matches(p, 2, x0, y0))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static boolean matches(double[] p, int offset, double x, double y)
+    {
+        return Math.abs(p[offset] - x) < 1e-9 && Math.abs(p[offset + 1] - y) < 1e-9;
+    }
+
+    private static double[] makeCone(int width, int height)
+    {
+        double[] values = new double[width * height];
+        for (int j = 0; j < height; j++)
+        {
+            for (int i = 0; i < width; i++)
+            {
+                values[j * width + i] = Math.hypot(i - width / 2, j - height / 2);
+            }
+        }
+
+        return values;
+    }
+}
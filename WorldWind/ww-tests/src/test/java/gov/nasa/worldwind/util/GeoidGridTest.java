@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.avlist.AVKey;
+
+import java.nio.*;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class GeoidGridTest
+{
+    @Test
+    /** Tests that both interpolations return the post values at the posts, including across the antimeridian. */
+    public void testPostValues()
+    {
+        GeoidGrid grid = createGrid(19, 36);
+
+        for (boolean bicubic : new boolean[] {false, true})
+        {
+            assertEquals("North pole value incorrect ", grid.getPostValue(0, 0), grid.getValue(90, 0, bicubic), 1e-9);
+            assertEquals("South pole value incorrect ", grid.getPostValue(18, 5), grid.getValue(-90, 50, bicubic),
+                1e-9);
+            assertEquals("Post value incorrect ", grid.getPostValue(7, 12), grid.getValue(20, 120, bicubic), 1e-9);
+            assertEquals("Negative longitude incorrect ", grid.getPostValue(7, 35), grid.getValue(20, -10, bicubic),
+                1e-9);
+            assertEquals("Longitude 360 incorrect ", grid.getPostValue(7, 0), grid.getValue(20, 360, bicubic), 1e-9);
+        }
+    }
+
+    @Test
+    /** Tests bilinear interpolation between posts, and between the last column and the first. */
+    public void testBilinear()
+    {
+        GeoidGrid grid = createGrid(19, 36);
+
+        double expected = 0.25 * (grid.getPostValue(7, 12) + grid.getPostValue(7, 13) + grid.getPostValue(8, 12)
+            + grid.getPostValue(8, 13));
+        assertEquals("Center value incorrect ", expected, grid.getValue(15, 125, false), 1e-9);
+
+        expected = 0.75 * grid.getPostValue(7, 35) + 0.25 * grid.getPostValue(7, 0);
+        assertEquals("Antimeridian value incorrect ", expected, grid.getValue(20, 352.5, false), 1e-9);
+    }
+
+    @Test
+    /** Tests that bicubic interpolation reproduces a surface that is cubic in both directions. */
+    public void testBicubic()
+    {
+        int numRows = 19;
+        int numCols = 36;
+        ShortBuffer buffer = ShortBuffer.allocate(numRows * numCols);
+        for (int row = 0; row < numRows; row++)
+        {
+            for (int col = 0; col < numCols; col++)
+            {
+                buffer.put(row * numCols + col, (short) (3 * row + 2 * col));
+            }
+        }
+        GeoidGrid grid = new GeoidGrid(new BufferWrapper.ShortBufferWrapper(buffer), numRows, numCols, 1);
+
+        // A linear surface is reproduced exactly away from the poles and the antimeridian.
+        double lat = 90 - 5.3 * 10;
+        double lon = 12.7 * 10;
+        assertEquals("Bicubic value incorrect ", 3 * 5.3 + 2 * 12.7, grid.getValue(lat, lon, true), 1e-9);
+        assertEquals("Bilinear value incorrect ", 3 * 5.3 + 2 * 12.7, grid.getValue(lat, lon, false), 1e-9);
+    }
+
+    @Test
+    /** Tests that the bulk interpolation matches the single location interpolation. */
+    public void testGetValues()
+    {
+        GeoidGrid grid = createGrid(19, 36);
+        Random random = new Random(1);
+
+        double[] lats = new double[1000];
+        double[] lons = new double[1000];
+        for (int i = 0; i < lats.length; i++)
+        {
+            lats[i] = -90 + 180 * random.nextDouble();
+            lons[i] = -180 + 540 * random.nextDouble();
+        }
+
+        double[] values = new double[lats.length];
+        grid.getValues(lats, lons, values, 0, lats.length, true);
+
+        for (int i = 0; i < lats.length; i++)
+        {
+            assertEquals("Bulk value incorrect ", grid.getValue(lats[i], lons[i], true), values[i], 0);
+        }
+    }
+
+    protected static GeoidGrid createGrid(int numRows, int numCols)
+    {
+        Random random = new Random(2);
+        ByteBuffer buffer = ByteBuffer.allocate(2 * numRows * numCols);
+        for (int i = 0; i < numRows * numCols; i++)
+        {
+            buffer.putShort(2 * i, (short) random.nextInt(10000));
+        }
+
+        return new GeoidGrid(BufferWrapper.wrap(buffer, AVKey.INT16, AVKey.BIG_ENDIAN), numRows, numCols, 0.01);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class NumberTokenizerTest
+{
+    @Test
+    /** Tests that numbers split between pieces of text are parsed once, and that runs of whitespace are skipped. */
+    public void testNumbersSplitAcrossPieces()
+    {
+        NumberTokenizer floats = new NumberTokenizer(false, 2);
+        for (String s : new String[] {"  1.5 -2", "5e-1\t\n3", "", ".25 ", " 7", "\r\n"})
+        {
+            floats.add(s);
+        }
+        assertTrue("Floats incorrect ",
+            Arrays.equals(new float[] {1.5f, -25e-1f, 3.25f, 7f}, floats.getFloats()));
+
+        NumberTokenizer ints = new NumberTokenizer(true, 0);
+        for (String s : new String[] {"0 1 2", "3 4", " -5 ", "2147483647 -2147483648"})
+        {
+            ints.add(s);
+        }
+        assertTrue("Integers incorrect ",
+            Arrays.equals(new int[] {0, 1, 23, 4, -5, Integer.MAX_VALUE, Integer.MIN_VALUE}, ints.getInts()));
+    }
+
+    @Test
+    /** Tests that floats parsed from their characters are the same as those parsed by Float.parseFloat. */
+    public void testSameAsParseFloat()
+    {
+        Random random = new Random(1);
+        List<String> strings = new ArrayList<String>(Arrays.asList("0", "-0.0", "1e38", "3.4028236e38", "1.4e-45",
+            "1.17549435E-38", "123456789012345678901234", "0.000000000000000000001", "NaN", "-Infinity", "1f",
+            "16777217", "33554435", "1.00000017881393432617187499", "0.1", "+.5", "5."));
+        for (int i = 0; i < 100000; i++)
+        {
+            float f = Float.intBitsToFloat(random.nextInt());
+            if (!Float.isNaN(f) && !Float.isInfinite(f))
+                strings.add(Float.toString(f));
+            strings.add(Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(20) - 10)));
+            strings.add(String.format(Locale.US, "%." + random.nextInt(8) + "f", (random.nextDouble() - 0.5) * 1e4));
+        }
+
+        for (String s : strings)
+        {
+            float expected = Float.parseFloat(s);
+            float actual = NumberTokenizer.parseFloat(s.toCharArray(), s.length());
+            assertEquals("Float incorrect for " + s, Float.floatToIntBits(expected), Float.floatToIntBits(actual));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    /** Tests that text that is not a number is rejected. */
+    public void testNotANumber()
+    {
+        NumberTokenizer floats = new NumberTokenizer(false, 0);
+        floats.add("1.0 2.0x 3.0");
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.geom.Sector;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class SectorIndexTest
+{
+    @Test
+    /** Tests region queries against a brute force intersection test over many items. */
+    public void testGetItemsInRegion()
+    {
+        Random random = new Random(1);
+        SectorIndex<Integer> index = new SectorIndex<Integer>();
+        List<Sector> sectors = new ArrayList<Sector>();
+
+        for (int i = 0; i < 5000; i++)
+        {
+            Sector sector = randomSector(random, i % 100 == 0 ? 90 : 5);
+            sectors.add(sector);
+            index.add(i, sector);
+        }
+
+        for (int q = 0; q < 200; q++)
+        {
+            Sector region = randomSector(random, 20);
+
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int i = 0; i < sectors.size(); i++)
+            {
+                if (sectors.get(i).intersects(region))
+                    expected.add(i);
+            }
+
+            assertEquals("Items in region incorrect ", expected, index.getItemsInRegion(region, null));
+        }
+    }
+
+    @Test
+    /** Tests that an item with several intersecting sectors is returned once, and that the index can be rebuilt. */
+    public void testMultipleSectors()
+    {
+        SectorIndex<String> index = new SectorIndex<String>();
+        index.add("a", Arrays.asList(Sector.fromDegrees(0, 10, 170, 180), Sector.fromDegrees(0, 10, -180, -170)));
+        index.add("b", Sector.fromDegrees(20, 30, 0, 10));
+
+        assertEquals("Dateline query incorrect ", Arrays.asList("a"),
+            index.getItemsInRegion(Sector.fromDegrees(0, 10, -180, 180), null));
+        assertEquals("Full sphere query incorrect ", Arrays.asList("a", "b"),
+            index.getItemsInRegion(Sector.FULL_SPHERE, null));
+
+        index.add("c", Sector.fromDegrees(-10, 0, 0, 10));
+        assertEquals("Query after add incorrect ", Arrays.asList("a", "c"),
+            index.getItemsInRegion(Sector.fromDegrees(-5, 5, -180, 10), null));
+
+        index.clear();
+        assertEquals("Size after clear incorrect ", 0, index.size());
+        assertTrue("Query after clear not empty ", index.getItemsInRegion(Sector.FULL_SPHERE, null).isEmpty());
+    }
+
+    protected static Sector randomSector(Random random, double maxSize)
+    {
+        double lat = -90 + random.nextDouble() * 180;
+        double lon = -180 + random.nextDouble() * 360;
+        double maxLat = Math.min(90, lat + random.nextDouble() * maxSize);
+        double maxLon = Math.min(180, lon + random.nextDouble() * maxSize);
+
+        return Sector.fromDegrees(lat, maxLat, lon, maxLon);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util.measure;
+
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.terrain.ZeroElevationModel;
+import org.junit.*;
+
+import java.beans.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class AsyncMeasurementTest
+{
+    /** Rise of the test terrain, in meters per meter northward. */
+    private static final double SLOPE = 0.5;
+
+    private Globe globe;
+    private ExecutorService executor;
+
+    /** Terrain that rises uniformly northward, so surface lengths and areas are known. */
+    private static class SlopeElevationModel extends ZeroElevationModel
+    {
+        private final double radius;
+
+        public SlopeElevationModel(double radius)
+        {
+            this.radius = radius;
+        }
+
+        public double getElevations(Sector sector, List<? extends LatLon> latlons, double targetResolution,
+            double[] buffer)
+        {
+            for (int i = 0; i < latlons.size(); i++)
+            {
+                buffer[i] = this.getUnmappedElevation(latlons.get(i).getLatitude(), latlons.get(i).getLongitude());
+            }
+
+            return 0;
+        }
+
+        public double getUnmappedElevation(Angle latitude, Angle longitude)
+        {
+            return SLOPE * latitude.radians * this.radius;
+        }
+    }
+
+    /** Terrain whose elevations are flat and coarser than requested until it has loaded them. */
+    private static class LoadingElevationModel extends SlopeElevationModel
+    {
+        private volatile boolean loaded;
+
+        public LoadingElevationModel(double radius)
+        {
+            super(radius);
+        }
+
+        public double getElevations(Sector sector, List<? extends LatLon> latlons, double targetResolution,
+            double[] buffer)
+        {
+            if (this.loaded)
+                return super.getElevations(sector, latlons, targetResolution, buffer);
+
+            Arrays.fill(buffer, 0, latlons.size(), 0);
+            return Double.MAX_VALUE;
+        }
+    }
+
+    @Before
+    public void setUp()
+    {
+        Earth earth = new Earth();
+        earth.setElevationModel(new SlopeElevationModel(earth.getEquatorialRadius()));
+        this.globe = earth;
+        this.executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.executor.shutdown();
+        this.globe = null;
+    }
+
+    private static List<Position> createSquare(double size)
+    {
+        return Arrays.asList(Position.fromDegrees(0, 0, 0), Position.fromDegrees(0, size, 0),
+            Position.fromDegrees(size, size, 0), Position.fromDegrees(size, 0, 0), Position.fromDegrees(0, 0, 0));
+    }
+
+    @Test
+    /** Tests that the asynchronous length follows the terrain and agrees with the synchronous length. */
+    public void testLength() throws Exception
+    {
+        LengthMeasurer measurer = new LengthMeasurer(Arrays.asList(Position.fromDegrees(0, 0, 0),
+            Position.fromDegrees(0.2, 0, 0), Position.fromDegrees(0.2, 0.2, 0)));
+        measurer.setFollowTerrain(true);
+
+        // Parts report progress on their own threads, so the events may arrive in any order and after the result.
+        final CountDownLatch complete = new CountDownLatch(1);
+        Measurement measurement = measurer.measureLength(this.globe, this.executor, new PropertyChangeListener()
+        {
+            public void propertyChange(PropertyChangeEvent event)
+            {
+                if (AVKey.PROGRESS.equals(event.getPropertyName()) && (Double) event.getNewValue() == 1)
+                    complete.countDown();
+            }
+        }).get();
+
+        double radius = this.globe.getEquatorialRadius();
+        double arc = Math.toRadians(0.2) * radius;
+        double expected = arc * Math.sqrt(1 + SLOPE * SLOPE) + arc * Math.cos(Math.toRadians(0.2));
+        assertEquals("Length incorrect ", expected, measurement.getValue(), expected * 5e-3);
+        assertEquals("Length differs from synchronous length ", measurer.getLength(this.globe),
+            measurement.getValue(), expected * 1e-3);
+        assertTrue("Error bound incorrect ", measurement.getErrorBound() >= 0
+            && measurement.getErrorBound() < expected * 1e-3);
+
+        assertTrue("Completion not reported ", complete.await(10, TimeUnit.SECONDS));
+
+        // Measuring an equal path again returns the remembered measurement without measuring.
+        measurer.setPositions(new ArrayList<Position>(measurer.getPositions()));
+        Future<Measurement> again = measurer.measureLength(this.globe, null, null);
+        assertTrue("Measurement not remembered ", again.isDone());
+        assertEquals("Remembered length incorrect ", measurement.getValue(), again.get().getValue(), 0);
+    }
+
+    @Test
+    /** Tests that the asynchronous surface area follows the terrain and bounds its error. */
+    public void testSurfaceArea() throws Exception
+    {
+        AreaMeasurer measurer = new AreaMeasurer(createSquare(0.1));
+        measurer.setFollowTerrain(true);
+
+        Measurement measurement = measurer.measureSurfaceArea(this.globe, this.executor, null).get();
+
+        double radius = this.globe.getEquatorialRadius();
+        double side = Math.toRadians(0.1) * radius;
+        double expected = side * side * Math.sqrt(1 + SLOPE * SLOPE);
+        assertEquals("Area incorrect ", expected, measurement.getValue(), expected * 0.01);
+        assertTrue("Error bound incorrect ", measurement.getErrorBound() >= 0
+            && measurement.getErrorBound() < expected * 0.1);
+
+        Measurement inline = new AreaMeasurer(createSquare(0.1)).measureSurfaceArea(this.globe, null, null).get();
+        assertEquals("Area differs with executor ", measurement.getValue(), inline.getValue(), expected * 1e-9);
+
+        AreaMeasurer open = new AreaMeasurer(createSquare(0.1).subList(0, 4));
+        assertEquals("Open path measured ", -1, open.measureSurfaceArea(this.globe, null, null).get().getValue(), 0);
+    }
+
+    @Test
+    /** Tests that measurements made from elevations coarser than requested are not remembered. */
+    public void testCoarseElevationsNotRemembered() throws Exception
+    {
+        Earth earth = new Earth();
+        LoadingElevationModel model = new LoadingElevationModel(earth.getEquatorialRadius());
+        earth.setElevationModel(model);
+
+        LengthMeasurer lengthMeasurer = new LengthMeasurer(Arrays.asList(Position.fromDegrees(0, 0, 0),
+            Position.fromDegrees(0.2, 0, 0)));
+        lengthMeasurer.setFollowTerrain(true);
+        AreaMeasurer areaMeasurer = new AreaMeasurer(createSquare(0.1));
+        areaMeasurer.setFollowTerrain(true);
+
+        double flatLength = lengthMeasurer.measureLength(earth, this.executor, null).get().getValue();
+        double flatArea = areaMeasurer.measureSurfaceArea(earth, this.executor, null).get().getValue();
+
+        // Measure on this thread, so the measurements are remembered when they're returned.
+        model.loaded = true;
+        double length = lengthMeasurer.measureLength(earth, null, null).get().getValue();
+        double area = areaMeasurer.measureSurfaceArea(earth, null, null).get().getValue();
+
+        double arc = Math.toRadians(0.2) * earth.getEquatorialRadius();
+        assertEquals("Coarse length remembered ", arc * Math.sqrt(1 + SLOPE * SLOPE), length, arc * 1e-2);
+        assertTrue("Length didn't follow terrain ", length > flatLength * 1.1);
+        assertTrue("Coarse area remembered ", area > flatArea * 1.1);
+
+        // Measurements made once the elevations are loaded are remembered, so they don't revert to the flat terrain.
+        model.loaded = false;
+        assertEquals("Remembered length incorrect ", length,
+            lengthMeasurer.measureLength(earth, null, null).get().getValue(), 0);
+        assertEquals("Remembered area incorrect ", area,
+            areaMeasurer.measureSurfaceArea(earth, null, null).get().getValue(), 0);
+    }
+
+    @Test
+    /** Tests that a cancelled measurement stops and reports its cancellation. */
+    public void testCancel() throws Exception
+    {
+        final CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try
+        {
+            // Occupy the executor so the measurement can't start before it is cancelled.
+            single.execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        latch.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+
+            AreaMeasurer measurer = new AreaMeasurer(createSquare(1));
+            Future<Measurement> measurement = measurer.measureSurfaceArea(this.globe, single, null);
+            assertTrue("Measurement not cancelled ", measurement.cancel(false));
+            latch.countDown();
+
+            assertTrue("Measurement not done ", measurement.isDone());
+            try
+            {
+                measurement.get();
+                fail("Cancelled measurement returned a value");
+            }
+            catch (CancellationException e)
+            {
+                // Expected
+            }
+
+            // A cancelled measurement is not remembered.
+            assertFalse("Cancelled measurement reused ", measurer.measureSurfaceArea(this.globe, single, null)
+                .isCancelled());
+        }
+        finally
+        {
+            latch.countDown();
+            single.shutdown();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util.xml;
+
+import org.junit.Test;
+
+import javax.xml.stream.*;
+import javax.xml.stream.events.*;
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @version $Id$
+ */
+public class CursorXMLEventReaderTest
+{
+    protected static final String DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<kml xmlns=\"http://www.opengis.net/kml/2.2\" xmlns:gx=\"http://www.google.com/kml/ext/2.2\">\n"
+        + "  <!-- A comment -->\n"
+        + "  <Document id=\"doc\">\n"
+        + "    <name>Tom &amp; Jerry</name>\n"
+        + "    <description><![CDATA[<b>bold</b>]]> and plain</description>\n"
+        + "    <Placemark id=\"p1\"><name>1</name><gx:drawOrder>1</gx:drawOrder></Placemark>\n"
+        + "    <Placemark id=\"p2\"><name>1</name><Point><coordinates>-120.5,38.25,0</coordinates></Point>"
+        + "</Placemark>\n"
+        + "  </Document>\n"
+        + "</kml>\n";
+
+    @Test
+    /** Tests that the cursor reader delivers the same elements, attributes and text as the parser's event reader. */
+    public void testSameEventsAsEventReader() throws XMLStreamException
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+
+        List<String> expected = describeEvents(factory.createXMLEventReader(new StringReader(DOCUMENT)));
+        List<String> actual = describeEvents(
+            new CursorXMLEventReader(factory.createXMLStreamReader(new StringReader(DOCUMENT))));
+
+        assertEquals("Events differ ", expected, actual);
+    }
+
+    @Test
+    /** Tests that element names, end elements and short text are shared by the events that use them. */
+    public void testInterning() throws XMLStreamException
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        XMLEventReader reader = new CursorXMLEventReader(factory.createXMLStreamReader(new StringReader(DOCUMENT)));
+
+        List<XMLEvent> names = new ArrayList<XMLEvent>();
+        List<XMLEvent> nameEnds = new ArrayList<XMLEvent>();
+        List<XMLEvent> ones = new ArrayList<XMLEvent>();
+        while (reader.hasNext())
+        {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement() && event.asStartElement().getName().getLocalPart().equals("name"))
+                names.add(event);
+            else if (event.isEndElement() && event.asEndElement().getName().getLocalPart().equals("name"))
+                nameEnds.add(event);
+            else if (event.isCharacters() && event.asCharacters().getData().equals("1"))
+                ones.add(event);
+        }
+
+        assertEquals("Number of name elements incorrect ", 3, names.size());
+        assertSame("Element names not interned ", names.get(1).asStartElement().getName(),
+            names.get(2).asStartElement().getName());
+        assertSame("End elements not shared ", nameEnds.get(0), nameEnds.get(2));
+        assertEquals("Number of text events incorrect ", 3, ones.size());
+        assertSame("Text not interned ", ones.get(0), ones.get(2));
+        assertTrue("Start element has no location ", names.get(0).getLocation().getLineNumber() > 0);
+    }
+
+    /**
+     * Describes each element, attribute and non-whitespace text of a document. Adjacent text is combined, since the
+     * parser's event reader may split text into several events.
+     *
+     * @param reader the reader to read events from.
+     *
+     * @return descriptions of the events.
+     *
+     * @throws XMLStreamException if an exception occurs while reading.
+     */
+    protected static List<String> describeEvents(XMLEventReader reader) throws XMLStreamException
+    {
+        List<String> list = new ArrayList<String>();
+        StringBuilder text = new StringBuilder();
+
+        while (reader.hasNext())
+        {
+            XMLEvent event = reader.nextEvent();
+            if (event.isCharacters())
+            {
+                text.append(event.asCharacters().getData());
+                continue;
+            }
+
+            if (text.toString().trim().length() > 0)
+                list.add("text " + text);
+            text.setLength(0);
+
+            if (event.isStartElement())
+            {
+                StartElement start = event.asStartElement();
+                list.add("start " + start.getName());
+
+                SortedSet<String> attributes = new TreeSet<String>();
+                for (Iterator iter = start.getAttributes(); iter.hasNext(); )
+                {
+                    Attribute attr = (Attribute) iter.next();
+                    attributes.add(attr.getName() + "=" + attr.getValue());
+                }
+                list.add("attributes " + attributes);
+
+                if (start.getName().getLocalPart().equals("drawOrder"))
+                    list.add("gx " + start.getNamespaceURI("gx"));
+            }
+            else if (event.isEndElement())
+            {
+                list.add("end " + event.asEndElement().getName());
+            }
+            else
+            {
+                list.add("type " + event.getEventType());
+            }
+        }
+
+        return list;
+    }
+}